@@ -206,6 +206,26 @@ public class ColumnMajorStore implements DataStore
         }
     }
 
+    /**
+     * Replaces the contents of this store with the given columns. This allows
+     * a store to be filled from data that is already column major, without
+     * adding each data point one at a time.
+     *
+     * @param numeric the numeric columns, each of which should have a length
+     * of {@code size}. The vectors are used directly.
+     * @param categorical the categorical columns, each of which should have a
+     * length of {@code size}. The arrays are used directly.
+     * @param size the number of data points in the columns
+     */
+    public void setColumns(Vec[] numeric, int[][] categorical, int size)
+    {
+        this.columns = new ArrayList<>(Arrays.asList(numeric));
+        this.cat_columns = new ArrayList<>(categorical.length);
+        for(int[] col : categorical)
+            this.cat_columns.add(IntList.view(col));
+        this.size = size;
+    }
+
     @Override
     public Vec getNumericColumn(int i)
     {
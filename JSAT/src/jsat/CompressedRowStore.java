@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jsat;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+import jsat.linear.IndexValue;
+import jsat.linear.SparseVector;
+import jsat.linear.SparseVectorView;
+import jsat.linear.Vec;
+import jsat.math.OnLineStatistics;
+
+/**
+ * A row-major data store that keeps the numeric features of every data point
+ * in one set of shared primitive arrays, in the style of a Compressed Sparse
+ * Row (CSR) matrix. Compared to a {@link RowMajorStore} of
+ * {@link SparseVector} objects, this avoids the object and array headers of
+ * every row and keeps all the rows contiguous in memory. <br>
+ * <br>
+ * The vectors returned by {@link #getDataPoint(int) } are light weight
+ * {@link SparseVectorView views} of the shared arrays. Changing an existing
+ * non-zero value of a returned vector will change the value stored, but adding
+ * new non-zero values to it will not. Use
+ * {@link #setDataPoint(int, jsat.classifiers.DataPoint) } to replace the
+ * contents of a row. <br>
+ * <br>
+ * Only non-zero values are stored, so this store is best used for sparse data.
+ *
+ * @author Edward Raff
+ */
+public class CompressedRowStore implements DataStore
+{
+    /**
+     * The start (inclusive) of each row in {@link #indexes} and
+     * {@link #values}
+     */
+    protected int[] rowStart;
+    /**
+     * The end (exclusive) of each row in {@link #indexes} and {@link #values}
+     */
+    protected int[] rowEnd;
+    protected int[] indexes;
+    protected double[] values;
+    /**
+     * The number of positions used in {@link #indexes} and {@link #values}
+     */
+    protected int used = 0;
+    /**
+     * The number of positions in {@link #indexes} and {@link #values} that are
+     * no longer part of any row, because the row was replaced
+     */
+    protected int wasted = 0;
+    /**
+     * The categorical values, stored as one row after another
+     */
+    protected int[] cat_vals;
+    protected int size = 0;
+    protected int num_numeric = 0;
+    protected int num_cat = 0;
+    protected CategoricalData[] cat_info;
+
+    /**
+     * Creates a new Data Store to add points to, where the number of features
+     * is not known in advance.
+     */
+    public CompressedRowStore()
+    {
+        this(0, null);
+    }
+
+    /**
+     * Creates a new Data Store with the intent for a specific number of
+     * features known ahead of time.
+     *
+     * @param numNumeric the number of numeric features to be in the data store
+     * @param cat_info the information about the categorical data
+     */
+    public CompressedRowStore(int numNumeric, CategoricalData[] cat_info)
+    {
+        this(numNumeric, cat_info, 16, 16);
+    }
+
+    /**
+     * Creates a new Data Store with the intent for a specific number of
+     * features and data points known ahead of time.
+     *
+     * @param numNumeric the number of numeric features to be in the data store
+     * @param cat_info the information about the categorical data
+     * @param rows the expected number of data points
+     * @param nnz the expected total number of non-zero numeric values over all
+     * data points
+     */
+    public CompressedRowStore(int numNumeric, CategoricalData[] cat_info, int rows, int nnz)
+    {
+        this.num_numeric = numNumeric;
+        this.cat_info = cat_info;
+        this.num_cat = cat_info == null ? 0 : cat_info.length;
+        rows = Math.max(rows, 1);
+        this.rowStart = new int[rows];
+        this.rowEnd = new int[rows];
+        this.indexes = new int[Math.max(nnz, 1)];
+        this.values = new double[indexes.length];
+        this.cat_vals = new int[rows * num_cat];
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param toCopy the object to copy
+     */
+    public CompressedRowStore(CompressedRowStore toCopy)
+    {
+        this.rowStart = Arrays.copyOf(toCopy.rowStart, toCopy.rowStart.length);
+        this.rowEnd = Arrays.copyOf(toCopy.rowEnd, toCopy.rowEnd.length);
+        this.indexes = Arrays.copyOf(toCopy.indexes, toCopy.indexes.length);
+        this.values = Arrays.copyOf(toCopy.values, toCopy.values.length);
+        this.used = toCopy.used;
+        this.wasted = toCopy.wasted;
+        this.cat_vals = Arrays.copyOf(toCopy.cat_vals, toCopy.cat_vals.length);
+        this.size = toCopy.size;
+        this.num_numeric = toCopy.num_numeric;
+        this.num_cat = toCopy.num_cat;
+        if (toCopy.cat_info != null)
+            this.cat_info = CategoricalData.copyOf(toCopy.cat_info);
+    }
+
+    @Override
+    public void setCategoricalDataInfo(CategoricalData[] cat_info)
+    {
+        this.cat_info = cat_info;
+        setNumCat(cat_info.length);
+    }
+
+    @Override
+    public CategoricalData[] getCategoricalDataInfo()
+    {
+        return cat_info;
+    }
+
+    @Override
+    synchronized public void addDataPoint(DataPoint dp)
+    {
+        Vec x = dp.getNumericalValues();
+        int[] x_c = dp.getCategoricalValues();
+
+        if (size == rowStart.length)
+        {
+            int newLen = rowStart.length * 2;
+            rowStart = Arrays.copyOf(rowStart, newLen);
+            rowEnd = Arrays.copyOf(rowEnd, newLen);
+            cat_vals = Arrays.copyOf(cat_vals, newLen * num_cat);
+        }
+        if (x_c.length > num_cat)
+            setNumCat(x_c.length);
+
+        int pos = size++;
+        rowStart[pos] = rowEnd[pos] = 0;//new row has no space yet
+        writeRow(pos, x);
+        int offset = pos * num_cat;
+        System.arraycopy(x_c, 0, cat_vals, offset, x_c.length);
+        Arrays.fill(cat_vals, offset + x_c.length, offset + num_cat, -1);//Missing value
+
+        num_numeric = Math.max(x.length(), num_numeric);
+    }
+
+    @Override
+    public DataPoint getDataPoint(int i)
+    {
+        if (i >= size)
+            throw new IndexOutOfBoundsException("Requested datapoint " + i + " but index has only " + size + " datums");
+        Vec x = new SparseVectorView(indexes, values, rowStart[i], rowEnd[i], num_numeric);
+        int[] cat = Arrays.copyOfRange(cat_vals, i * num_cat, (i + 1) * num_cat);
+        return new DataPoint(x, cat, cat_info);
+    }
+
+    @Override
+    synchronized public void setDataPoint(int i, DataPoint dp)
+    {
+        if (i >= size)
+            throw new IndexOutOfBoundsException("Requested datapoint " + i + " but index has only " + size + " datums");
+        int[] x_c = dp.getCategoricalValues();
+        if (x_c.length > num_cat)
+            setNumCat(x_c.length);
+
+        writeRow(i, dp.getNumericalValues());
+        int offset = i * num_cat;
+        System.arraycopy(x_c, 0, cat_vals, offset, x_c.length);
+        Arrays.fill(cat_vals, offset + x_c.length, offset + num_cat, -1);
+        num_numeric = Math.max(dp.getNumericalValues().length(), num_numeric);
+    }
+
+    /**
+     * Stores the non-zero values of the given vector as the <tt>i</tt>'th row.
+     * If the row already has enough space, it is re-used. Otherwise the values
+     * are appended to the end of the shared arrays.
+     *
+     * @param i the row to write to
+     * @param x the values to write
+     */
+    private void writeRow(int i, Vec x)
+    {
+        int nnz = x.nnz();
+        int oldSpace = rowEnd[i] - rowStart[i];
+        int pos;
+        boolean append = nnz > oldSpace;
+        //old space is wasted until we know how much of it gets re-used
+        wasted += oldSpace;
+        if (!append)//fits where it was
+            pos = rowStart[i];
+        else
+        {
+            rowEnd[i] = rowStart[i];//so compaction knows the old values are unused
+            if (used + nnz > indexes.length)
+            {
+                if (wasted > used / 2)
+                    compact();
+                if (used + nnz > indexes.length)
+                {
+                    int newLen = Math.max(indexes.length * 2, used + nnz);
+                    indexes = Arrays.copyOf(indexes, newLen);
+                    values = Arrays.copyOf(values, newLen);
+                }
+            }
+            pos = used;
+        }
+
+        rowStart[i] = pos;
+        for (IndexValue iv : x)
+        {
+            if (iv.getValue() == 0)
+                continue;
+            indexes[pos] = iv.getIndex();
+            values[pos++] = iv.getValue();
+        }
+        rowEnd[i] = pos;
+        if (append)
+            used = pos;
+        else
+            wasted -= pos - rowStart[i];
+    }
+
+    /**
+     * Moves all rows to the front of the shared arrays, removing space that is
+     * no longer used by any row.
+     */
+    private void compact()
+    {
+        int[] newIndexes = new int[indexes.length];
+        double[] newValues = new double[values.length];
+        int pos = 0;
+        for (int i = 0; i < size; i++)
+        {
+            int len = rowEnd[i] - rowStart[i];
+            System.arraycopy(indexes, rowStart[i], newIndexes, pos, len);
+            System.arraycopy(values, rowStart[i], newValues, pos, len);
+            rowStart[i] = pos;
+            pos += len;
+            rowEnd[i] = pos;
+        }
+        indexes = newIndexes;
+        values = newValues;
+        used = pos;
+        wasted = 0;
+    }
+
+    private void setNumCat(int d)
+    {
+        if (d == num_cat)
+            return;
+        int[] newCats = new int[rowStart.length * d];
+        Arrays.fill(newCats, -1);//Missing value
+        int toCopy = Math.min(d, num_cat);
+        for (int i = 0; i < size; i++)
+            System.arraycopy(cat_vals, i * num_cat, newCats, i * d, toCopy);
+        cat_vals = newCats;
+        num_cat = d;
+    }
+
+    @Override
+    synchronized public void finishAdding()
+    {
+        if (wasted > 0)
+            compact();
+        //trim excess space
+        if (indexes.length > used)
+        {
+            indexes = Arrays.copyOf(indexes, Math.max(used, 1));
+            values = Arrays.copyOf(values, indexes.length);
+        }
+    }
+
+    @Override
+    public int numNumeric()
+    {
+        return num_numeric;
+    }
+
+    @Override
+    public void setNumNumeric(int d)
+    {
+        if (d < 0)
+            throw new RuntimeException("Can not store a negative number of features (" + d + ")");
+        num_numeric = d;
+    }
+
+    @Override
+    public int numCategorical()
+    {
+        return num_cat;
+    }
+
+    @Override
+    public int[] getCatColumn(int i)
+    {
+        if (i < 0 || i >= numCategorical())
+            throw new IndexOutOfBoundsException("There is no index for column " + i);
+        int[] toRet = new int[size];
+        for (int z = 0; z < size; z++)
+            toRet[z] = cat_vals[z * num_cat + i];
+        return toRet;
+    }
+
+    @Override
+    public Vec[] getNumericColumns(Set<Integer> skipColumns)
+    {
+        Vec[] cols = new Vec[numNumeric()];
+        //count how many values each column will have, so they are made in one go
+        int[] counts = new int[cols.length];
+        for (int i = 0; i < size; i++)
+            for (int pos = rowStart[i]; pos < rowEnd[i]; pos++)
+                counts[indexes[pos]]++;
+
+        int[][] colIndexes = new int[cols.length][];
+        double[][] colValues = new double[cols.length][];
+        for (int j = 0; j < cols.length; j++)
+            if (!skipColumns.contains(j))
+            {
+                colIndexes[j] = new int[counts[j]];
+                colValues[j] = new double[counts[j]];
+            }
+
+        int[] filled = new int[cols.length];
+        for (int i = 0; i < size; i++)
+            for (int pos = rowStart[i]; pos < rowEnd[i]; pos++)
+            {
+                int j = indexes[pos];
+                if (colIndexes[j] == null)
+                    continue;
+                colIndexes[j][filled[j]] = i;
+                colValues[j][filled[j]++] = values[pos];
+            }
+
+        for (int j = 0; j < cols.length; j++)
+        {
+            if (colIndexes[j] == null)
+                continue;
+            if (counts[j] > size * 0.6)
+            {
+                cols[j] = new DenseVector(size);
+                for (int z = 0; z < counts[j]; z++)
+                    cols[j].set(colIndexes[j][z], colValues[j][z]);
+            }
+            else if (counts[j] == 0)
+                cols[j] = new SparseVector(Math.max(size, 1), 0);
+            else
+                cols[j] = new SparseVector(colIndexes[j], colValues[j], size, counts[j]);
+        }
+
+        return cols;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public OnLineStatistics getSparsityStats()
+    {
+        OnLineStatistics stats = new OnLineStatistics();
+        for (int i = 0; i < size; i++)
+            stats.add((rowEnd[i] - rowStart[i]) / (double) Math.max(num_numeric, 1));
+        return stats;
+    }
+
+    @Override
+    public CompressedRowStore clone()
+    {
+        return new CompressedRowStore(this);
+    }
+
+    @Override
+    public CompressedRowStore emptyClone()
+    {
+        return new CompressedRowStore(num_numeric, cat_info);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * The same {@link SparseVectorView} object is re-pointed at each row, so no
+     * new vectors are created while iterating.
+     */
+    @Override
+    public Iterator<DataPoint> getRowIter()
+    {
+        final SparseVectorView view = new SparseVectorView(indexes, values, 0, 0, num_numeric);
+        final int[] cat = new int[num_cat];
+        final DataPoint dp = new DataPoint(view, cat, cat_info);
+        return new Iterator<DataPoint>()
+        {
+            int pos = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return pos < size;
+            }
+
+            @Override
+            public DataPoint next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                view.setView(indexes, values, rowStart[pos], rowEnd[pos], num_numeric);
+                System.arraycopy(cat_vals, pos * num_cat, cat, 0, num_cat);
+                pos++;
+                return dp;
+            }
+        };
+    }
+}
@@ -267,8 +267,13 @@ public abstract class DataSet<Type extends DataSet>
         if (mutate && dt instanceof InPlaceTransform)
         {
             final InPlaceTransform ipt = (InPlaceTransform) dt;
-            ParallelUtils.range(size(), parallel)
-                    .forEach(i->ipt.mutableTransform(getDataPoint(i)));
+            //Not every store returns its own data point objects, so write the mutated point back
+            ParallelUtils.range(size(), parallel).forEach(i->
+            {
+                DataPoint dp = getDataPoint(i);
+                ipt.mutableTransform(dp);
+                setDataPoint(i, dp);
+            });
         }
         else
 	{
@@ -515,6 +520,63 @@ public abstract class DataSet<Type extends DataSet>
      */
     abstract protected Type getSubset(List<Integer> indicies);
     
+    /**
+     * Creates a new dataset of the same type as this one, that uses the given
+     * store to hold its data points. Row {@code i} of the store corresponds to
+     * row {@code indices[i]} of this dataset, and any target values must be
+     * taken from those rows.
+     *
+     * @param store the store of data points for the new dataset
+     * @param indices the rows of this dataset that each row of the store
+     * corresponds to
+     * @return a new dataset backed by the given store
+     */
+    abstract protected Type getSubset(DataStore store, int[] indices);
+    
+    /**
+     * Creates a new dataset that is a view of the given rows of this dataset.
+     * No data points are copied, only the index array is kept, so this is an
+     * O(k) operation for k indices. An index may be repeated to include a
+     * data point more than once. The weight of each data point is the same as
+     * in this dataset.
+     *
+     * @param indices the rows of this dataset to include, in order. This
+     * array is used directly and should not be altered afterwards.
+     * @return a view of the given rows of this dataset
+     * @see IndexedDataStore
+     */
+    public Type getView(int[] indices)
+    {
+        return getView(indices, null);
+    }
+    
+    /**
+     * Creates a new dataset that is a view of the given rows of this dataset.
+     * No data points are copied, only the index array is kept, so this is an
+     * O(k) operation for k indices. An index may be repeated to include a
+     * data point more than once.
+     *
+     * @param indices the rows of this dataset to include, in order. This
+     * array is used directly and should not be altered afterwards.
+     * @param weights the weight to give each row of the view, or {@code null}
+     * to use the weights of this dataset.
+     * @return a view of the given rows of this dataset
+     * @see IndexedDataStore
+     */
+    public Type getView(int[] indices, double[] weights)
+    {
+        if(weights != null && weights.length != indices.length)
+            throw new IllegalArgumentException("Given " + indices.length + " indices but " + weights.length + " weights");
+        DataStore store = new IndexedDataStore(datapoints, indices);
+        store.setNumNumeric(numNumerVals);
+        if(categories != null)
+            store.setCategoricalDataInfo(categories);
+        Type view = getSubset(store, indices);
+        for(int i = 0; i < indices.length; i++)
+            view.setWeight(i, weights == null ? getWeight(indices[i]) : weights[i]);
+        return view;
+    }
+    
     /**
      * This method returns a dataset that is a subset of this dataset, where
      * only the rows that have no missing values are kept. The new dataset is
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jsat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+import jsat.linear.IndexValue;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.math.OnLineStatistics;
+
+/**
+ * A data store that is a view of a subset of the rows of another data store.
+ * The i'th row of this store is the row {@code indices[i]} of the parent, so
+ * creating a view only costs the index array. An index may be repeated, which
+ * is how bootstrap samples are represented. <br>
+ * <br>
+ * The data points are shared with the parent store, as was always the case
+ * for subsets of a {@link RowMajorStore}. Calling
+ * {@link #setDataPoint(int, jsat.classifiers.DataPoint) } or
+ * {@link #addDataPoint(jsat.classifiers.DataPoint) } on the view will
+ * <i>not</i> change the parent, the new data points are kept by the view
+ * instead.
+ *
+ * @author Edward Raff
+ */
+public class IndexedDataStore implements DataStore
+{
+    private final DataStore parent;
+    private final int[] indices;
+    /**
+     * Data points that have been replaced by calls to setDataPoint, or
+     * {@code null} if none have been.
+     */
+    private volatile DataPoint[] replaced;
+    /**
+     * Data points that have been added after the view was created
+     */
+    private List<DataPoint> added;
+    private int num_numeric;
+    private CategoricalData[] cat_info;
+
+    /**
+     * Creates a new view of the given rows of a data store. If the parent is
+     * itself an unmodified view, the new view will refer directly to the
+     * original store so that long chains of views do not form.
+     *
+     * @param parent the data store to take rows from
+     * @param indices the rows of the parent to use, in order. This array is
+     * used directly and should not be altered afterwards.
+     */
+    public IndexedDataStore(DataStore parent, int[] indices)
+    {
+        if (parent instanceof IndexedDataStore && ((IndexedDataStore) parent).isUnmodified())
+        {
+            IndexedDataStore view = (IndexedDataStore) parent;
+            int[] composed = new int[indices.length];
+            for (int i = 0; i < indices.length; i++)
+                composed[i] = view.indices[indices[i]];
+            parent = view.parent;
+            indices = composed;
+        }
+        for (int i : indices)
+            if (i < 0 || i >= parent.size())
+                throw new IndexOutOfBoundsException("Parent store has " + parent.size() + " rows, can not use index " + i);
+        this.parent = parent;
+        this.indices = indices;
+        this.added = new ArrayList<>();
+        this.num_numeric = parent.numNumeric();
+        this.cat_info = parent.getCategoricalDataInfo();
+    }
+
+    /**
+     * Copy constructor. The copy will share the same parent and index array.
+     *
+     * @param toCopy the object to copy
+     */
+    public IndexedDataStore(IndexedDataStore toCopy)
+    {
+        this.parent = toCopy.parent;
+        this.indices = toCopy.indices;
+        if (toCopy.replaced != null)
+            this.replaced = Arrays.copyOf(toCopy.replaced, toCopy.replaced.length);
+        this.added = new ArrayList<>(toCopy.added);
+        this.num_numeric = toCopy.num_numeric;
+        if (toCopy.cat_info != null)
+            this.cat_info = CategoricalData.copyOf(toCopy.cat_info);
+    }
+
+    /**
+     * Creates a single view that contains all the rows of the given views, in
+     * order. This is only possible if every store given is an unmodified
+     * {@link IndexedDataStore} over the same parent.
+     *
+     * @param stores the stores to concatenate
+     * @return a view of all the rows of the given stores, or {@code null} if
+     * the stores can not be combined into one view.
+     */
+    public static IndexedDataStore concat(List<? extends DataStore> stores)
+    {
+        DataStore parent = null;
+        int total = 0;
+        for (DataStore store : stores)
+        {
+            if (!(store instanceof IndexedDataStore))
+                return null;
+            IndexedDataStore view = (IndexedDataStore) store;
+            if (!view.isUnmodified() || (parent != null && parent != view.parent))
+                return null;
+            parent = view.parent;
+            total += view.indices.length;
+        }
+        if (parent == null)
+            return null;
+
+        int[] indices = new int[total];
+        int pos = 0;
+        for (DataStore store : stores)
+        {
+            int[] src = ((IndexedDataStore) store).indices;
+            System.arraycopy(src, 0, indices, pos, src.length);
+            pos += src.length;
+        }
+        return new IndexedDataStore(parent, indices);
+    }
+
+    /**
+     *
+     * @return {@code true} if no data points have been set or added to this
+     * view, so that every row is still a row of the parent.
+     */
+    private boolean isUnmodified()
+    {
+        return replaced == null && added.isEmpty();
+    }
+
+    /**
+     *
+     * @return the data store that this is a view of
+     */
+    public DataStore getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Returns the row of the parent store that a row of this view refers to.
+     *
+     * @param i the row of this view, which must be less than the number of
+     * rows the view was created with
+     * @return the row of the parent store
+     */
+    public int getParentIndex(int i)
+    {
+        return indices[i];
+    }
+
+    @Override
+    public void setCategoricalDataInfo(CategoricalData[] cat_info)
+    {
+        this.cat_info = cat_info;
+    }
+
+    @Override
+    public CategoricalData[] getCategoricalDataInfo()
+    {
+        return cat_info;
+    }
+
+    @Override
+    public void addDataPoint(DataPoint dp)
+    {
+        added.add(dp);
+        num_numeric = Math.max(dp.getNumericalValues().length(), num_numeric);
+    }
+
+    @Override
+    public DataPoint getDataPoint(int i)
+    {
+        if (i >= indices.length)
+            return added.get(i - indices.length);
+        DataPoint[] r = replaced;
+        if (r != null && r[i] != null)
+            return r[i];
+        return parent.getDataPoint(indices[i]);
+    }
+
+    @Override
+    public void setDataPoint(int i, DataPoint dp)
+    {
+        if (i >= indices.length)
+        {
+            added.set(i - indices.length, dp);
+            return;
+        }
+        else if (i < 0)
+            throw new IndexOutOfBoundsException("Can not set index " + i);
+        if (replaced == null)
+            synchronized (this)
+            {
+                if (replaced == null)
+                    replaced = new DataPoint[indices.length];
+            }
+        replaced[i] = dp;
+    }
+
+    @Override
+    public void finishAdding()
+    {
+        for (DataPoint dp : added)
+            dp.getNumericalValues().setLength(num_numeric);
+    }
+
+    @Override
+    public int numNumeric()
+    {
+        return num_numeric;
+    }
+
+    @Override
+    public void setNumNumeric(int d)
+    {
+        if (d < 0)
+            throw new RuntimeException("Can not store a negative number of features (" + d + ")");
+        num_numeric = d;
+    }
+
+    @Override
+    public int numCategorical()
+    {
+        return cat_info == null ? 0 : cat_info.length;
+    }
+
+    @Override
+    public int[] getCatColumn(int i)
+    {
+        if (i < 0 || i >= numCategorical())
+            throw new IndexOutOfBoundsException("There is no index for column " + i);
+        int[] toRet = new int[size()];
+        for (int z = 0; z < toRet.length; z++)
+            toRet[z] = getDataPoint(z).getCategoricalValue(i);
+        return toRet;
+    }
+
+    @Override
+    public Vec[] getNumericColumns(Set<Integer> skipColumns)
+    {
+        boolean sparse = getSparsityStats().getMean() < 0.6;
+        Vec[] cols = new Vec[numNumeric()];
+
+        for (int j = 0; j < cols.length; j++)
+            if (!skipColumns.contains(j))
+                cols[j] = sparse ? new SparseVector(size()) : new DenseVector(size());
+
+        for (int i = 0; i < size(); i++)
+            for (IndexValue iv : getDataPoint(i).getNumericalValues())
+            {
+                int col = iv.getIndex();
+                if (cols[col] != null)
+                    cols[col].set(i, iv.getValue());
+            }
+
+        return cols;
+    }
+
+    @Override
+    public int size()
+    {
+        return indices.length + added.size();
+    }
+
+    @Override
+    public OnLineStatistics getSparsityStats()
+    {
+        OnLineStatistics stats = new OnLineStatistics();
+        for (int i = 0; i < size(); i++)
+        {
+            Vec v = getDataPoint(i).getNumericalValues();
+            if (v.isSparse())
+                stats.add(v.nnz() / (double) v.length());
+            else
+                stats.add(1.0);
+        }
+        return stats;
+    }
+
+    @Override
+    public IndexedDataStore clone()
+    {
+        return new IndexedDataStore(this);
+    }
+
+    /**
+     * Returns an empty store of the same type as the parent store, with the
+     * same feature information as this view.
+     *
+     * @return an empty data store
+     */
+    @Override
+    public DataStore emptyClone()
+    {
+        DataStore empty = parent.emptyClone();
+        empty.setNumNumeric(num_numeric);
+        if (cat_info != null)
+            empty.setCategoricalDataInfo(cat_info);
+        return empty;
+    }
+}
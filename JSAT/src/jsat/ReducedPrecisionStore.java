@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package jsat;
+
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.io.JSATData;
+import jsat.io.JSATData.FloatStorageMethod;
+import jsat.linear.DenseFloatVector;
+import jsat.linear.IndexValue;
+import jsat.linear.SparseFloatVector;
+import jsat.linear.Vec;
+
+/**
+ * A {@link RowMajorStore} that keeps the numeric features of each data point
+ * as 32 bit floats, using the {@link DenseFloatVector} and
+ * {@link SparseFloatVector} classes. Values are widened back to doubles only
+ * when they are read. This halves the memory used to store dense data. <br>
+ * <br>
+ * The precision used is described by a {@link FloatStorageMethod}:
+ * <ul>
+ * <li>{@link FloatStorageMethod#FP64 FP64} keeps every vector as given.</li>
+ * <li>{@link FloatStorageMethod#AUTO AUTO} converts a vector only if every value
+ * in it can be stored as a float without any loss. When used to
+ * {@link JSATData#load(java.io.InputStream, jsat.DataStore) load} a JSAT file,
+ * the precision the file was written with will be used instead.</li>
+ * <li>All other methods convert every vector to floats. The integer methods
+ * (SHORT, BYTE, U_BYTE) are always exact as floats.</li>
+ * </ul>
+ *
+ * @author Edward Raff
+ */
+public class ReducedPrecisionStore extends RowMajorStore
+{
+    private FloatStorageMethod precision;
+
+    /**
+     * Creates a new Data Store to add points to, where the number of features
+     * is not known in advance, that will only reduce the precision of vectors
+     * when it can be done without loss.
+     */
+    public ReducedPrecisionStore()
+    {
+        this(FloatStorageMethod.AUTO);
+    }
+
+    /**
+     * Creates a new Data Store to add points to, where the number of features
+     * is not known in advance.
+     *
+     * @param precision the precision to store numeric features with
+     */
+    public ReducedPrecisionStore(FloatStorageMethod precision)
+    {
+        this(0, null, precision);
+    }
+
+    /**
+     * Creates a new Data Store with the intent for a specific number of
+     * features known ahead of time.
+     *
+     * @param numNumeric the number of numeric features to be in the data store
+     * @param cat_info the information about the categorical data
+     * @param precision the precision to store numeric features with
+     */
+    public ReducedPrecisionStore(int numNumeric, CategoricalData[] cat_info, FloatStorageMethod precision)
+    {
+        super(numNumeric, cat_info);
+        setPrecision(precision);
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param toCopy the object to copy
+     */
+    public ReducedPrecisionStore(ReducedPrecisionStore toCopy)
+    {
+        super(toCopy);
+        this.precision = toCopy.precision;
+    }
+
+    /**
+     * Sets the precision that will be used for data points added after this
+     * call. Data points already stored are not changed.
+     *
+     * @param precision the precision to store numeric features with
+     */
+    public void setPrecision(FloatStorageMethod precision)
+    {
+        if (precision == null)
+            throw new NullPointerException("precision can not be null");
+        this.precision = precision;
+    }
+
+    /**
+     *
+     * @return the precision that numeric features are stored with
+     */
+    public FloatStorageMethod getPrecision()
+    {
+        return precision;
+    }
+
+    @Override
+    public void addDataPoint(DataPoint dp)
+    {
+        super.addDataPoint(reduce(dp));
+    }
+
+    @Override
+    public void setDataPoint(int i, DataPoint dp)
+    {
+        super.setDataPoint(i, reduce(dp));
+    }
+
+    /**
+     * Converts the numeric features of a data point to float storage, if the
+     * current precision allows it.
+     *
+     * @param dp the data point to convert
+     * @return a data point with reduced precision, or the original
+     */
+    private DataPoint reduce(DataPoint dp)
+    {
+        Vec x = dp.getNumericalValues();
+        if (precision == FloatStorageMethod.FP64 || x instanceof DenseFloatVector || x instanceof SparseFloatVector)
+            return dp;
+        if (precision == FloatStorageMethod.AUTO)
+            for (IndexValue iv : x)
+                if ((float) iv.getValue() != iv.getValue() && !Double.isNaN(iv.getValue()))
+                    return dp;//can't store without loss
+
+        Vec reduced = x.isSparse() ? new SparseFloatVector(x) : new DenseFloatVector(x);
+        return new DataPoint(reduced, dp.getCategoricalValues(), dp.getCategoricalData());
+    }
+
+    @Override
+    public ReducedPrecisionStore clone()
+    {
+        return new ReducedPrecisionStore(this);
+    }
+
+    @Override
+    public ReducedPrecisionStore emptyClone()
+    {
+        return new ReducedPrecisionStore(num_numeric, cat_info, precision);
+    }
+}
@@ -70,12 +70,7 @@ public class SimpleDataSet extends DataSet<SimpleDataSet>
     protected SimpleDataSet getSubset(List<Integer> indicies)
     {
 	if (this.datapoints.rowMajor())
-	{
-	    SimpleDataSet newData = new SimpleDataSet(numNumerVals, categories);
-	    for(int i : indicies)
-		newData.add(getDataPoint(i));
-	    return newData;
-	}
+	    return getView(indicies.stream().mapToInt(i->i).toArray());
 	else //copy columns at a time to make it faster please! 
 	{
 	    int new_n = indicies.size();
@@ -103,6 +98,12 @@ public class SimpleDataSet extends DataSet<SimpleDataSet>
 	}
     }
     
+    @Override
+    protected SimpleDataSet getSubset(DataStore store, int[] indices)
+    {
+        return new SimpleDataSet(store);
+    }
+    
     /**
      * Converts this dataset into one meant for classification problems. The 
      * given categorical feature index is removed from the data and made the
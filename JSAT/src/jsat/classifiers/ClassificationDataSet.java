@@ -4,6 +4,7 @@ package jsat.classifiers;
 import java.util.*;
 import jsat.DataSet;
 import jsat.DataStore;
+import jsat.IndexedDataStore;
 import jsat.linear.DenseVector;
 import jsat.linear.IndexValue;
 import jsat.linear.Vec;
@@ -179,6 +180,26 @@ public class ClassificationDataSet extends DataSet<ClassificationDataSet>
         CategoricalData[] categories = list.get(0).getCategories();
         CategoricalData predicting = list.get(0).getPredicting();
         
+	List<ClassificationDataSet> kept = new ArrayList<>(list);
+	if(exception >= 0 && exception < list.size())
+	    kept.remove(exception);
+	List<DataStore> keptStores = new ArrayList<>(kept.size());
+	for(ClassificationDataSet cds : kept)
+	    keptStores.add(cds.datapoints);
+	IndexedDataStore view = IndexedDataStore.concat(keptStores);
+	if(view != null)//all views of the same data, so just combine the indices
+	{
+	    IntList new_targets = new IntList(view.size());
+	    for(ClassificationDataSet cds : kept)
+		new_targets.addAll(cds.targets);
+	    ClassificationDataSet combined = new ClassificationDataSet(view, new_targets, predicting);
+	    int pos = 0;
+	    for(ClassificationDataSet cds : kept)
+		for(int j = 0; j < cds.size(); j++)
+		    combined.setWeight(pos++, cds.getWeight(j));
+	    return combined;
+	}
+        
 	if(list.get(0).rowMajor())
 	{
 	    ClassificationDataSet cds = new ClassificationDataSet(numer, categories, predicting);
@@ -273,13 +294,7 @@ public class ClassificationDataSet extends DataSet<ClassificationDataSet>
     protected ClassificationDataSet getSubset(List<Integer> indicies)
     {
 	if (this.datapoints.rowMajor())
-	{
-	    ClassificationDataSet newData = new ClassificationDataSet(numNumerVals, categories, predicting);
-	    for (int i : indicies)
-		newData.addDataPoint(getDataPoint(i), getDataPointCategory(i));
-
-	    return newData;
-	}
+	    return getView(indicies.stream().mapToInt(i->i).toArray());
 	else //copy columns at a time to make it faster please! 
 	{
 	    int new_n = indicies.size();
@@ -311,6 +326,15 @@ public class ClassificationDataSet extends DataSet<ClassificationDataSet>
     }
     
  
+    @Override
+    protected ClassificationDataSet getSubset(DataStore store, int[] indices)
+    {
+        IntList new_targets = new IntList(indices.length);
+        for (int i : indices)
+            new_targets.add(targets.getI(i));
+        return new ClassificationDataSet(store, new_targets, predicting);
+    }
+ 
     public List<ClassificationDataSet> stratSet(int folds, Random rnd)
     {
         ArrayList<ClassificationDataSet> cvList = new ArrayList<>();
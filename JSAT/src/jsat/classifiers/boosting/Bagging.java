@@ -5,6 +5,7 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jsat.DataSet;
 import jsat.classifiers.*;
 import jsat.classifiers.knn.NearestNeighbour;
 import jsat.classifiers.trees.DecisionTree;
@@ -277,16 +278,7 @@ public class Bagging implements Classifier, Regressor, Parameterized
      */
     public static ClassificationDataSet getSampledDataSet(ClassificationDataSet dataSet, int[] sampledCounts)
     {
-        ClassificationDataSet destination = new ClassificationDataSet(dataSet.getNumNumericalVars(), dataSet.getCategories(), dataSet.getPredicting());
-            
-            for (int i = 0; i < sampledCounts.length; i++)
-                for(int j = 0; j < sampledCounts[i]; j++)
-                {
-                    DataPoint dp = dataSet.getDataPoint(i);
-                    destination.addDataPoint(dp.getNumericalValues(), dp.getCategoricalValues(), dataSet.getDataPointCategory(i));
-                }
-            
-            return destination;
+        return dataSet.getView(sampledIndices(sampledCounts));
     }
     
     /**
@@ -300,17 +292,7 @@ public class Bagging implements Classifier, Regressor, Parameterized
      */
     public static ClassificationDataSet getWeightSampledDataSet(ClassificationDataSet dataSet, int[] sampledCounts)
     {
-        ClassificationDataSet destination = new ClassificationDataSet(dataSet.getNumNumericalVars(), dataSet.getCategories(), dataSet.getPredicting());
-
-        for (int i = 0; i < sampledCounts.length; i++)
-        {
-            if(sampledCounts[i] <= 0)
-                continue;
-            DataPoint dp = dataSet.getDataPoint(i);
-            destination.addDataPoint(dp, dataSet.getDataPointCategory(i), dataSet.getWeight(i)*sampledCounts[i]);
-        }
-
-        return destination;
+        return getWeightSampledView(dataSet, sampledCounts);
     }
     
     /**
@@ -323,14 +305,7 @@ public class Bagging implements Classifier, Regressor, Parameterized
      */
     public static RegressionDataSet getSampledDataSet(RegressionDataSet dataSet, int[] sampledCounts)
     {
-        RegressionDataSet destination = new RegressionDataSet(dataSet.getNumNumericalVars(), dataSet.getCategories());
-        for (int i = 0; i < sampledCounts.length; i++)
-            for (int j = 0; j < sampledCounts[i]; j++)
-            {
-                DataPoint dp = dataSet.getDataPoint(i);
-                destination.addDataPoint(dp, dataSet.getTargetValue(i));
-            }
-        return destination;
+        return dataSet.getView(sampledIndices(sampledCounts));
     }
     
     /**
@@ -344,17 +319,55 @@ public class Bagging implements Classifier, Regressor, Parameterized
      */
     public static RegressionDataSet getWeightSampledDataSet(RegressionDataSet dataSet, int[] sampledCounts)
     {
-        RegressionDataSet destination = new RegressionDataSet(dataSet.getNumNumericalVars(), dataSet.getCategories());
+        return getWeightSampledView(dataSet, sampledCounts);
+    }
 
+    /**
+     * Expands sample counts into the list of indices sampled, with each index
+     * repeated the number of times it was sampled
+     * @param sampledCounts the number of times each index was sampled
+     * @return the array of sampled indices
+     */
+    private static int[] sampledIndices(int[] sampledCounts)
+    {
+        int total = 0;
+        for (int count : sampledCounts)
+            total += Math.max(count, 0);
+        int[] indices = new int[total];
+        int pos = 0;
+        for (int i = 0; i < sampledCounts.length; i++)
+            for (int j = 0; j < sampledCounts[i]; j++)
+                indices[pos++] = i;
+        return indices;
+    }
+    
+    /**
+     * Creates a view of the sampled points, where each point sampled is
+     * included once with its weight multiplied by the number of times it was
+     * sampled.
+     * @param <Type> the type of data set
+     * @param dataSet the data set that was sampled from
+     * @param sampledCounts the sampling values obtained from 
+     * {@link #sampleWithReplacement(int[], int, java.util.Random) }
+     * @return a view of the sampled data set
+     */
+    private static <Type extends DataSet<Type>> Type getWeightSampledView(Type dataSet, int[] sampledCounts)
+    {
+        int nnz = 0;
+        for (int count : sampledCounts)
+            if (count > 0)
+                nnz++;
+        int[] indices = new int[nnz];
+        double[] weights = new double[nnz];
+        int pos = 0;
         for (int i = 0; i < sampledCounts.length; i++)
         {
-            if(sampledCounts[i] <= 0)
+            if (sampledCounts[i] <= 0)
                 continue;
-            DataPoint dp = dataSet.getDataPoint(i);
-            destination.addDataPoint(dp, dataSet.getTargetValue(i), dataSet.getWeight(i)*sampledCounts[i]);
+            indices[pos] = i;
+            weights[pos++] = dataSet.getWeight(i) * sampledCounts[i];
         }
-
-        return destination;
+        return dataSet.getView(indices, weights);
     }
 
     /**
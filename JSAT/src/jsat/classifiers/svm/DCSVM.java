@@ -326,7 +326,7 @@ public class DCSVM extends SupportVectorLearner implements Classifier, Parameter
                 if (accelCache != null)
                 {
                     int multiplier = accelCache.size() / N;
-                    qi = accelCache.subList(i * multiplier, i * multiplier + multiplier);
+                    qi = new DoubleList(accelCache.subList(i * multiplier, i * multiplier + multiplier));
                 }
                 group[i] = clusters.findClosestCluster(vecs.get(i), qi);
             });
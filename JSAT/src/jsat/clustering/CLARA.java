@@ -171,7 +171,7 @@ public class CLARA extends PAM
             for (Integer j : samplePoints.values())
             {
                 sample.add(data.getDataPoint(j));
-                subCache.add(cacheAccel.get(j));
+                subCache.add(DoubleList.getD(cacheAccel, j));
             }
 
             DataSet sampleSet = new SimpleDataSet(sample);
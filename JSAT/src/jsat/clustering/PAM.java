@@ -3,6 +3,7 @@ package jsat.clustering;
 
 import jsat.linear.distancemetrics.TrainableDistanceMetric;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -11,11 +12,14 @@ import java.util.concurrent.atomic.DoubleAdder;
 import java.util.concurrent.atomic.LongAdder;
 
 import jsat.DataSet;
+import jsat.linear.DenseMatrix;
+import jsat.linear.Matrix;
 import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.math.OnLineStatistics;
 import static jsat.clustering.SeedSelectionMethods.*;
+import jsat.utils.DoubleList;
 import jsat.utils.IntList;
 import jsat.utils.ListUtils;
 import jsat.utils.concurrent.ParallelUtils;
@@ -29,6 +33,10 @@ public class PAM implements KClusterer
 {
 
     private static final long serialVersionUID = 4787649180692115514L;
+    /**
+     * The number of points whose distances are computed together in one batch
+     */
+    private static final int BLOCK_SIZE = 256;
     protected DistanceMetric dm;
     protected Random rand;
     protected SeedSelection seedSelection;
@@ -190,53 +198,93 @@ public class PAM implements KClusterer
             changes.reset();
             totalDistance.reset();
             
+            final List<Vec> medVecs = new ArrayList<>(medioids.length);
+            for(int m : medioids)
+                medVecs.add(X.get(m));
+            final List<Double> medCache = subCache(accel, X.size(), IntList.view(medioids, medioids.length));
             ParallelUtils.run(parallel, data.size(), (start, end)->
             {
-                for(int i = start; i < end; i++)
+                //distances from a block of points to every medoid at once
+                Matrix D = new DenseMatrix(Math.min(BLOCK_SIZE, end-start), medioids.length);
+                for(int b = start; b < end; b += BLOCK_SIZE)
                 {
-                    int assignment = 0;
-                    double minDist = dm.dist(medioids[0], i, X, accel);
-
-                    for (int k = 1; k < medioids.length; k++)
+                    final int b_end = Math.min(b+BLOCK_SIZE, end);
+                    if(b_end-b != D.rows())
+                        D = new DenseMatrix(b_end-b, medioids.length);
+                    dm.dist(X.subList(b, b_end), subCache(accel, X.size(), b, b_end), medVecs, medCache, D, false);
+                    for(int i = b; i < b_end; i++)
                     {
-                        double dist = dm.dist(medioids[k], i, X, accel);
-                        if (dist < minDist)
+                        int assignment = 0;
+                        double minDist = D.get(i-b, 0);
+
+                        for (int k = 1; k < medioids.length; k++)
                         {
-                            minDist = dist;
-                            assignment = k;
+                            double dist = D.get(i-b, k);
+                            if (dist < minDist)
+                            {
+                                minDist = dist;
+                                assignment = k;
+                            }
                         }
-                    }
 
-                    //Update which cluster it is in
-                    if (assignments[i] != assignment)
-                    {
-                        changes.increment();
-                        assignments[i] = assignment;
+                        //Update which cluster it is in
+                        if (assignments[i] != assignment)
+                        {
+                            changes.increment();
+                            assignments[i] = assignment;
+                        }
+                        totalDistance.add(minDist * minDist);
                     }
-                    totalDistance.add(minDist * minDist);
                 }
             });
             
-            //TODO this update may be faster by using more memory, and actually moiving people about in the assignment loop above
-            //Update the medoids
+            //Update the medoids, by finding the member of each cluster with the smallest sum of squared distances to the other members
             Arrays.fill(bestMedCandDist, Double.MAX_VALUE);
+            List<IntList> members = new ArrayList<>(medioids.length);
+            for(int c = 0; c < medioids.length; c++)
+                members.add(new IntList());
             for(int i = 0; i < data.size(); i++)
+                members.get(assignments[i]).add(i);
+            for(int c = 0; c < medioids.length; c++)
             {
-                double thisCandidateDistance;
-                final int clusterID = assignments[i];
-                final int medCandadate = i;
-                
-                final int ii = i;
-                thisCandidateDistance = ParallelUtils.range(data.size(), parallel)
-                        .filter(j -> j != ii && assignments[j] == clusterID)
-                        .mapToDouble(j -> Math.pow(dm.dist(medCandadate, j, X, accel), 2))
-                        .sum();
+                final IntList clusterMembers = members.get(c);
+                final int n_c = clusterMembers.size();
+                if(n_c == 0)
+                    continue;
+                final List<Vec> memVecs = new ArrayList<>(n_c);
+                for(int i : clusterMembers)
+                    memVecs.add(X.get(i));
+                final List<Double> memCache = subCache(accel, X.size(), clusterMembers);
+                final double[] candidateDistance = new double[n_c];
                 
-                if(thisCandidateDistance < bestMedCandDist[clusterID])
+                ParallelUtils.run(parallel, n_c, (start, end)->
                 {
-                    bestMedCand[clusterID] = i;
-                    bestMedCandDist[clusterID] = thisCandidateDistance;
-                }
+                    for(int b = start; b < end; b += BLOCK_SIZE)
+                    {
+                        final int b_end = Math.min(b+BLOCK_SIZE, end);
+                        for(int t = 0; t < n_c; t += BLOCK_SIZE*8)
+                        {
+                            final int t_end = Math.min(t+BLOCK_SIZE*8, n_c);
+                            Matrix D = new DenseMatrix(b_end-b, t_end-t);
+                            dm.dist(memVecs.subList(b, b_end), subCache(memCache, n_c, b, b_end), memVecs.subList(t, t_end), subCache(memCache, n_c, t, t_end), D, false);
+                            for(int i = b; i < b_end; i++)
+                            {
+                                double sum = 0;
+                                for(int j = t; j < t_end; j++)
+                                    if(j != i)
+                                        sum += Math.pow(D.get(i-b, j-t), 2);
+                                candidateDistance[i] += sum;
+                            }
+                        }
+                    }
+                });
+                
+                for(int i = 0; i < n_c; i++)
+                    if(candidateDistance[i] < bestMedCandDist[c])
+                    {
+                        bestMedCand[c] = clusterMembers.getI(i);
+                        bestMedCandDist[c] = candidateDistance[i];
+                    }
             }
             System.arraycopy(bestMedCand, 0, medioids, 0, medioids.length);
         }
@@ -245,6 +293,33 @@ public class PAM implements KClusterer
         return totalDistance.sum();
     }
 
+    /**
+     * Returns the part of an acceleration cache for a contiguous range of the
+     * vectors it was built from, or {@code null} if there is no cache
+     */
+    private static List<Double> subCache(List<Double> accel, int n, int start, int end)
+    {
+        if(accel == null)
+            return null;
+        int factor = accel.size()/n;
+        return accel.subList(start*factor, end*factor);
+    }
+    
+    /**
+     * Returns the part of an acceleration cache for a subset of the vectors it
+     * was built from, or {@code null} if there is no cache
+     */
+    private static List<Double> subCache(List<Double> accel, int n, List<Integer> indices)
+    {
+        if(accel == null)
+            return null;
+        int factor = accel.size()/n;
+        DoubleList sub = new DoubleList(indices.size()*factor);
+        for(int i : indices)
+            sub.addAll(accel.subList(i*factor, (i+1)*factor));
+        return sub;
+    }
+
     @Override
     public int[] cluster(DataSet dataSet, boolean parallel, int[] designations)
     {
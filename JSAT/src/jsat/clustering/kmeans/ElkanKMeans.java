@@ -138,13 +138,13 @@ public class ElkanKMeans extends KMeans
             final List<Vec> X = dataSet.getDataVectors();
             
             //Distance computation acceleration
-            final List<Double> distAccelCache;
+            final DoubleList distAccelCache;
             final List<List<Double>> meanQIs = new ArrayList<>(k);
             //done a wonky way b/c we want this as a final object for convinence, otherwise we may be stuck with null accel when we dont need to be
             if(accelCache == null)
-                distAccelCache = dm.getAccelerationCache(X, parallel);
+                distAccelCache = dm.getPrimitiveAccelerationCache(X, parallel);
             else
-                distAccelCache = accelCache;
+                distAccelCache = DoubleList.asDoubleList(accelCache);
             
             if(means.size() != k)
             {
@@ -173,7 +173,7 @@ public class ElkanKMeans extends KMeans
             {
                 oldMeans[i] = means.get(i).clone();//This way the new vectors are of the same implementation
                 if(dm.supportsAcceleration())
-                    meanQIs.add(dm.getQueryInfo(means.get(i)));
+                    meanQIs.add(dm.getPrimitiveQueryInfo(means.get(i)));
                 else
                     meanQIs.add(Collections.EMPTY_LIST);//Avoid null pointers
                 meanSums[i] = new DenseVector(D);
@@ -355,7 +355,7 @@ public class ElkanKMeans extends KMeans
             distancesMoved[i] = dm.dist(oldMeans[i], means.get(i));
 
             if(dm.supportsAcceleration())
-                meanQIs.set(i, dm.getQueryInfo(means.get(i)));
+                meanQIs.set(i, dm.getPrimitiveQueryInfo(means.get(i)));
 
             //Step 5
             for (int q = 0; q < N; q++)
@@ -423,7 +423,7 @@ public class ElkanKMeans extends KMeans
 
     private void calculateCentroidDistances(final int k, final double[][] centroidSelfDistances, final List<Vec> means, final double[] sC, final double[] meanSummaryConsts, boolean parallel)
     {
-        final List<Double> meanAccelCache = dm.supportsAcceleration() ? dm.getAccelerationCache(means) : null;
+        final DoubleList meanAccelCache = dm.supportsAcceleration() ? dm.getPrimitiveAccelerationCache(means, false) : null;
         
         //TODO can improve parallel performance for when k ~<= # cores
         ParallelUtils.run(parallel, k, (i)->
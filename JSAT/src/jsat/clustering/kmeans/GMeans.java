@@ -11,6 +11,7 @@ import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.clustering.SeedSelectionMethods;
 import jsat.linear.*;
+import jsat.utils.DoubleList;
 import static java.lang.Math.*;
 
 /**
@@ -177,7 +178,7 @@ public class GMeans extends KMeans
         List<Boolean> dontRedo = new ArrayList<Boolean>(Collections.nCopies(means.size(), false));
         
         //pre-compute acceleration cache instead of re-computing every refine call
-        List<Double> accelCache = dm.getAccelerationCache(dataSet.getDataVectors(), parallel);
+        DoubleList accelCache = dm.getPrimitiveAccelerationCache(dataSet.getDataVectors(), parallel);
         
         double thresh = 1.8692;//TODO make this configurable
         int origMeans;
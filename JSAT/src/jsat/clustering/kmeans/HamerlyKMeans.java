@@ -104,11 +104,11 @@ public class HamerlyKMeans extends KMeans
         else
             W = dataPointWeights;
         final List<Vec> X = dataSet.getDataVectors();
-        final List<Double> distAccel;//used like htis b/c we want it final for convinence, but input may be null
+        final DoubleList distAccel;//used like htis b/c we want it final for convinence, but input may be null
         if(accelCache == null)
-            distAccel = dm.getAccelerationCache(X, parallel);
+            distAccel = dm.getPrimitiveAccelerationCache(X, parallel);
         else
-            distAccel = accelCache;
+            distAccel = DoubleList.asDoubleList(accelCache);
         
         final List<List<Double>> meanQI = new ArrayList<>(k);
         
@@ -430,7 +430,7 @@ public class HamerlyKMeans extends KMeans
             
             //set up Quer Info for means
             if(dm.supportsAcceleration())
-                meanQI.add(dm.getQueryInfo(means.get(j)));
+                meanQI.add(dm.getPrimitiveQueryInfo(means.get(j)));
             else
                 meanQI.add(Collections.EMPTY_LIST);
         }
@@ -527,7 +527,7 @@ public class HamerlyKMeans extends KMeans
             
             //update QI
             if(dm.supportsAcceleration())
-                meanQI.set(j, dm.getQueryInfo(means.get(j)));
+                meanQI.set(j, dm.getPrimitiveQueryInfo(means.get(j)));
         }
     }
     
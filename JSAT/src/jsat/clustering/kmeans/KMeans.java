@@ -17,6 +17,7 @@ import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.math.OnLineStatistics;
 import jsat.parameters.Parameter.ParameterHolder;
 import jsat.parameters.*;
+import jsat.utils.DoubleList;
 import jsat.utils.SystemInfo;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.utils.random.RandomUtil;
@@ -241,7 +242,7 @@ public abstract class KMeans extends KClustererBase implements Parameterized
         
         double[] totDistances = new double[highK-lowK+1];
         
-        List<Double> cache = dm.getAccelerationCache(dataSet.getDataVectors(), parallel);
+        DoubleList cache = dm.getPrimitiveAccelerationCache(dataSet.getDataVectors(), parallel);
         for(int k = lowK; k <= highK; k++)
         {
             totDistances[k-lowK] = cluster(dataSet, cache, k, new ArrayList<>(), designations, true, parallel, true, null);
@@ -3,6 +3,7 @@ package jsat.clustering.kmeans;
 import java.util.*;
 import jsat.DataSet;
 import jsat.linear.Vec;
+import jsat.utils.DoubleList;
 
 /**
  * This class provides a method of performing {@link KMeans} clustering when the
@@ -104,7 +105,7 @@ public class KMeansPDN extends KMeans
         List<Vec> curMeans = new ArrayList<>(highK);
         means = new ArrayList<>();//the best set of means
         //pre-compute cache instead of re-computing every time
-        List<Double> accelCache = dm.getAccelerationCache(dataSet.getDataVectors(), parallel);
+        DoubleList accelCache = dm.getPrimitiveAccelerationCache(dataSet.getDataVectors(), parallel);
         
         for(int k = 2; k < highK; k++)
         {
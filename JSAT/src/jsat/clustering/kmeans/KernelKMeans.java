@@ -221,7 +221,7 @@ public abstract class KernelKMeans extends KClustererBase implements Parameteriz
      */
     protected void setup(int K, int[] designations, Vec W)
     {
-        accel = kernel.getAccelerationCache(X);
+        accel = kernel.getPrimitiveAccelerationCache(X);
         
         final int N = X.size();
         selfK = new double[N];
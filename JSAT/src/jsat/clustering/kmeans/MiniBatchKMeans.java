@@ -219,15 +219,15 @@ public class MiniBatchKMeans extends KClustererBase
         TrainableDistanceMetric.trainIfNeeded(dm, dataSet, parallel);
         
         final List<Vec> source = dataSet.getDataVectors();
-        final List<Double> distCache;
-        distCache = dm.getAccelerationCache(source, parallel);
+        final DoubleList distCache;
+        distCache = dm.getPrimitiveAccelerationCache(source, parallel);
         
         means = SeedSelectionMethods.selectIntialPoints(dataSet, clusters, dm, distCache, RandomUtil.getRandom(), seedSelection, parallel);
         
         final List<List<Double>> meanQIs = new ArrayList<>(means.size());
         for (int i = 0; i < means.size(); i++)
             if (dm.supportsAcceleration())
-                meanQIs.add(dm.getQueryInfo(means.get(i)));
+                meanQIs.add(dm.getPrimitiveQueryInfo(means.get(i)));
             else
                 meanQIs.add(Collections.EMPTY_LIST);
 
@@ -286,7 +286,7 @@ public class MiniBatchKMeans extends KClustererBase
             //update mean caches
             if(dm.supportsAcceleration())
                 for(int i = 0; i < means.size(); i++)
-                    meanQIs.set(i, dm.getQueryInfo(means.get(i)));
+                    meanQIs.set(i, dm.getPrimitiveQueryInfo(means.get(i)));
         }
         
         //Stochastic travel complete, calculate all
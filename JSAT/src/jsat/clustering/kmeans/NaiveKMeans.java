@@ -14,11 +14,14 @@ import jsat.DataSet;
 import jsat.clustering.SeedSelectionMethods;
 import jsat.clustering.SeedSelectionMethods.SeedSelection;
 import static jsat.clustering.SeedSelectionMethods.selectIntialPoints;
+import jsat.linear.DenseMatrix;
 import jsat.linear.DenseVector;
+import jsat.linear.Matrix;
 import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.linear.distancemetrics.TrainableDistanceMetric;
+import jsat.utils.DoubleList;
 import jsat.utils.FakeExecutor;
 import jsat.utils.SystemInfo;
 import jsat.utils.concurrent.AtomicDoubleArray;
@@ -40,6 +43,10 @@ public class NaiveKMeans extends KMeans
 {
 
     private static final long serialVersionUID = 6164910874898843069L;
+    /**
+     * The number of points whose distances to the means are computed together
+     */
+    private static final int BLOCK_SIZE = 256;
 
     /**
      * Creates a new naive k-Means cluster using
@@ -157,19 +164,43 @@ public class NaiveKMeans extends KMeans
         do
         {
             changes.reset();
+            final List<Double> meanCache;
+            if(dm.supportsAcceleration())
+            {
+                meanCache = new DoubleList(k);
+                for(List<Double> qi : meanQIs)
+                    meanCache.addAll(qi);
+            }
+            else
+                meanCache = null;
             
             ParallelUtils.run(parallel, N, (start, end) ->
             {
                 Vec[] deltas = localMeanDeltas.get();
-                double tmp;
+                //distances from a block of points to every mean at once
+                Matrix D = new DenseMatrix(Math.min(BLOCK_SIZE, end-start), means.size());
                 for (int i = start; i < end; i++)
                 {
+                    final int b = i - (i-start) % BLOCK_SIZE;
+                    if(i == b)
+                    {
+                        final int b_end = Math.min(b+BLOCK_SIZE, end);
+                        if(b_end-b != D.rows())
+                            D = new DenseMatrix(b_end-b, means.size());
+                        List<Double> blockCache = null;
+                        if(accelCache != null)
+                        {
+                            int factor = accelCache.size()/N;
+                            blockCache = accelCache.subList(b*factor, b_end*factor);
+                        }
+                        dm.dist(X.subList(b, b_end), blockCache, means, meanCache, D, false);
+                    }
                     final Vec x = X.get(i);
                     double minDist = Double.POSITIVE_INFINITY;
                     int min = -1;
                     for (int j = 0; j < means.size(); j++)
                     {
-                        tmp = dm.dist(i, means.get(j), meanQIs.get(j), X, accelCache);
+                        double tmp = D.get(i-b, j);
                         if (tmp < minDist)
                         {
                             minDist = tmp;
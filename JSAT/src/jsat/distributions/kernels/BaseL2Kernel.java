@@ -46,7 +46,7 @@ public abstract class BaseL2Kernel implements KernelTrick
     {
         if(cache == null)
             return Math.pow(vecs.get(i).pNormDist(2.0, vecs.get(j)), 2);
-        return cache.get(i)+cache.get(j)-2*vecs.get(i).dot(vecs.get(j));
+        return DoubleList.getD(cache, i)+DoubleList.getD(cache, j)-2*vecs.get(i).dot(vecs.get(j));
     }
     
     /**
@@ -58,7 +58,7 @@ public abstract class BaseL2Kernel implements KernelTrick
      */
     protected double getSqrdNorm(int i, List<? extends Vec> vecs, List<Double> cache)
     {
-        return cache.get(i);
+        return DoubleList.getD(cache, i);
     }
     
     /**
@@ -74,7 +74,7 @@ public abstract class BaseL2Kernel implements KernelTrick
     {
         if(cache == null)
             return Math.pow(vecs.get(i).pNormDist(2.0, y), 2);
-        return cache.get(i)+qi.get(0)-2*vecs.get(i).dot(y);
+        return DoubleList.getD(cache, i)+DoubleList.getD(qi, 0)-2*vecs.get(i).dot(y);
     }
 
     @Override
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.distributions.kernels;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import jsat.linear.DenseVector;
+import jsat.linear.LinearOperator;
+import jsat.linear.Vec;
+import jsat.utils.concurrent.ParallelUtils;
+
+/**
+ * The kernel matrix <i>K + &lambda;I</i> of a list of points, where
+ * <i>K<sub>i,j</sub> = k(x<sub>i</sub>, x<sub>j</sub>)</i>, as a
+ * {@link LinearOperator}. The kernel values are recomputed for every product
+ * instead of stored, so memory use is that of the points themselves rather
+ * than O(n<sup>2</sup>). Each product costs n<sup>2</sup> kernel evaluations,
+ * which are split by rows across threads when a thread pool is given.
+ *
+ * @author Edward Raff
+ */
+public class KernelOperator implements LinearOperator, Serializable
+{
+    private static final long serialVersionUID = -5071606233458719338L;
+    private final KernelTrick k;
+    private final List<? extends Vec> vecs;
+    private final List<Double> cache;
+    private final double lambda;
+
+    /**
+     * Creates the kernel matrix operator <i>K</i>
+     *
+     * @param k the kernel to use
+     * @param vecs the points the kernel matrix is over
+     */
+    public KernelOperator(KernelTrick k, List<? extends Vec> vecs)
+    {
+        this(k, vecs, 0.0);
+    }
+
+    /**
+     * Creates the kernel matrix operator <i>K + &lambda;I</i>
+     *
+     * @param k the kernel to use
+     * @param vecs the points the kernel matrix is over
+     * @param lambda the value to add to the diagonal
+     */
+    public KernelOperator(KernelTrick k, List<? extends Vec> vecs, double lambda)
+    {
+        if(Double.isNaN(lambda) || Double.isInfinite(lambda))
+            throw new IllegalArgumentException("lambda must be a real value, not " + lambda);
+        this.k = k;
+        this.vecs = vecs;
+        this.cache = k.getAccelerationCache(vecs);
+        this.lambda = lambda;
+    }
+
+    /**
+     * Returns the value added to the diagonal
+     *
+     * @return the value added to the diagonal
+     */
+    public double getLambda()
+    {
+        return lambda;
+    }
+
+    @Override
+    public int rows()
+    {
+        return vecs.size();
+    }
+
+    @Override
+    public int cols()
+    {
+        return vecs.size();
+    }
+
+    @Override
+    public void apply(Vec x, double z, Vec y)
+    {
+        apply(x, z, y, null);
+    }
+
+    @Override
+    public void apply(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        final int n = vecs.size();
+        if(x.length() != n || y.length() != n)
+            throw new ArithmeticException("Vector lengths do not agree with a " + n + " x " + n + " kernel matrix");
+        final double[] x_d = x.arrayCopy();
+        final double[] out = new double[n];
+        ParallelUtils.run(threadPool != null, n, (start, end) ->
+        {
+            for(int i = start; i < end; i++)
+            {
+                double sum = lambda*x_d[i];
+                for(int j = 0; j < n; j++)
+                    if(x_d[j] != 0)
+                        sum += k.eval(i, j, vecs, cache)*x_d[j];
+                out[i] = sum;
+            }
+        }, threadPool);
+        for(int i = 0; i < n; i++)
+            y.increment(i, z*out[i]);
+    }
+
+    @Override
+    public void applyTranspose(Vec x, double z, Vec y)
+    {
+        apply(x, z, y);
+    }
+
+    @Override
+    public void applyTranspose(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        apply(x, z, y, threadPool);
+    }
+
+    /**
+     * Computes the diagonal <i>k(x<sub>i</sub>, x<sub>i</sub>) + &lambda;</i>
+     * of this operator
+     *
+     * @return a new vector with the diagonal of this operator
+     */
+    public Vec getDiagonal()
+    {
+        DenseVector d = new DenseVector(vecs.size());
+        for(int i = 0; i < vecs.size(); i++)
+            d.set(i, k.eval(i, i, vecs, cache) + lambda);
+        return d;
+    }
+}
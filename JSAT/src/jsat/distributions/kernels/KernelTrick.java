@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.List;
 import jsat.linear.Vec;
 import jsat.parameters.Parameterized;
+import jsat.utils.DoubleList;
 
 /**
  * The KernelTrick is a method can can be used to alter an algorithm to do its 
@@ -57,13 +58,32 @@ public interface KernelTrick extends Parameterized, Cloneable, Serializable
     /**
      * Creates a new list cache values from a given list of training set 
      * vectors. If this kernel does not support acceleration, {@code null} will 
-     * be returned.
+     * be returned. The cache accelerated methods read the values with 
+     * {@link DoubleList#getD(java.util.List, int) }, so a DoubleList cache is
+     * never boxed. Any other {@code List<Double>} is still accepted. 
      *
      * @param trainingSet the list of training set vectors
      * @return a list of cache values that may be used by this kernel
      */
     public List<Double> getAccelerationCache(List<? extends Vec> trainingSet);
     
+    /**
+     * Returns the same cache as 
+     * {@link #getAccelerationCache(java.util.List) }, with the values stored 
+     * as primitive doubles. If the kernel's cache is already a 
+     * {@link DoubleList} it is returned without copying. The query information
+     * can be converted the same way with 
+     * {@link DoubleList#asDoubleList(java.util.List) }. 
+     *
+     * @param trainingSet the list of training set vectors
+     * @return the cache values, or {@code null} if this kernel does not 
+     * support acceleration
+     */
+    default public DoubleList getPrimitiveAccelerationCache(List<? extends Vec> trainingSet)
+    {
+        return DoubleList.asDoubleList(getAccelerationCache(trainingSet));
+    }
+    
     /**
      * Pre computes query information that would have be generated if the query 
      * was a member of the original list of vectors when calling 
@@ -71,157 +71,240 @@ public class ARFFLoader
         DataStore list = store.emptyClone();
         DoubleList weights = new DoubleList();
         
-        BufferedReader br = new BufferedReader(input);
+        ArffReader reader = null;
+        try
+        {
+            reader = new ArffReader(readHeader(new BufferedReader(input)));
+            list.setNumNumeric(reader.dim);
+            list.setCategoricalDataInfo(reader.catInfo);
+            while(reader.next())
+            {
+                list.addDataPoint(reader.getDataPoint()); 
+                weights.add(reader.getWeight());
+            }
+        }
+        catch (IOException ex)
+        {
+            
+        }
+        
+        SimpleDataSet dataSet =  new SimpleDataSet(list);
+        for(int i = 0; i < weights.size(); i++)
+            dataSet.setWeight(i, weights.getD(i));
+        if(reader != null)
+        {
+            int k = 0;
+            for (int i = 0; i < reader.header.isReal.size(); i++)
+                if (reader.header.isReal.get(i))
+                    dataSet.setNumericName(reader.header.variableNames.get(i), k++);
+        }
         
+        return dataSet;
+    }
+    
+    /**
+     * Returns a source of readers that stream an ARFF file one data point at a
+     * time, rather than loading the whole file into memory. The points are
+     * read the same way as {@link #loadArffFile(java.io.File) }.
+     *
+     * @param file the path to the ARFF file to read
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory stream(final File file)
+    {
+        return () ->
+        {
+            BufferedReader br = new BufferedReader(new FileReader(file));
+            try
+            {
+                return new ArffReader(readHeader(br));
+            }
+            catch(IOException | RuntimeException ex)
+            {
+                br.close();
+                throw ex;
+            }
+        };
+    }
+    
+    /**
+     * The attribute information of an ARFF file
+     */
+    private static class Header
+    {
+        BufferedReader br;
         int numOfVars = 0;
         int numReal = 0;
         List<Boolean> isReal = new ArrayList<>();
         List<String> variableNames = new ArrayList<>();
         List<HashMap<String, Integer>> catVals = new  ArrayList<>();
-        String line = null;
-        CategoricalData[] categoricalData = null;
-        try
+        CategoricalData[] categoricalData;
+    }
+    
+    /**
+     * Reads the attributes of an ARFF file, leaving the reader positioned
+     * just after the "@data" line.
+     */
+    private static Header readHeader(BufferedReader br) throws IOException
+    {
+        Header header = new Header();
+        header.br = br;
+        List<HashMap<String, Integer>> catVals = header.catVals;
+        String line;
+        while( (line = br.readLine()) != null )
         {
-            boolean atData = false;
-            while( (line = br.readLine()) != null )
+            if(line.startsWith("%") || line.trim().isEmpty())
+                continue;///Its a comment, skip
+
+            line = line.trim();
+
+            if(line.startsWith("@"))
             {
-                if(line.startsWith("%") || line.trim().isEmpty())
-                    continue;///Its a comment, skip
-                
-                line = line.trim();
-                
-                if(line.startsWith("@") && !atData)
+                line = line.substring(1).toLowerCase();
+
+                if(line.toLowerCase().startsWith("data"))
+                    break;
+                else if(!line.toLowerCase().startsWith("attribute"))
+                    continue;
+                header.numOfVars++;
+                line = line.substring("attribute".length()).trim();//Remove the space, it could be multiple spaces
+
+                String variableName = null;
+                line = line.replace("\t", " ");
+                if(line.startsWith("'"))
                 {
-                    line = line.substring(1).toLowerCase();
-                    
-                    
-                    if(line.toLowerCase().startsWith("data"))
-                    {
-                        categoricalData = new CategoricalData[numOfVars-numReal];
-                        
-                        int k = 0;
-                        for(int i = 0; i < catVals.size(); i++)
-                        {
-                            if(catVals.get(i) != null)
-                            {
-                                categoricalData[k] = new CategoricalData(catVals.get(i).size());
-                                categoricalData[k].setCategoryName(variableNames.get(i));
-                                for(Entry<String, Integer> entry : catVals.get(i).entrySet())
-                                    categoricalData[k].setOptionName(entry.getKey(), entry.getValue());
-                                k++;
-                            }
-                        }
-                        
-                        //prept to start reading in data
-                        list.setNumNumeric(numReal);
-                        list.setCategoricalDataInfo(categoricalData);
-                        atData = true;
-                        continue;
-                    }
-                    else if(!line.toLowerCase().startsWith("attribute"))
-                        continue;
-                    numOfVars++;
-                    line = line.substring("attribute".length()).trim();//Remove the space, it could be multiple spaces
-                    
-                    String variableName = null;
-                    line = line.replace("\t", " ");
-                    if(line.startsWith("'"))
-                    {
-                        Pattern p = Pattern.compile("'.+?'");
-                        Matcher m = p.matcher(line);
-                        m.find();
-                        variableName = nameTrim(m.group());
-                                
-                        line = line.replaceFirst("'.+?'", "placeHolder");
-                    }
-                    else
-                        variableName = nameTrim(line.trim().replaceAll("\\s+.*", ""));
-                    variableNames.add(variableName);
-                    String[] tmp = line.split("\\s+", 2);
-                    
-                    
-                    if(tmp[1].trim().equals("real") || tmp[1].trim().equals("numeric") || tmp[1].trim().startsWith("integer"))
-                    {
-                        numReal++;
-                        isReal.add(true);
-                        catVals.add(null);
-                    }
-                    else//Not correct, but we arent supporting anything other than real and categorical right now
-                    {
-                        isReal.add(false);
-                        String cats = tmp[1].replace("{", "").replace("}", "").trim();
-                        if(cats.endsWith(","))
-                            cats = cats.substring(0, cats.length()-1);
-                        String[] catValsRaw =  cats.split(",");
-                        HashMap<String, Integer> tempMap = new HashMap<String, Integer>();
-                        for(int i = 0; i < catValsRaw.length; i++)
-                        {
-                            catValsRaw[i] = nameTrim(catValsRaw[i]);
-                            tempMap.put(catValsRaw[i], i);
-                        }
-                        catVals.add(tempMap);
-                    }
+                    Pattern p = Pattern.compile("'.+?'");
+                    Matcher m = p.matcher(line);
+                    m.find();
+                    variableName = nameTrim(m.group());
+
+                    line = line.replaceFirst("'.+?'", "placeHolder");
                 }
-                else if(atData && !line.isEmpty())
+                else
+                    variableName = nameTrim(line.trim().replaceAll("\\s+.*", ""));
+                header.variableNames.add(variableName);
+                String[] tmp = line.split("\\s+", 2);
+
+
+                if(tmp[1].trim().equals("real") || tmp[1].trim().equals("numeric") || tmp[1].trim().startsWith("integer"))
                 {
-                    double weight = 1.0;
-                    String[] tmp = line.split(",");
-                    if(tmp.length != isReal.size())
-                    {
-                        String s = tmp[isReal.size()];
-                        if(tmp.length == isReal.size()+1)//{#} means the # is the weight
-                        {
-                            if(!s.matches("\\{\\d+(\\.\\d+)?\\}"))
-                                throw new RuntimeException("extra column must indicate a data point weigh in the form of \"{#}\", instead bad token " + s + " was found");
-                            weight = Double.parseDouble(s.substring(1, s.length()-1));
-                        }
-                        else
-                        {
-                            throw new RuntimeException("Column had " + tmp.length + " values instead of " + isReal.size());
-                        }
-                    }
-                        
-                    DenseVector vec = new DenseVector(numReal);
-                    
-                    int[] cats = new int[numOfVars - numReal];
-                    int k = 0;//Keeping track of position in cats
-                    for(int i  = 0; i < isReal.size(); i++)
+                    header.numReal++;
+                    header.isReal.add(true);
+                    catVals.add(null);
+                }
+                else//Not correct, but we arent supporting anything other than real and categorical right now
+                {
+                    header.isReal.add(false);
+                    String cats = tmp[1].replace("{", "").replace("}", "").trim();
+                    if(cats.endsWith(","))
+                        cats = cats.substring(0, cats.length()-1);
+                    String[] catValsRaw =  cats.split(",");
+                    HashMap<String, Integer> tempMap = new HashMap<String, Integer>();
+                    for(int i = 0; i < catValsRaw.length; i++)
                     {
-                        String val_string = tmp[i].trim();
-                        if (isReal.get(i))
-                            if (val_string.equals("?"))//missing value, indicated by NaN
-                                vec.set(i - k, Double.NaN);
-                            else
-                                vec.set(i - k, Double.parseDouble(val_string));
-                        else//Categorical
-                        {
-                            tmp[i] = nameTrim(tmp[i]).trim().toLowerCase();
-                            if(tmp[i].equals("?"))//missing value, indicated by -1
-                                cats[k++] = -1;
-                            else
-                                cats[k++] = catVals.get(i).get(tmp[i]);
-                        }
+                        catValsRaw[i] = nameTrim(catValsRaw[i]);
+                        tempMap.put(catValsRaw[i], i);
                     }
-                    
-                    list.addDataPoint(new DataPoint(vec, cats, categoricalData)); 
-                    weights.add(weight);
+                    catVals.add(tempMap);
                 }
             }
         }
-        catch (IOException ex)
+        
+        CategoricalData[] categoricalData = new CategoricalData[header.numOfVars-header.numReal];
+
+        int k = 0;
+        for(int i = 0; i < catVals.size(); i++)
+        {
+            if(catVals.get(i) != null)
+            {
+                categoricalData[k] = new CategoricalData(catVals.get(i).size());
+                categoricalData[k].setCategoryName(header.variableNames.get(i));
+                for(Entry<String, Integer> entry : catVals.get(i).entrySet())
+                    categoricalData[k].setOptionName(entry.getKey(), entry.getValue());
+                k++;
+            }
+        }
+        header.categoricalData = categoricalData;
+        return header;
+    }
+    
+    /**
+     * Reads the data lines of an ARFF file
+     */
+    private static class ArffReader extends DataReader
+    {
+        final Header header;
+
+        public ArffReader(Header header)
         {
+            super(header.categoricalData, header.numReal, null, DataWriter.DataSetType.SIMPLE);
+            this.header = header;
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            final List<Boolean> isReal = header.isReal;
+            final int numReal = header.numReal;
+            String line;
+            do
+            {
+                line = header.br.readLine();
+                if(line == null)
+                    return false;
+            }
+            while(line.startsWith("%") || line.trim().isEmpty());
+            line = line.trim();
             
+            double weight = 1.0;
+            String[] tmp = line.split(",");
+            if(tmp.length != isReal.size())
+            {
+                String s = tmp[isReal.size()];
+                if(tmp.length == isReal.size()+1)//{#} means the # is the weight
+                {
+                    if(!s.matches("\\{\\d+(\\.\\d+)?\\}"))
+                        throw new RuntimeException("extra column must indicate a data point weigh in the form of \"{#}\", instead bad token " + s + " was found");
+                    weight = Double.parseDouble(s.substring(1, s.length()-1));
+                }
+                else
+                {
+                    throw new RuntimeException("Column had " + tmp.length + " values instead of " + isReal.size());
+                }
+            }
+
+            DenseVector vec = new DenseVector(numReal);
+
+            int[] cats = new int[header.numOfVars - numReal];
+            int k = 0;//Keeping track of position in cats
+            for(int i  = 0; i < isReal.size(); i++)
+            {
+                String val_string = tmp[i].trim();
+                if (isReal.get(i))
+                    if (val_string.equals("?"))//missing value, indicated by NaN
+                        vec.set(i - k, Double.NaN);
+                    else
+                        vec.set(i - k, Double.parseDouble(val_string));
+                else//Categorical
+                {
+                    tmp[i] = nameTrim(tmp[i]).trim().toLowerCase();
+                    if(tmp[i].equals("?"))//missing value, indicated by -1
+                        cats[k++] = -1;
+                    else
+                        cats[k++] = header.catVals.get(i).get(tmp[i]);
+                }
+            }
+
+            this.dp = new DataPoint(vec, cats, catInfo);
+            this.weight = weight;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            header.br.close();
         }
-        
-        SimpleDataSet dataSet =  new SimpleDataSet(list);
-        for(int i = 0; i < weights.size(); i++)
-            dataSet.setWeight(i, weights.getD(i));
-        int k = 0;
-        for (int i = 0; i < isReal.size(); i++)
-            if (isReal.get(i))
-                dataSet.setNumericName(variableNames.get(i), k++);
-        
-        return dataSet;
     }
     
     public static void writeArffFile(DataSet data, OutputStream os) {
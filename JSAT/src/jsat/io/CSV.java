@@ -286,6 +286,475 @@ public class CSV
         return (SimpleDataSet) readCSV(reader, lines_to_skip, delimiter, comment, cat_cols, -1, -1);
     }
     
+    /**
+     * Reads in a CSV dataset as a regression dataset, parsing the file in
+     * parallel.
+     * The file is memory mapped and split into chunks that are parsed in
+     * parallel, see {@link #read(java.nio.file.Path, char, int, char, java.util.Set, jsat.DataStore, boolean) }.
+     *
+     * @param numeric_target_column the column index (starting from zero) of the
+     * feature that will be the target regression value
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return the regression dataset from the given CSV file
+     * @throws IOException
+     */
+    public static RegressionDataSet readR(int numeric_target_column, Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols, boolean parallel) throws IOException
+    {
+        return readR(numeric_target_column, path, delimiter, lines_to_skip, comment, cat_cols, DataStore.DEFAULT_STORE.emptyClone(), parallel);
+    }
+    
+    /**
+     * Reads in a CSV dataset as a regression dataset, parsing the file in
+     * parallel.
+     * The file is memory mapped and split into chunks that are parsed in
+     * parallel, see {@link #read(java.nio.file.Path, char, int, char, java.util.Set, jsat.DataStore, boolean) }.
+     *
+     * @param numeric_target_column the column index (starting from zero) of the
+     * feature that will be the target regression value
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @param store the empty data store to place the data points into
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return the regression dataset from the given CSV file
+     * @throws IOException
+     */
+    public static RegressionDataSet readR(int numeric_target_column, Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols, DataStore store, boolean parallel) throws IOException
+    {
+        return (RegressionDataSet) readCSV(path, lines_to_skip, delimiter, comment, cat_cols, numeric_target_column, -1, store, parallel);
+    }
+    
+    /**
+     * Reads in a CSV dataset as a classification dataset, parsing the file in
+     * parallel.
+     * The file is memory mapped and split into chunks that are parsed in
+     * parallel, see {@link #read(java.nio.file.Path, char, int, char, java.util.Set, jsat.DataStore, boolean) }.
+     *
+     * @param classification_target the column index (starting from zero) of the
+     * feature that will be the categorical target value
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return the classification dataset from the given CSV file
+     * @throws IOException
+     */
+    public static ClassificationDataSet readC(int classification_target, Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols, boolean parallel) throws IOException
+    {
+        return readC(classification_target, path, delimiter, lines_to_skip, comment, cat_cols, DataStore.DEFAULT_STORE.emptyClone(), parallel);
+    }
+    
+    /**
+     * Reads in a CSV dataset as a classification dataset, parsing the file in
+     * parallel.
+     * The file is memory mapped and split into chunks that are parsed in
+     * parallel, see {@link #read(java.nio.file.Path, char, int, char, java.util.Set, jsat.DataStore, boolean) }.
+     *
+     * @param classification_target the column index (starting from zero) of the
+     * feature that will be the categorical target value
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @param store the empty data store to place the data points into
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return the classification dataset from the given CSV file
+     * @throws IOException
+     */
+    public static ClassificationDataSet readC(int classification_target, Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols, DataStore store, boolean parallel) throws IOException
+    {
+        return (ClassificationDataSet) readCSV(path, lines_to_skip, delimiter, comment, cat_cols, -1, classification_target, store, parallel);
+    }
+    
+    /**
+     * Reads in the given CSV dataset as a simple CSV file, parsing the file in
+     * parallel.
+     * The file is memory mapped and split into chunks that are parsed in
+     * parallel, see {@link #read(java.nio.file.Path, char, int, char, java.util.Set, jsat.DataStore, boolean) }.
+     *
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return a simple dataset of the given CSV file
+     * @throws IOException
+     */
+    public static SimpleDataSet read(Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols, boolean parallel) throws IOException
+    {
+        return read(path, delimiter, lines_to_skip, comment, cat_cols, DataStore.DEFAULT_STORE.emptyClone(), parallel);
+    }
+    
+    /**
+     * Reads in the given CSV dataset as a simple CSV file, parsing the file in
+     * parallel. The file is memory mapped and split into chunks that each
+     * start at the beginning of a line. The chunks are parsed concurrently,
+     * and the data points are then added to the store in the same order they
+     * occur in the file. The resulting dataset is the same as would be
+     * obtained by {@link #read(java.nio.file.Path, char, int, char, java.util.Set) },
+     * except that numeric values are always correctly rounded.
+     * <br>
+     * The file must use an ASCII compatible encoding, such as UTF-8. If the
+     * delimiter or comment characters are not ASCII, the file will be read
+     * using a single thread instead.
+     *
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @param store the empty data store to place the data points into
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return a simple dataset of the given CSV file
+     * @throws IOException
+     */
+    public static SimpleDataSet read(Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols, DataStore store, boolean parallel) throws IOException
+    {
+        return (SimpleDataSet) readCSV(path, lines_to_skip, delimiter, comment, cat_cols, -1, -1, store, parallel);
+    }
+    
+    private static DataSet<?> readCSV(Path path, int lines_to_skip, char delimiter, char comment, Set<Integer> cat_col, int numeric_target, int cat_target, DataStore store, boolean parallel) throws IOException
+    {
+        if(MappedCSV.canParse(delimiter) && MappedCSV.canParse(comment))
+            return MappedCSV.read(path, lines_to_skip, delimiter, comment, cat_col, numeric_target, cat_target, store, parallel);
+        //can't split the bytes safely, fall back to reading it all in one go
+        DataSet<?> d;
+        try (BufferedReader br = Files.newBufferedReader(path, Charset.defaultCharset()))
+        {
+            d = readCSV(br, lines_to_skip, delimiter, comment, cat_col, numeric_target, cat_target);
+        }
+        d.setDataStore(store);
+        return d;
+    }
+    
+    /**
+     * Returns a source of readers that stream a CSV file one data point at a
+     * time, rather than loading the whole file into memory. This allows files
+     * larger than memory to be used with
+     * {@link jsat.regression.BaseUpdateableRegressor#trainEpochs(jsat.io.DataReader.Factory, jsat.regression.UpdateableRegressor, int, int, int) }.
+     * If there are categorical features, one extra pass is made over the file
+     * the first time a reader is opened to find their options, which are
+     * ordered the same as when loading the whole file.
+     *
+     * @param numeric_target_column the column index (starting from zero) of
+     * the feature that will be the target regression value
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory streamR(int numeric_target_column, Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols)
+    {
+        return stream(path, lines_to_skip, delimiter, comment, cat_cols, numeric_target_column, -1);
+    }
+    
+    /**
+     * Returns a source of readers that stream a CSV file one data point at a
+     * time, rather than loading the whole file into memory. This allows files
+     * larger than memory to be used with
+     * {@link jsat.classifiers.BaseUpdateableClassifier#trainEpochs(jsat.io.DataReader.Factory, jsat.classifiers.UpdateableClassifier, int, int, int) }.
+     * One extra pass is made over the file the first time a reader is opened
+     * to find the options of the categorical features and the class label,
+     * which are ordered the same as when loading the whole file.
+     *
+     * @param classification_target the column index (starting from zero) of
+     * the feature that will be the categorical target value
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory streamC(int classification_target, Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols)
+    {
+        return stream(path, lines_to_skip, delimiter, comment, cat_cols, -1, classification_target);
+    }
+    
+    /**
+     * Returns a source of readers that stream a CSV file one data point at a
+     * time, rather than loading the whole file into memory. If there are
+     * categorical features, one extra pass is made over the file the first
+     * time a reader is opened to find their options.
+     *
+     * @param path the CSV file to read
+     * @param delimiter the delimiter to separate columns, usually a comma
+     * @param lines_to_skip the number of lines to skip when reading in the CSV
+     * (used to skip header information)
+     * @param comment the character used to indicate the start of a comment.
+     * Once this character is reached, anything at and after the character will
+     * be ignored.
+     * @param cat_cols a set of the indices to treat as categorical features.
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory stream(Path path, char delimiter, int lines_to_skip, char comment, Set<Integer> cat_cols)
+    {
+        return stream(path, lines_to_skip, delimiter, comment, cat_cols, -1, -1);
+    }
+    
+    private static DataReader.Factory stream(final Path path, final int lines_to_skip, final char delimiter, final char comment, final Set<Integer> cat_col, final int numeric_target, final int cat_target)
+    {
+        return new DataReader.Factory()
+        {
+            /**
+             * The number of columns, found on the first open
+             */
+            int totalCols = -1;
+            /**
+             * The option index of each categorical value for every categorical
+             * column, including the target
+             */
+            Map<Integer, Map<String, Integer>> options;
+            
+            @Override
+            public synchronized DataReader open() throws IOException
+            {
+                if(totalCols < 0)
+                {
+                    Map<Integer, Set<String>> seen = new HashMap<>();
+                    for(int col : cat_col)
+                        seen.put(col, new HashSet<>());
+                    if(cat_target >= 0)
+                        seen.put(cat_target, new HashSet<>());
+                    try(LineReader scan = new LineReader(path, lines_to_skip, delimiter, comment))
+                    {
+                        List<String> values;
+                        while((values = scan.nextLine()) != null)
+                        {
+                            if(totalCols < 0)
+                                totalCols = values.size();
+                            if(seen.isEmpty())
+                                break;//only needed the number of columns
+                            for(Map.Entry<Integer, Set<String>> entry : seen.entrySet())
+                                if(entry.getKey() < values.size() && !values.get(entry.getKey()).isEmpty())
+                                    entry.getValue().add(values.get(entry.getKey()));
+                        }
+                    }
+                    if(totalCols < 0)
+                        throw new IOException("CSV file " + path + " has no data");
+                    options = new HashMap<>();
+                    for(Map.Entry<Integer, Set<String>> entry : seen.entrySet())
+                    {
+                        //same order as when the whole file is loaded
+                        List<String> sortedOrder = new ArrayList<>(entry.getValue());
+                        Collections.sort(sortedOrder);
+                        Map<String, Integer> map = new HashMap<>();
+                        for(int i = 0; i < sortedOrder.size(); i++)
+                            map.put(sortedOrder.get(i), i);
+                        options.put(entry.getKey(), map);
+                    }
+                }
+                return new CSVReader(new LineReader(path, lines_to_skip, delimiter, comment), totalCols, options, numeric_target, cat_target);
+            }
+        };
+    }
+    
+    /**
+     * Splits the lines of a CSV file into values, skipping empty and comment
+     * lines
+     */
+    private static class LineReader implements Closeable
+    {
+        private final BufferedReader br;
+        private final char delimiter;
+        private final char comment;
+        private int lines_to_skip;
+        private final List<String> values = new ArrayList<>();
+
+        public LineReader(Path path, int lines_to_skip, char delimiter, char comment) throws IOException
+        {
+            this.br = Files.newBufferedReader(path, Charset.defaultCharset());
+            this.lines_to_skip = lines_to_skip;
+            this.delimiter = delimiter;
+            this.comment = comment;
+        }
+
+        /**
+         *
+         * @return the trimmed values of the next row, or {@code null} if there
+         * are no more rows. The list returned is reused by each call.
+         */
+        public List<String> nextLine() throws IOException
+        {
+            String line;
+            while(true)
+            {
+                line = br.readLine();
+                if(line == null)
+                    return null;
+                if(line.isEmpty())
+                    continue;
+                if(lines_to_skip > 0)
+                {
+                    lines_to_skip--;
+                    continue;
+                }
+                int c = line.indexOf(comment);
+                if(c >= 0)
+                    line = line.substring(0, c);
+                if(!line.trim().isEmpty())
+                    break;
+            }
+            values.clear();
+            int start = 0;
+            while(true)
+            {
+                int end = line.indexOf(delimiter, start);
+                values.add(line.substring(start, end < 0 ? line.length() : end).trim());
+                if(end < 0)
+                    break;
+                start = end + 1;
+            }
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            br.close();
+        }
+    }
+    
+    private static class CSVReader extends DataReader
+    {
+        private final LineReader lines;
+        private final int totalCols;
+        private final Map<Integer, Map<String, Integer>> options;
+        private final int numeric_target;
+        private final int cat_target;
+        /**
+         * The categorical columns other than the target, in order
+         */
+        private final int[] catColumns;
+
+        public CSVReader(LineReader lines, int totalCols, Map<Integer, Map<String, Integer>> options, int numeric_target, int cat_target)
+        {
+            super(categories(options, cat_target), 
+                    totalCols - (options.size() - (cat_target >= 0 ? 1 : 0)) - (numeric_target >= 0 || cat_target >= 0 ? 1 : 0), 
+                    cat_target >= 0 ? category(options.get(cat_target)) : null,
+                    cat_target >= 0 ? DataWriter.DataSetType.CLASSIFICATION : (numeric_target >= 0 ? DataWriter.DataSetType.REGRESSION : DataWriter.DataSetType.SIMPLE));
+            this.lines = lines;
+            this.totalCols = totalCols;
+            this.options = options;
+            this.numeric_target = numeric_target;
+            this.cat_target = cat_target;
+            this.catColumns = new int[catInfo.length];
+            int k = 0;
+            for(int col = 0; col < totalCols; col++)
+                if(options.containsKey(col) && col != cat_target)
+                    catColumns[k++] = col;
+        }
+
+        private static CategoricalData category(Map<String, Integer> map)
+        {
+            CategoricalData cd = new CategoricalData(Math.max(map.size(), 1));
+            for(Map.Entry<String, Integer> entry : map.entrySet())
+                cd.setOptionName(entry.getKey(), entry.getValue());
+            return cd;
+        }
+
+        private static CategoricalData[] categories(Map<Integer, Map<String, Integer>> options, int cat_target)
+        {
+            List<Integer> cols = new ArrayList<>(new TreeSet<>(options.keySet()));
+            cols.remove((Integer) cat_target);
+            CategoricalData[] cats = new CategoricalData[cols.size()];
+            for(int i = 0; i < cats.length; i++)
+                cats[i] = category(options.get(cols.get(i)));
+            return cats;
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            List<String> values = lines.nextLine();
+            if(values == null)
+                return false;
+            if(values.size() != totalCols)
+                throw new RuntimeException("Inconsistent number of columns in CSV");
+            
+            DenseVector vec = new DenseVector(dim);
+            int[] cats = new int[catColumns.length];
+            int n = 0, c = 0;
+            for(int col = 0; col < totalCols; col++)
+            {
+                String s = values.get(col);
+                if(col == cat_target)
+                {
+                    Integer val = options.get(col).get(s);
+                    if(val == null)
+                        throw new RuntimeException("Categorical column can't have missing values!");
+                    label = val;
+                }
+                else if(options.containsKey(col))
+                {
+                    Integer val = options.get(col).get(s);
+                    if(val == null && !s.isEmpty())
+                        throw new RuntimeException("Option " + s + " of column " + col + " was not seen when the file was first read");
+                    cats[c++] = s.isEmpty() ? -1 : val;
+                }
+                else
+                {
+                    double val = s.isEmpty() ? Double.NaN : StringUtils.parseDouble(s, 0, s.length());
+                    if(col == numeric_target)
+                        label = val;
+                    else
+                        vec.set(n++, val);
+                }
+            }
+            dp = new DataPoint(vec, cats, catInfo);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            lines.close();
+        }
+    }
+    
     private static DataSet<?> readCSV(Reader reader, int lines_to_skip, char delimiter, char comment, Set<Integer> cat_col, int numeric_target, int cat_target) throws IOException
     {
         StringBuilder processBuffer = new StringBuilder(20);
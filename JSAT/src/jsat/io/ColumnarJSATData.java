@@ -0,0 +1,793 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import jsat.ColumnMajorStore;
+import jsat.DataSet;
+import jsat.DataStore;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.io.JSATData.DatasetTypeMarker;
+import jsat.io.JSATData.FloatStorageMethod;
+import jsat.linear.DenseVector;
+import jsat.linear.IndexValue;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.DoubleList;
+import jsat.utils.IntList;
+
+/**
+ * Reads and writes the version 2 JSAT data format. The file starts with the
+ * same header as version 1, after which the rows are split into groups of a
+ * fixed number of rows. Each group stores every column as its own block, so
+ * that a column can be read without touching any other. The blocks are
+ * followed by a footer that gives the location of every block, which allows
+ * any range of rows or subset of columns to be read without reading the rest
+ * of the file.<br>
+ * <br>
+ * The columns of a file are the weight column, followed by the numeric
+ * columns and then the categorical columns. A regression target is stored as
+ * the last numeric column, and a class label as the last categorical column,
+ * which matches how version 1 files treat them when forced to be read as a
+ * {@link jsat.SimpleDataSet}.<br>
+ * <br>
+ * Numeric blocks are written either densely, or sparsely as a count of
+ * non-zero values followed by the varint encoded gaps between the rows that
+ * have a value and then the values themselves. Categorical blocks are zig-zag
+ * varint encoded. Each block may optionally be compressed with
+ * {@link Deflater#BEST_SPEED}, and is only kept compressed if that made it
+ * smaller.<br>
+ * <br>
+ * The file ends with the footer, an 8 byte offset of where the footer starts,
+ * and the version 2 magic number.
+ *
+ * @author Edward Raff
+ */
+final class ColumnarJSATData
+{
+    /**
+     * The default number of rows stored in each group of column blocks
+     */
+    static final int DEFAULT_ROWS_PER_BLOCK = 8192;
+
+    static final byte ENCODING_DENSE = 0;
+    static final byte ENCODING_SPARSE = 1;
+    static final byte ENCODING_INT = 2;
+
+    static final byte CODEC_NONE = 0;
+    static final byte CODEC_DEFLATE = 1;
+
+    /**
+     * The length of the trailer at the end of the file, which is the footer
+     * offset and magic number
+     */
+    private static final int TRAILER_LENGTH = 8 + JSATData.MAGIC_NUMBER_V2.length;
+
+    private ColumnarJSATData()
+    {
+    }
+
+    /**
+     * Writes a data set in the version 2 format
+     *
+     * @param dataset the data set to write
+     * @param out the stream to write to
+     * @param fpStore the storage method for floating point values, which must
+     * not be {@link FloatStorageMethod#AUTO}
+     * @param compress {@code true} to compress each block
+     * @param rowsPerBlock the number of rows in each group of blocks
+     * @throws IOException
+     */
+    static void write(DataSet<?> dataset, OutputStream out, FloatStorageMethod fpStore, boolean compress, int rowsPerBlock) throws IOException
+    {
+        if (rowsPerBlock <= 0)
+            throw new IllegalArgumentException("Rows per block must be positive, not " + rowsPerBlock);
+        DataWriter.DataSetType type;
+        CategoricalData predicting = null;
+        if (dataset instanceof ClassificationDataSet)
+        {
+            type = DataWriter.DataSetType.CLASSIFICATION;
+            predicting = ((ClassificationDataSet) dataset).getPredicting();
+        }
+        else if (dataset instanceof RegressionDataSet)
+            type = DataWriter.DataSetType.REGRESSION;
+        else
+            type = DataWriter.DataSetType.SIMPLE;
+
+        final int N = dataset.size();
+        final int D = dataset.getNumNumericalVars();
+        final int C = dataset.getNumCategoricalVars();
+        final int fileNumeric = D + (type == DataWriter.DataSetType.REGRESSION ? 1 : 0);
+        final int fileCat = C + (type == DataWriter.DataSetType.CLASSIFICATION ? 1 : 0);
+        final int columns = 1 + fileNumeric + fileCat;
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        JSATData.writeHeader(new DataOutputStream(headerBytes), JSATData.MAGIC_NUMBER_V2, dataset.getCategories(), D, predicting, fpStore, type, N);
+        headerBytes.writeTo(out);
+        long pos = headerBytes.size();
+
+        int groups = (N + rowsPerBlock - 1) / rowsPerBlock;
+        ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+        DataOutputStream footer = new DataOutputStream(footerBytes);
+        footer.writeInt(groups);
+        footer.writeInt(columns);
+        footer.writeInt(fileNumeric);
+
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        DataOutputStream blockOut = new DataOutputStream(block);
+        IntList[] colRows = new IntList[fileNumeric];
+        DoubleList[] colVals = new DoubleList[fileNumeric];
+        for (int j = 0; j < fileNumeric; j++)
+        {
+            colRows[j] = new IntList();
+            colVals[j] = new DoubleList();
+        }
+        int[] catVals = new int[rowsPerBlock];
+
+        for (int g = 0; g < groups; g++)
+        {
+            final int start = g * rowsPerBlock;
+            final int rows = Math.min(N, start + rowsPerBlock) - start;
+            footer.writeInt(rows);
+
+            //transpose the rows of this group into columns
+            for (int j = 0; j < fileNumeric; j++)
+            {
+                colRows[j].clear();
+                colVals[j].clear();
+            }
+            for (int r = 0; r < rows; r++)
+            {
+                for (IndexValue iv : dataset.getDataPoint(start + r).getNumericalValues())
+                    if (iv.getValue() != 0)
+                    {
+                        colRows[iv.getIndex()].add(r);
+                        colVals[iv.getIndex()].add(iv.getValue());
+                    }
+                if (type == DataWriter.DataSetType.REGRESSION)
+                {
+                    double target = ((RegressionDataSet) dataset).getTargetValue(start + r);
+                    if (target != 0)
+                    {
+                        colRows[D].add(r);
+                        colVals[D].add(target);
+                    }
+                }
+            }
+
+            //weights
+            block.reset();
+            for (int r = 0; r < rows; r++)
+                fpStore.writeFP(dataset.getWeight(start + r), blockOut);
+            pos = writeBlock(block, ENCODING_DENSE, deflater, out, footer, pos);
+
+            for (int j = 0; j < fileNumeric; j++)
+            {
+                block.reset();
+                int nnz = colRows[j].size();
+                byte encoding;
+                if (nnz * (fpStore.bytes + 2L) < rows * (long) fpStore.bytes)
+                {
+                    encoding = ENCODING_SPARSE;
+                    writeVarInt(nnz, block);
+                    int prev = -1;
+                    for (int z = 0; z < nnz; z++)
+                    {
+                        int r = colRows[j].getI(z);
+                        writeVarInt(r - prev - 1, block);
+                        prev = r;
+                    }
+                    for (int z = 0; z < nnz; z++)
+                        fpStore.writeFP(colVals[j].getD(z), blockOut);
+                }
+                else
+                {
+                    encoding = ENCODING_DENSE;
+                    int z = 0;
+                    for (int r = 0; r < rows; r++)
+                        if (z < nnz && colRows[j].getI(z) == r)
+                            fpStore.writeFP(colVals[j].getD(z++), blockOut);
+                        else
+                            fpStore.writeFP(0.0, blockOut);
+                }
+                pos = writeBlock(block, encoding, deflater, out, footer, pos);
+            }
+
+            for (int j = 0; j < fileCat; j++)
+            {
+                block.reset();
+                if (j < C)
+                    for (int r = 0; r < rows; r++)
+                        catVals[r] = dataset.getDataPoint(start + r).getCategoricalValue(j);
+                else
+                    for (int r = 0; r < rows; r++)
+                        catVals[r] = ((ClassificationDataSet) dataset).getDataPointCategory(start + r);
+                for (int r = 0; r < rows; r++)
+                    writeVarInt((catVals[r] << 1) ^ (catVals[r] >> 31), block);
+                pos = writeBlock(block, ENCODING_INT, deflater, out, footer, pos);
+            }
+        }
+        if (deflater != null)
+            deflater.end();
+
+        footer.flush();
+        footerBytes.writeTo(out);
+        DataOutputStream trailer = new DataOutputStream(out);
+        trailer.writeLong(pos);
+        trailer.write(JSATData.MAGIC_NUMBER_V2);
+        trailer.flush();
+    }
+
+    /**
+     * Writes a block to the output, compressing it if a deflater is given and
+     * that makes it smaller, and records its location in the footer.
+     *
+     * @return the position in the file after the block
+     */
+    private static long writeBlock(ByteArrayOutputStream block, byte encoding, Deflater deflater, OutputStream out, DataOutputStream footer, long pos) throws IOException
+    {
+        byte[] raw = block.toByteArray();
+        byte[] stored = raw;
+        byte codec = CODEC_NONE;
+        if (deflater != null && raw.length > 0)
+        {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buf = new byte[raw.length];
+            int len = 0;
+            while (!deflater.finished() && len < buf.length)
+                len += deflater.deflate(buf, len, buf.length - len);
+            if (deflater.finished() && len < raw.length)
+            {
+                stored = Arrays.copyOf(buf, len);
+                codec = CODEC_DEFLATE;
+            }
+        }
+        out.write(stored);
+        footer.writeLong(pos);
+        footer.writeInt(stored.length);
+        footer.writeInt(raw.length);
+        footer.writeByte(encoding);
+        footer.writeByte(codec);
+        return pos + stored.length;
+    }
+
+    static void writeVarInt(int v, OutputStream out) throws IOException
+    {
+        while ((v & ~0x7F) != 0)
+        {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    static int readVarInt(ByteBuffer buf)
+    {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            byte b = buf.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+        throw new RuntimeException("Invalid varint in JSAT data block");
+    }
+
+    /**
+     * Where the bytes of a version 2 file come from
+     */
+    interface Source
+    {
+        long size() throws IOException;
+
+        /**
+         * Reads a range of bytes
+         *
+         * @param pos the position to start reading from
+         * @param length the number of bytes to read
+         * @return a buffer holding exactly the bytes requested
+         * @throws IOException
+         */
+        ByteBuffer read(long pos, int length) throws IOException;
+
+        /**
+         *
+         * @return a stream over the file from its start
+         * @throws IOException
+         */
+        InputStream stream() throws IOException;
+    }
+
+    static Source source(final FileChannel channel)
+    {
+        return new Source()
+        {
+            @Override
+            public long size() throws IOException
+            {
+                return channel.size();
+            }
+
+            @Override
+            public ByteBuffer read(long pos, int length) throws IOException
+            {
+                ByteBuffer buf = ByteBuffer.allocate(length);
+                while (buf.hasRemaining())
+                    if (channel.read(buf, pos + buf.position()) < 0)
+                        throw new EOFException();
+                buf.flip();
+                return buf;
+            }
+
+            @Override
+            public InputStream stream() throws IOException
+            {
+                return new BufferedInputStream(Channels.newInputStream(channel.position(0)));
+            }
+        };
+    }
+
+    static Source source(final byte[] bytes)
+    {
+        return new Source()
+        {
+            @Override
+            public long size()
+            {
+                return bytes.length;
+            }
+
+            @Override
+            public ByteBuffer read(long pos, int length)
+            {
+                return ByteBuffer.wrap(bytes, (int) pos, length).slice();
+            }
+
+            @Override
+            public InputStream stream()
+            {
+                return new ByteArrayInputStream(bytes);
+            }
+        };
+    }
+
+    /**
+     * The location of a single column block in the file
+     */
+    private static class Block
+    {
+        long offset;
+        int stored;
+        int raw;
+        byte encoding;
+        byte codec;
+    }
+
+    /**
+     * The header and footer of a version 2 file, which give everything needed
+     * to find any block of the file
+     */
+    static class Index
+    {
+        Source source;
+        JSATData.Header header;
+        int fileNumeric;
+        int fileCat;
+        int[] groupRows;
+        Block[][] blocks;
+        /**
+         * The total number of rows in the file
+         */
+        int N;
+    }
+
+    /**
+     * Reads the header and footer of a version 2 file
+     *
+     * @param source the file to read
+     * @param forceAsStandard {@code true} to treat any target as a normal
+     * feature
+     * @return the index of the file
+     * @throws IOException
+     */
+    static Index open(Source source, boolean forceAsStandard) throws IOException
+    {
+        long size = source.size();
+        if (size < TRAILER_LENGTH)
+            throw new RuntimeException("data is too short to be a JSAT file");
+        ByteBuffer trailer = source.read(size - TRAILER_LENGTH, TRAILER_LENGTH);
+        long footerStart = trailer.getLong();
+        for (byte b : JSATData.MAGIC_NUMBER_V2)
+            if (trailer.get() != b)
+                throw new RuntimeException("data does not end with the JSAT version 2 magic number");
+
+        Index index = new Index();
+        index.source = source;
+        index.header = JSATData.readHeader(new DataInputStream(source.stream()), forceAsStandard);
+
+        ByteBuffer footer = source.read(footerStart, (int) (size - TRAILER_LENGTH - footerStart));
+        int groups = footer.getInt();
+        int columns = footer.getInt();
+        index.fileNumeric = footer.getInt();
+        index.fileCat = columns - 1 - index.fileNumeric;
+        index.groupRows = new int[groups];
+        index.blocks = new Block[groups][columns];
+        for (int g = 0; g < groups; g++)
+        {
+            index.groupRows[g] = footer.getInt();
+            index.N += index.groupRows[g];
+            for (int c = 0; c < columns; c++)
+            {
+                Block b = index.blocks[g][c] = new Block();
+                b.offset = footer.getLong();
+                b.stored = footer.getInt();
+                b.raw = footer.getInt();
+                b.encoding = footer.get();
+                b.codec = footer.get();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reads a version 2 file.
+     *
+     * @param source the file to read
+     * @param forceAsStandard {@code true} to treat any target as a normal
+     * feature
+     * @param start the first row to read (inclusive)
+     * @param end the last row to read (exclusive), or a negative value to read
+     * to the end of the file
+     * @param numericCols the numeric features to read, in order, or
+     * {@code null} for all of them
+     * @param catCols the categorical features to read, in order, or
+     * {@code null} for all of them
+     * @param store the empty store to place the data in
+     * @return the data set
+     * @throws IOException
+     */
+    static DataSet<?> read(Source source, boolean forceAsStandard, int start, int end, int[] numericCols, int[] catCols, DataStore store) throws IOException
+    {
+        return read(open(source, forceAsStandard), start, end, numericCols, catCols, store);
+    }
+
+    /**
+     * Reads part of a version 2 file.
+     *
+     * @param index the index of the file to read
+     * @param start the first row to read (inclusive)
+     * @param end the last row to read (exclusive), or a negative value to read
+     * to the end of the file
+     * @param numericCols the numeric features to read, in order, or
+     * {@code null} for all of them
+     * @param catCols the categorical features to read, in order, or
+     * {@code null} for all of them
+     * @param store the empty store to place the data in
+     * @return the data set
+     * @throws IOException
+     */
+    static DataSet<?> read(Index index, int start, int end, int[] numericCols, int[] catCols, DataStore store) throws IOException
+    {
+        final Source source = index.source;
+        final JSATData.Header header = index.header;
+        final DatasetTypeMarker marker = header.marker;
+        final FloatStorageMethod fpStore = header.fpStore;
+        final int fileNumeric = index.fileNumeric;
+        final int fileCat = index.fileCat;
+        final int groups = index.groupRows.length;
+        final int[] groupRows = index.groupRows;
+        final Block[][] blocks = index.blocks;
+        final int N = index.N;
+        if (end < 0)
+            end = N;
+        if (start < 0 || end > N || start > end)
+            throw new IndexOutOfBoundsException("Can not read rows [" + start + ", " + end + ") of a file with " + N + " rows");
+
+        //map the requested features to columns of the file
+        if (numericCols == null)
+            numericCols = range(header.numNumeric);
+        if (catCols == null)
+            catCols = range(header.numCat);
+        for (int j : numericCols)
+            if (j < 0 || j >= header.numNumeric)
+                throw new IndexOutOfBoundsException("File has " + header.numNumeric + " numeric features, can not read " + j);
+        for (int j : catCols)
+            if (j < 0 || j >= header.numCat)
+                throw new IndexOutOfBoundsException("File has " + header.numCat + " categorical features, can not read " + j);
+        CategoricalData[] categories = new CategoricalData[catCols.length];
+        for (int j = 0; j < catCols.length; j++)
+            categories[j] = header.categories[catCols[j]];
+        int targetCol = -1;
+        if (marker == DatasetTypeMarker.REGRESSION)
+            targetCol = 1 + fileNumeric - 1;
+        else if (marker == DatasetTypeMarker.CLASSIFICATION)
+            targetCol = 1 + fileNumeric + fileCat - 1;
+
+        final int n = end - start;
+        final int D = numericCols.length;
+        final int C = catCols.length;
+        double[] weights = new double[n];
+        double[] targets = new double[targetCol >= 0 ? n : 0];
+
+        JSATData.prepareStore(store, categories, D, fpStore);
+        final boolean columnar = store instanceof ColumnMajorStore;
+        //the numeric columns as (row, value) pairs, used to build column vectors
+        IntList[] colRows = columnar ? new IntList[D] : null;
+        DoubleList[] colVals = columnar ? new DoubleList[D] : null;
+        int[][] catData = columnar ? new int[C][n] : null;
+        for (int j = 0; columnar && j < D; j++)
+        {
+            colRows[j] = new IntList();
+            colVals[j] = new DoubleList();
+        }
+
+        Inflater inflater = new Inflater();
+        double[] dense = new double[0];
+        int groupStart = 0;
+        for (int g = 0; g < groups; g++)
+        {
+            final int rows = groupRows[g];
+            final int from = Math.max(start, groupStart) - groupStart;
+            final int to = Math.min(end, groupStart + rows) - groupStart;
+            final int outOffset = groupStart + from - start;
+            groupStart += rows;
+            if (from >= to)
+                continue;
+
+            ByteBuffer buf = readBlock(source, blocks[g][0], inflater);
+            for (int r = 0; r < rows; r++)
+            {
+                double w = readFP(fpStore, buf);
+                if (r >= from && r < to)
+                    weights[outOffset + r - from] = w;
+            }
+            if (targetCol >= 0)
+            {
+                Block b = blocks[g][targetCol];
+                if (b.encoding == ENCODING_INT)
+                {
+                    int[] vals = readInts(readBlock(source, b, inflater), rows);
+                    for (int r = from; r < to; r++)
+                        targets[outOffset + r - from] = vals[r];
+                }
+                else
+                {
+                    if (dense.length < rows)
+                        dense = new double[rows];
+                    readNumeric(readBlock(source, b, inflater), b.encoding, fpStore, rows, dense);
+                    System.arraycopy(dense, from, targets, outOffset, to - from);
+                }
+            }
+
+            //the selected numeric columns of this group, as row and value arrays
+            int[][] rowIdx = new int[D][];
+            double[][] vals = new double[D][];
+            int[] nnz = new int[D];
+            int groupNNZ = 0;
+            for (int j = 0; j < D; j++)
+            {
+                Block b = blocks[g][1 + numericCols[j]];
+                ByteBuffer data = readBlock(source, b, inflater);
+                if (b.encoding == ENCODING_SPARSE)
+                {
+                    int count = readVarInt(data);
+                    rowIdx[j] = new int[count];
+                    int prev = -1;
+                    for (int z = 0; z < count; z++)
+                        rowIdx[j][z] = prev = prev + 1 + readVarInt(data);
+                    vals[j] = new double[count];
+                    for (int z = 0; z < count; z++)
+                        vals[j][z] = readFP(fpStore, data);
+                    nnz[j] = count;
+                }
+                else
+                {
+                    rowIdx[j] = new int[rows];
+                    vals[j] = new double[rows];
+                    int count = 0;
+                    for (int r = 0; r < rows; r++)
+                    {
+                        double v = readFP(fpStore, data);
+                        if (v != 0)
+                        {
+                            rowIdx[j][count] = r;
+                            vals[j][count++] = v;
+                        }
+                    }
+                    nnz[j] = count;
+                }
+                groupNNZ += nnz[j];
+            }
+            int[][] cats = new int[C][];
+            for (int j = 0; j < C; j++)
+                cats[j] = readInts(readBlock(source, blocks[g][1 + fileNumeric + catCols[j]], inflater), rows);
+
+            if (columnar)
+            {
+                for (int j = 0; j < D; j++)
+                    for (int z = 0; z < nnz[j]; z++)
+                    {
+                        int r = rowIdx[j][z];
+                        if (r >= from && r < to)
+                        {
+                            colRows[j].add(outOffset + r - from);
+                            colVals[j].add(vals[j][z]);
+                        }
+                    }
+                for (int j = 0; j < C; j++)
+                    System.arraycopy(cats[j], from, catData[j], outOffset, to - from);
+                continue;
+            }
+
+            //build the rows of this group
+            boolean sparse = groupNNZ < 0.5 * rows * (double) D;
+            int[] rowNNZ = new int[rows];
+            for (int j = 0; j < D; j++)
+                for (int z = 0; z < nnz[j]; z++)
+                    rowNNZ[rowIdx[j][z]]++;
+            Vec[] vecs = new Vec[rows];
+            for (int r = from; r < to; r++)
+                vecs[r] = sparse ? new SparseVector(D, rowNNZ[r]) : new DenseVector(D);
+            //columns are visited in order, so sparse rows are filled in order
+            for (int j = 0; j < D; j++)
+                for (int z = 0; z < nnz[j]; z++)
+                {
+                    int r = rowIdx[j][z];
+                    if (r >= from && r < to)
+                        vecs[r].set(j, vals[j][z]);
+                }
+            for (int r = from; r < to; r++)
+            {
+                int[] catVals = new int[C];
+                for (int j = 0; j < C; j++)
+                    catVals[j] = cats[j][r];
+                store.addDataPoint(new DataPoint(vecs[r], catVals, categories));
+            }
+        }
+        inflater.end();
+
+        if (columnar)
+        {
+            Vec[] numeric = new Vec[D];
+            for (int j = 0; j < D; j++)
+            {
+                int count = colRows[j].size();
+                if (count < n / 2)
+                {
+                    int[] idx = new int[count];
+                    double[] v = new double[count];
+                    for (int z = 0; z < count; z++)
+                    {
+                        idx[z] = colRows[j].getI(z);
+                        v[z] = colVals[j].getD(z);
+                    }
+                    numeric[j] = new SparseVector(idx, v, n, count);
+                }
+                else
+                {
+                    DenseVector col = new DenseVector(n);
+                    for (int z = 0; z < count; z++)
+                        col.set(colRows[j].getI(z), colVals[j].getD(z));
+                    numeric[j] = col;
+                }
+            }
+            ((ColumnMajorStore) store).setColumns(numeric, catData, n);
+        }
+
+        return JSATData.toDataSet(marker, store, DoubleList.view(targets, targets.length), header.predicting, DoubleList.view(weights, n));
+    }
+
+    private static int[] range(int n)
+    {
+        int[] r = new int[n];
+        for (int i = 0; i < n; i++)
+            r[i] = i;
+        return r;
+    }
+
+    private static ByteBuffer readBlock(Source source, Block b, Inflater inflater) throws IOException
+    {
+        ByteBuffer stored = source.read(b.offset, b.stored);
+        if (b.codec == CODEC_NONE)
+            return stored;
+        byte[] in = new byte[b.stored];
+        stored.get(in);
+        byte[] raw = new byte[b.raw];
+        inflater.reset();
+        inflater.setInput(in);
+        try
+        {
+            int len = 0;
+            while (len < raw.length && !inflater.finished())
+            {
+                int read = inflater.inflate(raw, len, raw.length - len);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                len += read;
+            }
+            if (len != raw.length)
+                throw new IOException("Compressed JSAT data block is truncated");
+        }
+        catch (DataFormatException ex)
+        {
+            throw new IOException(ex);
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static int[] readInts(ByteBuffer data, int rows)
+    {
+        int[] vals = new int[rows];
+        for (int r = 0; r < rows; r++)
+        {
+            int v = readVarInt(data);
+            vals[r] = (v >>> 1) ^ -(v & 1);
+        }
+        return vals;
+    }
+
+    private static void readNumeric(ByteBuffer data, byte encoding, FloatStorageMethod fpStore, int rows, double[] dense)
+    {
+        Arrays.fill(dense, 0, rows, 0.0);
+        if (encoding == ENCODING_SPARSE)
+        {
+            int count = readVarInt(data);
+            int[] rowIdx = new int[count];
+            int prev = -1;
+            for (int z = 0; z < count; z++)
+                rowIdx[z] = prev = prev + 1 + readVarInt(data);
+            for (int z = 0; z < count; z++)
+                dense[rowIdx[z]] = readFP(fpStore, data);
+        }
+        else
+            for (int r = 0; r < rows; r++)
+                dense[r] = readFP(fpStore, data);
+    }
+
+    static double readFP(FloatStorageMethod fpStore, ByteBuffer buf)
+    {
+        switch (fpStore)
+        {
+            case FP64:
+                return buf.getDouble();
+            case FP32:
+                return buf.getFloat();
+            case SHORT:
+                return buf.getShort();
+            case BYTE:
+                return buf.get();
+            case U_BYTE:
+                return buf.get() & 0xff;
+            default:
+                throw new RuntimeException("Invalid storage method " + fpStore);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+
+/**
+ * This class defines a contract by which data points may be read in from a
+ * dataset file one at a time, without ever holding the whole dataset in
+ * memory. It is the reading counterpart of {@link DataWriter}. <br>
+ * <br>
+ * A reader starts positioned before the first data point. Each call to
+ * {@link #next() } moves to the next data point, after which its values are
+ * available from {@link #getDataPoint() }, {@link #getWeight() }, and
+ * {@link #getLabel() }. A reader is not thread safe.
+ *
+ * @author Edward Raff
+ */
+public abstract class DataReader implements Closeable
+{
+    /**
+     * The default number of data points held for shuffling when training from
+     * a stream of data
+     */
+    public static final int DEFAULT_SHUFFLE_WINDOW = 10000;
+    /**
+     * The default number of data points read ahead on a background thread
+     * when training from a stream of data
+     */
+    public static final int DEFAULT_READ_AHEAD = 1000;
+    /**
+     * The type of dataset being read in
+     */
+    public final DataWriter.DataSetType type;
+    /**
+     * the categorical feature information for the whole corpus
+     */
+    public final CategoricalData[] catInfo;
+    /**
+     * the number of numeric features for the whole corpus
+     */
+    public final int dim;
+    /**
+     * the information about the class label, or {@code null} if this is not
+     * a {@link DataWriter.DataSetType#CLASSIFICATION} reader
+     */
+    public final CategoricalData predicting;
+
+    /**
+     * The current data point
+     */
+    protected DataPoint dp;
+    /**
+     * The weight of the current data point
+     */
+    protected double weight = 1.0;
+    /**
+     * The label of the current data point
+     */
+    protected double label;
+
+    public DataReader(CategoricalData[] catInfo, int dim, CategoricalData predicting, DataWriter.DataSetType type)
+    {
+        this.catInfo = catInfo;
+        this.dim = dim;
+        this.predicting = predicting;
+        this.type = type;
+    }
+
+    /**
+     * Moves to the next data point. Every call should create a new
+     * {@link DataPoint} object, so that points returned previously are not
+     * altered.
+     *
+     * @return {@code true} if there was another data point, or {@code false}
+     * if the end of the data has been reached.
+     * @throws IOException
+     */
+    abstract public boolean next() throws IOException;
+
+    /**
+     *
+     * @return the current data point
+     */
+    public DataPoint getDataPoint()
+    {
+        return dp;
+    }
+
+    /**
+     *
+     * @return the weight of the current data point
+     */
+    public double getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * Returns the label of the current data point. If {@link #type} is a
+     * {@link DataWriter.DataSetType#SIMPLE} set, this value will be
+     * meaningless. If {@link DataWriter.DataSetType#CLASSIFICATION}, the value
+     * will be an integer class label.
+     *
+     * @return the label of the current data point
+     */
+    public double getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * A source of readers, which is opened once for every pass that is made
+     * over the data.
+     */
+    public static interface Factory
+    {
+        /**
+         * Opens a new reader, positioned before the first data point
+         *
+         * @return a new reader
+         * @throws IOException
+         */
+        public DataReader open() throws IOException;
+    }
+
+    /**
+     * Wraps a reader so that the data points are returned in a random order,
+     * using a window of a fixed number of points. Once the window is full,
+     * each new point replaces a randomly selected point from the window, which
+     * is returned. So only {@code window} points are ever held in memory, but
+     * points may move any distance towards the end of the data.
+     *
+     * @param source the reader to shuffle the points of
+     * @param window the number of points to keep in memory for shuffling
+     * @param rand the source of randomness
+     * @return a reader returning the points in a random order
+     */
+    public static DataReader shuffle(DataReader source, int window, Random rand)
+    {
+        if (window < 1)
+            throw new IllegalArgumentException("Shuffle window must be positive, not " + window);
+        return new ShuffleReader(source, window, rand);
+    }
+
+    /**
+     * Wraps a reader so that data points are read on a background thread,
+     * while the caller is busy with the points already read. At most
+     * {@code capacity} points will be read ahead of the caller.
+     *
+     * @param source the reader to read from in the background
+     * @param capacity the maximum number of points to buffer
+     * @return a reader returning the same points in the same order
+     */
+    public static DataReader readAhead(DataReader source, int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Read ahead capacity must be positive, not " + capacity);
+        return new ReadAheadReader(source, capacity);
+    }
+
+    /**
+     * One buffered data point
+     */
+    private static class Entry
+    {
+        final DataPoint dp;
+        final double weight;
+        final double label;
+
+        public Entry(DataReader reader)
+        {
+            this(reader.getDataPoint(), reader.getWeight(), reader.getLabel());
+        }
+
+        public Entry(DataPoint dp, double weight, double label)
+        {
+            this.dp = dp;
+            this.weight = weight;
+            this.label = label;
+        }
+    }
+
+    private static class ShuffleReader extends DataReader
+    {
+        private final DataReader source;
+        private final Random rand;
+        private final Entry[] window;
+        /**
+         * The number of valid entries in the window
+         */
+        private int size = 0;
+        private boolean sourceDone = false;
+
+        public ShuffleReader(DataReader source, int window, Random rand)
+        {
+            super(source.catInfo, source.dim, source.predicting, source.type);
+            this.source = source;
+            this.rand = rand;
+            this.window = new Entry[window];
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            while (!sourceDone && size < window.length)
+                if (source.next())
+                    window[size++] = new Entry(source);
+                else
+                    sourceDone = true;
+
+            if (size == 0)
+                return false;
+            int pos = rand.nextInt(size);
+            Entry toRet = window[pos];
+            if (!sourceDone && source.next())
+                window[pos] = new Entry(source);
+            else
+            {
+                sourceDone = true;
+                window[pos] = window[--size];
+                window[size] = null;
+            }
+
+            dp = toRet.dp;
+            weight = toRet.weight;
+            label = toRet.label;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            source.close();
+        }
+    }
+
+    private static class ReadAheadReader extends DataReader
+    {
+        /**
+         * Placed in the queue once the source has no more points
+         */
+        private static final Entry END = new Entry(null, 0, 0);
+
+        private final DataReader source;
+        private final BlockingQueue<Entry> queue;
+        private final Thread thread;
+        private volatile IOException ioError;
+        private volatile RuntimeException runtimeError;
+        private boolean done = false;
+
+        public ReadAheadReader(DataReader source, int capacity)
+        {
+            super(source.catInfo, source.dim, source.predicting, source.type);
+            this.source = source;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(() ->
+            {
+                try
+                {
+                    while (source.next())
+                        queue.put(new Entry(source));
+                }
+                catch (IOException ex)
+                {
+                    ioError = ex;
+                }
+                catch (RuntimeException ex)
+                {
+                    runtimeError = ex;
+                }
+                catch (InterruptedException ex)
+                {
+                    return;//closed early, nobody is waiting
+                }
+                try
+                {
+                    queue.put(END);
+                }
+                catch (InterruptedException ex)
+                {
+                    //closed early, nobody is waiting
+                }
+            }, "DataReader read ahead");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            if (done)
+                return false;
+            Entry e;
+            try
+            {
+                e = queue.take();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+            if (e == END)
+            {
+                done = true;
+                if (ioError != null)
+                    throw ioError;
+                if (runtimeError != null)
+                    throw runtimeError;
+                return false;
+            }
+            dp = e.dp;
+            weight = e.weight;
+            label = e.label;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            thread.interrupt();
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            source.close();
+        }
+    }
+}
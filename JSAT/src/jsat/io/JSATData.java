@@ -17,6 +17,12 @@
 package jsat.io;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -69,6 +75,14 @@ public class JSATData
     {
         'J', 'S', 'A', 'T', '_', '0', '0'
     };
+    /**
+     * The magic number of the version 2 columnar format, written by
+     * {@link #writeColumnar(jsat.DataSet, java.io.OutputStream, jsat.io.JSATData.FloatStorageMethod, boolean) }
+     */
+    public static final byte[] MAGIC_NUMBER_V2 = new byte[]
+    {
+        'J', 'S', 'A', 'T', '_', '0', '2'
+    };
     public static enum DatasetTypeMarker
     {
         STANDARD,
@@ -77,7 +91,7 @@ public class JSATData
     }
     public static enum FloatStorageMethod
     {
-        AUTO 
+        AUTO(0)
         {
             @Override
             protected void writeFP(double value, DataOutputStream out) throws IOException
@@ -100,7 +114,7 @@ public class JSATData
             }
             
         },
-        FP64 
+        FP64(8)
         {
             @Override
             protected void writeFP(double value, DataOutputStream out) throws IOException
@@ -120,7 +134,7 @@ public class JSATData
                 return true;
             }
         },
-        FP32 
+        FP32(4)
         {
             @Override
             protected void writeFP(double value, DataOutputStream out) throws IOException
@@ -142,7 +156,7 @@ public class JSATData
                 return Double.valueOf(f_o)-orig == 0.0;
             }
         },
-        SHORT 
+        SHORT(2)
         {
             @Override
             protected void writeFP(double value, DataOutputStream out) throws IOException
@@ -162,7 +176,7 @@ public class JSATData
                 return Short.MIN_VALUE <= orig && orig <= Short.MAX_VALUE && orig == Math.rint(orig);
             }
         },
-        BYTE 
+        BYTE(1)
         {
             @Override
             protected void writeFP(double value, DataOutputStream out) throws IOException
@@ -182,7 +196,7 @@ public class JSATData
                 return Byte.MIN_VALUE <= orig && orig <= Byte.MAX_VALUE && orig == Math.rint(orig);
             }
         },
-        U_BYTE
+        U_BYTE(1)
         {
             @Override
             protected void writeFP(double value, DataOutputStream out) throws IOException
@@ -203,6 +217,16 @@ public class JSATData
             }
         };
         
+        /**
+         * The number of bytes used to store a single value with this method
+         */
+        protected final int bytes;
+
+        private FloatStorageMethod(int bytes)
+        {
+            this.bytes = bytes;
+        }
+        
         abstract protected void writeFP(double value, DataOutputStream out) throws IOException;
         
         abstract protected double readFP(DataInputStream in) throws IOException;
@@ -376,51 +400,7 @@ public class JSATData
             protected void writeHeader(CategoricalData[] catInfo, int dim, DataWriter.DataSetType type, OutputStream out) throws IOException
             {
                 DataOutputStream data_out = new DataOutputStream(out);
-        
-                data_out.write(JSATData.MAGIC_NUMBER);
-
-                int numNumeric = dim;
-                int numCat = catInfo.length;
-
-                DatasetTypeMarker marker = DatasetTypeMarker.STANDARD;
-                if(type == type.REGRESSION)
-                {
-                    numNumeric++;
-                    marker = DatasetTypeMarker.REGRESSION;
-                }
-                if(type == type.CLASSIFICATION)
-                {
-                    numCat++;
-                    marker = DatasetTypeMarker.CLASSIFICATION;
-                }
-
-                data_out.writeByte(marker.ordinal());
-                data_out.writeByte(fpStore.ordinal());
-                data_out.writeInt(numNumeric);
-                data_out.writeInt(numCat);
-                data_out.writeInt(-1);//-1 used to indicate a potentially variable number of files
-
-                for(CategoricalData category : catInfo)
-                {
-                    //first, whats the name of the i'th category
-                    writeString(category.getCategoryName(), data_out);
-
-                    data_out.writeInt(category.getNumOfCategories());//output the number of categories 
-                    for(int i = 0; i < category.getNumOfCategories(); i++)//the option names
-                        writeString(category.getOptionName(i), data_out);
-                }
-                //extra for classification dataset
-                if(type == DataWriter.DataSetType.CLASSIFICATION)
-                {
-                    CategoricalData category = predicting;
-                    //first, whats the name of the i'th category
-                    writeString(category.getCategoryName(), data_out);
-
-                    data_out.writeInt(category.getNumOfCategories());//output the number of categories 
-                    for(int i = 0; i < category.getNumOfCategories(); i++)//the option names
-                        writeString(category.getOptionName(i), data_out);
-                }
-                data_out.flush();
+                JSATData.writeHeader(data_out, MAGIC_NUMBER, catInfo, dim, predicting, fpStore, type, -1);//-1 used to indicate a potentially variable number of files
             }
             
             @Override
@@ -479,6 +459,195 @@ public class JSATData
         };
     }
     
+    /**
+     * Writes the header that starts every JSAT data file
+     *
+     * @param data_out the stream to write to
+     * @param magic the magic number of the format version being written
+     * @param catInfo information about the categorical features
+     * @param dim the number of numeric features
+     * @param predicting information on the class label, may be {@code null}
+     * if not a classification dataset
+     * @param fpStore the format floating point values are stored as
+     * @param type what type of data set is being written
+     * @param N the number of data points, or -1 if not known
+     * @throws IOException 
+     */
+    static void writeHeader(DataOutputStream data_out, byte[] magic, CategoricalData[] catInfo, int dim, CategoricalData predicting, FloatStorageMethod fpStore, DataWriter.DataSetType type, int N) throws IOException
+    {
+        data_out.write(magic);
+
+        int numNumeric = dim;
+        int numCat = catInfo.length;
+
+        DatasetTypeMarker marker = DatasetTypeMarker.STANDARD;
+        if(type == DataWriter.DataSetType.REGRESSION)
+        {
+            numNumeric++;
+            marker = DatasetTypeMarker.REGRESSION;
+        }
+        if(type == DataWriter.DataSetType.CLASSIFICATION)
+        {
+            numCat++;
+            marker = DatasetTypeMarker.CLASSIFICATION;
+        }
+
+        data_out.writeByte(marker.ordinal());
+        data_out.writeByte(fpStore.ordinal());
+        data_out.writeInt(numNumeric);
+        data_out.writeInt(numCat);
+        data_out.writeInt(N);
+
+        for(CategoricalData category : catInfo)
+        {
+            //first, whats the name of the i'th category
+            writeString(category.getCategoryName(), data_out);
+
+            data_out.writeInt(category.getNumOfCategories());//output the number of categories 
+            for(int i = 0; i < category.getNumOfCategories(); i++)//the option names
+                writeString(category.getOptionName(i), data_out);
+        }
+        //extra for classification dataset
+        if(type == DataWriter.DataSetType.CLASSIFICATION)
+        {
+            CategoricalData category = predicting;
+            //first, whats the name of the i'th category
+            writeString(category.getCategoryName(), data_out);
+
+            data_out.writeInt(category.getNumOfCategories());//output the number of categories 
+            for(int i = 0; i < category.getNumOfCategories(); i++)//the option names
+                writeString(category.getOptionName(i), data_out);
+        }
+        data_out.flush();
+    }
+    
+    /**
+     * Writes out a JSAT dataset in the version 2 columnar format. Each column
+     * is stored in its own blocks of rows, and the file ends with an index of
+     * where every block is. This allows
+     * {@link #load(java.io.File, int, int, int[], int[], jsat.DataStore) } to
+     * read only a range of rows or a subset of the columns, and lets a
+     * {@link ColumnMajorStore} be filled without transposing the data.<br>
+     * Sparse columns are stored with varint encoded gaps between the rows that
+     * have values. The storage format chosen for floating point values will
+     * result in no loss of precision.
+     *
+     * @param <Type>
+     * @param dataset the dataset to write out to a binary file
+     * @param outRaw the raw output stream, the caller should provide a buffered
+     * stream.
+     * @throws IOException
+     */
+    public static <Type extends DataSet<Type>> void writeColumnar(DataSet<Type> dataset, OutputStream outRaw) throws IOException
+    {
+        writeColumnar(dataset, outRaw, FloatStorageMethod.AUTO, false);
+    }
+    
+    /**
+     * Writes out a JSAT dataset in the version 2 columnar format. Each column
+     * is stored in its own blocks of rows, and the file ends with an index of
+     * where every block is. This allows
+     * {@link #load(java.io.File, int, int, int[], int[], jsat.DataStore) } to
+     * read only a range of rows or a subset of the columns, and lets a
+     * {@link ColumnMajorStore} be filled without transposing the data.
+     *
+     * @param <Type>
+     * @param dataset the dataset to write out to a binary file
+     * @param outRaw the raw output stream, the caller should provide a buffered
+     * stream.
+     * @param fpStore the storage method of storing floating point values, which
+     * may result in a loss of precision depending on the method chosen.
+     * @param compress {@code true} to compress each block of the file with a
+     * fast deflate, which still allows random access to every block
+     * @throws IOException
+     */
+    public static <Type extends DataSet<Type>> void writeColumnar(DataSet<Type> dataset, OutputStream outRaw, FloatStorageMethod fpStore, boolean compress) throws IOException
+    {
+        writeColumnar(dataset, outRaw, fpStore, compress, ColumnarJSATData.DEFAULT_ROWS_PER_BLOCK);
+    }
+    
+    /**
+     * Writes out a JSAT dataset in the version 2 columnar format. 
+     *
+     * @param <Type>
+     * @param dataset the dataset to write out to a binary file
+     * @param outRaw the raw output stream, the caller should provide a buffered
+     * stream.
+     * @param fpStore the storage method of storing floating point values, which
+     * may result in a loss of precision depending on the method chosen.
+     * @param compress {@code true} to compress each block of the file with a
+     * fast deflate, which still allows random access to every block
+     * @param rowsPerBlock the number of rows stored in each block. Smaller
+     * blocks make reading a small range of rows cheaper, at the cost of a
+     * larger index.
+     * @throws IOException
+     */
+    public static <Type extends DataSet<Type>> void writeColumnar(DataSet<Type> dataset, OutputStream outRaw, FloatStorageMethod fpStore, boolean compress, int rowsPerBlock) throws IOException
+    {
+        fpStore = FloatStorageMethod.getMethod(dataset, fpStore);
+        ColumnarJSATData.write(dataset, outRaw, fpStore, compress, rowsPerBlock);
+        outRaw.flush();
+    }
+    
+    /**
+     * Loads a JSAT dataset from a file, which may be in either the original
+     * or version 2 format. The DataSet will be returned as either a
+     * {@link SimpleDataSet}, {@link ClassificationDataSet}, or
+     * {@link RegressionDataSet} depending on what type of dataset was
+     * originally written out.
+     *
+     * @param file the file to read
+     * @param store the backing mechanism to store all the data in and use for
+     * the returned dataset object
+     * @return a dataset
+     * @throws IOException 
+     */
+    public static DataSet<?> load(File file, DataStore store) throws IOException
+    {
+        return load(file, 0, -1, null, null, store);
+    }
+    
+    /**
+     * Loads a range of rows and a subset of the features of a JSAT dataset 
+     * file. Only the blocks of the file holding the requested data are read,
+     * which requires the file to be in the version 2 format written by
+     * {@link #writeColumnar(jsat.DataSet, java.io.OutputStream) }. The target
+     * values and weights are always loaded. <br>
+     * If a {@link ColumnMajorStore} is given, its columns are filled directly
+     * from the columns of the file.
+     *
+     * @param file the file to read
+     * @param start the first row to load (inclusive)
+     * @param end the last row to load (exclusive), or a negative value to load
+     * all rows after {@code start}
+     * @param numericColumns the numeric features to load, which will be
+     * numbered in the order given, or {@code null} to load all of them
+     * @param catColumns the categorical features to load, which will be
+     * numbered in the order given, or {@code null} to load all of them
+     * @param store the backing mechanism to store all the data in and use for
+     * the returned dataset object
+     * @return a dataset
+     * @throws IOException 
+     * @throws IllegalArgumentException if a selection was requested from a
+     * file in the original format, which does not support it
+     */
+    public static DataSet<?> load(File file, int start, int end, int[] numericColumns, int[] catColumns, DataStore store) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ColumnarJSATData.Source source = ColumnarJSATData.source(channel);
+            Header header = readHeader(new DataInputStream(source.stream()), false);
+            if (header.version >= 2)
+                return ColumnarJSATData.read(source, false, start, end, numericColumns, catColumns, store);
+            if (start != 0 || end >= 0 || numericColumns != null || catColumns != null)
+                throw new IllegalArgumentException("Only version 2 JSAT files can load a subset of the data");
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file)))
+        {
+            return load(in, store);
+        }
+    }
+    
     /**
      * This loads a JSAT dataset from an input stream, and will not do any of
      * its own buffering. The DataSet will be returned as either a
@@ -486,6 +655,10 @@ public class JSATData
      * {@link RegressionDataSet} depending on what type of dataset was
      * originally written out.<br>
      *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
+     *
      * @param inRaw the input stream, caller should buffer it
      * @return a dataset
      * @throws IOException 
@@ -502,6 +675,10 @@ public class JSATData
      * {@link RegressionDataSet} depending on what type of dataset was
      * originally written out.<br>
      *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
+     *
      * @param inRaw the input stream, caller should buffer it
      * @param backingStore the data store to put all datapoints in
      * @return a dataset
@@ -514,7 +691,11 @@ public class JSATData
     
     /**
      * Loads in a JSAT dataset as a {@link SimpleDataSet}. So long as the input
-     * stream is valid, this will not fail.
+     * stream is valid, this will not fail.<br>
+     *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
      *
      * @param inRaw the input stream, caller should buffer it
      * @return a SimpleDataSet object
@@ -527,7 +708,11 @@ public class JSATData
     
     /**
      * Loads in a JSAT dataset as a {@link SimpleDataSet}. So long as the input
-     * stream is valid, this will not fail.
+     * stream is valid, this will not fail.<br>
+     *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
      *
      * @param inRaw the input stream, caller should buffer it
      * @param backingStore the data store to put all data points in
@@ -542,7 +727,11 @@ public class JSATData
     /**
      * Loads in a JSAT dataset as a {@link ClassificationDataSet}. An exception
      * will be thrown if the original dataset in the file was not a
-     * {@link ClassificationDataSet}.
+     * {@link ClassificationDataSet}.<br>
+     *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
      *
      * @param inRaw the input stream, caller should buffer it
      * @return a ClassificationDataSet object
@@ -557,7 +746,11 @@ public class JSATData
     /**
      * Loads in a JSAT dataset as a {@link ClassificationDataSet}. An exception
      * will be thrown if the original dataset in the file was not a
-     * {@link ClassificationDataSet}.
+     * {@link ClassificationDataSet}.<br>
+     *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
      *
      * @param inRaw the input stream, caller should buffer it
      * @param backingStore the data store to put all data points in
@@ -573,7 +766,11 @@ public class JSATData
     /**
      * Loads in a JSAT dataset as a {@link RegressionDataSet}. An exception
      * will be thrown if the original dataset in the file was not a
-     * {@link RegressionDataSet}.
+     * {@link RegressionDataSet}.<br>
+     *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
      *
      * @param inRaw the input stream, caller should buffer it
      * @return a RegressionDataSet object
@@ -588,7 +785,11 @@ public class JSATData
     /**
      * Loads in a JSAT dataset as a {@link RegressionDataSet}. An exception
      * will be thrown if the original dataset in the file was not a
-     * {@link RegressionDataSet}.
+     * {@link RegressionDataSet}.<br>
+     *
+     * A version 2 stream is first copied to a temporary file, as its index is
+     * stored at the end. Use {@link #load(java.io.File, jsat.DataStore) } to
+     * avoid the copy when the data is already in a file.
      *
      * @param inRaw the input stream, caller should buffer it
      * @param backingStore the data store to put all data points in
@@ -601,6 +802,68 @@ public class JSATData
         return (RegressionDataSet) load(inRaw, backingStore);
     }
     
+    /**
+     * Memory maps a JSAT dataset file, rather than reading all of its contents
+     * onto the Java heap. The data points will be backed by a
+     * {@link MappedDataStore}, and decoded from the file as they are needed.
+     * Only the weights and targets of each data point are read into memory. 
+     * The DataSet will be returned as either a {@link SimpleDataSet},
+     * {@link ClassificationDataSet}, or {@link RegressionDataSet} depending on
+     * what type of dataset was originally written out.
+     *
+     * @param file the file to map, which must not be compressed
+     * @return a dataset
+     * @throws IOException 
+     */
+    public static DataSet<?> loadMapped(File file) throws IOException
+    {
+        return loadMapped(file, false);
+    }
+    
+    /**
+     * Memory maps a JSAT dataset file, rather than reading all of its contents
+     * onto the Java heap. The data points will be backed by a
+     * {@link MappedDataStore}, and decoded from the file as they are needed.
+     * Only the weights and targets of each data point are read into memory.
+     *
+     * @param file the file to map, which must not be compressed
+     * @param forceAsStandard {@code true} for for the dataset to be loaded as a
+     * {@link SimpleDataSet}, otherwise it will be determined based on the
+     * file's contents.
+     * @return a dataset
+     * @throws IOException 
+     */
+    public static DataSet<?> loadMapped(File file, boolean forceAsStandard) throws IOException
+    {
+        MappedDataStore store = new MappedDataStore(file, forceAsStandard);
+        
+        DataSet<?> toRet;
+        switch(store.getMarker())
+        {
+            case CLASSIFICATION:
+                int[] targets_i = new int[store.size()];
+                for(int i = 0; i < targets_i.length; i++)
+                    targets_i[i] = (int) store.getFileTarget(i);
+                toRet = new ClassificationDataSet(store, IntList.view(targets_i), store.getPredicting());
+                break;
+            case REGRESSION:
+                double[] targets = new double[store.size()];
+                for(int i = 0; i < targets.length; i++)
+                    targets[i] = store.getFileTarget(i);
+                toRet = new RegressionDataSet(store, DoubleList.view(targets, targets.length));
+                break;
+            default:
+                toRet = new SimpleDataSet(store);
+        }
+        for(int i = 0; i < store.size(); i++)
+        {
+            double weight = store.getFileWeight(i);
+            if(weight != 1)
+                toRet.setWeight(i, weight);
+        }
+        return toRet;
+    }
+    
     /**
      * This loads a JSAT dataset from an input stream, and will not do any of
      * its own buffering. The DataSet will be returned as either a
@@ -644,75 +907,205 @@ public class JSATData
     @SuppressWarnings("unchecked")
     protected static DataSet<?> load(InputStream inRaw, boolean forceAsStandard, DataStore store) throws IOException
     {
-        DataInputStream in = new DataInputStream(inRaw);
-        
-        byte[] magic_number = new byte[MAGIC_NUMBER.length];
-        in.readFully(magic_number);
-        String magic = new String(magic_number, "US-ASCII");
-        
-        if(!magic.startsWith("JSAT_"))
-            throw new RuntimeException("data does not contain magic number");
-        
-        DatasetTypeMarker marker = DatasetTypeMarker.values()[in.readByte()];
-        FloatStorageMethod fpStore = FloatStorageMethod.values()[in.readByte()];
-        
-        int numNumeric = in.readInt();
-        int numCat = in.readInt();
-        int N = in.readInt();
-        
-        if(forceAsStandard)
-            marker = DatasetTypeMarker.STANDARD;
-        
-        if(marker == DatasetTypeMarker.CLASSIFICATION)
-            numCat--;
-        else if(marker == DatasetTypeMarker.REGRESSION)
-            numNumeric--;
-        
-        CategoricalData[] categories = new CategoricalData[numCat];
-        CategoricalData predicting = null;//may not be used
-        
-        for(int i = 0; i < categories.length; i++)
+        PushbackInputStream pin = new PushbackInputStream(inRaw, MAGIC_NUMBER_V2.length);
+        byte[] magic = new byte[MAGIC_NUMBER_V2.length];
+        int read = 0;
+        while (read < magic.length)
         {
-            //first, whats the name of the i'th category
-            String name = readString(in);
-            int k = in.readInt();//output the number of categories 
-            
-            categories[i] = new CategoricalData(k);
-            categories[i].setCategoryName(name);
-            
-            for(int j = 0; j < k; j++)//the option names
-                categories[i].setOptionName(readString(in), j);
+            int r = pin.read(magic, read, magic.length - read);
+            if (r < 0)
+                break;
+            read += r;
         }
-        
-        if(marker == DatasetTypeMarker.CLASSIFICATION)
+        pin.unread(magic, 0, read);
+        if (Arrays.equals(magic, MAGIC_NUMBER_V2))
         {
-            //first, whats the name of the i'th category
-            String name = readString(in);
-            int k = in.readInt();//output the number of categories 
-            
-            predicting = new CategoricalData(k);
-            predicting.setCategoryName(name);
-            
-            for(int j = 0; j < k; j++)//the option names
-                predicting.setOptionName(readString(in), j);
+            /*
+             * the version 2 index is at the end, so we need the whole thing.
+             * Spool it to a temporary file rather than the heap, so that only 
+             * the blocks being decoded are held in memory at once
+             */
+            Path tmp = Files.createTempFile("jsat", ".jsat");
+            try
+            {
+                Files.copy(pin, tmp, StandardCopyOption.REPLACE_EXISTING);
+                pin.close();
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ))
+                {
+                    return ColumnarJSATData.read(ColumnarJSATData.source(channel), forceAsStandard, 0, -1, null, null, store);
+                }
+            }
+            finally
+            {
+                Files.deleteIfExists(tmp);
+            }
         }
         
+        DataInputStream in = new DataInputStream(pin);
+        
+        Header header = readHeader(in, forceAsStandard);
+        
         //used for both numeric and categorical target storage
         DoubleList targets = new DoubleList();
         DoubleList weights = new DoubleList();
-        store.setCategoricalDataInfo(categories);
-        store.setNumNumeric(numNumeric);
+        prepareStore(store, header.categories, header.numNumeric, header.fpStore);
         
         //read in all the data points
-        if(N < 0)
-            N = Integer.MAX_VALUE;
-        try
+        RowReader reader = new RowReader(in, header);
+        while(reader.next())
+        {
+            weights.add(reader.getWeight());
+            store.addDataPoint(reader.getDataPoint());
+            if(header.marker != DatasetTypeMarker.STANDARD)
+                targets.add(reader.getLabel());
+        }
+        
+        in.close();
+        
+        return toDataSet(header.marker, store, targets, header.predicting, weights);
+    }
+    
+    /**
+     * Sets up an empty store to receive the data points of a file
+     */
+    static void prepareStore(DataStore store, CategoricalData[] categories, int numNumeric, FloatStorageMethod fpStore)
+    {
+        store.setCategoricalDataInfo(categories);
+        store.setNumNumeric(numNumeric);
+        //keep the values at the precision they were written with
+        if(store instanceof ReducedPrecisionStore && ((ReducedPrecisionStore) store).getPrecision() == FloatStorageMethod.AUTO)
+            ((ReducedPrecisionStore) store).setPrecision(fpStore);
+    }
+    
+    /**
+     * Creates the dataset of the right type for a store that has had all of
+     * the data points of a file added to it.
+     *
+     * @param marker the type of dataset to create
+     * @param store the store holding the data points
+     * @param targets the target value of each data point, not used for
+     * {@link DatasetTypeMarker#STANDARD}
+     * @param predicting the class label information, only used for
+     * {@link DatasetTypeMarker#CLASSIFICATION}
+     * @param weights the weight of each data point
+     * @return the dataset
+     */
+    static DataSet<?> toDataSet(DatasetTypeMarker marker, DataStore store, DoubleList targets, CategoricalData predicting, DoubleList weights)
+    {
+	DataSet toRet;
+        switch(marker)
         {
-            for(int i = 0; i < N; i++)
+            case CLASSIFICATION:
+                IntList targets_i = IntList.view(targets.stream().mapToInt(Double::intValue).toArray());
+                toRet =  new ClassificationDataSet(store, targets_i, predicting);
+		break;
+            case REGRESSION:
+                toRet =  new RegressionDataSet(store, targets);
+		break;
+            default:
+                toRet =  new SimpleDataSet(store);
+        }
+	for(int i = 0; i < weights.size(); i++)
+	    toRet.setWeight(i, weights.getD(i));
+	store.finishAdding();
+	return toRet;
+    }
+    
+    /**
+     * Returns a source of readers that stream a JSAT dataset file one data
+     * point at a time, which may be in either the original or version 2
+     * format. This allows files larger than memory to be used with
+     * {@link jsat.classifiers.BaseUpdateableClassifier#trainEpochs(jsat.io.DataReader.Factory, jsat.classifiers.UpdateableClassifier, int, int, int) }.
+     * A version 2 file is read one block of rows at a time.
+     *
+     * @param file the file to read
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory stream(File file)
+    {
+        return stream(file, false);
+    }
+    
+    /**
+     * Returns a source of readers that stream a JSAT dataset file one data
+     * point at a time, which may be in either the original or version 2
+     * format. 
+     *
+     * @param file the file to read
+     * @param forceAsStandard {@code true} for for the dataset to be read as a
+     * {@link SimpleDataSet}, otherwise it will be determined based on the
+     * file's contents.
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory stream(final File file, final boolean forceAsStandard)
+    {
+        return () ->
+        {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try
+            {
+                ColumnarJSATData.Source source = ColumnarJSATData.source(channel);
+                Header header = readHeader(new DataInputStream(source.stream()), forceAsStandard);
+                if(header.version >= 2)
+                    return new BlockReader(ColumnarJSATData.open(source, forceAsStandard), channel);
+                channel.position(0);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                return new RowReader(in, readHeader(in, forceAsStandard));
+            }
+            catch(IOException | RuntimeException ex)
+            {
+                channel.close();
+                throw ex;
+            }
+        };
+    }
+    
+    private static DataWriter.DataSetType typeOf(DatasetTypeMarker marker)
+    {
+        switch(marker)
+        {
+            case CLASSIFICATION:
+                return DataWriter.DataSetType.CLASSIFICATION;
+            case REGRESSION:
+                return DataWriter.DataSetType.REGRESSION;
+            default:
+                return DataWriter.DataSetType.SIMPLE;
+        }
+    }
+    
+    /**
+     * Reads the data points of an original format file, which is positioned
+     * just after the header
+     */
+    private static class RowReader extends DataReader
+    {
+        private final DataInputStream in;
+        private final Header header;
+        /**
+         * The number of data points that have not been read yet
+         */
+        private int remaining;
+
+        public RowReader(DataInputStream in, Header header)
+        {
+            super(header.categories, header.numNumeric, header.predicting, typeOf(header.marker));
+            this.in = in;
+            this.header = header;
+            this.remaining = header.N < 0 ? Integer.MAX_VALUE : header.N;
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            if(remaining <= 0)
+                return false;
+            final DatasetTypeMarker marker = header.marker;
+            final FloatStorageMethod fpStore = header.fpStore;
+            final int numNumeric = header.numNumeric;
+            try
             {
-            
                 double weight = fpStore.readFP(in);//in.readDouble();
-                int[] catVals = new int[numCat];
+                int[] catVals = new int[header.numCat];
                 double target = 0;
 
                 for(int j = 0; j < catVals.length; j++)
@@ -727,7 +1120,6 @@ public class JSATData
                 boolean sparse = in.readBoolean();
                 Vec numericVals;
 
-
                 if(sparse)
                 {
                     int nnz = in.readInt();
@@ -762,45 +1154,167 @@ public class JSATData
                     target = fpStore.readFP(in);
                 }
 
-                DataPoint dp = new DataPoint(numericVals, catVals, categories);
-		weights.add(weight);
-                store.addDataPoint(dp);
+                this.dp = new DataPoint(numericVals, catVals, header.categories);
+                this.weight = weight;
+                this.label = target;
+                remaining--;
+                return true;
+            }
+            catch (EOFException eo)
+            {
+                //No problem, we don't always know how many points there are
+                remaining = 0;
+                return false;
+            }
+        }
 
-                switch(marker)
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+    
+    /**
+     * Reads the data points of a version 2 file one block of rows at a time
+     */
+    private static class BlockReader extends DataReader
+    {
+        private final ColumnarJSATData.Index index;
+        private final Closeable file;
+        private int group = -1;
+        private int groupStart = 0;
+        private DataSet<?> block;
+        private int pos = 0;
+
+        public BlockReader(ColumnarJSATData.Index index, Closeable file)
+        {
+            super(index.header.categories, index.header.numNumeric, index.header.predicting, typeOf(index.header.marker));
+            this.index = index;
+            this.file = file;
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            while(block == null || pos >= block.size())
+            {
+                if(block != null)
+                    groupStart += index.groupRows[group];
+                if(++group >= index.groupRows.length)
                 {
-                    case CLASSIFICATION:
-                    case REGRESSION:
-                        targets.add(target);
-                    default:
-                        break;
+                    block = null;
+                    return false;
                 }
-            
+                block = ColumnarJSATData.read(index, groupStart, groupStart + index.groupRows[group], null, null, new RowMajorStore());
+                pos = 0;
             }
+            dp = block.getDataPoint(pos);
+            weight = block.getWeight(pos);
+            if(block instanceof ClassificationDataSet)
+                label = ((ClassificationDataSet) block).getDataPointCategory(pos);
+            else if(block instanceof RegressionDataSet)
+                label = ((RegressionDataSet) block).getTargetValue(pos);
+            pos++;
+            return true;
         }
-        catch (EOFException eo)
+
+        @Override
+        public void close() throws IOException
         {
-            //No problem
+            file.close();
         }
+    }
+    
+    /**
+     * The information stored at the start of every JSAT data file, before any
+     * data points are written.
+     */
+    static class Header
+    {
+        /**
+         * The version of the file format, taken from the magic number
+         */
+        int version;
+        DatasetTypeMarker marker;
+        FloatStorageMethod fpStore;
+        /**
+         * The number of numeric features, not counting the regression target
+         */
+        int numNumeric;
+        /**
+         * The number of categorical features, not counting the class label
+         */
+        int numCat;
+        /**
+         * The number of data points, or a negative value if unknown
+         */
+        int N;
+        CategoricalData[] categories;
+        CategoricalData predicting;
+    }
+    
+    /**
+     * Reads the header of a JSAT data file, leaving the stream positioned at
+     * the first data point.
+     *
+     * @param in the stream to read from
+     * @param forceAsStandard {@code true} if the header should be interpreted
+     * as a {@link SimpleDataSet}, treating any target as a normal feature
+     * @return the header information
+     * @throws IOException
+     */
+    static Header readHeader(DataInputStream in, boolean forceAsStandard) throws IOException
+    {
+        byte[] magic_number = new byte[MAGIC_NUMBER.length];
+        in.readFully(magic_number);
+        String magic = new String(magic_number, "US-ASCII");
         
-        in.close();
+        if(!magic.startsWith("JSAT_"))
+            throw new RuntimeException("data does not contain magic number");
         
-	DataSet toRet;
-        switch(marker)
-        {
-            case CLASSIFICATION:
-                IntList targets_i = IntList.view(targets.stream().mapToInt(Double::intValue).toArray());
-                toRet =  new ClassificationDataSet(store, targets_i, predicting);
-		break;
-            case REGRESSION:
-                toRet =  new RegressionDataSet(store, targets);
-		break;
-            default:
-                toRet =  new SimpleDataSet(store);
-        }
-	for(int i = 0; i < weights.size(); i++)
-	    toRet.setWeight(i, weights.getD(i));
-	store.finishAdding();
-	return toRet;
+        Header header = new Header();
+        header.version = Integer.parseInt(magic.substring(5));
+        if(header.version == 0)//the original format
+            header.version = 1;
+        header.marker = DatasetTypeMarker.values()[in.readByte()];
+        header.fpStore = FloatStorageMethod.values()[in.readByte()];
+        
+        header.numNumeric = in.readInt();
+        header.numCat = in.readInt();
+        header.N = in.readInt();
+        
+        if(forceAsStandard)
+            header.marker = DatasetTypeMarker.STANDARD;
+        
+        if(header.marker == DatasetTypeMarker.CLASSIFICATION)
+            header.numCat--;
+        else if(header.marker == DatasetTypeMarker.REGRESSION)
+            header.numNumeric--;
+        
+        header.categories = new CategoricalData[header.numCat];
+        
+        for(int i = 0; i < header.categories.length; i++)
+            header.categories[i] = readCategory(in);
+        
+        if(header.marker == DatasetTypeMarker.CLASSIFICATION)
+            header.predicting = readCategory(in);
+        
+        return header;
+    }
+    
+    private static CategoricalData readCategory(DataInputStream in) throws IOException
+    {
+        //first, whats the name of the i'th category
+        String name = readString(in);
+        int k = in.readInt();//output the number of categories 
+
+        CategoricalData category = new CategoricalData(k);
+        category.setCategoryName(name);
+
+        for(int j = 0; j < k; j++)//the option names
+            category.setOptionName(readString(in), j);
+        return category;
     }
     
     private static void writeString(String s, DataOutputStream out) throws IOException
@@ -2,6 +2,7 @@ package jsat.io;
 
 import java.io.*;
 import java.util.*;
+import jsat.CompressedRowStore;
 import jsat.DataSet;
 import jsat.DataStore;
 import jsat.RowMajorStore;
@@ -254,6 +255,310 @@ public class LIBSVMLoader
         return (ClassificationDataSet) loadG(reader, sparseRatio, vectorLength, true, store);
     }
     
+    /**
+     * Loads a new regression data set from a LIBSVM file, assuming the label is
+     * a numeric target value to predict. The file is memory mapped and parsed in parallel,
+     * see {@link #loadR(java.io.File, double, int, jsat.DataStore, boolean) }.
+     * 
+     * @param file the file to load
+     * @param sparseRatio the fraction of non zero values to qualify a data 
+     * point as sparse
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return a regression data set
+     * @throws IOException if an error occurred reading the file
+     */
+    public static RegressionDataSet loadR(File file, double sparseRatio, int vectorLength, boolean parallel) throws IOException
+    {
+        return loadR(file, sparseRatio, vectorLength, DataStore.DEFAULT_STORE, parallel);
+    }
+    
+    /**
+     * Loads a new regression data set from a LIBSVM file, assuming the label is
+     * a numeric target value to predict. The file is memory mapped and split into chunks
+     * that start at the beginning of a line, which are parsed in parallel
+     * without creating any intermediate Strings. A first pass over each chunk
+     * counts the values and finds the largest index, so that every vector is
+     * created with its final size. Using a {@link CompressedRowStore} avoids
+     * creating a vector object for every row.
+     * 
+     * @param file the file to load
+     * @param sparseRatio the fraction of non zero values to qualify a data 
+     * point as sparse
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @param store the type of store to use for the data
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return a regression data set
+     * @throws IOException if an error occurred reading the file
+     */
+    public static RegressionDataSet loadR(File file, double sparseRatio, int vectorLength, DataStore store, boolean parallel) throws IOException
+    {
+        return (RegressionDataSet) MappedLIBSVM.load(file, sparseRatio, vectorLength, false, store, parallel);
+    }
+    
+    /**
+     * Loads a new classification data set from a LIBSVM file, assuming the 
+     * label is a nominal target value. The file is memory mapped and parsed in parallel,
+     * see {@link #loadC(java.io.File, double, int, jsat.DataStore, boolean) }.
+     * 
+     * @param file the file to load
+     * @param sparseRatio the fraction of non zero values to qualify a data 
+     * point as sparse
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return a classification data set
+     * @throws IOException if an error occurred reading the file
+     */
+    public static ClassificationDataSet loadC(File file, double sparseRatio, int vectorLength, boolean parallel) throws IOException
+    {
+        return loadC(file, sparseRatio, vectorLength, DataStore.DEFAULT_STORE, parallel);
+    }
+    
+    /**
+     * Loads a new classification data set from a LIBSVM file, assuming the 
+     * label is a nominal target value. The file is memory mapped and split into chunks
+     * that start at the beginning of a line, which are parsed in parallel
+     * without creating any intermediate Strings. A first pass over each chunk
+     * counts the values and finds the largest index, so that every vector is
+     * created with its final size. Using a {@link CompressedRowStore} avoids
+     * creating a vector object for every row.
+     * 
+     * @param file the file to load
+     * @param sparseRatio the fraction of non zero values to qualify a data 
+     * point as sparse
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @param store the type of store to use for the data
+     * @param parallel {@code true} if the file should be parsed using
+     * multiple cores.
+     * @return a classification data set
+     * @throws IOException if an error occurred reading the file
+     */
+    public static ClassificationDataSet loadC(File file, double sparseRatio, int vectorLength, DataStore store, boolean parallel) throws IOException
+    {
+        return (ClassificationDataSet) MappedLIBSVM.load(file, sparseRatio, vectorLength, true, store, parallel);
+    }
+    
+    /**
+     * Returns a source of readers that stream a LIBSVM file one data point at
+     * a time, treating the label as a numeric target value to predict. This
+     * allows files larger than memory to be used with
+     * {@link jsat.regression.BaseUpdateableRegressor#trainEpochs(jsat.io.DataReader.Factory, jsat.regression.UpdateableRegressor, int, int, int) }.
+     * If no vector length is given, one extra pass is made over the file the
+     * first time a reader is opened, to find the largest index used.
+     *
+     * @param file the file to read
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory streamR(File file, int vectorLength)
+    {
+        return stream(file, vectorLength, false);
+    }
+    
+    /**
+     * Returns a source of readers that stream a LIBSVM file one data point at
+     * a time, treating the label as a class label. This allows files larger
+     * than memory to be used with
+     * {@link jsat.classifiers.BaseUpdateableClassifier#trainEpochs(jsat.io.DataReader.Factory, jsat.classifiers.UpdateableClassifier, int, int, int) }.
+     * One extra pass is made over the file the first time a reader is opened,
+     * to find the class labels used. The labels are given the same indices as
+     * when loading the whole file.
+     *
+     * @param file the file to read
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @return a source of readers for the file
+     */
+    public static DataReader.Factory streamC(File file, int vectorLength)
+    {
+        return stream(file, vectorLength, true);
+    }
+    
+    private static DataReader.Factory stream(final File file, final int vectorLength, final boolean classification)
+    {
+        return new DataReader.Factory()
+        {
+            /**
+             * The sorted distinct labels, found on the first open
+             */
+            double[] labels;
+            int dim = -1;
+            
+            @Override
+            public synchronized DataReader open() throws IOException
+            {
+                if (dim < 0 && (classification || vectorLength <= 0))
+                {
+                    Set<Double> seen = new HashSet<>();
+                    int maxLen = 1;
+                    try (LineReader scan = new LineReader(file, 1, null))
+                    {
+                        while (scan.nextLine())
+                        {
+                            if (classification)
+                                seen.add(scan.label);
+                            maxLen = Math.max(maxLen, scan.maxIndex + 1);
+                        }
+                    }
+                    labels = new double[seen.size()];
+                    int pos = 0;
+                    for (double label : seen)
+                        labels[pos++] = label;
+                    Arrays.sort(labels);
+                    if (vectorLength > 0 && maxLen > vectorLength)
+                        throw new RuntimeException("Length given was " + vectorLength + ", but observed length was " + maxLen);
+                    dim = Math.max(maxLen, vectorLength);
+                }
+                else if (dim < 0)
+                    dim = vectorLength;
+                return new LineReader(file, dim, classification ? labels : null);
+            }
+        };
+    }
+    
+    /**
+     * Reads a LIBSVM file one line at a time
+     */
+    private static class LineReader extends DataReader
+    {
+        private final BufferedReader reader;
+        /**
+         * The sorted class labels, or {@code null} for regression
+         */
+        private final double[] labels;
+        private final IntList indices = new IntList();
+        private final DoubleList values = new DoubleList();
+        /**
+         * The largest zero based index on the current line
+         */
+        int maxIndex;
+
+        public LineReader(File file, int dim, double[] labels) throws IOException
+        {
+            super(new CategoricalData[0], dim, labels == null ? null : new CategoricalData(Math.max(labels.length, 1)),
+                    labels == null ? DataWriter.DataSetType.REGRESSION : DataWriter.DataSetType.CLASSIFICATION);
+            this.reader = new BufferedReader(new FileReader(file));
+            this.labels = labels;
+        }
+
+        /**
+         * Parses the next non-empty line into {@link #label}, {@link #indices}
+         * and {@link #values}
+         *
+         * @return {@code false} if there are no more lines
+         */
+        boolean nextLine() throws IOException
+        {
+            String line;
+            do
+            {
+                line = reader.readLine();
+                if (line == null)
+                    return false;
+            }
+            while (line.trim().isEmpty());
+
+            indices.clear();
+            values.clear();
+            maxIndex = -1;
+            int pos = 0;
+            final int end = line.length();
+            while (pos < end && Character.isWhitespace(line.charAt(pos)))
+                pos++;
+            int s = pos;
+            while (pos < end && !Character.isWhitespace(line.charAt(pos)))
+                pos++;
+            label = Double.parseDouble(line.substring(s, pos));
+            boolean sorted = true;
+            while (true)
+            {
+                while (pos < end && Character.isWhitespace(line.charAt(pos)))
+                    pos++;
+                if (pos >= end)
+                    break;
+                s = pos;
+                while (pos < end && line.charAt(pos) != ':')
+                    pos++;
+                if (pos >= end)
+                    throw new RuntimeException("Invalid LIBSVM file, expected an index:value pair");
+                int index = StringUtils.parseInt(line, s, pos) - 1;
+                if (index < 0)
+                    throw new RuntimeException("Invalid LIBSVM file, indices must start from 1");
+                s = ++pos;
+                while (pos < end && !Character.isWhitespace(line.charAt(pos)))
+                    pos++;
+                double value = StringUtils.parseDouble(line, s, pos);
+                maxIndex = Math.max(maxIndex, index);
+                if (value == 0)
+                    continue;
+                if (!indices.isEmpty() && indices.getI(indices.size() - 1) >= index)
+                    sorted = false;
+                indices.add(index);
+                values.add(value);
+            }
+
+            if (!sorted)
+            {
+                SparseVector tmp = new SparseVector(maxIndex + 1, indices.size());
+                for (int z = 0; z < indices.size(); z++)
+                    tmp.set(indices.getI(z), values.getD(z));
+                indices.clear();
+                values.clear();
+                for (IndexValue iv : tmp)
+                {
+                    indices.add(iv.getIndex());
+                    values.add(iv.getValue());
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            if (!nextLine())
+                return false;
+            if (maxIndex >= dim)
+                throw new RuntimeException("Length given was " + dim + ", but observed index " + (maxIndex + 1));
+            int[] idx = new int[indices.size()];
+            double[] vals = new double[idx.length];
+            for (int z = 0; z < idx.length; z++)
+            {
+                idx[z] = indices.getI(z);
+                vals[z] = values.getD(z);
+            }
+            dp = new DataPoint(new SparseVector(idx, vals, dim, idx.length));
+            if (labels != null)
+            {
+                int c = Arrays.binarySearch(labels, label);
+                if (c < 0)
+                    throw new RuntimeException("Label " + label + " was not seen when the file was first read");
+                label = c;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            reader.close();
+        }
+    }
+    
     /**
      * Generic loader for both Classification and Regression interpretations. 
      * @param reader
@@ -264,18 +569,19 @@ public class LIBSVMLoader
      * @return
      * @throws IOException 
      */
-    private static DataSet loadG(Reader reader, double sparseRatio, int vectorLength, boolean classification, DataStore store) throws IOException
+    private static DataSet<?> loadG(Reader reader, double sparseRatio, int vectorLength, boolean classification, DataStore store) throws IOException
     {
         StringBuilder processBuffer = new StringBuilder(20);
         StringBuilder charBuffer = new StringBuilder(1024);
         char[] buffer = new char[1024];
         DataStore sparceVecs = store.emptyClone();
         sparceVecs.setCategoricalDataInfo(new CategoricalData[0]);
+        //a compressed store copies the values out, so we can re-use one vector
+        final boolean copiesRows = sparceVecs instanceof CompressedRowStore;
         /**
          * The category "label" for each value loaded in
          */
         List<Double> labelVals = new DoubleList();
-        Map<Double, Integer> possibleCats = new HashMap<>();
         int maxLen= 1;
         
         STATE state = STATE.INITIAL;
@@ -306,8 +612,6 @@ public class LIBSVMLoader
                 {
                     double label = Double.parseDouble(processBuffer.toString());
 
-                    if (!possibleCats.containsKey(label) && classification)
-                        possibleCats.put(label, possibleCats.size());
                     labelVals.add(label);
                     
                     sparceVecs.addDataPoint(new DataPoint(new SparseVector(maxLen, 0)));
@@ -326,7 +630,7 @@ public class LIBSVMLoader
                     tempVec.setLength(maxLen);
                     if (value != 0)
                         tempVec.set(indexProcessing, value);
-                    sparceVecs.addDataPoint(new DataPoint(tempVec.clone()));
+                    sparceVecs.addDataPoint(new DataPoint(copiesRows ? tempVec : tempVec.clone()));
                 }
                 else if(state == STATE.NEWLINE)
                 {
@@ -355,8 +659,6 @@ public class LIBSVMLoader
                     {
                         double label = Double.parseDouble(processBuffer.toString());
 
-                        if (!possibleCats.containsKey(label) && classification)
-                            possibleCats.put(label, possibleCats.size());
                         labelVals.add(label);
 
                         //clean up and move to new state
@@ -445,7 +747,7 @@ public class LIBSVMLoader
                     {
                         if (ch == '\n' || ch == '\r')
                         {
-                            sparceVecs.addDataPoint(new DataPoint(tempVec.clone()));
+                            sparceVecs.addDataPoint(new DataPoint(copiesRows ? tempVec : tempVec.clone()));
                             tempVec.zeroOut();
                             state = STATE.NEWLINE;
                         }
@@ -464,6 +766,28 @@ public class LIBSVMLoader
             }
         }
         
+        return toDataSet(sparceVecs, labelVals, maxLen, vectorLength, sparseRatio, classification, store);
+    }
+    
+    /**
+     * Creates the final data set once all the rows of a LIBSVM file have been
+     * loaded.
+     *
+     * @param sparceVecs the store holding every row loaded
+     * @param labelVals the label of each row
+     * @param maxLen the length needed for the largest index observed
+     * @param vectorLength the length requested by the user, or a negative
+     * value to use {@code maxLen}
+     * @param sparseRatio the fraction of non zero values to qualify a data
+     * point as sparse
+     * @param classification {@code true} to treat as classification,
+     * {@code false} to treat as regression
+     * @param store the type of store requested by the user
+     * @return the data set
+     */
+    static DataSet<?> toDataSet(DataStore sparceVecs, List<Double> labelVals, int maxLen, int vectorLength, double sparseRatio, boolean classification, DataStore store)
+    {
+        final boolean copiesRows = sparceVecs instanceof CompressedRowStore;
         if (vectorLength > 0)
             if (maxLen > vectorLength)
                 throw new RuntimeException("Length given was " + vectorLength + ", but observed length was " + maxLen);
@@ -472,10 +796,9 @@ public class LIBSVMLoader
 
         if(classification)
         {
-            CategoricalData predicting = new CategoricalData(possibleCats.size());
-
             //Give categories a unique ordering to avoid loading issues based on the order categories are presented
-            List<Double> allCatKeys = new DoubleList(possibleCats.keySet());
+            Map<Double, Integer> possibleCats = new HashMap<>();
+            List<Double> allCatKeys = new DoubleList(new HashSet<>(labelVals));
             Collections.sort(allCatKeys);
             for(int i = 0; i < allCatKeys.size(); i++)
                 possibleCats.put(allCatKeys.get(i), i);
@@ -499,7 +822,8 @@ public class LIBSVMLoader
             sparceVecs.setNumNumeric(maxLen);
             sparceVecs.finishAdding();
             RegressionDataSet rds = new RegressionDataSet(sparceVecs, labelVals);
-            rds.applyTransform(new DenseSparceTransform(sparseRatio));
+            if(!copiesRows)//compressed stores only keep the non-zero values
+                rds.applyTransform(new DenseSparceTransform(sparseRatio));
 
             return rds;
         }
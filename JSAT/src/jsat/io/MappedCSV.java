@@ -0,0 +1,486 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import jsat.DataSet;
+import jsat.DataStore;
+import jsat.SimpleDataSet;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.DoubleList;
+import jsat.utils.IntList;
+import jsat.utils.LongList;
+import jsat.utils.StringUtils;
+import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
+import static java.lang.Character.isWhitespace;
+
+/**
+ * Parses a CSV file by memory mapping it and splitting it into chunks that
+ * each begin at the start of a line. The chunks are parsed independently, and
+ * then merged in file order. Each chunk keeps its own dictionary of the
+ * categorical values it has seen, and these are translated to the shared
+ * sorted dictionary of the whole file once all chunks are done. The results
+ * are the same as the {@link java.io.Reader} based parsing in {@link CSV},
+ * except that numbers are parsed with
+ * {@link StringUtils#parseDouble(java.nio.ByteBuffer, int, int) }, which is
+ * correctly rounded and may differ in the last bit.
+ * <br>
+ * The file is read as bytes, so the encoding of the file must be ASCII
+ * compatible (such as UTF-8), and the delimiter and comment characters must
+ * be ASCII characters.
+ *
+ * @author Edward Raff
+ */
+final class MappedCSV
+{
+    /**
+     * The largest chunk of the file that will be parsed as one unit
+     */
+    static final int MAX_CHUNK = 1 << 26;
+    /**
+     * The smallest chunk of the file that will be parsed as one unit, unless
+     * the file is smaller than this
+     */
+    static final int MIN_CHUNK = 1 << 20;
+
+    private MappedCSV()
+    {
+    }
+
+    /**
+     *
+     * @param ch the character to check
+     * @return {@code true} if the character can be handled by this parser
+     */
+    static boolean canParse(char ch)
+    {
+        return ch < 128 && ch != '\n' && ch != '\r';
+    }
+
+    static DataSet<?> read(Path path, int lines_to_skip, char delimiter, char comment, Set<Integer> cat_col, int numeric_target, int cat_target, DataStore store, boolean parallel) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return read(channel, lines_to_skip, delimiter, comment, cat_col, numeric_target, cat_target, store, parallel, chunkSize(channel.size(), parallel));
+        }
+    }
+
+    /**
+     * Reads the CSV file using the given chunk size
+     */
+    static DataSet<?> read(FileChannel channel, int lines_to_skip, char delimiter, char comment, Set<Integer> cat_col, int numeric_target, int cat_target, DataStore store, boolean parallel, long chunkSize) throws IOException
+    {
+        long dataStart = skipLines(channel, lines_to_skip);
+        LongList starts = lineAlignedChunks(channel, dataStart, chunkSize);
+
+        Set<Integer> cats = new HashSet<>(cat_col);
+        if (cat_target >= 0)
+            cats.add(cat_target);
+
+        final int numChunks = starts.size() - 1;
+        List<Chunk> parsed;
+        try
+        {
+            parsed = ParallelUtils.range(numChunks, parallel).mapToObj(i ->
+            {
+                try
+                {
+                    long start = starts.getL(i);
+                    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, starts.getL(i + 1) - start);
+                    Chunk chunk = new Chunk(delimiter, comment, cats, numeric_target, cat_target);
+                    chunk.parse(buf);
+                    return chunk;
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            }).collect(Collectors.toList());
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+
+        //check that the chunks agree on the number of columns
+        int totalCols = -1;
+        for (Chunk chunk : parsed)
+            if (chunk.totalCols >= 0)
+                if (totalCols < 0)
+                    totalCols = chunk.totalCols;
+                else if (totalCols != chunk.totalCols)
+                    throw new RuntimeException("Inconsistent number of columns in CSV");
+        if (totalCols < 0)
+            throw new RuntimeException("CSV file contained no data");
+
+        //the categorical features, in the order they occur in each row
+        IntList catColumns = new IntList();
+        for (int col = 0; col < totalCols; col++)
+            if (col != cat_target && cats.contains(col))
+                catColumns.add(col);
+
+        /*
+         * Merge the dictionaries, sorting each set of options so that we get
+         * the same feature index ordering regardless of the order they
+         * occurred in the data
+         */
+        Map<Integer, List<String>> sortedOptions = new HashMap<>();
+        for (int col : cats)
+        {
+            Set<String> seen = new HashSet<>();
+            for (Chunk chunk : parsed)
+                seen.addAll(chunk.seenCats.getOrDefault(col, Collections.emptyMap()).keySet());
+            List<String> sorted = new ArrayList<>(seen);
+            Collections.sort(sorted);
+            sortedOptions.put(col, sorted);
+        }
+
+        CategoricalData[] cat_array = new CategoricalData[catColumns.size()];
+        for (int i = 0; i < cat_array.length; i++)
+            cat_array[i] = toCategoricalData(sortedOptions.get(catColumns.getI(i)));
+        CategoricalData target_data = cat_target >= 0 ? toCategoricalData(sortedOptions.get(cat_target)) : null;
+
+        //translate every chunk to the global dictionary
+        ParallelUtils.streamP(parsed.stream(), parallel).forEach(chunk ->
+        {
+            int[][] translators = new int[cat_array.length][];
+            for (int i = 0; i < translators.length; i++)
+                translators[i] = chunk.translator(catColumns.getI(i), sortedOptions);
+            for (int[] cat_vals : chunk.all_cats)
+                for (int i = 0; i < cat_vals.length; i++)
+                    if (cat_vals[i] >= 0)//if -1 its a missing value
+                        cat_vals[i] = translators[i][cat_vals[i]];
+            if (cat_target >= 0)
+            {
+                int[] translator = chunk.translator(cat_target, sortedOptions);
+                for (int i = 0; i < chunk.catTargets.size(); i++)
+                    chunk.catTargets.set(i, translator[chunk.catTargets.getI(i)]);
+            }
+        });
+
+        //now add everything in order
+        DataSet<?> d;
+        if (cat_target >= 0)
+        {
+            ClassificationDataSet cds = new ClassificationDataSet(totalCols - cat_array.length - 1, cat_array, target_data);
+            cds.setDataStore(store);
+            for (Chunk chunk : parsed)
+                for (int i = 0; i < chunk.all_vecs.size(); i++)
+                    cds.addDataPoint(chunk.all_vecs.get(i), chunk.all_cats.get(i), chunk.catTargets.getI(i));
+            d = cds;
+        }
+        else if (numeric_target >= 0)
+        {
+            RegressionDataSet rds = new RegressionDataSet(totalCols - cat_array.length - 1, cat_array);
+            rds.setDataStore(store);
+            for (Chunk chunk : parsed)
+                for (int i = 0; i < chunk.all_vecs.size(); i++)
+                    rds.addDataPoint(chunk.all_vecs.get(i), chunk.all_cats.get(i), chunk.regressionTargets.getD(i));
+            d = rds;
+        }
+        else
+        {
+            SimpleDataSet sds = new SimpleDataSet(totalCols - cat_array.length, cat_array);
+            sds.setDataStore(store);
+            for (Chunk chunk : parsed)
+                for (int i = 0; i < chunk.all_vecs.size(); i++)
+                    sds.add(new DataPoint(chunk.all_vecs.get(i), chunk.all_cats.get(i), cat_array));
+            d = sds;
+        }
+        store.finishAdding();
+        return d;
+    }
+
+    /**
+     * Picks the size of the chunks to split a file into
+     *
+     * @param size the size of the file in bytes
+     * @param parallel whether or not the chunks will be parsed in parallel
+     * @return the number of bytes to aim for in each chunk
+     */
+    static long chunkSize(long size, boolean parallel)
+    {
+        int chunks = parallel ? SystemInfo.LogicalCores * 4 : 1;
+        return Math.min(Math.max(size / chunks + 1, MIN_CHUNK), MAX_CHUNK);
+    }
+
+    /**
+     * Splits a file into chunks of roughly the given size, where every chunk
+     * starts at the beginning of a line.
+     *
+     * @param channel the file to split
+     * @param start the position to start the first chunk at
+     * @param chunkSize the desired size of each chunk
+     * @return the start of each chunk, followed by the size of the file
+     * @throws IOException
+     */
+    static LongList lineAlignedChunks(FileChannel channel, long start, long chunkSize) throws IOException
+    {
+        long size = channel.size();
+        LongList starts = new LongList();
+        long pos = start;
+        while (pos < size)
+        {
+            starts.add(pos);
+            long next = Math.min(pos + chunkSize, size);
+            if (next < size)
+                next = nextLineStart(channel, next);
+            if (next - pos > Integer.MAX_VALUE)
+                throw new IOException("File has a line that is too long to parse");
+            pos = next;
+        }
+        starts.add(size);
+        return starts;
+    }
+
+    private static CategoricalData toCategoricalData(List<String> options)
+    {
+        CategoricalData cd = new CategoricalData(options.size());
+        for (int i = 0; i < options.size(); i++)
+            cd.setOptionName(options.get(i), i);
+        return cd;
+    }
+
+    static boolean isNewLine(byte b)
+    {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Finds the position after the first {@code lines} lines of the file, in
+     * the same manner as the {@link CSV} reader: a line is ended by a run of
+     * any number of newline characters.
+     */
+    private static long skipLines(FileChannel channel, int lines) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = 0;
+        long bufStart = 0;
+        buf.limit(0);
+        boolean inNewLines = false;
+        while (lines > 0)
+        {
+            if (pos - bufStart >= buf.limit())
+            {
+                buf.clear();
+                bufStart = pos;
+                if (channel.read(buf, pos) <= 0)
+                    return channel.size();
+                buf.flip();
+            }
+            byte b = buf.get((int) (pos - bufStart));
+            if (isNewLine(b))
+                inNewLines = true;
+            else if (inNewLines)
+            {
+                lines--;
+                inNewLines = false;
+                if (lines == 0)
+                    break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Finds the start of the first line that begins at or after the given
+     * position.
+     */
+    private static long nextLineStart(FileChannel channel, long pos) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        pos--;//the previous character may be the newline
+        while (true)
+        {
+            buf.clear();
+            int read = channel.read(buf, pos);
+            if (read <= 0)
+                return channel.size();
+            for (int i = 0; i < read; i++)
+                if (isNewLine(buf.get(i)))
+                    return pos + i + 1;
+            pos += read;
+        }
+    }
+
+    /**
+     * The results of parsing a single chunk of the file, where categorical
+     * values are indices into the chunk's own dictionaries.
+     */
+    private static class Chunk
+    {
+        final byte delimiter;
+        final byte comment;
+        final Set<Integer> cat_col;
+        final int numeric_target;
+        final int cat_target;
+
+        final Map<Integer, Map<String, Integer>> seenCats = new HashMap<>();
+        final List<Vec> all_vecs = new ArrayList<>();
+        final List<int[]> all_cats = new ArrayList<>();
+        final DoubleList regressionTargets = new DoubleList();
+        final IntList catTargets = new IntList();
+        int totalCols = -1;
+
+        public Chunk(char delimiter, char comment, Set<Integer> cat_col, int numeric_target, int cat_target)
+        {
+            this.delimiter = (byte) delimiter;
+            this.comment = (byte) comment;
+            this.cat_col = cat_col;
+            this.numeric_target = numeric_target;
+            this.cat_target = cat_target;
+        }
+
+        /**
+         * Creates a mapping from this chunk's index for each option of a
+         * column, to the index in the sorted list of all options
+         */
+        int[] translator(int col, Map<Integer, List<String>> sortedOptions)
+        {
+            Map<String, Integer> local = seenCats.getOrDefault(col, Collections.emptyMap());
+            List<String> sorted = sortedOptions.get(col);
+            int[] translator = new int[local.size()];
+            for (Map.Entry<String, Integer> entry : local.entrySet())
+                translator[entry.getValue()] = Collections.binarySearch(sorted, entry.getKey());
+            return translator;
+        }
+
+        void parse(ByteBuffer buf)
+        {
+            final int end = buf.limit();
+            DoubleList numericFeats = new DoubleList();
+            IntList catFeats = new IntList();
+            Charset charset = Charset.defaultCharset();
+            byte[] scratch = new byte[64];
+
+            int pos = 0;
+            while (pos < end)
+            {
+                if (isNewLine(buf.get(pos)))
+                {
+                    pos++;
+                    continue;
+                }
+
+                //start of a row
+                int cur_column = 0;
+                while (true)
+                {
+                    //skip leading white space
+                    while (pos < end && isValueWhitespace(buf.get(pos)))
+                        pos++;
+                    int valStart = pos;
+                    byte b = 0;
+                    while (pos < end && (b = buf.get(pos)) != delimiter && !isNewLine(b) && b != comment)
+                        pos++;
+                    int valEnd = pos;
+                    while (valEnd > valStart && isValueWhitespace(buf.get(valEnd - 1)))
+                        valEnd--;
+
+                    if (cat_col.contains(cur_column))
+                    {
+                        int val;
+                        if (valEnd == valStart)
+                            val = -1;
+                        else
+                        {
+                            int len = valEnd - valStart;
+                            if (scratch.length < len)
+                                scratch = new byte[len];
+                            for (int i = 0; i < len; i++)
+                                scratch[i] = buf.get(valStart + i);
+                            String cat_op = new String(scratch, 0, len, charset);
+                            Map<String, Integer> map = seenCats.computeIfAbsent(cur_column, k -> new HashMap<>());
+                            Integer indx = map.get(cat_op);
+                            if (indx == null)
+                                map.put(cat_op, indx = map.size());
+                            val = indx;
+                        }
+
+                        if (cur_column == cat_target)
+                            if (val == -1)
+                                throw new RuntimeException("Categorical column can't have missing values!");
+                            else
+                                catTargets.add(val);
+                        else
+                            catFeats.add(val);
+                    }
+                    else//numeric feature
+                    {
+                        double val;
+                        if (valEnd == valStart)
+                            val = Double.NaN;
+                        else
+                            val = StringUtils.parseDouble(buf, valStart, valEnd);
+                        if (cur_column == numeric_target)
+                            regressionTargets.add(val);
+                        else
+                            numericFeats.add(val);
+                    }
+
+                    if (pos < end && b == delimiter)
+                    {
+                        pos++;
+                        cur_column++;
+                        continue;
+                    }
+
+                    //end of the row
+                    if (totalCols < 0)
+                        totalCols = cur_column + 1;
+                    else if (totalCols != cur_column + 1)
+                        throw new RuntimeException("Inconsistent number of columns in CSV");
+
+                    all_vecs.add(new DenseVector(Arrays.copyOf(numericFeats.getBackingArray(), numericFeats.size())));
+                    int[] cat_vals = new int[catFeats.size()];
+                    for (int i = 0; i < cat_vals.length; i++)
+                        cat_vals[i] = catFeats.getI(i);
+                    all_cats.add(cat_vals);
+                    numericFeats.clear();
+                    catFeats.clear();
+
+                    if (pos < end && b == comment)//run till the end of the line
+                        while (pos < end && !isNewLine(buf.get(pos)))
+                            pos++;
+                    break;
+                }
+            }
+        }
+
+        private static boolean isValueWhitespace(byte b)
+        {
+            return b >= 0 && !isNewLine(b) && isWhitespace((char) b);
+        }
+    }
+
+}
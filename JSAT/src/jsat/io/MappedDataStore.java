@@ -0,0 +1,631 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import jsat.DataStore;
+import jsat.RowMajorStore;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.io.JSATData.DatasetTypeMarker;
+import jsat.io.JSATData.FloatStorageMethod;
+import jsat.linear.DenseVector;
+import jsat.linear.IndexValue;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.math.OnLineStatistics;
+import jsat.utils.LongList;
+
+/**
+ * A read-mostly {@link DataStore} that memory maps a file written by
+ * {@link JSATData} and decodes data points directly from the mapped bytes on
+ * request. The data points are never all materialized on the Java heap, so the
+ * size of the dataset is bounded by the disk and the operating system's page
+ * cache rather than the maximum heap size. The only per-point heap cost is the
+ * 8 byte offset of each row in the file, which is found with a single
+ * sequential pass over the file when the store is created.<br>
+ * <br>
+ * The mapped file is never modified. Calls to
+ * {@link #setDataPoint(int, jsat.classifiers.DataPoint) } and
+ * {@link #addDataPoint(jsat.classifiers.DataPoint) } are kept in an on-heap
+ * overlay, and take precedence over the contents of the file. Once every row
+ * of the file has been replaced, the number of features may be reduced below
+ * the number stored in the file, as happens when a transform that removes
+ * features is applied to the dataset.<br>
+ * <br>
+ * Every call to {@link #getDataPoint(int) } creates a new data point object,
+ * so algorithms that repeatedly access the same points will do more work than
+ * with a {@link RowMajorStore}. Reads are thread safe.
+ *
+ * @author Edward Raff
+ */
+public class MappedDataStore implements DataStore
+{
+    /**
+     * Files larger than 2GB can not be mapped by one buffer, so we map the file
+     * in segments of this many bytes.
+     */
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    /**
+     * Each segment overlaps the next by this many bytes, so that any primitive
+     * value starting in a segment can be read entirely from that segment.
+     */
+    private static final int SEGMENT_OVERLAP = 8;
+
+    private final MappedByteBuffer[] segments;
+    private final long fileLength;
+
+    private final DatasetTypeMarker marker;
+    private final FloatStorageMethod fpStore;
+    /**
+     * The number of numeric features stored in each row of the file
+     */
+    private final int fileNumeric;
+    private final int fileCat;
+    private final CategoricalData predicting;
+    /**
+     * The starting position of every row in the file
+     */
+    private final long[] offsets;
+
+    private int num_numeric;
+    private CategoricalData[] cat_info;
+    /**
+     * Data points that have been replaced by calls to setDataPoint, or
+     * {@code null} if none have been.
+     */
+    private volatile DataPoint[] replaced;
+    /**
+     * Data points that have been added after the file was mapped
+     */
+    private List<DataPoint> added;
+
+    /**
+     * Creates a new data store by memory mapping the given file, which must
+     * have been written by {@link JSATData}.
+     *
+     * @param file the JSAT data file to map
+     * @throws IOException
+     */
+    public MappedDataStore(File file) throws IOException
+    {
+        this(file, false);
+    }
+
+    /**
+     * Creates a new data store by memory mapping the given file, which must
+     * have been written by {@link JSATData}.
+     *
+     * @param file the JSAT data file to map
+     * @param forceAsStandard {@code true} if any classification or regression
+     * target should be treated as a normal feature of each data point
+     * @throws IOException
+     */
+    public MappedDataStore(File file, boolean forceAsStandard) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel())
+        {
+            fileLength = channel.size();
+            int numSegments = (int) ((fileLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            segments = new MappedByteBuffer[Math.max(numSegments, 1)];
+            for (int s = 0; s < segments.length; s++)
+            {
+                long start = s * SEGMENT_SIZE;
+                long len = Math.min(SEGMENT_SIZE + SEGMENT_OVERLAP, fileLength - start);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(len, 0));
+            }
+        }//the mapping stays valid after the channel is closed
+
+        MappedInput in = new MappedInput();
+        JSATData.Header header = JSATData.readHeader(new DataInputStream(in), forceAsStandard);
+        if (header.version != 1)
+            throw new RuntimeException("Only version 1 JSAT files can be memory mapped, not version " + header.version);
+        marker = header.marker;
+        fpStore = header.fpStore;
+        fileNumeric = num_numeric = header.numNumeric;
+        fileCat = header.numCat;
+        cat_info = header.categories;
+        predicting = header.predicting;
+
+        //one pass over the file to find where each row starts
+        long N = header.N < 0 ? Long.MAX_VALUE : header.N;
+        LongList rowStarts = new LongList(header.N < 0 ? 16 : header.N);
+        long pos = in.pos;
+        while (rowStarts.size() < N)
+        {
+            long end = rowEnd(pos);
+            if (end < 0)//end of file
+                break;
+            rowStarts.add(pos);
+            pos = end;
+        }
+        offsets = new long[rowStarts.size()];
+        for (int i = 0; i < offsets.length; i++)
+            offsets[i] = rowStarts.getL(i);
+
+        added = new ArrayList<>();
+    }
+
+    /**
+     * Copy constructor. The mapped file is shared between the two objects.
+     *
+     * @param toCopy the object to copy
+     */
+    public MappedDataStore(MappedDataStore toCopy)
+    {
+        this.segments = toCopy.segments;
+        this.fileLength = toCopy.fileLength;
+        this.marker = toCopy.marker;
+        this.fpStore = toCopy.fpStore;
+        this.fileNumeric = toCopy.fileNumeric;
+        this.fileCat = toCopy.fileCat;
+        this.predicting = toCopy.predicting;
+        this.offsets = toCopy.offsets;
+        this.num_numeric = toCopy.num_numeric;
+        if (toCopy.cat_info != null)
+            this.cat_info = CategoricalData.copyOf(toCopy.cat_info);
+        if (toCopy.replaced != null)
+            this.replaced = toCopy.replaced.clone();
+        this.added = new ArrayList<>(toCopy.added);
+    }
+
+    /**
+     *
+     * @return the type of dataset that was stored in the mapped file
+     */
+    DatasetTypeMarker getMarker()
+    {
+        return marker;
+    }
+
+    /**
+     *
+     * @return the information about the target class, if the mapped file was a
+     * classification dataset
+     */
+    CategoricalData getPredicting()
+    {
+        return predicting;
+    }
+
+    /**
+     * Returns the weight of the <tt>i</tt>'th row stored in the mapped file
+     * @param i the row to get the weight of
+     * @return the weight of the row
+     */
+    double getFileWeight(int i)
+    {
+        return readFP(offsets[i]);
+    }
+
+    /**
+     * Returns the regression or classification target of the <tt>i</tt>'th row
+     * stored in the mapped file.
+     *
+     * @param i the row to get the target of
+     * @return the target value of the row
+     */
+    double getFileTarget(int i)
+    {
+        long pos = offsets[i] + fpStore.bytes + 4L * fileCat;
+        if (marker == DatasetTypeMarker.CLASSIFICATION)
+            return getInt(pos);
+        else if (marker != DatasetTypeMarker.REGRESSION)
+            return 0;
+        boolean sparse = get(pos++) != 0;
+        if (sparse)
+        {
+            int nnz = getInt(pos);
+            //target is the last index/value pair
+            return readFP(pos + 4 + (nnz - 1) * (4L + fpStore.bytes) + 4);
+        }
+        else
+            return readFP(pos + (long) fileNumeric * fpStore.bytes);
+    }
+
+    @Override
+    public void setCategoricalDataInfo(CategoricalData[] cat_info)
+    {
+        if (cat_info.length < fileCat && !allRowsReplaced())
+            throw new IllegalArgumentException("Mapped file has " + fileCat + " categorical features, can not reduce to " + cat_info.length + " unless every row has been replaced");
+        this.cat_info = cat_info;
+    }
+
+    @Override
+    public CategoricalData[] getCategoricalDataInfo()
+    {
+        return cat_info;
+    }
+
+    @Override
+    public void addDataPoint(DataPoint dp)
+    {
+        added.add(dp);
+        num_numeric = Math.max(dp.getNumericalValues().length(), num_numeric);
+    }
+
+    @Override
+    public DataPoint getDataPoint(int i)
+    {
+        if (i >= offsets.length)
+            return added.get(i - offsets.length);
+        DataPoint[] r = replaced;
+        if (r != null && r[i] != null)
+            return r[i];
+        return decode(i);
+    }
+
+    @Override
+    public void setDataPoint(int i, DataPoint dp)
+    {
+        if (i >= offsets.length)
+            added.set(i - offsets.length, dp);
+        else
+        {
+            if (i < 0)
+                throw new IndexOutOfBoundsException("Can not set index " + i);
+            if (replaced == null)
+                synchronized (this)
+                {
+                    if (replaced == null)
+                        replaced = new DataPoint[offsets.length];
+                }
+            replaced[i] = dp;
+        }
+    }
+
+    @Override
+    public void finishAdding()
+    {
+        for (DataPoint dp : added)
+            dp.getNumericalValues().setLength(num_numeric);
+    }
+
+    @Override
+    public int numNumeric()
+    {
+        return num_numeric;
+    }
+
+    @Override
+    public void setNumNumeric(int d)
+    {
+        if (d < fileNumeric && !allRowsReplaced())
+            throw new IllegalArgumentException("Mapped file has " + fileNumeric + " numeric features, can not reduce to " + d + " unless every row has been replaced");
+        num_numeric = d;
+    }
+
+    @Override
+    public int numCategorical()
+    {
+        return cat_info == null ? fileCat : cat_info.length;
+    }
+
+    @Override
+    public int[] getCatColumn(int i)
+    {
+        if (i < 0 || i >= numCategorical())
+            throw new IndexOutOfBoundsException("There is no index for column " + i);
+        int[] toRet = new int[size()];
+        for (int z = 0; z < toRet.length; z++)
+        {
+            if (z < offsets.length && !isReplaced(z))
+                toRet[z] = i < fileCat ? getInt(offsets[z] + fpStore.bytes + 4L * i) : -1;
+            else
+            {
+                int[] cats = getDataPoint(z).getCategoricalValues();
+                toRet[z] = i < cats.length ? cats[i] : -1;
+            }
+        }
+        return toRet;
+    }
+
+    @Override
+    public Vec[] getNumericColumns(Set<Integer> skipColumns)
+    {
+        boolean sparse = getSparsityStats().getMean() < 0.6;
+        Vec[] cols = new Vec[numNumeric()];
+
+        for (int j = 0; j < cols.length; j++)
+            if (!skipColumns.contains(j))
+                cols[j] = sparse ? new SparseVector(size()) : new DenseVector(size());
+
+        for (int i = 0; i < size(); i++)
+        {
+            if (i < offsets.length && !isReplaced(i))
+            {
+                //read straight from the file, no need to create the row
+                long pos = numericStart(i);
+                boolean sparseRow = get(pos++) != 0;
+                if (sparseRow)
+                {
+                    int nnz = storedNNZ(pos);
+                    pos += 4;
+                    for (int z = 0; z < nnz; z++)
+                    {
+                        int col = getInt(pos);
+                        pos += 4;
+                        if (cols[col] != null)
+                            cols[col].set(i, readFP(pos));
+                        pos += fpStore.bytes;
+                    }
+                }
+                else
+                {
+                    for (int col = 0; col < fileNumeric; col++, pos += fpStore.bytes)
+                        if (cols[col] != null)
+                            cols[col].set(i, readFP(pos));
+                }
+            }
+            else
+            {
+                for (IndexValue iv : getDataPoint(i).getNumericalValues())
+                {
+                    int col = iv.getIndex();
+                    if (cols[col] != null)
+                        cols[col].set(i, iv.getValue());
+                }
+            }
+        }
+
+        return cols;
+    }
+
+    @Override
+    public int size()
+    {
+        return offsets.length + added.size();
+    }
+
+    @Override
+    public OnLineStatistics getSparsityStats()
+    {
+        OnLineStatistics stats = new OnLineStatistics();
+        for (int i = 0; i < size(); i++)
+        {
+            if (i < offsets.length && !isReplaced(i))
+            {
+                long pos = numericStart(i);
+                if (get(pos) != 0)
+                    stats.add(storedNNZ(pos + 1) / (double) num_numeric);
+                else
+                    stats.add(1.0);
+            }
+            else
+            {
+                Vec v = getDataPoint(i).getNumericalValues();
+                if (v.isSparse())
+                    stats.add(v.nnz() / (double) v.length());
+                else
+                    stats.add(1.0);
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public MappedDataStore clone()
+    {
+        return new MappedDataStore(this);
+    }
+
+    /**
+     * Since a mapped file can not be added to, this returns a new
+     * {@link RowMajorStore} with the same feature information as this store.
+     *
+     * @return an empty on-heap data store
+     */
+    @Override
+    public DataStore emptyClone()
+    {
+        return new RowMajorStore(num_numeric, cat_info);
+    }
+
+    /**
+     *
+     * @param i the row of the mapped file
+     * @return {@code true} if the row has been replaced by a call to
+     * {@link #setDataPoint(int, jsat.classifiers.DataPoint) }
+     */
+    private boolean isReplaced(int i)
+    {
+        DataPoint[] r = replaced;
+        return r != null && r[i] != null;
+    }
+
+    /**
+     *
+     * @return {@code true} if every row of the mapped file has been replaced,
+     * so that the contents of the file are no longer used
+     */
+    private boolean allRowsReplaced()
+    {
+        for (int i = 0; i < offsets.length; i++)
+            if (!isReplaced(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Creates the data point for a row of the mapped file
+     *
+     * @param i the row to decode
+     * @return the data point stored in the row
+     */
+    private DataPoint decode(int i)
+    {
+        long pos = offsets[i] + fpStore.bytes;
+        int[] catVals = new int[numCategorical()];
+        for (int j = 0; j < fileCat; j++, pos += 4)
+            catVals[j] = getInt(pos);
+        for (int j = fileCat; j < catVals.length; j++)
+            catVals[j] = -1;//Missing value
+        if (marker == DatasetTypeMarker.CLASSIFICATION)
+            pos += 4;
+
+        Vec numericVals;
+        boolean sparse = get(pos++) != 0;
+        if (sparse)
+        {
+            int nnz = storedNNZ(pos);
+            pos += 4;
+            int[] indicies = new int[nnz];
+            double[] values = new double[nnz];
+            for (int j = 0; j < nnz; j++)
+            {
+                indicies[j] = getInt(pos);
+                pos += 4;
+                values[j] = readFP(pos);
+                pos += fpStore.bytes;
+            }
+            numericVals = new SparseVector(indicies, values, num_numeric, nnz);
+        }
+        else
+        {
+            double[] values = new double[num_numeric];
+            for (int j = 0; j < fileNumeric; j++, pos += fpStore.bytes)
+                values[j] = readFP(pos);
+            numericVals = new DenseVector(values);
+        }
+
+        return new DataPoint(numericVals, catVals, cat_info);
+    }
+
+    /**
+     *
+     * @param i the row of the file
+     * @return the position of the sparse/dense flag for the row
+     */
+    private long numericStart(int i)
+    {
+        long pos = offsets[i] + fpStore.bytes + 4L * fileCat;
+        if (marker == DatasetTypeMarker.CLASSIFICATION)
+            pos += 4;
+        return pos;
+    }
+
+    /**
+     *
+     * @param pos the position of the number of non-zeros stored in a sparse row
+     * @return the number of non-zero numeric features, not counting a
+     * regression target
+     */
+    private int storedNNZ(long pos)
+    {
+        int nnz = getInt(pos);
+        if (marker == DatasetTypeMarker.REGRESSION)
+            nnz--;//don't count the target value
+        return nnz;
+    }
+
+    /**
+     * Finds the end of the row starting at the given position
+     * @param pos the start of a row
+     * @return the position of the next row, or -1 if the file ends before the
+     * row does
+     */
+    private long rowEnd(long pos)
+    {
+        pos += fpStore.bytes + 4L * fileCat;
+        if (marker == DatasetTypeMarker.CLASSIFICATION)
+            pos += 4;
+        if (pos + 1 > fileLength)
+            return -1;
+        boolean sparse = get(pos++) != 0;
+        if (sparse)
+        {
+            if (pos + 4 > fileLength)
+                return -1;
+            //the regression target is included in the stored count
+            pos += 4 + getInt(pos) * (4L + fpStore.bytes);
+        }
+        else
+        {
+            pos += (long) fileNumeric * fpStore.bytes;
+            if (marker == DatasetTypeMarker.REGRESSION)
+                pos += fpStore.bytes;
+        }
+        return pos > fileLength ? -1 : pos;
+    }
+
+    private double readFP(long pos)
+    {
+        switch (fpStore)
+        {
+            case FP64:
+                return segment(pos).getDouble(offset(pos));
+            case FP32:
+                return segment(pos).getFloat(offset(pos));
+            case SHORT:
+                return segment(pos).getShort(offset(pos));
+            case BYTE:
+                return get(pos);
+            case U_BYTE:
+                return get(pos) & 0xff;
+            default:
+                throw new RuntimeException("Invalid storage method " + fpStore);
+        }
+    }
+
+    private byte get(long pos)
+    {
+        return segment(pos).get(offset(pos));
+    }
+
+    private int getInt(long pos)
+    {
+        return segment(pos).getInt(offset(pos));
+    }
+
+    private MappedByteBuffer segment(long pos)
+    {
+        return segments[(int) (pos >>> SEGMENT_BITS)];
+    }
+
+    private static int offset(long pos)
+    {
+        return (int) (pos & SEGMENT_MASK);
+    }
+
+    /**
+     * Stream over the mapped bytes, used to read the header
+     */
+    private class MappedInput extends InputStream
+    {
+        long pos = 0;
+
+        @Override
+        public int read() throws IOException
+        {
+            if (pos >= fileLength)
+                return -1;
+            return get(pos++) & 0xff;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import jsat.CompressedRowStore;
+import jsat.DataSet;
+import jsat.DataStore;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.linear.IndexValue;
+import jsat.linear.SparseVector;
+import jsat.linear.SparseVectorView;
+import jsat.utils.DoubleList;
+import jsat.utils.LongList;
+import jsat.utils.StringUtils;
+import jsat.utils.concurrent.ParallelUtils;
+
+/**
+ * Loads a LIBSVM file by memory mapping it and splitting it into chunks that
+ * each begin at the start of a line, which are then parsed in parallel. Values
+ * are read directly from the mapped bytes, so no Strings are created.<br>
+ * <br>
+ * Loading is done in two passes over each chunk. The first only counts the
+ * rows and non-zero values, and finds the largest index used. This lets the
+ * second pass place the values into exactly sized arrays, and create every
+ * vector with its final length.
+ *
+ * @author Edward Raff
+ */
+final class MappedLIBSVM
+{
+    private MappedLIBSVM()
+    {
+    }
+
+    static DataSet<?> load(File file, double sparseRatio, int vectorLength, boolean classification, DataStore store, boolean parallel) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            return load(channel, sparseRatio, vectorLength, classification, store, parallel, MappedCSV.chunkSize(channel.size(), parallel));
+        }
+    }
+
+    /**
+     * Loads the LIBSVM file using the given chunk size
+     */
+    static DataSet<?> load(FileChannel channel, double sparseRatio, int vectorLength, boolean classification, DataStore store, boolean parallel, long chunkSize) throws IOException
+    {
+        LongList starts = MappedCSV.lineAlignedChunks(channel, 0, chunkSize);
+        List<Chunk> chunks;
+        try
+        {
+            chunks = ParallelUtils.range(starts.size() - 1, parallel).mapToObj(i ->
+            {
+                try
+                {
+                    long start = starts.getL(i);
+                    Chunk chunk = new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, starts.getL(i + 1) - start));
+                    chunk.count();
+                    return chunk;
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            }).collect(Collectors.toList());
+        }
+        catch (UncheckedIOException ex)
+        {
+            throw ex.getCause();
+        }
+
+        int maxLen = 1;
+        int totalRows = 0;
+        for (Chunk chunk : chunks)
+        {
+            if (chunk.maxIndex > Integer.MAX_VALUE)
+                throw new RuntimeException("Index " + chunk.maxIndex + " is too large");
+            maxLen = Math.max(maxLen, (int) chunk.maxIndex);
+            totalRows += chunk.rows;
+        }
+        final int length = vectorLength > maxLen ? vectorLength : maxLen;
+
+        DataStore sparceVecs = store.emptyClone();
+        sparceVecs.setCategoricalDataInfo(new CategoricalData[0]);
+        sparceVecs.setNumNumeric(length);
+        //a compressed store copies the values out, so we can re-use one vector
+        final boolean copiesRows = sparceVecs instanceof CompressedRowStore;
+
+        ParallelUtils.streamP(chunks.stream(), parallel).forEach(chunk ->
+        {
+            chunk.parse();
+            if (!copiesRows)
+                chunk.createPoints(length);
+        });
+
+        DoubleList labelVals = new DoubleList(totalRows);
+        SparseVectorView view = new SparseVectorView(new int[0], new double[0], 0, 0, length);
+        DataPoint viewPoint = new DataPoint(view);
+        for (Chunk chunk : chunks)
+        {
+            for (int i = 0; i < chunk.rows; i++)
+            {
+                labelVals.add(chunk.labels[i]);
+                if (copiesRows)
+                {
+                    view.setView(chunk.indexes, chunk.values, chunk.rowStart[i], chunk.rowStart[i + 1], length);
+                    sparceVecs.addDataPoint(viewPoint);
+                }
+                else
+                    sparceVecs.addDataPoint(chunk.points.get(i));
+            }
+            chunk.release();
+        }
+
+        return LIBSVMLoader.toDataSet(sparceVecs, labelVals, maxLen, vectorLength, sparseRatio, classification, store);
+    }
+
+    private static boolean isSpace(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * One line aligned chunk of the file
+     */
+    private static class Chunk
+    {
+        ByteBuffer buf;
+        int rows = 0;
+        int nnz = 0;
+        /**
+         * The largest 1 based index seen
+         */
+        long maxIndex = 0;
+
+        double[] labels;
+        int[] rowStart;
+        int[] indexes;
+        double[] values;
+        List<DataPoint> points;
+
+        public Chunk(ByteBuffer buf)
+        {
+            this.buf = buf;
+        }
+
+        /**
+         * The first pass, which counts the number of rows and non-zero values,
+         * and finds the largest index
+         */
+        void count()
+        {
+            final int end = buf.limit();
+            boolean lineStart = true;
+            long num = 0;
+            for (int pos = 0; pos < end; pos++)
+            {
+                byte b = buf.get(pos);
+                if (MappedCSV.isNewLine(b))
+                {
+                    lineStart = true;
+                    num = 0;
+                }
+                else if (isSpace(b))
+                    num = 0;
+                else
+                {
+                    if (lineStart)
+                    {
+                        rows++;
+                        lineStart = false;
+                    }
+                    if (b >= '0' && b <= '9')
+                        num = Math.min(num * 10 + (b - '0'), Long.MAX_VALUE / 10);
+                    else if (b == ':')
+                    {
+                        nnz++;
+                        maxIndex = Math.max(maxIndex, num);
+                    }
+                    else
+                        num = 0;
+                }
+            }
+        }
+
+        /**
+         * The second pass, which places the values of every row into arrays
+         * sized by the first pass
+         */
+        void parse()
+        {
+            final int end = buf.limit();
+            labels = new double[rows];
+            rowStart = new int[rows + 1];
+            indexes = new int[nnz];
+            values = new double[nnz];
+
+            int row = 0;
+            int k = 0;
+            int pos = 0;
+            while (pos < end)
+            {
+                byte b = buf.get(pos);
+                if (MappedCSV.isNewLine(b) || isSpace(b))
+                {
+                    pos++;
+                    continue;
+                }
+
+                int s = pos;
+                while (pos < end && !isSpace(b = buf.get(pos)) && !MappedCSV.isNewLine(b))
+                    pos++;
+                labels[row] = StringUtils.parseDouble(buf, s, pos);
+                rowStart[row] = k;
+                boolean sorted = true;
+
+                while (true)
+                {
+                    while (pos < end && isSpace(buf.get(pos)))
+                        pos++;
+                    if (pos >= end || MappedCSV.isNewLine(buf.get(pos)))
+                        break;
+                    s = pos;
+                    while (pos < end && (b = buf.get(pos)) >= '0' && b <= '9')
+                        pos++;
+                    if (pos == s || pos >= end || buf.get(pos) != ':')
+                        throw new RuntimeException("Invalid LIBSVM file, expected an index:value pair");
+                    int index = StringUtils.parseInt(buf, s, pos) - 1;
+                    if (index < 0)
+                        throw new RuntimeException("Invalid LIBSVM file, indices must start from 1");
+                    s = ++pos;
+                    while (pos < end && !isSpace(b = buf.get(pos)) && !MappedCSV.isNewLine(b))
+                        pos++;
+                    double value = StringUtils.parseDouble(buf, s, pos);
+                    if (value == 0)
+                        continue;
+                    if (k > rowStart[row] && indexes[k - 1] >= index)
+                        sorted = false;
+                    indexes[k] = index;
+                    values[k++] = value;
+                }
+
+                if (!sorted)
+                    k = sortRow(rowStart[row], k);
+                rowStart[++row] = k;
+            }
+        }
+
+        /**
+         * Sorts the values of a row by index. If an index occurs more than
+         * once, the last value given is kept.
+         *
+         * @return the new end of the row
+         */
+        private int sortRow(int start, int end)
+        {
+            SparseVector tmp = new SparseVector(Integer.MAX_VALUE, end - start);
+            for (int z = start; z < end; z++)
+                tmp.set(indexes[z], values[z]);
+            int k = start;
+            for (IndexValue iv : tmp)
+            {
+                indexes[k] = iv.getIndex();
+                values[k++] = iv.getValue();
+            }
+            return k;
+        }
+
+        /**
+         * Creates a data point for each row, with exactly sized vectors
+         *
+         * @param length the length of every vector
+         */
+        void createPoints(int length)
+        {
+            points = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++)
+            {
+                int s = rowStart[i], e = rowStart[i + 1];
+                points.add(new DataPoint(new SparseVector(Arrays.copyOfRange(indexes, s, e), Arrays.copyOfRange(values, s, e), length, e - s)));
+            }
+            indexes = null;
+            values = null;
+        }
+
+        /**
+         * Drops the references to everything no longer needed
+         */
+        void release()
+        {
+            buf = null;
+            labels = null;
+            rowStart = null;
+            indexes = null;
+            values = null;
+            points = null;
+        }
+    }
+}
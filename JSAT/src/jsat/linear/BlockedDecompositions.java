@@ -0,0 +1,711 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.linear.GEMM.Operand;
+import jsat.utils.FakeExecutor;
+import static java.lang.Math.*;
+import static jsat.utils.SystemInfo.LogicalCores;
+
+/**
+ * This class implements right-looking blocked versions of the Cholesky, LU and
+ * QR factorizations, and of triangular solves with many right hand sides, for
+ * dense matrices. Each step factors a narrow panel of columns with the
+ * unblocked algorithm, and then updates the rest of the matrix with
+ * {@link GEMM}, which is where nearly all of the work is done. <br>
+ * <br>
+ * The update of each step is split into independent tasks on the given
+ * thread pool. For the Cholesky and LU factorizations, the panel of the next
+ * step is updated first and factored while the rest of the update is still
+ * running, so that the panel factorization is not a serial bottleneck. The QR
+ * factorization uses the compact WY form of the block reflectors, see:
+ * Schreiber, R., & Van Loan, C. (1989). <i>A Storage-Efficient WY
+ * Representation for Products of Householder Transformations</i>. SIAM
+ * Journal on Scientific and Statistical Computing, 10(1), 53–57.
+ *
+ * @author Edward Raff
+ */
+final class BlockedDecompositions
+{
+    /**
+     * The default number of columns in a panel
+     */
+    static final int NB = 64;
+
+    private BlockedDecompositions()
+    {
+    }
+
+    /**
+     * Computes the Cholesky factorization A = L L<sup>T</sup> in place. L is
+     * stored in the lower triangle of A, and the upper triangle is left with
+     * arbitrary values.
+     *
+     * @param A the symmetric positive definite matrix to factor
+     * @param nb the number of columns in a panel
+     * @param threadPool the source of threads, or {@code null} to run in the
+     * calling thread
+     */
+    static void cholesky(Matrix A, int nb, ExecutorService threadPool)
+    {
+        final int n = A.rows();
+        if(n == 0)
+            return;
+        final Operand a = GEMM.operand(A, false), at = GEMM.operand(A, true);
+        final Step step = new Step(threadPool);
+
+        int kb = min(nb, n);
+        potrf(a, 0, kb);
+        final int rb0 = chunk(n-kb, nb);
+        for(int r0 = kb; r0 < n; r0 += rb0)
+        {
+            final int R0 = r0, R1 = min(n, r0+rb0), KB = kb;
+            step.submit(() -> trsmRows(a, R0, R1, 0, KB));
+        }
+        step.await();
+
+        for(int k = 0; k+kb < n; )
+        {
+            final int K = k, KB = kb;
+            final int next = k+kb, nkb = min(nb, n-next), rest = next+nkb;
+            //every other task of the step needs the diagonal block of the next panel, so it is done first
+            GEMM.gemm(-1, a.view(next, k), at.view(k, next), a.view(next, next), nkb, nkb, kb, null);
+            potrf(a, next, nkb);
+
+            final int rb = chunk(n-rest, nb);
+            //the rest of the next panel, so that it is ready as soon as possible
+            for(int r0 = rest; r0 < n; r0 += rb)
+            {
+                final int R0 = r0, R1 = min(n, r0+rb);
+                step.submit(() ->
+                {
+                    GEMM.gemm(-1, a.view(R0, K), at.view(K, next), a.view(R0, next), R1-R0, nkb, KB, null);
+                    trsmRows(a, R0, R1, next, nkb);
+                });
+            }
+            //the rest of the lower triangle, largest rows first
+            for(int r1 = n; r1 > rest; r1 -= rb)
+            {
+                final int R0 = max(rest, r1-rb), R1 = r1;
+                step.submit(() -> GEMM.gemm(-1, a.view(R0, K), at.view(K, rest), a.view(R0, rest), R1-R0, R1-rest, KB, null));
+            }
+            step.await();
+
+            k = next;
+            kb = nkb;
+        }
+    }
+
+    /**
+     * Unblocked Cholesky factorization of the diagonal block starting at
+     * (k, k), which has already been updated by all the previous panels
+     */
+    private static void potrf(Operand a, int k, int kb)
+    {
+        double[] L = new double[kb*kb];
+        for(int i = 0; i < kb; i++)
+            for(int j = 0; j <= i; j++)
+                L[i*kb+j] = a.get(k+i, k+j);
+
+        for(int j = 0; j < kb; j++)
+        {
+            double L_jj = L[j*kb+j];
+            for(int p = 0; p < j; p++)
+                L_jj -= L[j*kb+p]*L[j*kb+p];
+            L_jj = sqrt(L_jj);
+            if(Double.isNaN(L_jj))
+                throw new ArithmeticException("input matrix is not positive definite");
+            L[j*kb+j] = L_jj;
+
+            for(int i = j+1; i < kb; i++)
+            {
+                double L_ij = L[i*kb+j];
+                for(int p = 0; p < j; p++)
+                    L_ij -= L[i*kb+p]*L[j*kb+p];
+                L[i*kb+j] = L_ij/L_jj;
+            }
+        }
+
+        for(int i = 0; i < kb; i++)
+            for(int j = 0; j <= i; j++)
+                a.set(k+i, k+j, L[i*kb+j]);
+    }
+
+    /**
+     * Solves X L<sub>kk</sub><sup>T</sup> = A for the rows [r0, r1) of the
+     * panel starting at column k, where L<sub>kk</sub> is the factored
+     * diagonal block of the panel
+     */
+    private static void trsmRows(Operand a, int r0, int r1, int k, int kb)
+    {
+        double[] L = new double[kb*kb];
+        for(int i = 0; i < kb; i++)
+            for(int j = 0; j <= i; j++)
+                L[i*kb+j] = a.get(k+i, k+j);
+        double[] x = new double[kb];
+        for(int i = r0; i < r1; i++)
+        {
+            for(int j = 0; j < kb; j++)
+                x[j] = a.get(i, k+j);
+            for(int j = 0; j < kb; j++)
+            {
+                double x_j = x[j];
+                for(int p = 0; p < j; p++)
+                    x_j -= x[p]*L[j*kb+p];
+                x[j] = x_j/L[j*kb+j];
+            }
+            for(int j = 0; j < kb; j++)
+                a.set(i, k+j, x[j]);
+        }
+    }
+
+    /**
+     * Computes the LU factorization P A = L U with partial pivoting in place.
+     * U is stored in the upper triangle of A, and L, without its unit
+     * diagonal, in the strictly lower triangle.
+     *
+     * @param A the matrix to factor
+     * @param nb the number of columns in a panel
+     * @param threadPool the source of threads, or {@code null} to run in the
+     * calling thread
+     * @return the pivots, where row k was swapped with row {@code piv[k]} at
+     * step k
+     */
+    static int[] lu(Matrix A, int nb, ExecutorService threadPool)
+    {
+        final int m = A.rows(), n = A.cols(), mn = min(m, n);
+        final int[] piv = new int[mn];
+        if(mn == 0)
+            return piv;
+        final Operand a = GEMM.operand(A, false);
+        final Step step = new Step(threadPool);
+
+        int kb = min(nb, mn);
+        getf2(a, m, 0, kb, piv);
+        for(int k = 0; k < mn; )
+        {
+            final int K = k, KB = kb, next = k+kb;
+            //the panel only swapped its own columns
+            swapRows(a, piv, k, next, 0, k);
+            swapRows(a, piv, k, next, next, n);
+            if(next >= n)
+                break;
+            final int nkb = next < mn ? min(nb, mn-next) : 0;
+
+            final int w = chunk(n-next-nkb, nb);
+            for(int c0 = next+nkb; c0 < n; c0 += w)
+            {
+                final int C0 = c0, C1 = min(n, c0+w);
+                step.submit(() -> updateColumns(a, m, K, KB, C0, C1));
+            }
+            //the next panel only needs its own columns updated, so it is factored while the rest are updated
+            if(nkb > 0)
+            {
+                updateColumns(a, m, k, kb, next, next+nkb);
+                getf2(a, m, next, nkb, piv);
+            }
+            step.await();
+
+            k = next;
+            kb = nkb;
+        }
+        return piv;
+    }
+
+    /**
+     * Unblocked LU factorization with partial pivoting of the panel of rows
+     * [k, m) and columns [k, k+kb). Rows are only swapped within the panel.
+     */
+    private static void getf2(Operand a, int m, int k, int kb, int[] piv)
+    {
+        final int R = m-k;
+        //column major, so that the updates walk down contiguous columns
+        double[] P = new double[R*kb];
+        for(int j = 0; j < kb; j++)
+            for(int i = 0; i < R; i++)
+                P[j*R+i] = a.get(k+i, k+j);
+
+        for(int j = 0; j < kb; j++)
+        {
+            final int col = j*R;
+            //Partial pivoting, find the largest value in this colum and move it to the top!
+            int largestRow = j;
+            double largestVal = abs(P[col+j]);
+            for(int i = j+1; i < R; i++)
+                if(abs(P[col+i]) > largestVal)
+                {
+                    largestRow = i;
+                    largestVal = abs(P[col+i]);
+                }
+            piv[k+j] = k+largestRow;
+            if(largestRow != j)
+                for(int jj = 0; jj < kb; jj++)
+                {
+                    double tmp = P[jj*R+j];
+                    P[jj*R+j] = P[jj*R+largestRow];
+                    P[jj*R+largestRow] = tmp;
+                }
+
+            final double u_jj = P[col+j];
+            for(int i = j+1; i < R; i++)
+            {
+                double tmp = P[col+i]/u_jj;
+                P[col+i] = Double.isNaN(tmp) ? 0.0 : tmp;
+            }
+            for(int jj = j+1; jj < kb; jj++)
+            {
+                final int col2 = jj*R;
+                final double u = P[col2+j];
+                for(int i = j+1; i < R; i++)
+                    P[col2+i] -= P[col+i]*u;
+            }
+        }
+
+        for(int j = 0; j < kb; j++)
+            for(int i = 0; i < R; i++)
+                a.set(k+i, k+j, P[j*R+i]);
+    }
+
+    /**
+     * Applies the row swaps of steps [k0, k1) to the columns [c0, c1)
+     */
+    private static void swapRows(Operand a, int[] piv, int k0, int k1, int c0, int c1)
+    {
+        for(int k = k0; k < k1; k++)
+        {
+            int p = piv[k];
+            if(p == k)
+                continue;
+            for(int j = c0; j < c1; j++)
+            {
+                double tmp = a.get(k, j);
+                a.set(k, j, a.get(p, j));
+                a.set(p, j, tmp);
+            }
+        }
+    }
+
+    /**
+     * Updates the columns [c0, c1) with the factored panel starting at column
+     * k: the rows of the panel become rows of U, and the rows below are
+     * updated with the product of L and those rows.
+     */
+    private static void updateColumns(Operand a, int m, int k, int kb, int c0, int c1)
+    {
+        final int w = c1-c0;
+        double[] L = new double[kb*kb];
+        double[] U = new double[kb*w];
+        for(int i = 0; i < kb; i++)
+        {
+            for(int p = 0; p < i; p++)
+                L[i*kb+p] = a.get(k+i, k+p);
+            for(int j = 0; j < w; j++)
+                U[i*w+j] = a.get(k+i, c0+j);
+        }
+        //L has a unit diagonal
+        for(int i = 1; i < kb; i++)
+            for(int p = 0; p < i; p++)
+            {
+                final double l = L[i*kb+p];
+                for(int j = 0; j < w; j++)
+                    U[i*w+j] -= l*U[p*w+j];
+            }
+        for(int i = 0; i < kb; i++)
+            for(int j = 0; j < w; j++)
+                a.set(k+i, c0+j, U[i*w+j]);
+
+        if(k+kb < m)
+            GEMM.gemm(-1, a.view(k+kb, k), a.view(k, c0), a.view(k+kb, c0), m-k-kb, w, kb, null);
+    }
+
+    /**
+     * Computes the QR factorization A = Q R in place. R is stored in A, and
+     * the values below its diagonal are set to zero.
+     *
+     * @param A the matrix to factor
+     * @param Q the M x M identity matrix, which will be set to Q. It may
+     * instead be the first q &ge; min(M, N) columns of the identity, which will
+     * be set to the first q columns of Q
+     * @param nb the number of columns in a panel
+     * @param threadPool the source of threads, or {@code null} to run in the
+     * calling thread
+     */
+    static void qr(Matrix A, Matrix Q, int nb, ExecutorService threadPool)
+    {
+        final int m = A.rows(), n = A.cols(), mn = min(m, n), qCols = Q.cols();
+        final Operand a = GEMM.operand(A, false), q = GEMM.operand(Q, false);
+        final Step step = new Step(threadPool);
+        List<FlatDenseMatrix> Vs = new ArrayList<>();
+        List<double[]> Ts = new ArrayList<>();
+
+        for(int k = 0; k < mn; k += nb)
+        {
+            final int K = k, kb = min(nb, mn-k), R = m-k;
+            final FlatDenseMatrix V = new FlatDenseMatrix(R, kb, false);
+            final double[] T = new double[kb*kb];
+            geqr2(a, m, k, kb, V, T);
+            Vs.add(V);
+            Ts.add(T);
+
+            //A = Q_k^T A for the columns right of the panel
+            final int w = chunk(n-k-kb, nb);
+            for(int c0 = k+kb; c0 < n; c0 += w)
+            {
+                final int C0 = c0, C1 = min(n, c0+w);
+                step.submit(() -> applyReflector(V, T, kb, true, a.view(K, C0), R, C1-C0));
+            }
+            step.await();
+        }
+
+        /*
+         * Q = Q_0 Q_1 ... Q_p is accumulated backwards starting from the
+         * identity. That way Q_k only has to be applied to the trailing
+         * [k, m) x [k, m) block, which is the only part not yet equal to the
+         * identity.
+         */
+        for(int b = Vs.size()-1; b >= 0; b--)
+        {
+            final FlatDenseMatrix V = Vs.get(b);
+            final double[] T = Ts.get(b);
+            final int k = b*nb, kb = V.cols(), R = m-k;
+            final int w = chunk(qCols-k, nb);
+            for(int c0 = k; c0 < qCols; c0 += w)
+            {
+                final int C0 = c0, C1 = min(qCols, c0+w);
+                step.submit(() -> applyReflector(V, T, kb, false, q.view(k, C0), R, C1-C0));
+            }
+            step.await();
+        }
+    }
+
+    /**
+     * Unblocked Householder QR of the panel of rows [k, m) and columns
+     * [k, k+kb). The panel is replaced by its part of R, the reflectors are
+     * stored in the columns of V with a unit first value, and T is set to the
+     * upper triangular factor such that H<sub>0</sub> ... H<sub>kb-1</sub> =
+     * I - V T V<sup>T</sup>.
+     */
+    private static void geqr2(Operand a, int m, int k, int kb, FlatDenseMatrix V, double[] T)
+    {
+        final int R = m-k;
+        double[] P = new double[R*kb];
+        for(int j = 0; j < kb; j++)
+            for(int i = 0; i < R; i++)
+                P[j*R+i] = a.get(k+i, k+j);
+        double[] tau = new double[kb];
+
+        for(int j = 0; j < kb; j++)
+        {
+            final int col = j*R;
+            double norm = 0;
+            for(int i = j+1; i < R; i++)
+                norm += P[col+i]*P[col+i];
+            if(norm == 0)//already zero below the diagonal
+                continue;
+            final double x = P[col+j];
+            norm = sqrt(norm + x*x);
+            final double alpha = x >= 0 ? -norm : norm;
+            tau[j] = (alpha-x)/alpha;
+            final double scale = 1/(x-alpha);
+            for(int i = j+1; i < R; i++)
+                P[col+i] *= scale;
+            P[col+j] = alpha;
+
+            //apply H_j to the rest of the panel
+            for(int jj = j+1; jj < kb; jj++)
+            {
+                final int col2 = jj*R;
+                double y = P[col2+j];
+                for(int i = j+1; i < R; i++)
+                    y += P[col+i]*P[col2+i];
+                y *= tau[j];
+                P[col2+j] -= y;
+                for(int i = j+1; i < R; i++)
+                    P[col2+i] -= y*P[col+i];
+            }
+        }
+
+        final double[] v = V.getBackingArray();
+        for(int j = 0; j < kb; j++)
+        {
+            v[j*R+j] = 1;
+            for(int i = j+1; i < R; i++)
+                v[j*R+i] = P[j*R+i];
+            for(int i = 0; i < R; i++)
+                a.set(k+i, k+j, i <= j ? P[j*R+i] : 0.0);
+        }
+
+        reflectorT(v, R, kb, tau, T);
+    }
+
+    /**
+     * Computes the upper triangular T such that H<sub>0</sub> ...
+     * H<sub>kb-1</sub> = I - V T V<sup>T</sup>, where H<sub>j</sub> = I -
+     * tau<sub>j</sub> v<sub>j</sub> v<sub>j</sub><sup>T</sup>
+     *
+     * @param v the R x kb column major matrix V, with ones on its diagonal and
+     * zeros above it
+     */
+    private static void reflectorT(double[] v, int R, int kb, double[] tau, double[] T)
+    {
+        //T[0:j, j] = -tau_j T[0:j, 0:j] V[:, 0:j]^T v_j
+        double[] z = new double[kb];
+        for(int j = 0; j < kb; j++)
+        {
+            T[j*kb+j] = tau[j];
+            for(int p = 0; p < j; p++)
+            {
+                double dot = v[p*R+j];
+                for(int i = j+1; i < R; i++)
+                    dot += v[p*R+i]*v[j*R+i];
+                z[p] = dot;
+            }
+            for(int p = 0; p < j; p++)
+            {
+                double s = 0;
+                for(int r = p; r < j; r++)
+                    s += T[p*kb+r]*z[r];
+                T[p*kb+j] = -tau[j]*s;
+            }
+        }
+    }
+
+    /**
+     * Computes C = H<sub>0</sub> H<sub>1</sub> ... H<sub>p-1</sub> C, where
+     * H<sub>j</sub> = I - tau<sub>j</sub> v<sub>j</sub>
+     * v<sub>j</sub><sup>T</sup>. The vector v<sub>j</sub> is zero before row
+     * j+shift, one at row j+shift, and the rest of it is stored below that in
+     * column j of Y. The reflectors are applied a block at a time, and the
+     * columns of C are split among the threads.
+     *
+     * @param Y the matrix holding the reflectors
+     * @param tau the scale of each reflector
+     * @param p the number of reflectors
+     * @param shift the offset of the first non-zero of each reflector from its
+     * column
+     * @param C the matrix to multiply
+     * @param nb the number of reflectors in a block
+     * @param threadPool the source of threads, or {@code null} to run in the
+     * calling thread
+     */
+    static void applyReflectors(Matrix Y, double[] tau, int p, int shift, Matrix C, int nb, ExecutorService threadPool)
+    {
+        if(p <= 0)
+            return;
+        final int m = C.rows(), n = C.cols();
+        final Operand c = GEMM.operand(C, false);
+        final Step step = new Step(threadPool);
+        for(int j0 = (p-1)/nb*nb; j0 >= 0; j0 -= nb)
+        {
+            final int kb = min(nb, p-j0), r0 = j0+shift, R = m-r0;
+            final FlatDenseMatrix V = new FlatDenseMatrix(R, kb, false);
+            final double[] v = V.getBackingArray();
+            for(int j = 0; j < kb; j++)
+            {
+                v[j*R+j] = 1;
+                for(int i = j+1; i < R; i++)
+                    v[j*R+i] = Y.get(r0+i, j0+j);
+            }
+            final double[] T = new double[kb*kb];
+            reflectorT(v, R, kb, Arrays.copyOfRange(tau, j0, j0+kb), T);
+
+            final int w = chunk(n, nb);
+            for(int c0 = 0; c0 < n; c0 += w)
+            {
+                final int C0 = c0, C1 = min(n, c0+w);
+                step.submit(() -> applyReflector(V, T, kb, false, c.view(r0, C0), R, C1-C0));
+            }
+            step.await();
+        }
+    }
+
+    /**
+     * Computes C = (I - V op(T) V<sup>T</sup>) C, where op(T) is T or its
+     * transpose
+     *
+     * @param C the R x w operand to update
+     */
+    private static void applyReflector(FlatDenseMatrix V, double[] T, int kb, boolean transT, Operand C, int R, int w)
+    {
+        FlatDenseMatrix W = new FlatDenseMatrix(kb, w);
+        final Operand wOp = GEMM.operand(W, false);
+        GEMM.gemm(1, GEMM.operand(V, true), C, wOp, kb, w, R, null);
+
+        final double[] W_ = W.getBackingArray();
+        if(transT)//row i of T^T W only needs rows <= i, so go bottom up
+            for(int i = kb-1; i >= 0; i--)
+                for(int j = 0; j < w; j++)
+                {
+                    double s = 0;
+                    for(int p = 0; p <= i; p++)
+                        s += T[p*kb+i]*W_[p*w+j];
+                    W_[i*w+j] = s;
+                }
+        else//row i of T W only needs rows >= i, so go top down
+            for(int i = 0; i < kb; i++)
+                for(int j = 0; j < w; j++)
+                {
+                    double s = 0;
+                    for(int p = i; p < kb; p++)
+                        s += T[i*kb+p]*W_[p*w+j];
+                    W_[i*w+j] = s;
+                }
+
+        GEMM.gemm(-1, GEMM.operand(V, false), wOp, C, R, w, kb, null);
+    }
+
+    /**
+     * Solves T X = B in place for many right hand sides at once, where T is
+     * triangular. The columns of B are split among the threads, and each
+     * solves its columns a block of rows at a time.
+     *
+     * @param T the matrix whose leading n x n block is the triangular matrix
+     * @param lower {@code true} if T is lower triangular, {@code false} if
+     * upper triangular. Values in the other triangle are not used.
+     * @param B the matrix whose first n rows are the right hand sides, and
+     * will be set to X
+     * @param n the size of the triangular matrix
+     * @param nb the number of rows in a block
+     * @param threadPool the source of threads, or {@code null} to run in the
+     * calling thread
+     */
+    static void trsm(Matrix T, boolean lower, Matrix B, int n, int nb, ExecutorService threadPool)
+    {
+        final Operand t = GEMM.operand(T, false), b = GEMM.operand(B, false);
+        final Step step = new Step(threadPool);
+        final int w = chunk(B.cols(), GEMM.NR);
+        for(int c0 = 0; c0 < B.cols(); c0 += w)
+        {
+            final Operand b_c = b.view(0, c0);
+            final int W = min(B.cols(), c0+w)-c0;
+            step.submit(() ->
+            {
+                if(lower)
+                    for(int k = 0; k < n; k += nb)
+                    {
+                        final int kb = min(nb, n-k);
+                        trsmBlock(t, true, k, kb, b_c, W);
+                        GEMM.gemm(-1, t.view(k+kb, k), b_c.view(k, 0), b_c.view(k+kb, 0), n-k-kb, W, kb, null);
+                    }
+                else
+                    for(int k = (n-1)/nb*nb; k >= 0; k -= nb)
+                    {
+                        final int kb = min(nb, n-k);
+                        trsmBlock(t, false, k, kb, b_c, W);
+                        GEMM.gemm(-1, t.view(0, k), b_c.view(k, 0), b_c, k, W, kb, null);
+                    }
+            });
+        }
+        step.await();
+    }
+
+    /**
+     * Solves the diagonal block of rows [k, k+kb) for w columns
+     */
+    private static void trsmBlock(Operand t, boolean lower, int k, int kb, Operand b, int w)
+    {
+        double[] D = new double[kb*kb];
+        double[] X = new double[kb*w];
+        for(int i = 0; i < kb; i++)
+        {
+            for(int p = lower ? 0 : i; p < (lower ? i+1 : kb); p++)
+                D[i*kb+p] = t.get(k+i, k+p);
+            for(int j = 0; j < w; j++)
+                X[i*w+j] = b.get(k+i, j);
+        }
+        for(int ii = 0; ii < kb; ii++)
+        {
+            final int i = lower ? ii : kb-1-ii;
+            for(int p = lower ? 0 : i+1; p < (lower ? i : kb); p++)
+            {
+                final double d = D[i*kb+p];
+                for(int j = 0; j < w; j++)
+                    X[i*w+j] -= d*X[p*w+j];
+            }
+            final double d = D[i*kb+i];
+            for(int j = 0; j < w; j++)
+                X[i*w+j] /= d;
+        }
+        for(int i = 0; i < kb; i++)
+            for(int j = 0; j < w; j++)
+                b.set(k+i, j, X[i*w+j]);
+    }
+
+    /**
+     * @param length the length of a range to split up
+     * @param min the smallest piece to use
+     * @return the length of each piece, so that each core gets a few pieces
+     */
+    private static int chunk(int length, int min)
+    {
+        return max(min, (length + 4*LogicalCores - 1)/(4*LogicalCores));
+    }
+
+    /**
+     * The tasks of one step of a factorization, which must all finish before
+     * the next step can start
+     */
+    private static final class Step
+    {
+        final ExecutorService threadPool;
+        final List<Future<?>> pending = new ArrayList<>();
+
+        Step(ExecutorService threadPool)
+        {
+            boolean serial = threadPool == null || threadPool instanceof FakeExecutor || LogicalCores == 1;
+            this.threadPool = serial ? null : threadPool;
+        }
+
+        void submit(Runnable task)
+        {
+            if(threadPool == null)
+                task.run();
+            else
+                pending.add(threadPool.submit(task));
+        }
+
+        void await()
+        {
+            RuntimeException failure = null;
+            for(Future<?> f : pending)
+                try
+                {
+                    f.get();
+                }
+                catch (InterruptedException ex)
+                {
+                    Logger.getLogger(BlockedDecompositions.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                catch (ExecutionException ex)
+                {
+                    if(failure == null)
+                        failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : new RuntimeException(ex.getCause());
+                }
+            pending.clear();
+            if(failure != null)
+                throw failure;
+        }
+    }
+}
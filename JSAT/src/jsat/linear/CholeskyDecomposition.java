@@ -19,8 +19,6 @@ import jsat.utils.SystemInfo;
  */
 public class CholeskyDecomposition implements Serializable
 {
-    //TODO add block decomposition for efficency 
-    
 
 	private static final long serialVersionUID = 8925094456733750112L;
 	/**
@@ -48,6 +46,11 @@ public class CholeskyDecomposition implements Serializable
         
         L = A;
         final int ROWS = A.rows();
+        if(A instanceof FlatDenseMatrix)
+        {
+            decompose((FlatDenseMatrix) A);
+            return;
+        }
 
         for (int j = 0; j < ROWS; j++)
         {
@@ -65,7 +68,9 @@ public class CholeskyDecomposition implements Serializable
      * matrix should be given instead. <br>
      * NOTE: No check for the symmetric positive definite property will occur. 
      * The results of passing a matrix that does not meet this properties is 
-     * undefined. 
+     * undefined. <br>
+     * Dense matrices are factored a block of columns at a time, with the rest
+     * of the matrix updated in parallel using matrix multiplications.
      * 
      * @param A the matrix to create the Cholesky Decomposition of
      * @param threadpool the source of threads for computation
@@ -77,6 +82,12 @@ public class CholeskyDecomposition implements Serializable
         
         L = A;
         final int ROWS = A.rows();
+        if(GEMM.isDense(A))
+        {
+            BlockedDecompositions.cholesky(A, BlockedDecompositions.NB, threadpool);
+            copyUpperToLower(ROWS);
+            return;
+        }
         double nextLJJ = computeLJJ(A, 0);
         for (int j = 0; j < ROWS; j++)
         {
@@ -204,6 +215,45 @@ public class CholeskyDecomposition implements Serializable
         return log_det;
     }
 
+    /**
+     * Computes the decomposition in place directly on the backing array. A is
+     * symmetric, so a column major matrix is processed through its transpose
+     * to keep the inner products over contiguous rows.
+     */
+    private void decompose(FlatDenseMatrix A)
+    {
+        if(!A.isRowMajor())
+            A = A.transposeView();
+        final double[] a = A.getBackingArray();
+        final int off = A.getOffset(), ld = A.getLeadingDimension();
+        final int ROWS = A.rows();
+
+        for (int j = 0; j < ROWS; j++)
+        {
+            final int rowJ = off + j*ld;
+            double L_jj = a[rowJ+j];
+            for(int k = 0; k < j; k++)
+                L_jj -= a[rowJ+k]*a[rowJ+k];
+            L_jj = sqrt(L_jj);
+            if(Double.isNaN(L_jj))
+                throw new ArithmeticException("input matrix is not positive definite");
+            a[rowJ+j] = L_jj;
+
+            for(int i = j+1; i < ROWS; i++)
+            {
+                final int rowI = off + i*ld;
+                double L_ij = a[rowI+j];
+                for(int k = 0; k < j; k++)
+                    L_ij -= a[rowI+k]*a[rowJ+k];
+                a[rowI+j] = L_ij/L_jj;
+            }
+        }
+
+        for (int i = 0; i < ROWS; i++)
+            for (int j = 0; j < i; j++)
+                a[off + j*ld + i] = a[off + i*ld + j];
+    }
+
     private double computeLJJ(final Matrix A, final int j)
     {
         /**
@@ -0,0 +1,924 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import static java.lang.Math.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
+
+/**
+ * A sparse matrix stored in the compressed sparse row (CSR) or compressed
+ * sparse column (CSC) format. The non zero values of each row (or column) are
+ * kept sorted and next to each other in one array, so a product with this
+ * matrix is a single pass over three arrays. <br>
+ * <br>
+ * Products are done without materializing a transpose. When a row of the
+ * result is a combination of rows of the other operand, the rows of the result
+ * are split among the threads by their number of non zeros. Otherwise each
+ * thread takes a range of the columns of the result, so that no two threads
+ * write to the same place. Dense operands are processed in panels of columns,
+ * which keeps the rows of them being used in the cache. <br>
+ * <br>
+ * Switching between the two formats is a counting sort, and
+ * {@link #mutableTranspose() } just swaps between them without moving any
+ * data. Changing the non zero structure with {@link #set(int, int, double) }
+ * takes time proportional to the number of non zeros, so this class is best
+ * built from another matrix, such as a {@link SparseMatrix}, and then used for
+ * computation.
+ *
+ * @author Edward Raff
+ */
+public class CompressedSparseMatrix extends Matrix
+{
+    private static final long serialVersionUID = 2913857726018420731L;
+    /**
+     * The number of columns of a dense operand processed at a time
+     */
+    private static final int PANEL = 256;
+
+    private int rows, cols;
+    /**
+     * {@code true} if each line is a row (CSR), {@code false} if each line is
+     * a column (CSC)
+     */
+    private boolean rowMajor;
+    /**
+     * The non zeros of line i are at positions [ptr[i], ptr[i+1])
+     */
+    private int[] ptr;
+    /**
+     * The index in the other dimension of each non zero
+     */
+    private int[] idx;
+    private double[] val;
+
+    /**
+     * Creates a new empty matrix in the CSR format
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public CompressedSparseMatrix(int rows, int cols)
+    {
+        this(rows, cols, new int[rows+1], new int[0], new double[0], true);
+    }
+
+    /**
+     * Creates a new matrix from the given arrays, which are used directly.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param ptr the array of length rows+1 (or cols+1) where the non zeros of
+     * line i are stored at [ptr[i], ptr[i+1])
+     * @param idx the column (or row) of each non zero, increasing within a
+     * line
+     * @param val the value of each non zero
+     * @param rowMajor {@code true} for the CSR format, {@code false} for CSC
+     */
+    public CompressedSparseMatrix(int rows, int cols, int[] ptr, int[] idx, double[] val, boolean rowMajor)
+    {
+        if(rows < 0 || cols < 0)
+            throw new IllegalArgumentException("Matrix dimensions must be non-negative, not " + rows + " x " + cols);
+        int lines = rowMajor ? rows : cols;
+        if(ptr.length != lines+1)
+            throw new IllegalArgumentException("Pointer array has length " + ptr.length + ", but " + (lines+1) + " are needed");
+        if(idx.length != val.length || idx.length < ptr[lines])
+            throw new IllegalArgumentException("Index and value arrays must both hold all " + ptr[lines] + " non zeros");
+        this.rows = rows;
+        this.cols = cols;
+        this.ptr = ptr;
+        this.idx = idx;
+        this.val = val;
+        this.rowMajor = rowMajor;
+    }
+
+    /**
+     * Creates a CSR copy of the given matrix. Only the non zero values of the
+     * rows of A are visited.
+     *
+     * @param A the matrix to copy
+     */
+    public CompressedSparseMatrix(Matrix A)
+    {
+        this.rows = A.rows();
+        this.cols = A.cols();
+        this.rowMajor = true;
+        this.ptr = new int[rows+1];
+        int capacity = (int) min(Integer.MAX_VALUE-8, A.isSparce() ? A.nnz() : 16);
+        this.idx = new int[capacity];
+        this.val = new double[capacity];
+        int nnz = 0;
+        for(int i = 0; i < rows; i++)
+        {
+            for(IndexValue iv : A.getRowView(i))
+            {
+                if(iv.getValue() == 0)
+                    continue;
+                if(nnz == idx.length)
+                    grow(nnz+1);
+                idx[nnz] = iv.getIndex();
+                val[nnz++] = iv.getValue();
+            }
+            ptr[i+1] = nnz;
+        }
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param toCopy the object to copy
+     */
+    protected CompressedSparseMatrix(CompressedSparseMatrix toCopy)
+    {
+        this.rows = toCopy.rows;
+        this.cols = toCopy.cols;
+        this.rowMajor = toCopy.rowMajor;
+        this.ptr = Arrays.copyOf(toCopy.ptr, toCopy.ptr.length);
+        this.idx = Arrays.copyOf(toCopy.idx, toCopy.nnzInt());
+        this.val = Arrays.copyOf(toCopy.val, toCopy.nnzInt());
+    }
+
+    /**
+     *
+     * @return {@code true} if this matrix is in the CSR format, {@code false}
+     * if it is in the CSC format
+     */
+    public boolean isRowMajor()
+    {
+        return rowMajor;
+    }
+
+    /**
+     * Returns this matrix in the CSR format. If it already is, this object is
+     * returned, otherwise a new matrix is created.
+     *
+     * @return a CSR matrix with the same values
+     */
+    public CompressedSparseMatrix toRowMajor()
+    {
+        return rowMajor ? this : convert();
+    }
+
+    /**
+     * Returns this matrix in the CSC format. If it already is, this object is
+     * returned, otherwise a new matrix is created.
+     *
+     * @return a CSC matrix with the same values
+     */
+    public CompressedSparseMatrix toColumnMajor()
+    {
+        return rowMajor ? convert() : this;
+    }
+
+    /**
+     * Creates a copy of this matrix as a {@link SparseMatrix}
+     *
+     * @return a sparse matrix with the same values
+     */
+    public SparseMatrix toSparseMatrix()
+    {
+        CompressedSparseMatrix csr = toRowMajor();
+        SparseVector[] vecs = new SparseVector[rows];
+        for(int i = 0; i < rows; i++)
+        {
+            int start = csr.ptr[i], len = csr.ptr[i+1]-start;
+            vecs[i] = new SparseVector(Arrays.copyOfRange(csr.idx, start, start+len), Arrays.copyOfRange(csr.val, start, start+len), cols, len);
+        }
+        if(rows == 0)
+            return new SparseMatrix(0, cols);
+        return new SparseMatrix(vecs);
+    }
+
+    /**
+     * Creates a copy in the other format, with a counting sort of the non
+     * zeros by their index
+     */
+    private CompressedSparseMatrix convert()
+    {
+        final int lines = lines(), others = rowMajor ? cols : rows, nnz = nnzInt();
+        int[] newPtr = new int[others+1];
+        for(int p = 0; p < nnz; p++)
+            newPtr[idx[p]+1]++;
+        for(int i = 0; i < others; i++)
+            newPtr[i+1] += newPtr[i];
+        int[] next = Arrays.copyOf(newPtr, others);
+        int[] newIdx = new int[nnz];
+        double[] newVal = new double[nnz];
+        //visiting the lines in order keeps each new line sorted
+        for(int line = 0; line < lines; line++)
+            for(int p = ptr[line]; p < ptr[line+1]; p++)
+            {
+                int dest = next[idx[p]]++;
+                newIdx[dest] = line;
+                newVal[dest] = val[p];
+            }
+        return new CompressedSparseMatrix(rows, cols, newPtr, newIdx, newVal, !rowMajor);
+    }
+
+    private int lines()
+    {
+        return rowMajor ? rows : cols;
+    }
+
+    private int nnzInt()
+    {
+        return ptr[lines()];
+    }
+
+    private void grow(int needed)
+    {
+        int newCap = (int) min(Integer.MAX_VALUE-8, max(needed, idx.length*2L));
+        idx = Arrays.copyOf(idx, newCap);
+        val = Arrays.copyOf(val, newCap);
+    }
+
+    /**
+     * Returns the position of the given value in the line, or -(insertion
+     * point) - 1 if it is not stored.
+     */
+    private int find(int i, int j)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("Can not access (" + i + ", " + j + ") of a " + rows + " x " + cols + " matrix");
+        int line = rowMajor ? i : j, other = rowMajor ? j : i;
+        return Arrays.binarySearch(idx, ptr[line], ptr[line+1], other);
+    }
+
+    @Override
+    public double get(int i, int j)
+    {
+        int pos = find(i, j);
+        return pos >= 0 ? val[pos] : 0.0;
+    }
+
+    @Override
+    public void set(int i, int j, double value)
+    {
+        int pos = find(i, j);
+        if(pos >= 0)
+            val[pos] = value;
+        else if(value != 0)
+            insert(rowMajor ? i : j, -(pos+1), rowMajor ? j : i, value);
+    }
+
+    @Override
+    public void increment(int i, int j, double value)
+    {
+        if(Double.isNaN(value) || Double.isInfinite(value))
+            throw new ArithmeticException("Can not add a value " + value);
+        int pos = find(i, j);
+        if(pos >= 0)
+            val[pos] += value;
+        else if(value != 0)
+            insert(rowMajor ? i : j, -(pos+1), rowMajor ? j : i, value);
+    }
+
+    private void insert(int line, int pos, int other, double value)
+    {
+        final int nnz = nnzInt();
+        if(nnz == idx.length)
+            grow(nnz+1);
+        System.arraycopy(idx, pos, idx, pos+1, nnz-pos);
+        System.arraycopy(val, pos, val, pos+1, nnz-pos);
+        idx[pos] = other;
+        val[pos] = value;
+        for(int l = line+1; l < ptr.length; l++)
+            ptr[l]++;
+    }
+
+    @Override
+    public int rows()
+    {
+        return rows;
+    }
+
+    @Override
+    public int cols()
+    {
+        return cols;
+    }
+
+    @Override
+    public boolean isSparce()
+    {
+        return true;
+    }
+
+    @Override
+    public long nnz()
+    {
+        return nnzInt();
+    }
+
+    @Override
+    public void mutableAdd(double c, Matrix B)
+    {
+        if(!sameDimensions(this, B))
+            throw new ArithmeticException("Matrices must be the same dimension to be added");
+        final int lines = lines(), len = rowMajor ? cols : rows;
+        int[] newPtr = new int[lines+1];
+        int[] newIdx = new int[nnzInt()+16];
+        double[] newVal = new double[newIdx.length];
+        int nnz = 0;
+        for(int line = 0; line < lines; line++)
+        {
+            Iterator<IndexValue> bIter = (rowMajor ? B.getRowView(line) : B.getColumnView(line)).getNonZeroIterator();
+            IndexValue b = bIter.hasNext() ? bIter.next() : null;
+            int p = ptr[line];
+            while(p < ptr[line+1] || b != null)
+            {
+                if(nnz+1 >= newIdx.length)
+                {
+                    newIdx = Arrays.copyOf(newIdx, (int) min(Integer.MAX_VALUE-8, newIdx.length*2L));
+                    newVal = Arrays.copyOf(newVal, newIdx.length);
+                }
+                int aIndex = p < ptr[line+1] ? idx[p] : len;
+                int bIndex = b != null ? b.getIndex() : len;
+                if(aIndex <= bIndex)
+                {
+                    newIdx[nnz] = aIndex;
+                    newVal[nnz] = val[p++];
+                }
+                else
+                {
+                    newIdx[nnz] = bIndex;
+                    newVal[nnz] = 0;
+                }
+                if(bIndex == newIdx[nnz])
+                {
+                    newVal[nnz] += c*b.getValue();
+                    b = bIter.hasNext() ? bIter.next() : null;
+                }
+                nnz++;
+            }
+            newPtr[line+1] = nnz;
+        }
+        ptr = newPtr;
+        idx = newIdx;
+        val = newVal;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This changes the non zero structure, and is done in the calling thread.
+     */
+    @Override
+    public void mutableAdd(double c, Matrix B, ExecutorService threadPool)
+    {
+        mutableAdd(c, B);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This makes every value of the matrix non zero.
+     */
+    @Override
+    public void mutableAdd(double c)
+    {
+        final int lines = lines(), len = rowMajor ? cols : rows;
+        long total = (long) lines*len;
+        if(total > Integer.MAX_VALUE-8)
+            throw new ArithmeticException("A dense " + rows + " x " + cols + " matrix can not be stored in this format");
+        int[] newPtr = new int[lines+1];
+        int[] newIdx = new int[(int) total];
+        double[] newVal = new double[(int) total];
+        for(int line = 0; line < lines; line++)
+        {
+            int start = line*len;
+            newPtr[line+1] = start+len;
+            for(int k = 0; k < len; k++)
+            {
+                newIdx[start+k] = k;
+                newVal[start+k] = c;
+            }
+            for(int p = ptr[line]; p < ptr[line+1]; p++)
+                newVal[start+idx[p]] += val[p];
+        }
+        ptr = newPtr;
+        idx = newIdx;
+        val = newVal;
+    }
+
+    @Override
+    public void mutableAdd(double c, ExecutorService threadPool)
+    {
+        mutableAdd(c);
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        final int nnz = nnzInt();
+        for(int p = 0; p < nnz; p++)
+            val[p] *= c;
+    }
+
+    @Override
+    public void mutableMultiply(double c, ExecutorService threadPool)
+    {
+        mutableMultiply(c);
+    }
+
+    @Override
+    public void multiply(Vec b, double z, Vec c)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+        if(rowMajor)
+            gatherVec(b, z, c, 0, rows);
+        else
+            scatterVec(b, z, c, 0, cols);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The rows are split among the threads by their number of non zeros. For
+     * the CSC format, each thread accumulates into its own vector.
+     */
+    @Override
+    public void multiply(Vec b, double z, Vec c, ExecutorService threadPool)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+        if(rowMajor)
+            parallelGatherVec(b, z, c, threadPool);
+        else
+            parallelScatterVec(b, z, c, threadPool);
+    }
+
+    @Override
+    public void transposeMultiply(double c, Vec b, Vec x)
+    {
+        if(this.rows() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + cols() +"," + rows() + "] x [" + b.length() + ",1]" );
+        else if(this.cols() != x.length())
+            throw new ArithmeticException("Matrix dimensions do not agree with target vector");
+        if(rowMajor)
+            scatterVec(b, c, x, 0, rows);
+        else
+            gatherVec(b, c, x, 0, cols);
+    }
+
+    @Override
+    public void transposeMultiply(double c, Vec b, Vec x, ExecutorService threadPool)
+    {
+        if(this.rows() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + cols() +"," + rows() + "] x [" + b.length() + ",1]" );
+        else if(this.cols() != x.length())
+            throw new ArithmeticException("Matrix dimensions do not agree with target vector");
+        if(rowMajor)
+            parallelScatterVec(b, c, x, threadPool);
+        else
+            parallelGatherVec(b, c, x, threadPool);
+    }
+
+    /**
+     * c[line] += z sum of val * b[idx] for the lines in [l0, l1)
+     */
+    private void gatherVec(Vec b, double z, Vec c, int l0, int l1)
+    {
+        for(int line = l0; line < l1; line++)
+        {
+            double sum = 0;
+            for(int p = ptr[line]; p < ptr[line+1]; p++)
+                sum += val[p]*b.get(idx[p]);
+            if(sum != 0)
+                c.increment(line, z*sum);
+        }
+    }
+
+    /**
+     * c[idx] += z val * b[line] for the lines in [l0, l1)
+     */
+    private void scatterVec(Vec b, double z, Vec c, int l0, int l1)
+    {
+        for(int line = l0; line < l1; line++)
+        {
+            final double b_l = z*b.get(line);
+            if(b_l == 0)
+                continue;
+            for(int p = ptr[line]; p < ptr[line+1]; p++)
+                c.increment(idx[p], val[p]*b_l);
+        }
+    }
+
+    private void parallelGatherVec(Vec b, double z, Vec c, ExecutorService threadPool)
+    {
+        if(c.isSparse())//concurrent inserts are not safe
+        {
+            gatherVec(b, z, c, 0, lines());
+            return;
+        }
+        final int[] split = balance(parts(lines()));
+        ParallelUtils.run(true, split.length-1, (start, end) ->
+        {
+            for(int part = start; part < end; part++)
+                gatherVec(b, z, c, split[part], split[part+1]);
+        }, threadPool);
+    }
+
+    private void parallelScatterVec(Vec b, double z, Vec c, ExecutorService threadPool)
+    {
+        final int[] split = balance(parts(lines()));
+        final int len = c.length();
+        double[] sum = ParallelUtils.run(true, split.length-1, (start, end) ->
+        {
+            double[] local = new double[len];
+            for(int part = start; part < end; part++)
+                for(int line = split[part]; line < split[part+1]; line++)
+                {
+                    final double b_l = b.get(line);
+                    if(b_l == 0)
+                        continue;
+                    for(int p = ptr[line]; p < ptr[line+1]; p++)
+                        local[idx[p]] += val[p]*b_l;
+                }
+            return local;
+        }, (x, y) ->
+        {
+            for(int i = 0; i < len; i++)
+                x[i] += y[i];
+            return x;
+        }, threadPool);
+        for(int i = 0; i < len; i++)
+            if(sum[i] != 0)
+                c.increment(i, z*sum[i]);
+    }
+
+    @Override
+    public void multiply(Matrix B, Matrix C)
+    {
+        checkMultiply(B, C);
+        if(rowMajor)
+            gather(B, C, 0, rows, 0, C.cols());
+        else
+            scatter(B, C, 0, cols, 0, C.cols());
+    }
+
+    @Override
+    public void multiply(Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        checkMultiply(B, C);
+        if(rowMajor)
+            parallelGather(B, C, threadPool);
+        else
+            parallelScatter(B, C, threadPool);
+    }
+
+    @Override
+    public void transposeMultiply(Matrix B, Matrix C)
+    {
+        checkTransposeMultiply(B, C);
+        if(rowMajor)
+            scatter(B, C, 0, rows, 0, C.cols());
+        else
+            gather(B, C, 0, cols, 0, C.cols());
+    }
+
+    @Override
+    public void transposeMultiply(Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        checkTransposeMultiply(B, C);
+        if(rowMajor)
+            parallelScatter(B, C, threadPool);
+        else
+            parallelGather(B, C, threadPool);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This makes a dense copy of the transpose of B.
+     */
+    @Override
+    public void multiplyTranspose(Matrix B, Matrix C)
+    {
+        if(this.cols() != B.cols())
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        multiply(B.transpose(), C);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This makes a dense copy of the transpose of B.
+     */
+    @Override
+    public void multiplyTranspose(Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        if(this.cols() != B.cols())
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        multiply(B.transpose(), C, threadPool);
+    }
+
+    private void checkMultiply(Matrix B, Matrix C)
+    {
+        if(!canMultiply(this, B))
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if(this.rows() != C.rows() || B.cols() != C.cols())
+            throw new ArithmeticException("Target Matrix is no the correct size");
+    }
+
+    private void checkTransposeMultiply(Matrix B, Matrix C)
+    {
+        if(this.rows() != B.rows())//Normaly it is A_cols == B_rows, but we are doint A'*B, not A*B
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if(this.cols() != C.rows() || B.cols() != C.cols())
+            throw new ArithmeticException("Destination matrix does not have matching dimensions");
+    }
+
+    /**
+     * C[line, c0:c1] += sum of val * B[idx, c0:c1] for the lines in [l0, l1)
+     */
+    private void gather(Matrix B, Matrix C, int l0, int l1, int c0, int c1)
+    {
+        if(!(B instanceof DenseMatrix && C instanceof DenseMatrix))
+        {
+            for(int line = l0; line < l1; line++)
+            {
+                Vec c_l = C.getRowView(line);
+                for(int p = ptr[line]; p < ptr[line+1]; p++)
+                    c_l.mutableAdd(val[p], B.getRowView(idx[p]));
+            }
+            return;
+        }
+        final double[][] b = ((DenseMatrix) B).matrix, c = ((DenseMatrix) C).matrix;
+        for(int j0 = c0; j0 < c1; j0 += PANEL)
+        {
+            final int j1 = min(c1, j0+PANEL);
+            for(int line = l0; line < l1; line++)
+            {
+                final double[] c_l = c[line];
+                for(int p = ptr[line]; p < ptr[line+1]; p++)
+                {
+                    final double v = val[p];
+                    final double[] b_k = b[idx[p]];
+                    for(int j = j0; j < j1; j++)
+                        c_l[j] += v*b_k[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * C[idx, c0:c1] += val * B[line, c0:c1] for the lines in [l0, l1)
+     */
+    private void scatter(Matrix B, Matrix C, int l0, int l1, int c0, int c1)
+    {
+        if(!(B instanceof DenseMatrix && C instanceof DenseMatrix))
+        {
+            for(int line = l0; line < l1; line++)
+            {
+                Vec b_l = B.getRowView(line);
+                for(int p = ptr[line]; p < ptr[line+1]; p++)
+                    C.getRowView(idx[p]).mutableAdd(val[p], b_l);
+            }
+            return;
+        }
+        final double[][] b = ((DenseMatrix) B).matrix, c = ((DenseMatrix) C).matrix;
+        for(int j0 = c0; j0 < c1; j0 += PANEL)
+        {
+            final int j1 = min(c1, j0+PANEL);
+            for(int line = l0; line < l1; line++)
+            {
+                final double[] b_l = b[line];
+                for(int p = ptr[line]; p < ptr[line+1]; p++)
+                {
+                    final double v = val[p];
+                    final double[] c_k = c[idx[p]];
+                    for(int j = j0; j < j1; j++)
+                        c_k[j] += v*b_l[j];
+                }
+            }
+        }
+    }
+
+    private void parallelGather(Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        final int[] split = balance(parts(lines()));
+        ParallelUtils.run(true, split.length-1, (start, end) ->
+        {
+            for(int part = start; part < end; part++)
+                gather(B, C, split[part], split[part+1], 0, C.cols());
+        }, threadPool);
+    }
+
+    private void parallelScatter(Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        if(!(B instanceof DenseMatrix && C instanceof DenseMatrix))
+        {
+            scatter(B, C, 0, lines(), 0, C.cols());
+            return;
+        }
+        //each thread owns a range of the columns of C, so no updates collide
+        final int n = C.cols();
+        ParallelUtils.run(true, n, (start, end) -> scatter(B, C, 0, lines(), start, end), threadPool);
+    }
+
+    /**
+     * @return the number of pieces to split the given number of lines into
+     */
+    private static int parts(int lines)
+    {
+        return max(1, min(SystemInfo.LogicalCores, lines));
+    }
+
+    /**
+     * Splits the lines into contiguous ranges with about the same number of
+     * non zeros
+     *
+     * @return the boundaries of the ranges, of length parts+1
+     */
+    private int[] balance(int parts)
+    {
+        final int lines = lines();
+        final long nnz = nnzInt();
+        int[] split = new int[parts+1];
+        split[parts] = lines;
+        for(int part = 1; part < parts; part++)
+        {
+            int target = (int) (nnz*part/parts);
+            int pos = Arrays.binarySearch(ptr, split[part-1], lines+1, target);
+            if(pos < 0)
+                pos = -(pos+1);
+            split[part] = min(lines, max(split[part-1], pos));
+        }
+        return split;
+    }
+
+    @Override
+    public Matrix[] lup()
+    {
+        throw new UnsupportedOperationException("LU decomposition is not supported for sparse matrices");
+    }
+
+    @Override
+    public Matrix[] lup(ExecutorService threadPool)
+    {
+        throw new UnsupportedOperationException("LU decomposition is not supported for sparse matrices");
+    }
+
+    @Override
+    public Matrix[] qr()
+    {
+        throw new UnsupportedOperationException("QR decomposition is not supported for sparse matrices");
+    }
+
+    @Override
+    public Matrix[] qr(ExecutorService threadPool)
+    {
+        throw new UnsupportedOperationException("QR decomposition is not supported for sparse matrices");
+    }
+
+    @Override
+    public void changeSize(int newRows, int newCols)
+    {
+        if(newRows <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of rows");
+        if(newCols <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of columns");
+        final int oldLines = lines();
+        final int newLines = rowMajor ? newRows : newCols, newLen = rowMajor ? newCols : newRows;
+        int[] newPtr = new int[newLines+1];
+        int nnz = 0;
+        for(int line = 0; line < min(oldLines, newLines); line++)
+        {
+            for(int p = ptr[line]; p < ptr[line+1]; p++)
+                if(idx[p] < newLen)
+                {
+                    idx[nnz] = idx[p];
+                    val[nnz++] = val[p];
+                }
+            newPtr[line+1] = nnz;
+        }
+        for(int line = oldLines; line < newLines; line++)
+            newPtr[line+1] = nnz;
+        ptr = newPtr;
+        rows = newRows;
+        cols = newCols;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This switches between the CSR and CSC formats, so no data is moved.
+     */
+    @Override
+    public void mutableTranspose()
+    {
+        int tmp = rows;
+        rows = cols;
+        cols = tmp;
+        rowMajor = !rowMajor;
+    }
+
+    @Override
+    public void transpose(Matrix C)
+    {
+        if(this.rows() != C.cols() || this.cols() != C.rows())
+            throw new ArithmeticException("Target matrix does not have the correct dimensions");
+        C.zeroOut();
+        for(int line = 0; line < lines(); line++)
+            for(int p = ptr[line]; p < ptr[line+1]; p++)
+                if(rowMajor)
+                    C.set(idx[p], line, val[p]);
+                else
+                    C.set(line, idx[p], val[p]);
+    }
+
+    @Override
+    public void swapRows(int r1, int r2)
+    {
+        if(r1 == r2)
+            return;
+        if(rowMajor)
+        {
+            final int a = min(r1, r2), b = max(r1, r2);
+            final int lenA = ptr[a+1]-ptr[a], lenB = ptr[b+1]-ptr[b];
+            final int start = ptr[a], end = ptr[b+1];
+            int[] newIdx = new int[end-start];
+            double[] newVal = new double[end-start];
+            int pos = 0;
+            for(int[] range : new int[][]{{ptr[b], ptr[b+1]}, {ptr[a+1], ptr[b]}, {ptr[a], ptr[a+1]}})
+            {
+                System.arraycopy(idx, range[0], newIdx, pos, range[1]-range[0]);
+                System.arraycopy(val, range[0], newVal, pos, range[1]-range[0]);
+                pos += range[1]-range[0];
+            }
+            System.arraycopy(newIdx, 0, idx, start, end-start);
+            System.arraycopy(newVal, 0, val, start, end-start);
+            for(int line = a+1; line <= b; line++)
+                ptr[line] += lenB-lenA;
+            return;
+        }
+        //each column keeps its non zeros, which may need to move to stay sorted
+        for(int col = 0; col < cols; col++)
+        {
+            final int from = ptr[col], to = ptr[col+1];
+            int p1 = Arrays.binarySearch(idx, from, to, r1);
+            int p2 = Arrays.binarySearch(idx, from, to, r2);
+            if(p1 >= 0 && p2 >= 0)
+            {
+                double tmp = val[p1];
+                val[p1] = val[p2];
+                val[p2] = tmp;
+            }
+            else if(p1 >= 0)
+                moveWithin(p1, -(p2+1), r2);
+            else if(p2 >= 0)
+                moveWithin(p2, -(p1+1), r1);
+        }
+    }
+
+    /**
+     * Moves the non zero at position p so that it is stored with the new index
+     * right before the insertion point ins of the same line
+     */
+    private void moveWithin(int p, int ins, int newIndex)
+    {
+        final double v = val[p];
+        if(ins > p)
+        {
+            ins--;
+            System.arraycopy(idx, p+1, idx, p, ins-p);
+            System.arraycopy(val, p+1, val, p, ins-p);
+        }
+        else
+        {
+            System.arraycopy(idx, ins, idx, ins+1, p-ins);
+            System.arraycopy(val, ins, val, ins+1, p-ins);
+        }
+        idx[ins] = newIndex;
+        val[ins] = v;
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        Arrays.fill(ptr, 0);
+    }
+
+    @Override
+    public CompressedSparseMatrix clone()
+    {
+        return new CompressedSparseMatrix(this);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.pow;
+import java.util.Arrays;
+
+/**
+ * A dense vector that stores its values as 32 bit floats, using half the
+ * memory of a {@link DenseVector}. Values are widened to doubles when read,
+ * and all arithmetic is done in double precision. Values set into this vector
+ * are rounded to the nearest float, so this should only be used for data where
+ * that loss of precision is acceptable, such as stored features.
+ *
+ * @author Edward Raff
+ */
+public class DenseFloatVector extends Vec
+{
+
+    private static final long serialVersionUID = 3530012781361829337L;
+    protected float[] array;
+
+    /**
+     * Creates a new dense vector of zeros
+     *
+     * @param length the length of the vector
+     */
+    public DenseFloatVector(int length)
+    {
+        if (length < 0)
+            throw new ArithmeticException("You can not have a negative dimension vector");
+        array = new float[length];
+    }
+
+    /**
+     * Creates a new dense vector that uses the given array as its values. Its
+     * values will not be copied, and mutations to the given array may occur.
+     *
+     * @param array the backing array to use for a new vector of the same length
+     */
+    public DenseFloatVector(float[] array)
+    {
+        this.array = array;
+    }
+
+    /**
+     * Creates a new dense vector that contains a copy of the values in the
+     * given vector, rounded to float precision
+     *
+     * @param toCopy the vector to copy
+     */
+    public DenseFloatVector(Vec toCopy)
+    {
+        this(toCopy.length());
+        for (IndexValue iv : toCopy)
+            array[iv.getIndex()] = (float) iv.getValue();
+    }
+
+    @Override
+    public int length()
+    {
+        return array.length;
+    }
+
+    @Override
+    public double get(int index)
+    {
+        return array[index];
+    }
+
+    @Override
+    public void set(int index, double val)
+    {
+        array[index] = (float) val;
+    }
+
+    @Override
+    public void increment(int index, double val)
+    {
+        array[index] += val;
+    }
+
+    @Override
+    public double sum()
+    {
+        double sum = 0;
+        for (float f : array)
+            sum += f;
+        return sum;
+    }
+
+    @Override
+    public double dot(Vec v)
+    {
+        if (this.length() != v.length())
+            throw new ArithmeticException("Vectors must have the same length");
+
+        if (v.isSparse())
+            return v.dot(this);
+
+        double dot = 0;
+        if (v instanceof DenseVector)
+        {
+            DenseVector b = (DenseVector) v;
+            for (int i = 0; i < array.length; i++)
+                dot += array[i] * b.get(i);
+        }
+        else
+            for (int i = 0; i < array.length; i++)
+                dot += array[i] * v.get(i);
+        return dot;
+    }
+
+    @Override
+    public void mutableAdd(double c)
+    {
+        for (int i = 0; i < array.length; i++)
+            array[i] += c;
+    }
+
+    @Override
+    public void mutableAdd(double c, Vec b)
+    {
+        if (this.length() != b.length())
+            throw new ArithmeticException("Can not add vectors of unequal length");
+
+        if (b.isSparse())
+            for (IndexValue iv : b)
+                array[iv.getIndex()] += c * iv.getValue();
+        else
+            for (int i = 0; i < array.length; i++)
+                array[i] += c * b.get(i);
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        for (int i = 0; i < array.length; i++)
+            array[i] *= c;
+    }
+
+    @Override
+    public void mutableDivide(double c)
+    {
+        for (int i = 0; i < array.length; i++)
+            array[i] /= c;
+    }
+
+    @Override
+    public double pNormDist(double p, Vec y)
+    {
+        if (this.length() != y.length())
+            throw new ArithmeticException("Vectors must be of the same length");
+        if (y.isSparse())
+            return super.pNormDist(p, y);
+
+        double norm = 0;
+        if (p == 2)
+        {
+            for (int i = 0; i < array.length; i++)
+            {
+                double d = array[i] - y.get(i);
+                norm += d * d;
+            }
+            return Math.sqrt(norm);
+        }
+        else if (p == 1)
+        {
+            for (int i = 0; i < array.length; i++)
+                norm += abs(array[i] - y.get(i));
+            return norm;
+        }
+        for (int i = 0; i < array.length; i++)
+            norm += pow(abs(array[i] - y.get(i)), p);
+        return pow(norm, 1.0 / p);
+    }
+
+    @Override
+    public double pNorm(double p)
+    {
+        if (p <= 0)
+            throw new IllegalArgumentException("norm must be a positive value, not " + p);
+        double result = 0;
+        if (p == 1)
+        {
+            for (float f : array)
+                result += abs(f);
+        }
+        else if (p == 2)
+        {
+            for (float f : array)
+                result += f * (double) f;
+            result = Math.sqrt(result);
+        }
+        else if (Double.isInfinite(p))
+        {
+            for (float f : array)
+                result = Math.max(result, abs(f));
+        }
+        else
+        {
+            for (float f : array)
+                result += pow(abs(f), p);
+            result = pow(result, 1 / p);
+        }
+        return result;
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        Arrays.fill(array, 0f);
+    }
+
+    @Override
+    public boolean isSparse()
+    {
+        return false;
+    }
+
+    @Override
+    public DenseFloatVector clone()
+    {
+        return new DenseFloatVector(Arrays.copyOf(array, array.length));
+    }
+
+    @Override
+    public void setLength(int length)
+    {
+        if (length < 0)
+            throw new ArithmeticException("Can not create an array of negative length");
+        for (int i = length; i < array.length; i++)
+            if (array[i] != 0)
+                throw new RuntimeException("Can't decrease the length of this vector from " + length() + " to " + length + " due to non-zero value");
+        array = Arrays.copyOf(array, length);
+    }
+}
@@ -1,21 +1,12 @@
 
 package jsat.linear;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import jsat.utils.FakeExecutor;
 import static java.lang.Math.*;
 import static jsat.linear.GenericMatrix.NB2;
-import static jsat.utils.SystemInfo.*;
 
 /**
  *
@@ -25,7 +16,7 @@ public class DenseMatrix extends GenericMatrix
 {   
 
 	private static final long serialVersionUID = -3112110093920307822L;
-	private double[][] matrix;
+	double[][] matrix;
 
     /**
      * Creates a new matrix based off the given vectors. 
@@ -133,39 +124,6 @@ public class DenseMatrix extends GenericMatrix
                 x.increment(j, c*b_i*A_i[j]);
         }
     }
-    @SuppressWarnings("unused")
-    private Matrix blockMultiply(Matrix b)
-    {
-        if(!canMultiply(this, b))
-            throw new ArithmeticException("Matrix dimensions do not agree");
-        DenseMatrix result = new DenseMatrix(this.rows(), b.cols());
-        ///Should choose step size such that 2*NB2^2 * dataTypeSize <= CacheSize
-        
-        int iLimit = result.rows();
-        int jLimit = result.cols();
-        int kLimit = this.cols();
-        
-        for(int i0 = 0; i0 < iLimit; i0+=NB2)
-            for(int k0 = 0; k0 < kLimit; k0+=NB2)
-                for(int j0 = 0; j0 < jLimit; j0+=NB2)
-                {
-                    for(int i = i0; i < min(i0+NB2, iLimit); i++)
-                    {
-                        double[] c_row_i = result.matrix[i];
-                        
-                        for(int k = k0; k < min(k0+NB2, kLimit); k++)
-                        {
-                            double a = this.matrix[i][k];
-                            
-                            for(int j = j0; j < min(j0+NB2, jLimit); j++)
-                                c_row_i[j] += a * b.get(k, j);
-                            }
-                        }
-                    }
-        
-        return result;
-    }
-
     /**
      * Copies the values from A_k to vk
      * @param k the k+1 index copying will start at
@@ -262,70 +220,6 @@ public class DenseMatrix extends GenericMatrix
             matrix[i] = new double[cols()];
     }
     
-    private class BlockMultRun implements Runnable
-    {
-        final CountDownLatch latch;
-        final DenseMatrix result;
-        final DenseMatrix b;
-        final int kLimit, jLimit, iLimit, threadID;
-        
-        public BlockMultRun(CountDownLatch latch, DenseMatrix result, DenseMatrix b, int threadID)
-        {
-            this.latch = latch;
-            this.result = result;
-            this.b = b;
-            this.kLimit = cols();
-            this.jLimit = result.cols();
-            this.iLimit = result.rows();
-            this.threadID = threadID;
-        }
-        
-        @Override
-        public void run()
-        {
-            for (int i0 = NB2 * threadID; i0 < iLimit; i0 += NB2 * LogicalCores)
-                for (int k0 = 0; k0 < kLimit; k0 += NB2)
-                    for (int j0 = 0; j0 < jLimit; j0 += NB2)
-                        for (int i = i0; i < min(i0 + NB2, iLimit); i++)
-                        {
-                            final double[] Ci = result.matrix[i];
-
-                            for (int k = k0; k < min(k0 + NB2, kLimit); k++)
-                            {
-                                double a = matrix[i][k];
-                                double[] Bk = b.matrix[k];
-
-                                for (int j = j0; j < min(j0 + NB2, jLimit); j++)
-                                    Ci[j] += a * Bk[j];
-                            }
-                        }
-
-            latch.countDown();
-        }
-        
-    }
-    
-    private void blockMultiply(DenseMatrix b, ExecutorService threadPool, DenseMatrix C)
-    {
-        if(!canMultiply(this, b))
-            throw new ArithmeticException("Matrix dimensions do not agree");
-        else if(this.rows() != C.rows() || b.cols() != C.cols())
-            throw new ArithmeticException("Destination matrix does not match the multiplication dimensions");
-        
-        CountDownLatch latch = new CountDownLatch(LogicalCores);
-        
-        for(int threadID = 0; threadID < LogicalCores; threadID++)
-            threadPool.submit(new BlockMultRun(latch, C, b, threadID));
-        try
-        {
-            latch.await();
-        }
-        catch (InterruptedException ex)
-        {
-            Logger.getLogger(DenseMatrix.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-    
     @Override
     public void transposeMultiply(final Matrix b, Matrix C)
     {
@@ -340,196 +234,68 @@ public class DenseMatrix extends GenericMatrix
             throw new ArithmeticException("Matrix dimensions do not agree [" + this.cols() + ", " + this.rows()+ "] * [" + b.rows() + ", " + b.cols() + "]");
         else if(this.cols() != C.rows() || b.cols() != C.cols())
             throw new ArithmeticException("Destination matrix does not have matching dimensions");
-        final DenseMatrix A = this;
         
-        //We only want to take care of the case where everything is of this class. Else let the generic version handle quirks
-         if( !(b instanceof DenseMatrix && C instanceof  DenseMatrix) )
+        //We only want to take care of the case where everything is stored densely. Else let the generic version handle quirks
+         if( !(GEMM.isDense(b) && GEMM.isDense(C)) )
          {
              super.transposeMultiply(b, C, threadPool);
              return;
          }
         
-        final int iLimit = C.rows();
-        final int jLimit = C.cols();
-        final int kLimit = this.rows();
-        final int blockStep = Math.min(NB2, Math.max(iLimit/LogicalCores, 1));//reduce block size so we can use all cores if needed.
-        
-        final CountDownLatch cdl = new CountDownLatch(LogicalCores);
-        
-        for(int threadNum = 0; threadNum < LogicalCores; threadNum++)
-        {
-            final int threadID = threadNum;
-            threadPool.submit(new Runnable() {
-
-                public void run()
-                {
-                    DenseMatrix BB = (DenseMatrix) b;
-                    DenseMatrix CC = (DenseMatrix) C;
-                    for (int i0 = blockStep * threadID; i0 < iLimit; i0 += blockStep * LogicalCores)
-                        for (int k0 = 0; k0 < kLimit; k0 += blockStep)
-                            for (int j0 = 0; j0 < jLimit; j0 += blockStep)
-                            {
-                                for (int k = k0; k < min(k0 + blockStep, kLimit); k++)
-                                {
-                                    double[] A_row_k = A.matrix[k];
-                                    double[] B_row_k = BB.matrix[k];
-
-                                    for (int i = i0; i < min(i0 + blockStep, iLimit); i++)
-                                    {
-                                        final double a = A_row_k[i];
-                                        final double[] c_row_i = CC.matrix[i];
-
-                                        for (int j = j0; j < min(j0 + blockStep, jLimit); j++)
-                                            c_row_i[j] += a * B_row_k[j];
-                                    }
-                                }
-                            }
-                    
-                    cdl.countDown();
-                }
-            });
-        }
-        
-        
-        try
-        {
-            cdl.await();
-        }
-        catch (InterruptedException ex)
-        {
-            Logger.getLogger(DenseMatrix.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        
+        GEMM.gemm(GEMM.operand(this, true), GEMM.operand(b, false), GEMM.operand(C, false), C.rows(), C.cols(), this.rows(), threadPool);
     }
     
     @Override
     public void multiply(Matrix b, Matrix C)
     {
+        multiply(b, C, new FakeExecutor());
+    }
+
+    @Override
+    public void multiply(Matrix b, Matrix C, ExecutorService threadPool)
+    {
+        //We only care when everyone is stored densely, else let the generic implementatino handle quirks
+        if(!(GEMM.isDense(b) && GEMM.isDense(C)))
+        {
+            if(threadPool instanceof FakeExecutor)
+                super.multiply(b, C);
+            else
+                super.multiply(b, C, threadPool);
+            return;
+        }
+        
         if(!canMultiply(this, b))
             throw new ArithmeticException("Matrix dimensions do not agree");
         else if(this.rows() != C.rows() || b.cols() != C.cols())
-            throw new ArithmeticException("Target Matrix is no the correct size");
+            throw new ArithmeticException("Destination matrix does not match the multiplication dimensions");
         
-        //We only want to opt the case where everyone is dense, else - let the generic version handle quierks
-        if( !(C instanceof DenseMatrix && b instanceof DenseMatrix))
-        {
-            super.multiply(b, C);
-            return;
-        }
-
-        /*
-         * In stead of row echelon order (i, j, k), we compue in "pure row oriented"
-         * 
-         * see
-         * 
-         * Data structures in Java for matrix computations
-         * 
-         * CONCURRENCY AND COMPUTATION: PRACTICE AND EXPERIENCE
-         * Concurrency Computat.: Pract. Exper. 2004; 16:799–815 (DOI: 10.1002/cpe.793)
-         * 
-         */
-
-
-        DenseMatrix result = (DenseMatrix) C;
-        DenseMatrix B = (DenseMatrix) b;
-        //Pull out the index operations to hand optimize for speed. 
-        double[] Arowi;
-        double[] Browk;
-        double[] Crowi;
-        for (int i = 0; i < result.rows(); i++)
-        {
-            Arowi = this.matrix[i];
-            Crowi = result.matrix[i];
-
-            for (int k = 0; k < this.cols(); k++)
-            {
-                double a = Arowi[k];
-                Browk = B.matrix[k];
-                for (int j = 0; j < Crowi.length; j++)
-                    Crowi[j] += a * Browk[j];
-            }
-        }
-
+        GEMM.gemm(GEMM.operand(this, false), GEMM.operand(b, false), GEMM.operand(C, false), C.rows(), C.cols(), this.cols(), threadPool);
     }
     
-    /**
-     * this is a direct conversion of the outer most loop of {@link #multiply(jsat.linear.Matrix) } 
-     */
-    private class MultRun implements Runnable
+    @Override
+    public void multiplyTranspose(Matrix b, Matrix C)
     {
-        
-        final CountDownLatch latch;
-        final DenseMatrix A;
-        final DenseMatrix B, result;
-        final int threadID;
-
-        public MultRun(CountDownLatch latch, DenseMatrix A, DenseMatrix result, DenseMatrix B, int threadID)
-        {
-            this.latch = latch;
-            this.A = A;
-            this.result = result;
-            this.B = B;
-            this.threadID = threadID;
-        }
-        
-        public void run()
-        {
-
-            //Pull out the index operations to hand optimize for speed. 
-            double[] Ai;
-            double[] Bi;
-            double[] Ci;
-            for (int i = 0 + threadID; i < result.rows(); i += LogicalCores)
-            {
-                Ai = A.matrix[i];
-                Ci = result.matrix[i];
-
-                for (int k = 0; k < A.cols(); k++)
-                {
-                    double a = Ai[k];
-                    Bi = B.matrix[k];
-                    for (int j = 0; j < Ci.length; j++)
-                        Ci[j] += a * Bi[j];
-                }
-            }
-
-            latch.countDown();
-        }
+        multiplyTranspose(b, C, new FakeExecutor());
     }
 
     @Override
-    public void multiply(Matrix b, Matrix C, ExecutorService threadPool)
+    public void multiplyTranspose(Matrix b, Matrix C, ExecutorService threadPool)
     {
-        //We only care when everyone is of this class, else let the generic implementatino handle quirks
-        if(!(b instanceof DenseMatrix && C instanceof DenseMatrix))
+        if(!(GEMM.isDense(b) && GEMM.isDense(C)))
         {
-            super.multiply(b, C, threadPool);
+            if(threadPool instanceof FakeExecutor)
+                super.multiplyTranspose(b, C);
+            else
+                super.multiplyTranspose(b, C, threadPool);
             return;
         }
         
-        if(this.rows()/NB2 >= LogicalCores)//Perform block execution only when we have a large enough matrix to keep ever core busy!
-        {
-            blockMultiply((DenseMatrix)b, threadPool, (DenseMatrix)C);
-            return;
-        }
-        if(!canMultiply(this, b))
+        if(this.cols() != b.cols())
             throw new ArithmeticException("Matrix dimensions do not agree");
-        else if(this.rows() != C.rows() || b.cols() != C.cols())
-            throw new ArithmeticException("Destination matrix does not match the multiplication dimensions");
-        CountDownLatch cdl = new CountDownLatch(LogicalCores);
+        else if (this.rows() != C.rows() || b.rows() != C.cols())
+            throw new ArithmeticException("Destination matrix does not have matching dimensions");
         
-        for (int threadID = 0; threadID < LogicalCores; threadID++)
-            threadPool.submit(new MultRun(cdl, this, (DenseMatrix)C, (DenseMatrix)b, threadID));
-            
-        try
-        {
-            cdl.await();
-        }
-        catch (InterruptedException ex)
-        {
-            //faulre? Gah - try seriel
-            this.multiply(b, C);
-        }
+        GEMM.gemm(GEMM.operand(this, false), GEMM.operand(b, true), GEMM.operand(C, false), C.rows(), C.cols(), this.cols(), threadPool);
     }
     
     @Override
@@ -700,132 +466,40 @@ public class DenseMatrix extends GenericMatrix
         return lup;
     }
     
-    private class LUProwRun implements Callable<Integer>
-    {
-        final DenseMatrix L;
-        final DenseMatrix U;
-        final int k, threadNumber;
-        double largestSeen = Double.MIN_VALUE;
-        int largestIndex ;
-
-        public LUProwRun(DenseMatrix L, DenseMatrix U, int k, int threadNumber)
-        {
-            this.L = L;
-            this.U = U;
-            this.k = k;
-            largestIndex = k+1;
-            this.threadNumber = threadNumber;
-        }
-       
-        /**
-         * Returns the index of the row with the largest absolute value we ever saw in column k+1
-         */
-        public Integer call() throws Exception
-        {
-            for(int i = k+1+threadNumber; i < U.rows(); i+=LogicalCores)
-            {
-                double tmp = U.matrix[i][k]/U.matrix[k][k];
-                L.matrix[i][k] = Double.isNaN(tmp) ? 0.0 : tmp;
-
-                //We perform the first iteration of the loop outside, as we want to cache its value for searching later
-                U.matrix[i][k+1] -= L.matrix[i][k]*U.matrix[k][k+1];
-                if(Math.abs(U.matrix[i][k+1]) > largestSeen)
-                {
-                    largestSeen = Math.abs(U.matrix[i][k+1]);
-                    largestIndex = i;
-                }
-                for(int j = k+2; j < U.cols(); j++)
-                {
-                    U.matrix[i][j] -= L.matrix[i][k]*U.matrix[k][j];
-                }
-            }
-            
-            return largestIndex;
-        }
-        
-    }
-    
+    /**
+     * {@inheritDoc}<br>
+     * This uses a blocked factorization, where the panel of the next step is
+     * factored while the rest of the matrix is updated in parallel.
+     */
     @Override
     public Matrix[] lup(ExecutorService threadPool)
     {
         Matrix[] lup = new Matrix[3];
         
-        Matrix P = eye(rows());
-        DenseMatrix L;
-        DenseMatrix U = this;
+        int[] piv = BlockedDecompositions.lu(this, BlockedDecompositions.NB, threadPool);
+        final int M = rows(), minDim = Math.min(rows(), cols());
         
-        //Initalization is a little wierd b/c we want to handle rectangular cases as well!
-        if(rows() > cols())//In this case, we will be changing U before returning it (have to make it smaller, but we can still avoid allocating extra space
-            L = new DenseMatrix(rows(), cols());
-        else
-            L = new DenseMatrix(rows(), rows());
+        Matrix P = eye(M);
+        for(int k = 0; k < piv.length; k++)
+            P.swapRows(piv[k], k);
         
-        List<Future<Integer>> bigIndecies = new ArrayList<Future<Integer>>(LogicalCores);
-        for(int k = 0; k < Math.min(rows(), cols()); k++)
+        //Move the lower triangle into L, leaving U behind
+        DenseMatrix L = new DenseMatrix(M, minDim);
+        for(int i = 0; i < M; i++)
         {
-            //Partial pivoting, find the largest value in this colum and move it to the top! 
-            //Find the largest magintude value in the colum k, row j
-            int largestRow = k;
-            double largestVal = Math.abs(U.matrix[k][k]);
-            if(bigIndecies.isEmpty())
-                for(int j = k+1; j < U.rows(); j++)
-                {
-                    double rowJLeadVal = Math.abs(U.matrix[j][k]);
-                    if(rowJLeadVal > largestVal)
-                    {
-                        largestRow = j;
-                        largestVal = rowJLeadVal;
-                    }
-                }
-            else
+            for(int j = 0; j < Math.min(i, minDim); j++)
             {
-                for(Future<Integer> fut : bigIndecies)
-                {
-                    try
-                    {
-                        int j = fut.get();
-                        double rowJLeadVal = Math.abs(U.matrix[j][k]);
-                        if(rowJLeadVal > largestVal)
-                        {
-                            largestRow = j;
-                            largestVal = rowJLeadVal;
-                        }
-                    }
-                    catch (InterruptedException ex)
-                    {
-                        Logger.getLogger(DenseMatrix.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                    catch (ExecutionException ex)
-                    {
-                        Logger.getLogger(DenseMatrix.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                    
-                }
-                
-                bigIndecies.clear();
+                L.matrix[i][j] = matrix[i][j];
+                matrix[i][j] = 0;
             }
-            
-            //SWAP!
-            U.swapRows(largestRow, k);
-            P.swapRows(largestRow, k);
-            L.swapRows(largestRow, k);
-            
-            L.matrix[k][k] = 1;
-            //Seting up L 
-            for(int threadNumber = 0; threadNumber < LogicalCores; threadNumber++)
-                bigIndecies.add(threadPool.submit(new LUProwRun(L, U, k, threadNumber)));
+            if(i < minDim)
+                L.matrix[i][i] = 1;
         }
         
-        
-        //Zero out the bottom rows
-        for(int k = 0; k < Math.min(rows(), cols()); k++)
-            for(int j = 0; j < k; j++)
-                U.matrix[k][j] = 0;
-        
-        
+        DenseMatrix U = this;
         if(rows() > cols())//Clean up!
         {
-            //We need to change U to a square nxn matrix in this case, we can safely drop the last 2 columns!
+            //We need to change U to a square nxn matrix in this case, we can safely drop the last rows!
             double[][] newU = new double[cols()][];
             System.arraycopy(U.matrix, 0, newU, 0, newU.length);
             U = new DenseMatrix(newU);//We have made U point at a new object, but the array is still pointing at the same rows! 
@@ -890,131 +564,21 @@ public class DenseMatrix extends GenericMatrix
         return qr;
     }
     
-    private class QRRun implements Runnable
-    {
-        DenseMatrix A, Q;
-        double[] vk;
-        double TwoOverBeta;
-        int k, threadID, N, M;
-        CountDownLatch latch;
-
-        public QRRun(DenseMatrix A, DenseMatrix Q, double[] vk, double TwoOverBeta, int k, int threadID, CountDownLatch latch)
-        {
-            this.A = A;
-            this.Q = Q;
-            this.vk = vk;
-            this.TwoOverBeta = TwoOverBeta;
-            this.k = k;
-            this.threadID = threadID;
-            this.latch = latch;
-            this.N = A.rows();
-            this.M = A.cols();
-        }
-        
-        public void run()
-        {
-            //Computing Q
-            {
-                //We are computing Q' in what we are treating as the column major order, which represents Q in row major order, which is what we want!
-                for(int j = 0+threadID; j < Q.cols(); j+=LogicalCores)
-                {
-                    double[] Q_j = Q.matrix[j];
-                    double y = 0;//y = vk dot A_j
-                    for (int i = k; i < Q.cols(); i++)
-                        y += vk[i] * Q_j[i];
-
-                    y *= TwoOverBeta;
-                    for (int i = k; i < Q.rows(); i++)
-                    {
-                        Q_j[i] -= y*vk[i];
-                    }
-                }
-            }
-            
-            //First run of loop removed, as it will be setting zeros. More accurate to just set them ourselves
-            if(k < N && threadID == 0)
-            {
-                qrUpdateRFirstIteration(A, k, vk, TwoOverBeta, M);
-            }
-            //The rest of the normal look
-            for(int j = k+1+threadID; j < N; j+=LogicalCores)
-            {
-                double[] A_j = A.matrix[j];
-                double y = 0;//y = vk dot A_j
-                for(int i = k; i < A.cols(); i++)
-                    y += vk[i]*A_j[i];
-        
-                y *= TwoOverBeta;
-                for(int i = k; i < M; i++)
-                    A_j[i] -= y*vk[i];
-            }
-            latch.countDown();
-        }
-        
-    }
-    
+    /**
+     * {@inheritDoc}<br>
+     * This uses a blocked factorization, where each block of Householder
+     * reflectors is applied to the rest of the matrix in parallel.
+     */
     @Override
     public Matrix[] qr(ExecutorService threadPool)
     {
-        int N = cols(), M  = rows();
         Matrix[] qr = new Matrix[2];
         
-        DenseMatrix Q = Matrix.eye(M);
-        DenseMatrix A;
-        if(isSquare())
-        {
-            mutableTranspose();
-            A = this;
-        }
-        else
-            A = (DenseMatrix) this.transpose();
-        
-        double[] vk = new double[M];
+        DenseMatrix Q = Matrix.eye(rows());
+        BlockedDecompositions.qr(this, Q, BlockedDecompositions.NB, threadPool);
         
-        int to = cols() > rows() ? M : N;
-        for(int k = 0; k < to; k++)
-        {
-            double[] A_k = A.matrix[k];
-            
-            double vkNorm = initalVKNormCompute(k, M, vk, A_k);
-            double beta = vkNorm;
-            
-            double vk_k = vk[k] = A_k[k];
-            vkNorm += vk_k*vk_k;
-            vkNorm = sqrt(vkNorm);
-            
-            
-            double alpha = -signum(vk_k) * vkNorm;
-            vk_k -= alpha;
-            beta += vk_k*vk_k;
-            vk[k] = vk_k;
-            
-            
-            if(beta == 0)
-                continue;
-            
-            double TwoOverBeta = 2.0/beta;
-            
-            CountDownLatch latch = new CountDownLatch(LogicalCores);
-            for(int threadID = 0; threadID < LogicalCores; threadID++)
-                threadPool.submit(new QRRun(A, Q, vk, TwoOverBeta, k, threadID, latch));
-            try
-            {
-                latch.await();
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(DenseMatrix.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
         qr[0] = Q;
-        if(isSquare())
-        {
-            A.mutableTranspose();
-            qr[1] = A;
-        }
-        else
-            qr[1] = A.transpose();
+        qr[1] = this;
         return qr;
     }
     
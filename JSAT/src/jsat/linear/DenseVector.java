@@ -19,7 +19,7 @@ public class DenseVector extends Vec
 
     private static final long serialVersionUID = -889493251793828933L;
     protected double[] array;
-    private int startIndex;
+    int startIndex;
     private int endIndex;
 
     /**
@@ -233,6 +233,11 @@ public class DenseVector extends Vec
         
         if(v.isSparse())
             return v.dot(this);
+        if(v instanceof DenseVector)
+        {
+            DenseVector b = (DenseVector) v;
+            return VecKernels.dot(array, startIndex, b.array, b.startIndex, length());
+        }
         
         double dot = 0;
         for(int i = startIndex; i < endIndex; i++)
@@ -277,10 +282,10 @@ public class DenseVector extends Vec
         
         if (b.isSparse())
             for (IndexValue iv : b)
-                array[iv.getIndex()] += c * iv.getValue();
+                array[startIndex+iv.getIndex()] += c * iv.getValue();
         else
             for (int i = startIndex; i < endIndex; i++)
-                array[i] += c * b.get(i);
+                array[i] += c * b.get(i-startIndex);
     }
 
     @Override
@@ -310,6 +315,24 @@ public class DenseVector extends Vec
         if(this.length() != y.length())
             throw new ArithmeticException("Vectors must be of the same length");
         
+        if(p == 2 || p == 1)
+        {
+            if(y instanceof DenseVector)
+            {
+                DenseVector b = (DenseVector) y;
+                if(p == 2)
+                    return Math.sqrt(VecKernels.distSqrd(array, startIndex, b.array, b.startIndex, length()));
+                return VecKernels.distL1(array, startIndex, b.array, b.startIndex, length());
+            }
+            else if(y instanceof SparseVector)
+            {
+                SparseVector b = (SparseVector) y;
+                if(p == 2)
+                    return Math.sqrt(VecKernels.distSqrd(array, startIndex, length(), b.indexes, b.values, b.used));
+                return VecKernels.distL1(array, startIndex, length(), b.indexes, b.values, b.used);
+            }
+        }
+        
         double norm = 0;
         if(y.isSparse())
         {
@@ -317,20 +340,20 @@ public class DenseVector extends Vec
             for(IndexValue iv : y)   
             {
                 for(int i = lastIndx+1; i < iv.getIndex(); i++)//add all the indecies we skipped
-                    norm += Math.pow(Math.abs(array[i]), p);
+                    norm += Math.pow(Math.abs(array[startIndex+i]), p);
                 lastIndx = iv.getIndex();
                 //add current
-                norm += Math.pow(Math.abs(array[iv.getIndex()]-iv.getValue()), p);
+                norm += Math.pow(Math.abs(array[startIndex+iv.getIndex()]-iv.getValue()), p);
             }
             
             //Tailing zeros
             for(int i = lastIndx+1; i < y.length(); i++)
-                norm += Math.pow(Math.abs(array[i]), p);
+                norm += Math.pow(Math.abs(array[startIndex+i]), p);
         }
         else
         {
             for(int i = startIndex; i < endIndex; i++)
-                norm += Math.pow(Math.abs(array[i]-y.get(i)), p);
+                norm += Math.pow(Math.abs(array[i]-y.get(i-startIndex)), p);
         }
         return Math.pow(norm, 1.0/p);
     }
@@ -342,16 +365,9 @@ public class DenseVector extends Vec
             throw new IllegalArgumentException("norm must be a positive value, not " + p);
         double result = 0;
         if (p == 1)
-        {
-            for (int i = startIndex; i < endIndex; i++)
-                result += abs(array[i]);
-        }
+            result = VecKernels.sumAbs(array, startIndex, length());
         else if (p == 2)
-        {
-            for(int i = startIndex; i < endIndex; i++)
-                result += array[i] * array[i];
-            result = Math.sqrt(result);
-        }
+            result = Math.sqrt(VecKernels.sumSqrd(array, startIndex, length()));
         else if (Double.isInfinite(p))
         {
             for(int i = startIndex; i < endIndex; i++)
@@ -0,0 +1,761 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import jsat.utils.FakeExecutor;
+import static java.lang.Math.*;
+
+/**
+ * A dense matrix stored in one contiguous array, in either row or column major
+ * order. Unlike {@link DenseMatrix}, walking down a column or over a
+ * transposed matrix stays within one array, and sub-matrices and transposes
+ * can be taken as views that share the same storage without copying. <br>
+ * <br>
+ * The value at row <tt>i</tt> and column <tt>j</tt> is stored at index
+ * <tt>offset + i*ld + j</tt> in row major order, or <tt>offset + j*ld + i</tt>
+ * in column major order, where <tt>ld</tt> is the leading dimension. The
+ * leading dimension may be larger than the number of columns (rows), which is
+ * how a view of part of a larger matrix is represented.
+ *
+ * @author Edward Raff
+ */
+public class FlatDenseMatrix extends GenericMatrix
+{
+    private static final long serialVersionUID = -2958164316470133387L;
+    private double[] data;
+    private int offset;
+    private int rows;
+    private int cols;
+    private int ld;
+    private boolean rowMajor;
+
+    /**
+     * Creates a new row major matrix of zeros
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public FlatDenseMatrix(int rows, int cols)
+    {
+        this(rows, cols, true);
+    }
+
+    /**
+     * Creates a new matrix of zeros
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param rowMajor {@code true} to store the matrix in row major order,
+     * {@code false} for column major order
+     */
+    public FlatDenseMatrix(int rows, int cols, boolean rowMajor)
+    {
+        this(new double[checkedSize(rows, cols)], 0, rows, cols, rowMajor ? cols : rows, rowMajor);
+    }
+
+    /**
+     * Creates a new row major matrix that has a copy of all the same values as
+     * the given one
+     * @param toCopy the matrix to copy
+     */
+    public FlatDenseMatrix(Matrix toCopy)
+    {
+        this(toCopy.rows(), toCopy.cols());
+        toCopy.copyTo(this);
+    }
+
+    /**
+     * Creates a new matrix backed by the given array. No copy is made, changes
+     * to the array will be visible in the matrix, and vice versa.
+     *
+     * @param data the array to use as the storage of the matrix
+     * @param offset the index in the array of the value at row 0, column 0
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param ld the leading dimension, the distance in the array between the
+     * start of two consecutive rows (row major) or columns (column major)
+     * @param rowMajor {@code true} if the array is in row major order,
+     * {@code false} for column major order
+     */
+    public FlatDenseMatrix(double[] data, int offset, int rows, int cols, int ld, boolean rowMajor)
+    {
+        if(rows < 0 || cols < 0)
+            throw new IllegalArgumentException("Matrix dimensions must be non-negative, not " + rows + " x " + cols);
+        if(ld < (rowMajor ? cols : rows) || ld < 1)
+            throw new IllegalArgumentException("Leading dimension " + ld + " is too small for a " + rows + " x " + cols + " matrix");
+        if(offset < 0 || (rows > 0 && cols > 0 && offset + (long) ld*((rowMajor ? rows : cols)-1) + (rowMajor ? cols : rows) > data.length))
+            throw new IllegalArgumentException("Array of length " + data.length + " is too small for the matrix");
+        this.data = data;
+        this.offset = offset;
+        this.rows = rows;
+        this.cols = cols;
+        this.ld = ld;
+        this.rowMajor = rowMajor;
+    }
+
+    /**
+     * Creates a new matrix backed by the given array, with the values stored
+     * without any gaps. No copy is made.
+     *
+     * @param data the array to use as the storage of the matrix
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param rowMajor {@code true} if the array is in row major order,
+     * {@code false} for column major order
+     * @return a matrix view of the array
+     */
+    public static FlatDenseMatrix wrap(double[] data, int rows, int cols, boolean rowMajor)
+    {
+        if((long) rows*cols != data.length)
+            throw new IllegalArgumentException("Array of length " + data.length + " can not be a " + rows + " x " + cols + " matrix");
+        return new FlatDenseMatrix(data, 0, rows, cols, max(1, rowMajor ? cols : rows), rowMajor);
+    }
+
+    private static int checkedSize(int rows, int cols)
+    {
+        if(rows < 0 || cols < 0)
+            throw new IllegalArgumentException("Matrix dimensions must be non-negative, not " + rows + " x " + cols);
+        long size = (long) rows*cols;
+        if(size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("A " + rows + " x " + cols + " matrix is too large to store in one array");
+        return (int) size;
+    }
+
+    /**
+     * Returns the array that stores the values of this matrix. The values of
+     * this matrix may be only part of the array.
+     *
+     * @return the array that stores the values of this matrix
+     */
+    public double[] getBackingArray()
+    {
+        return data;
+    }
+
+    /**
+     *
+     * @return the index in the {@link #getBackingArray() backing array} of
+     * the value at row 0, column 0
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     *
+     * @return the distance in the backing array between the start of
+     * consecutive rows (if row major) or columns (if column major)
+     */
+    public int getLeadingDimension()
+    {
+        return ld;
+    }
+
+    /**
+     *
+     * @return {@code true} if the values are stored in row major order,
+     * {@code false} if in column major order
+     */
+    public boolean isRowMajor()
+    {
+        return rowMajor;
+    }
+
+    /**
+     * Returns a view of part of this matrix, which shares the same storage. No
+     * values are copied, and changes to either matrix are visible in the
+     * other.
+     *
+     * @param firstRow the first row of the view, inclusive
+     * @param firstColumn the first column of the view, inclusive
+     * @param toRow the last row of the view, exclusive
+     * @param toCol the last column of the view, exclusive
+     * @return a view of the given rows and columns
+     */
+    public FlatDenseMatrix subMatrix(int firstRow, int firstColumn, int toRow, int toCol)
+    {
+        if(firstRow < 0 || firstColumn < 0 || toRow > rows || toCol > cols || firstRow > toRow || firstColumn > toCol)
+            throw new IndexOutOfBoundsException("Can not take [" + firstRow + ", " + toRow + ") x [" + firstColumn + ", " + toCol + ") of a " + rows + " x " + cols + " matrix");
+        return new FlatDenseMatrix(data, index(firstRow, firstColumn), toRow-firstRow, toCol-firstColumn, ld, rowMajor);
+    }
+
+    /**
+     * Returns the transpose of this matrix as a view that shares the same
+     * storage. No values are copied.
+     *
+     * @return a view of the transpose of this matrix
+     */
+    public FlatDenseMatrix transposeView()
+    {
+        return new FlatDenseMatrix(data, offset, cols, rows, ld, !rowMajor);
+    }
+
+    /**
+     *
+     * @return {@code true} if this matrix uses its whole backing array, with
+     * no gaps between rows or columns
+     */
+    private boolean isCompact()
+    {
+        return offset == 0 && data.length == rows*cols && ld == max(1, rowMajor ? cols : rows);
+    }
+
+    private int index(int i, int j)
+    {
+        return rowMajor ? offset + i*ld + j : offset + j*ld + i;
+    }
+
+    @Override
+    protected Matrix getMatrixOfSameType(int rows, int cols)
+    {
+        return new FlatDenseMatrix(rows, cols);
+    }
+
+    @Override
+    public double get(int i, int j)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("[" + i + ", " + j + "] is not in a " + rows + " x " + cols + " matrix");
+        return data[index(i, j)];
+    }
+
+    @Override
+    public void set(int i, int j, double value)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("[" + i + ", " + j + "] is not in a " + rows + " x " + cols + " matrix");
+        data[index(i, j)] = value;
+    }
+
+    @Override
+    public void increment(int i, int j, double value)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("[" + i + ", " + j + "] is not in a " + rows + " x " + cols + " matrix");
+        data[index(i, j)] += value;
+    }
+
+    @Override
+    public int rows()
+    {
+        return rows;
+    }
+
+    @Override
+    public int cols()
+    {
+        return cols;
+    }
+
+    @Override
+    public boolean isSparce()
+    {
+        return false;
+    }
+
+    @Override
+    public Vec getRowView(int r)
+    {
+        if(r < 0 || r >= rows)
+            throw new IndexOutOfBoundsException("Row " + r + " is not in a matrix with " + rows + " rows");
+        if(rowMajor)
+        {
+            int start = offset + r*ld;
+            return new DenseVector(data, start, start+cols);
+        }
+        return super.getRowView(r);
+    }
+
+    @Override
+    public Vec getColumnView(int j)
+    {
+        if(j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("Column " + j + " is not in a matrix with " + cols + " columns");
+        if(!rowMajor)
+        {
+            int start = offset + j*ld;
+            return new DenseVector(data, start, start+rows);
+        }
+        return super.getColumnView(j);
+    }
+
+    /**
+     * The number of contiguous runs of values, which are the rows in row major
+     * order or the columns in column major order
+     */
+    private int lines()
+    {
+        return rowMajor ? rows : cols;
+    }
+
+    /**
+     * The length of each contiguous run of values
+     */
+    private int lineLength()
+    {
+        return rowMajor ? cols : rows;
+    }
+
+    @Override
+    public void mutableAdd(double c, Matrix b)
+    {
+        if(!sameDimensions(this, b))
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        if(b instanceof FlatDenseMatrix && ((FlatDenseMatrix) b).rowMajor == rowMajor)
+        {
+            FlatDenseMatrix B = (FlatDenseMatrix) b;
+            for(int l = 0; l < lines(); l++)
+            {
+                int pos = offset + l*ld, bPos = B.offset + l*B.ld;
+                for(int x = 0; x < lineLength(); x++)
+                    data[pos+x] += c*B.data[bPos+x];
+            }
+        }
+        else
+            super.mutableAdd(c, b);
+    }
+
+    @Override
+    public void mutableAdd(double c)
+    {
+        for(int l = 0; l < lines(); l++)
+        {
+            int pos = offset + l*ld;
+            for(int x = 0; x < lineLength(); x++)
+                data[pos+x] += c;
+        }
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        for(int l = 0; l < lines(); l++)
+        {
+            int pos = offset + l*ld;
+            for(int x = 0; x < lineLength(); x++)
+                data[pos+x] *= c;
+        }
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        for(int l = 0; l < lines(); l++)
+        {
+            int pos = offset + l*ld;
+            Arrays.fill(data, pos, pos+lineLength(), 0.0);
+        }
+    }
+
+    @Override
+    public void multiply(Vec b, double z, Vec c)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+
+        if(rowMajor)
+        {
+            for(int i = 0; i < rows; i++)
+                c.increment(i, getRowView(i).dot(b)*z);
+        }
+        else//c += z * sum_j A_j b_j, one column at a time
+        {
+            for(IndexValue iv : b)
+            {
+                double b_j = iv.getValue()*z;
+                int pos = offset + iv.getIndex()*ld;
+                for(int i = 0; i < rows; i++)
+                    c.increment(i, b_j*data[pos+i]);
+            }
+        }
+    }
+
+    @Override
+    public void transposeMultiply(double c, Vec b, Vec x)
+    {
+        transposeView().multiply(b, c, x);
+    }
+
+    @Override
+    public void multiply(Matrix b, Matrix C)
+    {
+        multiply(b, C, new FakeExecutor());
+    }
+
+    @Override
+    public void multiply(Matrix b, Matrix C, ExecutorService threadPool)
+    {
+        if(!canMultiply(this, b))
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if(this.rows() != C.rows() || b.cols() != C.cols())
+            throw new ArithmeticException("Destination matrix does not match the multiplication dimensions");
+        if(!(GEMM.isDense(b) && GEMM.isDense(C)))
+        {
+            if(threadPool instanceof FakeExecutor)
+                super.multiply(b, C);
+            else
+                super.multiply(b, C, threadPool);
+            return;
+        }
+        GEMM.gemm(GEMM.operand(this, false), GEMM.operand(b, false), GEMM.operand(C, false), C.rows(), C.cols(), this.cols(), threadPool);
+    }
+
+    @Override
+    public void transposeMultiply(Matrix b, Matrix C)
+    {
+        transposeMultiply(b, C, new FakeExecutor());
+    }
+
+    @Override
+    public void transposeMultiply(Matrix b, Matrix C, ExecutorService threadPool)
+    {
+        if(this.rows() != b.rows())
+            throw new ArithmeticException("Matrix dimensions do not agree [" + this.cols() + ", " + this.rows()+ "] * [" + b.rows() + ", " + b.cols() + "]");
+        else if(this.cols() != C.rows() || b.cols() != C.cols())
+            throw new ArithmeticException("Destination matrix does not have matching dimensions");
+        if(!(GEMM.isDense(b) && GEMM.isDense(C)))
+        {
+            super.transposeMultiply(b, C, threadPool);
+            return;
+        }
+        GEMM.gemm(GEMM.operand(this, true), GEMM.operand(b, false), GEMM.operand(C, false), C.rows(), C.cols(), this.rows(), threadPool);
+    }
+
+    @Override
+    public void multiplyTranspose(Matrix b, Matrix C)
+    {
+        multiplyTranspose(b, C, new FakeExecutor());
+    }
+
+    @Override
+    public void multiplyTranspose(Matrix b, Matrix C, ExecutorService threadPool)
+    {
+        if(this.cols() != b.cols())
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if (this.rows() != C.rows() || b.rows() != C.cols())
+            throw new ArithmeticException("Destination matrix does not have matching dimensions");
+        if(!(GEMM.isDense(b) && GEMM.isDense(C)))
+        {
+            if(threadPool instanceof FakeExecutor)
+                super.multiplyTranspose(b, C);
+            else
+                super.multiplyTranspose(b, C, threadPool);
+            return;
+        }
+        GEMM.gemm(GEMM.operand(this, false), GEMM.operand(b, true), GEMM.operand(C, false), C.rows(), C.cols(), this.cols(), threadPool);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This is done without moving any values, by switching between row and
+     * column major order, so it works for matrices of any shape.
+     */
+    @Override
+    public void mutableTranspose()
+    {
+        int tmp = rows;
+        rows = cols;
+        cols = tmp;
+        rowMajor = !rowMajor;
+    }
+
+    @Override
+    public FlatDenseMatrix transpose()
+    {
+        FlatDenseMatrix toReturn = new FlatDenseMatrix(cols, rows, rowMajor);
+        this.transpose(toReturn);
+        return toReturn;
+    }
+
+    @Override
+    public void transpose(Matrix C)
+    {
+        if(this.rows() != C.cols() || this.cols() != C.rows())
+            throw new ArithmeticException("Target matrix does not have the correct dimensions");
+        transposeView().copyTo(C);
+    }
+
+    @Override
+    public void copyTo(Matrix other)
+    {
+        if (this.rows() != other.rows() || this.cols() != other.cols())
+            throw new ArithmeticException("Matrices are not of the same dimension");
+        if(other instanceof FlatDenseMatrix && ((FlatDenseMatrix) other).rowMajor == rowMajor)
+        {
+            FlatDenseMatrix o = (FlatDenseMatrix) other;
+            for(int l = 0; l < lines(); l++)
+                System.arraycopy(data, offset + l*ld, o.data, o.offset + l*o.ld, lineLength());
+        }
+        else
+            super.copyTo(other);
+    }
+
+    @Override
+    public void swapRows(int r1, int r2)
+    {
+        if(r1 >= rows() || r2 >= rows())
+            throw new ArithmeticException("Can not swap row, matrix is smaller then requested");
+        else if(r1 < 0 || r2 < 0)
+            throw new ArithmeticException("Can not swap row, there are no negative row indices");
+        if(r1 == r2)
+            return;
+        for(int j = 0; j < cols; j++)
+        {
+            int a = index(r1, j), b = index(r2, j);
+            double tmp = data[a];
+            data[a] = data[b];
+            data[b] = tmp;
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The values are moved to a new array, so any views of this matrix will no
+     * longer share storage with it.
+     */
+    @Override
+    public void changeSize(int newRows, int newCols)
+    {
+        if(newRows <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of rows");
+        if(newCols <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of columns");
+        FlatDenseMatrix resized = new FlatDenseMatrix(newRows, newCols, rowMajor);
+        subMatrix(0, 0, min(rows, newRows), min(cols, newCols)).copyTo(resized.subMatrix(0, 0, min(rows, newRows), min(cols, newCols)));
+        this.data = resized.data;
+        this.offset = 0;
+        this.rows = newRows;
+        this.cols = newCols;
+        this.ld = resized.ld;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The U matrix returned shares storage with this matrix.
+     */
+    @Override
+    public Matrix[] lup()
+    {
+        Matrix[] lup = new Matrix[3];
+
+        final int M = rows, N = cols;
+        Matrix P = eye(M);
+        FlatDenseMatrix L = new FlatDenseMatrix(M, min(M, N));
+        FlatDenseMatrix U = this;
+        if(!rowMajor)//elimination works on rows, so have them be contiguous
+        {
+            U = new FlatDenseMatrix(M, N);
+            this.copyTo(U);
+        }
+        final double[] u = U.data, l = L.data;
+        final int uo = U.offset, uld = U.ld, lld = L.ld;
+
+        for(int k = 0; k < min(M, N); k++)
+        {
+            //Partial pivoting, find the largest value in this colum and move it to the top!
+            int largestRow = k;
+            double largestVal = abs(u[uo + k*uld + k]);
+            for(int i = k+1; i < M; i++)
+            {
+                double rowILeadVal = abs(u[uo + i*uld + k]);
+                if(rowILeadVal > largestVal)
+                {
+                    largestRow = i;
+                    largestVal = rowILeadVal;
+                }
+            }
+
+            //SWAP!
+            U.swapRows(largestRow, k);
+            P.swapRows(largestRow, k);
+            L.swapRows(largestRow, k);
+            l[k*lld + k] = 1;
+
+            final int kRow = uo + k*uld;
+            final double u_kk = u[kRow + k];
+            for(int i = k+1; i < M; i++)
+            {
+                final int iRow = uo + i*uld;
+                double tmp = u[iRow + k]/u_kk;
+                final double l_ik = Double.isNaN(tmp) ? 0.0 : tmp;
+                l[i*lld + k] = l_ik;
+                u[iRow + k] = 0;
+                if(l_ik == 0)
+                    continue;
+                for(int j = k+1; j < N; j++)
+                    u[iRow + j] -= l_ik*u[kRow + j];
+            }
+        }
+
+        lup[0] = L;
+        lup[1] = M > N ? U.subMatrix(0, 0, N, N) : U;
+        lup[2] = P;
+
+        return lup;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This uses a blocked factorization, where the panel of the next step is
+     * factored while the rest of the matrix is updated in parallel. The U
+     * matrix returned shares storage with this matrix.
+     */
+    @Override
+    public Matrix[] lup(ExecutorService threadPool)
+    {
+        Matrix[] lup = new Matrix[3];
+
+        final int M = rows, N = cols, minDim = min(M, N);
+        int[] piv = BlockedDecompositions.lu(this, BlockedDecompositions.NB, threadPool);
+        Matrix P = eye(M);
+        for(int k = 0; k < piv.length; k++)
+            P.swapRows(piv[k], k);
+
+        //Move the lower triangle into L, leaving U behind
+        FlatDenseMatrix L = new FlatDenseMatrix(M, minDim);
+        for(int i = 0; i < M; i++)
+        {
+            for(int j = 0; j < min(i, minDim); j++)
+            {
+                int pos = index(i, j);
+                L.data[i*minDim+j] = data[pos];
+                data[pos] = 0;
+            }
+            if(i < minDim)
+                L.data[i*minDim+i] = 1;
+        }
+
+        lup[0] = L;
+        lup[1] = M > N ? subMatrix(0, 0, N, N) : this;
+        lup[2] = P;
+
+        return lup;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * The R matrix returned shares storage with this matrix if it is stored
+     * in column major order.
+     */
+    @Override
+    public Matrix[] qr()
+    {
+        final int M = rows, N = cols;
+        Matrix[] qr = new Matrix[2];
+
+        //Q is updated one row at a time, and R one column at a time
+        FlatDenseMatrix Q = new FlatDenseMatrix(M, M);
+        for(int i = 0; i < M; i++)
+            Q.data[i*M+i] = 1.0;
+        FlatDenseMatrix R = this;
+        if(rowMajor)
+        {
+            R = new FlatDenseMatrix(M, N, false);
+            this.copyTo(R);
+        }
+        final double[] q = Q.data, r = R.data;
+        final int ro = R.offset, rld = R.ld;
+
+        int to = N > M ? M : N;
+        double[] vk = new double[M];
+        for(int k = 0; k < to; k++)
+        {
+            final int colK = ro + k*rld;
+            double vkNorm = 0;
+            for(int i = k+1; i < M; i++)
+            {
+                vk[i] = r[colK + i];
+                vkNorm += vk[i]*vk[i];
+            }
+            double beta = vkNorm;
+
+            double vk_k = r[colK + k];
+            vkNorm += vk_k*vk_k;
+            vkNorm = sqrt(vkNorm);
+
+            double alpha = -signum(vk_k) * vkNorm;
+            vk_k -= alpha;
+            vk[k] = vk_k;
+            beta += vk_k*vk_k;
+
+            if(beta == 0)
+                continue;
+            final double TwoOverBeta = 2.0/beta;
+
+            //Q = Q H_k, one row of Q at a time
+            for(int j = 0; j < M; j++)
+            {
+                final int rowJ = j*M;
+                double y = 0;
+                for(int i = k; i < M; i++)
+                    y += vk[i]*q[rowJ + i];
+                y *= TwoOverBeta;
+                for(int i = k; i < M; i++)
+                    q[rowJ + i] -= y*vk[i];
+            }
+
+            //R = H_k R, one column of R at a time. Column k becomes alpha e_k
+            double y = 0;
+            for(int i = k; i < M; i++)
+                y += vk[i]*r[colK + i];
+            r[colK + k] -= y*TwoOverBeta*vk[k];
+            for(int i = k+1; i < M; i++)
+                r[colK + i] = 0.0;
+            for(int j = k+1; j < N; j++)
+            {
+                final int colJ = ro + j*rld;
+                y = 0;
+                for(int i = k; i < M; i++)
+                    y += vk[i]*r[colJ + i];
+                y *= TwoOverBeta;
+                for(int i = k; i < M; i++)
+                    r[colJ + i] -= y*vk[i];
+            }
+        }
+
+        qr[0] = Q;
+        qr[1] = R;
+        return qr;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This uses a blocked factorization, where each block of Householder
+     * reflectors is applied to the rest of the matrix in parallel. The R
+     * matrix returned is this matrix.
+     */
+    @Override
+    public Matrix[] qr(ExecutorService threadPool)
+    {
+        FlatDenseMatrix Q = new FlatDenseMatrix(rows, rows);
+        for(int i = 0; i < rows; i++)
+            Q.data[i*rows+i] = 1.0;
+        BlockedDecompositions.qr(this, Q, BlockedDecompositions.NB, threadPool);
+        return new Matrix[]{Q, this};
+    }
+
+    @Override
+    public FlatDenseMatrix clone()
+    {
+        FlatDenseMatrix copy = new FlatDenseMatrix(rows, cols, rowMajor);
+        this.copyTo(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,649 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.utils.FakeExecutor;
+import static java.lang.Math.*;
+import static jsat.utils.SystemInfo.*;
+
+/**
+ * This class implements general dense matrix multiplication, C = C + &alpha;
+ * op(A) op(B), where op may optionally transpose its argument. It follows the
+ * approach of Goto and van de Geijn: the inputs are copied block by block into
+ * contiguous "packed" buffers in exactly the order a small register blocked
+ * kernel will read them, with the block sizes chosen so that the packed block
+ * of A stays in the L2 cache and the {@link #MR}x{@link #NR} tile of C stays in
+ * registers while the kernel runs. Transposition and storage layout are
+ * handled entirely while packing, so all products share one kernel. <br>
+ * <br>
+ * See: Goto, K., & van de Geijn, R. A. (2008). <i>Anatomy of high-performance
+ * matrix multiplication</i>. ACM Transactions on Mathematical Software, 34(3),
+ * 1–25.
+ *
+ * @author Edward Raff
+ */
+final class GEMM
+{
+    /**
+     * The number of rows of C computed by one call of the kernel
+     */
+    static final int MR = 4;
+    /**
+     * The number of columns of C computed by one call of the kernel
+     */
+    static final int NR = 4;
+    /**
+     * The depth of a packed panel. A {@link #MR} by KC sliver of A and a KC by
+     * {@link #NR} sliver of B should fit in the L1 cache together.
+     */
+    static final int KC = 256;
+    /**
+     * The number of rows of A packed at a time, sized so that the packed block
+     * takes about half of the L2 cache.
+     */
+    static final int MC = max(MR, min(512, L2CacheSize/(2*8*KC))/MR*MR);
+    /**
+     * The number of columns of B packed at a time
+     */
+    static final int NC = 2048;
+    /**
+     * Products with fewer multiply-adds than this are computed directly, as
+     * the cost of packing would not be recovered.
+     */
+    static final long SMALL = 32*32*32;
+
+    private static final ThreadLocal<double[][]> buffers = ThreadLocal.withInitial(() -> new double[][]{new double[0], new double[0], new double[MR*NR]});
+
+    private GEMM()
+    {
+    }
+
+    /**
+     * @param m the matrix to check
+     * @return {@code true} if {@link #operand(jsat.linear.Matrix, boolean) }
+     * can read the matrix directly
+     */
+    static boolean isDense(Matrix m)
+    {
+        return m instanceof DenseMatrix || m instanceof FlatDenseMatrix;
+    }
+
+    /**
+     * Returns the operand for a matrix, if it has a dense storage this class
+     * can read directly
+     *
+     * @param m the matrix
+     * @param trans {@code true} if the operand is the transpose of the matrix
+     * @return the operand, or {@code null} if the matrix is not stored densely
+     */
+    static Operand operand(Matrix m, boolean trans)
+    {
+        if(m instanceof DenseMatrix)
+            return new Rows(((DenseMatrix) m).matrix, trans);
+        else if(m instanceof FlatDenseMatrix)
+        {
+            FlatDenseMatrix f = (FlatDenseMatrix) m;
+            int rs = f.isRowMajor() ? f.getLeadingDimension() : 1;
+            int cs = f.isRowMajor() ? 1 : f.getLeadingDimension();
+            return trans ? new Strided(f.getBackingArray(), f.getOffset(), cs, rs) : new Strided(f.getBackingArray(), f.getOffset(), rs, cs);
+        }
+        return null;
+    }
+
+    /**
+     * Computes C = C + A B, where the operands may be views of transposed
+     * matrices
+     *
+     * @param A the left hand operand
+     * @param B the right hand operand
+     * @param C the operand to accumulate into
+     * @param M the number of rows in A and C
+     * @param N the number of columns in B and C
+     * @param K the number of columns in A and rows in B
+     * @param threadPool the source of threads to use, or {@code null} to run
+     * in the calling thread
+     */
+    static void gemm(Operand A, Operand B, Operand C, int M, int N, int K, ExecutorService threadPool)
+    {
+        gemm(1.0, A, B, C, M, N, K, threadPool);
+    }
+
+    /**
+     * Computes C = C + alpha A B, where the operands may be views of
+     * transposed matrices
+     *
+     * @param alpha the scalar to multiply the product by
+     * @param A the left hand operand
+     * @param B the right hand operand
+     * @param C the operand to accumulate into
+     * @param M the number of rows in A and C
+     * @param N the number of columns in B and C
+     * @param K the number of columns in A and rows in B
+     * @param threadPool the source of threads to use, or {@code null} to run
+     * in the calling thread
+     */
+    static void gemm(double alpha, Operand A, Operand B, Operand C, int M, int N, int K, ExecutorService threadPool)
+    {
+        if(M <= 0 || N <= 0 || K <= 0)
+            return;
+        if((long) M*N*K <= SMALL)
+        {
+            for(int i = 0; i < M; i++)
+                for(int j = 0; j < N; j++)
+                {
+                    double sum = 0;
+                    for(int k = 0; k < K; k++)
+                        sum += A.get(i, k)*B.get(k, j);
+                    C.add(i, j, alpha*sum);
+                }
+            return;
+        }
+
+        if(threadPool == null || threadPool instanceof FakeExecutor || LogicalCores == 1)
+        {
+            block(alpha, A, B, C, 0, M, 0, N, K);
+            return;
+        }
+
+        /*
+         * Split C into tiles in both dimensions, halving whichever tile side
+         * is longer until there are a few tiles per core. This keeps all cores
+         * busy for tall-skinny and short-wide products alike. Each tile packs
+         * its own panels, which costs only about 1/MC of its arithmetic.
+         */
+        int mTile = roundUp(M, MR), nTile = roundUp(N, NR);
+        while((long) ceilDiv(M, mTile)*ceilDiv(N, nTile) < 4L*LogicalCores)
+        {
+            if(mTile >= nTile && mTile > 4*MR)
+                mTile = roundUp(mTile/2, MR);
+            else if(nTile > 4*NR)
+                nTile = roundUp(nTile/2, NR);
+            else if(mTile > 4*MR)
+                mTile = roundUp(mTile/2, MR);
+            else
+                break;
+        }
+
+        final int tiles_m = ceilDiv(M, mTile), tiles_n = ceilDiv(N, nTile);
+        final CountDownLatch latch = new CountDownLatch(tiles_m*tiles_n);
+        //the first failure of any tile, rethrown once all tiles are done
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for(int ti = 0; ti < tiles_m; ti++)
+            for(int tj = 0; tj < tiles_n; tj++)
+            {
+                final int i0 = ti*mTile, i1 = min(M, i0+mTile);
+                final int j0 = tj*nTile, j1 = min(N, j0+nTile);
+                threadPool.submit(() ->
+                {
+                    try
+                    {
+                        block(alpha, A, B, C, i0, i1, j0, j1, K);
+                    }
+                    catch(Throwable t)
+                    {
+                        failure.compareAndSet(null, t);
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                });
+            }
+
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(GEMM.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        
+        Throwable t = failure.get();
+        if(t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        else if(t instanceof Error)
+            throw (Error) t;
+        else if(t != null)
+            throw new RuntimeException(t);
+    }
+
+    /**
+     * Computes the rows [i0, i1) and columns [j0, j1) of C using packed
+     * panels
+     */
+    private static void block(double alpha, Operand A, Operand B, Operand C, int i0, int i1, int j0, int j1, int K)
+    {
+        double[][] bufs = buffers.get();
+        int aNeed = roundUp(min(MC, i1-i0), MR)*min(KC, K);
+        int bNeed = roundUp(min(NC, j1-j0), NR)*min(KC, K);
+        if(bufs[0].length < aNeed)
+            bufs[0] = new double[aNeed];
+        if(bufs[1].length < bNeed)
+            bufs[1] = new double[bNeed];
+        final double[] Ap = bufs[0];
+        final double[] Bp = bufs[1];
+        final double[] tile = bufs[2];
+
+        for(int jc = j0; jc < j1; jc += NC)
+        {
+            int nc = min(NC, j1-jc);
+            for(int pc = 0; pc < K; pc += KC)
+            {
+                int kc = min(KC, K-pc);
+                B.packB(pc, kc, jc, nc, Bp);
+                for(int ic = i0; ic < i1; ic += MC)
+                {
+                    int mc = min(MC, i1-ic);
+                    A.packA(ic, mc, pc, kc, Ap);
+                    for(int jr = 0; jr < nc; jr += NR)
+                    {
+                        int nr = min(NR, nc-jr);
+                        for(int ir = 0; ir < mc; ir += MR)
+                        {
+                            kernel(kc, Ap, ir*kc, Bp, jr*kc, tile);
+                            if(alpha != 1.0)
+                                for(int t = 0; t < tile.length; t++)
+                                    tile[t] *= alpha;
+                            C.addTile(ic+ir, jc+jr, min(MR, mc-ir), nr, tile);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the {@link #MR}x{@link #NR} product of one packed sliver of A
+     * and one of B, holding the result in 16 local accumulators until it is
+     * stored row by row into {@code tile}.
+     */
+    private static void kernel(int kc, double[] a, int ai, double[] b, int bi, double[] tile)
+    {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+
+        for(int p = 0; p < kc; p++)
+        {
+            final double a0 = a[ai], a1 = a[ai+1], a2 = a[ai+2], a3 = a[ai+3];
+            final double b0 = b[bi], b1 = b[bi+1], b2 = b[bi+2], b3 = b[bi+3];
+            c00 += a0*b0; c01 += a0*b1; c02 += a0*b2; c03 += a0*b3;
+            c10 += a1*b0; c11 += a1*b1; c12 += a1*b2; c13 += a1*b3;
+            c20 += a2*b0; c21 += a2*b1; c22 += a2*b2; c23 += a2*b3;
+            c30 += a3*b0; c31 += a3*b1; c32 += a3*b2; c33 += a3*b3;
+            ai += MR;
+            bi += NR;
+        }
+
+        tile[0] = c00; tile[1] = c01; tile[2] = c02; tile[3] = c03;
+        tile[4] = c10; tile[5] = c11; tile[6] = c12; tile[7] = c13;
+        tile[8] = c20; tile[9] = c21; tile[10] = c22; tile[11] = c23;
+        tile[12] = c30; tile[13] = c31; tile[14] = c32; tile[15] = c33;
+    }
+
+    private static int ceilDiv(int a, int b)
+    {
+        return (a + b - 1)/b;
+    }
+
+    private static int roundUp(int a, int multiple)
+    {
+        return ceilDiv(a, multiple)*multiple;
+    }
+
+    /**
+     * A dense matrix as seen by the multiplication, which knows how to copy
+     * its blocks into the packed layout and add results back.
+     */
+    static abstract class Operand
+    {
+        /**
+         * @return the value at row i and column j
+         */
+        abstract double get(int i, int j);
+
+        /**
+         * Adds a value to row i and column j
+         */
+        abstract void add(int i, int j, double value);
+
+        /**
+         * Sets the value at row i and column j
+         */
+        abstract void set(int i, int j, double value);
+
+        /**
+         * @return an operand over the same storage whose row 0 and column 0
+         * are row i and column j of this one
+         */
+        abstract Operand view(int i, int j);
+
+        /**
+         * Packs the block [i0:i0+mc, p0:p0+kc] into slivers of {@link #MR}
+         * rows, where each sliver is stored column by column. Rows past the
+         * end of the block are filled with zeros.
+         */
+        abstract void packA(int i0, int mc, int p0, int kc, double[] Ap);
+
+        /**
+         * Packs the block [p0:p0+kc, j0:j0+nc] into slivers of {@link #NR}
+         * columns, where each sliver is stored row by row. Columns past the
+         * end of the block are filled with zeros.
+         */
+        abstract void packB(int p0, int kc, int j0, int nc, double[] Bp);
+
+        /**
+         * Adds the first mr rows and nr columns of a {@link #MR}x{@link #NR}
+         * row major tile to the block starting at row i and column j
+         */
+        abstract void addTile(int i, int j, int mr, int nr, double[] tile);
+    }
+
+    /**
+     * Operand over the array of rows used by {@link DenseMatrix}, starting at
+     * row r0 and column c0 of the stored matrix
+     */
+    static final class Rows extends Operand
+    {
+        final double[][] m;
+        final int r0, c0;
+        final boolean trans;
+
+        Rows(double[][] m, boolean trans)
+        {
+            this(m, 0, 0, trans);
+        }
+
+        Rows(double[][] m, int r0, int c0, boolean trans)
+        {
+            this.m = m;
+            this.r0 = r0;
+            this.c0 = c0;
+            this.trans = trans;
+        }
+
+        @Override
+        double get(int i, int j)
+        {
+            return trans ? m[r0+j][c0+i] : m[r0+i][c0+j];
+        }
+
+        @Override
+        void add(int i, int j, double value)
+        {
+            if(trans)
+                m[r0+j][c0+i] += value;
+            else
+                m[r0+i][c0+j] += value;
+        }
+
+        @Override
+        void set(int i, int j, double value)
+        {
+            if(trans)
+                m[r0+j][c0+i] = value;
+            else
+                m[r0+i][c0+j] = value;
+        }
+
+        @Override
+        Operand view(int i, int j)
+        {
+            return trans ? new Rows(m, r0+j, c0+i, true) : new Rows(m, r0+i, c0+j, false);
+        }
+
+        @Override
+        void packA(int i0, int mc, int p0, int kc, double[] Ap)
+        {
+            int pos = 0;
+            for(int ir = 0; ir < mc; ir += MR)
+            {
+                int mr = min(MR, mc-ir);
+                if(!trans)
+                {
+                    for(int i = 0; i < MR; i++)
+                    {
+                        if(i < mr)
+                        {
+                            double[] A_i = m[r0+i0+ir+i];
+                            int src = c0+p0;
+                            for(int p = 0; p < kc; p++)
+                                Ap[pos + p*MR + i] = A_i[src+p];
+                        }
+                        else
+                            for(int p = 0; p < kc; p++)
+                                Ap[pos + p*MR + i] = 0;
+                    }
+                }
+                else
+                {
+                    for(int p = 0; p < kc; p++)
+                    {
+                        double[] A_p = m[r0+p0+p];
+                        int src = c0+i0+ir;
+                        int off = pos + p*MR;
+                        int i = 0;
+                        for(; i < mr; i++)
+                            Ap[off+i] = A_p[src+i];
+                        for(; i < MR; i++)
+                            Ap[off+i] = 0;
+                    }
+                }
+                pos += MR*kc;
+            }
+        }
+
+        @Override
+        void packB(int p0, int kc, int j0, int nc, double[] Bp)
+        {
+            int pos = 0;
+            for(int jr = 0; jr < nc; jr += NR)
+            {
+                int nr = min(NR, nc-jr);
+                if(!trans)
+                {
+                    for(int p = 0; p < kc; p++)
+                    {
+                        double[] B_p = m[r0+p0+p];
+                        int src = c0+j0+jr;
+                        int off = pos + p*NR;
+                        int j = 0;
+                        for(; j < nr; j++)
+                            Bp[off+j] = B_p[src+j];
+                        for(; j < NR; j++)
+                            Bp[off+j] = 0;
+                    }
+                }
+                else
+                {
+                    for(int j = 0; j < NR; j++)
+                    {
+                        if(j < nr)
+                        {
+                            double[] B_j = m[r0+j0+jr+j];
+                            int src = c0+p0;
+                            for(int p = 0; p < kc; p++)
+                                Bp[pos + p*NR + j] = B_j[src+p];
+                        }
+                        else
+                            for(int p = 0; p < kc; p++)
+                                Bp[pos + p*NR + j] = 0;
+                    }
+                }
+                pos += NR*kc;
+            }
+        }
+
+        @Override
+        void addTile(int i, int j, int mr, int nr, double[] tile)
+        {
+            if(trans)
+            {
+                for(int ii = 0; ii < mr; ii++)
+                    for(int jj = 0; jj < nr; jj++)
+                        m[r0+j+jj][c0+i+ii] += tile[ii*NR+jj];
+                return;
+            }
+            for(int ii = 0; ii < mr; ii++)
+            {
+                double[] C_i = m[r0+i+ii];
+                int dst = c0+j;
+                for(int jj = 0; jj < nr; jj++)
+                    C_i[dst+jj] += tile[ii*NR+jj];
+            }
+        }
+    }
+
+    /**
+     * Operand over a single array, where the value at row i and column j is
+     * stored at {@code offset + i*rowStride + j*colStride}. A transposed view
+     * just swaps the two strides.
+     */
+    static final class Strided extends Operand
+    {
+        final double[] data;
+        final int offset, rowStride, colStride;
+
+        Strided(double[] data, int offset, int rowStride, int colStride)
+        {
+            this.data = data;
+            this.offset = offset;
+            this.rowStride = rowStride;
+            this.colStride = colStride;
+        }
+
+        @Override
+        double get(int i, int j)
+        {
+            return data[offset + i*rowStride + j*colStride];
+        }
+
+        @Override
+        void add(int i, int j, double value)
+        {
+            data[offset + i*rowStride + j*colStride] += value;
+        }
+
+        @Override
+        void set(int i, int j, double value)
+        {
+            data[offset + i*rowStride + j*colStride] = value;
+        }
+
+        @Override
+        Operand view(int i, int j)
+        {
+            return new Strided(data, offset + i*rowStride + j*colStride, rowStride, colStride);
+        }
+
+        @Override
+        void packA(int i0, int mc, int p0, int kc, double[] Ap)
+        {
+            int pos = 0;
+            for(int ir = 0; ir < mc; ir += MR)
+            {
+                int mr = min(MR, mc-ir);
+                if(colStride == 1)//rows are contiguous
+                {
+                    for(int i = 0; i < MR; i++)
+                    {
+                        if(i < mr)
+                        {
+                            int src = offset + (i0+ir+i)*rowStride + p0;
+                            for(int p = 0; p < kc; p++)
+                                Ap[pos + p*MR + i] = data[src+p];
+                        }
+                        else
+                            for(int p = 0; p < kc; p++)
+                                Ap[pos + p*MR + i] = 0;
+                    }
+                }
+                else
+                {
+                    for(int p = 0; p < kc; p++)
+                    {
+                        int src = offset + (i0+ir)*rowStride + (p0+p)*colStride;
+                        int off = pos + p*MR;
+                        int i = 0;
+                        for(; i < mr; i++, src += rowStride)
+                            Ap[off+i] = data[src];
+                        for(; i < MR; i++)
+                            Ap[off+i] = 0;
+                    }
+                }
+                pos += MR*kc;
+            }
+        }
+
+        @Override
+        void packB(int p0, int kc, int j0, int nc, double[] Bp)
+        {
+            int pos = 0;
+            for(int jr = 0; jr < nc; jr += NR)
+            {
+                int nr = min(NR, nc-jr);
+                if(rowStride == 1)//columns are contiguous
+                {
+                    for(int j = 0; j < NR; j++)
+                    {
+                        if(j < nr)
+                        {
+                            int src = offset + (j0+jr+j)*colStride + p0;
+                            for(int p = 0; p < kc; p++)
+                                Bp[pos + p*NR + j] = data[src+p];
+                        }
+                        else
+                            for(int p = 0; p < kc; p++)
+                                Bp[pos + p*NR + j] = 0;
+                    }
+                }
+                else
+                {
+                    for(int p = 0; p < kc; p++)
+                    {
+                        int src = offset + (p0+p)*rowStride + (j0+jr)*colStride;
+                        int off = pos + p*NR;
+                        int j = 0;
+                        for(; j < nr; j++, src += colStride)
+                            Bp[off+j] = data[src];
+                        for(; j < NR; j++)
+                            Bp[off+j] = 0;
+                    }
+                }
+                pos += NR*kc;
+            }
+        }
+
+        @Override
+        void addTile(int i, int j, int mr, int nr, double[] tile)
+        {
+            for(int ii = 0; ii < mr; ii++)
+            {
+                int dst = offset + (i+ii)*rowStride + j*colStride;
+                for(int jj = 0; jj < nr; jj++, dst += colStride)
+                    data[dst] += tile[ii*NR+jj];
+            }
+        }
+    }
+}
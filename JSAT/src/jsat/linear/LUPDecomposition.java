@@ -165,6 +165,8 @@ public class LUPDecomposition implements Cloneable, Serializable
     {
         if (b.rows() != L.rows())
             throw new ArithmeticException("Vector and matrix sizes do not agree");
+        if (L.isSquare() && GEMM.isDense(L) && GEMM.isDense(b))
+            return blockedSub(L, true, b, null);
 
         Matrix y = new DenseMatrix(b.rows(), b.cols());
         //Store the colum seperatly so that we can access this array in row major order, instead of the matrix in column major (yay cache!)
@@ -199,6 +201,8 @@ public class LUPDecomposition implements Cloneable, Serializable
     {
         if (b.rows() != L.rows())
             throw new ArithmeticException("Vector and matrix sizes do not agree");
+        if (L.isSquare() && GEMM.isDense(L) && GEMM.isDense(b))
+            return blockedSub(L, true, b, threadpool);
 
         final CountDownLatch latch = new CountDownLatch(threads);
         
@@ -285,6 +289,8 @@ public class LUPDecomposition implements Cloneable, Serializable
     {
         if (y.rows() != U.rows())
             throw new ArithmeticException("Vector and matrix sizes do not agree");
+        if (GEMM.isDense(U) && GEMM.isDense(y))
+            return blockedSub(U, false, y, null);
 
         Matrix x = new DenseMatrix(U.cols(), y.cols());
 
@@ -325,6 +331,8 @@ public class LUPDecomposition implements Cloneable, Serializable
     {
         if (y.rows() != U.rows())
             throw new ArithmeticException("Vector and matrix sizes do not agree");
+        if (GEMM.isDense(U) && GEMM.isDense(y))
+            return blockedSub(U, false, y, threadpool);
 
         final Matrix x = new DenseMatrix(U.cols(), y.cols());
         final CountDownLatch latch = new CountDownLatch(threads);
@@ -372,4 +380,33 @@ public class LUPDecomposition implements Cloneable, Serializable
 
         return x;
     }
+    
+    /**
+     * Solves a dense triangular system for all the columns of b at once, a
+     * block of rows at a time, so that most of the work is done by matrix
+     * multiplications.
+     *
+     * @param T the triangular matrix
+     * @param lower {@code true} if T is lower triangular
+     * @param b the right hand sides
+     * @param threadpool the source of threads, or {@code null} for serial
+     * @return x such that T x = b
+     */
+    private static Matrix blockedSub(Matrix T, boolean lower, Matrix b, ExecutorService threadpool)
+    {
+        final int n = Math.min(T.rows(), T.cols());
+        DenseMatrix x = new DenseMatrix(T.cols(), b.cols());
+        for(int i = 0; i < n; i++)
+            for(int j = 0; j < b.cols(); j++)
+                x.set(i, j, b.get(i, j));
+        
+        BlockedDecompositions.trsm(T, lower, x, n, BlockedDecompositions.NB, threadpool);
+        
+        if(!lower)
+            for(int i = 0; i < n; i++)
+                for(int j = 0; j < b.cols(); j++)
+                    if(Double.isInfinite(x.get(i, j)))//Occurs when U_(i,i) = 0
+                        x.set(i, j, 0);
+        return x;
+    }
 }
@@ -17,7 +17,8 @@ import jsat.utils.random.RandomUtil;
  * If a non symmetric matrix <b>X<sup>n,m</sup></b> is given, this can implicit
  * compute the top-<i>k</i> eigen values and vectors for the matrix
  * <b>A=X<sup>T</sup> X</b> or <b>A=X X<sup>T</sup></b>, without having to
- * explicitly construct the potentially larger matrix A.
+ * explicitly construct the potentially larger matrix A. <b>A</b> only needs to
+ * be a {@link LinearOperator}, so it may itself never be formed.
  *
  *
  * @author Edward Raff <Raff.Edward@gmail.com>
@@ -30,7 +31,7 @@ public class Lanczos implements Serializable
     public double[] d;
     public Matrix eigenVectors;
     
-    public Lanczos(Matrix A, int k, boolean A_AT, boolean is_symmetric) 
+    public Lanczos(LinearOperator A, int k, boolean A_AT, boolean is_symmetric) 
     {
         Random rand = RandomUtil.getRandom();
         
@@ -64,19 +65,19 @@ public class Lanczos implements Serializable
             //3. Let w'_j = A v_j
             if(is_symmetric)
                 //w'_j
-                A.multiply(v_next, 1.0, w_j);
+                A.apply(v_next, 1.0, w_j);
             else//We are doing A * A' * v_i
             {
                 tmp.zeroOut();
                 if(A_AT)//We are doing A * A' * v_i
                 {
-                    A.transposeMultiply(1.0, v_next, tmp);
-                    A.multiply(tmp, 1.0, w_j);
+                    A.applyTranspose(v_next, 1.0, tmp);
+                    A.apply(tmp, 1.0, w_j);
                 }
                 else//We are doing A' * A * v_i
                 {
-                    A.multiply(v_next, 1.0, tmp);
-                    A.transposeMultiply(1.0, tmp, w_j);
+                    A.apply(v_next, 1.0, tmp);
+                    A.applyTranspose(tmp, 1.0, w_j);
                 }
             }
             
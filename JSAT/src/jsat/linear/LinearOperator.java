@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A LinearOperator is a linear map <i>A</i><sub>m x n</sub> that is only
+ * known through its products with vectors. This allows iterative methods to
+ * work with matrices that are never formed, such as the kernel matrix of a
+ * data set or <i>X<sup>T</sup>X + &lambda;I</i>, at the memory cost of the
+ * pieces they are built from. Every {@link Matrix} is a LinearOperator.
+ *
+ * @author Edward Raff
+ */
+public interface LinearOperator
+{
+    /**
+     * Returns the number of rows of the operator, which is the length of its
+     * output
+     *
+     * @return the number of rows
+     */
+    public int rows();
+
+    /**
+     * Returns the number of columns of the operator, which is the length of
+     * its input
+     *
+     * @return the number of columns
+     */
+    public int cols();
+
+    /**
+     * Alters the vector <i><b>y</b></i> to be equal to <i><b>y</b> =
+     * <b>y</b> + A*<b>x</b>*z</i>
+     *
+     * @param x the vector of length n to multiply by
+     * @param z the constant to multiply the <i>A*<b>x</b></i> value by
+     * @param y the vector of length m to add the result to
+     */
+    public void apply(Vec x, double z, Vec y);
+
+    /**
+     * Alters the vector <i><b>y</b></i> to be equal to <i><b>y</b> =
+     * <b>y</b> + A*<b>x</b>*z</i>. The default implementation does not use
+     * the thread pool.
+     *
+     * @param x the vector of length n to multiply by
+     * @param z the constant to multiply the <i>A*<b>x</b></i> value by
+     * @param y the vector of length m to add the result to
+     * @param threadPool the source of threads to do computation in parallel,
+     * or {@code null} to run in the calling thread
+     */
+    default public void apply(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        apply(x, z, y);
+    }
+
+    /**
+     * Alters the vector <i><b>y</b></i> to be equal to <i><b>y</b> =
+     * <b>y</b> + A'*<b>x</b>*z</i>
+     *
+     * @param x the vector of length m to multiply by
+     * @param z the constant to multiply the <i>A'*<b>x</b></i> value by
+     * @param y the vector of length n to add the result to
+     */
+    public void applyTranspose(Vec x, double z, Vec y);
+
+    /**
+     * Alters the vector <i><b>y</b></i> to be equal to <i><b>y</b> =
+     * <b>y</b> + A'*<b>x</b>*z</i>. The default implementation does not use
+     * the thread pool.
+     *
+     * @param x the vector of length m to multiply by
+     * @param z the constant to multiply the <i>A'*<b>x</b></i> value by
+     * @param y the vector of length n to add the result to
+     * @param threadPool the source of threads to do computation in parallel,
+     * or {@code null} to run in the calling thread
+     */
+    default public void applyTranspose(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        applyTranspose(x, z, y);
+    }
+
+    /**
+     * Creates a new vector that is equal to <i>A*<b>x</b></i>
+     *
+     * @param x the vector to multiply by
+     * @return a new vector <i>A*<b>x</b></i>
+     */
+    default public Vec apply(Vec x)
+    {
+        DenseVector y = new DenseVector(rows());
+        apply(x, 1.0, y);
+        return y;
+    }
+}
@@ -26,7 +26,7 @@ import static jsat.utils.SystemInfo.*;
  * 
  * @author Edward Rafff
  */
-public abstract class Matrix implements Cloneable, Serializable
+public abstract class Matrix implements Cloneable, Serializable, LinearOperator
 {
 
     private static final long serialVersionUID = 6888360415978051714L;
@@ -278,6 +278,21 @@ public abstract class Matrix implements Cloneable, Serializable
      */
     abstract public void multiply(Vec b, double z, Vec c);
     
+    /**
+     * If this matrix is <i>A<sub>m x n</sub></i>, and <i><b>b</b></i> has a length of n, and <i><b>c</b></i> has a length of m,
+     * then this will mutate c to store <i><b>c</b> = <b>c</b> + A*<b>b</b>*z</i>. 
+     * The default implementation does not use the thread pool. 
+     * @param b the vector to be treated as a colum vector
+     * @param z the constant to multiply the <i>A*<b>b</b></i> value by. 
+     * @param c where to place the result by addition
+     * @param threadPool the source of threads to do computation in parallel
+     * @throws ArithmeticException if the dimensions of A, <b>b</b>, or <b>c</b> do not all agree
+     */
+    public void multiply(Vec b, double z, Vec c, ExecutorService threadPool)
+    {
+        multiply(b, z, c);
+    }
+    
     /**
      * Creates a new vector that is equal to <i>A*<b>b</b> </i>
      * @param b the vector to multiply by
@@ -510,6 +525,50 @@ public abstract class Matrix implements Cloneable, Serializable
      */
     abstract public void transposeMultiply(double c, Vec b, Vec x);
     
+    /**
+     * Alters the vector <i><b>x</b></i> to be equal to <i><b>x</b> = <b>x</b> + A'*<b>b</b>*c</i>. 
+     * The default implementation does not use the thread pool. 
+     * 
+     * @param c the scalar constant to multiply by
+     * @param b the vector to multiply by
+     * @param x the vector the add the result to 
+     * @param threadPool the source of threads to do computation in parallel
+     */
+    public void transposeMultiply(double c, Vec b, Vec x, ExecutorService threadPool)
+    {
+        transposeMultiply(c, b, x);
+    }
+
+    @Override
+    public void apply(Vec x, double z, Vec y)
+    {
+        multiply(x, z, y);
+    }
+
+    @Override
+    public void apply(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        if(threadPool == null)
+            multiply(x, z, y);
+        else
+            multiply(x, z, y, threadPool);
+    }
+
+    @Override
+    public void applyTranspose(Vec x, double z, Vec y)
+    {
+        transposeMultiply(z, x, y);
+    }
+
+    @Override
+    public void applyTranspose(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        if(threadPool == null)
+            transposeMultiply(z, x, y);
+        else
+            transposeMultiply(z, x, y, threadPool);
+    }
+    
     /**
      * Creates a new vector equal to <i><b>x</b> = A'*<b>b</b>*c</i>
      * @param c the scalar constant to multiply by
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The symmetric operator <i>X<sup>T</sup>X + &lambda;I</i>, or <i>X
+ * X<sup>T</sup> + &lambda;I</i>, for an operator <i>X</i> that is never
+ * multiplied out. Each product costs one product with <i>X</i> and one with
+ * <i>X<sup>T</sup></i>, so a sparse <i>X</i> keeps its O(nnz) memory. This
+ * is the system matrix of ridge regression and of the normal equations of
+ * least squares.
+ *
+ * @author Edward Raff
+ */
+public class NormalOperator implements LinearOperator, Serializable
+{
+    private static final long serialVersionUID = 2207476339187925426L;
+    private final LinearOperator X;
+    private final double lambda;
+    private final boolean outer;
+
+    /**
+     * Creates the operator <i>X<sup>T</sup>X</i>
+     *
+     * @param X the operator to form the normal product of
+     */
+    public NormalOperator(LinearOperator X)
+    {
+        this(X, 0.0);
+    }
+
+    /**
+     * Creates the operator <i>X<sup>T</sup>X + &lambda;I</i>
+     *
+     * @param X the operator to form the normal product of
+     * @param lambda the value to add to the diagonal
+     */
+    public NormalOperator(LinearOperator X, double lambda)
+    {
+        this(X, lambda, false);
+    }
+
+    /**
+     * Creates the operator <i>X<sup>T</sup>X + &lambda;I</i> or <i>X
+     * X<sup>T</sup> + &lambda;I</i>
+     *
+     * @param X the operator to form the normal product of
+     * @param lambda the value to add to the diagonal
+     * @param outer {@code false} for the n x n operator <i>X<sup>T</sup>X +
+     * &lambda;I</i>, {@code true} for the m x m operator <i>X X<sup>T</sup> +
+     * &lambda;I</i>
+     */
+    public NormalOperator(LinearOperator X, double lambda, boolean outer)
+    {
+        if(Double.isNaN(lambda) || Double.isInfinite(lambda))
+            throw new IllegalArgumentException("lambda must be a real value, not " + lambda);
+        this.X = X;
+        this.lambda = lambda;
+        this.outer = outer;
+    }
+
+    /**
+     * Returns the value added to the diagonal
+     *
+     * @return the value added to the diagonal
+     */
+    public double getLambda()
+    {
+        return lambda;
+    }
+
+    @Override
+    public int rows()
+    {
+        return outer ? X.rows() : X.cols();
+    }
+
+    @Override
+    public int cols()
+    {
+        return rows();
+    }
+
+    @Override
+    public void apply(Vec x, double z, Vec y)
+    {
+        apply(x, z, y, null);
+    }
+
+    @Override
+    public void apply(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        if(x.length() != cols() || y.length() != rows())
+            throw new ArithmeticException("Vector lengths do not agree with a " + rows() + " x " + cols() + " operator");
+        DenseVector tmp = new DenseVector(outer ? X.cols() : X.rows());
+        if(outer)
+        {
+            X.applyTranspose(x, 1.0, tmp, threadPool);
+            X.apply(tmp, z, y, threadPool);
+        }
+        else
+        {
+            X.apply(x, 1.0, tmp, threadPool);
+            X.applyTranspose(tmp, z, y, threadPool);
+        }
+        if(lambda != 0)
+            y.mutableAdd(z*lambda, x);
+    }
+
+    @Override
+    public void applyTranspose(Vec x, double z, Vec y)
+    {
+        apply(x, z, y);
+    }
+
+    @Override
+    public void applyTranspose(Vec x, double z, Vec y, ExecutorService threadPool)
+    {
+        apply(x, z, y, threadPool);
+    }
+
+    /**
+     * Computes the diagonal of this operator, which is the squared norm of
+     * each column (or row, for <i>X X<sup>T</sup></i>) of <i>X</i> plus
+     * &lambda;. When <i>X</i> is a {@link Matrix} this is read directly,
+     * otherwise it takes one product per entry.
+     *
+     * @return a new vector with the diagonal of this operator
+     */
+    public Vec getDiagonal()
+    {
+        final int n = rows();
+        DenseVector d = new DenseVector(n);
+        if(X instanceof Matrix)
+        {
+            Matrix A = (Matrix) X;
+            for(int i = 0; i < A.rows(); i++)
+                for(IndexValue iv : A.getRowView(i))
+                {
+                    double v = iv.getValue();
+                    d.increment(outer ? i : iv.getIndex(), v*v);
+                }
+        }
+        else
+        {
+            DenseVector e = new DenseVector(n);
+            DenseVector col = new DenseVector(outer ? X.cols() : X.rows());
+            for(int i = 0; i < n; i++)
+            {
+                e.set(i, 1.0);
+                col.zeroOut();
+                if(outer)
+                    X.applyTranspose(e, 1.0, col);
+                else
+                    X.apply(e, 1.0, col);
+                d.set(i, col.dot(col));
+                e.set(i, 0.0);
+            }
+        }
+        d.mutableAdd(lambda);
+        return d;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.io.Serializable;
+import static java.lang.Math.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import jsat.utils.concurrent.ParallelUtils;
+import jsat.utils.random.RandomUtil;
+
+/**
+ * Computes an approximate Truncated Singular Value Decomposition with the
+ * randomized range finder of Halko, Martinsson, and Tropp. Given a matrix
+ * <b>A</b><sub>m,n</sub> and a number of singular values <i>k</i>, this finds
+ * <b>A</b><sub>m,n</sub> &asymp; <b>U</b><sub>m,k</sub>
+ * <b>&Sigma;</b><sub>k,k</sub> <b>V</b><sup>T</sup><sub>k,n</sub>. <br>
+ * <br>
+ * The input is only touched through products with tall and thin dense
+ * matrices, so sparse inputs are never made dense. A random sample of
+ * <i>k</i> + <i>oversample</i> directions in the range of A is taken and
+ * orthonormalized, then sharpened with power iterations. Each power iteration
+ * costs two more passes over A, and makes the error shrink much faster as the
+ * singular values decay. So the number of power iterations selects the
+ * precision of the result. <br>
+ * <br>
+ * The dense thin matrices are orthonormalized with Cholesky QR, where each
+ * thread works on a block of rows, and falls back to Householder QR when the
+ * sample is too close to rank deficient for that to be accurate.
+ * <br><br>
+ * See: Halko, N., Martinsson, P. G., &amp; Tropp, J. A. (2011). <i>Finding
+ * Structure with Randomness: Probabilistic Algorithms for Constructing
+ * Approximate Matrix Decompositions</i>. SIAM Review, 53(2), 217–288.
+ *
+ * @author Edward Raff
+ */
+public class RandomizedSVD implements Serializable
+{
+    private static final long serialVersionUID = -3389104621386224906L;
+    /**
+     * The default number of extra directions to sample
+     */
+    public static final int DEFAULT_OVERSAMPLE = 10;
+    /**
+     * The default number of power iterations
+     */
+    public static final int DEFAULT_POWER_ITERATIONS = 2;
+    /**
+     * Cholesky QR is only used while the smallest pivot is at least this
+     * fraction of the largest, so that two passes give orthonormal columns
+     */
+    private static final double MIN_PIVOT_RATIO = 1e-6;
+
+    private Matrix U, V;
+    private double[] s;
+
+    /**
+     * Computes the randomized SVD of the matrix A with the default
+     * oversampling and number of power iterations. The input will not be
+     * altered.
+     *
+     * @param A the matrix to decompose
+     * @param k the number of singular values to find
+     */
+    public RandomizedSVD(Matrix A, int k)
+    {
+        this(A, k, null);
+    }
+
+    /**
+     * Computes the randomized SVD of the matrix A with the default
+     * oversampling and number of power iterations. The input will not be
+     * altered.
+     *
+     * @param A the matrix to decompose
+     * @param k the number of singular values to find
+     * @param threadPool the source of threads for the computation, or
+     * {@code null} to run in the calling thread
+     */
+    public RandomizedSVD(Matrix A, int k, ExecutorService threadPool)
+    {
+        this(A, k, DEFAULT_OVERSAMPLE, DEFAULT_POWER_ITERATIONS, RandomUtil.getRandom(), threadPool);
+    }
+
+    /**
+     * Computes the randomized SVD of the matrix A. The input will not be
+     * altered.
+     *
+     * @param A the matrix to decompose
+     * @param k the number of singular values to find
+     * @param oversample the number of extra random directions to sample, which
+     * improves the accuracy of the last singular values found
+     * @param powerIterations the number of power iterations to perform. More
+     * iterations give a more precise result, zero is the fastest.
+     * @param rand the source of randomness
+     * @param threadPool the source of threads for the computation, or
+     * {@code null} to run in the calling thread
+     */
+    public RandomizedSVD(Matrix A, int k, int oversample, int powerIterations, Random rand, ExecutorService threadPool)
+    {
+        final int m = A.rows(), n = A.cols();
+        if(k < 1 || k > min(m, n))
+            throw new IllegalArgumentException("Number of singular values must be in [1, " + min(m, n) + "], not " + k);
+        if(oversample < 0)
+            throw new IllegalArgumentException("Oversampling must be non-negative, not " + oversample);
+        if(powerIterations < 0)
+            throw new IllegalArgumentException("Number of power iterations must be non-negative, not " + powerIterations);
+        final int l = min(k+oversample, min(m, n));
+
+        DenseMatrix Omega = new DenseMatrix(n, l);
+        for(int i = 0; i < n; i++)
+            for(int j = 0; j < l; j++)
+                Omega.matrix[i][j] = rand.nextGaussian();
+
+        DenseMatrix Y = new DenseMatrix(m, l);
+        multiply(A, Omega, Y, threadPool);
+        Omega = null;
+        orthonormalize(Y, threadPool);
+        DenseMatrix Z = new DenseMatrix(n, l);
+        for(int q = 0; q < powerIterations; q++)
+        {
+            transposeMultiply(A, Y, Z, threadPool);
+            orthonormalize(Z, threadPool);
+            Y.zeroOut();
+            multiply(A, Z, Y, threadPool);
+            orthonormalize(Y, threadPool);
+            Z.zeroOut();
+        }
+
+        //B = Y^T A is l x n, so work with B^T = A^T Y = Z R
+        transposeMultiply(A, Y, Z, threadPool);
+        Matrix R = orthonormalize(Z, threadPool);
+        //B = R^T Z^T = Ur S (Z Vr)^T
+        SingularValueDecomposition svd = new SingularValueDecomposition(R.transpose());
+        DenseMatrix Ur = new DenseMatrix(l, k), Vr = new DenseMatrix(l, k);
+        for(int i = 0; i < l; i++)
+            for(int j = 0; j < k; j++)
+            {
+                Ur.matrix[i][j] = svd.getU().get(i, j);
+                Vr.matrix[i][j] = svd.getV().get(i, j);
+            }
+        s = Arrays.copyOf(svd.getSingularValues(), k);
+
+        U = new DenseMatrix(m, k);
+        V = new DenseMatrix(n, k);
+        multiply(Y, Ur, U, threadPool);
+        multiply(Z, Vr, V, threadPool);
+    }
+
+    /**
+     * Returns the m x k matrix U of the SVD. Do not alter this matrix.
+     *
+     * @return the matrix U of the SVD
+     */
+    public Matrix getU()
+    {
+        return U;
+    }
+
+    /**
+     * Returns the n x k matrix V of the SVD. Do not alter this matrix.
+     *
+     * @return the matrix V of the SVD
+     */
+    public Matrix getV()
+    {
+        return V;
+    }
+
+    /**
+     * Returns a copy of the singular values found, in descending order
+     *
+     * @return a copy of the singular values
+     */
+    public double[] getSingularValues()
+    {
+        return Arrays.copyOf(s, s.length);
+    }
+
+    /**
+     * Returns the diagonal matrix S such that the SVD product approximates the
+     * original matrix.
+     *
+     * @return a dense k x k diagonal matrix containing the singular values
+     */
+    public Matrix getS()
+    {
+        Matrix DS = new DenseMatrix(s.length, s.length);
+        for(int i = 0; i < s.length; i++)
+            DS.set(i, i, s[i]);
+        return DS;
+    }
+
+    /**
+     * Returns the 2 norm of the matrix, which is the maximal singular value.
+     *
+     * @return the 2 norm of the matrix
+     */
+    public double getNorm2()
+    {
+        return s[0];
+    }
+
+    private static void multiply(Matrix A, Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        if(threadPool == null)
+            A.multiply(B, C);
+        else
+            A.multiply(B, C, threadPool);
+    }
+
+    private static void transposeMultiply(Matrix A, Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        if(threadPool == null)
+            A.transposeMultiply(B, C);
+        else
+            A.transposeMultiply(B, C, threadPool);
+    }
+
+    /**
+     * Replaces the tall matrix Y with orthonormal columns Q spanning the same
+     * space, such that the original Y = Q R
+     *
+     * @param Y the matrix to orthonormalize
+     * @param threadPool the source of threads, or {@code null}
+     * @return the upper triangular matrix R
+     */
+    static Matrix orthonormalize(DenseMatrix Y, ExecutorService threadPool)
+    {
+        //two passes of Cholesky QR give columns orthonormal to working precision
+        Matrix R = choleskyQR(Y, threadPool);
+        Matrix R2 = R == null ? null : choleskyQR(Y, threadPool);
+        if(R2 != null)
+            return R2.multiply(R);
+
+        final int l = Y.cols();
+        DenseMatrix Q = new DenseMatrix(Y.rows(), l);
+        for(int i = 0; i < l; i++)
+            Q.matrix[i][i] = 1;
+        BlockedDecompositions.qr(Y, Q, BlockedDecompositions.NB, threadPool);
+        DenseMatrix Rq = new DenseMatrix(l, l);
+        for(int i = 0; i < l; i++)
+            System.arraycopy(Y.matrix[i], i, Rq.matrix[i], i, l-i);
+        for(int i = 0; i < Y.rows(); i++)
+            Y.matrix[i] = Q.matrix[i];
+        return R == null ? Rq : Rq.multiply(R);
+    }
+
+    /**
+     * Computes Y = Q R, with R the Cholesky factor of Y<sup>T</sup> Y, and
+     * replaces Y with Q. Each thread handles a block of rows.
+     *
+     * @return R, or {@code null} if Y is too poorly conditioned, in which case
+     * it is left unchanged
+     */
+    private static Matrix choleskyQR(DenseMatrix Y, ExecutorService threadPool)
+    {
+        final int m = Y.rows(), l = Y.cols();
+        final GEMM.Operand y = GEMM.operand(Y, false), yT = GEMM.operand(Y, true);
+        DenseMatrix G = ParallelUtils.run(threadPool != null, m, (start, end) ->
+        {
+            DenseMatrix g = new DenseMatrix(l, l);
+            GEMM.gemm(yT.view(0, start), y.view(start, 0), GEMM.operand(g, false), l, l, end-start, null);
+            return g;
+        }, (a, b) ->
+        {
+            a.mutableAdd(b);
+            return a;
+        }, threadPool);
+
+        double maxDiag = 0;
+        for(int i = 0; i < l; i++)
+            maxDiag = max(maxDiag, G.matrix[i][i]);
+        try
+        {
+            BlockedDecompositions.cholesky(G, BlockedDecompositions.NB, null);
+        }
+        catch(ArithmeticException ex)
+        {
+            return null;
+        }
+        for(int i = 0; i < l; i++)
+            if(!(G.matrix[i][i] >= MIN_PIVOT_RATIO*sqrt(maxDiag)))
+                return null;
+
+        //Y = Y L^-T, a block of rows at a time
+        DenseMatrix Linv = new DenseMatrix(l, l);
+        for(int i = 0; i < l; i++)
+            Linv.matrix[i][i] = 1;
+        BlockedDecompositions.trsm(G, true, Linv, l, BlockedDecompositions.NB, null);
+        final GEMM.Operand LinvT = GEMM.operand(Linv, true);
+        ParallelUtils.run(threadPool != null, m, (start, end) ->
+        {
+            DenseMatrix block = new DenseMatrix(end-start, l);
+            GEMM.gemm(y.view(start, 0), LinvT, GEMM.operand(block, false), end-start, l, l, null);
+            for(int i = start; i < end; i++)
+                Y.matrix[i] = block.matrix[i-start];
+        }, threadPool);
+
+        DenseMatrix R = new DenseMatrix(l, l);
+        for(int i = 0; i < l; i++)
+            for(int j = i; j < l; j++)
+                R.matrix[i][j] = G.matrix[j][i];
+        return R;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A sparse vector that stores its non-zero values as 32 bit floats, which
+ * reduces the memory of a {@link SparseVector} by a third. Values are widened
+ * to doubles when read, and all arithmetic is done in double precision. Values
+ * set into this vector are rounded to the nearest float.
+ *
+ * @author Edward Raff
+ */
+public class SparseFloatVector extends Vec
+{
+
+    private static final long serialVersionUID = -3291209433212870383L;
+    private int length;
+    /**
+     * number of indices used in this vector
+     */
+    protected int used;
+    protected int[] indexes;
+    protected float[] values;
+
+    /**
+     * Creates a new sparse vector of the given length that is all zero values.
+     *
+     * @param length the length of the sparse vector
+     */
+    public SparseFloatVector(int length)
+    {
+        this(length, 10);
+    }
+
+    /**
+     * Creates a new sparse vector of the specified length, and pre-allocates
+     * enough internal state to hold {@code capacity} non zero values.
+     *
+     * @param length the length of the sparse vector
+     * @param capacity the number of non zero values to allocate space for
+     */
+    public SparseFloatVector(int length, int capacity)
+    {
+        this(new int[capacity], new float[capacity], length, 0);
+    }
+
+    /**
+     * Creates a new sparse vector backed by the given arrays. No validation is
+     * done on the contents of the arrays, the first {@code used} indices must
+     * be increasing and less than {@code length}.
+     *
+     * @param indexes the array to store the index locations in
+     * @param values the array to store the index values in
+     * @param length the length of the sparse vector
+     * @param used the number of non zero values in the vector taken from the
+     * given input arrays.
+     */
+    public SparseFloatVector(int[] indexes, float[] values, int length, int used)
+    {
+        if (values.length != indexes.length)
+            throw new IllegalArgumentException("Index and Value arrays must have the same length, instead index was " + indexes.length + " and values was " + values.length);
+        if (used < 0 || used > values.length)
+            throw new IllegalArgumentException("Bad used value " + used);
+        if (length < 0)
+            throw new IllegalArgumentException("Length of sparse vector can not be negative, not " + length);
+        this.used = used;
+        this.length = length;
+        this.indexes = indexes;
+        this.values = values;
+    }
+
+    /**
+     * Creates a new sparse vector by copying the values from another, rounded
+     * to float precision
+     *
+     * @param toCopy the vector to copy the values of
+     */
+    public SparseFloatVector(Vec toCopy)
+    {
+        this(toCopy.length(), toCopy.nnz());
+        for (IndexValue iv : toCopy)
+        {
+            if (iv.getValue() == 0)
+                continue;
+            indexes[used] = iv.getIndex();
+            values[used++] = (float) iv.getValue();
+        }
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public void setLength(int length)
+    {
+        if (used > 0 && length <= indexes[used - 1])
+            throw new RuntimeException("Can not set the length to a value less then an index already in use");
+        this.length = length;
+    }
+
+    @Override
+    public int nnz()
+    {
+        return used;
+    }
+
+    @Override
+    public double get(int index)
+    {
+        if (index >= length || index < 0)
+            throw new IndexOutOfBoundsException("Can not access an index larger then the vector or a negative index");
+        int pos = Arrays.binarySearch(indexes, 0, used, index);
+        return pos < 0 ? 0 : values[pos];
+    }
+
+    @Override
+    public void set(int index, double val)
+    {
+        if (index >= length || index < 0)
+            throw new IndexOutOfBoundsException("Can not access an index larger then the vector or a negative index");
+        int pos = Arrays.binarySearch(indexes, 0, used, index);
+        if (pos >= 0)
+        {
+            if (val == 0)
+                removeNonZero(pos);
+            else
+                values[pos] = (float) val;
+        }
+        else if (val != 0)
+            insertValue(-(pos + 1), index, val);
+    }
+
+    @Override
+    public void increment(int index, double val)
+    {
+        if (val == 0)
+            return;
+        if (index >= length || index < 0)
+            throw new IndexOutOfBoundsException("Can not access an index larger then the vector or a negative index");
+        int pos = Arrays.binarySearch(indexes, 0, used, index);
+        if (pos >= 0)
+        {
+            values[pos] += val;
+            if (values[pos] == 0)
+                removeNonZero(pos);
+        }
+        else
+            insertValue(-(pos + 1), index, val);
+    }
+
+    private void insertValue(int pos, int index, double val)
+    {
+        if (used == indexes.length)
+        {
+            int newLen = Math.max(indexes.length * 3 / 2, indexes.length + 4);
+            indexes = Arrays.copyOf(indexes, newLen);
+            values = Arrays.copyOf(values, newLen);
+        }
+        System.arraycopy(indexes, pos, indexes, pos + 1, used - pos);
+        System.arraycopy(values, pos, values, pos + 1, used - pos);
+        indexes[pos] = index;
+        values[pos] = (float) val;
+        used++;
+    }
+
+    private void removeNonZero(int pos)
+    {
+        System.arraycopy(indexes, pos + 1, indexes, pos, used - pos - 1);
+        System.arraycopy(values, pos + 1, values, pos, used - pos - 1);
+        used--;
+    }
+
+    @Override
+    public boolean isSparse()
+    {
+        return true;
+    }
+
+    @Override
+    public SparseFloatVector clone()
+    {
+        return new SparseFloatVector(Arrays.copyOf(indexes, used), Arrays.copyOf(values, used), length, used);
+    }
+
+    @Override
+    public double sum()
+    {
+        double sum = 0;
+        for (int i = 0; i < used; i++)
+            sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public double dot(Vec v)
+    {
+        double dot = 0;
+        if (v instanceof SparseFloatVector)
+        {
+            SparseFloatVector b = (SparseFloatVector) v;
+            int p1 = 0, p2 = 0;
+            while (p1 < used && p2 < b.used)
+            {
+                int a1 = indexes[p1], a2 = b.indexes[p2];
+                if (a1 == a2)
+                    dot += values[p1++] * (double) b.values[p2++];
+                else if (a1 > a2)
+                    p2++;
+                else
+                    p1++;
+            }
+        }
+        else if (v.isSparse())
+            return super.dot(v);
+        else// it is dense
+            for (int i = 0; i < used; i++)
+                dot += values[i] * v.get(indexes[i]);
+        return dot;
+    }
+
+    @Override
+    public double pNorm(double p)
+    {
+        if (p == 2)
+        {
+            double sum = 0;
+            for (int i = 0; i < used; i++)
+                sum += values[i] * (double) values[i];
+            return Math.sqrt(sum);
+        }
+        return super.pNorm(p);
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        if (c == 0)
+        {
+            zeroOut();
+            return;
+        }
+        for (int i = 0; i < used; i++)
+            values[i] *= c;
+    }
+
+    @Override
+    public void mutableDivide(double c)
+    {
+        for (int i = 0; i < used; i++)
+            values[i] /= c;
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        used = 0;
+    }
+
+    @Override
+    public Iterator<IndexValue> getNonZeroIterator(int start)
+    {
+        if (used <= 0)
+            return Collections.emptyIterator();
+        final int startPos;
+        if (start <= indexes[0])
+            startPos = 0;
+        else
+        {
+            int tmpIndx = Arrays.binarySearch(indexes, 0, used, start);
+            startPos = tmpIndx >= 0 ? tmpIndx : -(tmpIndx) - 1;
+        }
+        return new Iterator<IndexValue>()
+        {
+            int curUsedPos = startPos;
+            IndexValue indexValue = new IndexValue(-1, Double.NaN);
+
+            @Override
+            public boolean hasNext()
+            {
+                return curUsedPos < used;
+            }
+
+            @Override
+            public IndexValue next()
+            {
+                indexValue.setIndex(indexes[curUsedPos]);
+                indexValue.setValue(values[curUsedPos++]);
+                return indexValue;
+            }
+        };
+    }
+}
@@ -7,14 +7,13 @@ import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
 
 /**
  * Creates a new Sparse Matrix where each row is backed by a sparse vector. 
  * <br><br>
  * This implementation does not support the {@link #qr() QR} or {@link #lup() } 
  * decompositions. 
- * <br>
- * {@link #transposeMultiply(jsat.linear.Matrix, jsat.linear.Matrix, java.util.concurrent.ExecutorService) } currently does not use multiple cores. 
  * 
  * @author Edward Raff
  */
@@ -336,7 +335,42 @@ public class SparseMatrix extends Matrix
     @Override
     public void transposeMultiply(final Matrix B, final Matrix C, ExecutorService threadPool)
     {
-        transposeMultiply(B, C);//TODO use the multiple threads
+        if(this.rows() != B.rows())//Normaly it is A_cols == B_rows, but we are doint A'*B, not A*B
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if(this.cols() != C.rows() || B.cols() != C.cols())
+            throw new ArithmeticException("Destination matrix does not have matching dimensions");
+        
+        //each thread owns a range of the columns of C, so no updates collide
+        final int cores = Math.min(SystemInfo.LogicalCores, C.cols());
+        final CountDownLatch latch = new CountDownLatch(cores);
+        for(int id = 0; id < cores; id++)
+        {
+            final int start = ParallelUtils.getStartBlock(C.cols(), id, cores);
+            final int end = ParallelUtils.getEndBlock(C.cols(), id, cores);
+            threadPool.submit(() ->
+            {
+                for (int k = 0; k < rows.length; k++)
+                {
+                    Vec bRow_k = B.getRowView(k);
+                    for (IndexValue iv : rows[k])
+                    {
+                        Vec cRow_i = C.getRowView(iv.getIndex());
+                        double a = iv.getValue();
+                        for(int j = start; j < end; j++)
+                            cRow_i.increment(j, a*bRow_k.get(j));
+                    }
+                }
+                latch.countDown();
+            });
+        }
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(SparseMatrix.class.getName()).log(Level.SEVERE, null, ex);
+        }
     }
 
     @Override
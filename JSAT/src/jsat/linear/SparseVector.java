@@ -472,17 +472,12 @@ public class SparseVector extends  Vec
         if(v instanceof SparseVector)
         {
             SparseVector b = (SparseVector) v;
-            int p1 = 0, p2 = 0;
-            while (p1 < used && p2 < b.used)
-            {
-                int a1 = indexes[p1], a2 = b.indexes[p2];
-                if (a1 == a2)
-                    dot += values[p1++] * b.values[p2++];
-                else if (a1 > a2)
-                    p2++;
-                else
-                    p1++;
-            }
+            return VecKernels.dot(indexes, values, used, b.indexes, b.values, b.used);
+        }
+        else if(v instanceof DenseVector)
+        {
+            DenseVector b = (DenseVector) v;
+            return VecKernels.dot(b.array, b.startIndex, indexes, values, used);
         }
         else if(v.isSparse())
             return super.dot(v);
@@ -658,6 +653,19 @@ public class SparseVector extends  Vec
         if(this.length() != y.length())
             throw new ArithmeticException("Vectors must be of the same length");
         
+        if(p == 2 || p == 1)
+        {
+            if(y instanceof SparseVector)
+            {
+                SparseVector b = (SparseVector) y;
+                if(p == 2)
+                    return Math.sqrt(VecKernels.distSqrd(indexes, values, used, b.indexes, b.values, b.used));
+                return VecKernels.distL1(indexes, values, used, b.indexes, b.values, b.used);
+            }
+            else if(y instanceof DenseVector)
+                return y.pNormDist(p, this);
+        }
+        
         double norm = 0;
         
         if (y instanceof SparseVector)
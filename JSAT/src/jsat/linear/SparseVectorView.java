@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A sparse vector that is a view of a region of index and value arrays that
+ * may be shared by many vectors, such as the rows of a compressed sparse row
+ * matrix. The view itself is only a few fields, and can be re-pointed at a new
+ * region with {@link #setView(int[], double[], int, int, int) }, so that one
+ * object can be used to walk over many rows. <br>
+ * <br>
+ * Changing the value of an index that is already stored will alter the backing
+ * arrays. Any change that would add a new non-zero value requires the
+ * structure of the vector to change, so the view will first copy its values
+ * into its own private storage. After that, changes are no longer seen by the
+ * backing arrays.
+ *
+ * @author Edward Raff
+ */
+public class SparseVectorView extends Vec
+{
+
+    private static final long serialVersionUID = -4416429254728893112L;
+    private int length;
+    private int[] indexes;
+    private double[] values;
+    /**
+     * First position (inclusive) in the backing arrays for this vector
+     */
+    private int start;
+    /**
+     * Last position (exclusive) in the backing arrays for this vector
+     */
+    private int end;
+
+    /**
+     * Creates a new sparse vector that is backed by the given region of index
+     * and value arrays. No validation is done on the contents of the arrays,
+     * the indices between {@code start} and {@code end} must be increasing and
+     * all less than {@code length}.
+     *
+     * @param indexes the array of index locations
+     * @param values the array of values for each index
+     * @param start the first position (inclusive) in the arrays that belongs to
+     * this vector
+     * @param end the last position (exclusive) in the arrays that belongs to
+     * this vector
+     * @param length the length of the vector
+     */
+    public SparseVectorView(int[] indexes, double[] values, int start, int end, int length)
+    {
+        setView(indexes, values, start, end, length);
+    }
+
+    /**
+     * Changes the region of the arrays that this vector is a view of.
+     *
+     * @param indexes the array of index locations
+     * @param values the array of values for each index
+     * @param start the first position (inclusive) in the arrays that belongs to
+     * this vector
+     * @param end the last position (exclusive) in the arrays that belongs to
+     * this vector
+     * @param length the length of the vector
+     */
+    public void setView(int[] indexes, double[] values, int start, int end, int length)
+    {
+        if (start < 0 || end < start || end > indexes.length || end > values.length)
+            throw new IndexOutOfBoundsException("Invalid region [" + start + ", " + end + ") for backing arrays");
+        this.indexes = indexes;
+        this.values = values;
+        this.start = start;
+        this.end = end;
+        this.length = length;
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public void setLength(int length)
+    {
+        if (end > start && length <= indexes[end - 1])
+            throw new RuntimeException("Can not set the length to a value less then an index already in use");
+        this.length = length;
+    }
+
+    @Override
+    public int nnz()
+    {
+        return end - start;
+    }
+
+    @Override
+    public double get(int index)
+    {
+        if (index >= length || index < 0)
+            throw new IndexOutOfBoundsException("Can not access an index larger then the vector or a negative index");
+        int pos = Arrays.binarySearch(indexes, start, end, index);
+        return pos < 0 ? 0 : values[pos];
+    }
+
+    @Override
+    public void set(int index, double val)
+    {
+        if (index >= length || index < 0)
+            throw new IndexOutOfBoundsException("Can not access an index larger then the vector or a negative index");
+        int pos = Arrays.binarySearch(indexes, start, end, index);
+        if (pos >= 0)
+            values[pos] = val;
+        else if (val != 0)
+            insertValue(-(pos + 1), index, val);
+    }
+
+    @Override
+    public void increment(int index, double val)
+    {
+        if (index >= length || index < 0)
+            throw new IndexOutOfBoundsException("Can not access an index larger then the vector or a negative index");
+        if (val == 0)
+            return;
+        int pos = Arrays.binarySearch(indexes, start, end, index);
+        if (pos >= 0)
+            values[pos] += val;
+        else
+            insertValue(-(pos + 1), index, val);
+    }
+
+    /**
+     * Copies the vector into private storage, and inserts a new non zero value
+     *
+     * @param pos the position in the backing arrays to insert at
+     * @param index the index of the new value
+     * @param val the value to insert
+     */
+    private void insertValue(int pos, int index, double val)
+    {
+        int nnz = end - start;
+        int offset = pos - start;
+        int[] newIndexes = new int[nnz + 1];
+        double[] newValues = new double[nnz + 1];
+        System.arraycopy(indexes, start, newIndexes, 0, offset);
+        System.arraycopy(values, start, newValues, 0, offset);
+        newIndexes[offset] = index;
+        newValues[offset] = val;
+        System.arraycopy(indexes, pos, newIndexes, offset + 1, nnz - offset);
+        System.arraycopy(values, pos, newValues, offset + 1, nnz - offset);
+        setView(newIndexes, newValues, 0, nnz + 1, length);
+    }
+
+    @Override
+    public boolean isSparse()
+    {
+        return true;
+    }
+
+    @Override
+    public SparseVector clone()
+    {
+        int nnz = end - start;
+        if (nnz == 0)
+            return new SparseVector(length, 0);
+        return new SparseVector(Arrays.copyOfRange(indexes, start, end), Arrays.copyOfRange(values, start, end), length, nnz);
+    }
+
+    @Override
+    public double dot(Vec v)
+    {
+        if (v.isSparse())
+            return super.dot(v);
+        double dot = 0;
+        for (int i = start; i < end; i++)
+            dot += values[i] * v.get(indexes[i]);
+        return dot;
+    }
+
+    @Override
+    public double sum()
+    {
+        double sum = 0;
+        for (int i = start; i < end; i++)
+            sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public double pNorm(double p)
+    {
+        if (p == 2)
+        {
+            double sum = 0;
+            for (int i = start; i < end; i++)
+                sum += values[i] * values[i];
+            return Math.sqrt(sum);
+        }
+        return super.pNorm(p);
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        for (int i = start; i < end; i++)
+            values[i] *= c;
+    }
+
+    @Override
+    public void mutableDivide(double c)
+    {
+        for (int i = start; i < end; i++)
+            values[i] /= c;
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        //no longer need to look at the backing array
+        setView(new int[0], new double[0], 0, 0, length);
+    }
+
+    @Override
+    public void copyTo(Vec destination)
+    {
+        if (destination.length() != length)
+            throw new ArithmeticException("Source and destination must be the same size");
+        destination.zeroOut();
+        for (int i = start; i < end; i++)
+            destination.set(indexes[i], values[i]);
+    }
+
+    @Override
+    public Iterator<IndexValue> getNonZeroIterator(int from)
+    {
+        if (end == start)
+            return Collections.emptyIterator();
+        final int startPos;
+        if (from <= indexes[start])
+            startPos = start;
+        else
+        {
+            int tmpIndx = Arrays.binarySearch(indexes, start, end, from);
+            startPos = tmpIndx >= 0 ? tmpIndx : -(tmpIndx) - 1;
+        }
+        //capture the current region, in case the view is re-pointed
+        final int[] idx = indexes;
+        final double[] vals = values;
+        final int stop = end;
+        return new Iterator<IndexValue>()
+        {
+            int curPos = startPos;
+            IndexValue indexValue = new IndexValue(-1, Double.NaN);
+
+            @Override
+            public boolean hasNext()
+            {
+                return curPos < stop;
+            }
+
+            @Override
+            public IndexValue next()
+            {
+                indexValue.setIndex(idx[curPos]);
+                indexValue.setValue(vals[curPos++]);
+                return indexValue;
+            }
+        };
+    }
+}
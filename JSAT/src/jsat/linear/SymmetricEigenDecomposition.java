@@ -0,0 +1,865 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.io.Serializable;
+import static java.lang.Math.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import jsat.utils.IndexTable;
+import jsat.utils.random.RandomUtil;
+
+/**
+ * Computes the Eigen Value Decomposition of a symmetric matrix, A = V D
+ * V<sup>T</sup>, where V is orthogonal and D is diagonal. Only the lower
+ * triangle of the input is used. <br>
+ * <br>
+ * The matrix is first reduced to tridiagonal form with Householder
+ * reflections. The whole spectrum of the tridiagonal matrix is found with
+ * Cuppen's divide and conquer algorithm, whose merge steps are matrix products.
+ * When only a few of the largest eigenpairs are wanted, they are instead found
+ * with Sturm sequence bisection and inverse iteration, which costs time
+ * proportional to the number of eigenpairs. The eigenvectors of the tridiagonal
+ * matrix are then mapped back by applying the Householder reflections in
+ * blocks, which can be done in parallel. <br>
+ * <br>
+ * The eigenvalues are always sorted in ascending order.
+ *
+ * @author Edward Raff
+ */
+public class SymmetricEigenDecomposition implements Serializable
+{
+    private static final long serialVersionUID = 2867355719813024187L;
+    /**
+     * Tridiagonal problems of at most this size are solved directly by the QL
+     * algorithm instead of being split
+     */
+    private static final int SMALL = 32;
+    /**
+     * If no more than this fraction of the eigenpairs are requested, they are
+     * found by bisection and inverse iteration
+     */
+    private static final int FEW = 4;
+    private static final double EPS = ulp(1.0);
+
+    /**
+     * The eigenvalues, in ascending order
+     */
+    private double[] d;
+    /**
+     * The eigenvectors, one per column
+     */
+    private Matrix V;
+
+    /**
+     * Computes the full eigen decomposition of the symmetric matrix A. The
+     * input will not be altered.
+     *
+     * @param A the symmetric matrix to decompose
+     */
+    public SymmetricEigenDecomposition(Matrix A)
+    {
+        this(A, A.rows(), null);
+    }
+
+    /**
+     * Computes the full eigen decomposition of the symmetric matrix A. The
+     * input will not be altered.
+     *
+     * @param A the symmetric matrix to decompose
+     * @param threadPool the source of threads for the computation
+     */
+    public SymmetricEigenDecomposition(Matrix A, ExecutorService threadPool)
+    {
+        this(A, A.rows(), threadPool);
+    }
+
+    /**
+     * Computes the <tt>k</tt> largest eigenvalues of the symmetric matrix A,
+     * and their eigenvectors. The input will not be altered.
+     *
+     * @param A the symmetric matrix to decompose
+     * @param k the number of eigenpairs to compute
+     */
+    public SymmetricEigenDecomposition(Matrix A, int k)
+    {
+        this(A, k, null);
+    }
+
+    /**
+     * Computes the <tt>k</tt> largest eigenvalues of the symmetric matrix A,
+     * and their eigenvectors. The input will not be altered.
+     *
+     * @param A the symmetric matrix to decompose
+     * @param k the number of eigenpairs to compute
+     * @param threadPool the source of threads for the computation, or
+     * {@code null} to run in the calling thread
+     */
+    public SymmetricEigenDecomposition(Matrix A, int k, ExecutorService threadPool)
+    {
+        if(!A.isSquare())
+            throw new ArithmeticException("Matrix must be square, not " + A.rows() + " x " + A.cols());
+        final int n = A.rows();
+        if(k < 0 || k > n)
+            throw new IllegalArgumentException("Number of eigenpairs must be in [0, " + n + "], not " + k);
+
+        //row major copy of the lower triangle, the reflectors are left in it
+        FlatDenseMatrix W = new FlatDenseMatrix(n, n);
+        double[] a = W.getBackingArray();
+        for(int i = 0; i < n; i++)
+            for(int j = 0; j <= i; j++)
+                a[i*n+j] = A.get(i, j);
+
+        double[] diag = new double[n];
+        double[] off = new double[max(n-1, 0)];
+        double[] tau = new double[max(n-2, 0)];
+        tridiagonalize(a, n, diag, off, tau);
+
+        DenseMatrix Z = new DenseMatrix(n, k);
+        d = new double[k];
+        if(k == 0)
+        {
+            V = Z;
+            return;
+        }
+        if(k*FEW < n)
+            bisection(diag, off, k, d, Z);
+        else
+        {
+            double[] Q = divideAndConquer(diag, off, 0, n, threadPool);
+            for(int i = 0; i < n; i++)
+                System.arraycopy(Q, i*n+n-k, Z.matrix[i], 0, k);
+            System.arraycopy(diag, n-k, d, 0, k);
+        }
+
+        BlockedDecompositions.applyReflectors(W, tau, n-2, 1, Z, BlockedDecompositions.NB, threadPool);
+        V = Z;
+    }
+
+    /**
+     * Returns the eigenvalues in ascending order
+     *
+     * @return the eigenvalues
+     */
+    public double[] getEigenvalues()
+    {
+        return d;
+    }
+
+    /**
+     * Return a copy of the eigenvector matrix
+     *
+     * @return the eigen vector matrix
+     */
+    public Matrix getV()
+    {
+        return V.clone();
+    }
+
+    /**
+     * Returns the raw eigenvector matrix. Modifying this matrix will effect
+     * others using the same matrix.
+     *
+     * @return the eigen vector matrix
+     */
+    public Matrix getVRaw()
+    {
+        return V;
+    }
+
+    /**
+     * Reduces the symmetric matrix to tridiagonal form. Reflector i zeros
+     * column i below the sub diagonal, and is stored below the sub diagonal of
+     * that column.
+     *
+     * @param a the row major matrix, of which only the lower triangle is used
+     * @param n the size of the matrix
+     * @param diag the array to store the diagonal in
+     * @param off the array to store the sub diagonal in
+     * @param tau the array to store the scale of each reflector in
+     */
+    private static void tridiagonalize(double[] a, int n, double[] diag, double[] off, double[] tau)
+    {
+        double[] v = new double[n];
+        double[] p = new double[n];
+        for(int i = 0; i < n-2; i++)
+        {
+            final int o = i+1, m = n-o;
+            double alpha = a[o*n+i];
+            double xnorm2 = 0;
+            for(int r = o+1; r < n; r++)
+                xnorm2 += a[r*n+i]*a[r*n+i];
+            if(xnorm2 == 0)
+            {
+                tau[i] = 0;
+                off[i] = alpha;
+                continue;
+            }
+            double beta = -copySign(sqrt(alpha*alpha+xnorm2), alpha);
+            double t = (beta-alpha)/beta;
+            double scale = 1/(alpha-beta);
+            tau[i] = t;
+            off[i] = beta;
+            v[0] = 1;
+            for(int r = 1; r < m; r++)
+                v[r] = a[(o+r)*n+i] *= scale;
+
+            //p = tau A22 v, from the lower triangle only
+            Arrays.fill(p, 0, m, 0.0);
+            for(int r = 0; r < m; r++)
+            {
+                final int row = (o+r)*n+o;
+                final double vr = v[r];
+                double s = 0;
+                for(int c = 0; c < r; c++)
+                {
+                    s += a[row+c]*v[c];
+                    p[c] += a[row+c]*vr;
+                }
+                p[r] += s + a[row+r]*vr;
+            }
+            //w = p - tau/2 (p'v) v, stored in p
+            double pv = 0;
+            for(int r = 0; r < m; r++)
+                pv += (p[r] *= t)*v[r];
+            final double h = t*pv/2;
+            for(int r = 0; r < m; r++)
+                p[r] -= h*v[r];
+            //A22 = A22 - v w' - w v'
+            for(int r = 0; r < m; r++)
+            {
+                final int row = (o+r)*n+o;
+                final double vr = v[r], wr = p[r];
+                for(int c = 0; c <= r; c++)
+                    a[row+c] -= vr*p[c] + wr*v[c];
+            }
+        }
+        for(int i = 0; i < n; i++)
+            diag[i] = a[i*n+i];
+        if(n > 1)
+            off[n-2] = a[(n-1)*n+n-2];
+    }
+
+    /**
+     * Solves the tridiagonal eigen problem on the range [lo, hi) by divide and
+     * conquer.
+     *
+     * @param d the diagonal, which will hold the eigenvalues of the range in
+     * ascending order when done
+     * @param e the sub diagonal, where e[i] couples i and i+1
+     * @param lo the first index of the problem
+     * @param hi the end of the problem (exclusive)
+     * @param threadPool the source of threads for the matrix products
+     * @return the row major eigenvector matrix of the range
+     */
+    private static double[] divideAndConquer(double[] d, double[] e, int lo, int hi, ExecutorService threadPool)
+    {
+        final int m = hi-lo;
+        if(m <= SMALL)
+            return ql(d, e, lo, hi);
+
+        //T = diag(T1, T2) + |rho| w w', w = [last of 1st; sign(rho) first of 2nd]
+        final int mid = lo+m/2, m1 = mid-lo;
+        final double rho = e[mid-1];
+        d[mid-1] -= abs(rho);
+        d[mid] -= abs(rho);
+        double[] Q1 = divideAndConquer(d, e, lo, mid, threadPool);
+        double[] Q2 = divideAndConquer(d, e, mid, hi, threadPool);
+
+        double[] Q = new double[m*m];
+        double[] z = new double[m];
+        for(int i = 0; i < m1; i++)
+            System.arraycopy(Q1, i*m1, Q, i*m, m1);
+        for(int i = 0; i < m-m1; i++)
+            System.arraycopy(Q2, i*(m-m1), Q, (m1+i)*m+m1, m-m1);
+        System.arraycopy(Q1, (m1-1)*m1, z, 0, m1);
+        for(int j = 0; j < m-m1; j++)
+            z[m1+j] = rho < 0 ? -Q2[j] : Q2[j];
+        Q1 = Q2 = null;
+
+        merge(d, lo, abs(rho), z, Q, m, threadPool);
+        return Q;
+    }
+
+    /**
+     * Finds the eigen decomposition of diag(D) + rho z z<sup>T</sup> and
+     * multiplies its eigenvectors into Q.
+     *
+     * @param d holds D in [lo, lo+m), and will hold the eigenvalues in
+     * ascending order when done
+     * @param lo the offset of D in d
+     * @param rho the non-negative weight of the update
+     * @param z the update vector, will be altered
+     * @param Q the m x m row major matrix to update
+     * @param m the size of the problem
+     * @param threadPool the source of threads for the matrix product
+     */
+    private static void merge(double[] d, int lo, double rho, double[] z, double[] Q, int m, ExecutorService threadPool)
+    {
+        double[] D = Arrays.copyOfRange(d, lo, lo+m);
+        double zn2 = 0;
+        for(double zi : z)
+            zn2 += zi*zi;
+        final double r = rho*zn2;
+        final double zScale = 1/sqrt(zn2);
+        double dMax = 0;
+        for(int i = 0; i < m; i++)
+        {
+            z[i] *= zScale;
+            dMax = max(dMax, abs(D[i]));
+        }
+        final double tol = 8*EPS*max(dMax, r);
+
+        //deflate small entries of z and nearly equal values of D
+        IndexTable it = new IndexTable(D);
+        int[] kept = new int[m], order = new int[m];
+        int K = 0, deflated = m;
+        int prev = -1;
+        for(int pos = 0; pos < m; pos++)
+        {
+            final int idx = it.index(pos);
+            if(r*abs(z[idx]) <= tol)
+            {
+                order[--deflated] = idx;
+                continue;
+            }
+            if(prev >= 0)
+            {
+                double t = hypot(z[prev], z[idx]);
+                double c = z[idx]/t, s = z[prev]/t;
+                if(abs((D[idx]-D[prev])*c*s) <= tol)
+                {
+                    //rotate the weight of prev onto idx, leaving prev an eigenpair
+                    for(int i = 0; i < m; i++)
+                    {
+                        final double qa = Q[i*m+prev], qb = Q[i*m+idx];
+                        Q[i*m+prev] = c*qa - s*qb;
+                        Q[i*m+idx] = s*qa + c*qb;
+                    }
+                    z[prev] = 0;
+                    z[idx] = t;
+                    final double dp = D[prev], di = D[idx];
+                    D[prev] = c*c*dp + s*s*di;
+                    D[idx] = s*s*dp + c*c*di;
+                    order[--deflated] = prev;
+                }
+                else
+                    kept[K++] = prev;
+            }
+            prev = idx;
+        }
+        if(prev >= 0)
+            kept[K++] = prev;
+        System.arraycopy(kept, 0, order, 0, K);
+
+        double[] vals = new double[m];
+        for(int c = K; c < m; c++)
+            vals[c] = D[order[c]];
+        permuteColumns(Q, m, m, order);
+
+        if(K > 0)
+        {
+            double[] dK = new double[K], zK = new double[K];
+            for(int i = 0; i < K; i++)
+            {
+                dK[i] = D[kept[i]];
+                zK[i] = z[kept[i]];
+            }
+            double[] U = new double[K*K];
+            secular(dK, zK, r, K, vals, U);
+
+            //eigenvectors of the nondeflated part, Q[:, 0:K] U
+            FlatDenseMatrix R = new FlatDenseMatrix(m, K);
+            GEMM.gemm(GEMM.operand(new FlatDenseMatrix(Q, 0, m, K, m, true), false),
+                    GEMM.operand(FlatDenseMatrix.wrap(U, K, K, true), false),
+                    GEMM.operand(R, false), m, K, K, threadPool);
+            double[] r_ = R.getBackingArray();
+            for(int i = 0; i < m; i++)
+                System.arraycopy(r_, i*K, Q, i*m, K);
+        }
+
+        IndexTable sorted = new IndexTable(vals);
+        int[] byValue = new int[m];
+        for(int c = 0; c < m; c++)
+        {
+            byValue[c] = sorted.index(c);
+            d[lo+c] = vals[byValue[c]];
+        }
+        permuteColumns(Q, m, m, byValue);
+    }
+
+    /**
+     * Solves the secular equation 1 + rho sum z<sub>i</sub><sup>2</sup> /
+     * (d<sub>i</sub> - &lambda;) = 0 for its K roots, and forms the
+     * eigenvectors of diag(d) + rho z z<sup>T</sup>. The z used for the
+     * eigenvectors is recomputed from the roots, so that they are orthogonal
+     * even when the roots are not computed exactly.
+     *
+     * @param d the strictly increasing poles
+     * @param z the weights, all non-zero
+     * @param rho the non-negative weight of the update, with z of unit norm
+     * @param K the number of poles
+     * @param lambda the array to store the roots in
+     * @param U the K x K row major array to store the eigenvectors in
+     */
+    private static void secular(double[] d, double[] z, double rho, int K, double[] lambda, double[] U)
+    {
+        double zz = 0;
+        for(int i = 0; i < K; i++)
+            zz += z[i]*z[i];
+        final double[] w = new double[K];
+        for(int i = 0; i < K; i++)
+            w[i] = rho*z[i]*z[i];
+
+        double[] dd = new double[K];
+        for(int j = 0; j < K; j++)
+        {
+            //work relative to the nearer pole, so that the distance to it is exact
+            int origin = j;
+            double lo, hi;
+            if(j < K-1)
+            {
+                final double mid = (d[j+1]-d[j])/2;
+                double f = 1;
+                for(int i = 0; i < K; i++)
+                    f += w[i]/((d[i]-d[j])-mid);
+                if(f >= 0)
+                {
+                    lo = 0;
+                    hi = mid;
+                }
+                else
+                {
+                    origin = j+1;
+                    lo = -mid;
+                    hi = 0;
+                }
+            }
+            else
+            {
+                lo = 0;
+                hi = rho*zz;
+            }
+            for(int i = 0; i < K; i++)
+                dd[i] = d[i]-d[origin];
+
+            double tau = (lo+hi)/2;
+            for(int iter = 0; iter < 100 && K > 1; iter++)
+            {
+                double psi = 0, dpsi = 0, phi = 0, dphi = 0;
+                for(int i = 0; i <= j; i++)
+                {
+                    final double q = w[i]/(dd[i]-tau);
+                    psi += q;
+                    dpsi += q/(dd[i]-tau);
+                }
+                for(int i = j+1; i < K; i++)
+                {
+                    final double q = w[i]/(dd[i]-tau);
+                    phi += q;
+                    dphi += q/(dd[i]-tau);
+                }
+                final double f = 1+psi+phi;
+                if(abs(f) <= EPS*(8*(phi-psi)+2+3*abs(tau)*(dpsi+dphi)))
+                    break;
+                if(f < 0)
+                    lo = tau;
+                else
+                    hi = tau;
+                if(hi-lo <= 2*EPS*max(abs(lo), abs(hi)))
+                    break;
+
+                //root of a model keeping the two poles around the root
+                final double dj = dd[j]-tau;
+                final double s1 = dj*dj*dpsi;
+                double eta;
+                if(j < K-1)
+                {
+                    final double dk = dd[j+1]-tau;
+                    final double s2 = dk*dk*dphi;
+                    final double c = f-s1/dj-s2/dk;
+                    final double b = c*(dj+dk)+s1+s2;
+                    final double cc = c*dj*dk+s1*dk+s2*dj;
+                    if(c == 0)
+                        eta = cc/b;
+                    else
+                    {
+                        final double sq = sqrt(max(0, b*b-4*c*cc));
+                        final double den = b >= 0 ? b+sq : b-sq;
+                        eta = (2*cc)/den;
+                        if(!(eta > dj && eta < dk))
+                            eta = den/(2*c);
+                    }
+                }
+                else
+                {
+                    final double c = f-s1/dj;
+                    eta = c > 0 ? dj+s1/c : Double.NaN;
+                }
+                double next = tau+eta;
+                if(!(next > lo && next < hi))
+                    next = (lo+hi)/2;
+                if(next == tau)
+                    break;
+                tau = next;
+            }
+            lambda[j] = d[origin]+tau;
+            for(int i = 0; i < K; i++)
+                U[i*K+j] = dd[i]-tau;
+        }
+
+        //Lowner's theorem gives the z for which the roots are exact
+        double[] zt = new double[K];
+        for(int i = 0; i < K; i++)
+        {
+            double prod = -U[i*K+i]/rho;
+            for(int j = 0; j < K; j++)
+                if(j != i)
+                    prod *= -U[i*K+j]/(d[j]-d[i]);
+            zt[i] = copySign(sqrt(abs(prod)), z[i]);
+        }
+        for(int j = 0; j < K; j++)
+        {
+            double norm = 0;
+            for(int i = 0; i < K; i++)
+            {
+                final double u = zt[i]/U[i*K+j];
+                U[i*K+j] = u;
+                norm += u*u;
+            }
+            norm = 1/sqrt(norm);
+            for(int i = 0; i < K; i++)
+                U[i*K+j] *= norm;
+        }
+    }
+
+    /**
+     * Symmetric tridiagonal QL algorithm on the range [lo, hi), derived from
+     * the Algol procedure tql2 by Bowdler, Martin, Reinsch, and Wilkinson.
+     *
+     * @param d the diagonal, which will hold the eigenvalues of the range in
+     * ascending order when done
+     * @param e the sub diagonal, where e[i] couples i and i+1
+     * @param lo the first index of the problem
+     * @param hi the end of the problem (exclusive)
+     * @return the row major eigenvector matrix of the range
+     */
+    private static double[] ql(double[] dIn, double[] eIn, int lo, int hi)
+    {
+        final int n = hi-lo;
+        double[] d = Arrays.copyOfRange(dIn, lo, hi);
+        double[] e = new double[n];
+        System.arraycopy(eIn, lo, e, 0, n-1);
+        double[] V = new double[n*n];
+        for(int i = 0; i < n; i++)
+            V[i*n+i] = 1;
+
+        double f = 0.0;
+        double tst1 = 0.0;
+        for (int l = 0; l < n; l++)
+        {
+            // Find small subdiagonal element
+            tst1 = max(tst1, abs(d[l]) + abs(e[l]));
+            int m = l;
+            while (m < n && abs(e[m]) > EPS * tst1)
+                m++;
+
+            // If m == l, d[l] is an eigenvalue, otherwise, iterate.
+            while (m > l && abs(e[l]) > EPS * tst1)
+            {
+                // Compute implicit shift
+                double g = d[l];
+                double p = (d[l + 1] - g) / (2.0 * e[l]);
+                double r = hypot(p, 1.0);
+                if (p < 0)
+                    r = -r;
+                d[l] = e[l] / (p + r);
+                d[l + 1] = e[l] * (p + r);
+                double dl1 = d[l + 1];
+                double h = g - d[l];
+                for (int i = l + 2; i < n; i++)
+                    d[i] -= h;
+                f = f + h;
+
+                // Implicit QL transformation.
+                p = d[m];
+                double c = 1.0;
+                double c2 = c;
+                double c3 = c;
+                double el1 = e[l + 1];
+                double s = 0.0;
+                double s2 = 0.0;
+                for (int i = m - 1; i >= l; i--)
+                {
+                    c3 = c2;
+                    c2 = c;
+                    s2 = s;
+                    g = c * e[i];
+                    h = c * p;
+                    r = hypot(p, e[i]);
+                    e[i + 1] = s * r;
+                    s = e[i] / r;
+                    c = p / r;
+                    p = c * d[i] - s * g;
+                    d[i + 1] = h + s * (c * g + s * d[i]);
+
+                    // Accumulate transformation.
+                    for (int k = 0; k < n; k++)
+                    {
+                        final double z = V[k*n+i+1];
+                        V[k*n+i+1] = c * z + s * V[k*n+i];
+                        V[k*n+i] = c * V[k*n+i] - s * z;
+                    }
+                }
+                p = -s * s2 * c3 * el1 * e[l] / dl1;
+                e[l] = s * p;
+                d[l] = c * p;
+            }
+            d[l] = d[l] + f;
+            e[l] = 0.0;
+        }
+
+        IndexTable it = new IndexTable(d);
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++)
+        {
+            order[i] = it.index(i);
+            dIn[lo+i] = d[order[i]];
+        }
+        permuteColumns(V, n, n, order);
+        return V;
+    }
+
+    /**
+     * Finds the k largest eigenvalues of the tridiagonal matrix by Sturm
+     * sequence bisection, and their eigenvectors by inverse iteration.
+     *
+     * @param d the diagonal
+     * @param e the sub diagonal, where e[i] couples i and i+1
+     * @param k the number of eigenpairs to find
+     * @param lambda the array to store the eigenvalues in, ascending
+     * @param Z the n x k matrix to store the eigenvectors in
+     */
+    private static void bisection(double[] d, double[] e, int k, double[] lambda, DenseMatrix Z)
+    {
+        final int n = d.length;
+        double gl = Double.POSITIVE_INFINITY, gu = Double.NEGATIVE_INFINITY, norm = 0;
+        double pivmin = Double.MIN_NORMAL;
+        for(int i = 0; i < n; i++)
+        {
+            final double radius = (i > 0 ? abs(e[i-1]) : 0) + (i < n-1 ? abs(e[i]) : 0);
+            gl = min(gl, d[i]-radius);
+            gu = max(gu, d[i]+radius);
+            norm = max(norm, abs(d[i])+radius);
+            if(i < n-1)
+                pivmin = max(pivmin, e[i]*e[i]*Double.MIN_NORMAL);
+        }
+        norm = max(norm, Double.MIN_NORMAL);
+        gl -= 2*EPS*norm*n;
+        gu += 2*EPS*norm*n;
+
+        //eigenvalue index t (ascending) has exactly t eigenvalues below it
+        for(int j = 0; j < k; j++)
+        {
+            final int t = n-k+j;
+            double lo = j > 0 ? lambda[j-1]-2*EPS*norm : gl, hi = gu;
+            while(hi-lo > 2*EPS*max(abs(lo), abs(hi))+pivmin)
+            {
+                final double mid = (lo+hi)/2;
+                if(mid == lo || mid == hi)
+                    break;
+                if(sturmCount(d, e, mid, pivmin) > t)
+                    hi = mid;
+                else
+                    lo = mid;
+            }
+            lambda[j] = (lo+hi)/2;
+        }
+
+        Random rand = RandomUtil.getRandom();
+        final double sep = 1e-3*norm;
+        final double[] x = new double[n];
+        int clusterStart = 0;
+        double shifted = Double.NEGATIVE_INFINITY;
+        for(int j = 0; j < k; j++)
+        {
+            if(j > 0 && lambda[j]-lambda[j-1] > sep)
+                clusterStart = j;
+            //keep shifts of (nearly) equal eigenvalues apart
+            double shift = max(lambda[j], shifted+10*EPS*norm);
+            if(j == clusterStart)
+                shift = lambda[j];
+            shifted = shift;
+            TridiagonalLU lu = new TridiagonalLU(d, e, shift, EPS*norm);
+
+            for(int i = 0; i < n; i++)
+                x[i] = rand.nextDouble()-0.5;
+            for(int iter = 0; iter < 8; iter++)
+            {
+                normalize(x);
+                lu.solve(x);
+                //remove the parts of vectors already found in this cluster
+                for(int c = clusterStart; c < j; c++)
+                {
+                    double dot = 0;
+                    for(int i = 0; i < n; i++)
+                        dot += x[i]*Z.matrix[i][c];
+                    for(int i = 0; i < n; i++)
+                        x[i] -= dot*Z.matrix[i][c];
+                }
+                final double growth = normalize(x);
+                if(iter >= 1 && growth*EPS*norm*n >= 0.1)
+                    break;
+            }
+            for(int i = 0; i < n; i++)
+                Z.matrix[i][j] = x[i];
+        }
+    }
+
+    /**
+     * Scales x to unit length
+     *
+     * @return the length x had
+     */
+    private static double normalize(double[] x)
+    {
+        double norm = 0;
+        for(double xi : x)
+            norm += xi*xi;
+        norm = sqrt(norm);
+        if(norm == 0)
+        {
+            x[0] = 1;
+            return 0;
+        }
+        for(int i = 0; i < x.length; i++)
+            x[i] /= norm;
+        return norm;
+    }
+
+    /**
+     * Counts the eigenvalues of the tridiagonal matrix that are less than x
+     */
+    private static int sturmCount(double[] d, double[] e, double x, double pivmin)
+    {
+        int count = 0;
+        double q = 1;
+        for(int i = 0; i < d.length; i++)
+        {
+            q = d[i]-x-(i > 0 ? e[i-1]*e[i-1]/q : 0);
+            if(abs(q) < pivmin)
+                q = -pivmin;
+            if(q < 0)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * LU factorization with partial pivoting of T - &lambda; I, where T is
+     * tridiagonal. Zero pivots are replaced by a small value, so that the
+     * solves of inverse iteration never fail.
+     */
+    private static class TridiagonalLU
+    {
+        final double[] u1, u2, u3, l;
+        final boolean[] swap;
+
+        public TridiagonalLU(double[] d, double[] e, double lambda, double tiny)
+        {
+            final int n = d.length;
+            u1 = new double[n];
+            u2 = new double[n];
+            u3 = new double[n];
+            l = new double[n];
+            swap = new boolean[n];
+            //the row not yet used as a pivot has entries p, q in columns i, i+1
+            double p = d[0]-lambda, q = n > 1 ? e[0] : 0;
+            for(int i = 0; i < n-1; i++)
+            {
+                final double c = e[i], a = d[i+1]-lambda;
+                final double b = i+1 < n-1 ? e[i+1] : 0;
+                if(abs(c) > abs(p))
+                {
+                    swap[i] = true;
+                    final double mult = p/c;
+                    u1[i] = c;
+                    u2[i] = a;
+                    u3[i] = b;
+                    l[i] = mult;
+                    p = q-mult*a;
+                    q = -mult*b;
+                }
+                else
+                {
+                    if(p == 0)
+                        p = tiny;
+                    final double mult = c/p;
+                    u1[i] = p;
+                    u2[i] = q;
+                    l[i] = mult;
+                    p = a-mult*q;
+                    q = b;
+                }
+            }
+            u1[n-1] = p == 0 ? tiny : p;
+        }
+
+        /**
+         * Overwrites x with the solution of (T - &lambda; I) y = x
+         */
+        public void solve(double[] x)
+        {
+            final int n = x.length;
+            for(int i = 0; i < n-1; i++)
+            {
+                if(swap[i])
+                {
+                    final double tmp = x[i];
+                    x[i] = x[i+1];
+                    x[i+1] = tmp;
+                }
+                x[i+1] -= l[i]*x[i];
+            }
+            for(int i = n-1; i >= 0; i--)
+            {
+                double s = x[i];
+                if(i+1 < n)
+                    s -= u2[i]*x[i+1];
+                if(i+2 < n)
+                    s -= u3[i]*x[i+2];
+                x[i] = s/u1[i];
+            }
+        }
+    }
+
+    /**
+     * Reorders the columns of a row major matrix, so that new column c is old
+     * column order[c]
+     */
+    private static void permuteColumns(double[] Q, int rows, int cols, int[] order)
+    {
+        double[] tmp = new double[cols];
+        for(int i = 0; i < rows; i++)
+        {
+            System.arraycopy(Q, i*cols, tmp, 0, cols);
+            for(int c = 0; c < cols; c++)
+                Q[i*cols+c] = tmp[order[c]];
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Arrays;
+
+/**
+ * Array kernels for the dot products and distances of {@link DenseVector} and
+ * {@link SparseVector}. The dense loops are unrolled with four independent
+ * accumulators, so that successive multiply-adds do not wait on each other and
+ * the JIT is free to overlap them. Sparse-sparse products normally merge the
+ * two index lists, but when one list is much shorter than the other each of its
+ * indices is instead found in the longer list by a galloping search, which
+ * costs O(m log(n/m)) rather than O(n+m). Distances still visit every entry 
+ * of both lists, so there the search is only used to find the shared indices,
+ * and the entries of the longer list between them are summed as a block. <br>
+ * <br>
+ * Dense arrays are given with an offset and a length, so that views of a
+ * larger array can be used directly. Sparse arrays are given as sorted
+ * indices, values, and the number of used entries.
+ *
+ * @author Edward Raff
+ */
+final class VecKernels
+{
+    /**
+     * The longer sparse list must have at least this many times the entries of
+     * the shorter before galloping is used instead of a merge
+     */
+    static final int GALLOP_RATIO = 16;
+
+    private VecKernels()
+    {
+    }
+
+    /**
+     * @return the dot product of two dense arrays
+     */
+    static double dot(double[] a, int aOff, double[] b, int bOff, int len)
+    {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for(; i <= len-4; i += 4)
+        {
+            s0 += a[aOff+i]*b[bOff+i];
+            s1 += a[aOff+i+1]*b[bOff+i+1];
+            s2 += a[aOff+i+2]*b[bOff+i+2];
+            s3 += a[aOff+i+3]*b[bOff+i+3];
+        }
+        for(; i < len; i++)
+            s0 += a[aOff+i]*b[bOff+i];
+        return (s0+s1)+(s2+s3);
+    }
+
+    /**
+     * @return the dot product of a dense array and a sparse one
+     */
+    static double dot(double[] a, int aOff, int[] idx, double[] val, int used)
+    {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int k = 0;
+        for(; k <= used-4; k += 4)
+        {
+            s0 += a[aOff+idx[k]]*val[k];
+            s1 += a[aOff+idx[k+1]]*val[k+1];
+            s2 += a[aOff+idx[k+2]]*val[k+2];
+            s3 += a[aOff+idx[k+3]]*val[k+3];
+        }
+        for(; k < used; k++)
+            s0 += a[aOff+idx[k]]*val[k];
+        return (s0+s1)+(s2+s3);
+    }
+
+    /**
+     * @return the dot product of two sparse arrays
+     */
+    static double dot(int[] aIdx, double[] aVal, int aUsed, int[] bIdx, double[] bVal, int bUsed)
+    {
+        if(aUsed > bUsed)
+            return dot(bIdx, bVal, bUsed, aIdx, aVal, aUsed);
+        if(aUsed == 0)
+            return 0;
+        double dot = 0;
+        if(bUsed/aUsed >= GALLOP_RATIO)
+        {
+            int p2 = 0;
+            for(int p1 = 0; p1 < aUsed && p2 < bUsed; p1++)
+            {
+                p2 = gallop(bIdx, p2, bUsed, aIdx[p1]);
+                if(p2 < bUsed && bIdx[p2] == aIdx[p1])
+                    dot += aVal[p1]*bVal[p2++];
+            }
+            return dot;
+        }
+        int p1 = 0, p2 = 0;
+        while(p1 < aUsed && p2 < bUsed)
+        {
+            final int a1 = aIdx[p1], a2 = bIdx[p2];
+            if(a1 == a2)
+                dot += aVal[p1++]*bVal[p2++];
+            else if(a1 > a2)
+                p2++;
+            else
+                p1++;
+        }
+        return dot;
+    }
+
+    /**
+     * Finds the first position in the sorted range [from, to) whose value is
+     * at least key, by doubling the step from {@code from} until it is passed
+     * and then binary searching the last step.
+     *
+     * @return the position found, or {@code to} if every value is smaller
+     */
+    static int gallop(int[] idx, int from, int to, int key)
+    {
+        int bound = 1;
+        while(from+bound < to && idx[from+bound] < key)
+            bound <<= 1;
+        int pos = Arrays.binarySearch(idx, from+(bound >> 1), Math.min(from+bound+1, to), key);
+        return pos >= 0 ? pos : -(pos+1);
+    }
+
+    /**
+     * @return the sum of squares of a dense array
+     */
+    static double sumSqrd(double[] a, int aOff, int len)
+    {
+        return dot(a, aOff, a, aOff, len);
+    }
+
+    /**
+     * @return the sum of absolute values of a dense array
+     */
+    static double sumAbs(double[] a, int aOff, int len)
+    {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for(; i <= len-4; i += 4)
+        {
+            s0 += Math.abs(a[aOff+i]);
+            s1 += Math.abs(a[aOff+i+1]);
+            s2 += Math.abs(a[aOff+i+2]);
+            s3 += Math.abs(a[aOff+i+3]);
+        }
+        for(; i < len; i++)
+            s0 += Math.abs(a[aOff+i]);
+        return (s0+s1)+(s2+s3);
+    }
+
+    /**
+     * @return the squared Euclidean distance between two dense arrays
+     */
+    static double distSqrd(double[] a, int aOff, double[] b, int bOff, int len)
+    {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for(; i <= len-4; i += 4)
+        {
+            final double d0 = a[aOff+i]-b[bOff+i];
+            final double d1 = a[aOff+i+1]-b[bOff+i+1];
+            final double d2 = a[aOff+i+2]-b[bOff+i+2];
+            final double d3 = a[aOff+i+3]-b[bOff+i+3];
+            s0 += d0*d0;
+            s1 += d1*d1;
+            s2 += d2*d2;
+            s3 += d3*d3;
+        }
+        for(; i < len; i++)
+        {
+            final double d = a[aOff+i]-b[bOff+i];
+            s0 += d*d;
+        }
+        return (s0+s1)+(s2+s3);
+    }
+
+    /**
+     * @return the L1 distance between two dense arrays
+     */
+    static double distL1(double[] a, int aOff, double[] b, int bOff, int len)
+    {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for(; i <= len-4; i += 4)
+        {
+            s0 += Math.abs(a[aOff+i]-b[bOff+i]);
+            s1 += Math.abs(a[aOff+i+1]-b[bOff+i+1]);
+            s2 += Math.abs(a[aOff+i+2]-b[bOff+i+2]);
+            s3 += Math.abs(a[aOff+i+3]-b[bOff+i+3]);
+        }
+        for(; i < len; i++)
+            s0 += Math.abs(a[aOff+i]-b[bOff+i]);
+        return (s0+s1)+(s2+s3);
+    }
+
+    /**
+     * @return the squared Euclidean distance between a dense array of the
+     * given length and a sparse one
+     */
+    static double distSqrd(double[] a, int aOff, int len, int[] idx, double[] val, int used)
+    {
+        double sum = 0;
+        int prev = 0;
+        for(int k = 0; k < used; k++)
+        {
+            final int j = idx[k];
+            sum += sumSqrd(a, aOff+prev, j-prev);
+            final double d = a[aOff+j]-val[k];
+            sum += d*d;
+            prev = j+1;
+        }
+        return sum + sumSqrd(a, aOff+prev, len-prev);
+    }
+
+    /**
+     * @return the L1 distance between a dense array of the given length and a
+     * sparse one
+     */
+    static double distL1(double[] a, int aOff, int len, int[] idx, double[] val, int used)
+    {
+        double sum = 0;
+        int prev = 0;
+        for(int k = 0; k < used; k++)
+        {
+            final int j = idx[k];
+            sum += sumAbs(a, aOff+prev, j-prev);
+            sum += Math.abs(a[aOff+j]-val[k]);
+            prev = j+1;
+        }
+        return sum + sumAbs(a, aOff+prev, len-prev);
+    }
+
+    /**
+     * @return the squared Euclidean distance between two sparse arrays
+     */
+    static double distSqrd(int[] aIdx, double[] aVal, int aUsed, int[] bIdx, double[] bVal, int bUsed)
+    {
+        if(aUsed > bUsed)
+            return distSqrd(bIdx, bVal, bUsed, aIdx, aVal, aUsed);
+        if(aUsed > 0 && bUsed/aUsed >= GALLOP_RATIO)
+        {
+            /*
+             * find each index of a in b, and add the run of b before it as a
+             * block. Every difference is computed directly, as expanding to
+             * ||a||^2 + ||b||^2 - 2 a.b would cancel when the shared values 
+             * are large and close together
+             */
+            double sum = 0;
+            int p2 = 0;
+            for(int p1 = 0; p1 < aUsed; p1++)
+            {
+                final int next = gallop(bIdx, p2, bUsed, aIdx[p1]);
+                sum += sumSqrd(bVal, p2, next-p2);
+                p2 = next;
+                final double d;
+                if(p2 < bUsed && bIdx[p2] == aIdx[p1])
+                    d = aVal[p1]-bVal[p2++];
+                else
+                    d = aVal[p1];
+                sum += d*d;
+            }
+            return sum + sumSqrd(bVal, p2, bUsed-p2);
+        }
+        double sum = 0;
+        int p1 = 0, p2 = 0;
+        while(p1 < aUsed && p2 < bUsed)
+        {
+            final int a1 = aIdx[p1], a2 = bIdx[p2];
+            final double d;
+            if(a1 == a2)
+                d = aVal[p1++]-bVal[p2++];
+            else if(a1 > a2)
+                d = bVal[p2++];
+            else
+                d = aVal[p1++];
+            sum += d*d;
+        }
+        return sum + sumSqrd(aVal, p1, aUsed-p1) + sumSqrd(bVal, p2, bUsed-p2);
+    }
+
+    /**
+     * @return the L1 distance between two sparse arrays
+     */
+    static double distL1(int[] aIdx, double[] aVal, int aUsed, int[] bIdx, double[] bVal, int bUsed)
+    {
+        if(aUsed > bUsed)
+            return distL1(bIdx, bVal, bUsed, aIdx, aVal, aUsed);
+        if(aUsed > 0 && bUsed/aUsed >= GALLOP_RATIO)
+        {
+            //same as distSqrd, each difference is computed directly
+            double sum = 0;
+            int p2 = 0;
+            for(int p1 = 0; p1 < aUsed; p1++)
+            {
+                final int next = gallop(bIdx, p2, bUsed, aIdx[p1]);
+                sum += sumAbs(bVal, p2, next-p2);
+                p2 = next;
+                if(p2 < bUsed && bIdx[p2] == aIdx[p1])
+                    sum += Math.abs(aVal[p1]-bVal[p2++]);
+                else
+                    sum += Math.abs(aVal[p1]);
+            }
+            return sum + sumAbs(bVal, p2, bUsed-p2);
+        }
+        double sum = 0;
+        int p1 = 0, p2 = 0;
+        while(p1 < aUsed && p2 < bUsed)
+        {
+            final int a1 = aIdx[p1], a2 = bIdx[p2];
+            if(a1 == a2)
+                sum += Math.abs(aVal[p1++]-bVal[p2++]);
+            else if(a1 > a2)
+                sum += Math.abs(bVal[p2++]);
+            else
+                sum += Math.abs(aVal[p1++]);
+        }
+        return sum + sumAbs(aVal, p1, aUsed-p1) + sumAbs(bVal, p2, bUsed-p2);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.distancemetrics;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.ToDoubleFunction;
+import jsat.linear.DenseMatrix;
+import jsat.linear.FlatDenseMatrix;
+import jsat.linear.Matrix;
+import jsat.linear.Vec;
+import jsat.utils.DoubleList;
+import jsat.utils.FakeExecutor;
+import jsat.utils.concurrent.ParallelUtils;
+
+/**
+ * Helpers for the batch distance computation of
+ * {@link DistanceMetric#dist(java.util.List, java.util.List, java.util.List, java.util.List, jsat.linear.Matrix, boolean) }
+ * by metrics that only depend on the norms and inner products of their
+ * inputs. The inner products of two blocks of dense vectors are computed as
+ * one matrix product, after which each metric only needs an O(1) correction
+ * per pair.
+ *
+ * @author Edward Raff
+ */
+final class BatchDistance
+{
+    /**
+     * Below this dimension, the cost of packing the vectors for the matrix
+     * product is more than the product itself saves
+     */
+    static final int MIN_DIMENSION = 16;
+
+    private BatchDistance()
+    {
+    }
+
+    /**
+     * Computes <i>D = A B<sup>T</sup></i>, where the rows of A and B are the
+     * given vectors.
+     *
+     * @return {@code true} if D now holds the inner products, or
+     * {@code false} if either block has sparse vectors or the dimension is
+     * small, in which case D is unchanged and the caller should compute the
+     * distances one pair at a time
+     */
+    static boolean innerProducts(List<? extends Vec> A, List<? extends Vec> B, Matrix D, boolean parallel)
+    {
+        final int m = A.size(), n = B.size();
+        if(D.rows() != m || D.cols() != n)
+            throw new ArithmeticException("Distance matrix is " + D.rows() + " x " + D.cols() + ", expected " + m + " x " + n);
+        if(m == 0 || n == 0)
+            return true;
+        if(A.get(0).length() < MIN_DIMENSION)
+            return false;
+        for(Vec v : A)
+            if(v.isSparse())
+                return false;
+        for(Vec v : B)
+            if(v.isSparse())
+                return false;
+
+        Matrix a = pack(A), b = pack(B);
+        Matrix C = D instanceof DenseMatrix || D instanceof FlatDenseMatrix ? D : new DenseMatrix(m, n);
+        C.zeroOut();
+        ExecutorService ex = parallel ? ParallelUtils.CACHED_THREAD_POOL : new FakeExecutor();
+        a.multiplyTranspose(b, C, ex);
+        if(C != D)
+            C.copyTo(D);
+        return true;
+    }
+
+    private static Matrix pack(List<? extends Vec> vecs)
+    {
+        DenseMatrix M = new DenseMatrix(vecs.size(), vecs.get(0).length());
+        for(int i = 0; i < vecs.size(); i++)
+            vecs.get(i).copyTo(M.getRowView(i));
+        return M;
+    }
+
+    /**
+     * Reads one value per vector from an acceleration cache, or computes it
+     * when there is no cache
+     *
+     * @param vecs the vectors
+     * @param cache the acceleration cache holding one value per vector, or
+     * {@code null}
+     * @param f the function the cache holds the value of
+     * @return the value for each vector
+     */
+    static double[] cached(List<? extends Vec> vecs, List<Double> cache, ToDoubleFunction<Vec> f)
+    {
+        double[] vals = new double[vecs.size()];
+        for(int i = 0; i < vals.length; i++)
+            vals[i] = cache != null ? DoubleList.getD(cache, i) : f.applyAsDouble(vecs.get(i));
+        return vals;
+    }
+}
@@ -6,6 +6,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jsat.linear.Matrix;
 import jsat.linear.Vec;
 import jsat.utils.DoubleList;
 import jsat.utils.FakeExecutor;
@@ -107,7 +108,7 @@ public class CosineDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), vecs.get(b));
         
-        double denom = cache.get(a)*cache.get(b);
+        double denom = DoubleList.getD(cache, a)*DoubleList.getD(cache, b);
         if(denom == 0)
             return cosineToDistance(-1);
         return cosineToDistance(Math.min(vecs.get(a).dot(vecs.get(b)) / denom, 1));
@@ -119,7 +120,7 @@ public class CosineDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        double denom = cache.get(a)*b.pNorm(2);
+        double denom = DoubleList.getD(cache, a)*b.pNorm(2);
         if(denom == 0)
             return cosineToDistance(-1);
         return cosineToDistance(Math.min(vecs.get(a).dot(b) / denom, 1));
@@ -139,7 +140,7 @@ public class CosineDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        double denom = cache.get(a)*qi.get(0);
+        double denom = DoubleList.getD(cache, a)*DoubleList.getD(qi, 0);
         if(denom == 0)
             return cosineToDistance(-1);
         return cosineToDistance(Math.min(vecs.get(a).dot(b) / denom, 1));
@@ -166,5 +167,25 @@ public class CosineDistance implements DistanceMetric
     {
         return 1-2*(dist*dist);
     }
-    
+
+    @Override
+    public void dist(List<? extends Vec> queries, List<Double> queryCache, List<? extends Vec> vecs, List<Double> cache, Matrix D, boolean parallel)
+    {
+        if(!BatchDistance.innerProducts(queries, vecs, D, parallel))
+        {
+            DistanceMetric.super.dist(queries, queryCache, vecs, cache, D, parallel);
+            return;
+        }
+        double[] q_norm = BatchDistance.cached(queries, queryCache, v -> v.pNorm(2));
+        double[] v_norm = BatchDistance.cached(vecs, cache, v -> v.pNorm(2));
+        for(int i = 0; i < q_norm.length; i++)
+            for(int j = 0; j < v_norm.length; j++)
+            {
+                double denom = q_norm[i]*v_norm[j];
+                if(denom == 0)
+                    D.set(i, j, cosineToDistance(-1));
+                else
+                    D.set(i, j, cosineToDistance(Math.min(D.get(i, j) / denom, 1)));
+            }
+    }
 }
@@ -2,6 +2,7 @@ package jsat.linear.distancemetrics;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import jsat.linear.Matrix;
 import jsat.linear.Vec;
 
 /**
@@ -69,5 +70,17 @@ public class CosineDistanceNormalized implements DistanceMetric
     {
         return new CosineDistanceNormalized();
     }
-    
+
+    @Override
+    public void dist(List<? extends Vec> queries, List<Double> queryCache, List<? extends Vec> vecs, List<Double> cache, Matrix D, boolean parallel)
+    {
+        if(!BatchDistance.innerProducts(queries, vecs, D, parallel))
+        {
+            DistanceMetric.super.dist(queries, queryCache, vecs, cache, D, parallel);
+            return;
+        }
+        for(int i = 0; i < D.rows(); i++)
+            for(int j = 0; j < D.cols(); j++)
+                D.set(i, j, CosineDistance.cosineToDistance(Math.min(D.get(i, j), 1)));
+    }
 }
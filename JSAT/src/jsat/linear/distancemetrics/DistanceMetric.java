@@ -4,7 +4,10 @@ package jsat.linear.distancemetrics;
 import java.io.Serializable;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import jsat.linear.Matrix;
 import jsat.linear.Vec;
+import jsat.utils.DoubleList;
+import jsat.utils.concurrent.ParallelUtils;
 
 /**
  * A distance metric defines the distance between two points in a metric space. 
@@ -32,6 +35,15 @@ import jsat.linear.Vec;
  * {@link #getQueryInfo(jsat.linear.Vec) }<br>
  * Using this set up, no branching or special case code is necessary to 
  * automatically use the acceleration capabilities of supported distance metrics. 
+ * <br><br>
+ * The metrics in JSAT return their caches as a {@link DoubleList}, which 
+ * stores the values in a primitive array. The methods taking a cache accept 
+ * any {@code List<Double>}, but implementations should read from it with 
+ * {@link DoubleList#getD(java.util.List, int) } so that a DoubleList cache is 
+ * never boxed or unboxed in the inner loop of a distance computation. Callers
+ * that want the primitive storage can use 
+ * {@link #getPrimitiveAccelerationCache(java.util.List, boolean) } and 
+ * {@link #getPrimitiveQueryInfo(jsat.linear.Vec) }. 
  * 
  * @author Edward Raff
  */
@@ -141,6 +153,24 @@ public interface DistanceMetric extends Cloneable, Serializable
         return null;
     }
     
+    /**
+     * Returns the same cache as 
+     * {@link #getAccelerationCache(java.util.List, boolean) }, with the values 
+     * stored as primitive doubles. If the metric's cache is already a 
+     * {@link DoubleList} it is returned without copying. 
+     * 
+     * @param vecs the list of vectors to build an acceleration cache for
+     * @param parallel {@code true} if multiple threads should be used to
+     * build the cache. {@code false} if it should be done in a single 
+     * threaded manner.
+     * @return the cache values, or {@code null} if this metric does not 
+     * support acceleration
+     */
+    default public DoubleList getPrimitiveAccelerationCache(List<? extends Vec> vecs, boolean parallel)
+    {
+        return DoubleList.asDoubleList(getAccelerationCache(vecs, parallel));
+    }
+    
     /**
      * Computes the distance between 2 vectors in the original list of vectors. 
      * <br> If the cache input is {@code null}, then 
@@ -180,6 +210,48 @@ public interface DistanceMetric extends Cloneable, Serializable
 	}
 	return dist(a, b_vec, b_qi, vecs_a, cache_a);
     }
+
+    /**
+     * Computes the distances between every vector in a block of queries and
+     * every vector in a block of points, storing
+     * <i>D<sub>i,j</sub> = d(queries<sub>i</sub>, vecs<sub>j</sub>)</i>.
+     * Metrics such as the {@link EuclideanDistance} override this to compute
+     * all the inner products of the two blocks with a single matrix multiply,
+     * which is much faster than computing the distances one pair at a time.
+     * <br> Either cache may be {@code null}, in which case it will be computed
+     * if needed.
+     *
+     * @param queries the first block of vectors, indexing the rows of D
+     * @param queryCache the acceleration cache for the queries, from
+     * {@link #getAccelerationCache(java.util.List) }, or {@code null}
+     * @param vecs the second block of vectors, indexing the columns of D
+     * @param cache the acceleration cache for vecs, or {@code null}
+     * @param D the matrix to store the distances in, of size
+     * |queries| x |vecs|
+     * @param parallel {@code true} if multiple threads should be used
+     */
+    default public void dist(List<? extends Vec> queries, List<Double> queryCache, List<? extends Vec> vecs, List<Double> cache, Matrix D, boolean parallel)
+    {
+        if(D.rows() != queries.size() || D.cols() != vecs.size())
+            throw new ArithmeticException("Distance matrix is " + D.rows() + " x " + D.cols() + ", expected " + queries.size() + " x " + vecs.size());
+        ParallelUtils.run(parallel, queries.size(), (start, end) ->
+        {
+            for(int i = start; i < end; i++)
+            {
+                Vec q = queries.get(i);
+                List<Double> qi = null;
+                if(cache != null && queryCache != null)
+                {
+                    int factor = queryCache.size()/queries.size();
+                    qi = new DoubleList(queryCache.subList(i*factor, (i+1)*factor));
+                }
+                else if(cache != null)
+                    qi = getQueryInfo(q);
+                for(int j = 0; j < vecs.size(); j++)
+                    D.set(i, j, dist(j, q, qi, vecs, cache));
+            }
+        });
+    }
     
     /**
      * Computes the distance between one vector in the original list of vectors
@@ -215,6 +287,21 @@ public interface DistanceMetric extends Cloneable, Serializable
         return null;
     }
     
+    /**
+     * Returns the same query information as 
+     * {@link #getQueryInfo(jsat.linear.Vec) }, with the values stored as 
+     * primitive doubles. If the metric's query information is already a 
+     * {@link DoubleList} it is returned without copying. 
+     * 
+     * @param q the query point to generate cache information for
+     * @return the cache information for the query point, or {@code null} if 
+     * this metric does not support acceleration
+     */
+    default public DoubleList getPrimitiveQueryInfo(Vec q)
+    {
+        return DoubleList.asDoubleList(getQueryInfo(q));
+    }
+    
     /**
      * Computes the distance between one vector in the original list of vectors 
      * with that of another vector not from the original list, but had 
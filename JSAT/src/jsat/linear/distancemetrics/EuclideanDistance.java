@@ -7,6 +7,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jsat.linear.IndexValue;
+import jsat.linear.Matrix;
 import jsat.linear.Vec;
 import jsat.utils.DoubleList;
 import jsat.utils.FakeExecutor;
@@ -124,7 +125,7 @@ public class EuclideanDistance implements DenseSparseMetric
         if(cache == null)
             return dist(vecs.get(a), vecs.get(b));
         
-        return Math.sqrt(Math.max(cache.get(a)+cache.get(b)-2*vecs.get(a).dot(vecs.get(b)), 0));//Max incase of numerical issues
+        return Math.sqrt(Math.max(DoubleList.getD(cache, a)+DoubleList.getD(cache, b)-2*vecs.get(a).dot(vecs.get(b)), 0));//Max incase of numerical issues
     }
 
     @Override
@@ -133,7 +134,7 @@ public class EuclideanDistance implements DenseSparseMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return Math.sqrt(Math.max(cache.get(a)+b.dot(b)-2*vecs.get(a).dot(b), 0));//Max incase of numerical issues
+        return Math.sqrt(Math.max(DoubleList.getD(cache, a)+b.dot(b)-2*vecs.get(a).dot(b), 0));//Max incase of numerical issues
     }
 
     @Override
@@ -150,7 +151,21 @@ public class EuclideanDistance implements DenseSparseMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return Math.sqrt(Math.max(cache.get(a)+qi.get(0)-2*vecs.get(a).dot(b), 0));//Max incase of numerical issues
+        return Math.sqrt(Math.max(DoubleList.getD(cache, a)+DoubleList.getD(qi, 0)-2*vecs.get(a).dot(b), 0));//Max incase of numerical issues
+    }
+
+    @Override
+    public void dist(List<? extends Vec> queries, List<Double> queryCache, List<? extends Vec> vecs, List<Double> cache, Matrix D, boolean parallel)
+    {
+        if(!BatchDistance.innerProducts(queries, vecs, D, parallel))
+        {
+            DenseSparseMetric.super.dist(queries, queryCache, vecs, cache, D, parallel);
+            return;
+        }
+        double[] q_sqrd = BatchDistance.cached(queries, queryCache, v -> v.dot(v));
+        double[] v_sqrd = BatchDistance.cached(vecs, cache, v -> v.dot(v));
+        for(int i = 0; i < q_sqrd.length; i++)
+            for(int j = 0; j < v_sqrd.length; j++)
+                D.set(i, j, Math.sqrt(Math.max(q_sqrd[i]+v_sqrd[j]-2*D.get(i, j), 0)));
     }
-    
 }
@@ -190,7 +190,7 @@ public class NormalizedEuclideanDistance extends TrainableDistanceMetric
         if(cache == null)
             return dist(vecs.get(a), vecs.get(b));
         
-        return Math.sqrt(cache.get(a)+cache.get(b)-2*VecOps.weightedDot(invStndDevs, vecs.get(a), vecs.get(b)));
+        return Math.sqrt(DoubleList.getD(cache, a)+DoubleList.getD(cache, b)-2*VecOps.weightedDot(invStndDevs, vecs.get(a), vecs.get(b)));
     }
 
     @Override
@@ -199,7 +199,7 @@ public class NormalizedEuclideanDistance extends TrainableDistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return Math.sqrt(cache.get(a)+VecOps.weightedDot(invStndDevs, b, b)-2*VecOps.weightedDot(invStndDevs, vecs.get(a), b));
+        return Math.sqrt(DoubleList.getD(cache, a)+VecOps.weightedDot(invStndDevs, b, b)-2*VecOps.weightedDot(invStndDevs, vecs.get(a), b));
     }
 
     @Override
@@ -216,6 +216,6 @@ public class NormalizedEuclideanDistance extends TrainableDistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return Math.sqrt(cache.get(a)+qi.get(0)-2*VecOps.weightedDot(invStndDevs, vecs.get(a), b));
+        return Math.sqrt(DoubleList.getD(cache, a)+DoubleList.getD(qi, 0)-2*VecOps.weightedDot(invStndDevs, vecs.get(a), b));
     }
 }
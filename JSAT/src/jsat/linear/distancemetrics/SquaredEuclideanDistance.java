@@ -6,6 +6,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jsat.linear.Matrix;
 import jsat.linear.SparseVector;
 import jsat.linear.Vec;
 import jsat.utils.DoubleList;
@@ -113,7 +114,7 @@ public class SquaredEuclideanDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), vecs.get(b));
         
-        return (cache.get(a)+cache.get(b)-2*vecs.get(a).dot(vecs.get(b)));
+        return (DoubleList.getD(cache, a)+DoubleList.getD(cache, b)-2*vecs.get(a).dot(vecs.get(b)));
     }
 
     @Override
@@ -122,7 +123,7 @@ public class SquaredEuclideanDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return (cache.get(a)+b.dot(b)-2*vecs.get(a).dot(b));
+        return (DoubleList.getD(cache, a)+b.dot(b)-2*vecs.get(a).dot(b));
     }
 
     @Override
@@ -139,6 +140,21 @@ public class SquaredEuclideanDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return (cache.get(a)+qi.get(0)-2*vecs.get(a).dot(b));
+        return (DoubleList.getD(cache, a)+DoubleList.getD(qi, 0)-2*vecs.get(a).dot(b));
+    }
+
+    @Override
+    public void dist(List<? extends Vec> queries, List<Double> queryCache, List<? extends Vec> vecs, List<Double> cache, Matrix D, boolean parallel)
+    {
+        if(!BatchDistance.innerProducts(queries, vecs, D, parallel))
+        {
+            DistanceMetric.super.dist(queries, queryCache, vecs, cache, D, parallel);
+            return;
+        }
+        double[] q_sqrd = BatchDistance.cached(queries, queryCache, v -> v.dot(v));
+        double[] v_sqrd = BatchDistance.cached(vecs, cache, v -> v.dot(v));
+        for(int i = 0; i < q_sqrd.length; i++)
+            for(int j = 0; j < v_sqrd.length; j++)
+                D.set(i, j, Math.max(q_sqrd[i]+v_sqrd[j]-2*D.get(i, j), 0));
     }
 }
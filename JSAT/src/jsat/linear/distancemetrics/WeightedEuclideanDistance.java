@@ -134,7 +134,7 @@ public class WeightedEuclideanDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), vecs.get(b));
         
-        return Math.sqrt(cache.get(a)+cache.get(b)-2*VecOps.weightedDot(w, vecs.get(a), vecs.get(b)));
+        return Math.sqrt(DoubleList.getD(cache, a)+DoubleList.getD(cache, b)-2*VecOps.weightedDot(w, vecs.get(a), vecs.get(b)));
     }
 
     @Override
@@ -143,7 +143,7 @@ public class WeightedEuclideanDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return Math.sqrt(cache.get(a)+VecOps.weightedDot(w, b, b)-2*VecOps.weightedDot(w, vecs.get(a), b));
+        return Math.sqrt(DoubleList.getD(cache, a)+VecOps.weightedDot(w, b, b)-2*VecOps.weightedDot(w, vecs.get(a), b));
     }
 
     @Override
@@ -160,7 +160,7 @@ public class WeightedEuclideanDistance implements DistanceMetric
         if(cache == null)
             return dist(vecs.get(a), b);
         
-        return Math.sqrt(cache.get(a)+qi.get(0)-2*VecOps.weightedDot(w, vecs.get(a), b));
+        return Math.sqrt(DoubleList.getD(cache, a)+DoubleList.getD(qi, 0)-2*VecOps.weightedDot(w, vecs.get(a), b));
     }
 
 }
@@ -1,8 +1,11 @@
 
 package jsat.linear.solvers;
 
+import java.util.concurrent.ExecutorService;
 import jsat.linear.DenseVector;
+import jsat.linear.LinearOperator;
 import jsat.linear.Matrix;
+import jsat.linear.NormalOperator;
 import jsat.linear.Vec;
 
 /**
@@ -10,9 +13,12 @@ import jsat.linear.Vec;
  * <br><br>
  * The Conjugate method, if using exact arithmetic, produces the exact result after a finite 
  * number of iterations that is no more then the number of rows in the matrix. Because of this,
- * no max iteration parameter is given.
+ * the default maximum number of iterations is a small multiple of the number of rows. 
  * <br><br>
- * 
+ * The system matrix is only used through products with vectors, so any 
+ * {@link LinearOperator} may be given and the matrix need never be formed. 
+ * When a thread pool is given, it is used for these products, which are the 
+ * dominant cost of each iteration. 
  * 
  * @author Edward Raff
  */
@@ -36,47 +42,12 @@ public class ConjugateGradient
      * @param b the target values
      * @return the approximate solution to the equation <i>A x = b</i>
      */
-    public static Vec solve(double eps, Matrix A, Vec x, Vec b)
+    public static Vec solve(double eps, LinearOperator A, Vec x, Vec b)
     {
-        if(!A.isSquare())
-            throw new ArithmeticException("A must be a square (symmetric & positive definite) matrix");
-        else if(A.rows() != b.length() || A.rows() != x.length())
-            throw new ArithmeticException("Matrix A dimensions do not agree with x and b");
-        int k = 0;
-        Vec r_k = b.subtract(A.multiply(x));
-        Vec p_k = r_k.clone();
-        Vec Apk;
-        
-        double RdR = r_k.dot(r_k);
-        do
-        {
-            Apk = A.multiply(p_k);
-            double alpha_k = RdR /  p_k.dot(Apk) ;
-            
-            x.mutableAdd(alpha_k, p_k);
-            
-            r_k.mutableAdd(-alpha_k, Apk);
-            
-            double newRdR = r_k.dot(r_k);
-            
-            //Stop when we are close enough
-            if(newRdR < eps*eps)
-                return x;
-            
-            double beta_k = newRdR/RdR;
-            
-            p_k.mutableMultiply(beta_k);
-            p_k.mutableAdd(r_k);
-            
-            //Set up for next ste
-            RdR = newRdR;
-        }
-        while(k++ < A.rows());
-        
-        return x;
+        return solve(eps, A, x, b, null, 2*A.rows(), null);
     }
     
-    public static Vec solve(Matrix A, Vec b)
+    public static Vec solve(LinearOperator A, Vec b)
     {
         DenseVector x = new DenseVector(b.length());
         return solve(1e-10, A, x, b);
@@ -104,45 +75,87 @@ public class ConjugateGradient
      * 
      * @return the approximate solution to the equation <i>A x = b</i>
      */
-    public static Vec solve(double eps, Matrix A, Vec x, Vec b, Matrix Minv)
+    public static Vec solve(double eps, LinearOperator A, Vec x, Vec b, Matrix Minv)
     {
-        if(!A.isSquare() || !Minv.isSquare())
+        if(!Minv.isSquare())
             throw new ArithmeticException("A and Minv must be square (symmetric & positive definite) matrix");
-        else if(A.rows() != b.length() || A.rows() != x.length())
-            throw new ArithmeticException("Matrix A dimensions do not agree with x and b");
         else if(A.rows() != Minv.rows() || A.cols() != Minv.cols())
             throw new ArithmeticException("Matrix A and Minv do not have the same dimmentions");
         
-        int k = 0;
-        Vec r_k = b.subtract(A.multiply(x));
-        Vec z_k = Minv.multiply(r_k);
+        return solve(eps, A, x, b, (r, z) ->
+        {
+            z.zeroOut();
+            Minv.multiply(r, 1.0, z);
+        }, 2*A.rows(), null);
+    }
+    
+    /**
+     * Uses the preconditioned Conjugate Gradient method to solve a linear 
+     * system of equations involving a symmetric positive definite matrix.
+     * 
+     * @param eps the precision of the desired result, as the 2 norm of the 
+     * residual <i>b - A x</i>
+     * @param A the symmetric positive definite operator
+     * @param x an initial guess for x, can be all zeros. This vector will be altered
+     * @param b the target values
+     * @param M the preconditioner to use, or {@code null} for none
+     * @param maxIterations the maximum number of iterations to perform
+     * @param threadPool the source of threads for the products with A, or 
+     * {@code null} to run in the calling thread
+     * @return the approximate solution to the equation <i>A x = b</i>
+     */
+    public static Vec solve(double eps, LinearOperator A, Vec x, Vec b, Preconditioner M, int maxIterations, ExecutorService threadPool)
+    {
+        if(A.rows() != A.cols())
+            throw new ArithmeticException("A must be a square (symmetric & positive definite) matrix");
+        else if(A.rows() != b.length() || A.rows() != x.length())
+            throw new ArithmeticException("Matrix A dimensions do not agree with x and b");
+        else if(maxIterations < 1)
+            throw new IllegalArgumentException("maxIterations must be positive, not " + maxIterations);
+        
+        final int n = A.rows();
+        Vec r_k = b.clone();
+        A.apply(x, -1.0, r_k, threadPool);
+        if(r_k.dot(r_k) < eps*eps)
+            return x;
+        Vec z_k = r_k;
+        if(M != null)
+        {
+            z_k = new DenseVector(n);
+            M.apply(r_k, z_k);
+        }
         Vec p_k = z_k.clone();
-        Vec Apk;
+        Vec Apk = new DenseVector(n);
         double rkzk = r_k.dot(z_k);
         
-        do
+        for(int k = 0; k < maxIterations; k++)
         {
-            Apk = A.multiply(p_k);
+            Apk.zeroOut();
+            A.apply(p_k, 1.0, Apk, threadPool);
             
             double alpha = rkzk/p_k.dot(Apk);
             x.mutableAdd(alpha, p_k);
             r_k.mutableSubtract(alpha, Apk);
             
-            if(r_k.dot(r_k) < eps*eps)
+            double RdR = r_k.dot(r_k);
+            //Stop when we are close enough
+            if(RdR < eps*eps)
                 return x;
             
-            z_k = Minv.multiply(r_k);//TODO implement method so we can reuse z_k space, instead of creating a new vector
-            
-            double newRkZk = r_k.dot(z_k);
+            double newRkZk;
+            if(M != null)
+            {
+                M.apply(r_k, z_k);
+                newRkZk = r_k.dot(z_k);
+            }
+            else
+                newRkZk = RdR;
             double beta = newRkZk/rkzk;
             rkzk = newRkZk;
             
             p_k.mutableMultiply(beta);
             p_k.mutableAdd(z_k);
-            
-            
         }
-        while(k++ < A.rows());
         
         return x;
     }
@@ -154,34 +167,57 @@ public class ConjugateGradient
      * a vector of length m and x is a vector of length n
      * 
      * <br><br>
-     * NOTE: Unlike {@link #solve(double, jsat.linear.Matrix, jsat.linear.Vec, jsat.linear.Vec) }, 
+     * NOTE: Unlike {@link #solve(double, jsat.linear.LinearOperator, jsat.linear.Vec, jsat.linear.Vec) }, 
      * the CGNR method does not need any special properties of the matrix. Because of this, slower
-     * convergence or numerical error can occur. 
+     * convergence or numerical error can occur. {@link LSQR} solves the same 
+     * problem with better numerical behavior. 
+     * 
+     * @param eps the desired precision for the result
+     * @param A any m x n matrix
+     * @param x the initial guess for x, can be all zeros. This vector will be altered
+     * @param b the target values
+     * @return the least squares solution to A x = b
+     */
+    public static Vec solveCGNR(double eps, LinearOperator A, Vec x, Vec b)
+    {
+        return solveCGNR(eps, A, x, b, 0.0, null);
+    }
+    
+    public static Vec solveCGNR(LinearOperator A, Vec b)
+    {
+        DenseVector x = new DenseVector(A.cols());
+        return solveCGNR(1e-10, A, x, b);
+    }
+    
+    /**
+     * Uses the Conjugate Gradient method to compute the regularized least 
+     * squares solution to a system of linear equations, which minimizes 
+     * <i>||A x - b||<sup>2</sup> + &lambda; ||x||<sup>2</sup></i>. The normal 
+     * equations <i>(A<sup>T</sup>A + &lambda;I) x = A<sup>T</sup>b</i> are 
+     * solved through a {@link NormalOperator}, so <i>A<sup>T</sup>A</i> is 
+     * never formed. 
      * 
      * @param eps the desired precision for the result
      * @param A any m x n matrix
      * @param x the initial guess for x, can be all zeros. This vector will be altered
      * @param b the target values
+     * @param lambda the non-negative regularization value 
+     * @param threadPool the source of threads for the products with A, or 
+     * {@code null} to run in the calling thread
      * @return the least squares solution to A x = b
      */
-    public static Vec solveCGNR(double eps, Matrix A, Vec x, Vec b)
+    public static Vec solveCGNR(double eps, LinearOperator A, Vec x, Vec b, double lambda, ExecutorService threadPool)
     {
         if(A.rows() != b.length())
             throw new ArithmeticException("Dimensions do not agree for Matrix A and Vector b");
         else if(A.cols() != x.length())
             throw new ArithmeticException("Dimensions do not agree for Matrix A and Vector x");
+        else if(lambda < 0)
+            throw new IllegalArgumentException("lambda must be non-negative, not " + lambda);
         
-        //TODO write a version that does not explicityly form the transpose matrix
-        Matrix At = A.transpose();
-        Matrix AtA = At.multiply(A);
-        Vec AtB = At.multiply(b);
+        Vec AtB = new DenseVector(A.cols());
+        A.applyTranspose(b, 1.0, AtB, threadPool);
         
-        return solve(eps, AtA, x, AtB);
-    }
-    
-    public static Vec solveCGNR(Matrix A, Vec b)
-    {
-        DenseVector x = new DenseVector(A.cols());
-        return solveCGNR(1e-10, A, x, b);
+        return solve(eps, new NormalOperator(A, lambda), x, AtB, null, 2*A.cols(), threadPool);
     }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import jsat.linear.CompressedSparseMatrix;
+import jsat.linear.IndexValue;
+import jsat.linear.Matrix;
+import jsat.linear.Vec;
+
+/**
+ * The zero fill-in Incomplete Cholesky Preconditioner, IC(0), computes a
+ * lower triangular <i>L</i> with the same sparsity pattern as the lower
+ * triangle of <i>A</i> such that <i>M = L L<sup>T</sup> &asymp; A</i>. It
+ * uses the same memory as <i>A</i> and is applied with two triangular
+ * solves. <br>
+ * <br>
+ * The incomplete factorization may break down on a positive definite matrix
+ * that is not diagonally dominant. When that happens, the factorization is
+ * restarted with a growing value added to the diagonal until it succeeds.
+ * <br><br>
+ * See: Manteuffel, T. A. (1980). <i>An Incomplete Factorization Technique for
+ * Positive Definite Linear Systems</i>. Mathematics of Computation, 34(150),
+ * 473–497.
+ *
+ * @author Edward Raff
+ */
+public class IncompleteCholesky implements Preconditioner, Serializable
+{
+    private static final long serialVersionUID = -4280263722318749208L;
+    /**
+     * Row pointers, column indices and values of L by rows. The diagonal is
+     * the last entry of each row.
+     */
+    private final int[] ptr, idx;
+    private final double[] val;
+    private double shift;
+
+    /**
+     * Computes the incomplete Cholesky factorization of the symmetric positive
+     * definite matrix A. Only the lower triangle of A is used, and A will not
+     * be altered.
+     *
+     * @param A the matrix to precondition
+     */
+    public IncompleteCholesky(Matrix A)
+    {
+        if(!A.isSquare())
+            throw new ArithmeticException("A must be a square (symmetric & positive definite) matrix");
+        if(A instanceof CompressedSparseMatrix)
+            A = ((CompressedSparseMatrix) A).toSparseMatrix();
+        final int n = A.rows();
+        ptr = new int[n+1];
+        int[] idxTmp = new int[n];
+        double[] valTmp = new double[n];
+        double[] a_ii = new double[n];
+        int nnz = 0;
+        for(int i = 0; i < n; i++)
+        {
+            for(IndexValue iv : A.getRowView(i))
+            {
+                int j = iv.getIndex();
+                if(j > i)
+                    break;
+                if(j == i)
+                {
+                    a_ii[i] = iv.getValue();
+                    continue;
+                }
+                if(nnz == idxTmp.length)
+                {
+                    idxTmp = Arrays.copyOf(idxTmp, nnz*2);
+                    valTmp = Arrays.copyOf(valTmp, nnz*2);
+                }
+                idxTmp[nnz] = j;
+                valTmp[nnz++] = iv.getValue();
+            }
+            if(nnz == idxTmp.length)
+            {
+                idxTmp = Arrays.copyOf(idxTmp, nnz*2);
+                valTmp = Arrays.copyOf(valTmp, nnz*2);
+            }
+            idxTmp[nnz] = i;
+            valTmp[nnz++] = a_ii[i];
+            ptr[i+1] = nnz;
+        }
+        idx = Arrays.copyOf(idxTmp, nnz);
+        double[] a = Arrays.copyOf(valTmp, nnz);
+        val = new double[nnz];
+
+        double maxDiag = 0;
+        for(double d : a_ii)
+            maxDiag = Math.max(maxDiag, Math.abs(d));
+        if(maxDiag == 0)
+            throw new ArithmeticException("A has no positive diagonal values");
+        shift = 0;
+        while(!factor(a))
+            shift = shift == 0 ? 1e-3*maxDiag : shift*2;
+    }
+
+    /**
+     * Returns the value that had to be added to the diagonal of A for the
+     * factorization to succeed, which is zero unless it broke down.
+     *
+     * @return the diagonal shift used
+     */
+    public double getShift()
+    {
+        return shift;
+    }
+
+    /**
+     * Attempts the factorization of A + shift I
+     *
+     * @param a the values of the lower triangle of A, in the layout of L
+     * @return {@code true} if successful, {@code false} if a non-positive
+     * pivot occurred
+     */
+    private boolean factor(double[] a)
+    {
+        final int n = ptr.length-1;
+        for(int i = 0; i < n; i++)
+        {
+            final int rowStart = ptr[i], diag = ptr[i+1]-1;
+            double sumSqrd = 0;
+            for(int p = rowStart; p < diag; p++)
+            {
+                final int k = idx[p];
+                //dot of L(i, 0:k-1) and L(k, 0:k-1) over the shared pattern
+                double s = a[p];
+                int q = rowStart, r = ptr[k];
+                final int rEnd = ptr[k+1]-1;
+                while(q < p && r < rEnd)
+                {
+                    if(idx[q] == idx[r])
+                        s -= val[q++]*val[r++];
+                    else if(idx[q] < idx[r])
+                        q++;
+                    else
+                        r++;
+                }
+                val[p] = s/val[rEnd];
+                sumSqrd += val[p]*val[p];
+            }
+            double d = a[diag] + shift - sumSqrd;
+            if(!(d > 0))
+                return false;
+            val[diag] = Math.sqrt(d);
+        }
+        return true;
+    }
+
+    @Override
+    public void apply(Vec r, Vec z)
+    {
+        final int n = ptr.length-1;
+        if(r.length() != n || z.length() != n)
+            throw new ArithmeticException("Vector lengths do not agree with the preconditioner");
+        double[] y = r.arrayCopy();
+        //L y = r
+        for(int i = 0; i < n; i++)
+        {
+            double s = y[i];
+            final int diag = ptr[i+1]-1;
+            for(int p = ptr[i]; p < diag; p++)
+                s -= val[p]*y[idx[p]];
+            y[i] = s/val[diag];
+        }
+        //L^T z = y, using the rows of L as columns of L^T
+        for(int i = n-1; i >= 0; i--)
+        {
+            final int diag = ptr[i+1]-1;
+            y[i] /= val[diag];
+            final double y_i = y[i];
+            for(int p = ptr[i]; p < diag; p++)
+                y[idx[p]] -= val[p]*y_i;
+        }
+        for(int i = 0; i < n; i++)
+            z.set(i, y[i]);
+    }
+}
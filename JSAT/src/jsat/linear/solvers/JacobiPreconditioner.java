@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import java.io.Serializable;
+import jsat.linear.DenseVector;
+import jsat.linear.Matrix;
+import jsat.linear.Vec;
+
+/**
+ * The Jacobi Preconditioner uses only the diagonal of the system matrix,
+ * <i>M = diag(A)</i>. It costs one division per entry to apply, and helps
+ * most when the rows of <i>A</i> are on very different scales.
+ *
+ * @author Edward Raff
+ */
+public class JacobiPreconditioner implements Preconditioner, Serializable
+{
+    private static final long serialVersionUID = 6005335329146651062L;
+    private final double[] invDiag;
+
+    /**
+     * Creates a Jacobi preconditioner from the diagonal of a square matrix
+     *
+     * @param A the matrix to precondition
+     */
+    public JacobiPreconditioner(Matrix A)
+    {
+        this(diagonal(A));
+    }
+
+    /**
+     * Creates a Jacobi preconditioner from the diagonal of the system matrix,
+     * such as the one returned by
+     * {@link jsat.linear.NormalOperator#getDiagonal() }
+     *
+     * @param diagonal the diagonal of the system matrix, which must be
+     * positive
+     */
+    public JacobiPreconditioner(Vec diagonal)
+    {
+        invDiag = new double[diagonal.length()];
+        for(int i = 0; i < invDiag.length; i++)
+        {
+            double d = diagonal.get(i);
+            if(!(d > 0))
+                throw new ArithmeticException("Diagonal must be positive, index " + i + " has value " + d);
+            invDiag[i] = 1/d;
+        }
+    }
+
+    private static Vec diagonal(Matrix A)
+    {
+        if(!A.isSquare())
+            throw new ArithmeticException("A must be a square matrix");
+        DenseVector d = new DenseVector(A.rows());
+        for(int i = 0; i < A.rows(); i++)
+            d.set(i, A.get(i, i));
+        return d;
+    }
+
+    @Override
+    public void apply(Vec r, Vec z)
+    {
+        if(r.length() != invDiag.length || z.length() != invDiag.length)
+            throw new ArithmeticException("Vector lengths do not agree with the preconditioner");
+        for(int i = 0; i < invDiag.length; i++)
+            z.set(i, r.get(i)*invDiag[i]);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import java.util.concurrent.ExecutorService;
+import jsat.linear.DenseVector;
+import jsat.linear.LinearOperator;
+import jsat.linear.Vec;
+
+/**
+ * Provides an implementation of the LSQR method for computing the damped
+ * least squares solution to <i>A x = b</i>, which minimizes <i>||A x -
+ * b||<sup>2</sup> + &lambda;<sup>2</sup> ||x||<sup>2</sup></i> for any
+ * <i>m x n</i> matrix <i>A</i>. It is mathematically equivalent to the
+ * conjugate gradient method on the normal equations, but is more reliable
+ * when <i>A</i> is ill-conditioned since <i>A<sup>T</sup>A</i> is never
+ * used, even implicitly. <br>
+ * <br>
+ * Each iteration uses one product with <i>A</i> and one with
+ * <i>A<sup>T</sup></i>, which are done with the given thread pool.
+ * <br><br>
+ * See: Paige, C. C., &amp; Saunders, M. A. (1982). <i>LSQR: An Algorithm for
+ * Sparse Linear Equations and Sparse Least Squares</i>. ACM Transactions on
+ * Mathematical Software, 8(1), 43–71.
+ *
+ * @author Edward Raff
+ */
+public class LSQR
+{
+    /**
+     * Uses LSQR to compute the least squares solution to <i>A x = b</i>
+     *
+     * @param A any m x n matrix
+     * @param b the target values
+     * @return the least squares solution to A x = b
+     */
+    public static Vec solve(LinearOperator A, Vec b)
+    {
+        DenseVector x = new DenseVector(A.cols());
+        return solve(1e-10, A, x, b, 0.0, 2*A.cols(), null);
+    }
+
+    /**
+     * Uses LSQR to compute the damped least squares solution to <i>A x =
+     * b</i>. If a non-zero initial guess is given, the damping applies to the
+     * change from the initial guess.
+     *
+     * @param eps the desired precision for the result, as the norm of
+     * <i>A<sup>T</sup>(b - A x) - &lambda;<sup>2</sup> x</i> or of the
+     * residual <i>b - A x</i>, whichever is reached first
+     * @param A any m x n matrix
+     * @param x the initial guess for x, can be all zeros. This vector will be
+     * altered
+     * @param b the target values
+     * @param damp the non-negative damping value &lambda;
+     * @param maxIterations the maximum number of iterations to perform
+     * @param threadPool the source of threads for the products with A, or
+     * {@code null} to run in the calling thread
+     * @return the damped least squares solution to A x = b
+     */
+    public static Vec solve(double eps, LinearOperator A, Vec x, Vec b, double damp, int maxIterations, ExecutorService threadPool)
+    {
+        if(A.rows() != b.length())
+            throw new ArithmeticException("Dimensions do not agree for Matrix A and Vector b");
+        else if(A.cols() != x.length())
+            throw new ArithmeticException("Dimensions do not agree for Matrix A and Vector x");
+        else if(damp < 0 || Double.isNaN(damp))
+            throw new IllegalArgumentException("damp must be non-negative, not " + damp);
+        else if(maxIterations < 1)
+            throw new IllegalArgumentException("maxIterations must be positive, not " + maxIterations);
+
+        //Golub-Kahan bidiagonalization, starting from the residual
+        Vec u = new DenseVector(A.rows());
+        b.copyTo(u);
+        A.apply(x, -1.0, u, threadPool);
+        double beta = u.pNorm(2);
+        if(beta < eps)
+            return x;
+        u.mutableDivide(beta);
+        Vec v = new DenseVector(A.cols());
+        A.applyTranspose(u, 1.0, v, threadPool);
+        double alpha = v.pNorm(2);
+        if(alpha < eps)
+            return x;
+        v.mutableDivide(alpha);
+
+        Vec w = v.clone();
+        double phibar = beta, rhobar = alpha;
+
+        for(int iter = 0; iter < maxIterations; iter++)
+        {
+            //u = A v - alpha u
+            u.mutableMultiply(-alpha);
+            A.apply(v, 1.0, u, threadPool);
+            beta = u.pNorm(2);
+            if(beta > 0)
+                u.mutableDivide(beta);
+            //v = A^T u - beta v
+            v.mutableMultiply(-beta);
+            A.applyTranspose(u, 1.0, v, threadPool);
+            alpha = v.pNorm(2);
+            if(alpha > 0)
+                v.mutableDivide(alpha);
+
+            //eliminate the damping term
+            double rhobar1 = Math.hypot(rhobar, damp);
+            double cs1 = rhobar/rhobar1;
+            phibar = cs1*phibar;
+            //eliminate the subdiagonal beta
+            double rho = Math.hypot(rhobar1, beta);
+            double cs = rhobar1/rho;
+            double sn = beta/rho;
+            double theta = sn*alpha;
+            rhobar = -cs*alpha;
+            double phi = cs*phibar;
+            phibar = sn*phibar;
+
+            x.mutableAdd(phi/rho, w);
+            w.mutableMultiply(-theta/rho);
+            w.mutableAdd(v);
+
+            //norm of the normal equation residual, and of the residual
+            if(Math.abs(phibar*alpha*cs) < eps || Math.abs(phibar) < eps)
+                return x;
+        }
+
+        return x;
+    }
+}
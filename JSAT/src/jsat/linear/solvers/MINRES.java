@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import java.util.concurrent.ExecutorService;
+import jsat.linear.DenseVector;
+import jsat.linear.LinearOperator;
+import jsat.linear.Vec;
+
+/**
+ * Provides an implementation of the Minimum Residual method, MINRES, for
+ * solving a linear system of equations <i>A x = b</i> where <i>A</i> is
+ * symmetric. Unlike {@link ConjugateGradient}, <i>A</i> may be indefinite or
+ * singular, and the norm of the residual never increases from one iteration
+ * to the next. A symmetric positive definite {@link Preconditioner} may be
+ * used. <br>
+ * <br>
+ * The system matrix is only used through products with vectors, which are
+ * done with the given thread pool.
+ * <br><br>
+ * See: Paige, C. C., &amp; Saunders, M. A. (1975). <i>Solution of Sparse
+ * Indefinite Systems of Linear Equations</i>. SIAM Journal on Numerical
+ * Analysis, 12(4), 617–629.
+ *
+ * @author Edward Raff
+ */
+public class MINRES
+{
+    /**
+     * Uses MINRES to solve a linear system of equations involving a symmetric
+     * matrix.
+     *
+     * @param A the symmetric matrix
+     * @param b the target values
+     * @return the approximate solution to the equation <i>A x = b</i>
+     */
+    public static Vec solve(LinearOperator A, Vec b)
+    {
+        DenseVector x = new DenseVector(b.length());
+        return solve(1e-10, A, x, b, null, 2*A.rows(), null);
+    }
+
+    /**
+     * Uses the preconditioned MINRES method to solve a linear system of
+     * equations involving a symmetric matrix.<br>
+     * <br>
+     * NOTE: No checks will be performed to confirm that A is symmetric.
+     *
+     * @param eps the precision of the desired result, as the norm of the
+     * residual <i>b - A x</i>. When a preconditioner is used, this is the
+     * norm induced by <i>M<sup>-1</sup></i>.
+     * @param A the symmetric matrix
+     * @param x an initial guess for x, can be all zeros. This vector will be
+     * altered
+     * @param b the target values
+     * @param M the symmetric positive definite preconditioner to use, or
+     * {@code null} for none
+     * @param maxIterations the maximum number of iterations to perform
+     * @param threadPool the source of threads for the products with A, or
+     * {@code null} to run in the calling thread
+     * @return the approximate solution to the equation <i>A x = b</i>
+     */
+    public static Vec solve(double eps, LinearOperator A, Vec x, Vec b, Preconditioner M, int maxIterations, ExecutorService threadPool)
+    {
+        if(A.rows() != A.cols())
+            throw new ArithmeticException("A must be a square (symmetric) matrix");
+        else if(A.rows() != b.length() || A.rows() != x.length())
+            throw new ArithmeticException("Matrix A dimensions do not agree with x and b");
+        else if(maxIterations < 1)
+            throw new IllegalArgumentException("maxIterations must be positive, not " + maxIterations);
+
+        final int n = A.rows();
+        //r1 and r2 are the last two Lanczos vectors before preconditioning
+        Vec r1 = new DenseVector(n);
+        b.copyTo(r1);
+        A.apply(x, -1.0, r1, threadPool);
+        Vec y = new DenseVector(n);
+        precondition(M, r1, y);
+
+        double beta = r1.dot(y);
+        if(beta < 0)
+            throw new ArithmeticException("Preconditioner is not positive definite");
+        beta = Math.sqrt(beta);
+        if(beta < eps)
+            return x;
+
+        Vec r2 = r1.clone();
+        Vec v = new DenseVector(n);
+        Vec w = new DenseVector(n), w1 = new DenseVector(n), w2 = new DenseVector(n);
+        double oldb = 0, dbar = 0, epsln = 0, phibar = beta;
+        double cs = -1, sn = 0;
+
+        for(int iter = 0; iter < maxIterations; iter++)
+        {
+            //Lanczos step
+            y.copyTo(v);
+            v.mutableDivide(beta);
+            y.zeroOut();
+            A.apply(v, 1.0, y, threadPool);
+            if(iter > 0)
+                y.mutableAdd(-beta/oldb, r1);
+            double alpha = v.dot(y);
+            y.mutableAdd(-alpha/beta, r2);
+
+            Vec tmp = r1;
+            r1 = r2;
+            r2 = y;
+            y = tmp;
+            precondition(M, r2, y);
+            oldb = beta;
+            beta = r2.dot(y);
+            if(beta < 0)
+                throw new ArithmeticException("Preconditioner is not positive definite");
+            beta = Math.sqrt(beta);
+
+            //apply the previous rotation, then make a new one to annihilate beta
+            double oldeps = epsln;
+            double delta = cs*dbar + sn*alpha;
+            double gbar = sn*dbar - cs*alpha;
+            epsln = sn*beta;
+            dbar = -cs*beta;
+            double gamma = Math.max(Math.hypot(gbar, beta), Double.MIN_NORMAL);
+            cs = gbar/gamma;
+            sn = beta/gamma;
+            double phi = cs*phibar;
+            phibar = sn*phibar;
+
+            //w = (v - oldeps w1 - delta w2) / gamma
+            tmp = w1;
+            w1 = w2;
+            w2 = w;
+            w = tmp;
+            v.copyTo(w);
+            w.mutableAdd(-oldeps, w1);
+            w.mutableAdd(-delta, w2);
+            w.mutableDivide(gamma);
+            x.mutableAdd(phi, w);
+
+            if(phibar < eps || beta == 0)
+                return x;
+        }
+
+        return x;
+    }
+
+    private static void precondition(Preconditioner M, Vec r, Vec z)
+    {
+        if(M == null)
+            r.copyTo(z);
+        else
+            M.apply(r, z);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import jsat.linear.Vec;
+
+/**
+ * A Preconditioner represents the inverse of a symmetric positive definite
+ * matrix <i>M</i> that approximates the system matrix <i>A</i> of an iterative
+ * solver, but is cheap to apply. Solving with <i>M<sup>-1</sup>A</i> in place
+ * of <i>A</i> takes fewer iterations the closer <i>M</i> is to <i>A</i>.
+ *
+ * @author Edward Raff
+ */
+public interface Preconditioner
+{
+    /**
+     * Computes <i><b>z</b> = M<sup>-1</sup><b>r</b></i>. The previous
+     * contents of <b>z</b> are overwritten.
+     *
+     * @param r the vector to apply the preconditioner to, which will not be
+     * altered
+     * @param z the vector to store the result in
+     */
+    public void apply(Vec r, Vec z);
+}
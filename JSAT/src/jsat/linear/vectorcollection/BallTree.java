@@ -19,6 +19,7 @@ package jsat.linear.vectorcollection;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -29,6 +30,7 @@ import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.IntStream;
 import jsat.clustering.MEDDIT;
 import jsat.clustering.PAM;
@@ -39,13 +41,14 @@ import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.math.FastMath;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.DoubleList;
 import jsat.utils.IndexTable;
 import jsat.utils.IntList;
 import jsat.utils.IntSet;
 import jsat.utils.ListUtils;
 import jsat.utils.Pair;
+import jsat.utils.QuickSort;
 import jsat.utils.concurrent.AtomicDoubleArray;
 import jsat.utils.concurrent.ParallelUtils;
 import jsat.utils.random.RandomUtil;
@@ -81,12 +84,23 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
 {
     public static final int DEFAULT_LEAF_SIZE = 40;
     private int leaf_size = DEFAULT_LEAF_SIZE;
+    /**
+     * Nodes with at least this many points have their construction spread 
+     * across threads, when building in parallel
+     */
+    private static final int PARALLEL_SIZE = 1024;
     private DistanceMetric dm;
     private List<V> allVecs;
     private List<Double> cache;
     private ConstructionMethod construction_method;
     private PivotSelection pivot_method;
     private Node root;
+    /**
+     * The flattened copy of the tree used for searching, or {@code null} if 
+     * the object tree is searched directly
+     */
+    private CompactBall compact;
+    private boolean compactLayout = false;
 
     @Override
     public IndexNode getRoot()
@@ -253,6 +267,8 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         if(toCopy.root != null)
             this.root = cloneChangeContext(toCopy.root);
         this.leaf_size = toCopy.leaf_size;
+        this.compactLayout = toCopy.compactLayout;
+        this.compact = toCopy.compact;//never modified, so can be shared
     }
     
     @Override
@@ -289,6 +305,38 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         return leaf_size;
     }
     
+    /**
+     * Sets whether a compact copy of the tree should be used for searching. 
+     * The compact layout stores the nodes' radii in primitive arrays in depth 
+     * first order, and copies the pivots and the points of each leaf into 
+     * contiguous blocks of memory in the same order, which avoids chasing 
+     * pointers through objects scattered across the heap. It costs a copy of 
+     * the data set. Dual tree searches always use the tree of node objects. 
+     * <br>
+     * Inserting a new point discards the compact layout, which will be 
+     * re-created the next time the tree is built or this method is called. 
+     *
+     * @param compactLayout {@code true} to search a compact copy of the tree, 
+     * {@code false} to search the tree of node objects
+     */
+    public void setCompactLayout(boolean compactLayout)
+    {
+        this.compactLayout = compactLayout;
+        if(compactLayout && root != null)
+            compact = new CompactBall(root, allVecs, dm);
+        else
+            compact = null;
+    }
+
+    /**
+     *
+     * @return {@code true} if a compact copy of the tree is searched
+     */
+    public boolean isCompactLayout()
+    {
+        return compactLayout;
+    }
+    
     /**
      * Computes the maximum depth of the current tree. A value of zero indicates
      * that only a root node exists or the tree is empty. Any other value is the
@@ -324,33 +372,39 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         return construction_method;
     }
     
-    private Node build_far_top_down(List<Integer> points, boolean parallel)
+    private Node build_far_top_down(List<Integer> points, Random rand, boolean parallel)
     {
+        final boolean parallelNode = parallel && points.size() >= PARALLEL_SIZE;
         Branch branch = new Branch();
-        branch.setPivot(points);
-        branch.setRadius(points);
+        branch.setPivot(points, parallelNode);
+        branch.setRadius(points, parallelNode);
 
         //Use point farthest from parent pivot for left child
-        int f1 = ParallelUtils.streamP(points.stream(), parallel)
+        int f1 = ParallelUtils.streamP(points.stream(), parallelNode)
                 .map(i->new IndexDistPair(i, dm.dist(i, branch.pivot, branch.pivot_qi, allVecs, cache)))
                 .max(IndexDistPair::compareTo).orElse(new IndexDistPair(0, 0.0)).indx;
         //use point farhter from f1 for right child
-        int f2 = ParallelUtils.streamP(points.stream(), parallel)
+        int f2 = ParallelUtils.streamP(points.stream(), parallelNode)
                 .map(i->new IndexDistPair(i, dm.dist(i, f1, allVecs, cache)))
                 .max(IndexDistPair::compareTo).orElse(new IndexDistPair(1, 0.0)).indx;
 
         //Now split children based on who is closes to f1 and f2
+        boolean[] goLeft = new boolean[points.size()];
+        ParallelUtils.run(parallelNode, points.size(), (start, end) ->
+        {
+            for(int i = start; i < end; i++)
+            {
+                int p = points.get(i);
+                goLeft[i] = dm.dist(p, f1, allVecs, cache) < dm.dist(p, f2, allVecs, cache);
+            }
+        });
         IntList left_children = new IntList();
         IntList right_children = new IntList();
-        for(int p : points)
-        {
-            double d_f1 = dm.dist(p, f1, allVecs, cache);
-            double d_f2 = dm.dist(p, f2, allVecs, cache);
-            if(d_f1 < d_f2)
-                left_children.add(p);
+        for(int i = 0; i < goLeft.length; i++)
+            if(goLeft[i])
+                left_children.add(points.get(i));
             else
-                right_children.add(p);
-        }
+                right_children.add(points.get(i));
         
         if(left_children.isEmpty() || right_children.isEmpty())
         {
@@ -365,16 +419,14 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         }
 
         //everyone has been assigned, now creat children objects
-        branch.left_child = build(left_children, parallel);
-        branch.right_child = build(right_children, parallel);
-        branch.left_child.parent = branch;
-        branch.right_child.parent = branch;
+        buildChildren(branch, left_children, right_children, rand, parallelNode);
 
         return branch;
     }
     
-    private Node build_kd(List<Integer> points, boolean parallel)
+    private Node build_kd(List<Integer> points, Random rand, boolean parallel)
     {
+        final boolean parallelNode = parallel && points.size() >= PARALLEL_SIZE;
         //Lets find the dimension with the maximum spread
         int D = allVecs.get(0).length();
         final boolean isSparse = allVecs.get(0).isSparse();
@@ -383,7 +435,7 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         //these have implicity zeros we need to add back at the end
         final Set<Integer> neverSeen;
         if (isSparse)
-            if (parallel)
+            if (parallelNode)
             {
                 neverSeen = ConcurrentHashMap.newKeySet();
                 ListUtils.addRange(neverSeen, 0, D, 1);
@@ -397,7 +449,7 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         mins.fill(Double.POSITIVE_INFINITY);
         AtomicDoubleArray maxs = new AtomicDoubleArray(D);
         maxs.fill(Double.NEGATIVE_INFINITY);
-        ParallelUtils.streamP(points.stream(), parallel).forEach(i->
+        ParallelUtils.streamP(points.stream(), parallelNode).forEach(i->
         {
             for(IndexValue iv : get(i))
             {
@@ -408,7 +460,7 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
             }
         });
         
-        IndexDistPair maxSpread = ParallelUtils.range(D, parallel)
+        IndexDistPair maxSpread = ParallelUtils.range(D, parallelNode)
                 .mapToObj(d->
                 {
                     double max_d = maxs.get(d), min_d = mins.get(d);
@@ -430,30 +482,36 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
             return leaf;
         }
         
-        //We found it! Lets sort points by this new value
+        //We found it! Lets partition points around the median of this new value
         final int d = maxSpread.indx;
-        points.sort((Integer o1, Integer o2) -> Double.compare(get(o1).get(d), get(o2).get(d)));
-        int midPoint = points.size()/2;
+        final int n = points.size();
+        double[] keys = new double[n];
+        ParallelUtils.run(parallelNode, n, (start, end) ->
+        {
+            for(int i = start; i < end; i++)
+                keys[i] = get(points.get(i)).get(d);
+        });
+        Collection<List<?>> paired = Collections.singletonList(points);
+        int midPoint = n/2;
+        QuickSort.select(keys, 0, n, midPoint, paired);
         //Lets check that we don't have identical values, and adjust as needed
-        while(midPoint > 1 && get(midPoint-1).get(d) == get(midPoint).get(d))
-            midPoint--;
+        for(int i = midPoint-1; i >= 0 && midPoint > 1; i--)
+            if(keys[i] == keys[midPoint])
+                QuickSort.swap(keys, i, --midPoint, paired);
         List<Integer> left_children = points.subList(0, midPoint);
         List<Integer> right_children = points.subList(midPoint, points.size());
         
         Branch branch = new Branch();
-        branch.setPivot(points);
-        branch.setRadius(points);
+        branch.setPivot(points, parallelNode);
+        branch.setRadius(points, parallelNode);
         //everyone has been assigned, now creat children objects
-        branch.left_child = build(left_children, parallel);
-        branch.right_child = build(right_children, parallel);
-        branch.left_child.parent = branch;
-        branch.right_child.parent = branch;
+        buildChildren(branch, left_children, right_children, rand, parallelNode);
         
         
         return branch;
     }
     
-    private Node build_anchors(List<Integer> points, boolean parallel)
+    private Node build_anchors(List<Integer> points, Random rand, boolean parallel)
     {
         //Ceiling to avoid issues with points rounding down to k=1, causing an infinite recusion 
         int K = (int) Math.ceil(Math.sqrt(points.size()));
@@ -469,8 +527,6 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
             ownedDist[k] = new DoubleList();
         }
         
-        Random rand = RandomUtil.getRandom();
-        
         //First case is special, select anchor at random and create list
         anchor_point_index[0] =rand.nextInt(points.size());
         anchor_index[0] = points.get(anchor_point_index[0]);
@@ -536,10 +592,20 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         }
         
         //Now we have sqrt(R) anchors. Lets do the middle-down first, creating Nodes for each anchor
+        List<ForkJoinTask<Node>> anchor_tasks = new ArrayList<>(K);
+        for (int k = 0; k < K; k++)
+        {
+            final int k_ = k;
+            //each anchor gets its own seed so the result does not depend on which thread builds it
+            final Random rand_k = RandomUtil.getRandom(rand.nextInt());
+            anchor_tasks.add(ForkJoinTask.adapt(() -> build(IntList.view(owned[k_].streamInts().map(i->points.get(i)).toArray()), rand_k, parallel)));
+        }
+        if(parallel && points.size() >= PARALLEL_SIZE)
+            ForkJoinTask.invokeAll(anchor_tasks);
         List<Node> anchor_nodes = new ArrayList<>();
         for (int k = 0; k < K; k++)
         {
-            Node n_k = build(IntList.view(owned[k].streamInts().map(i->points.get(i)).toArray()), parallel);
+            Node n_k = anchor_tasks.get(k).invoke();//already done if run in parallel
             n_k.pivot = get(anchor_index[k]);
             n_k.radius = ownedDist[k].getD(ownedDist[k].size()-1);
             anchor_nodes.add(n_k);
@@ -708,7 +774,38 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         return toReturn;
     }
     
-    private Node build(List<Integer> points, boolean parallel)
+    /**
+     * Builds the children of a branch, in parallel if requested. 
+     */
+    private void buildChildren(Branch branch, List<Integer> left_children, List<Integer> right_children, Random rand, boolean parallel)
+    {
+        //drawn in the same order either way, so the tree does not depend on the threads used
+        final Random rand_l = RandomUtil.getRandom(rand.nextInt());
+        final Random rand_r = RandomUtil.getRandom(rand.nextInt());
+        if(parallel)
+        {
+            ForkJoinTask<Node> right = ForkJoinTask.adapt(() -> build(right_children, rand_r, true)).fork();
+            branch.left_child = build(left_children, rand_l, true);
+            branch.right_child = right.join();
+        }
+        else
+        {
+            branch.left_child = build(left_children, rand_l, false);
+            branch.right_child = build(right_children, rand_r, false);
+        }
+        branch.left_child.parent = branch;
+        branch.right_child.parent = branch;
+    }
+    
+    /**
+     * Builds the sub-tree for the given points
+     * @param points the points to build a tree for
+     * @param rand the source of randomness for the sub-tree
+     * @param parallel {@code true} if large nodes should be built using 
+     * multiple threads. Only valid from within a fork-join pool. 
+     * @return the root of the sub-tree
+     */
+    private Node build(List<Integer> points, Random rand, boolean parallel)
     {
         //universal base case
         if(points.size() <= leaf_size)
@@ -722,11 +819,11 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         switch(construction_method)
         {
             case ANCHORS_HIERARCHY:
-                return build_anchors(points, parallel);
+                return build_anchors(points, rand, parallel);
             case KD_STYLE:
-                return build_kd(points, parallel);
+                return build_kd(points, rand, parallel);
             case TOP_DOWN_FARTHEST:
-                return build_far_top_down(points, parallel);
+                return build_far_top_down(points, rand, parallel);
                 
         }
         return new Leaf(new IntList(0));
@@ -738,13 +835,18 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         this.allVecs = new ArrayList<>(collection);
         setDistanceMetric(dm);
         this.cache = dm.getAccelerationCache(allVecs, parallel);
-        this.root = build(IntList.range(collection.size()), parallel);
+        Random rand = RandomUtil.getRandom();
+        if(!parallel)
+            this.root = build(IntList.range(collection.size()), rand, false);
+        else
+            this.root = ParallelUtils.invoke(ForkJoinTask.adapt(() -> build(IntList.range(collection.size()), rand, true)));
+        setCompactLayout(compactLayout);
     }
 
     @Override
     public void insert(V x)
     {
-
+        compact = null;
         if(root == null)
         {
             allVecs = new ArrayList<>();
@@ -777,7 +879,7 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
                 
                 if(lroot.children.size() > leaf_size)
                 {
-                    Node newNode = build(lroot.children, false);
+                    Node newNode = build(lroot.children, RandomUtil.getRandom(), false);
                     if(parentNode == null)//We are the root node and a leaf
                         root = newNode;
                     else if(parentNode.left_child == curNode)//YES, intentinoally checking object equality
@@ -824,7 +926,10 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
     {
         neighbors.clear();
         distances.clear();
-        root.search(query, dm.getQueryInfo(query), range, neighbors, distances);
+        if(compact != null)
+            compact.search(0, query, dm.getQueryInfo(query), range, neighbors, distances, dm);
+        else
+            root.search(query, dm.getQueryInfo(query), range, neighbors, distances);
         
         IndexTable it = new IndexTable(distances);
         it.apply(distances);
@@ -837,12 +942,18 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         neighbors.clear();
         distances.clear();
         
-        BoundedSortedList<IndexDistPair> knn = new BoundedSortedList<>(numNeighbors);
-        root.search(query, dm.getQueryInfo(query), numNeighbors, knn, Double.POSITIVE_INFINITY);
-        for(IndexDistPair p : knn)
+        BoundedMaxHeap knn = BoundedMaxHeap.acquire(numNeighbors);
+        try
         {
-            neighbors.add(p.indx);
-            distances.add(p.dist);
+            if(compact != null)
+                compact.search(0, query, dm.getQueryInfo(query), numNeighbors, knn, Double.POSITIVE_INFINITY, dm);
+            else
+                root.search(query, dm.getQueryInfo(query), numNeighbors, knn, Double.POSITIVE_INFINITY);
+            knn.drainTo(neighbors, distances);
+        }
+        finally
+        {
+            knn.release();
         }
     }
 
@@ -858,6 +969,122 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         return allVecs.size();
     }
 
+    /**
+     * The tree flattened into primitive arrays, with the nodes in depth first 
+     * order. The left child of a branch is always the next node, and the 
+     * points of each leaf are a contiguous range of {@link #points}. 
+     */
+    private static class CompactBall implements Serializable
+    {
+        private static final long serialVersionUID = 6193318574026817514L;
+        /**
+         * The right child of each branch node, or -1 for leaf nodes
+         */
+        final int[] right;
+        /**
+         * The first and last (exclusive) position in {@link #points} of the 
+         * points in each leaf node
+         */
+        final int[] start, end;
+        final double[] radius;
+        /**
+         * The pivot of each node
+         */
+        final List<Vec> pivots;
+        final CompactPoints points;
+
+        public CompactBall(BallTree<?>.Node root, List<? extends Vec> allVecs, DistanceMetric dm)
+        {
+            int nodes = count(root);
+            right = new int[nodes];
+            start = new int[nodes];
+            end = new int[nodes];
+            radius = new double[nodes];
+            List<Vec> pivot_list = new ArrayList<>(nodes);
+            IntList order = new IntList(allVecs.size());
+            fill(root, 0, order, pivot_list);
+            pivots = CompactPoints.contiguousCopy(pivot_list);
+            points = new CompactPoints(order, allVecs, dm);
+        }
+
+        private static int count(BallTree<?>.Node node)
+        {
+            if(node instanceof BallTree.Leaf)
+                return 1;
+            BallTree<?>.Branch branch = (BallTree<?>.Branch) node;
+            return 1 + count(branch.left_child) + count(branch.right_child);
+        }
+
+        /**
+         * Stores the given subtree starting at position {@code id}
+         * @return the next free position
+         */
+        private int fill(BallTree<?>.Node node, int id, IntList order, List<Vec> pivot_list)
+        {
+            pivot_list.add(node.pivot);
+            radius[id] = node.radius;
+            if(node instanceof BallTree.Leaf)
+            {
+                right[id] = -1;
+                start[id] = order.size();
+                order.addAll(((BallTree<?>.Leaf) node).children);
+                end[id] = order.size();
+                return id+1;
+            }
+            BallTree<?>.Branch branch = (BallTree<?>.Branch) node;
+            right[id] = fill(branch.left_child, id+1, order, pivot_list);
+            return fill(branch.right_child, right[id], order, pivot_list);
+        }
+
+        public void search(int id, Vec query, List<Double> qi, double range, List<Integer> neighbors, List<Double> distances, DistanceMetric dm)
+        {
+            if(right[id] < 0)
+            {
+                for(int j = start[id]; j < end[id]; j++)
+                {
+                    double dist = points.dist(j, query, qi, dm);
+                    if(dist <= range)
+                    {
+                        neighbors.add(points.order[j]);
+                        distances.add(dist);
+                    }
+                }
+                return;
+            }
+            if(dm.dist(query, pivots.get(id)) - radius[id] >= range)
+                return;//We can prune this branch!
+            search(id+1, query, qi, range, neighbors, distances, dm);
+            search(right[id], query, qi, range, neighbors, distances, dm);
+        }
+
+        public void search(int id, Vec query, List<Double> qi, int numNeighbors, BoundedMaxHeap knn, double pivot_to_query, DistanceMetric dm)
+        {
+            if(right[id] < 0)
+            {
+                for(int j = start[id]; j < end[id]; j++)
+                    knn.offer(points.order[j], points.dist(j, query, qi, dm));
+                return;
+            }
+            if(Double.isInfinite(pivot_to_query))//can happen for first call
+                pivot_to_query = dm.dist(query, pivots.get(id));
+            if(knn.size() >= numNeighbors && pivot_to_query - radius[id] >= knn.peekValue())
+                return;//We can prune this branch!
+            double dist_left = dm.dist(query, pivots.get(id+1));
+            double dist_right = dm.dist(query, pivots.get(right[id]));
+
+            if(dist_right < dist_left)
+            {
+                search(right[id], query, qi, numNeighbors, knn, dist_right, dm);
+                search(id+1, query, qi, numNeighbors, knn, dist_left, dm);
+            }
+            else
+            {
+                search(id+1, query, qi, numNeighbors, knn, dist_left, dm);
+                search(right[id], query, qi, numNeighbors, knn, dist_right, dm);
+            }
+        }
+    }
+    
     private abstract class Node implements Cloneable, Serializable, Iterable<Integer>, IndexNode<Node>
     {
         Vec pivot;
@@ -880,26 +1107,40 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         }
         
         public void setPivot(List<Integer> points)
+        {
+            setPivot(points, false);
+        }
+        
+        public void setPivot(List<Integer> points, boolean parallel)
         {
             if(points.size() == 1)
                 pivot = get(points.get(0)).clone();
             else
-                pivot = pivot_method.getPivot(false, points, allVecs, dm, cache);
+                pivot = pivot_method.getPivot(parallel, points, allVecs, dm, cache);
             pivot_qi = dm.getQueryInfo(pivot);
         }
         
         public void setRadius(List<Integer> points)
         {
-            this.radius = 0;
-            for(int i : points)
-                radius = Math.max(radius, dm.dist(i, pivot, pivot_qi, allVecs, cache));
+            setRadius(points, false);
+        }
+        
+        public void setRadius(List<Integer> points, boolean parallel)
+        {
+            this.radius = ParallelUtils.run(parallel, points.size(), (start, end) ->
+            {
+                double r = 0;
+                for(int i = start; i < end; i++)
+                    r = Math.max(r, dm.dist(points.get(i), pivot, pivot_qi, allVecs, cache));
+                return r;
+            }, Math::max);
         }
         
         abstract public int findMaxDepth(int curDepth);
         
         abstract public void search(Vec query, List<Double> qi, double range, List<Integer> neighbors, List<Double> distances);
         
-        abstract public void search(Vec query, List<Double> qi, int numNeighbors, BoundedSortedList<IndexDistPair> knn, double pivot_to_query);
+        abstract public void search(Vec query, List<Double> qi, int numNeighbors, BoundedMaxHeap knn, double pivot_to_query);
 
         @Override
         public double minNodeDistance(int other)
@@ -994,10 +1235,10 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         }
 
         @Override
-        public void search(Vec query, List<Double> qi, int numNeighbors, BoundedSortedList<IndexDistPair> knn, double pivot_to_query)
+        public void search(Vec query, List<Double> qi, int numNeighbors, BoundedMaxHeap knn, double pivot_to_query)
         {
             for(int indx : children)
-                knn.add(new IndexDistPair(indx, dm.dist(indx, query, qi, allVecs, cache)));
+                knn.offer(indx, dm.dist(indx, query, qi, allVecs, cache));
         }
 
         @Override
@@ -1069,11 +1310,11 @@ public class BallTree<V extends Vec> implements IncrementalCollection<V>, DualTr
         }
 
         @Override
-        public void search(Vec query, List<Double> qi, int numNeighbors, BoundedSortedList<IndexDistPair> knn, double pivot_to_query)
+        public void search(Vec query, List<Double> qi, int numNeighbors, BoundedMaxHeap knn, double pivot_to_query)
         {
             if(Double.isInfinite(pivot_to_query))//can happen for first call
                 pivot_to_query = dm.dist(query, pivot);
-            if(knn.size() >= numNeighbors && pivot_to_query - radius >= knn.last().dist)
+            if(knn.size() >= numNeighbors && pivot_to_query - radius >= knn.peekValue())
                 return;//We can prune this branch!
             double dist_left = dm.dist(query, left_child.pivot);
             double dist_right = dm.dist(query, right_child.pivot);
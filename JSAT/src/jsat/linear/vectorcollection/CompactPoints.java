@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.vectorcollection;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.linear.distancemetrics.DistanceMetric;
+
+/**
+ * Holds the points of a tree based {@link VectorCollection} re-ordered by a
+ * depth first traversal of the tree, so that the points a leaf node visits are
+ * stored next to each other. When all the points are dense, their values are
+ * copied into a single backing array in that order. Positions in this
+ * collection are mapped back to the index of the point in the original
+ * collection by {@link #order}.
+ *
+ * @author Edward Raff
+ */
+class CompactPoints implements Serializable
+{
+    private static final long serialVersionUID = 2978124716431540236L;
+    /**
+     * The index in the original collection of the point at each position
+     */
+    final int[] order;
+    /**
+     * The points in traversal order
+     */
+    final List<Vec> vecs;
+    /**
+     * The acceleration cache for {@link #vecs}, may be {@code null}
+     */
+    final List<Double> cache;
+
+    /**
+     *
+     * @param order the index of each point in the original collection, in
+     * the order they should be stored
+     * @param allVecs the points of the original collection
+     * @param dm the distance metric in use
+     */
+    public CompactPoints(List<Integer> order, List<? extends Vec> allVecs, DistanceMetric dm)
+    {
+        final int n = order.size();
+        this.order = new int[n];
+        for(int i = 0; i < n; i++)
+            this.order[i] = order.get(i);
+        List<Vec> ordered = new ArrayList<>(n);
+        for(int i = 0; i < n; i++)
+            ordered.add(allVecs.get(this.order[i]));
+        this.vecs = contiguousCopy(ordered);
+        this.cache = dm.getAccelerationCache(vecs);
+    }
+
+    /**
+     * Copies the given vectors into a single backing array, in order. If any 
+     * of the vectors are sparse, or they are not all the same length, the 
+     * vectors are returned as they are instead. 
+     *
+     * @param vecs the vectors to copy
+     * @return a list of the copied vectors
+     */
+    public static List<Vec> contiguousCopy(List<? extends Vec> vecs)
+    {
+        final int n = vecs.size();
+        boolean dense = n > 0;
+        for(int i = 0; i < n && dense; i++)
+            dense = vecs.get(i) != null && !vecs.get(i).isSparse() && vecs.get(i).length() == vecs.get(0).length();
+        if(!dense)//sparse points would take too much memory, keep the originals
+            return new ArrayList<>(vecs);
+
+        List<Vec> copy = new ArrayList<>(n);
+        int d = vecs.get(0).length();
+        double[] backing = new double[n*d];
+        for(int i = 0; i < n; i++)
+        {
+            DenseVector v = new DenseVector(backing, i*d, (i+1)*d);
+            vecs.get(i).copyTo(v);
+            copy.add(v);
+        }
+        return copy;
+    }
+
+    /**
+     * Computes the distance between the point at the given position and a
+     * query
+     *
+     * @param pos the position of the point in this collection
+     * @param query the query point
+     * @param qi the query information for the query
+     * @param dm the distance metric in use
+     * @return the distance between the two
+     */
+    public double dist(int pos, Vec query, List<Double> qi, DistanceMetric dm)
+    {
+        return dm.dist(pos, query, qi, vecs, cache);
+    }
+}
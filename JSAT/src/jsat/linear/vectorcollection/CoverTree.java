@@ -28,7 +28,7 @@ import java.util.stream.Collectors;
 import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.math.FastMath;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.DoubleList;
 import jsat.utils.IndexTable;
 import jsat.utils.IntList;
@@ -64,6 +64,12 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
     private List<V> vecs;
     private List<Double> accell_cache = null;
     private TreeNode root = null;
+    /**
+     * The flattened copy of the tree used for searching, or {@code null} if 
+     * the object tree is searched directly
+     */
+    private CompactCover compact;
+    private boolean compactLayout = false;
     private boolean maxDistDirty = false;
 //    private boolean nearest_ancestor = false;
     private boolean looseBounds = false;
@@ -117,6 +123,8 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
             this.accell_cache = new DoubleList(toCopy.accell_cache);
         if(toCopy.root != null)
             this.root = new TreeNode(toCopy.root);
+        this.compactLayout = toCopy.compactLayout;
+        this.compact = toCopy.compact;//never modified, so can be shared
     }
     
     @Override
@@ -163,6 +171,7 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
                 iter.next().maxdist();
             }
         }
+        setCompactLayout(compactLayout);
     }
     
     /**
@@ -300,13 +309,47 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
         this.looseBounds = looseBounds;
     }
 
+    /**
+     * Sets whether a compact copy of the tree should be used for searching. 
+     * The compact layout stores the nodes, their children, and their maximum 
+     * descendant distances in primitive arrays in depth first order, and 
+     * copies each node's point into one contiguous block of memory in the same 
+     * order, which avoids chasing pointers through objects scattered across 
+     * the heap. It costs a copy of the data set. <br>
+     * Inserting a new point discards the compact layout, which will be 
+     * re-created the next time the tree is built or this method is called. 
+     *
+     * @param compactLayout {@code true} to search a compact copy of the tree, 
+     * {@code false} to search the tree of node objects
+     */
+    public void setCompactLayout(boolean compactLayout)
+    {
+        this.compactLayout = compactLayout;
+        if(compactLayout && root != null)
+            compact = new CompactCover(root, vecs, dm);
+        else
+            compact = null;
+    }
+
+    /**
+     *
+     * @return {@code true} if a compact copy of the tree is searched
+     */
+    public boolean isCompactLayout()
+    {
+        return compactLayout;
+    }
+
     @Override
     public void search(Vec query, double range, List<Integer> neighbors, List<Double> distances)
     {
         neighbors.clear();
         distances.clear();
         
-        this.root.findNN(range, query, dm.getQueryInfo(query), neighbors, distances, -1.0);
+        if(compact != null)
+            compact.findNN(0, range, query, dm.getQueryInfo(query), neighbors, distances, -1.0, dm);
+        else
+            this.root.findNN(range, query, dm.getQueryInfo(query), neighbors, distances, -1.0);
         
         IndexTable it = new IndexTable(distances);
         it.apply(distances);
@@ -321,14 +364,20 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
 //            this.root.invalidateMaxDist();
 //            maxDistDirty = false;
 //        }
-        BoundedSortedList<IndexDistPair> bsl = new BoundedSortedList<>(numNeighbors);
-        this.root.findNN(numNeighbors, query, dm.getQueryInfo(query), bsl);
-        neighbors.clear();
-        distances.clear();
-        for(IndexDistPair a : bsl)
+        BoundedMaxHeap bsl = BoundedMaxHeap.acquire(numNeighbors);
+        try
         {
-            neighbors.add(a.getIndex());
-            distances.add(a.getDist());
+            if(compact != null)
+                compact.findNN(numNeighbors, query, dm.getQueryInfo(query), bsl, dm);
+            else
+                this.root.findNN(numNeighbors, query, dm.getQueryInfo(query), bsl);
+            neighbors.clear();
+            distances.clear();
+            bsl.drainTo(neighbors, distances);
+        }
+        finally
+        {
+            bsl.release();
         }
     }
     
@@ -469,9 +518,119 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
     public void insert(V x)
     {
 //        maxDistDirty = true;
+        compact = null;
         simpleInsert(x);
     }
     
+    /**
+     * The tree flattened into primitive arrays, with the nodes in depth first 
+     * order. The point of each node is stored at the node's own position in 
+     * {@link #points}, and the children of each node are listed in 
+     * {@link #children} from {@code child_start[id]} up to 
+     * {@code child_start[id+1]}. 
+     */
+    private static class CompactCover implements Serializable
+    {
+        private static final long serialVersionUID = -2290613526004917312L;
+        final int[] child_start;
+        final int[] children;
+        /**
+         * The maximum distance from each node to any of its descendants
+         */
+        final double[] maxdist;
+        final CompactPoints points;
+
+        public CompactCover(CoverTree<?>.TreeNode root, List<? extends Vec> vecs, DistanceMetric dm)
+        {
+            int nodes = root.magnitude();
+            child_start = new int[nodes+1];
+            children = new int[nodes-1];
+            maxdist = new double[nodes];
+            IntList order = new IntList(nodes);
+            fill(root, order, new int[1]);
+            points = new CompactPoints(order, vecs, dm);
+        }
+
+        /**
+         * Stores the given subtree at the next free node position, and its 
+         * children's lists at the next free positions of {@link #children}
+         * @param childPos the next free position in {@link #children}
+         * @return the position of the node
+         */
+        private int fill(CoverTree<?>.TreeNode node, IntList order, int[] childPos)
+        {
+            int id = order.size();
+            order.add(node.vec_indx);
+            maxdist[id] = node.maxdist();
+            //reserve this node's range of the child list before its descendants take theirs
+            int start = childPos[0];
+            child_start[id] = start;
+            childPos[0] += node.numChildren();
+            child_start[id+1] = childPos[0];
+            for(int i = 0; i < node.numChildren(); i++)
+                children[start+i] = fill(node.getChild(i), order, childPos);
+            return id;
+        }
+
+        /**
+         * Performs a KNN query, see 
+         * {@link TreeNode#findNN(int, jsat.linear.Vec, java.util.List, jsat.utils.BoundedMaxHeap) }
+         */
+        public void findNN(int k, Vec query, List<Double> x_qi, BoundedMaxHeap knn, DistanceMetric dm)
+        {
+            IntList toEval_stack = new IntList();
+            DoubleList dist_to_q_stack = new DoubleList();
+            dist_to_q_stack.push(points.dist(0, query, x_qi, dm));
+            toEval_stack.add(0);
+
+            while(!toEval_stack.isEmpty())
+            {
+                int p = toEval_stack.remove(toEval_stack.size()-1);
+                double p_to_q_dist = dist_to_q_stack.pop();
+                knn.offer(points.order[p], p_to_q_dist);
+
+                int start = child_start[p], end = child_start[p+1];
+                double[] child_query_dist = new double[end-start];
+                for(int i = 0; i < child_query_dist.length; i++)
+                    child_query_dist[i] = points.dist(children[start+i], query, x_qi, dm);
+
+                //get them in sorted order
+                IndexTable it = new IndexTable(child_query_dist);
+                for(int i_oder = it.length()-1; i_oder >= 0; i_oder--)//reverse order so stack goes in sorted order
+                {
+                    final int i = it.index(i_oder);
+                    int q = children[start+i];
+                    if(knn.size() < k || knn.peekValue() > child_query_dist[i] - maxdist[q])
+                    {
+                        toEval_stack.add(q);
+                        dist_to_q_stack.push(child_query_dist[i]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Performs a range query on the given node, see 
+         * {@link TreeNode#findNN(double, jsat.linear.Vec, java.util.List, java.util.List, java.util.List, double) }
+         */
+        public void findNN(int p, double radius, Vec x, List<Double> x_qi, List<Integer> neighbors, List<Double> distances, double my_dist_to_x, DistanceMetric dm)
+        {
+            double p_x_dist = my_dist_to_x < 0 ? points.dist(p, x, x_qi, dm) : my_dist_to_x;
+            if(p_x_dist <= radius)
+            {
+                neighbors.add(points.order[p]);
+                distances.add(p_x_dist);
+            }
+            for(int c = child_start[p]; c < child_start[p+1]; c++)
+            {
+                int q = children[c];
+                double q_x_dist = points.dist(q, x, x_qi, dm);
+                if(radius > q_x_dist - maxdist[q])
+                    findNN(q, radius, x, x_qi, neighbors, distances, q_x_dist, dm);
+            }
+        }
+    }
+    
     private class TreeNode implements Cloneable, Serializable
     {
         TreeNode parent = null;
@@ -538,7 +697,7 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
                 this.parent.invalParentMaxdist();
         }
         
-        public void findNN(int k, Vec query, List<Double> x_qi, BoundedSortedList<IndexDistPair> knn)
+        public void findNN(int k, Vec query, List<Double> x_qi, BoundedMaxHeap knn)
         {
             Stack<TreeNode> toEval_stack = new Stack<>();
             DoubleList dist_to_q_stack = new DoubleList();
@@ -553,7 +712,7 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
             {
                 TreeNode p = toEval_stack.pop();
                 double p_to_q_dist = dist_to_q_stack.pop();
-                knn.add(new IndexDistPair(p.vec_indx, p_to_q_dist));
+                knn.offer(p.vec_indx, p_to_q_dist);
                 
                 double[] child_query_dist = new double[p.numChildren()];
                 for(int child_indx = 0; child_indx < p.numChildren(); child_indx++)//compute dists and add to knn while we are at it
@@ -570,7 +729,7 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
                     TreeNode q = p.getChild(i);
                     
                     //4:  if d(y,x)>d(y,q)−maxdist(q) then
-                    if(knn.size() < k || knn.last().getDist() > child_query_dist[i] - q.maxdist())
+                    if(knn.size() < k || knn.peekValue() > child_query_dist[i] - q.maxdist())
                     {//Add to the search Q
                         toEval_stack.push(q);
                         dist_to_q_stack.push(child_query_dist[i]);
@@ -580,7 +739,7 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
         }
         
         //This is the old search code, new code (above) avoids recursion and makes explicit stack
-        private void findNN_recurse(int k, Vec x, List<Double> x_qi, BoundedSortedList<IndexDistPair> knn, double my_dist_to_x)
+        private void findNN_recurse(int k, Vec x, List<Double> x_qi, BoundedMaxHeap knn, double my_dist_to_x)
         {
             TreeNode p = this;
             
@@ -592,9 +751,9 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
             }
             else
                 p_x_dist = my_dist_to_x;
-            knn.add(new IndexDistPair(p.vec_indx, p_x_dist));
+            knn.offer(p.vec_indx, p_x_dist);
             //1: if d(p,x)<d(y,x) then, handled implicitly by knn object
-//            if(knn.size() < k || p_x_dist < knn.last().getDist())
+//            if(knn.size() < k || p_x_dist < knn.peekValue())
 //            knn.add(new ProbailityMatch<V>(p_x_dist, vecs.get(p.vec_indx)));//2: y <= p
             //3: for each child q of p sorted by *distance to x* do
             double[] q_x_dist = new double[p.numChildren()];
@@ -616,8 +775,8 @@ public final class CoverTree<V extends Vec> implements IncrementalCollection<V>
                 TreeNode q = p.getChild(i);
 //                knn.add(new ProbailityMatch<V>(q_x_dist[i], vecs.get(q.vec_indx)));
                 //4:  if d(y,x)>d(y,q)−maxdist(q) then
-//                if(knn.size() < k || knn.last().getDist() > q.dist(y_vec, dm.getQueryInfo(y_vec)) - q.maxdist())
-                if(knn.size() < k || knn.last().getDist() > q_x_dist[i] - q.maxdist())
+//                if(knn.size() < k || knn.peekValue() > q.dist(y_vec, dm.getQueryInfo(y_vec)) - q.maxdist())
+                if(knn.size() < k || knn.peekValue() > q_x_dist[i] - q.maxdist())
                     q.findNN_recurse(k, x, x_qi, knn, q_x_dist[i]);//Line 5:
 //                else if(q.isLeaf())
 //                {
@@ -37,6 +37,7 @@ import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.math.FastMath;
 import jsat.utils.ArrayUtils;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.DoubleList;
 import jsat.utils.IndexTable;
 import jsat.utils.Pair;
@@ -458,20 +459,19 @@ public class DCI<V extends Vec> implements VectorCollection<V>
 	for(Set<Integer> S_l : S)
 	    candidates.addAll(S_l);
 	
-	List<Double> qi = euclid.getQueryInfo(query);
-	for(int i : candidates)
+	//keep only the closest candidates
+	BoundedMaxHeap knn = BoundedMaxHeap.acquire(numNeighbors);
+	try
 	{
-	    neighbors.add(i);
-	    distances.add(euclid.dist(i, query, qi, vecs, cache));
+	    List<Double> qi = euclid.getQueryInfo(query);
+	    for(int i : candidates)
+		knn.offer(i, euclid.dist(i, query, qi, vecs, cache));
+	    knn.drainTo(neighbors, distances);
+	}
+	finally
+	{
+	    knn.release();
 	}
-
-	//sort by distance and remove excess
-	IndexTable it = new IndexTable(distances);
-	it.apply(neighbors);
-	it.apply(distances);
-
-	neighbors.subList(numNeighbors, neighbors.size()).clear();
-	distances.subList(numNeighbors, distances.size()).clear();
     }
 
     @Override
@@ -0,0 +1,620 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.vectorcollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+import jsat.linear.Vec;
+import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.DoubleList;
+import jsat.utils.IntSet;
+import jsat.utils.concurrent.ParallelUtils;
+import jsat.utils.random.RandomUtil;
+
+/**
+ * This class implements the Hierarchical Navigable Small World (HNSW) graph for
+ * approximate nearest neighbor search. Each point is linked to a small number
+ * of its neighbors in a proximity graph, and a random subset of the points is
+ * also placed in a hierarchy of sparser graphs above it. A query walks greedily
+ * down the hierarchy and then does a best-first search of the bottom graph,
+ * so only a small fraction of the points have their distance to the query
+ * computed. Unlike the exact trees, this does not degrade toward brute force in
+ * high dimensions, and it works with any {@link DistanceMetric}.<br>
+ * <br>
+ * The k-NN search is approximate, and its recall is controlled by
+ * {@link #setEfSearch(int) efSearch}, the number of candidates kept during a
+ * query. The quality of the graph is controlled by
+ * {@link #setM(int) M}, the number of links per point, and
+ * {@link #setEfConstruction(int) efConstruction}, the number of candidates
+ * kept while inserting. Range searches are answered by repeating the k-NN
+ * search with a growing number of candidates until one falls outside the
+ * range, and are approximate as well. <br>
+ * Construction may be done in parallel, with points inserted into the graph
+ * concurrently. The graph built then depends on the thread scheduling.
+ * <br>
+ * See:
+ * <ul>
+ * <li>Malkov, Y. A., & Yashunin, D. A. (2018). <i>Efficient and robust
+ * approximate nearest neighbor search using Hierarchical Navigable Small World
+ * graphs</i>. IEEE Transactions on Pattern Analysis and Machine
+ * Intelligence.</li>
+ * </ul>
+ *
+ * @author Edward Raff
+ * @param <V>
+ */
+public class HNSW<V extends Vec> implements IncrementalCollection<V>
+{
+    private static final long serialVersionUID = 4315713947296614381L;
+
+    private DistanceMetric dm;
+    private List<V> vecs;
+    private List<Double> cache;
+    /**
+     * The target number of links per point in each layer. The bottom layer
+     * allows up to twice as many.
+     */
+    private int M;
+    private int efConstruction;
+    private int efSearch;
+    /**
+     * links.get(i)[l] holds the links of point i in layer l. The first value is
+     * the number of links, followed by the linked indices. The int[][] of each
+     * point is locked when reading or altering its links.
+     */
+    private List<int[][]> links;
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+    private Random rand;
+
+    /**
+     * Creates a new empty HNSW using the {@link EuclideanDistance}
+     */
+    public HNSW()
+    {
+        this(new EuclideanDistance());
+    }
+
+    /**
+     * Creates a new empty HNSW with M = 16, efConstruction = 200, and efSearch
+     * = 50
+     *
+     * @param dm the distance metric to use
+     */
+    public HNSW(DistanceMetric dm)
+    {
+        this(dm, 16, 200, 50);
+    }
+
+    /**
+     * Creates a new empty HNSW
+     *
+     * @param dm the distance metric to use
+     * @param M the number of links per point
+     * @param efConstruction the number of candidates to keep when inserting a
+     * point
+     * @param efSearch the number of candidates to keep when searching
+     */
+    public HNSW(DistanceMetric dm, int M, int efConstruction, int efSearch)
+    {
+        setDistanceMetric(dm);
+        setM(M);
+        setEfConstruction(efConstruction);
+        setEfSearch(efSearch);
+        this.vecs = new ArrayList<>();
+        this.links = new ArrayList<>();
+        this.rand = RandomUtil.getRandom();
+    }
+
+    /**
+     * Creates a new HNSW from the given points
+     *
+     * @param source the points to build the index from
+     * @param dm the distance metric to use
+     */
+    public HNSW(List<V> source, DistanceMetric dm)
+    {
+        this(source, dm, false);
+    }
+
+    /**
+     * Creates a new HNSW from the given points
+     *
+     * @param source the points to build the index from
+     * @param dm the distance metric to use
+     * @param parallel {@code true} if the index should be built in parallel
+     */
+    public HNSW(List<V> source, DistanceMetric dm, boolean parallel)
+    {
+        this(dm);
+        build(parallel, source, dm);
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param toCopy the object to copy
+     */
+    public HNSW(HNSW<V> toCopy)
+    {
+        this.dm = toCopy.dm.clone();
+        this.M = toCopy.M;
+        this.efConstruction = toCopy.efConstruction;
+        this.efSearch = toCopy.efSearch;
+        this.vecs = new ArrayList<>(toCopy.vecs);
+        if(toCopy.cache != null)
+            this.cache = new DoubleList(toCopy.cache);
+        this.links = new ArrayList<>(toCopy.links.size());
+        for(int[][] l_i : toCopy.links)
+        {
+            int[][] copy = new int[l_i.length][];
+            for(int l = 0; l < l_i.length; l++)
+                copy[l] = Arrays.copyOf(l_i[l], l_i[l].length);
+            this.links.add(copy);
+        }
+        this.entryPoint = toCopy.entryPoint;
+        this.maxLevel = toCopy.maxLevel;
+        this.rand = RandomUtil.getRandom();
+    }
+
+    /**
+     * Sets the number of links each point makes to its neighbors in each layer
+     * of the graph, with up to 2M links allowed in the bottom layer. Larger
+     * values give better recall, especially for high dimensional data, at the
+     * cost of memory and slower insertions and queries. Values in the range of
+     * 8 to 48 are typical. The new value takes effect the next time the index
+     * is built.
+     *
+     * @param M the number of links per point
+     */
+    public void setM(int M)
+    {
+        if(M < 2)
+            throw new IllegalArgumentException("M must be at least 2, not " + M);
+        this.M = M;
+    }
+
+    /**
+     *
+     * @return the number of links per point
+     */
+    public int getM()
+    {
+        return M;
+    }
+
+    /**
+     * Sets the number of candidate neighbors kept while inserting a point into
+     * the graph. Larger values build a better graph more slowly.
+     *
+     * @param efConstruction the number of candidates to keep when inserting a
+     * point
+     */
+    public void setEfConstruction(int efConstruction)
+    {
+        if(efConstruction < 1)
+            throw new IllegalArgumentException("efConstruction must be positive, not " + efConstruction);
+        this.efConstruction = efConstruction;
+    }
+
+    /**
+     *
+     * @return the number of candidates to keep when inserting a point
+     */
+    public int getEfConstruction()
+    {
+        return efConstruction;
+    }
+
+    /**
+     * Sets the number of candidate neighbors kept while searching. This is the
+     * main trade off between the speed and the recall of a search, and may be
+     * changed at any time. A k-NN search always keeps at least <i>k</i>
+     * candidates.
+     *
+     * @param efSearch the number of candidates to keep when searching
+     */
+    public void setEfSearch(int efSearch)
+    {
+        if(efSearch < 1)
+            throw new IllegalArgumentException("efSearch must be positive, not " + efSearch);
+        this.efSearch = efSearch;
+    }
+
+    /**
+     *
+     * @return the number of candidates to keep when searching
+     */
+    public int getEfSearch()
+    {
+        return efSearch;
+    }
+
+    @Override
+    public void build(boolean parallel, List<V> collection, DistanceMetric dm)
+    {
+        setDistanceMetric(dm);
+        this.vecs = new ArrayList<>(collection);
+        this.cache = dm.getAccelerationCache(vecs, parallel);
+        this.links = new ArrayList<>(vecs.size());
+        this.entryPoint = -1;
+        this.maxLevel = -1;
+        //levels are drawn up front so that they do not depend on the insertion order
+        for(int i = 0; i < vecs.size(); i++)
+            links.add(newLinks(randomLevel()));
+        if(vecs.isEmpty())
+            return;
+        link(0);
+        ParallelUtils.run(parallel, vecs.size()-1, i -> link(i+1));
+    }
+
+    @Override
+    public void insert(V x)
+    {
+        int q = vecs.size();
+        vecs.add(x);
+        if(cache == null && dm.supportsAcceleration())
+            cache = new DoubleList();
+        if(cache != null)
+            cache.addAll(dm.getQueryInfo(x));
+        links.add(newLinks(randomLevel()));
+        link(q);
+    }
+
+    @Override
+    public void setDistanceMetric(DistanceMetric dm)
+    {
+        this.dm = dm;
+    }
+
+    @Override
+    public DistanceMetric getDistanceMetric()
+    {
+        return dm;
+    }
+
+    @Override
+    public void search(Vec query, double range, List<Integer> neighbors, List<Double> distances)
+    {
+        neighbors.clear();
+        distances.clear();
+        if(entryPoint < 0)
+            return;
+        List<Double> qi = dm.getQueryInfo(query);
+        IntToDoubleFunction d = j -> dm.dist(j, query, qi, vecs, cache);
+
+        int ef = efSearch;
+        List<IndexDistPair> W = search(d, ef);
+        //keep widening the search until it reaches past the range, or runs out of points
+        while(W.size() == ef && W.get(ef-1).getDist() <= range)
+        {
+            ef *= 2;
+            W = search(d, ef);
+        }
+
+        for(IndexDistPair p : W)
+        {
+            if(p.getDist() > range)
+                break;
+            neighbors.add(p.getIndex());
+            distances.add(p.getDist());
+        }
+    }
+
+    @Override
+    public void search(Vec query, int numNeighbors, List<Integer> neighbors, List<Double> distances)
+    {
+        neighbors.clear();
+        distances.clear();
+        if(entryPoint < 0)
+            return;
+        List<Double> qi = dm.getQueryInfo(query);
+        List<IndexDistPair> W = search(j -> dm.dist(j, query, qi, vecs, cache), Math.max(efSearch, numNeighbors));
+        for(int i = 0; i < Math.min(numNeighbors, W.size()); i++)
+        {
+            neighbors.add(W.get(i).getIndex());
+            distances.add(W.get(i).getDist());
+        }
+    }
+
+    @Override
+    public V get(int indx)
+    {
+        return vecs.get(indx);
+    }
+
+    @Override
+    public List<Double> getAccelerationCache()
+    {
+        return cache;
+    }
+
+    @Override
+    public int size()
+    {
+        return vecs.size();
+    }
+
+    @Override
+    public HNSW<V> clone()
+    {
+        return new HNSW<>(this);
+    }
+
+    /**
+     * Draws the top layer of a new point from an exponentially decaying
+     * distribution, so that each layer has about 1/M as many points as the one
+     * below it.
+     *
+     * @return the top layer for a new point
+     */
+    private int randomLevel()
+    {
+        return (int) (-Math.log(1-rand.nextDouble())/Math.log(M));
+    }
+
+    private int[][] newLinks(int level)
+    {
+        int[][] l_i = new int[level+1][];
+        l_i[0] = new int[2*M+1];
+        for(int l = 1; l <= level; l++)
+            l_i[l] = new int[M+1];
+        return l_i;
+    }
+
+    /**
+     * Returns a copy of the links of a point
+     *
+     * @param i the index of the point
+     * @param layer the layer of the graph
+     * @return the indices the point links to in the given layer
+     */
+    private int[] neighbors(int i, int layer)
+    {
+        int[][] l_i = links.get(i);
+        synchronized(l_i)
+        {
+            if(layer >= l_i.length)
+                return new int[0];
+            int[] l = l_i[layer];
+            return Arrays.copyOfRange(l, 1, l[0]+1);
+        }
+    }
+
+    /**
+     * Links an already stored point into the graph, becoming the new entry
+     * point if its top layer is higher than that of every other point.
+     *
+     * @param q the index of the point to link
+     */
+    private void link(int q)
+    {
+        int level = links.get(q).length-1;
+        if(level > maxLevel)
+            synchronized(this)
+            {
+                if(level > maxLevel)
+                {
+                    connect(q, level);
+                    //entry point is written first, so a reader that sees the new level also sees the new entry
+                    entryPoint = q;
+                    maxLevel = level;
+                    return;
+                }
+            }
+        connect(q, level);
+    }
+
+    /**
+     * Finds the neighbors of a point in each of its layers, and adds links in
+     * both directions between the point and its neighbors.
+     *
+     * @param q the index of the point to connect
+     * @param level the top layer of the point
+     */
+    private void connect(int q, int level)
+    {
+        int L = maxLevel;
+        int ep = entryPoint;
+        if(ep < 0)
+            return;
+        IntToDoubleFunction d = j -> dm.dist(q, j, vecs, cache);
+        IndexDistPair cur = new IndexDistPair(ep, d.applyAsDouble(ep));
+        for(int layer = L; layer > level; layer--)
+            cur = greedy(cur, layer, d);
+
+        List<IndexDistPair> eps = Collections.singletonList(cur);
+        for(int layer = Math.min(L, level); layer >= 0; layer--)
+        {
+            List<IndexDistPair> W = searchLayer(eps, efConstruction, layer, d);
+            List<IndexDistPair> selected = selectNeighbors(W, M);
+            int[][] q_links = links.get(q);
+            synchronized(q_links)
+            {
+                int[] l = q_links[layer];
+                l[0] = selected.size();
+                for(int i = 0; i < selected.size(); i++)
+                    l[i+1] = selected.get(i).getIndex();
+            }
+            for(IndexDistPair e : selected)
+                addLink(e.getIndex(), q, e.getDist(), layer);
+            eps = W;
+        }
+    }
+
+    /**
+     * Adds a link from point e to point q, pruning the links of e if it has too
+     * many.
+     *
+     * @param e the point to add a link to
+     * @param q the point to be linked to
+     * @param dist the distance between e and q
+     * @param layer the layer of the graph
+     */
+    private void addLink(int e, int q, double dist, int layer)
+    {
+        int[][] e_links = links.get(e);
+        synchronized(e_links)
+        {
+            int[] l = e_links[layer];
+            int cap = l.length-1;
+            if(l[0] < cap)
+            {
+                l[++l[0]] = q;
+                return;
+            }
+            List<IndexDistPair> candidates = new ArrayList<>(cap+1);
+            for(int i = 1; i <= cap; i++)
+                candidates.add(new IndexDistPair(l[i], dm.dist(e, l[i], vecs, cache)));
+            candidates.add(new IndexDistPair(q, dist));
+            Collections.sort(candidates);
+            List<IndexDistPair> selected = selectNeighbors(candidates, cap);
+            l[0] = selected.size();
+            for(int i = 0; i < selected.size(); i++)
+                l[i+1] = selected.get(i).getIndex();
+        }
+    }
+
+    /**
+     * Selects up to m neighbors from a list of candidates, preferring
+     * candidates in different directions. A candidate is kept only if it is
+     * closer to the base point than to every candidate already kept.
+     *
+     * @param candidates the candidates, sorted by distance to the base point
+     * @param m the maximum number of neighbors to select
+     * @return the selected neighbors
+     */
+    private List<IndexDistPair> selectNeighbors(List<IndexDistPair> candidates, int m)
+    {
+        List<IndexDistPair> selected = new ArrayList<>(m);
+        for(IndexDistPair c : candidates)
+        {
+            if(selected.size() >= m)
+                break;
+            boolean keep = true;
+            for(IndexDistPair r : selected)
+                if(dm.dist(c.getIndex(), r.getIndex(), vecs, cache) < c.getDist())
+                {
+                    keep = false;
+                    break;
+                }
+            if(keep)
+                selected.add(c);
+        }
+        return selected;
+    }
+
+    /**
+     * Moves greedily to the neighbor closest to the target until no neighbor is
+     * closer
+     *
+     * @param cur the starting point
+     * @param layer the layer of the graph to search
+     * @param d the distance from a point to the target
+     * @return the closest point found
+     */
+    private IndexDistPair greedy(IndexDistPair cur, int layer, IntToDoubleFunction d)
+    {
+        boolean changed = true;
+        while(changed)
+        {
+            changed = false;
+            for(int e : neighbors(cur.getIndex(), layer))
+            {
+                double d_e = d.applyAsDouble(e);
+                if(d_e < cur.getDist())
+                {
+                    cur = new IndexDistPair(e, d_e);
+                    changed = true;
+                }
+            }
+        }
+        return cur;
+    }
+
+    /**
+     * Searches the whole hierarchy for the points closest to the target
+     *
+     * @param d the distance from a point to the target
+     * @param ef the number of candidates to keep in the bottom layer
+     * @return up to ef points, sorted by distance to the target
+     */
+    private List<IndexDistPair> search(IntToDoubleFunction d, int ef)
+    {
+        int L = maxLevel;
+        int ep = entryPoint;
+        IndexDistPair cur = new IndexDistPair(ep, d.applyAsDouble(ep));
+        for(int layer = L; layer > 0; layer--)
+            cur = greedy(cur, layer, d);
+        return searchLayer(Collections.singletonList(cur), ef, 0, d);
+    }
+
+    /**
+     * Best-first search of one layer of the graph
+     *
+     * @param eps the points to start from
+     * @param ef the number of candidates to keep
+     * @param layer the layer of the graph to search
+     * @param d the distance from a point to the target
+     * @return up to ef points, sorted by distance to the target
+     */
+    private List<IndexDistPair> searchLayer(List<IndexDistPair> eps, int ef, int layer, IntToDoubleFunction d)
+    {
+        IntSet visited = new IntSet(ef*4);
+        PriorityQueue<IndexDistPair> candidates = new PriorityQueue<>();
+        PriorityQueue<IndexDistPair> W = new PriorityQueue<>(Collections.reverseOrder());
+        for(IndexDistPair ep : eps)
+        {
+            visited.add(ep.getIndex());
+            candidates.add(ep);
+            W.add(ep);
+            if(W.size() > ef)
+                W.poll();
+        }
+
+        while(!candidates.isEmpty())
+        {
+            IndexDistPair c = candidates.poll();
+            if(W.size() >= ef && c.getDist() > W.peek().getDist())
+                break;//everything left is farther than the current results
+            for(int e : neighbors(c.getIndex(), layer))
+            {
+                if(!visited.add(e))
+                    continue;
+                double d_e = d.applyAsDouble(e);
+                if(W.size() < ef || d_e < W.peek().getDist())
+                {
+                    IndexDistPair p = new IndexDistPair(e, d_e);
+                    candidates.add(p);
+                    W.add(p);
+                    if(W.size() > ef)
+                        W.poll();
+                }
+            }
+        }
+
+        List<IndexDistPair> result = new ArrayList<>(W);
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,670 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.vectorcollection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import jsat.SimpleDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.clustering.SeedSelectionMethods;
+import jsat.clustering.kmeans.HamerlyKMeans;
+import jsat.linear.DenseMatrix;
+import jsat.linear.DenseVector;
+import jsat.linear.Matrix;
+import jsat.linear.Vec;
+import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.BoundedMaxHeap;
+import jsat.utils.DoubleList;
+import jsat.utils.IndexTable;
+import jsat.utils.IntList;
+import jsat.utils.concurrent.ParallelUtils;
+import jsat.utils.random.RandomUtil;
+
+/**
+ * This class implements the inverted file index with product quantization
+ * (IVF-PQ) for approximate nearest neighbor search in the
+ * {@link EuclideanDistance Euclidean} space, using only a few bytes of memory
+ * per indexed vector. <br>
+ * <br>
+ * The points are first split into {@link #setNumLists(int) lists} by a coarse
+ * k-means quantizer. The residual of each point from its list's centroid is
+ * then split into {@link #setSubspaces(int) subspaces}, and each piece is
+ * replaced by the index of its nearest centroid from a k-means codebook of
+ * 256 codewords for that subspace. Each point is stored as one byte per
+ * subspace, plus its index. A query only scans the
+ * {@link #setProbes(int) lists} whose centroids are closest to it, and
+ * computes the approximate distance to each point in them by summing values
+ * from a table of the distances between the query and every codeword. <br>
+ * The approximate distances may optionally be
+ * {@link #setRerank(int) re-ranked} by computing the exact distance for the
+ * best candidates. <br>
+ * <br>
+ * The codebooks are learned from a {@link #setSampleSize(int) random sample}
+ * of the data. To keep the memory use low, this collection does not copy the
+ * vectors it is built from. It keeps a reference to the given list, which is
+ * only read by {@link #get(int) } and when re-ranking, so the list may be
+ * backed by storage outside of main memory.
+ * <br>
+ * See:
+ * <ul>
+ * <li>Jégou, H., Douze, M., & Schmid, C. (2011). <i>Product Quantization for
+ * Nearest Neighbor Search</i>. IEEE Transactions on Pattern Analysis and
+ * Machine Intelligence, 33(1), 117–128.</li>
+ * </ul>
+ *
+ * @author Edward Raff
+ * @param <V>
+ */
+public class IVFPQ<V extends Vec> implements VectorCollection<V>
+{
+    private static final long serialVersionUID = -3316624207935766154L;
+
+    private static final EuclideanDistance euclid = new EuclideanDistance();
+    /**
+     * The number of codewords in each subspace codebook, so that a code fits
+     * in one byte
+     */
+    private static final int CODEWORDS = 256;
+    /**
+     * The number of points whose distances to the coarse centroids are
+     * computed together
+     */
+    private static final int BLOCK_SIZE = 256;
+    /**
+     * The maximum number of k-means iterations used to learn each quantizer
+     */
+    private static final int KMEANS_ITERATIONS = 25;
+
+    private int numLists;
+    private int subspaces;
+    private int probes;
+    private int rerank;
+    private int sampleSize;
+
+    private List<V> vecs;
+    /**
+     * The coarse quantizer centroids, one per list
+     */
+    private List<Vec> centroids;
+    private List<Double> centroidCache;
+    /**
+     * Subspace j covers the features [subStart[j], subStart[j+1])
+     */
+    private int[] subStart;
+    /**
+     * codebooks[j] holds the codewords of subspace j one after the other
+     */
+    private double[][] codebooks;
+    /**
+     * The indices of the points in each list
+     */
+    private int[][] listIds;
+    /**
+     * The codes of the points in each list, one byte per subspace for each
+     * point, in the same order as {@link #listIds}
+     */
+    private byte[][] listCodes;
+
+    /**
+     * Creates a new IVF-PQ index with 256 lists and 8 subspaces
+     */
+    public IVFPQ()
+    {
+        this(256, 8);
+    }
+
+    /**
+     * Creates a new IVF-PQ index
+     *
+     * @param numLists the number of coarse lists to split the data into
+     * @param subspaces the number of subspaces, which is the number of bytes
+     * used to encode each point
+     */
+    public IVFPQ(int numLists, int subspaces)
+    {
+        setNumLists(numLists);
+        setSubspaces(subspaces);
+        setProbes(8);
+        setRerank(0);
+        setSampleSize(65536);
+    }
+
+    /**
+     * Creates a new IVF-PQ index from the given points
+     *
+     * @param source the points to build the index from
+     * @param numLists the number of coarse lists to split the data into
+     * @param subspaces the number of subspaces, which is the number of bytes
+     * used to encode each point
+     * @param parallel {@code true} if the index should be built in parallel
+     */
+    public IVFPQ(List<V> source, int numLists, int subspaces, boolean parallel)
+    {
+        this(numLists, subspaces);
+        build(parallel, source, euclid);
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param toCopy the object to copy
+     */
+    public IVFPQ(IVFPQ<V> toCopy)
+    {
+        this.numLists = toCopy.numLists;
+        this.subspaces = toCopy.subspaces;
+        this.probes = toCopy.probes;
+        this.rerank = toCopy.rerank;
+        this.sampleSize = toCopy.sampleSize;
+        if(toCopy.listIds != null)
+        {
+            this.vecs = toCopy.vecs;
+            this.centroids = new ArrayList<>(toCopy.centroids.size());
+            for(Vec c : toCopy.centroids)
+                this.centroids.add(c.clone());
+            this.centroidCache = new DoubleList(toCopy.centroidCache);
+            this.subStart = toCopy.subStart.clone();
+            this.codebooks = new double[toCopy.codebooks.length][];
+            for(int j = 0; j < codebooks.length; j++)
+                this.codebooks[j] = toCopy.codebooks[j].clone();
+            this.listIds = new int[toCopy.listIds.length][];
+            this.listCodes = new byte[toCopy.listCodes.length][];
+            for(int c = 0; c < listIds.length; c++)
+            {
+                this.listIds[c] = toCopy.listIds[c].clone();
+                this.listCodes[c] = toCopy.listCodes[c].clone();
+            }
+        }
+    }
+
+    /**
+     * Sets the number of lists the coarse quantizer splits the data into.
+     * More lists means fewer points are scanned for each probe. A value near
+     * the square root of the number of points is typical.
+     *
+     * @param numLists the number of coarse lists
+     */
+    public void setNumLists(int numLists)
+    {
+        if(numLists < 1)
+            throw new IllegalArgumentException("Number of lists must be positive, not " + numLists);
+        this.numLists = numLists;
+    }
+
+    /**
+     *
+     * @return the number of coarse lists
+     */
+    public int getNumLists()
+    {
+        return numLists;
+    }
+
+    /**
+     * Sets the number of subspaces the residuals are split into. Each point is
+     * stored with one byte per subspace, and more subspaces give more accurate
+     * distances. The number of features should be at least the number of
+     * subspaces.
+     *
+     * @param subspaces the number of subspaces
+     */
+    public void setSubspaces(int subspaces)
+    {
+        if(subspaces < 1)
+            throw new IllegalArgumentException("Number of subspaces must be positive, not " + subspaces);
+        this.subspaces = subspaces;
+    }
+
+    /**
+     *
+     * @return the number of subspaces
+     */
+    public int getSubspaces()
+    {
+        return subspaces;
+    }
+
+    /**
+     * Sets the number of lists, closest to the query, that are scanned by a
+     * search. This is the main trade off between the speed and the recall of a
+     * search, and may be changed at any time.
+     *
+     * @param probes the number of lists to scan
+     */
+    public void setProbes(int probes)
+    {
+        if(probes < 1)
+            throw new IllegalArgumentException("Number of probes must be positive, not " + probes);
+        this.probes = probes;
+    }
+
+    /**
+     *
+     * @return the number of lists to scan
+     */
+    public int getProbes()
+    {
+        return probes;
+    }
+
+    /**
+     * Sets the number of candidates, by approximate distance, whose exact
+     * distance to the query is computed to pick the final neighbors. A value of
+     * zero disables re-ranking, and the approximate distances are returned.
+     * Re-ranking reads the original vectors, and may be changed at any time.
+     *
+     * @param rerank the number of candidates to re-rank, or zero
+     */
+    public void setRerank(int rerank)
+    {
+        if(rerank < 0)
+            throw new IllegalArgumentException("Number of candidates to re-rank must be non-negative, not " + rerank);
+        this.rerank = rerank;
+    }
+
+    /**
+     *
+     * @return the number of candidates to re-rank
+     */
+    public int getRerank()
+    {
+        return rerank;
+    }
+
+    /**
+     * Sets the maximum number of points, drawn at random, used to learn the
+     * coarse centroids and the codebooks
+     *
+     * @param sampleSize the maximum number of points to learn from
+     */
+    public void setSampleSize(int sampleSize)
+    {
+        if(sampleSize < 1)
+            throw new IllegalArgumentException("Sample size must be positive, not " + sampleSize);
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     *
+     * @return the maximum number of points to learn from
+     */
+    public int getSampleSize()
+    {
+        return sampleSize;
+    }
+
+    @Override
+    public void build(boolean parallel, List<V> collection, DistanceMetric dm)
+    {
+        setDistanceMetric(dm);
+        this.vecs = collection;
+        final int n = collection.size();
+        if(n == 0)
+        {
+            listIds = new int[0][];
+            listCodes = new byte[0][];
+            centroids = new ArrayList<>();
+            return;
+        }
+        final int d = collection.get(0).length();
+
+        //learn the coarse quantizer from a random sample
+        Random rand = RandomUtil.getRandom();
+        IntList order = IntList.range(n);
+        Collections.shuffle(order, rand);
+        List<Vec> sample = new ArrayList<>(Math.min(n, sampleSize));
+        for(int i = 0; i < Math.min(n, sampleSize); i++)
+            sample.add(collection.get(order.getI(i)));
+        centroids = kmeans(sample, numLists, parallel);
+        centroidCache = euclid.getAccelerationCache(centroids, parallel);
+
+        //learn a codebook for each subspace from the residuals of the sample
+        final int m = Math.min(subspaces, d);
+        subStart = new int[m+1];
+        for(int j = 0; j <= m; j++)
+            subStart[j] = j*d/m;
+        int[] sampleAssign = assign(sample, parallel);
+        codebooks = new double[m][];
+        for(int j = 0; j < m; j++)
+        {
+            int s = subStart[j], len = subStart[j+1]-s;
+            List<Vec> subs = new ArrayList<>(sample.size());
+            for(int i = 0; i < sample.size(); i++)
+            {
+                Vec x = sample.get(i);
+                Vec c = centroids.get(sampleAssign[i]);
+                DenseVector r = new DenseVector(len);
+                for(int t = 0; t < len; t++)
+                    r.set(t, x.get(s+t)-c.get(s+t));
+                subs.add(r);
+            }
+            List<Vec> words = kmeans(subs, CODEWORDS, parallel);
+            codebooks[j] = new double[words.size()*len];
+            for(int k = 0; k < words.size(); k++)
+                for(int t = 0; t < len; t++)
+                    codebooks[j][k*len+t] = words.get(k).get(t);
+        }
+
+        //place every point in its list, then encode it in its slot
+        final int[] assign = assign(collection, parallel);
+        int[] counts = new int[centroids.size()];
+        int[] pos = new int[n];
+        for(int i = 0; i < n; i++)
+            pos[i] = counts[assign[i]]++;
+        listIds = new int[counts.length][];
+        listCodes = new byte[counts.length][];
+        for(int c = 0; c < counts.length; c++)
+        {
+            listIds[c] = new int[counts[c]];
+            listCodes[c] = new byte[counts[c]*m];
+        }
+        ParallelUtils.run(parallel, n, (start, end) ->
+        {
+            double[] r = new double[d];
+            for(int i = start; i < end; i++)
+            {
+                int c = assign[i];
+                listIds[c][pos[i]] = i;
+                residual(collection.get(i), centroids.get(c), r);
+                encode(r, listCodes[c], pos[i]*m);
+            }
+        });
+    }
+
+    @Override
+    public void setDistanceMetric(DistanceMetric dm)
+    {
+        if(!(dm instanceof EuclideanDistance))
+            throw new IllegalArgumentException("IVFPQ only works for Euclidean Distance Searches");
+    }
+
+    @Override
+    public DistanceMetric getDistanceMetric()
+    {
+        return new EuclideanDistance();
+    }
+
+    @Override
+    public void search(Vec query, double range, List<Integer> neighbors, List<Double> distances)
+    {
+        neighbors.clear();
+        distances.clear();
+        if(vecs == null || vecs.isEmpty())
+            return;
+        final int m = codebooks.length;
+        final double range_sqrd = range*range;
+        double[] table = new double[m*CODEWORDS];
+        double[] r = new double[query.length()];
+        for(int c : probe(query))
+        {
+            residual(query, centroids.get(c), r);
+            distanceTable(r, table);
+            int[] ids = listIds[c];
+            byte[] codes = listCodes[c];
+            for(int p = 0; p < ids.length; p++)
+            {
+                double dist = approxDist(table, codes, p*m, m);
+                if(dist > range_sqrd)
+                    continue;
+                if(rerank > 0)
+                {
+                    dist = euclid.dist(query, vecs.get(ids[p]));
+                    if(dist > range)
+                        continue;
+                }
+                else
+                    dist = Math.sqrt(Math.max(dist, 0));
+                neighbors.add(ids[p]);
+                distances.add(dist);
+            }
+        }
+
+        IndexTable it = new IndexTable(distances);
+        it.apply(distances);
+        it.apply(neighbors);
+    }
+
+    @Override
+    public void search(Vec query, int numNeighbors, List<Integer> neighbors, List<Double> distances)
+    {
+        neighbors.clear();
+        distances.clear();
+        if(vecs == null || vecs.isEmpty())
+            return;
+        final int m = codebooks.length;
+        final int K = Math.max(numNeighbors, rerank);
+        BoundedMaxHeap knn = BoundedMaxHeap.acquire(K);
+        try
+        {
+            double[] table = new double[m*CODEWORDS];
+            double[] r = new double[query.length()];
+            for(int c : probe(query))
+            {
+                residual(query, centroids.get(c), r);
+                distanceTable(r, table);
+                int[] ids = listIds[c];
+                byte[] codes = listCodes[c];
+                for(int p = 0; p < ids.length; p++)
+                    knn.offer(ids[p], approxDist(table, codes, p*m, m));
+            }
+
+            int[] cand = new int[K];
+            double[] cand_dists = new double[K];
+            int n = knn.drainTo(cand, cand_dists);
+            if(rerank > 0)
+            {
+                knn.reset(numNeighbors);
+                for(int i = 0; i < n; i++)
+                    knn.offer(cand[i], euclid.dist(query, vecs.get(cand[i])));
+                knn.drainTo(neighbors, distances);
+            }
+            else
+                for(int i = 0; i < Math.min(numNeighbors, n); i++)
+                {
+                    neighbors.add(cand[i]);
+                    distances.add(Math.sqrt(Math.max(cand_dists[i], 0)));
+                }
+        }
+        finally
+        {
+            knn.release();
+        }
+    }
+
+    @Override
+    public V get(int indx)
+    {
+        return vecs.get(indx);
+    }
+
+    @Override
+    public List<Double> getAccelerationCache()
+    {
+        return null;
+    }
+
+    @Override
+    public int size()
+    {
+        return vecs == null ? 0 : vecs.size();
+    }
+
+    @Override
+    public IVFPQ<V> clone()
+    {
+        return new IVFPQ<>(this);
+    }
+
+    /**
+     * Runs k-means on the given points
+     *
+     * @param X the points to cluster
+     * @param k the desired number of clusters, reduced if there are fewer
+     * points
+     * @param parallel {@code true} to cluster in parallel
+     * @return the means found
+     */
+    private static List<Vec> kmeans(List<Vec> X, int k, boolean parallel)
+    {
+        k = Math.min(k, X.size());
+        if(k == X.size())//every point is its own mean
+        {
+            List<Vec> means = new ArrayList<>(k);
+            for(Vec x : X)
+                means.add(new DenseVector(x));
+            return means;
+        }
+        List<DataPoint> dps = new ArrayList<>(X.size());
+        for(Vec x : X)
+            dps.add(new DataPoint(x));
+        HamerlyKMeans kmeans = new HamerlyKMeans(euclid, SeedSelectionMethods.SeedSelection.KPP);
+        kmeans.setIterationLimit(KMEANS_ITERATIONS);
+        kmeans.cluster(new SimpleDataSet(dps), k, parallel, null);
+        return kmeans.getMeans();
+    }
+
+    /**
+     * Finds the nearest coarse centroid of every point
+     *
+     * @param X the points to assign
+     * @param parallel {@code true} to work in parallel
+     * @return the index of the nearest centroid of each point
+     */
+    private int[] assign(List<? extends Vec> X, boolean parallel)
+    {
+        final int k = centroids.size();
+        int[] assign = new int[X.size()];
+        ParallelUtils.run(parallel, X.size(), (start, end) ->
+        {
+            for(int b = start; b < end; b += BLOCK_SIZE)
+            {
+                int b_end = Math.min(b+BLOCK_SIZE, end);
+                Matrix D = new DenseMatrix(b_end-b, k);
+                euclid.dist(X.subList(b, b_end), null, centroids, centroidCache, D, false);
+                for(int i = 0; i < D.rows(); i++)
+                {
+                    int best = 0;
+                    for(int c = 1; c < k; c++)
+                        if(D.get(i, c) < D.get(i, best))
+                            best = c;
+                    assign[b+i] = best;
+                }
+            }
+        });
+        return assign;
+    }
+
+    /**
+     * Returns the lists whose centroids are closest to the query
+     *
+     * @param query the query point
+     * @return the indices of the lists to scan
+     */
+    private int[] probe(Vec query)
+    {
+        List<Double> qi = euclid.getQueryInfo(query);
+        double[] dists = new double[centroids.size()];
+        for(int c = 0; c < dists.length; c++)
+            dists[c] = euclid.dist(c, query, qi, centroids, centroidCache);
+        IndexTable it = new IndexTable(dists);
+        int[] toProbe = new int[Math.min(probes, dists.length)];
+        for(int i = 0; i < toProbe.length; i++)
+            toProbe[i] = it.index(i);
+        return toProbe;
+    }
+
+    private static void residual(Vec x, Vec c, double[] r)
+    {
+        for(int t = 0; t < r.length; t++)
+            r[t] = x.get(t)-c.get(t);
+    }
+
+    /**
+     * Stores the nearest codeword of each subspace of the residual
+     *
+     * @param r the residual to encode
+     * @param codes the array to store the code in
+     * @param offset the position of the code in the array
+     */
+    private void encode(double[] r, byte[] codes, int offset)
+    {
+        for(int j = 0; j < codebooks.length; j++)
+        {
+            int s = subStart[j], len = subStart[j+1]-s;
+            double[] cb = codebooks[j];
+            int best = 0;
+            double bestDist = Double.POSITIVE_INFINITY;
+            for(int k = 0; k < cb.length/len; k++)
+            {
+                double dist = 0;
+                for(int t = 0; t < len; t++)
+                {
+                    double diff = r[s+t]-cb[k*len+t];
+                    dist += diff*diff;
+                }
+                if(dist < bestDist)
+                {
+                    bestDist = dist;
+                    best = k;
+                }
+            }
+            codes[offset+j] = (byte) best;
+        }
+    }
+
+    /**
+     * Computes the squared distance between each subspace of the query's
+     * residual and every codeword of that subspace
+     *
+     * @param r the residual of the query from a list's centroid
+     * @param table the array to store the table in, with the distances for
+     * subspace j starting at j*{@link #CODEWORDS}
+     */
+    private void distanceTable(double[] r, double[] table)
+    {
+        for(int j = 0; j < codebooks.length; j++)
+        {
+            int s = subStart[j], len = subStart[j+1]-s;
+            double[] cb = codebooks[j];
+            for(int k = 0; k < cb.length/len; k++)
+            {
+                double dist = 0;
+                for(int t = 0; t < len; t++)
+                {
+                    double diff = r[s+t]-cb[k*len+t];
+                    dist += diff*diff;
+                }
+                table[j*CODEWORDS+k] = dist;
+            }
+        }
+    }
+
+    /**
+     * Computes the approximate squared distance to an encoded point by summing
+     * its entries of the distance table
+     */
+    private static double approxDist(double[] table, byte[] codes, int offset, int m)
+    {
+        double dist = 0;
+        for(int j = 0; j < m; j++)
+            dist += table[j*CODEWORDS + (codes[offset+j] & 0xFF)];
+        return dist;
+    }
+}
@@ -3,7 +3,7 @@ package jsat.linear.vectorcollection;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
 import jsat.linear.IndexValue;
 
 import jsat.linear.Vec;
@@ -47,8 +47,19 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
     private PivotSelection pvSelection;
     private int size;
     private int leaf_node_size = 20;
+    /**
+     * Nodes with at least this many points are built with multiple threads, 
+     * when building in parallel
+     */
+    private static final int PARALLEL_SIZE = 1024;
     private List<V> allVecs;
-    private List<Double> distCache;
+    private DoubleList distCache;
+    /**
+     * The flattened copy of the tree used for searching, or {@code null} if 
+     * the object tree is searched directly
+     */
+    private CompactKD compact;
+    private boolean compactLayout = false;
     
     /**
      * KDTree uses an index of the vector at each stage to use as a pivot, 
@@ -162,6 +173,36 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         return leaf_node_size;
     }
 
+    /**
+     * Sets whether a compact copy of the tree should be used for searching. 
+     * The compact layout stores the nodes in primitive arrays in depth first 
+     * order, and copies the points of each leaf into one contiguous block of 
+     * memory in the same order, which avoids chasing pointers through objects 
+     * scattered across the heap. It costs a copy of the data set. <br>
+     * Inserting a new point discards the compact layout, which will be 
+     * re-created the next time the tree is built or this method is called. 
+     *
+     * @param compactLayout {@code true} to search a compact copy of the tree, 
+     * {@code false} to search the tree of node objects
+     */
+    public void setCompactLayout(boolean compactLayout)
+    {
+        this.compactLayout = compactLayout;
+        if(compactLayout && root != null)
+            compact = new CompactKD(root, allVecs, distanceMetric);
+        else
+            compact = null;
+    }
+
+    /**
+     *
+     * @return {@code true} if a compact copy of the tree is searched
+     */
+    public boolean isCompactLayout()
+    {
+        return compactLayout;
+    }
+
     @Override
     public void setDistanceMetric(DistanceMetric dm)
     {
@@ -183,26 +224,15 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         setDistanceMetric(dm);
         this.size = vecs.size();
         allVecs = vecs = new ArrayList<>(vecs);//copy to avoid altering the input set
-        distCache = distanceMetric.getAccelerationCache(vecs, parallel);
+        distCache = distanceMetric.getPrimitiveAccelerationCache(vecs, parallel);
         List<Integer> vecIndices = new IntList(size);
         ListUtils.addRange(vecIndices, 0, size, 1);
         
         if(!parallel)
-            this.root = buildTree(vecIndices, 0, null, null);
+            this.root = buildTree(vecIndices, 0, false);
         else
-        {
-            ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
-            this.root = buildTree(vecIndices, 0, ParallelUtils.CACHED_THREAD_POOL, mcdl);
-            try
-            {
-                mcdl.await();
-            }
-            catch (InterruptedException ex)
-            {
-                //Failure, fall back to single threaded version
-                this.root = buildTree(vecIndices, 0, null, null);
-            }
-        }
+            this.root = ParallelUtils.invoke(ForkJoinTask.adapt(() -> buildTree(vecIndices, 0, true)));
+        setCompactLayout(compactLayout);
     }
 
     @Override
@@ -211,17 +241,18 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         if(allVecs == null)//init
         {
             allVecs = new ArrayList<>();
-            distCache = distanceMetric.getAccelerationCache(allVecs);
+            distCache = distanceMetric.getPrimitiveAccelerationCache(allVecs, false);
             this.size = 0;
             this.root = new KDLeaf(0, new IntList());
         }
         int indx = size++;
         allVecs.add(x);
         if(distCache != null)
-            distCache.addAll(distanceMetric.getQueryInfo(x));
+            distCache.addAll(distanceMetric.getPrimitiveQueryInfo(x));
+        compact = null;
 
         if(root.insert(indx))
-            root = buildTree(IntList.range(size), 0, null, null);
+            root = buildTree(IntList.range(size), 0, false);
     }
     
     private class KDNode implements Cloneable, Serializable
@@ -288,7 +319,7 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
             return new KDNode(this);
         }
         
-        protected void searchK(int k, BoundedSortedList<IndexDistPair> knn, Vec target, List<Double> qi)
+        protected void searchK(int k, BoundedMaxHeap knn, Vec target, List<Double> qi)
         {
             double target_s = target.get(axis);
             boolean target_in_left = target_s <= pivot_s;
@@ -310,7 +341,7 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
             
             double maxDistSoFar = Double.MAX_VALUE;
             if(knn.size() >= k)
-                maxDistSoFar = knn.get(k-1).getDist();
+                maxDistSoFar = knn.peekValue();
             if(maxDistSoFar > Math.abs(target_s-pivot_s))
                 farKD.searchK(k, knn, target, qi);
         }
@@ -339,12 +370,12 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
             if (target_in_left)
             {
                 if (left.insert(x_indx))
-                    left = buildTree(((KDLeaf) left).owned, axis + 1, null, null);
+                    left = buildTree(((KDLeaf) left).owned, axis + 1, false);
             }
             else
             {
                 if (right.insert(x_indx))
-                    right = buildTree(((KDLeaf) right).owned, axis + 1, null, null);
+                    right = buildTree(((KDLeaf) right).owned, axis + 1, false);
             }
             return false;
         }
@@ -367,12 +398,12 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         }
 
         @Override
-        protected void searchK(int k, BoundedSortedList<IndexDistPair> knn, Vec target, List<Double> qi)
+        protected void searchK(int k, BoundedMaxHeap knn, Vec target, List<Double> qi)
         {
             for(int i : owned)
             {
                 double dist = distanceMetric.dist(i, target, qi, allVecs, distCache);
-                knn.add(new IndexDistPair(i, dist));
+                knn.offer(i, dist);
             }
         }
         
@@ -404,49 +435,141 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         }
     }
     
-    private class VecIndexComparator implements Comparator<Integer>
+    /**
+     * The tree flattened into primitive arrays, with the nodes in depth first 
+     * order. The left child of a branch is always the next node, and the 
+     * points of each leaf are a contiguous range of {@link #points}. 
+     */
+    private static class CompactKD implements Serializable
     {
-        private final int index;
+        private static final long serialVersionUID = -3213848935284531062L;
+        /**
+         * The splitting dimension of each node, or -1 for leaf nodes
+         */
+        final int[] axis;
+        /**
+         * The splitting value of each branch node
+         */
+        final double[] split;
+        /**
+         * The right child of each branch node
+         */
+        final int[] right;
+        /**
+         * The first and last (exclusive) position in {@link #points} of the 
+         * points in each leaf node
+         */
+        final int[] start, end;
+        final CompactPoints points;
 
-        public VecIndexComparator(int index)
+        public CompactKD(KDTree<?>.KDNode root, List<? extends Vec> allVecs, DistanceMetric dm)
         {
-            this.index = index;
+            int nodes = count(root);
+            axis = new int[nodes];
+            split = new double[nodes];
+            right = new int[nodes];
+            start = new int[nodes];
+            end = new int[nodes];
+            IntList order = new IntList(allVecs.size());
+            fill(root, 0, order);
+            points = new CompactPoints(order, allVecs, dm);
         }
-        
-        @Override
-        public int compare(Integer o1, Integer o2)
+
+        private static int count(KDTree<?>.KDNode node)
         {
-            return Double.compare( allVecs.get(o1).get(index), allVecs.get(o2).get(index));
+            if(node instanceof KDTree.KDLeaf)
+                return 1;
+            return 1 + count(node.left) + count(node.right);
+        }
+
+        /**
+         * Stores the given subtree starting at position {@code id}
+         * @return the next free position
+         */
+        private int fill(KDTree<?>.KDNode node, int id, IntList order)
+        {
+            if(node instanceof KDTree.KDLeaf)
+            {
+                axis[id] = -1;
+                start[id] = order.size();
+                order.addAll(((KDTree<?>.KDLeaf) node).owned);
+                end[id] = order.size();
+                return id+1;
+            }
+            axis[id] = node.axis;
+            split[id] = node.pivot_s;
+            right[id] = fill(node.left, id+1, order);
+            return fill(node.right, right[id], order);
+        }
+
+        protected void searchK(int id, BoundedMaxHeap knn, Vec target, List<Double> qi, DistanceMetric dm)
+        {
+            if(axis[id] < 0)
+            {
+                for(int j = start[id]; j < end[id]; j++)
+                    knn.offer(points.order[j], points.dist(j, target, qi, dm));
+                return;
+            }
+            double target_s = target.get(axis[id]);
+            int nearKD = id+1, farKD = right[id];
+            if(target_s > split[id])
+            {
+                nearKD = right[id];
+                farKD = id+1;
+            }
+
+            searchK(nearKD, knn, target, qi, dm);
+            //bound is infinite until we have k neighbors
+            if(knn.bound() > Math.abs(target_s-split[id]))
+                searchK(farKD, knn, target, qi, dm);
+        }
+
+        protected void searchR(int id, double radius, List<Integer> vecsInRage, List<Double> distVecsInRange, Vec target, List<Double> qi, DistanceMetric dm)
+        {
+            if(axis[id] < 0)
+            {
+                for(int j = start[id]; j < end[id]; j++)
+                {
+                    double dist = points.dist(j, target, qi, dm);
+                    if(dist <= radius)
+                    {
+                        vecsInRage.add(points.order[j]);
+                        distVecsInRange.add(dist);
+                    }
+                }
+                return;
+            }
+            double target_s = target.get(axis[id]);
+
+            if(radius > target_s-split[id])
+                searchR(id+1, radius, vecsInRage, distVecsInRange, target, qi, dm);
+
+            if(radius > split[id]-target_s)
+                searchR(right[id], radius, vecsInRage, distVecsInRange, target, qi, dm);
         }
-        
     }
-    
+
     /**
      * 
      * @param data subset of data to work on
      * @param depth recursion depth
-     * @param threadpool threadpool source. Null is accepted, and means it will be done immediately 
-     * @param mcdl used to wait on for the original caller, only needed when threadpool is non null
+     * @param parallel {@code true} if large nodes should be built using 
+     * multiple threads. Only valid from within a fork-join pool. 
      * @return the root tree node for the given set of data
      */
-    private KDNode buildTree(final List<Integer> data, final int depth, final ExecutorService threadpool, final ModifiableCountDownLatch mcdl)
+    private KDNode buildTree(final List<Integer> data, final int depth, final boolean parallel)
     {
         if(data == null || data.isEmpty())
-        {
-            if(threadpool != null)//Threadpool null checks since no thread pool means do single threaded
-                mcdl.countDown();
             return null;
-        }
         
         int mod = allVecs.get(0).length();
         
         if(data.size() <= leaf_node_size)
         {
-            if(threadpool != null)
-                mcdl.countDown();
 //            return new KDNode(data.get(0), depth % mod);
             return new KDLeaf(depth % mod, data);
         }
+        final boolean parallelNode = parallel && data.size() >= PARALLEL_SIZE;
         
         final boolean isSparse = get(data.get(0)).isSparse();
         int pivot = -1;
@@ -456,14 +579,29 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         {
             case VARIANCE:
                 OnLineStatistics[] allStats = new OnLineStatistics[mod];
-                for (int j = 0; j < allStats.length; j++)
-                    allStats[j] = new OnLineStatistics();
-                for (int i : data)//For each data point
+                if(!parallelNode)
                 {
-                    V vec = get(i);
-                    for (int j = 0; j < allStats.length; j++)//For each dimension
-                        allStats[j].add(vec.get(j));
+                    for (int j = 0; j < allStats.length; j++)
+                        allStats[j] = new OnLineStatistics();
+                    for (int i : data)//For each data point
+                    {
+                        V vec = get(i);
+                        for (int j = 0; j < allStats.length; j++)//For each dimension
+                            allStats[j].add(vec.get(j));
+                    }
                 }
+                else//split by dimension, so each sum is in the same order as above
+                    ParallelUtils.run(true, mod, (start, end) ->
+                    {
+                        for (int j = start; j < end; j++)
+                            allStats[j] = new OnLineStatistics();
+                        for (int i : data)
+                        {
+                            V vec = get(i);
+                            for (int j = start; j < end; j++)
+                                allStats[j].add(vec.get(j));
+                        }
+                    });
                 double maxVariance = -1;
                 for (int j = 0; j < allStats.length; j++)
                 {
@@ -567,40 +705,40 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         //pivot_val might be set to NaN if pivot looked bad
         if(Double.isNaN(pivot_val))
         {
-            Collections.sort(data, new VecIndexComparator(pivot));
-
-            splitIndex = getMedianIndex(data, pivot);
-            if(splitIndex == data.size()-1)//Everyone has the same value? OK, leaf node then
+            final int n = data.size();
+            final int axis = pivot;
+            final double[] keys = new double[n];
+            ParallelUtils.run(parallelNode, n, (start, end) ->
+            {
+                for(int i = start; i < end; i++)
+                    keys[i] = get(data.get(i)).get(axis);
+            });
+            //Only the median is needed, so select it rather than sorting
+            Collection<List<?>> paired = Collections.singletonList(data);
+            splitIndex = n/2;
+            QuickSort.select(keys, 0, n, splitIndex, paired);
+            //What if more than one point have the same value? Move them next to the median, which goes after the last of them
+            for(int i = splitIndex+1; i < n; i++)
+                if(keys[i] == keys[splitIndex])
+                    QuickSort.swap(keys, ++splitIndex, i, paired);
+            if(splitIndex == n-1)//Everyone has the same value? OK, leaf node then
                 return new KDLeaf(depth % mod, data);
-            node.pivot_s = pivot_val = get(data.get(splitIndex)).get(pivot);
+            node.pivot_s = pivot_val = keys[splitIndex];
         }
         
-        if(splitIndex == 0 || splitIndex >= data.size()-1)
-        {
-            System.out.println("Adsas");
-        }
-                
-        //We could save code lines by making only one path threadpool dependent. 
-        //But this order has better locality for single threaded, while the 
-        //reverse call order workes better for multi core
-        if(threadpool == null)
+        final List<Integer> data_l = data.subList(0, splitIndex+1);
+        final List<Integer> data_r = data.subList(splitIndex+1, data.size());
+        if(parallelNode)
         {
-            node.setLeft(buildTree(data.subList(0, splitIndex+1), depth+1, threadpool, mcdl));
-            node.setRight(buildTree(data.subList(splitIndex+1, data.size()), depth+1, threadpool, mcdl));
+            //Right side forked, it may be stolen by another core
+            ForkJoinTask<KDNode> right = ForkJoinTask.adapt(() -> buildTree(data_r, depth+1, true)).fork();
+            node.setLeft(buildTree(data_l, depth+1, true));
+            node.setRight(right.join());
         }
-        else//multi threaded
+        else
         {
-            mcdl.countUp();
-            IntList data_l = new IntList(data.subList(0, splitIndex+1));
-            IntList data_r = new IntList(data.subList(splitIndex+1, data.size()));
-            //Right side first, it will start running on a different core
-            threadpool.submit(() ->
-            {
-                node.setRight(buildTree(data_r, depth+1, threadpool, mcdl));
-            });
-            
-            //now do the left here, 
-            node.setLeft(buildTree(data_l, depth+1, threadpool, mcdl));
+            node.setLeft(buildTree(data_l, depth+1, parallel));
+            node.setRight(buildTree(data_r, depth+1, parallel));
         }
         
         return node;
@@ -627,18 +765,22 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         if (numNeighbors < 1)
             throw new RuntimeException("Invalid number of neighbors to search for");
 
-        BoundedSortedList<IndexDistPair> knns = new BoundedSortedList<>(numNeighbors);
-
-//        knnKDSearch(query, knns);
-        root.searchK(numNeighbors, knns, query, distanceMetric.getQueryInfo(query));
+        BoundedMaxHeap knns = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+//            knnKDSearch(query, knns);
+            if(compact != null)
+                compact.searchK(0, knns, query, distanceMetric.getPrimitiveQueryInfo(query), distanceMetric);
+            else
+                root.searchK(numNeighbors, knns, query, distanceMetric.getPrimitiveQueryInfo(query));
 
-        neighbors.clear();
-        distances.clear();
-        for (int i = 0; i < knns.size(); i++)
+            neighbors.clear();
+            distances.clear();
+            knns.drainTo(neighbors, distances);
+        }
+        finally
         {
-            IndexDistPair pm = knns.get(i);
-            neighbors.add(pm.getIndex());
-            distances.add(pm.getDist());
+            knns.release();
         }
     }
     
@@ -663,9 +805,12 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         distances.clear();
 
         
-        List<Double> qi = distanceMetric.getQueryInfo(query);
+        DoubleList qi = distanceMetric.getPrimitiveQueryInfo(query);
 
-        root.searchR(range, neighbors, distances, query, qi);
+        if(compact != null)
+            compact.searchR(0, range, neighbors, distances, query, qi, distanceMetric);
+        else
+            root.searchR(range, neighbors, distances, query, qi);
 
         IndexTable it = new IndexTable(distances);
         it.apply(neighbors);
@@ -684,6 +829,8 @@ public class KDTree<V extends Vec> implements IncrementalCollection<V>
         clone.size = this.size;
         if(this.root != null)
             clone.root = this.root.clone();
+        clone.compactLayout = this.compactLayout;
+        clone.compact = this.compact;//never modified, so can be shared
         return clone;
     }
     
@@ -14,7 +14,7 @@ import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.ProbailityMatch;
 import static jsat.linear.VecPaired.*;
 import jsat.utils.IndexTable;
@@ -68,55 +68,55 @@ public class RTree<V extends Vec> implements IncrementalCollection<V>
          */
         Stack<ProbailityMatch<RNode<V>>> stack = new Stack<>();
         
-        BoundedSortedList<ProbailityMatch<Integer>> curBest = new BoundedSortedList<>(numNeighbors);
-        curBest.add( new ProbailityMatch<>(Double.MAX_VALUE, -1));//add a fake just to make life easy coding
-        
-        stack.push(new ProbailityMatch<>(minDist(query, root.bound), root));
+        BoundedMaxHeap curBest = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+            stack.push(new ProbailityMatch<>(minDist(query, root.bound), root));
         
-        /**
-         * Active Branch list
-         */
-        List<ProbailityMatch<RNode<V>>> ABL = new ArrayList<>();
+            /**
+             * Active Branch list
+             */
+            List<ProbailityMatch<RNode<V>>> ABL = new ArrayList<>();
         
-        while(!stack.isEmpty())
-        {
-            ProbailityMatch<RNode<V>> poped = stack.pop();
-            RNode<V> N = poped.getMatch();
-            double minDistN = poped.getProbability();
-            if(minDistN <= curBest.last().getProbability())
+            while(!stack.isEmpty())
             {
-                if(N.isLeaf())
+                ProbailityMatch<RNode<V>> poped = stack.pop();
+                RNode<V> N = poped.getMatch();
+                double minDistN = poped.getProbability();
+                if(minDistN <= curBest.bound())
                 {
-                    for(int indx : N.points)
+                    if(N.isLeaf())
                     {
-                        double dist = dm.dist(query, extractTrueVec(get(indx)));
-                        curBest.add(new ProbailityMatch<>(dist, indx));
+                        for(int indx : N.points)
+                        {
+                            double dist = dm.dist(query, extractTrueVec(get(indx)));
+                            curBest.offer(indx, dist);
+                        }
                     }
-                }
-                else
-                {
-                    for(int i = 0; i < N.size(); i++)
+                    else
                     {
-                        double i_min = minDist(query, N.getChild(i).bound);
-                        if(i_min <= curBest.last().getProbability())
-                            ABL.add(new ProbailityMatch<>(i_min, N.getChild(i)));
+                        for(int i = 0; i < N.size(); i++)
+                        {
+                            double i_min = minDist(query, N.getChild(i).bound);
+                            if(i_min <= curBest.bound())
+                                ABL.add(new ProbailityMatch<>(i_min, N.getChild(i)));
+                        }
+                        Collections.sort(ABL, Collections.reverseOrder());
+                        stack.addAll(ABL);
+                        ABL.clear();
                     }
-                    Collections.sort(ABL, Collections.reverseOrder());
-                    stack.addAll(ABL);
-                    ABL.clear();
                 }
             }
-        }
         
         
-        //Now prepare to return 
-        neighbors.clear();
-        distances.clear();
-        for(int i = 0; i < curBest.size(); i++)
+            //Now prepare to return 
+            neighbors.clear();
+            distances.clear();
+            curBest.drainTo(neighbors, distances);
+        }
+        finally
         {
-            ProbailityMatch<Integer> pm = curBest.get(i);
-            neighbors.add(pm.getMatch());
-            distances.add(pm.getProbability());
+            curBest.release();
         }
     }
 
@@ -245,79 +245,81 @@ public class RandomBallCover<V extends Vec> implements IncrementalCollection<V>
     @Override
     public void search(Vec query, int numNeighbors, List<Integer> neighbors, List<Double> distances)
     {
-        BoundedSortedList<IndexDistPair> knn = new BoundedSortedList<>(numNeighbors);
-        
-        neighbors.clear();
-        distances.clear();
+        BoundedMaxHeap knn = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+            neighbors.clear();
+            distances.clear();
         
-        List<Double> qi = dm.getQueryInfo(query);
+            List<Double> qi = dm.getQueryInfo(query);
         
-        if(repRadius == null)//brute force search b/c small collection
-        {
-            for(int i = 0; i < allVecs.size(); i++)
-                knn.add(new IndexDistPair(i, dm.dist(i, query, qi, allVecs, distCache)));
-        }
-        else
-        {
-            //Find the best representative r_q, and add its owned children to knn list. 
-            double[] queryRDists = new double[R.size()];
-            Arrays.fill(queryRDists, Double.MAX_VALUE);
-            int bestRep = 0;
-            for (int i = 0; i < R.size(); i++)
-                if ((queryRDists[i] = dm.dist(R.get(i), query, qi, allVecs, distCache)) < queryRDists[bestRep])
-                    bestRep = i;
-            //Other cluster reps R will get a chance to be added to the list later
-            knn.add(new IndexDistPair(R.get(bestRep), queryRDists[bestRep]));
+            if(repRadius == null)//brute force search b/c small collection
+            {
+                for(int i = 0; i < allVecs.size(); i++)
+                    knn.offer(i, dm.dist(i, query, qi, allVecs, distCache));
+            }
+            else
+            {
+                //Find the best representative r_q, and add its owned children to knn list. 
+                double[] queryRDists = new double[R.size()];
+                Arrays.fill(queryRDists, Double.MAX_VALUE);
+                int bestRep = 0;
+                for (int i = 0; i < R.size(); i++)
+                    if ((queryRDists[i] = dm.dist(R.get(i), query, qi, allVecs, distCache)) < queryRDists[bestRep])
+                        bestRep = i;
+                //Other cluster reps R will get a chance to be added to the list later
+                knn.offer(R.get(bestRep), queryRDists[bestRep]);
 
-            //need k'th nearest representative R for bounds check
-            IndexTable it = new IndexTable(queryRDists);
-            int kth_best_rept;
-            if(numNeighbors < R.size())//need the k'th closest, but if less than K we can't sure that bound
-                kth_best_rept = it.index(numNeighbors-1);
-            else//You are asking for too many neighbors, we can't use the 2nd bound
-                kth_best_rept = -1;//if somone uses this we will get an IndexOutOfBound, telling us about the bug! 
+                //need k'th nearest representative R for bounds check
+                IndexTable it = new IndexTable(queryRDists);
+                int kth_best_rept;
+                if(numNeighbors < R.size())//need the k'th closest, but if less than K we can't sure that bound
+                    kth_best_rept = it.index(numNeighbors-1);
+                else//You are asking for too many neighbors, we can't use the 2nd bound
+                    kth_best_rept = -1;//if somone uses this we will get an IndexOutOfBound, telling us about the bug! 
 
-            for (int v : ownedVecs.get(bestRep))
-                knn.add(new IndexDistPair(v, dm.dist(v, query, qi, allVecs, distCache)));
+                for (int v : ownedVecs.get(bestRep))
+                    knn.offer(v, dm.dist(v, query, qi, allVecs, distCache));
 
-            //k-nn search through the rest of the data set
-            for (int sorted_order = 1; sorted_order < R.size(); sorted_order++)
-            {//start at 1 b/c we brute forced the closest rep first
-                final int i = it.index(sorted_order);
+                //k-nn search through the rest of the data set
+                for (int sorted_order = 1; sorted_order < R.size(); sorted_order++)
+                {//start at 1 b/c we brute forced the closest rep first
+                    final int i = it.index(sorted_order);
 
-                if(knn.size() == numNeighbors)//no prunnig until we reach k-nns
-                {
-                    //Prune out representatives that are just too far
-                    if (queryRDists[i] > knn.last().getDist() + repRadius[i])
-                        continue;
-                    //check to make sure we can use this bound before attempting
-                    else if (kth_best_rept >= 0 && queryRDists[i] > 3 * queryRDists[kth_best_rept])
-                        continue;
-                }
+                    if(knn.size() == numNeighbors)//no prunnig until we reach k-nns
+                    {
+                        //Prune out representatives that are just too far
+                        if (queryRDists[i] > knn.peekValue() + repRadius[i])
+                            continue;
+                        //check to make sure we can use this bound before attempting
+                        else if (kth_best_rept >= 0 && queryRDists[i] > 3 * queryRDists[kth_best_rept])
+                            continue;
+                    }
 
-                //Add any new nn imediatly, hopefully shrinking the bound before
-                //the next representative is tested
-                knn.add(new IndexDistPair(R.get(i), queryRDists[i]));
-                final List<Integer> L_i_index = ownedVecs.get(i);
-                final DoubleList L_i_radius = ownedRDists.get(i);
-                for (int j = 0; j < ownedVecs.get(i).size(); j++)
-                {
-                    double rDist = L_i_radius.getD(j);
-                    //Check the first inequality on a per point basis
-                    if (knn.size() == numNeighbors && queryRDists[i] > knn.last().getDist() + rDist)
-                        continue;
-                    int indx = L_i_index.get(j);
-                    V v = allVecs.get(indx);
+                    //Add any new nn imediatly, hopefully shrinking the bound before
+                    //the next representative is tested
+                    knn.offer(R.get(i), queryRDists[i]);
+                    final List<Integer> L_i_index = ownedVecs.get(i);
+                    final DoubleList L_i_radius = ownedRDists.get(i);
+                    for (int j = 0; j < ownedVecs.get(i).size(); j++)
+                    {
+                        double rDist = L_i_radius.getD(j);
+                        //Check the first inequality on a per point basis
+                        if (knn.size() == numNeighbors && queryRDists[i] > knn.peekValue() + rDist)
+                            continue;
+                        int indx = L_i_index.get(j);
+                        V v = allVecs.get(indx);
 
-                    knn.add(new IndexDistPair(indx, dm.dist(indx, query, qi, allVecs, distCache)));
+                        knn.offer(indx, dm.dist(indx, query, qi, allVecs, distCache));
+                    }
                 }
             }
-        }
         
-        for(IndexDistPair v : knn)
+            knn.drainTo(neighbors, distances);
+        }
+        finally
         {
-            neighbors.add(v.getIndex());
-            distances.add(v.getDist());
+            knn.release();
         }
     }
     
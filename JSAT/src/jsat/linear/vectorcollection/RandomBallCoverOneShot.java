@@ -8,7 +8,7 @@ import java.util.concurrent.ExecutorService;
 import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.DoubleList;
 import jsat.utils.FakeExecutor;
 import jsat.utils.IndexTable;
@@ -163,11 +163,17 @@ public class RandomBallCoverOneShot<V extends Vec> implements VectorCollection<V
         {
             final int Ri = R.get(i);
             final List<Integer> ROwned = ownedVecs.get(i);
-            BoundedSortedList<IndexDistPair> nearest = new BoundedSortedList<>(s);
-            for(int v : allRemainingVecs)
-                nearest.add(new IndexDistPair(v, dm.dist(v, Ri, allVecs, distCache)));
-            for(IndexDistPair pmv : nearest)
-                ROwned.add(pmv.getIndex());
+            BoundedMaxHeap nearest = BoundedMaxHeap.acquire(s);
+            try
+            {
+                for(int v : allRemainingVecs)
+                    nearest.offer(v, dm.dist(v, Ri, allVecs, distCache));
+                nearest.drainTo(ROwned, new DoubleList(s));
+            }
+            finally
+            {
+                nearest.release();
+            }
             
         });
         
@@ -223,29 +229,30 @@ public class RandomBallCoverOneShot<V extends Vec> implements VectorCollection<V
         neighbors.clear();
         distances.clear();
         
-        BoundedSortedList<IndexDistPair> knn =
-                new BoundedSortedList<>(numNeighbors);
-
-        List<Double> qi = dm.getQueryInfo(query);
-        //Find the best representative r_q
-        double tmp;
-        double bestDist = Double.POSITIVE_INFINITY;
-        int bestRep = 0;
-        for (int i = 0; i < R.size(); i++)
-            if ((tmp = dm.dist(R.get(i), query, qi, allVecs, distCache) ) < bestDist)
-            {
-                bestRep = i;
-                bestDist = tmp;
-            }
-        knn.add(new IndexDistPair(R.get(bestRep), bestDist));
+        BoundedMaxHeap knn = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+            List<Double> qi = dm.getQueryInfo(query);
+            //Find the best representative r_q
+            double tmp;
+            double bestDist = Double.POSITIVE_INFINITY;
+            int bestRep = 0;
+            for (int i = 0; i < R.size(); i++)
+                if ((tmp = dm.dist(R.get(i), query, qi, allVecs, distCache) ) < bestDist)
+                {
+                    bestRep = i;
+                    bestDist = tmp;
+                }
+            knn.offer(R.get(bestRep), bestDist);
 
-        for (int v : ownedVecs.get(bestRep))
-            knn.add(new IndexDistPair(v, dm.dist(v, query, qi, allVecs, distCache)));
+            for (int v : ownedVecs.get(bestRep))
+                knn.offer(v, dm.dist(v, query, qi, allVecs, distCache));
 
-        for(IndexDistPair v : knn)
+            knn.drainTo(neighbors, distances);
+        }
+        finally
         {
-            neighbors.add(v.getIndex());
-            distances.add(v.getDist());
+            knn.release();
         }
     }
 
@@ -4,27 +4,26 @@ import java.io.Serializable;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Stack;
-import java.util.concurrent.ExecutorService;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ForkJoinTask;
 import jsat.classifiers.DataPoint;
 import jsat.linear.Vec;
 import jsat.linear.VecPaired;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.utils.BooleanList;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.DoubleList;
 import jsat.utils.IndexTable;
 import jsat.utils.IntList;
-import jsat.utils.ModifiableCountDownLatch;
 import jsat.utils.Pair;
+import jsat.utils.QuickSort;
 import jsat.utils.SimpleList;
 import jsat.utils.concurrent.ParallelUtils;
 import jsat.utils.random.RandomUtil;
@@ -53,6 +52,11 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
     protected volatile TreeNode root;
     private int size;
     private int maxLeafSize = 5;
+    /**
+     * The smallest number of points a node must have for its construction to 
+     * be split across threads
+     */
+    private static final int PARALLEL_SIZE = 1024;
 
     @Override
     public IndexNode getRoot()
@@ -133,31 +137,9 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
         for(int i = 0; i < allVecs.size(); i++)
             tmpList.add(new Pair<>(-1.0, i));
         if(!parallel)
-            this.root = makeVPTree(tmpList);
+            this.root = makeVPTree(tmpList, rand, false);
         else
-        {
-            ExecutorService threadpool = ParallelUtils.getNewExecutor(parallel);
-            ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
-            this.root = makeVPTree(tmpList, threadpool, mcdl);
-            mcdl.countDown();
-            try
-            {
-                mcdl.await();
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(SVPTree.class.getName()).log(Level.SEVERE, null, ex);
-                System.err.println("Falling back to single threaded VPTree constructor");
-                tmpList.clear();
-                for(int i = 0; i < list.size(); i++)
-                    tmpList.add(new Pair<>(-1.0, i));
-                this.root = makeVPTree(tmpList);
-            }
-            finally
-            {
-                threadpool.shutdownNow();
-            }
-        }
+            this.root = ParallelUtils.invoke(ForkJoinTask.adapt(() -> makeVPTree(tmpList, rand, true)));
     }
 
     @Override
@@ -223,7 +205,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
                 ArrayList<Pair<Double, Integer>> S = new ArrayList<>();
                 for(int i = 0; i < leaf.points.size(); i++)
                     S.add(new Pair<>(Double.MAX_VALUE, leaf.points.getI(i)));
-                root = makeVPTree(S);
+                root = makeVPTree(S, RandomUtil.getLocalRandom(), false);
                 maxLeafSize = orig_leaf_isze;//restor
             }
         }
@@ -244,36 +226,56 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
     @Override
     public void search(Vec query, int numNeighbors, List<Integer> neighbors, List<Double> distances)
     {
-        BoundedSortedList<IndexDistPair> boundedList= new BoundedSortedList<>(numNeighbors, numNeighbors);
-
-        List<Double> qi = dm.getQueryInfo(query);
-        root.searchKNN(VecPaired.extractTrueVec(query), numNeighbors, boundedList, 0.0, qi);
+        BoundedMaxHeap boundedList = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+            List<Double> qi = dm.getQueryInfo(query);
+            root.searchKNN(VecPaired.extractTrueVec(query), numNeighbors, boundedList, 0.0, qi);
         
-        for(IndexDistPair pm : boundedList)
+            boundedList.drainTo(neighbors, distances);
+        }
+        finally
         {
-            neighbors.add(pm.getIndex());
-            distances.add(pm.getDist());
+            boundedList.release();
         }
     }
     
     /**
      * Computes the distances to the vantage point, 
-     * Sorts the list by distance to the vantage point, 
+     * partitions the list around the median distance to the vantage point, 
      * finds the splitting index, and sets up the parent node. 
      * @param S the list
      * @param node the parent node
+     * @param parallel {@code true} if the distances may be computed in parallel
      * @return the index that was used to split on. 
      */
-    private int sortSplitSet(final List<Pair<Double, Integer>> S, final VPNode node)
+    private int sortSplitSet(final List<Pair<Double, Integer>> S, final VPNode node, boolean parallel)
     {
-        for (Pair<Double, Integer> S1 : S)
-            S1.setFirstItem(dm.dist(node.p, S1.getSecondItem(), allVecs, distCache)); //Each point gets its distance to the vantage point
-        Collections.sort(S, (Pair<Double, Integer> o1, Pair<Double, Integer> o2) -> Double.compare(o1.getFirstItem(), o2.getFirstItem()));
-        int splitIndex = splitListIndex(S); 
-        node.left_low = S.get(0).getFirstItem();
-        node.left_high = S.get(splitIndex).getFirstItem();
-        node.right_low = S.get(splitIndex+1).getFirstItem();
-        node.right_high = S.get(S.size()-1).getFirstItem();
+        final int n = S.size();
+        final double[] d = new double[n];
+        ParallelUtils.run(parallel && n >= PARALLEL_SIZE, n, (start, end) ->
+        {
+            for(int i = start; i < end; i++)
+                d[i] = dm.dist(node.p, S.get(i).getSecondItem(), allVecs, distCache); //Each point gets its distance to the vantage point
+        });
+        int splitIndex = splitListIndex(S);
+        Collection<List<?>> paired = Collections.singletonList(S);
+        QuickSort.select(d, 0, n, splitIndex, paired);
+        for(int i = 0; i < n; i++)
+            S.get(i).setFirstItem(d[i]);
+        
+        node.left_low = node.right_low = Double.POSITIVE_INFINITY;
+        node.left_high = node.right_high = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i <= splitIndex; i++)
+        {
+            node.left_low = Math.min(node.left_low, d[i]);
+            node.left_high = Math.max(node.left_high, d[i]);
+        }
+        for(int i = splitIndex+1; i < n; i++)
+        {
+            node.right_low = Math.min(node.right_low, d[i]);
+            node.right_high = Math.max(node.right_high, d[i]);
+        }
         return splitIndex;
     }
 
@@ -314,8 +316,18 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
     }
     
     
-    //The probability match is used to store and sort by median distances. 
-    private TreeNode makeVPTree(List<Pair<Double, Integer>> S)
+    /**
+     * Builds the tree for the given points. Large subtrees are given their own
+     * random source before either half is built, so that the same tree results
+     * when the halves are built in parallel.
+     * 
+     * @param S the points to build the tree from
+     * @param rand the source of randomness for this subtree
+     * @param parallel {@code true} to build large subtrees in parallel, only 
+     * valid from within a fork-join pool
+     * @return the root of the new subtree
+     */
+    private TreeNode makeVPTree(List<Pair<Double, Integer>> S, Random rand, boolean parallel)
     {
         if(S.isEmpty())
             return null;
@@ -325,72 +337,47 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
             return leaf;
         }
         
-        int vpIndex = selectVantagePointIndex(S);
+        int vpIndex = selectVantagePointIndex(S, rand);
         final VPNode node = new VPNode(S.get(vpIndex).getSecondItem());
         node.parent_dist = S.get(vpIndex).getFirstItem();
         
-        int splitIndex = sortSplitSet(S, node);
+        int splitIndex = sortSplitSet(S, node, parallel);
         
-        /*
-         * Re use the list and let it get altered. We must compute the right side first. 
-         * If we altered the left side, the median would move left, and the right side 
-         * would get thrown off or require aditonal book keeping. 
-         */
-        node.right = makeVPTree(S.subList(splitIndex+1, S.size()));
-        if(node.right != null)
-            node.right.parent = node;
-        node.left  = makeVPTree(S.subList(0, splitIndex+1));
-        if(node.left != null)
-            node.left.parent = node;
+        final List<Pair<Double, Integer>> rightS = S.subList(splitIndex+1, S.size());
+        final List<Pair<Double, Integer>> leftS = S.subList(0, splitIndex+1);
         
-        return node;
-    }
-    
-    private TreeNode makeVPTree(final List<Pair<Double, Integer>> S, final ExecutorService threadpool, final ModifiableCountDownLatch mcdl)
-    {
-        if(S.isEmpty())
+        final Random rand_r, rand_l;
+        if(S.size() < PARALLEL_SIZE)
+            rand_r = rand_l = rand;
+        else
         {
-            return null;
+            rand_r = RandomUtil.getRandom(rand.nextInt());
+            rand_l = RandomUtil.getRandom(rand.nextInt());
         }
-        else if(S.size() <= maxLeafSize)
+        if(parallel && S.size() >= PARALLEL_SIZE)
         {
-            VPLeaf leaf = new VPLeaf(S);
-            return leaf;
+            ForkJoinTask<TreeNode> right = ForkJoinTask.adapt(() -> makeVPTree(rightS, rand_r, true)).fork();
+            node.left = makeVPTree(leftS, rand_l, true);
+            node.right = right.join();
         }
-        
-        int vpIndex = selectVantagePointIndex(S);
-        final VPNode node = new VPNode(S.get(vpIndex).getSecondItem());
-        node.parent_dist = S.get(vpIndex).getFirstItem();
-        
-        int splitIndex = sortSplitSet(S, node);
-        
-        
-        //Start 2 threads, but only 1 of them is "new" 
-        mcdl.countUp();
-        
-
-        final List<Pair<Double, Integer>> rightS = S.subList(splitIndex+1, S.size());
-        final List<Pair<Double, Integer>> leftS = S.subList(0, splitIndex+1);
-        
-        threadpool.submit(() -> 
+        else
         {
-            node.right = makeVPTree(rightS, threadpool, mcdl);
-            if(node.right != null)
-                node.right.parent = node;
-            mcdl.countDown();
-        });
-        node.left  = makeVPTree(leftS, threadpool, mcdl);
+            node.right = makeVPTree(rightS, rand_r, false);
+            node.left  = makeVPTree(leftS, rand_l, false);
+        }
+        if(node.right != null)
+            node.right.parent = node;
         if(node.left != null)
             node.left.parent = node;
-
+        
         return node;
     }
     
     
-    private int selectVantagePointIndex(List<Pair<Double, Integer>> S)
+    private int selectVantagePointIndex(List<Pair<Double, Integer>> S, Random rand)
     {
         int vpIndex;
-        vpIndex = RandomUtil.getLocalRandom().nextInt(S.size());
+        vpIndex = rand.nextInt(S.size());
         return vpIndex;
     }
 
@@ -425,7 +412,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
          * @param qi the value of qi
          */
         
-        public abstract void searchKNN(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi);
+        public abstract void searchKNN(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi);
         
         /**
          * Performs a range query on this node
@@ -520,7 +507,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
                 List<Pair<Double, Integer>> S = new ArrayList<>(childs_children.size());
                 for(int indx : childs_children)
                     S.add(new Pair<>(Double.MAX_VALUE, indx));//double value will be set apprioatly later
-                int vpIndex = selectVantagePointIndex(S);
+                int vpIndex = selectVantagePointIndex(S, RandomUtil.getLocalRandom());
                 
                 final VPNode node = new VPNode(S.get(vpIndex).getSecondItem());
                 node.parent_dist = S.get(vpIndex).getFirstItem();
@@ -528,7 +515,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
                 
                 //move VP to front, its self dist is zero and we dont want it used in computing bounds. 
                 Collections.swap(S, 0, vpIndex);
-                int splitIndex = sortSplitSet(S.subList(1, S.size()), node)+1;//ofset by 1 b/c we sckipped the VP, which was moved to the front
+                int splitIndex = sortSplitSet(S.subList(1, S.size()), node, false)+1;//ofset by 1 b/c we sckipped the VP, which was moved to the front
                 
                 node.right = new VPLeaf(S.subList(splitIndex+1, S.size()));
                 node.right.parent = node;
@@ -555,7 +542,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
         }
         
         @Override
-        public void searchKNN(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+        public void searchKNN(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi)
         {
             Deque<VPNode> curNode_stack = new ArrayDeque<VPNode>();
             
@@ -571,9 +558,9 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
                     VPNode node = curNode_stack.peek();
                     x = dm.dist(node.p, query, qi, allVecs, distCache);
                     distToParrent_stack.push(x);
-                    if(list.size() < k || x < list.get(k-1).getDist())
-                        list.add(new IndexDistPair(node.p, x));
-                    double tau = list.get(list.size()-1).getDist();
+                    if(list.size() < k || x < list.peekValue())
+                        list.offer(node.p, x);
+                    double tau = list.peekValue();
                     double middle = (node.left_high+node.right_low)*0.5;
                     boolean leftFirst =  x < middle;
 
@@ -610,7 +597,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
                 {
                     VPNode node = curNode_stack.pop();//pop, we are defintly done with this node after
                     x = distToParrent_stack.pop();
-                    double tau = list.get(list.size()-1).getDist();
+                    double tau = list.peekValue();
                     Boolean finishLeft = search_left_stack.pop();
                     
                     
@@ -648,12 +635,12 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
             
         }
         
-        public void searchKNN_recurse(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+        public void searchKNN_recurse(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi)
         {
             x = dm.dist(p, query, qi, allVecs, distCache);
-            if(list.size() < k || x < list.get(k-1).getDist())
-                list.add(new IndexDistPair(this.p, x));
-            double tau = list.get(list.size()-1).getDist();
+            if(list.size() < k || x < list.peekValue())
+                list.offer(this.p, x);
+            double tau = list.peekValue();
             double middle = (this.left_high+this.right_low)*0.5;
             
 //            if(this.left instanceof VPNode && this.right in)
@@ -663,7 +650,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
             {
                 if(searchInLeft(x, tau) || list.size() < k)
                     this.left.searchKNN(query, k, list, x, qi);
-                tau = list.get(list.size()-1).getDist();
+                tau = list.peekValue();
                 if(searchInRight(x, tau) || list.size() < k)
                     this.right.searchKNN(query, k, list, x, qi);
             }
@@ -671,7 +658,7 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
             {
                 if(searchInRight(x, tau) || list.size() < k)
                     this.right.searchKNN(query, k, list, x, qi);
-                tau = list.get(list.size()-1).getDist();
+                tau = list.peekValue();
                 if(searchInLeft(x, tau) || list.size() < k)
                     this.left.searchKNN(query, k, list, x, qi);
             }
@@ -870,12 +857,12 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
         }
 
         @Override
-        public void searchKNN(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+        public void searchKNN(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi)
         {
             double dist = -1;
             
             //The zero check, for the case that the leaf is the ONLY node, x will be passed as 0.0 <= Max value will be true 
-            double tau = list.isEmpty() ? Double.MAX_VALUE : list.get(list.size()-1).getDist();
+            double tau = list.size() == 0 ? Double.MAX_VALUE : list.peekValue();
             for (int i = 0; i < points.size(); i++)
             {
                 int point_i = points.getI(i);
@@ -883,14 +870,14 @@ public class SVPTree<V extends Vec> implements IncrementalCollection<V>, DualTre
                 if (list.size() < k)
                 {
                     
-                    list.add(new IndexDistPair(point_i, dm.dist(point_i, query, qi, allVecs, distCache)));
-                    tau = list.get(list.size() - 1).getDist();
+                    list.offer(point_i, dm.dist(point_i, query, qi, allVecs, distCache));
+                    tau = list.peekValue();
                 }
                 else if (bound_i - tau <= x && x <= bound_i + tau)//Bound check agains the distance to our parrent node, provided by x
                     if ((dist = dm.dist(point_i, query, qi, allVecs, distCache)) < tau)
                     {
-                        list.add(new IndexDistPair(point_i, dist));
-                        tau = list.get(list.size() - 1).getDist();
+                        list.offer(point_i, dist);
+                        tau = list.peekValue();
                     }
             }
         }
@@ -5,26 +5,25 @@ import static java.lang.Math.min;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Random;
 import java.util.Stack;
-import java.util.concurrent.ExecutorService;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ForkJoinTask;
 import jsat.classifiers.DataPoint;
 import jsat.linear.Vec;
 import jsat.linear.VecPaired;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.utils.BooleanList;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.DoubleList;
 import jsat.utils.IndexTable;
 import jsat.utils.IntList;
-import jsat.utils.ModifiableCountDownLatch;
 import jsat.utils.Pair;
+import jsat.utils.QuickSort;
 import jsat.utils.SimpleList;
 import jsat.utils.concurrent.ParallelUtils;
 import jsat.utils.random.RandomUtil;
@@ -49,7 +48,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
 
     private static final long serialVersionUID = -7271540108746353762L;
     private DistanceMetric dm;
-    private List<Double> distCache;
+    private DoubleList distCache;
     private List<V> allVecs;
     private Random rand;
     private int sampleSize;
@@ -58,6 +57,17 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
     private VPSelection vpSelection;
     private int size;
     private int maxLeafSize = 5;
+    /**
+     * The flattened copy of the tree used for searching, or {@code null} if 
+     * the object tree is searched directly
+     */
+    private CompactVP compact;
+    private boolean compactLayout = false;
+    /**
+     * Sets of at least this many points are split using multiple threads when
+     * building in parallel
+     */
+    private static final int PARALLEL_SIZE = 1024;
 
     @Override
     public IndexNode getRoot()
@@ -144,6 +154,8 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
         this.vpSelection = toClone.vpSelection;
         this.size = toClone.size;
         this.maxLeafSize = toClone.maxLeafSize;
+        this.compactLayout = toClone.compactLayout;
+        this.compact = toClone.compact;//never modified, so can be shared
         if(toClone.allVecs != null)
             this.allVecs = new ArrayList<>(toClone.allVecs);
         if(toClone.distCache != null)
@@ -160,37 +172,48 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
 
         this.size = list.size();
         this.allVecs = list;
-        distCache = dm.getAccelerationCache(allVecs, parallel);
+        distCache = dm.getPrimitiveAccelerationCache(allVecs, parallel);
         //Use simple list so both halves can be modified simultaniously
         List<Pair<Double, Integer>> tmpList = new SimpleList<>(list.size());
         for(int i = 0; i < allVecs.size(); i++)
             tmpList.add(new Pair<>(-1.0, i));
+        Random buildRand = RandomUtil.getRandom(rand.nextInt());
         if(!parallel)
-            this.root = makeVPTree(tmpList);
+            this.root = makeVPTree(tmpList, buildRand, false);
         else
-        {
-            ExecutorService threadpool = ParallelUtils.getNewExecutor(parallel);
-            ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
-            this.root = makeVPTree(tmpList, threadpool, mcdl);
-            mcdl.countDown();
-            try
-            {
-                mcdl.await();
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(VPTree.class.getName()).log(Level.SEVERE, null, ex);
-                System.err.println("Falling back to single threaded VPTree constructor");
-                tmpList.clear();
-                for(int i = 0; i < list.size(); i++)
-                    tmpList.add(new Pair<>(-1.0, i));
-                this.root = makeVPTree(tmpList);
-            }
-            finally
-            {
-                threadpool.shutdownNow();
-            }
-        }
+            this.root = ParallelUtils.invoke(ForkJoinTask.adapt(() -> makeVPTree(tmpList, buildRand, true)));
+        setCompactLayout(compactLayout);
+    }
+
+    /**
+     * Sets whether a compact copy of the tree should be used for searching. 
+     * The compact layout stores the nodes and their bounds in primitive arrays 
+     * in depth first order, and copies the points into one contiguous block 
+     * of memory in the same order, which avoids chasing pointers through 
+     * objects scattered across the heap. It costs a copy of the data set. 
+     * Dual tree searches always use the tree of node objects. <br>
+     * Inserting a new point discards the compact layout, which will be 
+     * re-created the next time the tree is built or this method is called. 
+     *
+     * @param compactLayout {@code true} to search a compact copy of the tree, 
+     * {@code false} to search the tree of node objects
+     */
+    public void setCompactLayout(boolean compactLayout)
+    {
+        this.compactLayout = compactLayout;
+        if(compactLayout && root != null)
+            compact = new CompactVP(root, allVecs, dm);
+        else
+            compact = null;
+    }
+
+    /**
+     *
+     * @return {@code true} if a compact copy of the tree is searched
+     */
+    public boolean isCompactLayout()
+    {
+        return compactLayout;
     }
 
     @Override
@@ -233,8 +256,8 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
         int indx = size++;
         allVecs.add(x);
         if(distCache != null)
-            distCache.addAll(dm.getQueryInfo(x));
-        
+            distCache.addAll(dm.getPrimitiveQueryInfo(x));
+        compact = null;
         
         if(root == null)
         {
@@ -256,7 +279,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 ArrayList<Pair<Double, Integer>> S = new ArrayList<>();
                 for(int i = 0; i < leaf.points.size(); i++)
                     S.add(new Pair<>(Double.MAX_VALUE, leaf.points.getI(i)));
-                root = makeVPTree(S);
+                root = makeVPTree(S, rand, false);
                 maxLeafSize = orig_leaf_isze;//restor
             }
         }
@@ -266,8 +289,11 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
     @Override
     public void search(Vec query, double range, List<Integer> neighbors, List<Double> distances)
     {
-        List<Double> qi = dm.getQueryInfo(query);
-        root.searchRange(VecPaired.extractTrueVec(query), range, neighbors, distances, 0.0, qi);
+        DoubleList qi = dm.getPrimitiveQueryInfo(query);
+        if(compact != null)
+            compact.searchRange(0, VecPaired.extractTrueVec(query), range, neighbors, distances, 0.0, qi, dm);
+        else
+            root.searchRange(VecPaired.extractTrueVec(query), range, neighbors, distances, 0.0, qi);
         
         IndexTable it = new IndexTable(distances);
         it.apply(neighbors);
@@ -277,64 +303,117 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
     @Override
     public void search(Vec query, int numNeighbors, List<Integer> neighbors, List<Double> distances)
     {
-        BoundedSortedList<IndexDistPair> boundedList= new BoundedSortedList<>(numNeighbors, numNeighbors);
-
-        List<Double> qi = dm.getQueryInfo(query);
-        root.searchKNN(VecPaired.extractTrueVec(query), numNeighbors, boundedList, 0.0, qi);
+        BoundedMaxHeap boundedList = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+            DoubleList qi = dm.getPrimitiveQueryInfo(query);
+            if(compact != null)
+                compact.searchKNN(0, VecPaired.extractTrueVec(query), numNeighbors, boundedList, 0.0, qi, dm);
+            else
+                root.searchKNN(VecPaired.extractTrueVec(query), numNeighbors, boundedList, 0.0, qi);
         
-        for(IndexDistPair pm : boundedList)
+            boundedList.drainTo(neighbors, distances);
+        }
+        finally
         {
-            neighbors.add(pm.getIndex());
-            distances.add(pm.getDist());
+            boundedList.release();
         }
     }
 
     @Override
     public void search(Vec query, int numNeighbors, double range, List<Integer> neighbors, List<Double> distances)
     {
-	BoundedSortedList<IndexDistPair> boundedList= new BoundedSortedList<>(numNeighbors, numNeighbors);
-
-        List<Double> qi = dm.getQueryInfo(query);
-        root.searchKNN_range(VecPaired.extractTrueVec(query), numNeighbors, range, boundedList, 0.0, qi);
+        BoundedMaxHeap boundedList = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+            DoubleList qi = dm.getPrimitiveQueryInfo(query);
+            if(compact != null)
+                compact.searchKNN_range(0, VecPaired.extractTrueVec(query), numNeighbors, range, boundedList, 0.0, qi, dm);
+            else
+                root.searchKNN_range(VecPaired.extractTrueVec(query), numNeighbors, range, boundedList, 0.0, qi);
         
-        for(IndexDistPair pm : boundedList)
+            boundedList.drainTo(neighbors, distances);
+        }
+        finally
         {
-            neighbors.add(pm.getIndex());
-            distances.add(pm.getDist());
+            boundedList.release();
         }
     }
     
     /**
      * Computes the distances to the vantage point, 
-     * Sorts the list by distance to the vantage point, 
-     * finds the splitting index, and sets up the parent node. 
+     * partitions the list by distance to the vantage point around the 
+     * splitting index, and sets up the parent node. 
      * @param S the list
      * @param node the parent node
+     * @param parallel {@code true} if the distances may be computed in parallel
      * @return the index that was used to split on. 
      */
-    private int sortSplitSet(final List<Pair<Double, Integer>> S, final VPNode node)
+    private int sortSplitSet(final List<Pair<Double, Integer>> S, final VPNode node, boolean parallel)
     {
-        for (Pair<Double, Integer> S1 : S)
-            S1.setFirstItem(dm.dist(node.p, S1.getSecondItem(), allVecs, distCache)); //Each point gets its distance to the vantage point
-        Collections.sort(S, (Pair<Double, Integer> o1, Pair<Double, Integer> o2) -> Double.compare(o1.getFirstItem(), o2.getFirstItem()));
-        int splitIndex = splitListIndex(S); 
-        node.left_low = S.get(0).getFirstItem();
-        node.left_high = S.get(splitIndex).getFirstItem();
-        node.right_low = S.get(splitIndex+1).getFirstItem();
-        node.right_high = S.get(S.size()-1).getFirstItem();
+        final int n = S.size();
+        final double[] d = new double[n];
+        ParallelUtils.run(parallel && n >= PARALLEL_SIZE, n, (start, end) ->
+        {
+            for(int i = start; i < end; i++)
+                d[i] = dm.dist(node.p, S.get(i).getSecondItem(), allVecs, distCache); //Each point gets its distance to the vantage point
+        });
+        Collection<List<?>> paired = Collections.singletonList(S);
+        int splitIndex;
+        if(isMedianSplit())
+        {
+            splitIndex = splitListIndex(S);
+            QuickSort.select(d, 0, n, splitIndex, paired);
+        }
+        else
+        {
+            QuickSort.sort(d, 0, n, paired);
+            splitIndex = -1;
+        }
+        for(int i = 0; i < n; i++)
+            S.get(i).setFirstItem(d[i]);
+        if(splitIndex < 0)
+            splitIndex = splitListIndex(S);
+        
+        node.left_low = node.right_low = Double.POSITIVE_INFINITY;
+        node.left_high = node.right_high = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i <= splitIndex; i++)
+        {
+            node.left_low = Math.min(node.left_low, d[i]);
+            node.left_high = Math.max(node.left_high, d[i]);
+        }
+        for(int i = splitIndex+1; i < n; i++)
+        {
+            node.right_low = Math.min(node.right_low, d[i]);
+            node.right_high = Math.max(node.right_high, d[i]);
+        }
         return splitIndex;
     }
 
     
     /**
      * Determines which index to use as the splitting index for the VP radius 
-     * @param S the non empty list of elements 
+     * @param S the non empty list of elements, sorted by distance to the 
+     * vantage point unless {@link #isMedianSplit() } is {@code true}
      * @return the index that should be used to split on [0, index] belonging to the left, and (index, S.size() ) belonging to the right. 
      */
     protected int splitListIndex(List<Pair<Double, Integer>> S)
     {
         return S.size()/2;
     }
+    
+    /**
+     * Indicates whether {@link #splitListIndex(java.util.List) } always 
+     * splits at the median. If so, the list does not need to be sorted when 
+     * building the tree, and the median is found by selection instead. 
+     * 
+     * @return {@code true} if the split index only depends on the size of 
+     * the list
+     */
+    protected boolean isMedianSplit()
+    {
+        return true;
+    }
 
     /**
      * Returns the maximum leaf node size. Leaf nodes are used to reduce inefficiency of splitting small lists. 
@@ -362,8 +441,20 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
     }
     
     
-    //The probability match is used to store and sort by median distances. 
-    private TreeNode makeVPTree(List<Pair<Double, Integer>> S)
+    /**
+     * Builds the tree for the given points. Subtrees with at least 
+     * {@link #PARALLEL_SIZE} points are given their own random source, drawn 
+     * from the parent's before either is built, so the tree built for a given 
+     * seed is the same whether or not the subtrees are built in parallel. 
+     * 
+     * @param S the points to build the tree from, paired with their distance 
+     * to the parent's vantage point
+     * @param rand the source of randomness for this subtree
+     * @param parallel {@code true} to build large subtrees in parallel. Must 
+     * only be {@code true} when running inside a fork-join pool. 
+     * @return the root of the new subtree
+     */
+    private TreeNode makeVPTree(List<Pair<Double, Integer>> S, Random rand, boolean parallel)
     {
         if(S.isEmpty())
             return null;
@@ -373,73 +464,50 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
             return leaf;
         }
         
-        int vpIndex = selectVantagePointIndex(S);
+        int vpIndex = selectVantagePointIndex(S, rand);
         final VPNode node = new VPNode(S.get(vpIndex).getSecondItem());
         node.parent_dist = S.get(vpIndex).getFirstItem();
         
         //move VP to front, its self dist is zero and we dont want it used in computing bounds. 
         Collections.swap(S, 0, vpIndex);
-        int splitIndex = sortSplitSet(S.subList(1, S.size()), node)+1;//ofset by 1 b/c we sckipped the VP, which was moved to the front
+        int splitIndex = sortSplitSet(S.subList(1, S.size()), node, parallel)+1;//ofset by 1 b/c we sckipped the VP, which was moved to the front
         
         /*
-         * Re use the list and let it get altered. We must compute the right side first. 
-         * If we altered the left side, the median would move left, and the right side 
-         * would get thrown off or require aditonal book keeping. 
+         * The two halves are disjoint views of the same list, so they can be 
+         * built independently of each other. 
          */
-        node.right = makeVPTree(S.subList(splitIndex+1, S.size()));
-        if(node.right != null)
-            node.right.parent = node;
-        node.left  = makeVPTree(S.subList(1, splitIndex+1));
-        if(node.left != null)
-            node.left.parent = node;
+        final List<Pair<Double, Integer>> rightS = S.subList(splitIndex+1, S.size());
+        final List<Pair<Double, Integer>> leftS = S.subList(1, splitIndex+1);
         
-        return node;
-    }
-    
-    private TreeNode makeVPTree(final List<Pair<Double, Integer>> S, final ExecutorService threadpool, final ModifiableCountDownLatch mcdl)
-    {
-        if(S.isEmpty())
+        final Random rand_r, rand_l;
+        if(S.size() < PARALLEL_SIZE)
+            rand_r = rand_l = rand;
+        else
         {
-            return null;
+            rand_r = RandomUtil.getRandom(rand.nextInt());
+            rand_l = RandomUtil.getRandom(rand.nextInt());
         }
-        else if(S.size() <= maxLeafSize)
+        if(parallel && S.size() >= PARALLEL_SIZE)
         {
-            VPLeaf leaf = new VPLeaf(S);
-            return leaf;
+            ForkJoinTask<TreeNode> right = ForkJoinTask.adapt(() -> makeVPTree(rightS, rand_r, true)).fork();
+            node.left = makeVPTree(leftS, rand_l, true);
+            node.right = right.join();
         }
-        
-        int vpIndex = selectVantagePointIndex(S);
-        final VPNode node = new VPNode(S.get(vpIndex).getSecondItem());
-        node.parent_dist = S.get(vpIndex).getFirstItem();
-        
-        //move VP to front, its self dist is zero and we dont want it used in computing bounds. 
-        Collections.swap(S, 0, vpIndex);
-        int splitIndex = sortSplitSet(S.subList(1, S.size()), node)+1;//ofset by 1 b/c we sckipped the VP, which was moved to the front
-        
-        
-        //Start 2 threads, but only 1 of them is "new" 
-        mcdl.countUp();
-        
-
-        final List<Pair<Double, Integer>> rightS = S.subList(splitIndex+1, S.size());
-        final List<Pair<Double, Integer>> leftS = S.subList(1, splitIndex+1);
-        
-        threadpool.submit(() -> 
+        else
         {
-            node.right = makeVPTree(rightS, threadpool, mcdl);
-            if(node.right != null)
-                node.right.parent = node;
-            mcdl.countDown();
-        });
-        node.left  = makeVPTree(leftS, threadpool, mcdl);
+            node.right = makeVPTree(rightS, rand_r, false);
+            node.left  = makeVPTree(leftS, rand_l, false);
+        }
+        if(node.right != null)
+            node.right.parent = node;
         if(node.left != null)
             node.left.parent = node;
-
+        
         return node;
     }
     
     
-    private int selectVantagePointIndex(List<Pair<Double, Integer>> S)
+    private int selectVantagePointIndex(List<Pair<Double, Integer>> S, Random rand)
     {
         int vpIndex;
         if (vpSelection == VPSelection.Random)
@@ -492,7 +560,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
      */
     private int selectVantagePoint(List<Pair<Double, Integer>> S)
     {
-        int vpIndex = selectVantagePointIndex(S);
+        int vpIndex = selectVantagePointIndex(S, rand);
         
         return S.get(vpIndex).getSecondItem();
     }
@@ -509,6 +577,248 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
         return distCache;
     }
     
+    /**
+     * The tree flattened into primitive arrays, with the nodes in depth first 
+     * order. The vantage point of each branch and the points of each leaf are 
+     * stored in {@link #points} in the same order, so each leaf's points are 
+     * a contiguous range. 
+     */
+    private static class CompactVP implements Serializable
+    {
+        private static final long serialVersionUID = 4536137711395236208L;
+        /**
+         * The position in {@link #points} of the vantage point of each branch 
+         * node, or -1 for leaf nodes
+         */
+        final int[] vp;
+        final double[] left_low, left_high, right_low, right_high;
+        /**
+         * The children of each branch node, or -1 if there is no child
+         */
+        final int[] left, right;
+        /**
+         * The first and last (exclusive) position in {@link #points} of the 
+         * points in each leaf node
+         */
+        final int[] start, end;
+        /**
+         * The distance of each point in a leaf to its parent's vantage point, 
+         * indexed by position in {@link #points}
+         */
+        final double[] bounds;
+        final CompactPoints points;
+        
+        public CompactVP(VPTree<?>.TreeNode root, List<? extends Vec> allVecs, DistanceMetric dm)
+        {
+            int nodes = count(root);
+            vp = new int[nodes];
+            left_low = new double[nodes];
+            left_high = new double[nodes];
+            right_low = new double[nodes];
+            right_high = new double[nodes];
+            left = new int[nodes];
+            right = new int[nodes];
+            start = new int[nodes];
+            end = new int[nodes];
+            IntList order = new IntList(allVecs.size());
+            DoubleList bounds_list = new DoubleList(allVecs.size());
+            fill(root, 0, order, bounds_list);
+            bounds = bounds_list.getBackingArray();
+            points = new CompactPoints(order, allVecs, dm);
+        }
+        
+        private static int count(VPTree<?>.TreeNode node)
+        {
+            if(node == null)
+                return 0;
+            if(node.isLeaf())
+                return 1;
+            VPTree<?>.VPNode vpNode = (VPTree<?>.VPNode) node;
+            return 1 + count(vpNode.left) + count(vpNode.right);
+        }
+        
+        /**
+         * Stores the given subtree starting at position {@code id}
+         * @return the next free position
+         */
+        private int fill(VPTree<?>.TreeNode node, int id, IntList order, DoubleList bounds)
+        {
+            if(node.isLeaf())
+            {
+                VPTree<?>.VPLeaf leaf = (VPTree<?>.VPLeaf) node;
+                vp[id] = left[id] = right[id] = -1;
+                start[id] = order.size();
+                order.addAll(leaf.points);
+                bounds.addAll(leaf.bounds);
+                end[id] = order.size();
+                return id+1;
+            }
+            VPTree<?>.VPNode vpNode = (VPTree<?>.VPNode) node;
+            vp[id] = order.size();
+            order.add(vpNode.p);
+            bounds.add(0.0);//not used for vantage points
+            left_low[id] = vpNode.left_low;
+            left_high[id] = vpNode.left_high;
+            right_low[id] = vpNode.right_low;
+            right_high[id] = vpNode.right_high;
+            int next = id+1;
+            left[id] = right[id] = -1;
+            if(vpNode.left != null)
+            {
+                left[id] = next;
+                next = fill(vpNode.left, next, order, bounds);
+            }
+            if(vpNode.right != null)
+            {
+                right[id] = next;
+                next = fill(vpNode.right, next, order, bounds);
+            }
+            return next;
+        }
+        
+        private boolean searchInLeft(int id, double x, double tau)
+        {
+            return left[id] >= 0 && left_low[id]-tau <= x && x <= left_high[id]+tau;
+        }
+        
+        private boolean searchInRight(int id, double x, double tau)
+        {
+            return right[id] >= 0 && right_low[id]-tau <= x && x <= right_high[id]+tau;
+        }
+        
+        /**
+         * Performs a KNN query on the given node, see 
+         * {@link TreeNode#searchKNN(jsat.linear.Vec, int, jsat.utils.BoundedMaxHeap, double, java.util.List) }
+         */
+        public void searchKNN(int id, Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi, DistanceMetric dm)
+        {
+            if(vp[id] < 0)
+            {
+                //The zero check, for the case that the leaf is the ONLY node
+                double tau = list.size() == 0 ? Double.MAX_VALUE : list.peekValue();
+                for(int j = start[id]; j < end[id]; j++)
+                {
+                    double dist;
+                    if(list.size() < k)
+                    {
+                        list.offer(points.order[j], points.dist(j, query, qi, dm));
+                        tau = list.peekValue();
+                    }
+                    else if(bounds[j] - tau <= x && x <= bounds[j] + tau)
+                        if((dist = points.dist(j, query, qi, dm)) < tau)
+                        {
+                            list.offer(points.order[j], dist);
+                            tau = list.peekValue();
+                        }
+                }
+                return;
+            }
+            
+            x = points.dist(vp[id], query, qi, dm);
+            if(list.size() < k || x < list.peekValue())
+                list.offer(points.order[vp[id]], x);
+            double tau = list.peekValue();
+            double middle = (left_high[id]+right_low[id])*0.5;
+            
+            if(x < middle)
+            {
+                if(left[id] >= 0 && (searchInLeft(id, x, tau) || list.size() < k))
+                    searchKNN(left[id], query, k, list, x, qi, dm);
+                tau = list.peekValue();
+                if(right[id] >= 0 && (searchInRight(id, x, tau) || list.size() < k))
+                    searchKNN(right[id], query, k, list, x, qi, dm);
+            }
+            else
+            {
+                if(right[id] >= 0 && (searchInRight(id, x, tau) || list.size() < k))
+                    searchKNN(right[id], query, k, list, x, qi, dm);
+                tau = list.peekValue();
+                if(left[id] >= 0 && (searchInLeft(id, x, tau) || list.size() < k))
+                    searchKNN(left[id], query, k, list, x, qi, dm);
+            }
+        }
+        
+        /**
+         * Performs a KNN query limited to a radius on the given node, see 
+         * {@link TreeNode#searchKNN_range(jsat.linear.Vec, int, double, jsat.utils.BoundedMaxHeap, double, java.util.List) }
+         */
+        public void searchKNN_range(int id, Vec query, int k, double radius, BoundedMaxHeap list, double x, List<Double> qi, DistanceMetric dm)
+        {
+            if(vp[id] < 0)
+            {
+                double tau = list.size() < k ? radius : min(radius, list.peekValue());
+                for(int j = start[id]; j < end[id]; j++)
+                {
+                    double dist;
+                    if(bounds[j] - tau <= x && x <= bounds[j] + tau)
+                        if((dist = points.dist(j, query, qi, dm)) < tau)
+                        {
+                            list.offer(points.order[j], dist);
+                            tau = min(radius, list.peekValue());
+                        }
+                }
+                return;
+            }
+            
+            x = points.dist(vp[id], query, qi, dm);
+            if(x < radius && (list.size() < k || x < list.peekValue()))
+                list.offer(points.order[vp[id]], x);
+            double tau = list.size() < k ? radius : min(radius, list.peekValue());
+            double middle = (left_high[id]+right_low[id])*0.5;
+            
+            if(x < middle)
+            {
+                if(searchInLeft(id, x, tau))
+                    searchKNN_range(left[id], query, k, radius, list, x, qi, dm);
+                tau = list.size() < k ? radius : min(radius, list.peekValue());
+                if(searchInRight(id, x, tau))
+                    searchKNN_range(right[id], query, k, radius, list, x, qi, dm);
+            }
+            else
+            {
+                if(searchInRight(id, x, tau))
+                    searchKNN_range(right[id], query, k, radius, list, x, qi, dm);
+                tau = list.size() < k ? radius : min(radius, list.peekValue());
+                if(searchInLeft(id, x, tau))
+                    searchKNN_range(left[id], query, k, radius, list, x, qi, dm);
+            }
+        }
+        
+        /**
+         * Performs a range query on the given node, see 
+         * {@link TreeNode#searchRange(jsat.linear.Vec, double, java.util.List, java.util.List, double, java.util.List) }
+         */
+        public void searchRange(int id, Vec query, double range, List<Integer> neighbors, List<Double> distances, double x, List<Double> qi, DistanceMetric dm)
+        {
+            if(vp[id] < 0)
+            {
+                for(int j = start[id]; j < end[id]; j++)
+                {
+                    double dist;
+                    if(bounds[j] - range <= x && x <= bounds[j] + range)
+                        if((dist = points.dist(j, query, qi, dm)) < range)
+                        {
+                            neighbors.add(points.order[j]);
+                            distances.add(dist);
+                        }
+                }
+                return;
+            }
+            
+            x = points.dist(vp[id], query, qi, dm);
+            if(x <= range)
+            {
+                neighbors.add(points.order[vp[id]]);
+                distances.add(x);
+            }
+
+            if(searchInLeft(id, x, range))
+                searchRange(left[id], query, range, neighbors, distances, x, qi, dm);
+            if(searchInRight(id, x, range))
+                searchRange(right[id], query, range, neighbors, distances, x, qi, dm);
+        }
+    }
+    
     private abstract class TreeNode implements Cloneable, Serializable, IndexNode
     {
         VPNode parent;
@@ -533,7 +843,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
          * Initial calls from the root node may choose to us zero. 
          * @param qi the value of qi
          */
-        public abstract void searchKNN(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi);
+        public abstract void searchKNN(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi);
 
         /**
          * Performs a KNN query on this node.
@@ -548,7 +858,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
          * Initial calls from the root node may choose to us zero. 
          * @param qi the value of qi
          */
-	public abstract void searchKNN_range(Vec query, int k, double radius, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi);
+	public abstract void searchKNN_range(Vec query, int k, double radius, BoundedMaxHeap list, double x, List<Double> qi);
         
         /**
          * Performs a range query on this node
@@ -644,7 +954,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 List<Pair<Double, Integer>> S = new ArrayList<>(childs_children.size());
                 for(int indx : childs_children)
                     S.add(new Pair<>(Double.MAX_VALUE, indx));//double value will be set apprioatly later
-                int vpIndex = selectVantagePointIndex(S);
+                int vpIndex = selectVantagePointIndex(S, rand);
                 
                 final VPNode node = new VPNode(S.get(vpIndex).getSecondItem());
                 node.parent_dist = S.get(vpIndex).getFirstItem();
@@ -652,7 +962,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 
                 //move VP to front, its self dist is zero and we dont want it used in computing bounds. 
                 Collections.swap(S, 0, vpIndex);
-                int splitIndex = sortSplitSet(S.subList(1, S.size()), node)+1;//ofset by 1 b/c we sckipped the VP, which was moved to the front
+                int splitIndex = sortSplitSet(S.subList(1, S.size()), node, false)+1;//ofset by 1 b/c we sckipped the VP, which was moved to the front
                 
                 node.right = new VPLeaf(S.subList(splitIndex+1, S.size()));
                 node.right.parent = node;
@@ -679,7 +989,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
         }
         
         @Override
-        public void searchKNN(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+        public void searchKNN(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi)
         {
             Deque<VPNode> curNode_stack = new ArrayDeque<>();
             
@@ -695,9 +1005,9 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                     VPNode node = curNode_stack.peek();
                     x = dm.dist(node.p, query, qi, allVecs, distCache);
                     distToParrent_stack.push(x);
-                    if(list.size() < k || x < list.get(k-1).getDist())
-                        list.add(new IndexDistPair(node.p, x));
-                    double tau = list.get(list.size()-1).getDist();
+                    if(list.size() < k || x < list.peekValue())
+                        list.offer(node.p, x);
+                    double tau = list.peekValue();
                     double middle = (node.left_high+node.right_low)*0.5;
                     boolean leftFirst =  x < middle;
 
@@ -734,7 +1044,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 {
                     VPNode node = curNode_stack.pop();//pop, we are defintly done with this node after
                     x = distToParrent_stack.pop();
-                    double tau = list.get(list.size()-1).getDist();
+                    double tau = list.peekValue();
                     Boolean finishLeft = search_left_stack.pop();
                     
                     
@@ -772,12 +1082,12 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
             
         }
         
-        public void searchKNN_recurse(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+        public void searchKNN_recurse(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi)
         {
             x = dm.dist(p, query, qi, allVecs, distCache);
-            if(list.size() < k || x < list.get(k-1).getDist())
-                list.add(new IndexDistPair(this.p, x));
-            double tau = list.get(list.size()-1).getDist();
+            if(list.size() < k || x < list.peekValue())
+                list.offer(this.p, x);
+            double tau = list.peekValue();
             double middle = (this.left_high+this.right_low)*0.5;
             
 //            if(this.left instanceof VPNode && this.right in)
@@ -787,7 +1097,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
             {
                 if(searchInLeft(x, tau) || list.size() < k)
                     this.left.searchKNN(query, k, list, x, qi);
-                tau = list.get(list.size()-1).getDist();
+                tau = list.peekValue();
                 if(searchInRight(x, tau) || list.size() < k)
                     this.right.searchKNN(query, k, list, x, qi);
             }
@@ -795,14 +1105,14 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
             {
                 if(searchInRight(x, tau) || list.size() < k)
                     this.right.searchKNN(query, k, list, x, qi);
-                tau = list.get(list.size()-1).getDist();
+                tau = list.peekValue();
                 if(searchInLeft(x, tau) || list.size() < k)
                     this.left.searchKNN(query, k, list, x, qi);
             }
         }
 	
 	@Override
-	public void searchKNN_range(Vec query, int k, double radius, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+	public void searchKNN_range(Vec query, int k, double radius, BoundedMaxHeap list, double x, List<Double> qi)
         {
 	    Deque<VPNode> curNode_stack = new ArrayDeque<>();
             
@@ -818,9 +1128,9 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                     VPNode node = curNode_stack.peek();
                     x = dm.dist(node.p, query, qi, allVecs, distCache);
                     distToParrent_stack.push(x);
-                    if(x < radius && (list.size() < k || x < list.get(k-1).getDist()))
-                        list.add(new IndexDistPair(node.p, x));
-                    double tau = list.size() < k ? radius : min(radius, list.get(list.size()-1).getDist());
+                    if(x < radius && (list.size() < k || x < list.peekValue()))
+                        list.offer(node.p, x);
+                    double tau = list.size() < k ? radius : min(radius, list.peekValue());
                     double middle = (node.left_high+node.right_low)*0.5;
                     boolean leftFirst =  x < middle;
 
@@ -857,7 +1167,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 {
                     VPNode node = curNode_stack.pop();//pop, we are defintly done with this node after
                     x = distToParrent_stack.pop();
-                    double tau = list.size() < k ? radius : min(radius, list.get(list.size()-1).getDist());
+                    double tau = list.size() < k ? radius : min(radius, list.peekValue());
                     Boolean finishLeft = search_left_stack.pop();
                     
                     
@@ -930,7 +1240,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 jsat.linear.vectorcollection.VPTree.VPNode o = (jsat.linear.vectorcollection.VPTree.VPNode) other;
 //                return dm.dist(this.p, o.p, allVecs, distCache) - this.right_high - o.right_high;
                 Vec ov = o.getVec(o.p);
-                List<Double> qi = dm.getQueryInfo(ov);
+                DoubleList qi = dm.getPrimitiveQueryInfo(ov);
                 return dm.dist(this.p, ov, qi, allVecs, distCache) + this.right_high + o.right_high;
             }
             else
@@ -948,7 +1258,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 jsat.linear.vectorcollection.VPTree.VPNode o = (jsat.linear.vectorcollection.VPTree.VPNode) other;
 //                return dm.dist(this.p, o.p, allVecs, distCache) - this.right_high - o.right_high;
                 Vec ov = o.getVec(o.p);
-                List<Double> qi = dm.getQueryInfo(ov);
+                DoubleList qi = dm.getPrimitiveQueryInfo(ov);
                 return dm.dist(this.p, ov, qi, allVecs, distCache) - this.right_high - o.right_high;
 //                return dm.dist(ov, get(this.p)) - this.right_high - o.right_high;
 //                return 0;
@@ -968,7 +1278,7 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 jsat.linear.vectorcollection.VPTree.VPNode o = (jsat.linear.vectorcollection.VPTree.VPNode) other;
 
                 Vec ov = o.getVec(o.p);
-                List<Double> qi = dm.getQueryInfo(ov);
+                DoubleList qi = dm.getPrimitiveQueryInfo(ov);
                 double d = dm.dist(this.p, ov, qi, allVecs, distCache);
                 return new double[]
                 {
@@ -1099,12 +1409,12 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
         }
 
         @Override
-        public void searchKNN(Vec query, int k, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+        public void searchKNN(Vec query, int k, BoundedMaxHeap list, double x, List<Double> qi)
         {
             double dist = -1;
             
             //The zero check, for the case that the leaf is the ONLY node, x will be passed as 0.0 <= Max value will be true 
-            double tau = list.isEmpty() ? Double.MAX_VALUE : list.get(list.size()-1).getDist();
+            double tau = list.size() == 0 ? Double.MAX_VALUE : list.peekValue();
             for (int i = 0; i < points.size(); i++)
             {
                 int point_i = points.getI(i);
@@ -1112,14 +1422,14 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 if (list.size() < k)
                 {
                     
-                    list.add(new IndexDistPair(point_i, dm.dist(point_i, query, qi, allVecs, distCache)));
-                    tau = list.get(list.size() - 1).getDist();
+                    list.offer(point_i, dm.dist(point_i, query, qi, allVecs, distCache));
+                    tau = list.peekValue();
                 }
                 else if (bound_i - tau <= x && x <= bound_i + tau)//Bound check agains the distance to our parrent node, provided by x
                     if ((dist = dm.dist(point_i, query, qi, allVecs, distCache)) < tau)
                     {
-                        list.add(new IndexDistPair(point_i, dist));
-                        tau = list.get(list.size() - 1).getDist();
+                        list.offer(point_i, dist);
+                        tau = list.peekValue();
                     }
             }
         }
@@ -1143,12 +1453,12 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
         }
 
 	@Override
-	public void searchKNN_range(Vec query, int k, double range, BoundedSortedList<IndexDistPair> list, double x, List<Double> qi)
+	public void searchKNN_range(Vec query, int k, double range, BoundedMaxHeap list, double x, List<Double> qi)
         {
             double dist = -1;
             
             //The zero check, for the case that the leaf is the ONLY node, x will be passed as 0.0 <= Max value will be true 
-            double tau = list.size() < k ? range : min(range, list.get(list.size()-1).getDist());
+            double tau = list.size() < k ? range : min(range, list.peekValue());
             for (int i = 0; i < points.size(); i++)
             {
                 int point_i = points.getI(i);
@@ -1156,8 +1466,8 @@ public class VPTree<V extends Vec> implements IncrementalCollection<V>, DualTree
                 if (bound_i - tau <= x && x <= bound_i + tau)//Bound check agains the distance to our parrent node, provided by x
                     if ((dist = dm.dist(point_i, query, qi, allVecs, distCache)) < tau)
                     {
-                        list.add(new IndexDistPair(point_i, dist));
-                        tau = min(range, list.get(list.size() - 1).getDist());
+                        list.offer(point_i, dist);
+                        tau = min(range, list.peekValue());
                     }
             }
         }
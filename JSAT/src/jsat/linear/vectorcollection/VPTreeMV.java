@@ -68,6 +68,12 @@ public class VPTreeMV<V extends Vec> extends VPTree<V>
         super(toClone);
     }
 
+    @Override
+    protected boolean isMedianSplit()
+    {
+        return false;
+    }
+
     @Override
     protected int splitListIndex(List<Pair<Double, Integer>> S)
     {
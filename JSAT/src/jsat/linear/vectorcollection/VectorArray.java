@@ -4,12 +4,16 @@ package jsat.linear.vectorcollection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import jsat.linear.DenseMatrix;
+import jsat.linear.Matrix;
 import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.DoubleList;
 import jsat.utils.IndexTable;
+import jsat.utils.IntList;
+import jsat.utils.concurrent.ParallelUtils;
 
 /**
  * This is the naive implementation of a Vector collection. Construction time is 
@@ -17,14 +21,27 @@ import jsat.utils.IndexTable;
  * <br><br>
  * Removing elements from the vector array will result in the destruction of any
  * {@link DistanceMetric#getAccelerationCache(java.util.List) acceleration cache}
+ * <br><br>
+ * Searches for many queries at once compute the distances between blocks of
+ * queries and blocks of points together, with the batch
+ * {@link DistanceMetric#dist(java.util.List, java.util.List, java.util.List, java.util.List, jsat.linear.Matrix, boolean) dist}
+ * method, which for some metrics is much faster than one query at a time. 
  * 
  * @author Edward Raff
  */
 public class VectorArray<V extends Vec> extends ArrayList<V> implements IncrementalCollection<V>
 {
     private static final long serialVersionUID = 5365949686370986234L;
+    /**
+     * The number of queries whose distances are computed together
+     */
+    private static final int QUERY_BLOCK = 128;
+    /**
+     * The number of points whose distances are computed together
+     */
+    private static final int POINT_BLOCK = 2048;
     private DistanceMetric distanceMetric;
-    private List<Double> distCache;
+    private DoubleList distCache;
 
     public VectorArray()
     {
@@ -44,7 +61,7 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements Incremen
         super(c);
         this.distanceMetric = distanceMetric;
         if(distanceMetric.supportsAcceleration())
-            distCache = distanceMetric.getAccelerationCache(this);
+            distCache = distanceMetric.getPrimitiveAccelerationCache(this, false);
     }
 
     public VectorArray(DistanceMetric distanceMetric)
@@ -68,7 +85,7 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements Incremen
             return;//avoid recomputing neadlessly
         this.distanceMetric = distanceMetric;
         if(distanceMetric.supportsAcceleration())
-            this.distCache = distanceMetric.getAccelerationCache(this);
+            this.distCache = distanceMetric.getPrimitiveAccelerationCache(this, false);
         else
             this.distCache = null;
     }
@@ -84,7 +101,7 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements Incremen
     {
         boolean toRet = super.add(e);
         if(distCache != null)
-            this.distCache.addAll(distanceMetric.getQueryInfo(e));
+            this.distCache.addAll(distanceMetric.getPrimitiveQueryInfo(e));
         return toRet;
     }
     
@@ -100,7 +117,7 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements Incremen
         boolean toRet = super.addAll(c);
         if(this.distCache != null)
             for(V v : c)
-                this.distCache.addAll(this.distanceMetric.getQueryInfo(v));
+                this.distCache.addAll(this.distanceMetric.getPrimitiveQueryInfo(v));
         return toRet;
     }
 
@@ -115,7 +132,7 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements Incremen
     public void clear()
     {
         super.clear(); 
-        this.distCache = distanceMetric.getAccelerationCache(this);
+        this.distCache = distanceMetric.getPrimitiveAccelerationCache(this, false);
     }
 
     @Override
@@ -123,7 +140,7 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements Incremen
     {
         neighbors.clear();
         distances.clear();
-        List<Double> qi = distanceMetric.getQueryInfo(query);
+        DoubleList qi = distanceMetric.getPrimitiveQueryInfo(query);
         
         for(int i = 0; i < size(); i++)
         {
@@ -145,21 +162,105 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements Incremen
     {
         neighbors.clear();
         distances.clear();
-        BoundedSortedList<IndexDistPair> knns = new BoundedSortedList<>(numNeighbors);
+        BoundedMaxHeap knns = BoundedMaxHeap.acquire(numNeighbors);
+        try
+        {
+            DoubleList qi = distanceMetric.getPrimitiveQueryInfo(query);
         
-        List<Double> qi = distanceMetric.getQueryInfo(query);
+            for(int i = 0; i < size(); i++)
+                knns.offer(i, distanceMetric.dist(i, query, qi, this, distCache));
         
-        for(int i = 0; i < size(); i++)
+            knns.drainTo(neighbors, distances);
+        }
+        finally
         {
-            double distance = distanceMetric.dist(i, query, qi, this, distCache);
-            knns.add(new IndexDistPair(i, distance));
+            knns.release();
         }
-        
-        for(int i = 0; i < knns.size(); i++)
+    }
+
+    @Override
+    public void search(VectorCollection<V> Q, double r_min, double r_max, List<List<Integer>> neighbors, List<List<Double>> distances, boolean parallel)
+    {
+        batchSearch(Q, neighbors, distances, parallel, (q, D, row, p_start) ->
+        {
+            for(int j = 0; j < D.cols(); j++)
+            {
+                double dist = D.get(row, j);
+                if(r_min <= dist && dist <= r_max)
+                {
+                    neighbors.get(q).add(p_start+j);
+                    distances.get(q).add(dist);
+                }
+            }
+        });
+        for(int i = 0; i < neighbors.size(); i++)
+        {
+            IndexTable it = new IndexTable(distances.get(i));
+            it.apply(neighbors.get(i));
+            it.apply(distances.get(i));
+        }
+    }
+
+    @Override
+    public void search(VectorCollection<V> Q, int numNeighbors, List<List<Integer>> neighbors, List<List<Double>> distances, boolean parallel)
+    {
+        List<BoundedMaxHeap> knns = new ArrayList<>(Q.size());
+        for(int i = 0; i < Q.size(); i++)
+            knns.add(new BoundedMaxHeap(numNeighbors));
+        batchSearch(Q, neighbors, distances, parallel, (q, D, row, p_start) ->
         {
-            neighbors.add(knns.get(i).getIndex());
-            distances.add(knns.get(i).getDist());
+            BoundedMaxHeap knn = knns.get(q);
+            for(int j = 0; j < D.cols(); j++)
+                knn.offer(p_start+j, D.get(row, j));
+        });
+        for(int q = 0; q < knns.size(); q++)
+            knns.get(q).drainTo(neighbors.get(q), distances.get(q));
+    }
+
+    private interface BlockConsumer
+    {
+        /**
+         * Consumes the distances from query q, stored in the given row of D,
+         * to the block of points starting at p_start
+         */
+        public void accept(int q, Matrix D, int row, int p_start);
+    }
+
+    /**
+     * Computes the distances from every query to every point a block at a
+     * time, and gives each row of each block to a consumer. Query blocks are
+     * done in parallel.
+     */
+    private void batchSearch(VectorCollection<V> Q, List<List<Integer>> neighbors, List<List<Double>> distances, boolean parallel, BlockConsumer consumer)
+    {
+        neighbors.clear();
+        distances.clear();
+        for(int i = 0; i < Q.size(); i++)
+        {
+            neighbors.add(new IntList());
+            distances.add(new DoubleList());
         }
+        final List<Vec> queries = Q.getVecs();
+        final int queryBlocks = (queries.size()+QUERY_BLOCK-1)/QUERY_BLOCK;
+        final boolean parallelBlocks = parallel && queryBlocks == 1;
+        final int factor = distCache == null ? 0 : distCache.size()/Math.max(size(), 1);
+        ParallelUtils.run(parallel, queryBlocks, (start, end) ->
+        {
+            for(int qb = start; qb < end; qb++)
+            {
+                final int q_start = qb*QUERY_BLOCK, q_end = Math.min(q_start+QUERY_BLOCK, queries.size());
+                final List<Vec> qBlock = queries.subList(q_start, q_end);
+                final DoubleList qCache = distCache == null ? null : distanceMetric.getPrimitiveAccelerationCache(qBlock, false);
+                for(int p_start = 0; p_start < size(); p_start += POINT_BLOCK)
+                {
+                    final int p_end = Math.min(p_start+POINT_BLOCK, size());
+                    Matrix D = new DenseMatrix(q_end-q_start, p_end-p_start);
+                    distanceMetric.dist(qBlock, qCache, subList(p_start, p_end), distCache == null ? null : distCache.subList(p_start*factor, p_end*factor), D, parallelBlocks);
+                    for(int i = 0; i < D.rows(); i++)
+                        consumer.accept(q_start+i, D, i, p_start);
+                }
+            }
+        });
     }
 
     @Override
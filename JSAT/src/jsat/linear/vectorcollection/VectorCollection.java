@@ -159,6 +159,37 @@ public interface VectorCollection<V extends Vec> extends Cloneable, Serializable
      */
     public void search(Vec query, int numNeighbors, List<Integer> neighbors, List<Double> distances);
     
+    /**
+     * Performs k-Nearest Neighbor search of the current collection, storing
+     * the results in the given arrays. Passing an {@link IntList} and
+     * {@link DoubleList} to
+     * {@link #search(jsat.linear.Vec, int, java.util.List, java.util.List) }
+     * avoids boxing the results, and re-using the same lists or arrays across
+     * many queries avoids allocating new storage for each one.
+     *
+     * @param query the point to search for the k-nearest neighbors of
+     * @param numNeighbors the number of neighbors <i>k</i> to search for.
+     * @param neighbors the array to store the index of the neighbors in,
+     * starting from index zero. Must have a length of at least
+     * <tt>numNeighbors</tt>. Will be sorted by distance to the query, and
+     * paired with the values in <tt>distances</tt>.
+     * @param distances the array to store the distance of the neighbors to the
+     * query in, starting from index zero. Must have a length of at least
+     * <tt>numNeighbors</tt>. Will be sorted, and paired with the values in
+     * <tt>neighbors</tt>.
+     * @return the number of neighbors found, which may be less than
+     * <tt>numNeighbors</tt> if the collection is small
+     */
+    default public int search(Vec query, int numNeighbors, int[] neighbors, double[] distances)
+    {
+        if(neighbors.length < numNeighbors || distances.length < numNeighbors)
+            throw new IllegalArgumentException("Arrays of length " + neighbors.length + " and " + distances.length + " can not hold " + numNeighbors + " neighbors");
+        IntList n_view = IntList.view(neighbors, 0);
+        DoubleList d_view = DoubleList.view(distances, 0);
+        search(query, numNeighbors, n_view, d_view);
+        return n_view.size();
+    }
+    
     /**
      * Performs k-Nearest Neighbor search of the current collection.The index
      * and distance of each found neighbor will be placed into the given Lists,
@@ -221,8 +252,8 @@ public interface VectorCollection<V extends Vec> extends Cloneable, Serializable
         distances.clear();
         for(int i = 0; i < Q.size(); i++)
         {
-            neighbors.add(new ArrayList<>());
-            distances.add(new ArrayList<>());
+            neighbors.add(new IntList());
+            distances.add(new DoubleList());
         }
         
         ParallelUtils.range(Q.size(), parallel).forEach(i->
@@ -250,8 +281,8 @@ public interface VectorCollection<V extends Vec> extends Cloneable, Serializable
         distances.clear();
         for(int i = 0; i < Q.size(); i++)
         {
-            neighbors.add(new ArrayList<>());
-            distances.add(new ArrayList<>());
+            neighbors.add(new IntList());
+            distances.add(new DoubleList());
         }
         
         ParallelUtils.range(Q.size(), parallel).forEach(i->
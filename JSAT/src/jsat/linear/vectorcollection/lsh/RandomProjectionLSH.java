@@ -9,9 +9,8 @@ import jsat.linear.distancemetrics.CosineDistance;
 import jsat.linear.distancemetrics.CosineDistanceNormalized;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.vectorcollection.VectorCollection;
-import jsat.utils.BoundedSortedList;
+import jsat.utils.BoundedMaxHeap;
 import jsat.utils.IndexTable;
-import jsat.utils.ProbailityMatch;
 import jsat.utils.random.RandomUtil;
 
 /**
@@ -177,29 +176,33 @@ public class RandomProjectionLSH<V extends Vec> implements VectorCollection<V>
     @Override
     public void search(Vec query, int numNeighbors, List<Integer> neighbors, List<Double> distances)
     {
-        BoundedSortedList<ProbailityMatch<Integer>> toRet = new BoundedSortedList<>(numNeighbors);
-        
-        final int[] queryProj = new int[slotsPerEntry];
-        Vec tmpSapce = tempVecs.get();
-        tmpSapce.zeroOut();
-        projectVector(query, 0, queryProj, tmpSapce);
-                
-        for(int slot = 0; slot < vecs.size(); slot++)
+        BoundedMaxHeap toRet = BoundedMaxHeap.acquire(numNeighbors);
+        try
         {
-            int hamming = 0;
-            int pos = 0;
-            while(pos < slotsPerEntry)
-                hamming += Integer.bitCount(projections[slot*slotsPerEntry+pos]^queryProj[pos++]);
+            final int[] queryProj = new int[slotsPerEntry];
+            Vec tmpSapce = tempVecs.get();
+            tmpSapce.zeroOut();
+            projectVector(query, 0, queryProj, tmpSapce);
+                
+            for(int slot = 0; slot < vecs.size(); slot++)
+            {
+                int hamming = 0;
+                int pos = 0;
+                while(pos < slotsPerEntry)
+                    hamming += Integer.bitCount(projections[slot*slotsPerEntry+pos]^queryProj[pos++]);
             
-            if(toRet.size() < numNeighbors || hamming < toRet.last().getProbability())
-                toRet.add(new ProbailityMatch<>(hamming, slot));
-        }
+                toRet.offer(slot, hamming);
+            }
         
-        //now conver the hamming values to distance values
-        for(int i = 0; i < toRet.size(); i++)
+            //now conver the hamming values to distance values
+            int start = distances.size();
+            int n = toRet.drainTo(neighbors, distances);
+            for(int i = start; i < start+n; i++)
+                distances.set(i, CosineDistance.cosineToDistance(hammingToCosine(distances.get(i))));
+        }
+        finally
         {
-            neighbors.add(toRet.get(i).getMatch());
-            distances.add(CosineDistance.cosineToDistance(hammingToCosine(toRet.get(i).getProbability())));
+            toRet.release();
         }
     }
     
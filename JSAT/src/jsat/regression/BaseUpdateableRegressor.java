@@ -1,9 +1,14 @@
 package jsat.regression;
 
+import java.io.IOException;
 import java.util.Collections;
+import java.util.Random;
 import java.util.concurrent.ExecutorService;
+import jsat.io.DataReader;
+import jsat.io.DataWriter;
 import jsat.utils.IntList;
 import jsat.utils.ListUtils;
+import jsat.utils.random.RandomUtil;
 
 /**
  * A base implementation of the UpdateableRegressor. 
@@ -78,6 +83,70 @@ public abstract class BaseUpdateableRegressor implements UpdateableRegressor
         }
     }
 
+    /**
+     * Trains this regressor from data that is streamed in from a file, without
+     * ever loading the whole data set into memory. {@link #getEpochs() }
+     * passes are made over the data, see
+     * {@link #trainEpochs(jsat.io.DataReader.Factory, jsat.regression.UpdateableRegressor, int, int, int) }.
+     *
+     * @param data the source of the data to train from
+     * @throws IOException if an error occurred reading the data
+     */
+    public void train(DataReader.Factory data) throws IOException
+    {
+        trainEpochs(data, this, epochs, DataReader.DEFAULT_SHUFFLE_WINDOW, DataReader.DEFAULT_READ_AHEAD);
+    }
+    
+    /**
+     * Performs training on an updateable regressor from data that is streamed
+     * in, one observation at a time, multiple times. The data is re-opened for
+     * each pass, and only a fixed number of points are held in memory
+     * regardless of how large the data set is. The order of the points is
+     * randomized using a window of {@code shuffleWindow} points, and points
+     * are read ahead on a background thread so that reading and training
+     * overlap.
+     *
+     * @param data the source of the data to train from
+     * @param toTrain the regressor to train
+     * @param epochs the number of passes through the data set
+     * @param shuffleWindow the number of points held in memory to randomize
+     * the order they are presented in. A value of 1 or less will present the
+     * points in the order they are read.
+     * @param readAhead the maximum number of points to read ahead of the
+     * regressor. A value of 0 or less will read points only as they are needed.
+     * @throws IOException if an error occurred reading the data
+     */
+    public static void trainEpochs(DataReader.Factory data, UpdateableRegressor toTrain, int epochs, int shuffleWindow, int readAhead) throws IOException
+    {
+        if(epochs < 1)
+            throw new IllegalArgumentException("epochs must be positive");
+        Random rand = RandomUtil.getRandom();
+        for (int epoch = 0; epoch < epochs; epoch++)
+        {
+            DataReader reader = data.open();
+            if(reader.type != DataWriter.DataSetType.REGRESSION)
+            {
+                reader.close();
+                throw new IllegalArgumentException("data must be a regression data set, not " + reader.type);
+            }
+            if(readAhead > 0)
+                reader = DataReader.readAhead(reader, readAhead);
+            if(shuffleWindow > 1)
+                reader = DataReader.shuffle(reader, shuffleWindow, rand);
+            try
+            {
+                if(epoch == 0)
+                    toTrain.setUp(reader.catInfo, reader.dim);
+                while(reader.next())
+                    toTrain.update(reader.getDataPoint(), reader.getWeight(), reader.getLabel());
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+
     @Override
     abstract public UpdateableRegressor clone();
   
@@ -4,6 +4,7 @@ package jsat.regression;
 import java.util.*;
 import jsat.DataSet;
 import jsat.DataStore;
+import jsat.IndexedDataStore;
 import jsat.RowMajorStore;
 import jsat.classifiers.*;
 import jsat.linear.DenseVector;
@@ -124,6 +125,25 @@ public class RegressionDataSet extends DataSet<RegressionDataSet>
         int numer = list.get(exception).getNumNumericalVars();
         CategoricalData[] categories = list.get(exception).getCategories();
         
+        List<RegressionDataSet> kept = new ArrayList<>(list);
+        kept.remove(exception);
+        List<DataStore> keptStores = new ArrayList<>(kept.size());
+        for (RegressionDataSet rds : kept)
+            keptStores.add(rds.datapoints);
+        IndexedDataStore view = IndexedDataStore.concat(keptStores);
+        if (view != null)//all views of the same data, so just combine the indices
+        {
+            DoubleList new_targets = new DoubleList(view.size());
+            for (RegressionDataSet rds : kept)
+                new_targets.addAll(rds.targets);
+            RegressionDataSet combined = new RegressionDataSet(view, new_targets);
+            int pos = 0;
+            for (RegressionDataSet rds : kept)
+                for (int j = 0; j < rds.size(); j++)
+                    combined.setWeight(pos++, rds.getWeight(j));
+            return combined;
+        }
+        
         RegressionDataSet rds = new RegressionDataSet(numer, categories);
 
         //The list of data sets
@@ -269,12 +289,7 @@ public class RegressionDataSet extends DataSet<RegressionDataSet>
     protected RegressionDataSet getSubset(List<Integer> indicies)
     {
 	if (this.datapoints.rowMajor())
-	{
-	    RegressionDataSet newData = new RegressionDataSet(numNumerVals, categories);
-	    for (int i : indicies)
-		newData.addDataPoint(getDataPoint(i), getTargetValue(i));
-	    return newData;
-	}
+	    return getView(indicies.stream().mapToInt(i->i).toArray());
 	else //copy columns at a time to make it faster please! 
 	{
 	    int new_n = indicies.size();
@@ -305,6 +320,15 @@ public class RegressionDataSet extends DataSet<RegressionDataSet>
 	}
     }
     
+    @Override
+    protected RegressionDataSet getSubset(DataStore store, int[] indices)
+    {
+        DoubleList new_targets = new DoubleList(indices.length);
+        for (int i : indices)
+            new_targets.add(targets.getD(i));
+        return new RegressionDataSet(store, new_targets);
+    }
+    
     /**
      * Returns a vector containing the target regression values for each 
      * data point. The vector is a copy, and modifications to it will not
@@ -1,6 +1,7 @@
 package jsat.text;
 
 import java.util.List;
+import jsat.DataStore;
 import jsat.classifiers.CategoricalData;
 import jsat.classifiers.ClassificationDataSet;
 import jsat.text.tokenizer.Tokenizer;
@@ -133,4 +134,17 @@ public abstract class ClassificationHashedTextDataLoader extends HashedTextDataL
         
         return cds;
     }
+    
+    @Override
+    public ClassificationDataSet getDataSet(DataStore store)
+    {
+        if(!noMoreAdding)
+        {
+            setLabelInfo();
+            initialLoad();
+            finishAdding();
+        }
+        
+        return new ClassificationDataSet(fillStore(store), classLabels, labelInfo);
+    }
 }
@@ -3,7 +3,9 @@ package jsat.text;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicIntegerArray;
+import jsat.CompressedRowStore;
 import jsat.DataSet;
+import jsat.DataStore;
 import jsat.SimpleDataSet;
 import jsat.classifiers.CategoricalData;
 import jsat.classifiers.DataPoint;
@@ -206,6 +208,43 @@ abstract public class HashedTextDataLoader implements TextVectorCreator
         
         return new SimpleDataSet(dataPoints);
     }
+    
+    /**
+     * Returns a new data set containing the original data points that were 
+     * loaded with this loader, stored in the given type of data store. Using a
+     * {@link CompressedRowStore} will keep all the documents in a few shared
+     * arrays instead of one {@link SparseVector} per document. 
+     * 
+     * @param store the type of store to place the data points in
+     * @return an appropriate data set for this loader
+     */
+    public DataSet<?> getDataSet(DataStore store)
+    {
+        if(!noMoreAdding)
+        {
+            initialLoad();
+            finishAdding();
+        }
+        
+        return new SimpleDataSet(fillStore(store));
+    }
+    
+    /**
+     * Adds every loaded document to a new store of the same type as the one
+     * given
+     * @param store the type of store to use
+     * @return a store containing every document
+     */
+    protected DataStore fillStore(DataStore store)
+    {
+        DataStore toRet = store.emptyClone();
+        toRet.setCategoricalDataInfo(new CategoricalData[0]);
+        toRet.setNumNumeric(dimensionSize);
+        for(SparseVector vec : vectors)
+            toRet.addDataPoint(new DataPoint(vec, new int[0], new CategoricalData[0]));
+        toRet.finishAdding();
+        return toRet;
+    }
 
     @Override
     public Vec newText(String input)
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.utils;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A max-heap of int indices keyed by double values that holds at most a fixed
+ * number of entries, keeping the ones with the smallest values. This is the
+ * primitive replacement for a {@link BoundedSortedList} of index / distance
+ * pairs when searching for the k nearest neighbors: offering a candidate costs
+ * O(log k) and creates no objects, and the same heap may be
+ * {@link #reset(int) reset} and reused for many searches. <br>
+ * A search that does not keep the heap after it returns can use
+ * {@link #acquire(int) } and {@link #release() } to borrow a heap owned by the
+ * calling thread, so that no heap is allocated per query.
+ *
+ * @author Edward Raff
+ */
+public class BoundedMaxHeap implements Serializable
+{
+    private static final long serialVersionUID = -1753245683925017396L;
+    /**
+     * The heap each thread hands out from {@link #acquire(int) }
+     */
+    private static final ThreadLocal<BoundedMaxHeap> LOCAL_HEAP = new ThreadLocal<>();
+    /**
+     * The largest capacity a heap may keep and still be handed out again by 
+     * {@link #acquire(int) }, so that one search for many neighbors does not
+     * hold large arrays in a thread for the life of that thread
+     */
+    static final int MAX_LOCAL_CAPACITY = 1024;
+    private int[] indices;
+    private double[] values;
+    private int size;
+    private int maxSize;
+    /**
+     * {@code true} while this heap has been acquired and not yet released
+     */
+    private transient boolean inUse;
+
+    /**
+     * Creates a new empty heap
+     *
+     * @param maxSize the maximum number of entries to keep
+     */
+    public BoundedMaxHeap(int maxSize)
+    {
+        indices = new int[0];
+        values = new double[0];
+        reset(maxSize);
+    }
+
+    /**
+     * Returns an empty heap for the calling thread to use until it calls 
+     * {@link #release() }. The same heap is returned by every call from a 
+     * thread, unless it is still in use by an earlier call that has not 
+     * released it (such as a search that runs another search), in which case
+     * a new heap is returned.
+     *
+     * @param maxSize the maximum number of entries to keep
+     * @return an empty heap
+     */
+    public static BoundedMaxHeap acquire(int maxSize)
+    {
+        BoundedMaxHeap heap = LOCAL_HEAP.get();
+        if(heap == null)
+        {
+            heap = new BoundedMaxHeap(maxSize);
+            LOCAL_HEAP.set(heap);
+        }
+        else if(heap.inUse)
+            return new BoundedMaxHeap(maxSize);
+        else
+            heap.reset(maxSize);
+        heap.inUse = true;
+        return heap;
+    }
+
+    /**
+     * Empties a heap obtained from {@link #acquire(int) } and allows it to be
+     * returned by a later call. The heap must not be used after it has been
+     * released, which should be done in a {@code finally} block so that an
+     * exception does not leave the thread's heap in use. A heap that has grown 
+     * beyond {@link #MAX_LOCAL_CAPACITY} is discarded rather than kept for the
+     * thread.
+     */
+    public void release()
+    {
+        size = 0;
+        inUse = false;
+        if(indices.length > MAX_LOCAL_CAPACITY && LOCAL_HEAP.get() == this)
+            LOCAL_HEAP.remove();
+    }
+
+    /**
+     * Removes all entries from the heap and changes the maximum number of
+     * entries it will keep. The storage is only re-allocated if it is too
+     * small.
+     *
+     * @param maxSize the maximum number of entries to keep
+     */
+    public void reset(int maxSize)
+    {
+        if(maxSize < 1)
+            throw new IllegalArgumentException("Invalid max size " + maxSize);
+        this.maxSize = maxSize;
+        this.size = 0;
+        if(indices.length < maxSize)
+        {
+            indices = new int[maxSize];
+            values = new double[maxSize];
+        }
+    }
+
+    /**
+     * Removes all entries from the heap
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     *
+     * @return the number of entries in the heap
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     *
+     * @return the maximum number of entries the heap will keep
+     */
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     *
+     * @return {@code true} if the heap holds its maximum number of entries
+     */
+    public boolean isFull()
+    {
+        return size == maxSize;
+    }
+
+    /**
+     * Returns the largest value in the heap
+     *
+     * @return the largest value in the heap
+     */
+    public double peekValue()
+    {
+        if(size == 0)
+            throw new IllegalStateException("heap is empty");
+        return values[0];
+    }
+
+    /**
+     * Returns the index with the largest value in the heap
+     *
+     * @return the index with the largest value in the heap
+     */
+    public int peekIndex()
+    {
+        if(size == 0)
+            throw new IllegalStateException("heap is empty");
+        return indices[0];
+    }
+
+    /**
+     * Returns the value a new entry must be smaller than to be kept, which is
+     * the largest value in the heap once it is full and infinity before.
+     *
+     * @return the bound on the values the heap will accept
+     */
+    public double bound()
+    {
+        return size == maxSize ? values[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Offers a new entry to the heap. It is kept if the heap is not full, or if
+     * its value is smaller than the largest value in the heap, which is then
+     * removed.
+     *
+     * @param index the index of the entry
+     * @param value the value of the entry
+     * @return {@code true} if the entry was kept
+     */
+    public boolean offer(int index, double value)
+    {
+        if(size < maxSize)
+        {
+            //sift up
+            int pos = size++;
+            while(pos > 0)
+            {
+                int parent = (pos-1)/2;
+                if(values[parent] >= value)
+                    break;
+                indices[pos] = indices[parent];
+                values[pos] = values[parent];
+                pos = parent;
+            }
+            indices[pos] = index;
+            values[pos] = value;
+            return true;
+        }
+        else if(value < values[0])
+        {
+            siftDown(0, index, value, size);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Places the entry at position pos, moving it down until the heap property
+     * holds for the first n entries
+     */
+    private void siftDown(int pos, int index, double value, int n)
+    {
+        while(true)
+        {
+            int child = 2*pos+1;
+            if(child >= n)
+                break;
+            if(child+1 < n && values[child+1] > values[child])
+                child++;
+            if(values[child] <= value)
+                break;
+            indices[pos] = indices[child];
+            values[pos] = values[child];
+            pos = child;
+        }
+        indices[pos] = index;
+        values[pos] = value;
+    }
+
+    /**
+     * Sorts the entries in place by increasing value, which destroys the heap
+     */
+    private void sortAscending()
+    {
+        for(int n = size-1; n > 0; n--)
+        {
+            int top_i = indices[0];
+            double top_v = values[0];
+            siftDown(0, indices[n], values[n], n);
+            indices[n] = top_i;
+            values[n] = top_v;
+        }
+    }
+
+    /**
+     * Appends the entries of the heap, sorted by increasing value, to the given
+     * lists, and then empties the heap. If the lists are an {@link IntList} and
+     * a {@link DoubleList} no values are boxed.
+     *
+     * @param indices the list to append the indices to
+     * @param values the list to append the values to, paired with the indices
+     * @return the number of entries appended
+     */
+    public int drainTo(List<Integer> indices, List<Double> values)
+    {
+        sortAscending();
+        int n = size;
+        if(indices instanceof IntList)
+            for(int i = 0; i < n; i++)
+                ((IntList) indices).add(this.indices[i]);
+        else
+            for(int i = 0; i < n; i++)
+                indices.add(this.indices[i]);
+        if(values instanceof DoubleList)
+            for(int i = 0; i < n; i++)
+                ((DoubleList) values).add(this.values[i]);
+        else
+            for(int i = 0; i < n; i++)
+                values.add(this.values[i]);
+        size = 0;
+        return n;
+    }
+
+    /**
+     * Writes the entries of the heap, sorted by increasing value, to the start
+     * of the given arrays, and then empties the heap.
+     *
+     * @param indices the array to store the indices in
+     * @param values the array to store the values in, paired with the indices
+     * @return the number of entries written
+     */
+    public int drainTo(int[] indices, double[] values)
+    {
+        if(indices.length < size || values.length < size)
+            throw new IllegalArgumentException("Arrays of length " + indices.length + " and " + values.length + " can not hold " + size + " entries");
+        sortAscending();
+        int n = size;
+        System.arraycopy(this.indices, 0, indices, 0, n);
+        System.arraycopy(this.values, 0, values, 0, n);
+        size = 0;
+        return n;
+    }
+}
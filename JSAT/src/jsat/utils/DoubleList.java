@@ -306,7 +306,39 @@ public class DoubleList extends AbstractList<Double> implements Serializable, Ra
             throw new IllegalArgumentException("length must be non-negative and no more than the size of the array("+array.length+"), not " + length);
         return new DoubleList(array, length);
     }
-    
+
+    /**
+     * Returns the primitive value at the given index of a list. If the list is
+     * a DoubleList the value is read directly from its backing array, avoiding
+     * the boxing and unboxing of {@link #get(int) }. Otherwise this falls back
+     * to {@link List#get(int) }, so any list of doubles may be used.
+     *
+     * @param list the list to read from
+     * @param index the index of the value to get
+     * @return the value at the given index
+     */
+    public static double getD(List<Double> list, int index)
+    {
+        if(list instanceof DoubleList)
+            return ((DoubleList) list).getD(index);
+        return list.get(index);
+    }
+
+    /**
+     * Returns the given list as a DoubleList. A DoubleList is returned as is, 
+     * any other list has its values copied into a new DoubleList. 
+     *
+     * @param list the list to convert, may be {@code null}
+     * @return a DoubleList with the values of the given list, or {@code null}
+     * if the list was {@code null}
+     */
+    public static DoubleList asDoubleList(List<Double> list)
+    {
+        if(list == null || list instanceof DoubleList)
+            return (DoubleList) list;
+        return new DoubleList(list);
+    }
+
     /**
      * 
      * @return the maximum value stored in this list. 
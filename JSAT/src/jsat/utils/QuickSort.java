@@ -289,6 +289,62 @@ public class QuickSort
         
     }
     
+    /**
+     * Partially sorts the array so that the value at index <tt>k</tt> is the
+     * one that would be there if the range was fully sorted, every value
+     * before it is &le; to it, and every value after it is &ge; to it. This
+     * takes linear expected time, rather than the O(n log n) of a full sort.
+     * {@link Double#NaN} values will not be handled appropriately.
+     *
+     * @param x the array to partially sort
+     * @param start the starting index (inclusive) to sort
+     * @param end the ending index (exclusive) to sort
+     * @param k the index in [start, end) to select the value of
+     * @param paired a collection of lists, every list will have its indices swapped as well
+     */
+    public static void select(double[] x, int start, int end, int k, Collection<List<?>> paired)
+    {
+        if(k < start || k >= end)
+            throw new IllegalArgumentException("Index " + k + " is not in the range [" + start + ", " + end + ")");
+        while (end - start > 7)
+        {
+            int n = end - start;
+            int pl = start;
+            int pm = start + (n/2);
+            int pn = end - 1;
+            if (n > 40) /* Big arrays, pseudomedian of 9 */
+            {
+                int s = n / 8;
+                pl = med3(x, pl, pl + s, pl + 2 * s);
+                pm = med3(x, pm - s, pm, pm + s);
+                pn = med3(x, pn - 2 * s, pn - s, pn);
+            }
+            double pivotValue = x[med3(x, pl, pm, pn)];
+
+            //3-way partition into [start, lt) < pivot, [lt, gt] == pivot, (gt, end) > pivot
+            int lt = start, i = start, gt = end - 1;
+            while (i <= gt)
+            {
+                if (x[i] < pivotValue)
+                    swap(x, lt++, i++, paired);
+                else if (x[i] > pivotValue)
+                    swap(x, i, gt--, paired);
+                else
+                    i++;
+            }
+
+            if (k < lt)
+                end = lt;
+            else if (k > gt)
+                start = gt + 1;
+            else
+                return;
+        }
+        for (int i = start; i < end; i++)
+            for (int j = i; j > start && x[j - 1] > x[j]; j--)
+                swap(x, j, j - 1, paired);
+    }
+    
     /**
      * Performs sorting based on the double values natural comparator.
      * {@link Double#NaN} values will not be handled appropriately.
@@ -1,5 +1,8 @@
 package jsat.utils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  *
  * @author Edward Raff
@@ -240,4 +243,156 @@ public class StringUtils
         
         return sign * (mantissa*Math.pow(10, finalExpo));
     }
+    
+    /**
+     * Exact powers of ten that can be represented by a double
+     */
+    private static final double[] POW10 = new double[23];
+    static
+    {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+    
+    /**
+     * Parses a double from the ASCII bytes of a buffer, without creating any
+     * intermediate String in the common case. Values with at most 15
+     * significant digits and a small exponent are computed exactly, and will
+     * be the same as {@link Double#parseDouble(java.lang.String) }. Anything
+     * else is passed on to {@link Double#parseDouble(java.lang.String) }.
+     *
+     * @param buf the buffer to read from, using absolute positions
+     * @param start the first position of the number (inclusive)
+     * @param end the end of the number (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the bytes are not a valid number
+     */
+    public static double parseDouble(ByteBuffer buf, int start, int end)
+    {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+'))
+            negative = buf.get(pos++) == '-';
+        
+        long mantissa = 0;
+        int digits = 0;//significant digits in mantissa
+        int exponent = 0;
+        boolean sawDigit = false;
+        byte b;
+        while (pos < end && (b = buf.get(pos)) >= '0' && b <= '9')
+        {
+            sawDigit = true;
+            if (digits < 18)
+            {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0)
+                    digits++;
+            }
+            else
+            {
+                digits++;
+                exponent++;
+            }
+            pos++;
+        }
+        if (pos < end && buf.get(pos) == '.')
+        {
+            pos++;
+            while (pos < end && (b = buf.get(pos)) >= '0' && b <= '9')
+            {
+                sawDigit = true;
+                if (digits < 18)
+                {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0)
+                        digits++;
+                    exponent--;
+                }
+                else
+                    digits++;
+                pos++;
+            }
+        }
+        if (sawDigit && pos < end && (buf.get(pos) == 'e' || buf.get(pos) == 'E'))
+        {
+            pos++;
+            boolean negExpo = false;
+            if (pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+'))
+                negExpo = buf.get(pos++) == '-';
+            int explicit = 0;
+            boolean sawExpo = false;
+            while (pos < end && (b = buf.get(pos)) >= '0' && b <= '9')
+            {
+                sawExpo = true;
+                if (explicit < 100000)
+                    explicit = explicit * 10 + (b - '0');
+                pos++;
+            }
+            if (!sawExpo)
+                return parseDoubleSlow(buf, start, end);
+            exponent += negExpo ? -explicit : explicit;
+        }
+        
+        if (!sawDigit || pos != end)//something we don't handle, like NaN
+            return parseDoubleSlow(buf, start, end);
+        
+        double val;
+        if (mantissa == 0)
+            val = 0.0;
+        else if (digits <= 15 && exponent >= -22 && exponent <= 22)
+        {
+            //both values are exact, so one rounding gives the correct result
+            if (exponent < 0)
+                val = mantissa / POW10[-exponent];
+            else
+                val = mantissa * POW10[exponent];
+        }
+        else
+            return parseDoubleSlow(buf, start, end);
+        return negative ? -val : val;
+    }
+    
+    private static double parseDoubleSlow(ByteBuffer buf, int start, int end)
+    {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buf.get(start + i);
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * Parses a base 10 integer from the ASCII bytes of a buffer, without
+     * creating any intermediate String.
+     *
+     * @param buf the buffer to read from, using absolute positions
+     * @param start the first position of the number (inclusive)
+     * @param end the end of the number (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the bytes are not a valid integer
+     */
+    public static int parseInt(ByteBuffer buf, int start, int end)
+    {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (buf.get(pos) == '-' || buf.get(pos) == '+'))
+            negative = buf.get(pos++) == '-';
+        if (pos == end)
+            throw new NumberFormatException("No digits in integer");
+        long val = 0;
+        for (; pos < end; pos++)
+        {
+            byte b = buf.get(pos);
+            if (b < '0' || b > '9')
+                throw new NumberFormatException("Non digit character '" + (char) b + "' encountered");
+            val = val * 10 + (b - '0');
+            if (val > Integer.MAX_VALUE + 1L)
+                throw new NumberFormatException("Value out of range for an int");
+        }
+        if (negative)
+            val = -val;
+        if (val > Integer.MAX_VALUE)
+            throw new NumberFormatException("Value out of range for an int");
+        return (int) val;
+    }
 }
@@ -16,71 +16,371 @@
  */
 package jsat.utils.concurrent;
 
-import java.util.Map;
+import java.util.ArrayDeque;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import jsat.utils.Pair;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import jsat.utils.SystemInfo;
 
 /**
- * This class defines a Concurrent LRU cache. The current implementation may not
- * be the most consistent, as it uses a time stamp from last access to determine
- * LRU items. It is also designed for read-heavy work loads
+ * This class defines a Concurrent LRU cache. Least recently used items are
+ * approximated with the CLOCK (second chance) algorithm: a read only marks an
+ * entry as referenced, and eviction passes over referenced entries once before
+ * removing them. This makes reads lock free, and eviction O(1) amortized. <br>
+ * <br>
+ * Entries are split into independently locked stripes by the hash of their
+ * key, so that writers of different keys rarely contend. Each entry may
+ * optionally be given a weight (such as its size in bytes), in which case the
+ * cache is bounded by the total weight of its entries rather than their
+ * number.
  *
  * @author Edward Raff
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
  */
 public class ConcurrentCacheLRU<K, V>
 {
-    private final ConcurrentHashMap<K, Pair<V, AtomicLong>> cache;
-    private final int maxEntries;
+    private final ConcurrentHashMap<K, Node<K, V>> cache;
+    private final Stripe<K, V>[] stripes;
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    /**
+     * The total weight of all entries in the cache
+     */
+    private final AtomicLong weight = new AtomicLong();
+    /**
+     * The stripe the next eviction will start from, so that evictions are
+     * spread over all stripes
+     */
+    private final AtomicInteger evictCursor = new AtomicInteger();
 
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new cache that holds at most the given number of entries
+     * @param max_entries the maximum number of entries to store
+     */
     public ConcurrentCacheLRU(int max_entries)
     {
-        this.maxEntries = max_entries;
-        cache = new ConcurrentHashMap<K, Pair<V, AtomicLong>>(max_entries);
+        this(max_entries, null);
     }
 
-    public V putIfAbsentAndGet(K key, V value)
+    /**
+     * Creates a new cache bounded by the total weight of its entries
+     * @param maxWeight the maximum total weight of the entries to store
+     * @param weigher the function to compute the weight of a value, which must
+     * be non-negative. If {@code null}, every entry has a weight of 1.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentCacheLRU(long maxWeight, ToLongFunction<? super V> weigher)
     {
-        Pair<V, AtomicLong> pair = cache.putIfAbsent(key, new Pair<V, AtomicLong>(value, new AtomicLong(System.currentTimeMillis())));
-        
-        evictOld();
-        
-        if(pair == null)
-            return null;
-        return pair.getFirstItem();
+        if(maxWeight < 0)
+            throw new IllegalArgumentException("Maximum weight must be non-negative, not " + maxWeight);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        cache = new ConcurrentHashMap<>((int) Math.min(weigher == null ? maxWeight : 16, Integer.MAX_VALUE/2));
+        int numStripes = 1;
+        while(numStripes < SystemInfo.LogicalCores*2 && numStripes < 64)
+            numStripes *= 2;
+        @SuppressWarnings("unchecked")
+        Stripe<K, V>[] newStripes = (Stripe<K, V>[]) new Stripe<?, ?>[numStripes];
+        stripes = newStripes;
+        for(int i = 0; i < stripes.length; i++)
+            stripes[i] = new Stripe<>();
     }
 
-    private void evictOld()
+    /**
+     * Adds the given value to the cache if no value is already associated
+     * with the key.
+     *
+     * @param key the key of the value
+     * @param value the value to add if no value is present
+     * @return the value that was already in the cache, or {@code null} if the
+     * given value was added
+     */
+    public V putIfAbsentAndGet(K key, V value)
     {
-        while(cache.size() > maxEntries)
+        Node<K, V> prev;
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized(stripe)
         {
-            K oldest_key = null;
-            long oldest_time = Long.MAX_VALUE;
-            for(Map.Entry<K, Pair<V, AtomicLong>> entry : cache.entrySet())
-                if(entry.getValue().getSecondItem().get() < oldest_time)
-                {
-                    oldest_time = entry.getValue().getSecondItem().get();
-                    oldest_key = entry.getKey();
-                }
-            if(cache.size() > maxEntries)//anotehr thread may have already evicted things
-                cache.remove(oldest_key);
+            prev = cache.get(key);
+            if(prev == null)
+                insert(stripe, key, value);
+            else
+                prev.referenced = true;
         }
+
+        evictOld();
+
+        if(prev == null)
+            return null;
+        return prev.value;
     }
-    
+
+    /**
+     * Adds the given value to the cache, replacing any value already
+     * associated with the key.
+     *
+     * @param key the key of the value
+     * @param value the value to add
+     */
     public void put(K key, V value)
     {
-        cache.put(key, new Pair<V, AtomicLong>(value, new AtomicLong(System.currentTimeMillis())));
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized(stripe)
+        {
+            insert(stripe, key, value);
+        }
 
         evictOld();
     }
 
+    /**
+     * Returns the value associated with the key
+     * @param key the key to find the value of
+     * @return the value for the key, or {@code null} if it is not in the cache
+     */
     public V get(K key)
     {
-        Pair<V, AtomicLong> pair = cache.get(key);
-        if(pair == null)
+        Node<K, V> node = cache.get(key);
+        if(node == null)
+        {
+            misses.increment();
             return null;
-        pair.getSecondItem().set(System.currentTimeMillis());
-        return pair.getFirstItem();
+        }
+        hits.increment();
+        if(!node.referenced)//avoid writing to the shared cache line when possible
+            node.referenced = true;
+        return node.value;
+    }
+
+    /**
+     * Removes the value associated with the key, if present
+     * @param key the key to remove
+     * @return the value that was removed, or {@code null} if it was not in the
+     * cache
+     */
+    public V remove(K key)
+    {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized(stripe)
+        {
+            Node<K, V> node = cache.remove(key);
+            if(node == null)
+                return null;
+            stripe.discard(node);
+            weight.addAndGet(-node.weight);
+            return node.value;
+        }
+    }
+
+    /**
+     * Removes all entries from the cache. The statistics are not reset.
+     */
+    public void clear()
+    {
+        for(Stripe<K, V> stripe : stripes)
+            synchronized(stripe)
+            {
+                for(Node<K, V> node : stripe.clock)
+                    if(!node.removed && cache.remove(node.key, node))
+                        weight.addAndGet(-node.weight);
+                stripe.clock.clear();
+                stripe.dead = 0;
+            }
+    }
+
+    /**
+     *
+     * @return the number of entries in the cache
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     *
+     * @return the total weight of the entries in the cache. This is the same
+     * as the {@link #size() } if no weigher was given.
+     */
+    public long getWeight()
+    {
+        return weight.get();
+    }
+
+    /**
+     *
+     * @return the number of calls to {@link #get(java.lang.Object) } that found
+     * a value
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     *
+     * @return the number of calls to {@link #get(java.lang.Object) } that did
+     * not find a value
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     *
+     * @return the fraction of calls to {@link #get(java.lang.Object) } that
+     * found a value, or 0 if there have been no calls
+     */
+    public double getHitRate()
+    {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        if(total == 0)
+            return 0;
+        return h/(double) total;
+    }
+
+    /**
+     *
+     * @return the number of entries that have been removed to make space for
+     * new entries
+     */
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    private Stripe<K, V> stripeFor(K key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length-1)];
+    }
+
+    /**
+     * Adds a new entry, must be called while holding the lock on the stripe
+     */
+    private void insert(Stripe<K, V> stripe, K key, V value)
+    {
+        long w = weigher == null ? 1 : weigher.applyAsLong(value);
+        if(w < 0)
+            throw new IllegalArgumentException("Weight of a value must be non-negative, not " + w);
+        Node<K, V> node = new Node<>(key, value, w);
+        Node<K, V> prev = cache.put(key, node);
+        if(prev != null)
+        {
+            stripe.discard(prev);
+            weight.addAndGet(-prev.weight);
+        }
+        stripe.clock.add(node);
+        weight.addAndGet(w);
+    }
+
+    private void evictOld()
+    {
+        int emptyInARow = 0;
+        while(weight.get() > maxWeight && emptyInARow < stripes.length)
+        {
+            Stripe<K, V> stripe = stripes[evictCursor.getAndIncrement() & (stripes.length-1)];
+            boolean evicted;
+            synchronized(stripe)
+            {
+                evicted = evictOne(stripe);
+            }
+            emptyInARow = evicted ? 0 : emptyInARow+1;
+        }
+    }
+
+    /**
+     * Advances the clock hand of a stripe until an entry is evicted. The
+     * caller must hold the stripe's lock.
+     * @param stripe the stripe to evict from
+     * @return {@code true} if an entry was evicted, {@code false} if the
+     * stripe is empty
+     */
+    private boolean evictOne(Stripe<K, V> stripe)
+    {
+        Node<K, V> node;
+        while((node = stripe.clock.poll()) != null)
+        {
+            if(node.removed)
+            {
+                stripe.dead--;
+                continue;
+            }
+            if(node.referenced)
+            {
+                node.referenced = false;
+                stripe.clock.add(node);
+                continue;
+            }
+            node.removed = true;
+            cache.remove(node.key, node);
+            weight.addAndGet(-node.weight);
+            evictions.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private static class Node<K, V>
+    {
+        final K key;
+        final V value;
+        final long weight;
+        /**
+         * Set on every read, cleared when the clock hand passes over it
+         */
+        volatile boolean referenced = false;
+        /**
+         * Set once the node is no longer in the map, but may still be in the
+         * clock queue of its stripe. Guarded by the stripe lock.
+         */
+        boolean removed = false;
+
+        public Node(K key, V value, long weight)
+        {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * One independently locked portion of the cache. All changes to the
+     * entries of a stripe are made while holding its lock.
+     */
+    private static class Stripe<K, V>
+    {
+        /**
+         * The clock, where the head is the position of the hand
+         */
+        final ArrayDeque<Node<K, V>> clock = new ArrayDeque<>();
+        /**
+         * The number of removed nodes still in the clock
+         */
+        int dead = 0;
+
+        /**
+         * Marks a node that has been removed from the map as no longer in the
+         * clock, compacting the clock if it is mostly removed nodes.
+         */
+        void discard(Node<K, V> node)
+        {
+            node.removed = true;
+            if(++dead > clock.size()/2)
+            {
+                clock.removeIf(n -> n.removed);
+                dead = 0;
+            }
+        }
     }
-    
 }
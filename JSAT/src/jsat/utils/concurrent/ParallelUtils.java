@@ -6,7 +6,11 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.BinaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,6 +42,171 @@ public class ParallelUtils
         return t;
     });
     
+    /**
+     * The number of times more ranges than threads that a computation will be
+     * split into by the {@code run} methods that do not take an executor. The
+     * extra ranges allow threads that finish early to steal work from threads
+     * that are behind.
+     */
+    private static final int SPLITS_PER_THREAD = 4;
+    
+    /**
+     * The shared pool that backs all of the {@code run} methods that do not
+     * take an executor. It is created on first use and lives for the life of
+     * the program. Its threads are daemon threads, and so will not prevent
+     * program termination.
+     */
+    private static volatile ForkJoinPool pool;
+    
+    /**
+     * Returns the shared pool used for parallel computation through this class.
+     * Work submitted from within this pool (nested parallelism) is run by the
+     * same threads, so the total number of threads in use never exceeds
+     * {@link #getParallelism() }.
+     *
+     * @return the shared pool used for parallel computation
+     */
+    public static ForkJoinPool getPool()
+    {
+        ForkJoinPool p = pool;
+        if(p == null)
+        {
+            synchronized(ParallelUtils.class)
+            {
+                p = pool;
+                if(p == null)
+                    pool = p = new ForkJoinPool(Integer.getInteger("jsat.parallelism", SystemInfo.LogicalCores));
+            }
+        }
+        return p;
+    }
+    
+    /**
+     * Sets the maximum number of threads that will be used for parallel
+     * computation through this class. The default is the number of logical
+     * cores, and may also be set with the {@code jsat.parallelism} system
+     * property. Computations already running will finish with the threads they
+     * started with.
+     *
+     * @param parallelism the maximum number of threads to use
+     */
+    public static void setParallelism(int parallelism)
+    {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive, not " + parallelism);
+        synchronized(ParallelUtils.class)
+        {
+            ForkJoinPool old = pool;
+            pool = new ForkJoinPool(parallelism);
+            if(old != null)
+                old.shutdown();
+        }
+    }
+    
+    /**
+     * 
+     * @return the maximum number of threads that will be used for parallel 
+     * computation through this class
+     */
+    public static int getParallelism()
+    {
+        return getPool().getParallelism();
+    }
+    
+    /**
+     * Computes the smallest range a computation over {@code N} items will be
+     * split into
+     * @param N the number of items
+     * @return the minimum size of a range
+     */
+    private static int grainSize(int N)
+    {
+        return Math.max(1, N/(getParallelism()*SPLITS_PER_THREAD));
+    }
+    
+    /**
+     * Runs the given task in the shared pool, or directly in the current 
+     * thread if it is already a worker of the shared pool. Recursive 
+     * computations can use this to start, and then {@link ForkJoinTask#fork() 
+     * fork} their sub-problems from within the task. 
+     * 
+     * @param <T> the result type of the task
+     * @param task the task to run
+     * @return the result of the task
+     */
+    public static <T> T invoke(ForkJoinTask<T> task)
+    {
+        ForkJoinPool p = getPool();
+        if(ForkJoinTask.getPool() == p)
+            return task.invoke();
+        return p.invoke(task);
+    }
+    
+    /**
+     * Recursively splits a range in half until it is no larger than the grain
+     * size, running the leaves with a {@link LoopChunkRunner}. 
+     */
+    private static class ChunkAction extends RecursiveAction
+    {
+        private static final long serialVersionUID = 4617183580512906521L;
+        private final LoopChunkRunner lcr;
+        private final int start, end, grain;
+
+        public ChunkAction(LoopChunkRunner lcr, int start, int end, int grain)
+        {
+            this.lcr = lcr;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(end - start <= grain)
+            {
+                lcr.run(start, end);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new ChunkAction(lcr, start, mid, grain), new ChunkAction(lcr, mid, end, grain));
+        }
+    }
+    
+    /**
+     * Recursively splits a range in half until it is no larger than the grain
+     * size, running the leaves with a {@link LoopChunkReducer} and combining 
+     * the results in index order. 
+     */
+    private static class ChunkTask<T> extends RecursiveTask<T>
+    {
+        private static final long serialVersionUID = -2309384150968267117L;
+        private final LoopChunkReducer<T> lcr;
+        private final BinaryOperator<T> reducer;
+        private final int start, end, grain;
+
+        public ChunkTask(LoopChunkReducer<T> lcr, BinaryOperator<T> reducer, int start, int end, int grain)
+        {
+            this.lcr = lcr;
+            this.reducer = reducer;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected T compute()
+        {
+            if(end - start <= grain)
+                return lcr.run(start, end);
+            int mid = (start + end) >>> 1;
+            ChunkTask<T> right = new ChunkTask<>(lcr, reducer, mid, end, grain);
+            right.fork();
+            T left = new ChunkTask<>(lcr, reducer, start, mid, grain).compute();
+            return reducer.apply(left, right.join());
+        }
+    }
+    
     /**
      * This helper method provides a convenient way to break up a computation
      * across <tt>N</tt> items into contiguous ranges that can be processed
@@ -51,9 +220,12 @@ public class ParallelUtils
      */
     public static void run(boolean parallel, int N, LoopChunkRunner lcr)
     {
-        ExecutorService threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
-        run(parallel, N, lcr, threadPool);
-        threadPool.shutdownNow();
+        if(!parallel || N <= 1 || getParallelism() == 1)
+        {
+            lcr.run(0, N);
+            return;
+        }
+        invoke(new ChunkAction(lcr, 0, N, grainSize(N)));
     }
     
     /**
@@ -143,12 +315,25 @@ public class ParallelUtils
         return cur;
     }
     
+    /**
+     * This helper method provides a convenient way to break up a computation
+     * across <tt>N</tt> items into contiguous ranges that can be processed
+     * independently in parallel, and then combine the result of each range.
+     *
+     * @param <T> the type of the result
+     * @param parallel a boolean indicating if the work should be done in
+     * parallel. If false, it will run single-threaded. This is for code
+     * convenience so that only one set of code is needed to handle both cases.
+     * @param N the total number of items to process
+     * @param lcr the runnable over a contiguous range, returning a result
+     * @param reducer the method to combine the results of two ranges
+     * @return the combined result of all ranges
+     */
     public static <T> T run(boolean parallel, int N, LoopChunkReducer<T> lcr, BinaryOperator<T> reducer)
     {
-        ExecutorService threadPool = Executors.newWorkStealingPool(SystemInfo.LogicalCores);
-        T toRet = run(parallel, N, lcr, reducer, threadPool);
-        threadPool.shutdownNow();
-        return toRet;
+        if(!parallel || N <= 1 || getParallelism() == 1)
+            return lcr.run(0, N);
+        return invoke(new ChunkTask<>(lcr, reducer, 0, N, grainSize(N)));
     }
     
     public static <T> T run(boolean parallel, int N, IndexReducer<T> ir, BinaryOperator<T> reducer)
@@ -161,14 +346,43 @@ public class ParallelUtils
             return runner;
         }
         
-        return range(N, parallel).mapToObj(j -> ir.run(j)).reduce(reducer).orElse(null);
+        if(N <= 0)
+            return null;
+        return invoke(new ChunkTask<>((start, end)->
+        {
+            T runner = ir.run(start);
+            for(int i = start+1; i < end; i++)
+                runner = reducer.apply(runner, ir.run(i));
+            return runner;
+        }, reducer, 0, N, 1));
     }
     
+    /**
+     * This helper method provides a convenient way to break up a computation
+     * across <tt>N</tt> items into individual indices to be processed. This
+     * method is meant for when the execution time of any given index is highly
+     * variable, and so for load balancing purposes, every index may be taken
+     * by a different thread.
+     *
+     * @param parallel a boolean indicating if the work should be done in
+     * parallel. If false, it will run single-threaded. This is for code
+     * convenience so that only one set of code is needed to handle both cases.
+     * @param N the total number of items to process.
+     * @param ir the runnable for a single index
+     */
     public static void run(boolean parallel, int N, IndexRunnable ir)
     {
-        ExecutorService threadPool = Executors.newWorkStealingPool(SystemInfo.LogicalCores);
-        run(parallel, N, ir, threadPool);
-        threadPool.shutdownNow();
+        if(!parallel || N <= 1 || getParallelism() == 1)
+        {
+            for(int i = 0; i < N; i++)
+                ir.run(i);
+            return;
+        }
+        invoke(new ChunkAction((start, end)->
+        {
+            for(int i = start; i < end; i++)
+                ir.run(i);
+        }, 0, N, 1));
     }
     
     /**
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.io.LIBSVMLoader;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class CompressedRowStoreTest
+{
+    private RowMajorStore expected;
+
+    public CompressedRowStoreTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+        CategoricalData[] categories = new CategoricalData[]{new CategoricalData(2), new CategoricalData(4)};
+        expected = new RowMajorStore(50, categories);
+        Random rand = RandomUtil.getRandom();
+        for(int i = 0; i < 200; i++)
+        {
+            Vec x = new SparseVector(50);
+            int nnz = rand.nextInt(10);
+            for(int j = 0; j < nnz; j++)
+                x.set(rand.nextInt(50), rand.nextDouble()+0.5);
+            int[] cats = new int[]{rand.nextInt(2), rand.nextInt(4)};
+            expected.addDataPoint(new DataPoint(x, cats, categories));
+        }
+        expected.finishAdding();
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    private static CompressedRowStore copy(DataStore source)
+    {
+        CompressedRowStore store = new CompressedRowStore(source.numNumeric(), source.getCategoricalDataInfo());
+        for(int i = 0; i < source.size(); i++)
+            store.addDataPoint(source.getDataPoint(i));
+        store.finishAdding();
+        return store;
+    }
+
+    private static void checkSame(DataStore a, DataStore b)
+    {
+        assertEquals(a.size(), b.size());
+        assertEquals(a.numNumeric(), b.numNumeric());
+        assertEquals(a.numCategorical(), b.numCategorical());
+        for(int i = 0; i < a.size(); i++)
+        {
+            assertTrue(a.getDataPoint(i).getNumericalValues().equals(b.getDataPoint(i).getNumericalValues()));
+            assertArrayEquals(a.getDataPoint(i).getCategoricalValues(), b.getDataPoint(i).getCategoricalValues());
+        }
+    }
+
+    @Test
+    public void testAddGet()
+    {
+        System.out.println("addDataPoint");
+        CompressedRowStore store = copy(expected);
+        checkSame(expected, store);
+        checkSame(expected, store.clone());
+
+        Vec[] exp_cols = expected.getNumericColumns(Collections.EMPTY_SET);
+        Vec[] cols = store.getNumericColumns(Collections.singleton(3));
+        assertNull(cols[3]);
+        for(int j = 0; j < cols.length; j++)
+            if(j != 3)
+                assertTrue(exp_cols[j].equals(cols[j]));
+        for(int j = 0; j < store.numCategorical(); j++)
+            assertArrayEquals(expected.getCatColumn(j), store.getCatColumn(j));
+
+        assertEquals(expected.getSparsityStats().getMean(), store.getSparsityStats().getMean(), 1e-12);
+    }
+
+    @Test
+    public void testSet()
+    {
+        System.out.println("setDataPoint");
+        CompressedRowStore store = copy(expected);
+        Random rand = RandomUtil.getRandom();
+
+        //replace with both bigger and smaller rows many times, forcing compaction
+        for(int iter = 0; iter < 2000; iter++)
+        {
+            int i = rand.nextInt(store.size());
+            Vec x = new SparseVector(50);
+            int nnz = rand.nextInt(20);
+            for(int j = 0; j < nnz; j++)
+                x.set(rand.nextInt(50), rand.nextDouble()+0.5);
+            DataPoint dp = new DataPoint(x, new int[]{rand.nextInt(2), rand.nextInt(4)}, expected.getCategoricalDataInfo());
+            expected.setDataPoint(i, dp);
+            store.setDataPoint(i, dp);
+        }
+        checkSame(expected, store);
+        store.finishAdding();
+        checkSame(expected, store);
+
+        //changing an existing value of a row writes through
+        Vec row = store.getDataPoint(7).getNumericalValues();
+        if(row.nnz() > 0)
+        {
+            int idx = row.getNonZeroIterator().next().getIndex();
+            row.set(idx, -100);
+            assertEquals(-100, store.getDataPoint(7).getNumericalValues().get(idx), 0.0);
+        }
+    }
+
+    @Test
+    public void testRowIter()
+    {
+        System.out.println("getRowIter");
+        CompressedRowStore store = copy(expected);
+        Iterator<DataPoint> iter = store.getRowIter();
+        int i = 0;
+        while(iter.hasNext())
+        {
+            DataPoint dp = iter.next();
+            assertTrue(expected.getDataPoint(i).getNumericalValues().equals(dp.getNumericalValues()));
+            assertArrayEquals(expected.getDataPoint(i).getCategoricalValues(), dp.getCategoricalValues());
+            i++;
+        }
+        assertEquals(expected.size(), i);
+    }
+
+    @Test
+    public void testLIBSVM() throws Exception
+    {
+        System.out.println("LIBSVMLoader");
+        String data = "1 1:1.0 3:2.5\n0 2:-1\n1\n0 1:0.5 4:4\n";
+        ClassificationDataSet heap = LIBSVMLoader.loadC(new StringReader(data), 0.5, -1, new RowMajorStore());
+        ClassificationDataSet csr = LIBSVMLoader.loadC(new StringReader(data), 0.5, -1, new CompressedRowStore());
+
+        assertEquals(heap.size(), csr.size());
+        assertEquals(heap.getNumNumericalVars(), csr.getNumNumericalVars());
+        for(int i = 0; i < heap.size(); i++)
+        {
+            assertTrue(heap.getDataPoint(i).getNumericalValues().equals(csr.getDataPoint(i).getNumericalValues()));
+            assertEquals(heap.getDataPointCategory(i), csr.getDataPointCategory(i));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat;
+
+import java.util.Arrays;
+import java.util.List;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.classifiers.boosting.Bagging;
+import jsat.linear.DenseVector;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class IndexedDataStoreTest
+{
+    private RowMajorStore parent;
+
+    public IndexedDataStoreTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+        CategoricalData[] cats = new CategoricalData[]{new CategoricalData(10)};
+        parent = new RowMajorStore(2, cats);
+        for (int i = 0; i < 10; i++)
+            parent.addDataPoint(new DataPoint(DenseVector.toDenseVec(i, -i), new int[]{i}, cats));
+        parent.finishAdding();
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testView()
+    {
+        System.out.println("view");
+        IndexedDataStore view = new IndexedDataStore(parent, new int[]{7, 2, 2, 5});
+        assertEquals(4, view.size());
+        assertEquals(2, view.numNumeric());
+        assertEquals(1, view.numCategorical());
+        assertSame(parent.getDataPoint(7), view.getDataPoint(0));
+        assertSame(parent.getDataPoint(2), view.getDataPoint(2));
+        assertArrayEquals(new int[]{7, 2, 2, 5}, view.getCatColumn(0));
+        assertEquals(5.0, view.getNumericColumn(0).get(3), 0.0);
+
+        //setting a point in the view does not change the parent
+        view.setDataPoint(1, new DataPoint(DenseVector.toDenseVec(100, 100), new int[]{0}, parent.getCategoricalDataInfo()));
+        assertEquals(100.0, view.getDataPoint(1).getNumericalValues().get(0), 0.0);
+        assertEquals(2.0, view.getDataPoint(2).getNumericalValues().get(0), 0.0);
+        assertEquals(2.0, parent.getDataPoint(2).getNumericalValues().get(0), 0.0);
+
+        view.addDataPoint(parent.getDataPoint(0));
+        assertEquals(5, view.size());
+        assertEquals(10, parent.size());
+
+        //a view of an unmodified view refers to the original store
+        IndexedDataStore view2 = new IndexedDataStore(new IndexedDataStore(parent, new int[]{9, 8, 7}), new int[]{2, 0});
+        assertSame(parent, view2.getParent());
+        assertEquals(7, view2.getParentIndex(0));
+        assertEquals(9, view2.getParentIndex(1));
+    }
+
+    @Test
+    public void testConcat()
+    {
+        System.out.println("concat");
+        IndexedDataStore a = new IndexedDataStore(parent, new int[]{1, 3});
+        IndexedDataStore b = new IndexedDataStore(parent, new int[]{4});
+        IndexedDataStore ab = IndexedDataStore.concat(Arrays.asList(a, b));
+        assertEquals(3, ab.size());
+        assertEquals(4, ab.getParentIndex(2));
+
+        b.addDataPoint(parent.getDataPoint(0));
+        assertNull(IndexedDataStore.concat(Arrays.asList(a, b)));
+        assertNull(IndexedDataStore.concat(Arrays.asList(a, parent)));
+    }
+
+    @Test
+    public void testDataSetViews()
+    {
+        System.out.println("DataSet views");
+        ClassificationDataSet data = new ClassificationDataSet(2, new CategoricalData[0], new CategoricalData(2));
+        for (int i = 0; i < 20; i++)
+            data.addDataPoint(DenseVector.toDenseVec(i, i), i % 2, i + 1.0);
+
+        List<ClassificationDataSet> folds = data.cvSet(4, RandomUtil.getRandom());
+        int total = 0;
+        for (ClassificationDataSet fold : folds)
+        {
+            total += fold.size();
+            for (int i = 0; i < fold.size(); i++)
+            {
+                int orig = (int) fold.getDataPoint(i).getNumericalValues().get(0);
+                assertEquals(orig % 2, fold.getDataPointCategory(i));
+                assertEquals(orig + 1.0, fold.getWeight(i), 0.0);
+            }
+        }
+        assertEquals(data.size(), total);
+
+        ClassificationDataSet train = ClassificationDataSet.comineAllBut(folds, 1);
+        assertEquals(data.size() - folds.get(1).size(), train.size());
+        for (int i = 0; i < train.size(); i++)
+        {
+            int orig = (int) train.getDataPoint(i).getNumericalValues().get(0);
+            assertEquals(orig % 2, train.getDataPointCategory(i));
+            assertEquals(orig + 1.0, train.getWeight(i), 0.0);
+        }
+
+        int[] counts = new int[data.size()];
+        counts[3] = 2;
+        counts[6] = 1;
+        ClassificationDataSet bag = Bagging.getSampledDataSet(data, counts);
+        assertEquals(3, bag.size());
+        assertEquals(3.0, bag.getDataPoint(1).getNumericalValues().get(0), 0.0);
+        bag = Bagging.getWeightSampledDataSet(data, counts);
+        assertEquals(2, bag.size());
+        assertEquals(8.0, bag.getWeight(0), 0.0);
+        assertEquals(7.0, bag.getWeight(1), 0.0);
+        assertEquals(0, bag.getDataPointCategory(1));
+    }
+}
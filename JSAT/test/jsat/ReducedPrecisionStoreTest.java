@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.io.JSATData;
+import jsat.io.JSATData.FloatStorageMethod;
+import jsat.linear.DenseFloatVector;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseFloatVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class ReducedPrecisionStoreTest
+{
+    public ReducedPrecisionStoreTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testAuto()
+    {
+        System.out.println("AUTO precision");
+        ReducedPrecisionStore store = new ReducedPrecisionStore();
+
+        store.addDataPoint(new DataPoint(DenseVector.toDenseVec(1.0, 0.5, -3.0)));
+        store.addDataPoint(new DataPoint(DenseVector.toDenseVec(1.0, 0.1, -3.0)));
+        Vec sparse = new SparseVector(3);
+        sparse.set(1, 4.0);
+        store.addDataPoint(new DataPoint(sparse));
+        store.finishAdding();
+
+        assertTrue(store.getDataPoint(0).getNumericalValues() instanceof DenseFloatVector);
+        //0.1 can not be stored exactly, so left alone
+        assertTrue(store.getDataPoint(1).getNumericalValues() instanceof DenseVector);
+        assertEquals(0.1, store.getDataPoint(1).getNumericalValues().get(1), 0.0);
+        assertTrue(store.getDataPoint(2).getNumericalValues() instanceof SparseFloatVector);
+        assertEquals(4.0, store.getDataPoint(2).getNumericalValues().get(1), 0.0);
+    }
+
+    @Test
+    public void testFP32()
+    {
+        System.out.println("FP32 precision");
+        ReducedPrecisionStore store = new ReducedPrecisionStore(FloatStorageMethod.FP32);
+        store.addDataPoint(new DataPoint(DenseVector.toDenseVec(1.0, 0.1, -3.0)));
+        store.setDataPoint(0, new DataPoint(DenseVector.toDenseVec(2.0, 0.1, -3.0)));
+
+        Vec x = store.getDataPoint(0).getNumericalValues();
+        assertTrue(x instanceof DenseFloatVector);
+        assertEquals(2.0, x.get(0), 0.0);
+        assertEquals((float) 0.1, x.get(1), 0.0);
+
+        ReducedPrecisionStore clone = store.clone();
+        assertEquals(FloatStorageMethod.FP32, clone.getPrecision());
+        assertEquals(FloatStorageMethod.FP32, store.emptyClone().getPrecision());
+    }
+
+    @Test
+    public void testJSATDataLoad() throws Exception
+    {
+        System.out.println("JSATData load");
+        CategoricalData[] categories = new CategoricalData[]{new CategoricalData(3)};
+        SimpleDataSet data = new SimpleDataSet(10, categories);
+        Random rand = RandomUtil.getRandom();
+        for(int i = 0; i < 30; i++)
+        {
+            Vec x = new DenseVector(10);
+            for(int j = 0; j < 10; j++)
+                x.set(j, rand.nextInt(100));
+            data.add(new DataPoint(x, new int[]{rand.nextInt(3)}, categories));
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JSATData.writeData(data, baos);
+        ReducedPrecisionStore store = new ReducedPrecisionStore();
+        DataSet readBack = JSATData.load(new ByteArrayInputStream(baos.toByteArray()), store);
+
+        //integer values get written as bytes, which is smaller than FP64
+        assertNotSame(FloatStorageMethod.FP64, store.getPrecision());
+        assertNotSame(FloatStorageMethod.AUTO, store.getPrecision());
+        assertEquals(data.size(), readBack.size());
+        for(int i = 0; i < data.size(); i++)
+        {
+            Vec x = readBack.getDataPoint(i).getNumericalValues();
+            assertTrue(x instanceof DenseFloatVector);
+            assertTrue(data.getDataPoint(i).getNumericalValues().equals(x));
+            assertArrayEquals(data.getDataPoint(i).getCategoricalValues(), readBack.getDataPoint(i).getCategoricalValues());
+        }
+    }
+}
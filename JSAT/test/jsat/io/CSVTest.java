@@ -467,7 +467,73 @@ public class CSVTest
         }
     }
 
+    @Test
+    public void testReadParallel() throws IOException
+    {
+        System.out.println("read parallel");
+        Random rand = RandomUtil.getRandom();
+        String[] newLines = new String[]{"\n", "\n\r", "\r\n", "\n\r\n"};
+        String[] catOps = new String[]{"a", "b", "c", "hello world", "z"};
+        
+        StringBuilder input = new StringBuilder();
+        input.append("target, x, y, cat\n");//header line to skip
+        for (int i = 0; i < 5000; i++)
+        {
+            input.append(rand.nextInt(4)).append(", ");
+            input.append(rand.nextGaussian()).append(",");
+            if(rand.nextInt(20) != 0)
+                input.append(rand.nextInt(1000) / 100.0);
+            input.append(" ,\t");
+            //make categories rare so some chunks won't see every option
+            input.append(catOps[Math.min(rand.nextInt(2000), catOps.length-1)]);
+            if(rand.nextInt(10) == 0)
+                input.append(" # a comment,1,2,3");
+            input.append(newLines[rand.nextInt(newLines.length)]);
+        }
+        
+        File tmp = File.createTempFile("jsat_parallel", ".csv");
+        tmp.deleteOnExit();
+        try (Writer w = new FileWriter(tmp))
+        {
+            w.write(input.toString());
+        }
+        Set<Integer> cat_cols = new HashSet<Integer>(Arrays.asList(3));
+        
+        //the Reader based parser may differ in the last bit of some values
+        SimpleDataSet expected = CSV.read(new StringReader(input.toString()), ',', 1, '#', cat_cols);
+        ClassificationDataSet expectedC = CSV.readC(0, new StringReader(input.toString()), ',', 1, '#', cat_cols);
+        RegressionDataSet expectedR = CSV.readR(0, new StringReader(input.toString()), ',', 1, '#', cat_cols);
+        
+        compareDataSetPoints(1e-12, expected, CSV.read(tmp.toPath(), ',', 1, '#', cat_cols, true));
+        compareDataSetPoints(1e-12, expected, CSV.read(tmp.toPath(), ',', 1, '#', cat_cols, false));
+        
+        //use very small chunks to make sure rows are not broken across them
+        for (int chunkSize : new int[]{1, 7, 100, 4096})
+            try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(tmp.toPath()))
+            {
+                SimpleDataSet found = (SimpleDataSet) MappedCSV.read(channel, 1, ',', '#', cat_cols, -1, -1, new jsat.RowMajorStore(), true, chunkSize);
+                compareDataSetPoints(1e-12, expected, found);
+                for (int i = 0; i < expected.size(); i++)
+                    assertArrayEquals(expected.getDataPoint(i).getCategoricalValues(), found.getDataPoint(i).getCategoricalValues());
+            }
+        
+        ClassificationDataSet foundC = CSV.readC(0, tmp.toPath(), ',', 1, '#', cat_cols, new jsat.CompressedRowStore(), true);
+        compareDataSetPoints(1e-12, expectedC, foundC);
+        assertEquals(expectedC.getClassSize(), foundC.getClassSize());
+        for (int i = 0; i < expectedC.size(); i++)
+            assertEquals(expectedC.getDataPointCategory(i), foundC.getDataPointCategory(i));
+        
+        RegressionDataSet foundR = CSV.readR(0, tmp.toPath(), ',', 1, '#', cat_cols, true);
+        compareDataSetPoints(1e-12, expectedR, foundR);
+        assertTrue(expectedR.getTargetValues().equals(foundR.getTargetValues(), 1e-12));
+    }
+
     private void compareDataSetPoints(DataSet<?> truth_data, DataSet<?> simpleIn)
+    {
+        compareDataSetPoints(0.0, truth_data, simpleIn);
+    }
+    
+    private void compareDataSetPoints(double range, DataSet<?> truth_data, DataSet<?> simpleIn)
     {
         assertEquals(truth_data.size(), simpleIn.size());
         assertEquals(truth_data.getNumCategoricalVars(), simpleIn.getNumCategoricalVars());
@@ -477,7 +543,7 @@ public class CSVTest
         {
             DataPoint exp = truth_data.getDataPoint(i);
             DataPoint found = simpleIn.getDataPoint(i);
-            assertTrue(exp.getNumericalValues().equals(found.getNumericalValues()));
+            assertTrue(exp.getNumericalValues().equals(found.getNumericalValues(), range));
             
             
             for(int k = 0; k < truth_data.getNumCategoricalVars(); k++)
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.io;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import jsat.DataSet;
+import jsat.FixedProblems;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.linear.ROMMA;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class DataReaderTest
+{
+
+    public DataReaderTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testStreamJSATData() throws IOException
+    {
+        System.out.println("streamJSATData");
+        Random rand = RandomUtil.getRandom();
+        ClassificationDataSet data = FixedProblems.get2ClassLinear(500, rand);
+        for(int i = 0; i < data.size(); i++)
+            data.setWeight(i, 1+rand.nextInt(3));
+
+        for(boolean columnar : new boolean[]{false, true})
+        {
+            File tmp = File.createTempFile("stream", ".jsat");
+            tmp.deleteOnExit();
+            try(OutputStream out = new FileOutputStream(tmp))
+            {
+                if(columnar)
+                    JSATData.writeColumnar(data, out, JSATData.FloatStorageMethod.FP64, true, 64);
+                else
+                    JSATData.writeData(data, out, JSATData.FloatStorageMethod.FP64);
+            }
+
+            DataReader.Factory factory = JSATData.stream(tmp);
+            for(int pass = 0; pass < 2; pass++)
+                try(DataReader reader = factory.open())
+                {
+                    assertEquals(DataWriter.DataSetType.CLASSIFICATION, reader.type);
+                    assertEquals(data.getNumNumericalVars(), reader.dim);
+                    assertEquals(data.getPredicting().getNumOfCategories(), reader.predicting.getNumOfCategories());
+                    compare(data, reader, true);
+                }
+        }
+    }
+
+    @Test
+    public void testStreamLIBSVM() throws IOException
+    {
+        System.out.println("streamLIBSVM");
+        Random rand = RandomUtil.getRandom();
+        RegressionDataSet data = FixedProblems.getLinearRegression(300, rand);
+        File tmp = File.createTempFile("stream", ".libsvm");
+        tmp.deleteOnExit();
+        try(OutputStream out = new FileOutputStream(tmp))
+        {
+            LIBSVMLoader.write(data, out);
+        }
+
+        try(DataReader reader = LIBSVMLoader.streamR(tmp, data.getNumNumericalVars()).open())
+        {
+            assertEquals(DataWriter.DataSetType.REGRESSION, reader.type);
+            compare(data, reader, false);
+        }
+        //dimension is found from the file
+        try(DataReader reader = LIBSVMLoader.streamR(tmp, -1).open())
+        {
+            compare(data, reader, false);
+        }
+    }
+
+    @Test
+    public void testStreamCSV() throws IOException
+    {
+        System.out.println("streamCSV");
+        Random rand = RandomUtil.getRandom();
+        ClassificationDataSet data = FixedProblems.get2ClassLinear(200, rand);
+        File tmp = File.createTempFile("stream", ".csv");
+        tmp.deleteOnExit();
+        CSV.write(data, tmp.toPath());
+
+        DataSet<?> loaded = CSV.readC(0, tmp.toPath(), 0, new HashSet<>());
+        try(DataReader reader = CSV.streamC(0, tmp.toPath(), CSV.DEFAULT_DELIMITER, 0, CSV.DEFAULT_COMMENT, new HashSet<>()).open())
+        {
+            assertEquals(DataWriter.DataSetType.CLASSIFICATION, reader.type);
+            compare(loaded, reader, true);
+        }
+    }
+
+    @Test
+    public void testShuffleAndReadAhead() throws IOException
+    {
+        System.out.println("shuffleAndReadAhead");
+        Random rand = RandomUtil.getRandom();
+        RegressionDataSet data = FixedProblems.getLinearRegression(1000, rand);
+        File tmp = File.createTempFile("stream", ".jsat");
+        tmp.deleteOnExit();
+        try(OutputStream out = new FileOutputStream(tmp))
+        {
+            JSATData.writeData(data, out, JSATData.FloatStorageMethod.FP64);
+        }
+
+        List<Double> expected = new ArrayList<>();
+        for(int i = 0; i < data.size(); i++)
+            expected.add(data.getTargetValue(i));
+        Collections.sort(expected);
+
+        for(int window : new int[]{1, 10, 5000})
+            try(DataReader reader = DataReader.shuffle(DataReader.readAhead(JSATData.stream(tmp).open(), 16), window, rand))
+            {
+                List<Double> found = new ArrayList<>();
+                boolean inOrder = true;
+                while(reader.next())
+                {
+                    inOrder &= reader.getLabel() == data.getTargetValue(found.size());
+                    found.add(reader.getLabel());
+                }
+                assertEquals(window == 1, inOrder);
+                Collections.sort(found);
+                assertEquals(expected, found);
+            }
+    }
+
+    @Test
+    public void testTrainEpochs() throws IOException
+    {
+        System.out.println("trainEpochs");
+        Random rand = RandomUtil.getRandom();
+        ClassificationDataSet train = FixedProblems.get2ClassLinear(400, rand);
+        ClassificationDataSet test = FixedProblems.get2ClassLinear(200, rand);
+        File tmp = File.createTempFile("stream", ".jsat");
+        tmp.deleteOnExit();
+        try(OutputStream out = new FileOutputStream(tmp))
+        {
+            JSATData.writeColumnar(train, out);
+        }
+
+        ROMMA instance = new ROMMA();
+        instance.setEpochs(3);
+        instance.train(JSATData.stream(tmp));
+
+        for(int i = 0; i < test.size(); i++)
+            assertEquals(test.getDataPointCategory(i), instance.classify(test.getDataPoint(i)).mostLikely());
+
+        try
+        {
+            jsat.regression.BaseUpdateableRegressor.trainEpochs(JSATData.stream(tmp), new jsat.classifiers.linear.PassiveAggressive(), 1, 10, 10);
+            fail("Classification data can not be used to train a regressor");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            //expected
+        }
+    }
+
+    private static void compare(DataSet<?> expected, DataReader reader, boolean classification) throws IOException
+    {
+        for(int i = 0; i < expected.size(); i++)
+        {
+            assertTrue(reader.next());
+            Vec e = expected.getDataPoint(i).getNumericalValues();
+            Vec a = reader.getDataPoint().getNumericalValues();
+            assertEquals(e.length(), a.length());
+            assertEquals(0.0, e.subtract(a).pNorm(1), 1e-12);
+            assertEquals(expected.getWeight(i), reader.getWeight(), 0.0);
+            if(classification)
+                assertEquals(((ClassificationDataSet) expected).getDataPointCategory(i), (int) reader.getLabel());
+            else
+                assertEquals(((RegressionDataSet) expected).getTargetValue(i), reader.getLabel(), 1e-12);
+        }
+        assertFalse(reader.next());
+    }
+}
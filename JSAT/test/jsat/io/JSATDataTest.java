@@ -330,6 +330,102 @@ public class JSATDataTest
         
     }
 
+    @Test
+    public void testReadWriteColumnar() throws Exception
+    {
+        System.out.println("ReadWriteColumnar");
+        
+        ClassificationDataSet cds = simpleData.asClassificationDataSet(simpleData.getNumCategoricalVars()-1);
+        RegressionDataSet rds = simpleData.asRegressionDataSet(simpleData.getNumNumericalVars()-1);
+        
+        File tmp = File.createTempFile("jsat", "data");
+        tmp.deleteOnExit();
+        for(int sparsify = 0; sparsify < 2; sparsify++)
+        {
+            for(DataSet data : new DataSet[]{simpleData, byteIntegerData, cds, rds})
+                for(boolean compress : new boolean[]{true, false})
+                    for(int rowsPerBlock : new int[]{1, 3, 100})
+                    {
+                        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp)))
+                        {
+                            JSATData.writeColumnar(data, out, JSATData.FloatStorageMethod.AUTO, compress, rowsPerBlock);
+                        }
+                        for(DataStore store : new DataStore[]{new RowMajorStore(), new ColumnMajorStore()})
+                        {
+                            checkDataSet(data, JSATData.load(tmp, store.clone()));
+                            try(InputStream in = new BufferedInputStream(new FileInputStream(tmp)))
+                            {
+                                checkDataSet(data, JSATData.load(in, store.clone()));
+                            }
+                            if(data == cds || data == rds)
+                                try(InputStream in = new BufferedInputStream(new FileInputStream(tmp)))
+                                {
+                                    checkDataSet(simpleData, JSATData.load(in, true, store.clone()));
+                                }
+                        }
+                    }
+            cds.applyTransform(new DenseSparceTransform(0.5));
+            rds.applyTransform(new DenseSparceTransform(0.5));
+            simpleData.applyTransform(new DenseSparceTransform(0.5));
+            byteIntegerData.applyTransform(new DenseSparceTransform(0.5));
+        }
+    }
+    
+    @Test
+    public void testLoadSubset() throws Exception
+    {
+        System.out.println("LoadSubset");
+        
+        RegressionDataSet rds = simpleData.asRegressionDataSet(simpleData.getNumNumericalVars()-1);
+        File tmp = File.createTempFile("jsat", "data");
+        tmp.deleteOnExit();
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp)))
+        {
+            JSATData.writeColumnar(rds, out, JSATData.FloatStorageMethod.AUTO, true, 3);
+        }
+        
+        int[] numeric = new int[]{5, 2, 11};
+        int[] cat = new int[]{2, 0};
+        for(DataStore store : new DataStore[]{new RowMajorStore(), new ColumnMajorStore()})
+        {
+            RegressionDataSet sub = (RegressionDataSet) JSATData.load(tmp, 4, 9, numeric, cat, store.clone());
+            assertEquals(5, sub.size());
+            assertEquals(numeric.length, sub.getNumNumericalVars());
+            assertEquals(cat.length, sub.getNumCategoricalVars());
+            assertEquals(rds.getCategories()[2].getNumOfCategories(), sub.getCategories()[0].getNumOfCategories());
+            for(int i = 0; i < sub.size(); i++)
+            {
+                DataPoint og = rds.getDataPoint(i+4);
+                DataPoint cp = sub.getDataPoint(i);
+                for(int j = 0; j < numeric.length; j++)
+                    assertEquals(og.getNumericalValues().get(numeric[j]), cp.getNumericalValues().get(j), 0.0);
+                for(int j = 0; j < cat.length; j++)
+                    assertEquals(og.getCategoricalValue(cat[j]), cp.getCategoricalValue(j));
+                assertEquals(rds.getTargetValue(i+4), sub.getTargetValue(i), 0.0);
+                assertEquals(rds.getWeight(i+4), sub.getWeight(i), 0.0);
+            }
+            
+            //rows to the end, all features
+            checkDataSet(rds.getView(new int[]{7, 8, 9}), JSATData.load(tmp, 7, -1, null, null, store.clone()));
+        }
+        
+        //original files can still be loaded whole, but not in part
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp)))
+        {
+            JSATData.writeData(rds, out);
+        }
+        checkDataSet(rds, JSATData.load(tmp, new RowMajorStore()));
+        try
+        {
+            JSATData.load(tmp, 1, 3, null, null, new RowMajorStore());
+            fail("Original format should not support loading a subset");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            //good
+        }
+    }
+
     private void checkDataSet(DataSet ogData, DataSet cpData)
     {
         assertEquals(ogData.getClass().getCanonicalName(), cpData.getClass().getCanonicalName());
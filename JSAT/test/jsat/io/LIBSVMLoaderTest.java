@@ -17,11 +17,17 @@
 package jsat.io;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import jsat.ColumnMajorStore;
+import jsat.CompressedRowStore;
+import jsat.DataSet;
 import jsat.DataStore;
 import jsat.RowMajorStore;
+import jsat.classifiers.ClassificationDataSet;
 
 import jsat.linear.DenseVector;
 import jsat.linear.Vec;
@@ -162,4 +168,68 @@ public class LIBSVMLoaderTest
                     }
     }
 
+    @Test
+    public void testLoadParallel() throws IOException
+    {
+        System.out.println("loadParallel");
+        Random rand = new Random(42);
+        String[] newLines = new String[]{"\n", "\r\n", "\n\r\n"};
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+        {
+            input.append(rand.nextInt(3)).append(i % 7 == 0 ? "  " : " ");
+            int nnz = i % 11 == 0 ? 0 : rand.nextInt(8);
+            for (int j = 0; j < nnz; j++)
+            {
+                //indices are allowed to be out of order, and zeros are dropped
+                double val = rand.nextInt(4) == 0 ? 0 : rand.nextGaussian();
+                input.append(1 + rand.nextInt(40)).append(':').append(val).append(' ');
+            }
+            input.append(newLines[i % newLines.length]);
+        }
+
+        File tmp = File.createTempFile("jsat", "libsvm");
+        tmp.deleteOnExit();
+        try (Writer writer = new FileWriter(tmp))
+        {
+            writer.write(input.toString());
+        }
+
+        ClassificationDataSet expectedC = LIBSVMLoader.loadC(new StringReader(input.toString()), 0.5, 0);
+        RegressionDataSet expectedR = LIBSVMLoader.loadR(new StringReader(input.toString()), 0.5, 0);
+        for (boolean parallel : new boolean[]{true, false})
+        {
+            compare(expectedC, LIBSVMLoader.loadC(tmp, 0.5, 0, parallel));
+            compare(expectedR, LIBSVMLoader.loadR(tmp, 0.5, 0, parallel));
+            compare(expectedR, LIBSVMLoader.loadR(tmp, 0.5, 0, new CompressedRowStore(), parallel));
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.READ))
+            {
+                for (long chunkSize : new long[]{1, 7, 100})
+                {
+                    DataSet loaded = MappedLIBSVM.load(channel, 0.5, 0, true, new RowMajorStore(), parallel, chunkSize);
+                    compare(expectedC, loaded);
+                    for (int i = 0; i < expectedC.size(); i++)
+                        assertEquals(expectedC.getDataPointCategory(i), ((ClassificationDataSet) loaded).getDataPointCategory(i));
+                    loaded = MappedLIBSVM.load(channel, 0.5, 0, false, new CompressedRowStore(), parallel, chunkSize);
+                    compare(expectedR, loaded);
+                    for (int i = 0; i < expectedR.size(); i++)
+                        assertEquals(expectedR.getTargetValue(i), ((RegressionDataSet) loaded).getTargetValue(i), 0.0);
+                }
+            }
+        }
+    }
+
+    private static void compare(DataSet expected, DataSet actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getNumNumericalVars(), actual.getNumNumericalVars());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            Vec e = expected.getDataPoint(i).getNumericalValues();
+            Vec a = actual.getDataPoint(i).getNumericalValues();
+            assertEquals(e.length(), a.length());
+            assertEquals(0.0, e.subtract(a).pNorm(1), 1e-12);
+        }
+    }
+
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.io;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import jsat.DataSet;
+import jsat.SimpleDataSet;
+import jsat.classifiers.*;
+import jsat.datatransform.DenseSparceTransform;
+import jsat.datatransform.LinearTransform;
+import jsat.datatransform.RemoveAttributeTransform;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.IntSet;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class MappedDataStoreTest
+{
+    static SimpleDataSet simpleData;
+
+    public MappedDataStoreTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+        CategoricalData[] categories = new CategoricalData[3];
+        categories[0] = new CategoricalData(2);
+        categories[1] = new CategoricalData(3);
+        categories[2] = new CategoricalData(5);
+
+        simpleData = new SimpleDataSet(20, categories);
+
+        Random rand = RandomUtil.getRandom();
+
+        for(int i = 0; i < 50; i++)
+        {
+            int[] catVals = new int[categories.length];
+            for(int j = 0; j < categories.length; j++)
+                catVals[j] = rand.nextInt(categories[j].getNumOfCategories());
+
+            double[] numeric = new double[simpleData.getNumNumericalVars()];
+            for(int j = 0; j < numeric.length/3; j++)
+                numeric[rand.nextInt(numeric.length)] = rand.nextInt(100);
+
+            simpleData.add(new DataPoint(new DenseVector(numeric), catVals, categories));
+            simpleData.setWeight(simpleData.size()-1, rand.nextInt(5)+1);
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testLoadMappedSimple() throws Exception
+    {
+        System.out.println("loadMapped simple");
+
+        for(JSATData.FloatStorageMethod fpStoreMethod : JSATData.FloatStorageMethod.values())
+        {
+            checkDataSet(simpleData, JSATData.loadMapped(write(simpleData, fpStoreMethod)));
+            simpleData.applyTransform(new DenseSparceTransform(0.5));
+            checkDataSet(simpleData, JSATData.loadMapped(write(simpleData, fpStoreMethod)));
+        }
+    }
+
+    @Test
+    public void testLoadMappedClassification() throws Exception
+    {
+        System.out.println("loadMapped classification");
+
+        ClassificationDataSet cds = simpleData.asClassificationDataSet(simpleData.getNumCategoricalVars()-1);
+
+        File f = write(cds, JSATData.FloatStorageMethod.AUTO);
+        checkDataSet(cds, JSATData.loadMapped(f));
+        checkDataSet(simpleData, JSATData.loadMapped(f, true));
+
+        cds.applyTransform(new DenseSparceTransform(0.5));
+        simpleData.applyTransform(new DenseSparceTransform(0.5));
+
+        f = write(cds, JSATData.FloatStorageMethod.FP64);
+        checkDataSet(cds, JSATData.loadMapped(f));
+        checkDataSet(simpleData, JSATData.loadMapped(f, true));
+    }
+
+    @Test
+    public void testLoadMappedRegression() throws Exception
+    {
+        System.out.println("loadMapped regression");
+
+        RegressionDataSet rds = simpleData.asRegressionDataSet(simpleData.getNumNumericalVars()-1);
+
+        File f = write(rds, JSATData.FloatStorageMethod.FP32);
+        checkDataSet(rds, JSATData.loadMapped(f));
+        checkDataSet(simpleData, JSATData.loadMapped(f, true));
+
+        rds.applyTransform(new DenseSparceTransform(0.5));
+        simpleData.applyTransform(new DenseSparceTransform(0.5));
+
+        f = write(rds, JSATData.FloatStorageMethod.AUTO);
+        checkDataSet(rds, JSATData.loadMapped(f));
+        checkDataSet(simpleData, JSATData.loadMapped(f, true));
+    }
+
+    @Test
+    public void testOverlay() throws Exception
+    {
+        System.out.println("overlay");
+
+        DataSet mapped = JSATData.loadMapped(write(simpleData, JSATData.FloatStorageMethod.AUTO));
+
+        DataPoint replacement = simpleData.getDataPoint(3).clone();
+        replacement.getNumericalValues().set(0, -7.0);
+        mapped.setDataPoint(5, replacement);
+        assertEquals(-7.0, mapped.getDataPoint(5).getNumericalValues().get(0), 0.0);
+        assertEquals(-7.0, mapped.getNumericColumn(0).get(5), 0.0);
+        assertTrue(simpleData.getDataPoint(6).getNumericalValues().equals(mapped.getDataPoint(6).getNumericalValues()));
+
+    }
+
+    @Test
+    public void testApplyTransform() throws Exception
+    {
+        System.out.println("applyTransform");
+
+        for(boolean parallel : new boolean[]{false, true})
+        {
+            DataSet mapped = JSATData.loadMapped(write(simpleData, JSATData.FloatStorageMethod.FP64));
+            int d_n = mapped.getNumNumericalVars(), d_c = mapped.getNumCategoricalVars();
+            //removes features, so the dimensions must shrink below what is in the file
+            RemoveAttributeTransform remove = new RemoveAttributeTransform(simpleData, new IntSet(Arrays.asList(1)), new IntSet(Arrays.asList(0, 3, 5)));
+            mapped.applyTransform(remove, parallel);
+            simpleData.applyTransform(remove, parallel);
+            assertEquals(d_n-3, mapped.getNumNumericalVars());
+            assertEquals(d_c-1, mapped.getNumCategoricalVars());
+            checkDataSet(simpleData, mapped);
+        }
+    }
+
+    @Test
+    public void testApplyTransformMutate() throws Exception
+    {
+        System.out.println("applyTransformMutate");
+
+        for(boolean mutate : new boolean[]{false, true})
+            for(boolean parallel : new boolean[]{false, true})
+            {
+                DataSet mapped = JSATData.loadMapped(write(simpleData, JSATData.FloatStorageMethod.FP64));
+                LinearTransform linear = new LinearTransform(simpleData, -1, 1);
+                mapped.applyTransformMutate(linear, mutate, parallel);
+                simpleData.applyTransformMutate(linear, mutate, parallel);
+                checkDataSet(simpleData, mapped);
+            }
+    }
+
+    @Test
+    public void testStoreColumns() throws Exception
+    {
+        System.out.println("store columns");
+
+        simpleData.applyTransform(new DenseSparceTransform(0.5));
+        MappedDataStore store = new MappedDataStore(write(simpleData, JSATData.FloatStorageMethod.AUTO));
+        assertEquals(simpleData.size(), store.size());
+
+        for(int j = 0; j < simpleData.getNumCategoricalVars(); j++)
+        {
+            int[] col = store.getCatColumn(j);
+            for(int i = 0; i < simpleData.size(); i++)
+                assertEquals(simpleData.getDataPoint(i).getCategoricalValue(j), col[i]);
+        }
+
+        //clones should not see later changes
+        MappedDataStore clone = store.clone();
+        DataPoint replacement = simpleData.getDataPoint(3).clone();
+        store.setDataPoint(6, replacement);
+        assertTrue(replacement.getNumericalValues().equals(store.getDataPoint(6).getNumericalValues()));
+        assertTrue(simpleData.getDataPoint(6).getNumericalValues().equals(clone.getDataPoint(6).getNumericalValues()));
+
+        //adding points goes to the overlay
+        store.addDataPoint(replacement);
+        assertEquals(simpleData.size()+1, store.size());
+        assertEquals(simpleData.size(), clone.size());
+        assertEquals(replacement.getCategoricalValue(1), store.getCatColumn(1)[simpleData.size()]);
+    }
+
+    private static File write(DataSet data, JSATData.FloatStorageMethod fpStoreMethod) throws IOException
+    {
+        File f = File.createTempFile("mapped", ".jsat");
+        f.deleteOnExit();
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(f)))
+        {
+            JSATData.writeData(data, out, fpStoreMethod);
+        }
+        return f;
+    }
+
+    private void checkDataSet(DataSet ogData, DataSet cpData)
+    {
+        assertEquals(ogData.getClass().getCanonicalName(), cpData.getClass().getCanonicalName());
+
+        assertEquals(ogData.getNumNumericalVars(), cpData.getNumNumericalVars());
+        assertEquals(ogData.getNumCategoricalVars(), cpData.getNumCategoricalVars());
+        assertEquals(ogData.size(), cpData.size());
+
+        for(int i = 0; i < ogData.size(); i++)
+        {
+            DataPoint og = ogData.getDataPoint(i);
+            DataPoint cp = cpData.getDataPoint(i);
+
+            assertArrayEquals(og.getCategoricalValues(), cp.getCategoricalValues());
+            assertTrue(og.getNumericalValues().equals(cp.getNumericalValues()));
+            assertEquals(ogData.getWeight(i), cpData.getWeight(i), 0.0);
+        }
+
+        Vec[] og_cols = ogData.getNumericColumns(Collections.EMPTY_SET);
+        Vec[] cp_cols = cpData.getNumericColumns(Collections.EMPTY_SET);
+        for(int j = 0; j < og_cols.length; j++)
+            assertTrue(og_cols[j].equals(cp_cols[j]));
+
+        if(ogData instanceof ClassificationDataSet)
+        {
+            ClassificationDataSet ogC = (ClassificationDataSet) ogData;
+            ClassificationDataSet cpC = (ClassificationDataSet) cpData;
+
+            for(int i = 0; i < ogData.size(); i++)
+                assertEquals(ogC.getDataPointCategory(i), cpC.getDataPointCategory(i));
+        }
+
+        if(ogData instanceof RegressionDataSet)
+        {
+            RegressionDataSet ogR = (RegressionDataSet) ogData;
+            RegressionDataSet cpR = (RegressionDataSet) cpData;
+
+            for(int i = 0; i < ogData.size(); i++)
+                assertEquals(ogR.getTargetValue(i), cpR.getTargetValue(i), 0.0);
+        }
+    }
+}
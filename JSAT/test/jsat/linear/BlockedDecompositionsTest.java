@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class BlockedDecompositionsTest
+{
+    static ExecutorService threadpool;
+
+    public BlockedDecompositionsTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    /**
+     * Small panels, so that every size has many steps and a ragged last panel
+     */
+    private static final int[] panels = new int[]{1, 3, 8};
+
+    @Test
+    public void testCholesky()
+    {
+        System.out.println("cholesky");
+        Random rand = RandomUtil.getRandom();
+        for(int n : new int[]{1, 7, 30, 61})
+            for(int nb : panels)
+                for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+                {
+                    Matrix A = spd(n, rand);
+                    Matrix L = new DenseMatrix(A);
+                    BlockedDecompositions.cholesky(L, nb, ex);
+                    for(int i = 0; i < n; i++)
+                        for(int j = i+1; j < n; j++)
+                            L.set(i, j, 0.0);
+                    assertTrue(A.equals(L.multiplyTranspose(L), 1e-10));
+
+                    Matrix F = new FlatDenseMatrix(A.rows(), A.cols(), false);
+                    A.copyTo(F);
+                    BlockedDecompositions.cholesky(F, nb, ex);
+                    for(int i = 0; i < n; i++)
+                        for(int j = 0; j <= i; j++)
+                            assertEquals(L.get(i, j), F.get(i, j), 1e-10);
+                }
+
+        try
+        {
+            BlockedDecompositions.cholesky(new DenseMatrix(20, 20), 4, threadpool);
+            fail("matrix is not positive definite");
+        }
+        catch(ArithmeticException ex)
+        {
+            //expected
+        }
+    }
+
+    @Test
+    public void testLU()
+    {
+        System.out.println("lu");
+        Random rand = RandomUtil.getRandom();
+        for(int[] shape : new int[][]{{1, 1}, {30, 30}, {47, 20}, {20, 47}})
+            for(int nb : panels)
+                for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+                {
+                    Matrix A = DenseMatrix.random(shape[0], shape[1], rand);
+                    Matrix LU = new FlatDenseMatrix(A);
+                    int[] piv = BlockedDecompositions.lu(LU, nb, ex);
+                    int m = shape[0], n = shape[1], mn = Math.min(m, n);
+
+                    Matrix L = new DenseMatrix(m, mn), U = new DenseMatrix(mn, n);
+                    for(int i = 0; i < m; i++)
+                        for(int j = 0; j < n; j++)
+                            if(i > j && j < mn)
+                                L.set(i, j, LU.get(i, j));
+                            else if(i < mn)
+                            {
+                                U.set(i, j, LU.get(i, j));
+                                if(i == j)
+                                    L.set(i, i, 1.0);
+                            }
+                    Matrix PA = A.clone();
+                    for(int k = 0; k < piv.length; k++)
+                        PA.swapRows(k, piv[k]);
+                    assertTrue(PA.equals(L.multiply(U), 1e-10));
+                    //partial pivoting keeps every multiplier in [-1, 1]
+                    for(int i = 0; i < m; i++)
+                        for(int j = 0; j < Math.min(i, mn); j++)
+                            assertTrue(Math.abs(L.get(i, j)) <= 1.0);
+                }
+    }
+
+    @Test
+    public void testQR()
+    {
+        System.out.println("qr");
+        Random rand = RandomUtil.getRandom();
+        for(int[] shape : new int[][]{{1, 1}, {30, 30}, {47, 20}, {20, 47}})
+            for(int nb : panels)
+                for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+                {
+                    Matrix A = DenseMatrix.random(shape[0], shape[1], rand);
+                    Matrix R = A.clone();
+                    Matrix Q = Matrix.eye(A.rows());
+                    BlockedDecompositions.qr(R, Q, nb, ex);
+
+                    assertTrue(A.equals(Q.multiply(R), 1e-10));
+                    assertTrue(Matrix.eye(A.rows()).equals(Q.multiplyTranspose(Q), 1e-10));
+                    for(int i = 0; i < R.rows(); i++)
+                        for(int j = 0; j < Math.min(i, R.cols()); j++)
+                            assertEquals(0.0, R.get(i, j), 0.0);
+                }
+    }
+
+    @Test
+    public void testTrsm()
+    {
+        System.out.println("trsm");
+        Random rand = RandomUtil.getRandom();
+        int n = 45;
+        Matrix T = DenseMatrix.random(n, n, rand);
+        for(int i = 0; i < n; i++)
+            T.increment(i, i, n);//well conditioned
+        Matrix lower = T.clone(), upper = T.clone();
+        for(int i = 0; i < n; i++)
+            for(int j = 0; j < n; j++)
+                if(j > i)
+                    lower.set(i, j, 0);
+                else if(j < i)
+                    upper.set(i, j, 0);
+
+        for(int nrhs : new int[]{1, 5, 40})
+            for(int nb : panels)
+                for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+                {
+                    Matrix B = DenseMatrix.random(n, nrhs, rand);
+                    Matrix X = B.clone();
+                    //the other triangle of T must not be used
+                    BlockedDecompositions.trsm(T, true, X, n, nb, ex);
+                    assertTrue(B.equals(lower.multiply(X), 1e-10));
+                    X = new FlatDenseMatrix(B);
+                    BlockedDecompositions.trsm(T, false, X, n, nb, ex);
+                    assertTrue(B.equals(upper.multiply(X), 1e-10));
+                }
+
+        //many right hand sides through the public solvers
+        Matrix B = DenseMatrix.random(n, 30, rand);
+        Matrix A = spd(n, rand);
+        CholeskyDecomposition cd = new CholeskyDecomposition(A.clone(), threadpool);
+        assertTrue(B.equals(A.multiply(cd.solve(B, threadpool)), 1e-8));
+        assertTrue(B.equals(A.multiply(cd.solve(B)), 1e-8));
+        LUPDecomposition lup = new LUPDecomposition(A, threadpool);
+        assertTrue(B.equals(A.multiply(lup.solve(B, threadpool)), 1e-8));
+    }
+
+    private static Matrix spd(int n, Random rand)
+    {
+        Matrix X = DenseMatrix.random(n+5, n, rand);
+        Matrix A = X.transposeMultiply(X);
+        for(int i = 0; i < n; i++)
+            A.increment(i, i, 1.0);
+        return A;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class CompressedSparseMatrixTest
+{
+    static ExecutorService threadpool;
+
+    public CompressedSparseMatrixTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+        @Test
+    public void testConversion()
+    {
+        System.out.println("conversion");
+        Random rand = RandomUtil.getRandom();
+        Matrix dense = randomSparse(40, 25, 0.1, rand);
+        CompressedSparseMatrix csr = new CompressedSparseMatrix(new SparseMatrix(dense.rows(), dense.cols()));
+        assertEquals(0, csr.nnz());
+        csr = new CompressedSparseMatrix(dense);
+        assertTrue(csr.isRowMajor());
+        assertTrue(dense.equals(csr, 0.0));
+        assertEquals(dense.nnz() - zeros(dense), csr.nnz());
+
+        CompressedSparseMatrix csc = csr.toColumnMajor();
+        assertFalse(csc.isRowMajor());
+        assertSame(csc, csc.toColumnMajor());
+        assertTrue(dense.equals(csc, 0.0));
+        assertTrue(dense.equals(csc.toRowMajor(), 0.0));
+        assertTrue(dense.equals(csc.toSparseMatrix(), 0.0));
+
+        //transposing just switches the format
+        CompressedSparseMatrix t = csr.clone();
+        t.mutableTranspose();
+        assertFalse(t.isRowMajor());
+        assertTrue(dense.transpose().equals(t, 0.0));
+        assertTrue(dense.transpose().equals(csc.transpose(), 0.0));
+    }
+
+    @Test
+    public void testSetGet()
+    {
+        System.out.println("setGet");
+        Random rand = RandomUtil.getRandom();
+        for(boolean rowMajor : new boolean[]{true, false})
+        {
+            Matrix dense = new DenseMatrix(20, 15);
+            CompressedSparseMatrix A = new CompressedSparseMatrix(20, 15);
+            if(!rowMajor)
+                A = A.toColumnMajor();
+            for(int t = 0; t < 300; t++)
+            {
+                int i = rand.nextInt(20), j = rand.nextInt(15);
+                double v = rand.nextInt(3) == 0 ? 0 : rand.nextGaussian();
+                if(rand.nextBoolean())
+                {
+                    dense.set(i, j, v);
+                    A.set(i, j, v);
+                }
+                else
+                {
+                    dense.increment(i, j, v);
+                    A.increment(i, j, v);
+                }
+            }
+            assertTrue(dense.equals(A, 0.0));
+
+            dense.swapRows(3, 11);
+            A.swapRows(11, 3);
+            dense.swapRows(0, 19);
+            A.swapRows(0, 19);
+            assertTrue(dense.equals(A, 0.0));
+
+            Matrix B = randomSparse(20, 15, 0.2, rand);
+            dense.mutableAdd(-2.0, B);
+            A.mutableAdd(-2.0, B);
+            assertTrue(dense.equals(A, 1e-15));
+            A.mutableAdd(-2.0, new CompressedSparseMatrix(B).toColumnMajor());
+            dense.mutableAdd(-2.0, B);
+            assertTrue(dense.equals(A, 1e-15));
+
+            dense.mutableMultiply(3.0);
+            A.mutableMultiply(3.0);
+            assertTrue(dense.equals(A, 1e-14));
+
+            dense.changeSize(25, 10);
+            A.changeSize(25, 10);
+            assertTrue(dense.equals(A, 0.0));
+
+            dense.mutableAdd(1.5);
+            A.mutableAdd(1.5);
+            assertTrue(dense.equals(A, 1e-14));
+            assertEquals(250, A.nnz());
+
+            A.zeroOut();
+            assertEquals(0, A.nnz());
+            assertEquals(0.0, A.get(3, 3), 0.0);
+        }
+    }
+
+    @Test
+    public void testMultiply()
+    {
+        System.out.println("multiply");
+        Random rand = RandomUtil.getRandom();
+        //wide enough for more than one panel
+        for(int p : new int[]{1, 7, 300})
+        {
+            Matrix dense = randomSparse(60, 45, 0.1, rand);
+            CompressedSparseMatrix csr = new CompressedSparseMatrix(dense);
+            CompressedSparseMatrix csc = csr.toColumnMajor();
+            Matrix B = DenseMatrix.random(45, p, rand);
+            Matrix Bt = DenseMatrix.random(60, p, rand);
+            Matrix expected = dense.multiply(B);
+            Matrix expectedT = dense.transposeMultiply(Bt);
+            for(CompressedSparseMatrix A : new CompressedSparseMatrix[]{csr, csc})
+            {
+                assertTrue(expected.equals(A.multiply(B), 1e-12));
+                assertTrue(expected.equals(A.multiply(B, threadpool), 1e-12));
+                assertTrue(expectedT.equals(A.transposeMultiply(Bt), 1e-12));
+                assertTrue(expectedT.equals(A.transposeMultiply(Bt, threadpool), 1e-12));
+                assertTrue(expected.equals(A.multiplyTranspose(B.transpose()), 1e-12));
+                assertTrue(expected.equals(A.multiplyTranspose(B.transpose(), threadpool), 1e-12));
+
+                //operands that are not dense
+                Matrix C = new SparseMatrix(60, p);
+                A.multiply(new SparseMatrix(B.rows(), B.cols()), C);
+                assertEquals(0, C.nnz());
+                C = new FlatDenseMatrix(60, p);
+                A.multiply(new FlatDenseMatrix(B), C, threadpool);
+                assertTrue(expected.equals(C, 1e-12));
+                C = new FlatDenseMatrix(45, p);
+                A.transposeMultiply(new FlatDenseMatrix(Bt), C, threadpool);
+                assertTrue(expectedT.equals(C, 1e-12));
+            }
+        }
+    }
+
+    @Test
+    public void testMultiplyVec()
+    {
+        System.out.println("multiplyVec");
+        Random rand = RandomUtil.getRandom();
+        Matrix dense = randomSparse(80, 50, 0.1, rand);
+        CompressedSparseMatrix csr = new CompressedSparseMatrix(dense);
+        Vec b = DenseVector.random(50, rand);
+        Vec bt = DenseVector.random(80, rand);
+        Vec expected = dense.multiply(b).multiply(2.0);
+        Vec expectedT = dense.transposeMultiply(-1.0, bt);
+        for(CompressedSparseMatrix A : new CompressedSparseMatrix[]{csr, csr.toColumnMajor()})
+            for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+            {
+                Vec c = new DenseVector(80);
+                Vec x = new DenseVector(50);
+                Vec cs = new SparseVector(80);
+                if(ex == null)
+                {
+                    A.multiply(b, 2.0, c);
+                    A.multiply(b, 2.0, cs);
+                    A.transposeMultiply(-1.0, bt, x);
+                }
+                else
+                {
+                    A.multiply(b, 2.0, c, ex);
+                    A.multiply(b, 2.0, cs, ex);
+                    A.transposeMultiply(-1.0, bt, x, ex);
+                }
+                assertEquals(0.0, expected.subtract(c).pNorm(1), 1e-12);
+                assertEquals(0.0, expected.subtract(cs).pNorm(1), 1e-12);
+                assertEquals(0.0, expectedT.subtract(x).pNorm(1), 1e-12);
+            }
+    }
+
+    private static Matrix randomSparse(int rows, int cols, double density, Random rand)
+    {
+        Matrix A = new DenseMatrix(rows, cols);
+        for(int i = 0; i < rows; i++)
+            for(int j = 0; j < cols; j++)
+                if(rand.nextDouble() < density)
+                    A.set(i, j, rand.nextGaussian());
+        return A;
+    }
+
+    private static long zeros(Matrix A)
+    {
+        long zeros = 0;
+        for(int i = 0; i < A.rows(); i++)
+            for(int j = 0; j < A.cols(); j++)
+                if(A.get(i, j) == 0)
+                    zeros++;
+        return zeros;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class FlatDenseMatrixTest
+{
+    static ExecutorService threadpool;
+
+    public FlatDenseMatrixTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testViews()
+    {
+        System.out.println("views");
+        for(boolean rowMajor : new boolean[]{true, false})
+        {
+            double[] data = new double[6*5];
+            for(int i = 0; i < data.length; i++)
+                data[i] = i;
+            FlatDenseMatrix A = FlatDenseMatrix.wrap(data, 6, 5, rowMajor);
+            for(int i = 0; i < 6; i++)
+                for(int j = 0; j < 5; j++)
+                    assertEquals(rowMajor ? i*5+j : j*6+i, A.get(i, j), 0.0);
+
+            FlatDenseMatrix sub = A.subMatrix(1, 2, 4, 5);
+            assertEquals(3, sub.rows());
+            assertEquals(3, sub.cols());
+            for(int i = 0; i < 3; i++)
+                for(int j = 0; j < 3; j++)
+                    assertEquals(A.get(i+1, j+2), sub.get(i, j), 0.0);
+            //changes are shared with the original and its array
+            sub.set(0, 0, -1);
+            assertEquals(-1, A.get(1, 2), 0.0);
+            assertEquals(-1, data[rowMajor ? 1*5+2 : 2*6+1], 0.0);
+            sub.mutableMultiply(2.0);
+            assertEquals(-2, A.get(1, 2), 0.0);
+            assertEquals(0.0, A.get(0, 0), 0.0);
+
+            FlatDenseMatrix T = A.transposeView();
+            assertEquals(5, T.rows());
+            assertEquals(6, T.cols());
+            for(int i = 0; i < 6; i++)
+                for(int j = 0; j < 5; j++)
+                    assertEquals(A.get(i, j), T.get(j, i), 0.0);
+
+            for(int i = 0; i < 6; i++)
+                assertEquals(0.0, A.getRowView(i).subtract(new DenseMatrix(A).getRowView(i)).pNorm(1), 0.0);
+            for(int j = 0; j < 5; j++)
+                assertEquals(0.0, A.getColumnView(j).subtract(new DenseMatrix(A).getColumnView(j)).pNorm(1), 0.0);
+
+            FlatDenseMatrix copy = A.clone();
+            copy.mutableTranspose();
+            assertTrue(copy.equals(A.transpose(), 0.0));
+            assertTrue(copy.equals(T, 0.0));
+        }
+
+        try
+        {
+            FlatDenseMatrix.wrap(new double[10], 3, 3, true);
+            fail("array has the wrong size");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            //expected
+        }
+    }
+
+    @Test
+    public void testMultiply()
+    {
+        System.out.println("multiply");
+        Random rand = RandomUtil.getRandom();
+        //sizes on both sides of the direct and packed paths, and not multiples of the kernel
+        int[][] shapes = new int[][]{{3, 4, 5}, {37, 53, 29}, {130, 7, 65}, {9, 260, 70}};
+        for(int[] shape : shapes)
+        {
+            int M = shape[0], K = shape[1], N = shape[2];
+            for(boolean aRow : new boolean[]{true, false})
+                for(boolean bRow : new boolean[]{true, false})
+                {
+                    FlatDenseMatrix A = random(M, K, aRow, rand);
+                    FlatDenseMatrix B = random(K, N, bRow, rand);
+                    DenseMatrix dA = new DenseMatrix(A), dB = new DenseMatrix(B);
+                    Matrix expected = naive(dA, dB);
+
+                    for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+                    {
+                        FlatDenseMatrix C = new FlatDenseMatrix(M, N, !aRow);
+                        if(ex == null)
+                            A.multiply(B, C);
+                        else
+                            A.multiply(B, C, ex);
+                        assertTrue(expected.equals(C, 1e-10));
+
+                        //mixed with the other dense type
+                        DenseMatrix dC = new DenseMatrix(M, N);
+                        A.multiply(dB, dC);
+                        assertTrue(expected.equals(dC, 1e-10));
+                        dC.zeroOut();
+                        dA.multiply(B, dC);
+                        assertTrue(expected.equals(dC, 1e-10));
+
+                        C.zeroOut();
+                        FlatDenseMatrix At = new FlatDenseMatrix(A.transpose());
+                        if(ex == null)
+                            At.transposeMultiply(B, C);
+                        else
+                            At.transposeMultiply(B, C, ex);
+                        assertTrue(expected.equals(C, 1e-10));
+
+                        C.zeroOut();
+                        if(ex == null)
+                            A.multiplyTranspose(B.transposeView(), C);
+                        else
+                            A.multiplyTranspose(B.transposeView(), C, ex);
+                        assertTrue(expected.equals(C, 1e-10));
+                    }
+
+                    //a view into the middle of a larger matrix
+                    FlatDenseMatrix big = new FlatDenseMatrix(M+3, N+2, aRow);
+                    big.mutableAdd(1.0);
+                    FlatDenseMatrix view = big.subMatrix(1, 1, M+1, N+1);
+                    view.mutableAdd(-1.0);
+                    A.multiply(B, view);
+                    assertTrue(expected.equals(view, 1e-10));
+                    assertEquals(1.0, big.get(0, 0), 0.0);
+                    assertEquals(1.0, big.get(M+2, N+1), 0.0);
+
+                    Vec x = DenseVector.random(K, rand);
+                    Vec y = A.multiply(x);
+                    assertEquals(0.0, y.subtract(dA.multiply(x)).pNorm(1), 1e-10);
+                    Vec z = DenseVector.random(M, rand);
+                    assertEquals(0.0, A.transposeMultiply(1.0, z).subtract(dA.transposeMultiply(1.0, z)).pNorm(1), 1e-10);
+                }
+        }
+    }
+
+    @Test
+    public void testLup()
+    {
+        System.out.println("lup");
+        Random rand = RandomUtil.getRandom();
+        for(int[] shape : new int[][]{{20, 20}, {30, 12}, {12, 30}})
+            for(boolean rowMajor : new boolean[]{true, false})
+            {
+                FlatDenseMatrix A = random(shape[0], shape[1], rowMajor, rand);
+                Matrix[] lup = A.clone().lup();
+                Matrix PA = lup[2].multiply(A);
+                Matrix LU = lup[0].multiply(lup[1]);
+                assertTrue(PA.equals(LU, 1e-10));
+
+                LUPDecomposition decomp = new LUPDecomposition(A);
+                if(A.isSquare())
+                {
+                    Vec b = DenseVector.random(A.rows(), rand);
+                    Vec x = decomp.solve(b);
+                    assertEquals(0.0, A.multiply(x).subtract(b).pNorm(2), 1e-8);
+                }
+            }
+    }
+
+    @Test
+    public void testQr()
+    {
+        System.out.println("qr");
+        Random rand = RandomUtil.getRandom();
+        for(int[] shape : new int[][]{{20, 20}, {30, 12}, {12, 30}})
+            for(boolean rowMajor : new boolean[]{true, false})
+            {
+                FlatDenseMatrix A = random(shape[0], shape[1], rowMajor, rand);
+                Matrix[] qr = A.clone().qr();
+                assertTrue(A.equals(qr[0].multiply(qr[1]), 1e-10));
+                //Q is orthogonal and R upper triangular
+                assertTrue(Matrix.eye(A.rows()).equals(qr[0].transposeMultiply(qr[0]), 1e-10));
+                for(int i = 0; i < qr[1].rows(); i++)
+                    for(int j = 0; j < Math.min(i, qr[1].cols()); j++)
+                        assertEquals(0.0, qr[1].get(i, j), 1e-10);
+            }
+    }
+
+    @Test
+    public void testCholesky()
+    {
+        System.out.println("cholesky");
+        Random rand = RandomUtil.getRandom();
+        for(boolean rowMajor : new boolean[]{true, false})
+        {
+            FlatDenseMatrix X = random(40, 25, rowMajor, rand);
+            FlatDenseMatrix A = new FlatDenseMatrix(25, 25, rowMajor);
+            X.transposeMultiply(X, A);
+            for(int i = 0; i < 25; i++)
+                A.increment(i, i, 1.0);
+
+            CholeskyDecomposition expected = new CholeskyDecomposition(new DenseMatrix(A));
+            CholeskyDecomposition cd = new CholeskyDecomposition(A.clone());
+            assertEquals(expected.getLogDet(), cd.getLogDet(), 1e-10);
+            assertTrue(expected.getLT().equals(cd.getLT(), 1e-10));
+            Matrix LT = cd.getLT();
+            assertTrue(A.equals(LT.transposeMultiply(LT), 1e-10));
+        }
+    }
+
+    private static FlatDenseMatrix random(int rows, int cols, boolean rowMajor, Random rand)
+    {
+        FlatDenseMatrix A = new FlatDenseMatrix(rows, cols, rowMajor);
+        for(int i = 0; i < rows; i++)
+            for(int j = 0; j < cols; j++)
+                A.set(i, j, rand.nextDouble()*2-1);
+        return A;
+    }
+
+    private static Matrix naive(Matrix A, Matrix B)
+    {
+        DenseMatrix C = new DenseMatrix(A.rows(), B.cols());
+        for(int i = 0; i < A.rows(); i++)
+            for(int j = 0; j < B.cols(); j++)
+            {
+                double sum = 0;
+                for(int k = 0; k < A.cols(); k++)
+                    sum += A.get(i, k)*B.get(k, j);
+                C.set(i, j, sum);
+            }
+        return C;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import static java.lang.Math.pow;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class RandomizedSVDTest
+{
+    static ExecutorService threadpool;
+
+    public RandomizedSVDTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+        @Test
+    public void testLowRank()
+    {
+        System.out.println("lowRank");
+        Random rand = RandomUtil.getRandom();
+        for(int[] shape : new int[][]{{200, 80}, {80, 200}})
+            for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+            {
+                Matrix X = DenseMatrix.random(shape[0], 10, rand).multiply(DenseMatrix.random(10, shape[1], rand));
+                double[] expected = new SingularValueDecomposition(X.clone()).getSingularValues();
+                //a rank 10 matrix is found exactly, even without power iterations
+                RandomizedSVD svd = new RandomizedSVD(X, 10, 5, 0, rand, ex);
+                checkOrthonormal(svd, 10);
+                for(int i = 0; i < 10; i++)
+                    assertEquals(expected[i], svd.getSingularValues()[i], 1e-8*expected[0]);
+                assertTrue(X.equals(reconstruct(svd), 1e-8));
+
+                //asking for more than the rank needs the Householder fallback
+                svd = new RandomizedSVD(X, 15, 10, 1, rand, ex);
+                checkOrthonormal(svd, 15);
+                assertTrue(X.equals(reconstruct(svd), 1e-8));
+                for(int i = 10; i < 15; i++)
+                    assertEquals(0.0, svd.getSingularValues()[i], 1e-8*expected[0]);
+            }
+    }
+
+    @Test
+    public void testSparse()
+    {
+        System.out.println("sparse");
+        Random rand = RandomUtil.getRandom();
+        int m = 300, n = 150;
+        SparseMatrix A = new SparseMatrix(m, n);
+        //a quickly decaying spectrum, hidden by sparse noise
+        for(int i = 0; i < n; i++)
+            A.set(i*2, i, pow(0.7, i));
+        for(int t = 0; t < 400; t++)
+            A.increment(rand.nextInt(m), rand.nextInt(n), 1e-3*rand.nextGaussian());
+        double[] expected = new SingularValueDecomposition(new DenseMatrix(A)).getSingularValues();
+
+        for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+        {
+            int k = 8;
+            RandomizedSVD svd = new RandomizedSVD(A, k, 10, 3, rand, ex);
+            checkOrthonormal(svd, k);
+            for(int i = 0; i < k; i++)
+                assertEquals(expected[i], svd.getSingularValues()[i], 1e-8);
+            //the top singular vectors agree, up to sign
+            Matrix AV = A.multiply(svd.getV());
+            for(int i = 0; i < m; i++)
+                for(int j = 0; j < k; j++)
+                    assertEquals(svd.getU().get(i, j)*svd.getSingularValues()[j], AV.get(i, j), 1e-6);
+
+            //more power iterations can only help
+            double[] rough = new RandomizedSVD(A, k, 0, 0, rand, ex).getSingularValues();
+            for(int i = 0; i < k; i++)
+                assertTrue(rough[i] <= expected[i]+1e-10);
+        }
+    }
+
+    @Test
+    public void testSparseTransposeMultiply()
+    {
+        System.out.println("sparseTransposeMultiply");
+        Random rand = RandomUtil.getRandom();
+        SparseMatrix A = new SparseMatrix(50, 30);
+        for(int t = 0; t < 200; t++)
+            A.set(rand.nextInt(50), rand.nextInt(30), rand.nextGaussian());
+        Matrix B = DenseMatrix.random(50, 7, rand);
+        Matrix expected = new DenseMatrix(A).transposeMultiply(B);
+        Matrix C = new DenseMatrix(30, 7);
+        A.transposeMultiply(B, C, threadpool);
+        assertTrue(expected.equals(C, 1e-12));
+    }
+
+    private static void checkOrthonormal(RandomizedSVD svd, int k)
+    {
+        assertEquals(k, svd.getU().cols());
+        assertEquals(k, svd.getV().cols());
+        assertTrue(Matrix.eye(k).equals(svd.getU().transposeMultiply(svd.getU()), 1e-10));
+        assertTrue(Matrix.eye(k).equals(svd.getV().transposeMultiply(svd.getV()), 1e-10));
+        double[] s = svd.getSingularValues();
+        for(int i = 1; i < k; i++)
+            assertTrue(s[i-1] >= s[i]);
+    }
+
+    private static Matrix reconstruct(RandomizedSVD svd)
+    {
+        return svd.getU().multiply(svd.getS()).multiplyTranspose(svd.getV());
+    }
+}
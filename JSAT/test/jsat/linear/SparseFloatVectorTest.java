@@ -0,0 +1,128 @@
+package jsat.linear;
+
+import java.util.Random;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class SparseFloatVectorTest
+{
+    private SparseVector a;
+    private SparseVector b;
+
+    public SparseFloatVectorTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+        //all values are exact as floats
+        a = new SparseVector(12);
+        a.set(0, 1.0);
+        a.set(1, 2.0);
+        a.set(3, -2.0);
+        a.set(4, 5.0);
+        a.set(8, -3.0);
+        a.set(11, 1.0);
+
+        b = new SparseVector(12);
+        b.set(0, 1.0);
+        b.set(1, -2.0);
+        b.set(3, -3.0);
+        b.set(4, 4.0);
+        b.set(7, -2.0);
+        b.set(10, 0.5);
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testSetGet()
+    {
+        System.out.println("set/get");
+        SparseFloatVector x = new SparseFloatVector(a);
+        assertTrue(a.equals(x));
+        assertEquals(a.nnz(), x.nnz());
+
+        x.set(3, 0.0);
+        a.set(3, 0.0);
+        x.set(5, 7.0);
+        a.set(5, 7.0);
+        x.increment(0, -1.0);
+        a.increment(0, -1.0);
+        assertTrue(a.equals(x));
+        assertEquals(a.nnz(), x.nnz());
+
+        //values are rounded to floats
+        x.set(2, 0.1);
+        assertEquals((float) 0.1, x.get(2), 0.0);
+
+        Random rand = RandomUtil.getRandom();
+        SparseFloatVector y = new SparseFloatVector(100, 2);
+        SparseVector z = new SparseVector(100);
+        for(int i = 0; i < 500; i++)
+        {
+            int idx = rand.nextInt(100);
+            double val = rand.nextInt(3);
+            y.set(idx, val);
+            z.set(idx, val);
+        }
+        assertTrue(z.equals(y));
+        assertTrue(z.equals(y.clone()));
+    }
+
+    @Test
+    public void testMath()
+    {
+        System.out.println("dot/norm");
+        SparseFloatVector x = new SparseFloatVector(a);
+        SparseFloatVector y = new SparseFloatVector(b);
+        DenseFloatVector x_d = new DenseFloatVector(a);
+        DenseFloatVector y_d = new DenseFloatVector(b);
+
+        double expected = a.dot(b);
+        assertEquals(expected, x.dot(y), 0.0);
+        assertEquals(expected, x.dot(b), 0.0);
+        assertEquals(expected, x.dot(y_d), 0.0);
+        assertEquals(expected, x_d.dot(y_d), 0.0);
+        assertEquals(expected, x_d.dot(y), 0.0);
+        assertEquals(expected, x_d.dot(new DenseVector(b)), 0.0);
+
+        assertEquals(a.pNorm(2), x.pNorm(2), 1e-12);
+        assertEquals(a.pNorm(2), x_d.pNorm(2), 1e-12);
+        assertEquals(a.pNorm(1), x_d.pNorm(1), 1e-12);
+        assertEquals(a.pNormDist(2, b), x_d.pNormDist(2, y_d), 1e-12);
+        assertEquals(a.pNormDist(2, b), x.pNormDist(2, y), 1e-12);
+        assertEquals(a.sum(), x.sum(), 0.0);
+        assertEquals(a.sum(), x_d.sum(), 0.0);
+
+        x_d.mutableAdd(2.0, b);
+        Vec expectedAdd = a.add(b.multiply(2.0));
+        assertTrue(expectedAdd.equals(x_d));
+
+        x.mutableMultiply(0.5);
+        assertTrue(a.multiply(0.5).equals(x));
+    }
+}
@@ -0,0 +1,108 @@
+package jsat.linear;
+
+import java.util.Iterator;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class SparseVectorViewTest
+{
+    private int[] indexes;
+    private double[] values;
+    private SparseVector expected;
+
+    public SparseVectorViewTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+        //two rows packed together, we will view the second one
+        indexes = new int[]{0, 5, 1, 3, 8, 11};
+        values = new double[]{9.0, 9.0, 2.0, -2.0, -3.0, 1.0};
+
+        expected = new SparseVector(12);
+        expected.set(1, 2.0);
+        expected.set(3, -2.0);
+        expected.set(8, -3.0);
+        expected.set(11, 1.0);
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testGetAndIter()
+    {
+        System.out.println("get");
+        SparseVectorView view = new SparseVectorView(indexes, values, 2, 6, 12);
+
+        assertEquals(4, view.nnz());
+        assertTrue(expected.equals(view));
+        assertTrue(view.equals(expected));
+        for(int i = 0; i < 12; i++)
+            assertEquals(expected.get(i), view.get(i), 0.0);
+
+        Iterator<IndexValue> iter = view.getNonZeroIterator(4);
+        assertEquals(8, iter.next().getIndex());
+        assertEquals(11, iter.next().getIndex());
+        assertFalse(iter.hasNext());
+
+        assertEquals(expected.dot(expected), view.dot(expected), 0.0);
+        assertEquals(expected.dot(new DenseVector(expected)), view.dot(new DenseVector(expected)), 0.0);
+        assertEquals(expected.pNorm(2), view.pNorm(2), 1e-15);
+        assertEquals(expected.sum(), view.sum(), 0.0);
+
+        view.setView(indexes, values, 0, 2, 12);
+        assertEquals(2, view.nnz());
+        assertEquals(9.0, view.get(5), 0.0);
+        assertEquals(0.0, view.get(1), 0.0);
+    }
+
+    @Test
+    public void testSet()
+    {
+        System.out.println("set");
+        SparseVectorView view = new SparseVectorView(indexes, values, 2, 6, 12);
+
+        //existing values write through
+        view.set(3, 4.0);
+        assertEquals(4.0, values[3], 0.0);
+        view.mutableMultiply(2.0);
+        assertEquals(8.0, values[3], 0.0);
+        assertEquals(9.0, values[0], 0.0);//other row untouched
+
+        //new values do not
+        view.set(2, 7.0);
+        assertEquals(7.0, view.get(2), 0.0);
+        assertEquals(5, view.nnz());
+        view.set(3, 1.0);
+        assertEquals(8.0, values[3], 0.0);
+
+        expected.mutableMultiply(2.0);
+        expected.set(2, 7.0);
+        expected.set(3, 1.0);
+        assertTrue(expected.equals(view));
+        assertTrue(expected.equals(view.clone()));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class SymmetricEigenDecompositionTest
+{
+    static ExecutorService threadpool;
+
+    public SymmetricEigenDecompositionTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+        @Test
+    public void testFull()
+    {
+        System.out.println("full");
+        Random rand = RandomUtil.getRandom();
+        //sizes below and above the point where divide and conquer splits
+        for(int n : new int[]{1, 2, 5, 33, 70, 150})
+            for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+            {
+                Matrix A = symmetric(n, rand);
+                SymmetricEigenDecomposition evd = new SymmetricEigenDecomposition(A.clone(), ex);
+                checkDecomposition(A, evd, n);
+            }
+    }
+
+    @Test
+    public void testDeflation()
+    {
+        System.out.println("deflation");
+        Random rand = RandomUtil.getRandom();
+        int n = 100;
+        //repeated eigenvalues, hidden behind a random rotation
+        Matrix D = new DenseMatrix(n, n);
+        for(int i = 0; i < n; i++)
+            D.set(i, i, i % 4);
+        Matrix Q = DenseMatrix.random(n, n, rand).qr()[0];
+        Matrix A = Q.multiply(D).multiplyTranspose(Q);
+        SymmetricEigenDecomposition evd = new SymmetricEigenDecomposition(A);
+        checkDecomposition(A, evd, n);
+        double[] d = evd.getEigenvalues();
+        for(int i = 0; i < n; i++)
+            assertEquals(i/(n/4), d[i], 1e-10);
+
+        //already diagonal, and a matrix of all ones
+        for(int i = 0; i < n; i++)
+            D.set(i, i, rand.nextInt(5));
+        checkDecomposition(D, new SymmetricEigenDecomposition(D), n);
+        Matrix ones = new DenseMatrix(n, n);
+        ones.mutableAdd(1.0);
+        evd = new SymmetricEigenDecomposition(ones, threadpool);
+        checkDecomposition(ones, evd, n);
+        assertEquals(n, evd.getEigenvalues()[n-1], 1e-10);
+        assertEquals(0, evd.getEigenvalues()[0], 1e-10);
+    }
+
+    @Test
+    public void testTopK()
+    {
+        System.out.println("topK");
+        Random rand = RandomUtil.getRandom();
+        for(int n : new int[]{10, 60, 150})
+        {
+            Matrix A = symmetric(n, rand);
+            double[] all = new SymmetricEigenDecomposition(A).getEigenvalues();
+            for(int k : new int[]{1, 3, n/2})
+            {
+                SymmetricEigenDecomposition evd = new SymmetricEigenDecomposition(A, k, threadpool);
+                checkDecomposition(A, evd, k);
+                for(int j = 0; j < k; j++)
+                    assertEquals(all[n-k+j], evd.getEigenvalues()[j], 1e-10);
+            }
+        }
+
+        //a cluster among the largest eigenvalues
+        int n = 80;
+        Matrix D = new DenseMatrix(n, n);
+        for(int i = 0; i < n; i++)
+            D.set(i, i, i < n-5 ? i/(double)n : 2.0);
+        Matrix Q = DenseMatrix.random(n, n, rand).qr()[0];
+        Matrix A = Q.multiply(D).multiplyTranspose(Q);
+        SymmetricEigenDecomposition evd = new SymmetricEigenDecomposition(A, 7);
+        checkDecomposition(A, evd, 7);
+        for(int j = 2; j < 7; j++)
+            assertEquals(2.0, evd.getEigenvalues()[j], 1e-10);
+    }
+
+    @Test
+    public void testEigenValueDecomposition()
+    {
+        System.out.println("EigenValueDecomposition");
+        Random rand = RandomUtil.getRandom();
+        Matrix A = symmetric(50, rand);
+        EigenValueDecomposition evd = new EigenValueDecomposition(A);
+        assertFalse(evd.isComplex());
+        assertTrue(A.multiply(evd.getV()).equals(evd.getV().multiply(evd.getD()), 1e-10));
+        assertTrue(A.equals(evd.getV().multiply(evd.getD()).multiply(evd.getVT()), 1e-10));
+    }
+
+    /**
+     * Checks that A V = V D, and that V has orthonormal columns
+     */
+    private static void checkDecomposition(Matrix A, SymmetricEigenDecomposition evd, int k)
+    {
+        Matrix V = evd.getV();
+        double[] d = evd.getEigenvalues();
+        assertEquals(A.rows(), V.rows());
+        assertEquals(k, V.cols());
+        assertEquals(k, d.length);
+        for(int j = 1; j < k; j++)
+            assertTrue(d[j-1] <= d[j]);
+        Matrix AV = A.multiply(V);
+        for(int i = 0; i < A.rows(); i++)
+            for(int j = 0; j < k; j++)
+                assertEquals(AV.get(i, j), V.get(i, j)*d[j], 1e-10);
+        assertTrue(Matrix.eye(k).equals(V.transposeMultiply(V), 1e-10));
+    }
+
+    private static Matrix symmetric(int n, Random rand)
+    {
+        Matrix X = DenseMatrix.random(n, n, rand);
+        Matrix A = X.add(X.transpose());
+        return A;
+    }
+}
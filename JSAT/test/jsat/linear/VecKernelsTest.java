@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear;
+
+import java.util.Random;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class VecKernelsTest
+{
+    public VecKernelsTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    /**
+     * Number of non zeros for the sparse vectors, covering the merge and
+     * galloping paths and both orders of the arguments
+     */
+    private static final int[] nnzs = new int[]{0, 1, 3, 10, 250, 1000};
+
+    @Test
+    public void testDot()
+    {
+        System.out.println("dot");
+        Random rand = RandomUtil.getRandom();
+        int n = 1003;
+        for(int nnz1 : nnzs)
+            for(int nnz2 : nnzs)
+            {
+                SparseVector a = sparse(n, nnz1, rand), b = sparse(n, nnz2, rand);
+                DenseVector a_d = new DenseVector(a), b_d = new DenseVector(b);
+                double expected = 0;
+                for(int i = 0; i < n; i++)
+                    expected += a_d.get(i)*b_d.get(i);
+
+                assertEquals(expected, a.dot(b), 1e-10);
+                assertEquals(expected, a.dot(b_d), 1e-10);
+                assertEquals(expected, a_d.dot(b), 1e-10);
+                assertEquals(expected, a_d.dot(b_d), 1e-10);
+            }
+    }
+
+    @Test
+    public void testDist()
+    {
+        System.out.println("pNormDist");
+        Random rand = RandomUtil.getRandom();
+        int n = 1003;
+        for(int nnz1 : nnzs)
+            for(int nnz2 : nnzs)
+            {
+                SparseVector a = sparse(n, nnz1, rand), b = sparse(n, nnz2, rand);
+                //a view into a larger array, so offsets are exercised
+                double[] big = new double[n+7];
+                DenseVector a_d = new DenseVector(big, 5, 5+n);
+                a.copyTo(a_d);
+                DenseVector b_d = new DenseVector(b);
+                for(double p : new double[]{1, 2, 3})
+                {
+                    double expected = 0;
+                    for(int i = 0; i < n; i++)
+                        expected += Math.pow(Math.abs(a_d.get(i)-b_d.get(i)), p);
+                    expected = Math.pow(expected, 1/p);
+
+                    assertEquals(expected, a.pNormDist(p, b), 1e-10);
+                    assertEquals(expected, a.pNormDist(p, b_d), 1e-10);
+                    assertEquals(expected, a_d.pNormDist(p, b), 1e-10);
+                    assertEquals(expected, a_d.pNormDist(p, b_d), 1e-10);
+                    assertEquals(expected, b_d.pNormDist(p, a_d), 1e-10);
+                }
+            }
+    }
+
+    @Test
+    public void testDistCancellation()
+    {
+        System.out.println("distCancellation");
+        //large shared values with small differences, and enough extra entries in b to gallop
+        int nnz_a = 4;
+        SparseVector a = new SparseVector(1000);
+        SparseVector b = new SparseVector(1000);
+        for(int i = 0; i < nnz_a*VecKernels.GALLOP_RATIO; i++)
+            b.set(i*10+1, 1e-3);
+        double expectedSqrd = 0, expectedL1 = 0;
+        for(int i = 0; i < nnz_a; i++)
+        {
+            a.set(i*100, 1e8);
+            b.set(i*100, 1e8+0.5);
+            expectedSqrd += 0.25;
+            expectedL1 += 0.5;
+        }
+        expectedSqrd += nnz_a*VecKernels.GALLOP_RATIO*1e-6;
+        expectedL1 += nnz_a*VecKernels.GALLOP_RATIO*1e-3;
+        
+        DenseVector a_d = new DenseVector(a), b_d = new DenseVector(b);
+        for(Vec x : new Vec[]{a, a_d})
+            for(Vec y : new Vec[]{b, b_d})
+            {
+                assertEquals(Math.sqrt(expectedSqrd), x.pNormDist(2, y), 1e-12);
+                assertEquals(Math.sqrt(expectedSqrd), y.pNormDist(2, x), 1e-12);
+                assertEquals(expectedL1, x.pNormDist(1, y), 1e-12);
+                assertEquals(expectedL1, y.pNormDist(1, x), 1e-12);
+            }
+    }
+
+    @Test
+    public void testGallop()
+    {
+        System.out.println("gallop");
+        int[] idx = new int[]{1, 4, 5, 9, 20, 21, 22, 40};
+        for(int from = 0; from < idx.length; from++)
+            for(int key = 0; key < 45; key++)
+            {
+                int expected = from;
+                while(expected < idx.length && idx[expected] < key)
+                    expected++;
+                assertEquals(expected, VecKernels.gallop(idx, from, idx.length, key));
+            }
+    }
+
+    private static SparseVector sparse(int n, int nnz, Random rand)
+    {
+        SparseVector v = new SparseVector(n);
+        while(v.nnz() < nnz)
+            v.set(rand.nextInt(n), rand.nextGaussian());
+        return v;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.distancemetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import jsat.linear.DenseMatrix;
+import jsat.linear.DenseVector;
+import jsat.linear.Matrix;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class BatchDistanceTest
+{
+    public BatchDistanceTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testDist()
+    {
+        System.out.println("dist");
+        Random rand = RandomUtil.getRandom();
+        DistanceMetric[] metrics = new DistanceMetric[]
+        {
+            new EuclideanDistance(), new SquaredEuclideanDistance(), 
+            new CosineDistance(), new ManhattanDistance()
+        };
+        for(boolean sparse : new boolean[]{false, true})
+        {
+            List<Vec> A = vecs(37, 20, sparse, rand), B = vecs(53, 20, sparse, rand);
+            for(DistanceMetric dm : metrics)
+                for(boolean useCache : new boolean[]{false, true})
+                    for(boolean parallel : new boolean[]{false, true})
+                    {
+                        List<Double> cacheA = useCache ? dm.getAccelerationCache(A) : null;
+                        List<Double> cacheB = useCache ? dm.getAccelerationCache(B) : null;
+                        Matrix D = new DenseMatrix(A.size(), B.size());
+                        dm.dist(A, cacheA, B, cacheB, D, parallel);
+                        for(int i = 0; i < A.size(); i++)
+                            for(int j = 0; j < B.size(); j++)
+                                assertEquals(dm.dist(A.get(i), B.get(j)), D.get(i, j), 1e-8);
+                    }
+        }
+
+        //inputs that are already normalized
+        List<Vec> A = vecs(10, 5, false, rand), B = vecs(12, 5, false, rand);
+        for(Vec v : A)
+            v.mutableDivide(v.pNorm(2));
+        for(Vec v : B)
+            v.mutableDivide(v.pNorm(2));
+        CosineDistanceNormalized dm = new CosineDistanceNormalized();
+        Matrix D = new DenseMatrix(A.size(), B.size());
+        dm.dist(A, null, B, null, D, false);
+        for(int i = 0; i < A.size(); i++)
+            for(int j = 0; j < B.size(); j++)
+                assertEquals(dm.dist(A.get(i), B.get(j)), D.get(i, j), 1e-8);
+    }
+
+    private static List<Vec> vecs(int n, int d, boolean sparse, Random rand)
+    {
+        List<Vec> vecs = new ArrayList<>(n);
+        for(int i = 0; i < n; i++)
+        {
+            Vec v = sparse ? new SparseVector(d) : new DenseVector(d);
+            for(int j = 0; j < d; j++)
+                if(!sparse || rand.nextInt(4) == 0)
+                    v.set(j, rand.nextGaussian());
+            vecs.add(v);
+        }
+        return vecs;
+    }
+}
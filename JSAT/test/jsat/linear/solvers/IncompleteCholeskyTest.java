@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.linear.*;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import jsat.distributions.kernels.KernelOperator;
+import jsat.distributions.kernels.RBFKernel;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class IncompleteCholeskyTest
+{
+    static ExecutorService threadpool;
+
+    public IncompleteCholeskyTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testApply()
+    {
+        System.out.println("apply");
+        Random rand = RandomUtil.getRandom();
+        int n = 50;
+        //with no fill in, IC(0) of a dense matrix is the exact factorization
+        Matrix X = DenseMatrix.random(n+5, n, rand);
+        Matrix A = X.transposeMultiply(X);
+        IncompleteCholesky ic = new IncompleteCholesky(A);
+        assertEquals(0.0, ic.getShift(), 0.0);
+        Vec b = DenseVector.random(n, rand);
+        Vec z = new DenseVector(n);
+        ic.apply(b, z);
+        assertTrue(b.equals(A.multiply(z), 1e-8));
+    }
+
+    @Test
+    public void testSparse()
+    {
+        System.out.println("sparse");
+        //2D Laplacian on a grid, the classic case for IC(0)
+        int g = 30, n = g*g;
+        Matrix A = new SparseMatrix(n, n);
+        for(int i = 0; i < g; i++)
+            for(int j = 0; j < g; j++)
+            {
+                int p = i*g+j;
+                A.set(p, p, 4);
+                if(i > 0)
+                    A.set(p, p-g, -1);
+                if(i < g-1)
+                    A.set(p, p+g, -1);
+                if(j > 0)
+                    A.set(p, p-1, -1);
+                if(j < g-1)
+                    A.set(p, p+1, -1);
+            }
+        Vec b = DenseVector.random(n, RandomUtil.getRandom());
+
+        int[] iters = new int[3];
+        Preconditioner[] pcs = new Preconditioner[]{null, new JacobiPreconditioner(A), new IncompleteCholesky(new CompressedSparseMatrix(A))};
+        for(int k = 0; k < pcs.length; k++)
+        {
+            final int[] count = new int[1];
+            LinearOperator counted = new LinearOperator()
+            {
+                @Override
+                public int rows()
+                {
+                    return n;
+                }
+
+                @Override
+                public int cols()
+                {
+                    return n;
+                }
+
+                @Override
+                public void apply(Vec x, double z, Vec y)
+                {
+                    count[0]++;
+                    A.multiply(x, z, y);
+                }
+
+                @Override
+                public void applyTranspose(Vec x, double z, Vec y)
+                {
+                    apply(x, z, y);
+                }
+            };
+            Vec x = ConjugateGradient.solve(1e-8, counted, new DenseVector(n), b, pcs[k], 10*n, null);
+            assertTrue(b.equals(A.multiply(x), 1e-7));
+            iters[k] = count[0];
+        }
+        //IC(0) should need far fewer iterations than no preconditioning
+        assertTrue(iters[2] < iters[0]/2);
+    }
+
+    @Test
+    public void testKernelOperator()
+    {
+        System.out.println("kernelOperator");
+        Random rand = RandomUtil.getRandom();
+        int n = 100;
+        List<Vec> vecs = new ArrayList<>();
+        for(int i = 0; i < n; i++)
+            vecs.add(DenseVector.random(3, rand));
+        RBFKernel k = new RBFKernel(0.5);
+        double lambda = 0.1;
+        Matrix K = new DenseMatrix(n, n);
+        for(int i = 0; i < n; i++)
+            for(int j = 0; j < n; j++)
+                K.set(i, j, k.eval(vecs.get(i), vecs.get(j)) + (i == j ? lambda : 0));
+        Vec y = DenseVector.random(n, rand);
+
+        KernelOperator op = new KernelOperator(k, vecs, lambda);
+        assertTrue(K.multiply(y).equals(op.apply(y), 1e-10));
+        Vec expected = new CholeskyDecomposition(K.clone()).solve(y);
+        for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+        {
+            Vec alpha = ConjugateGradient.solve(1e-10, op, new DenseVector(n), y, new JacobiPreconditioner(op.getDiagonal()), 10*n, ex);
+            assertTrue(expected.equals(alpha, 1e-6));
+        }
+
+        //X^T X + lambda I without forming it
+        Matrix X = DenseMatrix.random(40, n, rand);
+        NormalOperator normal = new NormalOperator(X, lambda);
+        Matrix XtX = X.transposeMultiply(X);
+        for(int i = 0; i < n; i++)
+            XtX.increment(i, i, lambda);
+        assertTrue(XtX.multiply(y).equals(normal.apply(y), 1e-10));
+        for(int i = 0; i < n; i++)
+            assertEquals(XtX.get(i, i), normal.getDiagonal().get(i), 1e-10);
+    }
+}
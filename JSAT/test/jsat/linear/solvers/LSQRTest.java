@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.linear.*;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class LSQRTest
+{
+    static ExecutorService threadpool;
+
+    public LSQRTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testSolve()
+    {
+        System.out.println("solve");
+        Matrix A = new DenseMatrix(new double[][]
+        {
+            {4 ,    8,     8,     1},
+            {1 ,    9,     4,     1},
+            {10,    1,     9,     9},
+            {0 ,    4,     2,     6},
+            {8 ,    3,     3,     5},
+        });
+        Vec b = DenseVector.toDenseVec(1, 4, 3, 5, 2);
+
+        Vec x = LSQR.solve(A, b);
+        double error = A.multiply(x).subtract(b).pNorm(2);
+        assertEquals(1.0125, error, 1e-4);//True result computed with matlab
+
+        x = LSQR.solve(1e-10, new CompressedSparseMatrix(A), new DenseVector(4), b, 0.0, 100, threadpool);
+        error = A.multiply(x).subtract(b).pNorm(2);
+        assertEquals(1.0125, error, 1e-4);
+    }
+
+    @Test
+    public void testSolveDamped()
+    {
+        System.out.println("solveDamped");
+        Random rand = RandomUtil.getRandom();
+        int m = 200, n = 50;
+        Matrix A = new SparseMatrix(m, n);
+        for(int i = 0; i < m; i++)
+            for(int z = 0; z < 5; z++)
+                A.set(i, rand.nextInt(n), rand.nextGaussian());
+        Vec b = DenseVector.random(m, rand);
+        double lambda = 0.5;
+
+        //the ridge solution (A^T A + lambda^2 I) x = A^T b
+        Matrix AtA = A.transposeMultiply(A);
+        for(int i = 0; i < n; i++)
+            AtA.increment(i, i, lambda*lambda);
+        Vec expected = new LUPDecomposition(AtA).solve(A.transposeMultiply(1.0, b));
+
+        for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+        {
+            Vec x = LSQR.solve(1e-12, A, new DenseVector(n), b, lambda, 10*n, ex);
+            assertTrue(expected.equals(x, 1e-8));
+
+            x = ConjugateGradient.solveCGNR(1e-12, A, new DenseVector(n), b, lambda*lambda, ex);
+            assertTrue(expected.equals(x, 1e-8));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.solvers;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.linear.*;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class MINRESTest
+{
+    static ExecutorService threadpool;
+
+    public MINRESTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        threadpool = Executors.newFixedThreadPool(4, r ->
+        {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        threadpool.shutdownNow();
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testSolve()
+    {
+        System.out.println("solve");
+        Random rand = RandomUtil.getRandom();
+        int n = 60;
+        //symmetric but indefinite, which CG can not handle
+        Matrix A = DenseMatrix.random(n, n, rand);
+        A = A.add(A.transpose());
+        for(int i = 0; i < n; i++)
+            A.increment(i, i, i % 2 == 0 ? 4 : -4);
+        Vec b = DenseVector.random(n, rand);
+
+        for(ExecutorService ex : new ExecutorService[]{null, threadpool})
+        {
+            Vec x = MINRES.solve(1e-10, A, new DenseVector(n), b, null, 10*n, ex);
+            assertTrue(A.multiply(x).equals(b, 1e-8));
+        }
+        Vec x = MINRES.solve(A, b);
+        assertTrue(A.multiply(x).equals(b, 1e-8));
+    }
+
+    @Test
+    public void testSolvePreconditioned()
+    {
+        System.out.println("solvePreconditioned");
+        Random rand = RandomUtil.getRandom();
+        int n = 80;
+        //badly scaled SPD matrix
+        Matrix X = DenseMatrix.random(n+10, n, rand);
+        Matrix A = X.transposeMultiply(X);
+        for(int i = 0; i < n; i++)
+            A.increment(i, i, 1.0);
+        for(int i = 0; i < n; i++)
+        {
+            double s = Math.pow(10, (i % 5) - 2);
+            for(int j = 0; j < n; j++)
+            {
+                A.set(i, j, A.get(i, j)*s);
+                A.set(j, i, A.get(j, i)*s);
+            }
+        }
+        Vec b = DenseVector.random(n, rand);
+
+        for(Preconditioner M : new Preconditioner[]{new JacobiPreconditioner(A), new IncompleteCholesky(A)})
+        {
+            Vec x = MINRES.solve(1e-10, A, new DenseVector(n), b, M, 10*n, threadpool);
+            assertTrue(A.multiply(x).equals(b, 1e-6));
+        }
+    }
+}
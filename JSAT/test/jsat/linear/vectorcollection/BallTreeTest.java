@@ -212,4 +212,62 @@ public class BallTreeTest
                         }
                 }
     }
+    @Test
+    public void testSearch_compactLayout()
+    {
+        System.out.println("search_compactLayout");
+        Random rand = RandomUtil.getRandom();
+        VectorArray<Vec> data = new VectorArray<>(new EuclideanDistance());
+        for(int i = 0; i < 2000; i++)
+            data.add(DenseVector.random(5, rand));
+        
+        IntList neighbors_0 = new IntList(), neighbors_1 = new IntList();
+        DoubleList distances_0 = new DoubleList(), distances_1 = new DoubleList();
+        for(BallTree.ConstructionMethod method : BallTree.ConstructionMethod.values())
+        {
+            BallTree<Vec> tree = new BallTree<>(new EuclideanDistance(), method, BallTree.PivotSelection.CENTROID);
+            tree.build(data);
+            for(int iters = 0; iters < 20; iters++)
+            {
+                Vec query = DenseVector.random(5, rand);
+                //the compact layout must find the same points as the object tree
+                tree.setCompactLayout(false);
+                tree.search(query, 10, neighbors_0, distances_0);
+                tree.setCompactLayout(true);
+                tree.search(query, 10, neighbors_1, distances_1);
+                assertEquals(neighbors_0, neighbors_1);
+                assertEquals(distances_0, distances_1);
+                
+                tree.setCompactLayout(false);
+                tree.search(query, 0.3, neighbors_0, distances_0);
+                tree.setCompactLayout(true);
+                tree.search(query, 0.3, neighbors_1, distances_1);
+                assertEquals(neighbors_0, neighbors_1);
+                assertEquals(distances_0, distances_1);
+            }
+        }
+    }
+    
+    @Test
+    public void testBuild_parallelDeterministic()
+    {
+        System.out.println("build_parallelDeterministic");
+        Random rand = RandomUtil.getRandom();
+        VectorArray<Vec> data = new VectorArray<>(new EuclideanDistance());
+        for(int i = 0; i < 5000; i++)
+            data.add(DenseVector.random(8, rand));
+        
+        for(BallTree.ConstructionMethod method : BallTree.ConstructionMethod.values())
+        {
+            int seed = RandomUtil.DEFAULT_SEED.get();
+            BallTree<Vec> serial = new BallTree<>(new EuclideanDistance(), method, BallTree.PivotSelection.CENTROID);
+            serial.build(false, data);
+            RandomUtil.DEFAULT_SEED.set(seed);
+            BallTree<Vec> parallel = new BallTree<>(new EuclideanDistance(), method, BallTree.PivotSelection.CENTROID);
+            parallel.build(true, data);
+            
+            assertEquals(VPTreeTest.treeOrder(serial.getRoot()), VPTreeTest.treeOrder(parallel.getRoot()));
+        }
+    }
+    
 }
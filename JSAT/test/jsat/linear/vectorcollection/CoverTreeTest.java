@@ -55,6 +55,9 @@ public class CoverTreeTest
     {
         collectionFactories = new ArrayList<VectorCollection<Vec>>();
         collectionFactories.add(new CoverTree<>(new EuclideanDistance()));
+        CoverTree<Vec> compact = new CoverTree<>(new EuclideanDistance());
+        compact.setCompactLayout(true);
+        collectionFactories.add(compact);
     }
     
     @AfterClass
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.vectorcollection;
+
+import java.util.Random;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.linear.distancemetrics.ManhattanDistance;
+import jsat.utils.DoubleList;
+import jsat.utils.IntList;
+import jsat.utils.IntSet;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class HNSWTest
+{
+
+    public HNSWTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    private static VectorArray<Vec> randomData(int n, int d, DistanceMetric dm, Random rand)
+    {
+        VectorArray<Vec> vecCol = new VectorArray<>(dm);
+        for(int i = 0; i < n; i++)
+            vecCol.add(DenseVector.random(d, rand));
+        return vecCol;
+    }
+
+    /**
+     * Returns the fraction of the true k nearest neighbors found, averaged over
+     * many queries
+     */
+    private static double knnRecall(VectorCollection<Vec> truth, VectorCollection<Vec> test, int k, Random rand)
+    {
+        IntList trueNN = new IntList();
+        DoubleList trueNN_dists = new DoubleList();
+        IntList foundNN = new IntList();
+        DoubleList foundNN_dists = new DoubleList();
+
+        int found = 0, total = 0;
+        for(int iters = 0; iters < 50; iters++)
+        {
+            Vec query = DenseVector.random(truth.get(0).length(), rand);
+            truth.search(query, k, trueNN, trueNN_dists);
+            test.search(query, k, foundNN, foundNN_dists);
+
+            assertEquals(trueNN.size(), foundNN.size());
+            for(int i = 1; i < foundNN_dists.size(); i++)
+                assertTrue(foundNN_dists.getD(i-1) <= foundNN_dists.getD(i));
+            for(int i = 0; i < foundNN.size(); i++)
+                assertEquals(truth.getDistanceMetric().dist(query, truth.get(foundNN.getI(i))), foundNN_dists.getD(i), 1e-10);
+
+            IntSet truthSet = new IntSet(trueNN);
+            for(int indx : foundNN)
+                if(truthSet.contains(indx))
+                    found++;
+            total += trueNN.size();
+        }
+        return found / (double) total;
+    }
+
+    @Test
+    public void testSearch_Vec_int()
+    {
+        System.out.println("search");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(2000, 20, new EuclideanDistance(), rand);
+
+        for(boolean parallel : new boolean[]{false, true})
+        {
+            HNSW<Vec> collection = new HNSW<>(new EuclideanDistance());
+            collection.build(parallel, vecCol);
+            collection = collection.clone();
+            assertEquals(vecCol.size(), collection.size());
+
+            for(int k : new int[]{1, 5, 20})
+                assertTrue(knnRecall(vecCol, collection, k, rand) >= 0.9);
+        }
+    }
+
+    @Test
+    public void testSearch_Vec_int_efSearch()
+    {
+        System.out.println("search_efSearch");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(2000, 30, new EuclideanDistance(), rand);
+        HNSW<Vec> collection = new HNSW<>(new EuclideanDistance(), 8, 100, 10);
+        collection.build(vecCol);
+
+        double low = knnRecall(vecCol, collection, 10, RandomUtil.getRandom(7));
+        collection.setEfSearch(200);
+        double high = knnRecall(vecCol, collection, 10, RandomUtil.getRandom(7));
+        assertTrue(high >= low);
+        assertTrue(high >= 0.95);
+    }
+
+    @Test
+    public void testSearch_Vec_int_otherMetric()
+    {
+        System.out.println("search_otherMetric");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(1000, 10, new ManhattanDistance(), rand);
+        HNSW<Vec> collection = new HNSW<>(vecCol, new ManhattanDistance(), true);
+
+        assertTrue(knnRecall(vecCol, collection, 10, rand) >= 0.9);
+    }
+
+    @Test
+    public void testSearch_Vec_int_incramental()
+    {
+        System.out.println("search_inc");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(1000, 10, new EuclideanDistance(), rand);
+        HNSW<Vec> collection = new HNSW<>(new EuclideanDistance());
+        for(Vec v : vecCol)
+            collection.insert(v);
+        assertEquals(vecCol.size(), collection.size());
+
+        assertTrue(knnRecall(vecCol, collection, 10, rand) >= 0.9);
+    }
+
+    @Test
+    public void testSearch_Vec_double()
+    {
+        System.out.println("search_range");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(1000, 5, new EuclideanDistance(), rand);
+        HNSW<Vec> collection = new HNSW<>(vecCol, new EuclideanDistance());
+
+        IntList trueNN = new IntList();
+        DoubleList trueNN_dists = new DoubleList();
+        IntList foundNN = new IntList();
+        DoubleList foundNN_dists = new DoubleList();
+
+        int found = 0, total = 0;
+        for(int iters = 0; iters < 20; iters++)
+            for(double range : new double[]{0.25, 0.5, 0.75})
+            {
+                Vec query = vecCol.get(rand.nextInt(vecCol.size()));
+                vecCol.search(query, range, trueNN, trueNN_dists);
+                collection.search(query, range, foundNN, foundNN_dists);
+
+                for(double d : foundNN_dists)
+                    assertTrue(d <= range);
+                IntSet truthSet = new IntSet(trueNN);
+                for(int indx : foundNN)
+                    assertTrue(truthSet.contains(indx));
+                found += foundNN.size();
+                total += trueNN.size();
+            }
+        assertTrue(found >= 0.95*total);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.linear.vectorcollection;
+
+import java.util.Random;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.DoubleList;
+import jsat.utils.IntList;
+import jsat.utils.IntSet;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class IVFPQTest
+{
+
+    public IVFPQTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    private static VectorArray<Vec> randomData(int n, int d, Random rand)
+    {
+        VectorArray<Vec> vecCol = new VectorArray<>(new EuclideanDistance());
+        for(int i = 0; i < n; i++)
+            vecCol.add(DenseVector.random(d, rand));
+        return vecCol;
+    }
+
+    @Test
+    public void testSearch_Vec_int_exhaustive()
+    {
+        System.out.println("search_exhaustive");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(1000, 16, rand);
+        for(boolean parallel : new boolean[]{false, true})
+        {
+            IVFPQ<Vec> collection = new IVFPQ<>(16, 4);
+            //scanning every list and re-ranking everything is an exact search
+            collection.setProbes(16);
+            collection.setRerank(vecCol.size());
+            collection.build(parallel, vecCol);
+            collection = collection.clone();
+            assertEquals(vecCol.size(), collection.size());
+
+            IntList trueNN = new IntList();
+            DoubleList trueNN_dists = new DoubleList();
+            IntList foundNN = new IntList();
+            DoubleList foundNN_dists = new DoubleList();
+            for(int iters = 0; iters < 10; iters++)
+                for(int k : new int[]{1, 5, 20})
+                {
+                    Vec query = DenseVector.random(16, rand);
+                    vecCol.search(query, k, trueNN, trueNN_dists);
+                    collection.search(query, k, foundNN, foundNN_dists);
+                    assertEquals(trueNN, foundNN);
+                    for(int i = 0; i < k; i++)
+                        assertEquals(trueNN_dists.getD(i), foundNN_dists.getD(i), 1e-10);
+                }
+        }
+    }
+
+    @Test
+    public void testSearch_Vec_int()
+    {
+        System.out.println("search");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(5000, 32, rand);
+        IVFPQ<Vec> collection = new IVFPQ<>(vecCol, 32, 8, true);
+        collection.setProbes(16);
+
+        IntList trueNN = new IntList();
+        DoubleList trueNN_dists = new DoubleList();
+        IntList foundNN = new IntList();
+        DoubleList foundNN_dists = new DoubleList();
+
+        int found_approx = 0, found_rerank = 0, total = 0;
+        for(int iters = 0; iters < 50; iters++)
+        {
+            Vec query = vecCol.get(rand.nextInt(vecCol.size())).add(DenseVector.random(32, rand).multiply(0.05));
+            vecCol.search(query, 10, trueNN, trueNN_dists);
+            IntSet truthSet = new IntSet(trueNN);
+            total += trueNN.size();
+
+            collection.setRerank(0);
+            collection.search(query, 10, foundNN, foundNN_dists);
+            assertEquals(10, foundNN.size());
+            for(int i = 1; i < foundNN_dists.size(); i++)
+                assertTrue(foundNN_dists.getD(i-1) <= foundNN_dists.getD(i));
+            for(int indx : foundNN)
+                if(truthSet.contains(indx))
+                    found_approx++;
+
+            collection.setRerank(100);
+            collection.search(query, 10, foundNN, foundNN_dists);
+            assertEquals(10, foundNN.size());
+            for(int i = 0; i < foundNN.size(); i++)
+                assertEquals(vecCol.get(foundNN.getI(i)).pNormDist(2, query), foundNN_dists.getD(i), 1e-10);
+            for(int indx : foundNN)
+                if(truthSet.contains(indx))
+                    found_rerank++;
+        }
+
+        assertTrue(found_approx >= 0.3*total);
+        assertTrue(found_rerank >= found_approx);
+        assertTrue(found_rerank >= 0.8*total);
+    }
+
+    @Test
+    public void testSearch_Vec_double()
+    {
+        System.out.println("search_range");
+        Random rand = RandomUtil.getRandom();
+
+        VectorArray<Vec> vecCol = randomData(1000, 8, rand);
+        IVFPQ<Vec> collection = new IVFPQ<>(vecCol, 8, 4, false);
+        collection.setProbes(8);
+        collection.setRerank(1);
+
+        IntList trueNN = new IntList();
+        DoubleList trueNN_dists = new DoubleList();
+        IntList foundNN = new IntList();
+        DoubleList foundNN_dists = new DoubleList();
+        for(int iters = 0; iters < 10; iters++)
+            for(double range : new double[]{0.25, 0.5, 0.75})
+            {
+                Vec query = vecCol.get(rand.nextInt(vecCol.size()));
+                vecCol.search(query, range, trueNN, trueNN_dists);
+                collection.search(query, range, foundNN, foundNN_dists);
+
+                IntSet truthSet = new IntSet(trueNN);
+                for(int i = 0; i < foundNN.size(); i++)
+                {
+                    assertTrue(foundNN_dists.getD(i) <= range);
+                    assertTrue(truthSet.contains(foundNN.getI(i)));
+                    if(i > 0)
+                        assertTrue(foundNN_dists.getD(i-1) <= foundNN_dists.getD(i));
+                }
+            }
+    }
+}
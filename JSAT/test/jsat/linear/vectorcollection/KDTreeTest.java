@@ -56,7 +56,12 @@ public class KDTreeTest
     {
         collectionFactories = new ArrayList<VectorCollection<Vec>>();
         for(KDTree.PivotSelection pivot : KDTree.PivotSelection.values())
+        {
             collectionFactories.add(new KDTree<>(pivot));
+            KDTree<Vec> compact = new KDTree<>(pivot);
+            compact.setCompactLayout(true);
+            collectionFactories.add(compact);
+        }
     }
     
     @AfterClass
@@ -26,6 +26,7 @@ import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.linear.VecPaired;
 import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.DoubleList;
 import jsat.utils.IntList;
 import jsat.utils.SystemInfo;
 import jsat.utils.random.XORWOW;
@@ -53,7 +54,12 @@ public class VPTreeTest
     {
         collectionFactories = new ArrayList<>();
         for(VPTree.VPSelection samplingStrat : VPTree.VPSelection.values())
+        {
             collectionFactories.add(new VPTree<>(new EuclideanDistance(), samplingStrat));
+            VPTree<Vec> compact = new VPTree<>(new EuclideanDistance(), samplingStrat);
+            compact.setCompactLayout(true);
+            collectionFactories.add(compact);
+        }
     }
     
     @AfterClass
@@ -272,4 +278,86 @@ public class VPTreeTest
                 }
             }
     }
+    @Test
+    public void testSearch_compactLayout()
+    {
+        System.out.println("search_compactLayout");
+        Random rand = new XORWOW(123);
+        List<Vec> data = new ArrayList<>();
+        for(int i = 0; i < 3000; i++)
+            data.add(DenseVector.random(5, rand));
+        
+        VPTree<Vec> tree = new VPTree<>(data, new EuclideanDistance());
+        IntList neighbors_0 = new IntList(), neighbors_1 = new IntList();
+        DoubleList distances_0 = new DoubleList(), distances_1 = new DoubleList();
+        for(int iters = 0; iters < 20; iters++)
+        {
+            Vec query = DenseVector.random(5, rand);
+            for(int k : new int[]{1, 5, 20})
+                for(double range : new double[]{Double.MAX_VALUE, 0.1, 0.3})
+                {
+                    //the compact layout must find the same points as the object tree
+                    neighbors_0.clear();
+                    distances_0.clear();
+                    neighbors_1.clear();
+                    distances_1.clear();
+                    tree.setCompactLayout(false);
+                    tree.search(query, k, range, neighbors_0, distances_0);
+                    tree.search(query, range/k, neighbors_0, distances_0);
+                    tree.setCompactLayout(true);
+                    tree.search(query, k, range, neighbors_1, distances_1);
+                    tree.search(query, range/k, neighbors_1, distances_1);
+                    
+                    assertEquals(neighbors_0, neighbors_1);
+                    assertEquals(distances_0, distances_1);
+                }
+            neighbors_0.clear();
+            distances_0.clear();
+            neighbors_1.clear();
+            distances_1.clear();
+            tree.setCompactLayout(false);
+            tree.search(query, 10, neighbors_0, distances_0);
+            tree.setCompactLayout(true);
+            tree.search(query, 10, neighbors_1, distances_1);
+            assertEquals(neighbors_0, neighbors_1);
+            assertEquals(distances_0, distances_1);
+        }
+    }
+    
+    @Test
+    public void testBuild_parallelDeterministic()
+    {
+        System.out.println("build_parallelDeterministic");
+        Random rand = new XORWOW(123);
+        List<Vec> data = new ArrayList<>();
+        for(int i = 0; i < 5000; i++)
+            data.add(DenseVector.random(8, rand));
+        
+        VPTree<Vec> serial = new VPTree<>(data, new EuclideanDistance(), VPTree.VPSelection.Random, new XORWOW(7), 80, 40, false);
+        VPTree<Vec> parallel = new VPTree<>(data, new EuclideanDistance(), VPTree.VPSelection.Random, new XORWOW(7), 80, 40, true);
+        //same seed, so the same tree should be built no matter how many threads were used
+        assertEquals(treeOrder(serial.getRoot()), treeOrder(parallel.getRoot()));
+    }
+    
+    /**
+     * Lists the points of every node in the tree, in pre-order, with a -1 
+     * marking the end of each node's children
+     */
+    static IntList treeOrder(IndexNode node)
+    {
+        IntList order = new IntList();
+        treeOrder(node, order);
+        return order;
+    }
+    
+    private static void treeOrder(IndexNode node, IntList order)
+    {
+        for(int i = 0; i < node.numPoints(); i++)
+            order.add(node.getPoint(i));
+        for(int i = 0; i < node.numChildren(); i++)
+            if(node.getChild(i) != null)
+                treeOrder(node.getChild(i), order);
+        order.add(-1);
+    }
+    
 }
@@ -130,6 +130,41 @@ public class VectorArrayTest
         }
     }
     
+    @Test
+    public void testSearch_Vec_int_arrays()
+    {
+        System.out.println("search_arrays");
+        Random rand = RandomUtil.getRandom();
+        
+        VectorArray<Vec> vecCol = new VectorArray<>(new EuclideanDistance(), simpleSet);
+        
+        IntList trueNN = new IntList();
+        DoubleList trueNN_dists = new DoubleList();
+        int[] foundNN = new int[100];
+        double[] foundNN_dists = new double[100];
+        for(int numNeighbours = 1; numNeighbours < 100; numNeighbours++)
+        {
+            Vec query = simpleSet.get(rand.nextInt(simpleSet.size()));
+            vecCol.search(query, numNeighbours, trueNN, trueNN_dists);
+            assertEquals(numNeighbours, vecCol.search(query, numNeighbours, foundNN, foundNN_dists));
+            for(int i = 0; i < numNeighbours; i++)
+            {
+                assertEquals(trueNN.getI(i), foundNN[i]);
+                assertEquals(trueNN_dists.getD(i), foundNN_dists[i], 0.0);
+            }
+        }
+        
+        try
+        {
+            vecCol.search(simpleSet.get(0), 101, foundNN, foundNN_dists);
+            fail("Arrays were too small");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            //good
+        }
+    }
+
     @Test
     public void testSearch_Radius_DT()
     {
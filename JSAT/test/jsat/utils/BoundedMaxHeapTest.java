@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import jsat.linear.vectorcollection.IndexDistPair;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class BoundedMaxHeapTest
+{
+
+    public BoundedMaxHeapTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+
+    @Before
+    public void setUp()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+    }
+
+    /**
+     * Test of offer method, of class BoundedMaxHeap.
+     */
+    @Test
+    public void testOffer()
+    {
+        System.out.println("offer");
+        Random rand = RandomUtil.getRandom();
+
+        BoundedMaxHeap heap = new BoundedMaxHeap(1);
+        for(int k : new int[]{1, 2, 5, 20, 100})
+            for(int n : new int[]{k/2, k, 3*k, 50*k})
+            {
+                heap.reset(k);
+                BoundedSortedList<IndexDistPair> truth = new BoundedSortedList<>(k);
+                double[] offered = new double[n];
+                for(int i = 0; i < n; i++)
+                {
+                    double v = offered[i] = rand.nextInt(n+1);//ints so that ties happen
+                    heap.offer(i, v);
+                    truth.add(new IndexDistPair(i, v));
+                    assertEquals(Math.min(i+1, k), heap.size());
+                    assertEquals(truth.get(truth.size()-1).getDist(), heap.peekValue(), 0.0);
+                    if(heap.isFull())
+                        assertEquals(heap.peekValue(), heap.bound(), 0.0);
+                    else
+                        assertTrue(Double.isInfinite(heap.bound()));
+                }
+
+                IntList indices = new IntList();
+                DoubleList values = new DoubleList();
+                assertEquals(truth.size(), heap.drainTo(indices, values));
+                assertEquals(0, heap.size());
+                assertEquals(truth.size(), indices.size());
+                assertEquals(indices.size(), new IntSet(indices).size());
+                for(int i = 0; i < truth.size(); i++)
+                {
+                    assertEquals(truth.get(i).getDist(), values.getD(i), 0.0);
+                    assertEquals(offered[indices.getI(i)], values.getD(i), 0.0);
+                }
+            }
+    }
+
+    /**
+     * Test of drainTo method, of class BoundedMaxHeap.
+     */
+    @Test
+    public void testDrainTo()
+    {
+        System.out.println("drainTo");
+        BoundedMaxHeap heap = new BoundedMaxHeap(4);
+        for(int i = 0; i < 10; i++)
+            heap.offer(i, 10-i);
+
+        int[] indices = new int[5];
+        double[] values = new double[5];
+        assertEquals(4, heap.drainTo(indices, values));
+        assertArrayEquals(new int[]{9, 8, 7, 6, 0}, indices);
+        assertArrayEquals(new double[]{1, 2, 3, 4, 0}, values, 0.0);
+
+        //boxed lists get the same results
+        for(int i = 0; i < 10; i++)
+            heap.offer(i, 10-i);
+        List<Integer> boxed_indices = new ArrayList<>();
+        List<Double> boxed_values = new ArrayList<>();
+        heap.drainTo(boxed_indices, boxed_values);
+        for(int i = 0; i < 4; i++)
+        {
+            assertEquals(indices[i], boxed_indices.get(i).intValue());
+            assertEquals(values[i], boxed_values.get(i), 0.0);
+        }
+
+        for(int i = 0; i < 10; i++)
+            heap.offer(i, 10-i);
+        try
+        {
+            heap.drainTo(new int[3], new double[3]);
+            fail("Arrays were too small");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            //good
+        }
+    }
+
+    /**
+     * Test of acquire and release methods, of class BoundedMaxHeap.
+     */
+    @Test
+    public void testAcquire()
+    {
+        System.out.println("acquire");
+        BoundedMaxHeap heap = BoundedMaxHeap.acquire(3);
+        assertEquals(0, heap.size());
+        assertEquals(3, heap.maxSize());
+        for(int i = 0; i < 10; i++)
+            heap.offer(i, i);
+
+        //a nested search must not get the heap that is in use
+        BoundedMaxHeap nested = BoundedMaxHeap.acquire(5);
+        assertNotSame(heap, nested);
+        assertEquals(0, nested.size());
+        assertEquals(3, heap.size());
+        nested.release();
+        heap.release();
+
+        //once released, the same heap is handed out again empty
+        BoundedMaxHeap again = BoundedMaxHeap.acquire(7);
+        assertSame(heap, again);
+        assertEquals(0, again.size());
+        assertEquals(7, again.maxSize());
+        again.release();
+
+        //a heap grown past the limit is not kept for the thread
+        BoundedMaxHeap large = BoundedMaxHeap.acquire(BoundedMaxHeap.MAX_LOCAL_CAPACITY+1);
+        assertSame(heap, large);
+        large.release();
+        BoundedMaxHeap after = BoundedMaxHeap.acquire(3);
+        assertNotSame(heap, after);
+        after.release();
+        assertSame(after, BoundedMaxHeap.acquire(3));
+        after.release();
+    }
+}
@@ -1,6 +1,7 @@
 package jsat.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
@@ -123,4 +124,39 @@ public class QuickSortTest
         }
     }
     
+    @Test
+    public void testSelectDP()
+    {
+        System.out.println("select");
+        Random rand = RandomUtil.getRandom();
+        
+        IntList ints = new IntList();
+        Collection<List<?>> paired = new ArrayList<List<?>>();
+        paired.add(ints);
+        for(int size = 1; size < 10000; size*=2)
+            for(int trial = 0; trial < 5; trial++)
+            {
+                ints.clear();
+                double[] x = new double[size];
+                for(int i = 0; i < x.length; i++)
+                {
+                    x[i] = rand.nextInt(size);//ints so that ties happen
+                    ints.add(i);
+                }
+                double[] orig = x.clone();
+                double[] sorted = x.clone();
+                Arrays.sort(sorted);
+                int k = rand.nextInt(size);
+                QuickSort.select(x, 0, size, k, paired);
+
+                assertEquals(sorted[k], x[k], 0.0);
+                for(int i = 0; i < k; i++)
+                    assertTrue(x[i] <= x[k]);
+                for(int i = k+1; i < size; i++)
+                    assertTrue(x[i] >= x[k]);
+                for(int i = 0; i < size; i++)
+                    assertEquals(orig[ints.getI(i)], x[i], 0.0);
+            }
+    }
+    
 }
@@ -80,6 +80,41 @@ public class StringUtilsTest
         }
     }
     
+    @Test
+    public void testParseDoubleBytes()
+    {
+        System.out.println("parseDouble(ByteBuffer)");
+        Random rand = new Random(42);
+        String[] signOps = new String[]{"+", "-", ""};
+        String[] Es = new String[]{"e", "E"};
+        
+        for (int trials = 0; trials < 10000; trials++)
+        {
+            String[] toTest = new String[]
+            {
+                signOps[rand.nextInt(3)] + rand.nextInt(1000000),
+                signOps[rand.nextInt(3)] + rand.nextInt(1000000) + "." + rand.nextInt(1000000),
+                signOps[rand.nextInt(3)] + "0.000" + rand.nextInt(1000),
+                signOps[rand.nextInt(3)] + rand.nextInt(1000) + Es[rand.nextInt(2)] + signOps[rand.nextInt(3)] + rand.nextInt(40),
+                Double.toString(rand.nextGaussian()*Math.pow(10, rand.nextInt(40)-20)),
+                Long.toString(rand.nextLong()) + "." + rand.nextInt(Integer.MAX_VALUE),
+                "NaN",
+                "-Infinity",
+            };
+            for (String str : toTest)
+            {
+                //surround with junk to make sure the bounds are respected
+                byte[] bytes = ("1," + str + ",2").getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+                double attempt = StringUtils.parseDouble(java.nio.ByteBuffer.wrap(bytes), 2, bytes.length-2);
+                assertEquals(str, Double.parseDouble(str), attempt, 0.0);
+            }
+            
+            String str = Integer.toString(rand.nextInt()); 
+            byte[] bytes = str.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+            assertEquals(Integer.parseInt(str), StringUtils.parseInt(java.nio.ByteBuffer.wrap(bytes), 0, bytes.length));
+        }
+    }
+
     @Test
     public void testParseDouble()
     {
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.utils.concurrent;
+
+import java.util.Random;
+import jsat.utils.random.RandomUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class ConcurrentCacheLRUTest
+{
+    
+    public ConcurrentCacheLRUTest()
+    {
+    }
+    
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+    
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+    
+    @Before
+    public void setUp()
+    {
+    }
+    
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testPutGet()
+    {
+        System.out.println("put and get");
+        ConcurrentCacheLRU<Integer, String> cache = new ConcurrentCacheLRU<>(100);
+        for(int i = 0; i < 100; i++)
+            cache.put(i, Integer.toString(i));
+        assertEquals(100, cache.size());
+        for(int i = 0; i < 100; i++)
+            assertEquals(Integer.toString(i), cache.get(i));
+        assertNull(cache.get(-1));
+        assertEquals(100, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(100/101.0, cache.getHitRate(), 1e-12);
+        assertEquals(0, cache.getEvictionCount());
+        
+        assertEquals("5", cache.putIfAbsentAndGet(5, "five"));
+        assertEquals("5", cache.get(5));
+        cache.put(5, "five");
+        assertEquals("five", cache.get(5));
+        assertEquals(100, cache.size());
+        
+        assertEquals("five", cache.remove(5));
+        assertNull(cache.get(5));
+        assertEquals(99, cache.size());
+        assertEquals(99, cache.getWeight());
+        
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+    
+    @Test
+    public void testEviction()
+    {
+        System.out.println("eviction");
+        ConcurrentCacheLRU<Integer, Integer> cache = new ConcurrentCacheLRU<>(50);
+        for(int i = 0; i < 1000; i++)
+        {
+            cache.put(i, i);
+            assertTrue(cache.size() <= 50);
+            //keep the first 10 items in constant use
+            for(int j = 0; j < Math.min(i+1, 10); j++)
+                assertEquals(j, cache.get(j).intValue());
+        }
+        assertEquals(50, cache.size());
+        assertEquals(950, cache.getEvictionCount());
+        
+        //replacing the same key must not grow the cache
+        for(int i = 0; i < 10000; i++)
+            cache.put(3, i);
+        assertEquals(50, cache.size());
+    }
+    
+    @Test
+    public void testWeighted()
+    {
+        System.out.println("weighted");
+        ConcurrentCacheLRU<Integer, double[]> cache = new ConcurrentCacheLRU<>(1000*8, v -> v.length*8);
+        Random rand = RandomUtil.getRandom();
+        for(int i = 0; i < 500; i++)
+        {
+            cache.put(i, new double[1+rand.nextInt(100)]);
+            assertTrue(cache.getWeight() <= 1000*8);
+        }
+        long total = 0;
+        for(int i = 0; i < 500; i++)
+        {
+            double[] v = cache.get(i);
+            if(v != null)
+                total += v.length*8;
+        }
+        assertEquals(total, cache.getWeight());
+    }
+    
+    @Test
+    public void testConcurrent()
+    {
+        System.out.println("concurrent");
+        ConcurrentCacheLRU<Integer, Integer> cache = new ConcurrentCacheLRU<>(200);
+        ParallelUtils.run(true, 100000, (IndexRunnable) i ->
+        {
+            int key = i % 1000;
+            Integer v = cache.get(key);
+            if(v == null)
+                cache.putIfAbsentAndGet(key, key);
+            else
+                assertEquals(key, v.intValue());
+        });
+        assertTrue(cache.size() <= 200);
+        assertEquals(cache.size(), cache.getWeight());
+        assertEquals(100000, cache.getHitCount()+cache.getMissCount());
+    }
+    
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2018 Edward Raff
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jsat.utils.concurrent;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class ParallelUtilsTest
+{
+    
+    public ParallelUtilsTest()
+    {
+    }
+    
+    @BeforeClass
+    public static void setUpClass()
+    {
+    }
+    
+    @AfterClass
+    public static void tearDownClass()
+    {
+    }
+    
+    @Before
+    public void setUp()
+    {
+    }
+    
+    @After
+    public void tearDown()
+    {
+    }
+
+    @Test
+    public void testRunChunks()
+    {
+        System.out.println("run chunks");
+        for(boolean parallel : new boolean[]{false, true})
+            for(int N : new int[]{0, 1, 7, 1000, 100003})
+            {
+                AtomicIntegerArray seen = new AtomicIntegerArray(N);
+                ParallelUtils.run(parallel, N, (start, end) ->
+                {
+                    for(int i = start; i < end; i++)
+                        seen.incrementAndGet(i);
+                });
+                for(int i = 0; i < N; i++)
+                    assertEquals(1, seen.get(i));
+                
+                long sum = ParallelUtils.run(parallel, N, (start, end) ->
+                {
+                    long s = 0;
+                    for(int i = start; i < end; i++)
+                        s += i;
+                    return s;
+                }, (a, b) -> a + b);
+                assertEquals(N*(long)(N-1)/2, sum);
+            }
+    }
+    
+    @Test
+    public void testRunIndex()
+    {
+        System.out.println("run index");
+        for(boolean parallel : new boolean[]{false, true})
+            for(int N : new int[]{1, 7, 1000})
+            {
+                AtomicIntegerArray seen = new AtomicIntegerArray(N);
+                ParallelUtils.run(parallel, N, (IndexRunnable) i -> seen.incrementAndGet(i));
+                for(int i = 0; i < N; i++)
+                    assertEquals(1, seen.get(i));
+                
+                //reduction in index order
+                String order = ParallelUtils.run(parallel, N, (IndexReducer<String>) i -> Integer.toString(i) + ",", (a, b) -> a + b);
+                StringBuilder expected = new StringBuilder();
+                for(int i = 0; i < N; i++)
+                    expected.append(i).append(",");
+                assertEquals(expected.toString(), order);
+            }
+    }
+    
+    @Test
+    public void testNested()
+    {
+        System.out.println("nested");
+        Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        AtomicIntegerArray seen = new AtomicIntegerArray(100*100);
+        ParallelUtils.run(true, 100, (IndexRunnable) i ->
+        {
+            ParallelUtils.run(true, 100, (start, end) ->
+            {
+                threads.add(Thread.currentThread());
+                for(int j = start; j < end; j++)
+                    seen.incrementAndGet(i*100+j);
+            });
+        });
+        for(int i = 0; i < seen.length(); i++)
+            assertEquals(1, seen.get(i));
+        assertTrue(threads.size() <= ParallelUtils.getParallelism());
+    }
+    
+    @Test
+    public void testSetParallelism()
+    {
+        System.out.println("setParallelism");
+        int orig = ParallelUtils.getParallelism();
+        try
+        {
+            ParallelUtils.setParallelism(1);
+            assertEquals(1, ParallelUtils.getParallelism());
+            Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            ParallelUtils.run(true, 1000, (IndexRunnable) i -> threads.add(Thread.currentThread()));
+            assertEquals(1, threads.size());
+        }
+        finally
+        {
+            ParallelUtils.setParallelism(orig);
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testExceptionPropagates()
+    {
+        System.out.println("exceptionPropagates");
+        ParallelUtils.run(true, 1000, (start, end) ->
+        {
+            if(start <= 500 && 500 < end)
+                throw new IllegalStateException();
+        });
+    }
+    
+}